@@ -0,0 +1,719 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.bookedit;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
+import org.shadowlands.roadtrip.db.Settings;
+import org.shadowlands.roadtrip.db.Trip;
+import org.shadowlands.roadtrip.db.Vehicle;
+import org.shadowlands.roadtrip.db.jdbc.RDBJDBCAdapter;
+import org.shadowlands.roadtrip.db.mem.RDBMemAdapter;
+import org.shadowlands.roadtrip.model.LogbookTableModel;
+import org.shadowlands.roadtrip.model.TableChangeListener;
+
+/**
+ * Headless check of {@link RDBMemAdapter} against sqlite, for re-running the equivalence and timing
+ * measurements of the in-memory adapter, its snapshot files and {@link LogbookTableModel}'s Lazy Mode.
+ * Opens a logbook file with {@link RDBJDBCAdapter}, makes an in-memory copy with {@link RDBMemAdapter#copyOf(RDBAdapter)}
+ * and a snapshot with {@link RDBMemAdapter#writeSnapshot(RDBAdapter, File)} and {@link RDBMemAdapter#openSnapshot(File)},
+ * then for each of those 3 adapters:
+ *<UL>
+ * <LI> Compares each table's rows with sqlite's
+ * <LI> Runs the same randomized queries (rowid and time ranges, {@code in} lists, ordering, limits, aggregates)
+ *      and compares their results with sqlite's
+ * <LI> Times opening the vehicle having the most trips as a 2-week logbook, all weeks in Lazy Mode,
+ *      and all weeks rendered at once, and random viewport jumps in Lazy Mode; the rendered text
+ *      must be the same for each adapter
+ * <LI> Checks random {@link LogbookTableModel#getValueAt(int, int)} calls against a linear scan
+ *      of the logbook's rows, and times them
+ * <LI> Times writing the logbook's trips in simple mode with
+ *      {@link LogbookTableModel#writeTripsSimple(List, LogbookTableModel.CellWriter, RDBAdapter)}
+ *      and by rendering a {@link LogbookTableModel#trip_simple_mode} copy of the logbook; both must produce the same text
+ *</UL>
+ * Prints the results and a summary to {@code System.out}. The input file is only read.
+ *<P>
+ * Usage, as printed by {@link #printUsage()}:
+ *<pre>
+ * java -jar slroadtrip-bookedit.jar -adaptercheck [-n checks] [-seed s] logbook.sqlite
+ *</pre>
+ * Exit code is 0 if all checks matched, 1 if any didn't, 2 for usage or file errors.
+ * The record classes' static caches assume a single db, so they're cleared before each adapter's timings
+ * with {@link Settings#clearSettingsCache()}.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class AdapterCheck
+{
+	/** Command-line flag to run this check instead of the GUI: {@code -adaptercheck} */
+	public static final String ARG_CHECK = "-adaptercheck";
+
+	/** Default number of randomized query checks and Lazy Mode viewport jumps: 400 */
+	public static final int DEFAULT_CHECKS = 400;
+
+	/** Number of rows shown in each Lazy Mode viewport */
+	private static final int VIEWPORT_ROWS = 40;
+
+	/** Number of random getValueAt calls timed for each adapter, for each randomized check */
+	private static final int GETVALUE_CALLS_PER_CHECK = 5000;
+
+	/** Max number of mismatches to describe in detail; the rest are only counted */
+	private static final int MAX_MISMATCH_DETAILS = 10;
+
+	/** Names of {@link #dbs}' adapters, for output */
+	private static final String[] DB_NAMES = { "sqlite", "mem", "snapshot" };
+
+	/** Trip fields read by the randomized queries */
+	private static final String[] TRIP_FIELDS = { "_id", "vid", "time_start", "time_end", "odo_start", "odo_end" };
+
+	/** Aggregate fields read by the randomized queries */
+	private static final String[] TRIP_AGG_FIELDS = { "count(*)", "min(time_start)", "max(time_start)", "max(_id)", "sum(odo_end)" };
+
+	/** Trip stop fields read by the randomized queries */
+	private static final String[] TSTOP_FIELDS = { "_id", "tripid", "odo_trip", "time_stop", "locid" };
+
+	/** Input file opened with sqlite */
+	private final File dbFile;
+
+	/** Number of randomized checks and viewport jumps */
+	private final int nChecks;
+
+	/** Random seed for {@link #rnd}; each adapter's logbook timings restart from this seed */
+	private final long seed;
+
+	private final Random rnd;
+
+	/** Adapters to compare: sqlite, in-memory copy, snapshot; named in {@link #DB_NAMES} */
+	private RDBAdapter[] dbs;
+
+	/** Number of comparisons made, and how many of them didn't match */
+	private int compared, mismatches;
+
+	/**
+	 * Create an adapter check; call {@link #run()} to open the file and check it.
+	 * @param dbFile  Logbook file to open with sqlite; not changed
+	 * @param nChecks  Number of randomized query checks and Lazy Mode viewport jumps, at least 1
+	 * @param seed  Random seed, so a run can be repeated
+	 * @throws IllegalArgumentException if {@code nChecks} &lt; 1
+	 */
+	public AdapterCheck(final File dbFile, final int nChecks, final long seed)
+		throws IllegalArgumentException
+	{
+		if (nChecks < 1)
+			throw new IllegalArgumentException("nChecks");
+
+		this.dbFile = dbFile;
+		this.nChecks = nChecks;
+		this.seed = seed;
+		rnd = new Random(seed);
+	}
+
+	/**
+	 * Main entry point for the adapter check.
+	 * Prints usage and exits if the arguments aren't valid.
+	 * @param args  Command-line arguments; the first may be {@link #ARG_CHECK}, which is ignored
+	 */
+	public static void main(final String[] args)
+	{
+		int nChecks = DEFAULT_CHECKS;
+		long seed = System.currentTimeMillis();
+		String fname = null;
+
+		for (int i = 0; i < args.length; ++i)
+		{
+			final String a = args[i];
+			if (a.equals(ARG_CHECK))
+				continue;
+
+			if ((a.equals("-n") || a.equals("-seed")) && (i + 1 < args.length))
+			{
+				final String v = args[++i];
+				boolean ok = true;
+				try
+				{
+					if (a.equals("-n"))
+						ok = ((nChecks = Integer.parseInt(v)) >= 1);
+					else
+						seed = Long.parseLong(v);
+				} catch (NumberFormatException e) {
+					ok = false;
+				}
+				if (! ok)
+				{
+					System.err.println(a + ": must be a number" + ((a.equals("-n")) ? " 1 or higher" : ""));
+					printUsage();
+					System.exit(2);
+				}
+			}
+			else if (a.startsWith("-") || (fname != null))
+			{
+				System.err.println("Unknown option: " + a);
+				printUsage();
+				System.exit(2);
+			}
+			else
+			{
+				fname = a;
+			}
+		}
+
+		if (fname == null)
+		{
+			printUsage();
+			System.exit(2);
+		}
+
+		final File f = new File(fname);
+		if (! f.isFile())
+		{
+			System.err.println("Not a file: " + f);
+			System.exit(2);
+		}
+
+		int exitCode;
+		try
+		{
+			exitCode = (new AdapterCheck(f, nChecks, seed).run()) ? 0 : 1;
+		} catch (Exception e) {
+			System.err.println("Adapter check failed: " + e);
+			e.printStackTrace();
+			exitCode = 2;
+		}
+
+		System.exit(exitCode);
+	}
+
+	/** Print command-line usage to {@code System.err}. */
+	public static void printUsage()
+	{
+		System.err.println("Usage: java -jar slroadtrip-bookedit.jar " + ARG_CHECK
+			+ " [-n checks] [-seed s] logbook.sqlite");
+		System.err.println("  Compares the in-memory db adapter and its snapshot files against sqlite:");
+		System.err.println("  table contents, randomized queries, and logbook rendering, with timings.");
+		System.err.println("  Default checks is " + DEFAULT_CHECKS + ", default seed is the current time.");
+		System.err.println("  The logbook file isn't changed.");
+	}
+
+	/**
+	 * Open the file, make the in-memory copy and snapshot, and run all checks and timings.
+	 * @return true if all comparisons matched, false if any didn't
+	 * @throws ClassNotFoundException if the sqlite JDBC driver isn't found
+	 * @throws SQLException if the file can't be opened
+	 * @throws IOException if the snapshot file can't be written or opened
+	 * @throws RDBKeyNotFoundException if a vehicle can't be read
+	 */
+	public boolean run()
+		throws ClassNotFoundException, SQLException, IOException, RDBKeyNotFoundException
+	{
+		System.out.println("Logbook: " + dbFile + "  checks: " + nChecks + "  seed: " + seed);
+
+		final RDBAdapter sq = new RDBJDBCAdapter(dbFile.getPath());
+		File snapFile = null;
+		try
+		{
+			long t0 = System.nanoTime();
+			final RDBMemAdapter mem = RDBMemAdapter.copyOf(sq);
+			System.out.println("In-memory copy: " + msSince(t0) + " ms");
+
+			snapFile = File.createTempFile("adaptercheck", ".rtrsnap");
+			t0 = System.nanoTime();
+			RDBMemAdapter.writeSnapshot(sq, snapFile);
+			System.out.println("Snapshot write: " + msSince(t0) + " ms, " + ((snapFile.length() + 1023) / 1024) + " KB");
+
+			final long heap0 = usedHeap();
+			t0 = System.nanoTime();
+			final RDBMemAdapter snap = RDBMemAdapter.openSnapshot(snapFile);
+			final long openMS = msSince(t0);
+			System.out.println("Snapshot open: " + openMS + " ms, heap about " + ((usedHeap() - heap0) / 1024) + " KB");
+
+			dbs = new RDBAdapter[]{ sq, mem, snap };
+
+			compareTables(mem);
+			compareRandomQueries();
+
+			final Vehicle veh = vehicleWithMostTrips(sq);
+			if (veh == null)
+			{
+				System.out.println("No vehicles with trips: Skipping logbook timings");
+			} else {
+				System.out.println();
+				System.out.println("Logbook timings, vehicle " + veh.getID() + " (" + veh.toString() + "), "
+					+ sq.getCount("trip", "vid", veh.getID()) + " trips:");
+				final long[] hashes = new long[dbs.length];
+				for (int i = 0; i < dbs.length; ++i)
+					hashes[i] = checkLogbook(i, veh.getID());
+				for (int i = 1; i < dbs.length; ++i)
+					compare("logbook text: " + DB_NAMES[i], Long.toString(hashes[0]), Long.toString(hashes[i]));
+			}
+
+			snap.close();
+			mem.close();
+		} finally {
+			sq.close();
+			if (snapFile != null)
+				snapFile.delete();
+		}
+
+		System.out.println();
+		System.out.println("Summary: " + compared + " comparisons, " + mismatches + " mismatches");
+
+		return (mismatches == 0);
+	}
+
+	/**
+	 * Compare each table's rows in each adapter with sqlite's, in any order.
+	 * Tables are those copied by {@link RDBMemAdapter#copyOf(RDBAdapter)}: Not sqlite internal or FTS shadow tables.
+	 * @param mem  In-memory copy, to get the table list and column names from
+	 */
+	private void compareTables(final RDBMemAdapter mem)
+	{
+		final Vector<String[]> tabs = mem.getRows
+			("sqlite_master", "type = ?", new String[]{ "table" }, new String[]{ "name" }, "name", 0);
+		if (tabs == null)
+		{
+			compare("table list", "tables", "null");
+			return;
+		}
+
+		System.out.println();
+		System.out.println("Tables:");
+		for (final String[] tab : tabs)
+		{
+			final String tabname = tab[0];
+			final String[] cols = mem.getTableColumns(tabname);
+			final List<String> expected = rowStrings(dbs[0].getRows(tabname, (String) null, (String[]) null, cols, null, 0));
+			for (int i = 1; i < dbs.length; ++i)
+			{
+				final List<String> actual = rowStrings(dbs[i].getRows(tabname, (String) null, (String[]) null, cols, null, 0));
+				compare("table " + tabname + ": " + DB_NAMES[i], expected.toString(), actual.toString());
+			}
+			System.out.println("  " + tabname + ": " + expected.size() + " rows");
+		}
+	}
+
+	/**
+	 * Run {@link #nChecks} randomized queries of the trip and tstop tables on each adapter
+	 * and compare their results with sqlite's. Prints the time each adapter took.
+	 */
+	private void compareRandomQueries()
+	{
+		final RDBAdapter sq = dbs[0];
+		final int maxTripID = sq.getRowIntField("trip", "max(_id)", (String) null, (String[]) null, 0);
+		final int maxTStopID = sq.getRowIntField("tstop", "max(_id)", (String) null, (String[]) null, 0);
+		final int minTime = sq.getRowIntField("trip", "min(time_start)", (String) null, (String[]) null, 0);
+		final int maxTime = sq.getRowIntField("trip", "max(time_start)", (String) null, (String[]) null, 0);
+		final int maxVID = sq.getRowIntField("vehicle", "max(_id)", (String) null, (String[]) null, 0);
+		final int timeSpan = Math.max(1, maxTime - minTime);
+		final long[] queryNS = new long[dbs.length];
+
+		for (int k = 0; k < nChecks; ++k)
+		{
+			String tabname = "trip";
+			String[] fields = TRIP_FIELDS;
+			String orderby = "_id";
+			int limit = 0;
+			final String where;
+			String[] args = null;
+
+			final int x = rnd.nextInt(maxTripID + 10) - 5, y = x + rnd.nextInt(300) - 20;
+			final String vid = Integer.toString(1 + rnd.nextInt(Math.max(1, maxVID)));
+			final int t = minTime + rnd.nextInt(timeSpan + 1);
+			switch (k % 8)
+			{
+			case 0:
+				where = "(_id >= ?) and (_id <= ?) and vid = ?";
+				args = new String[]{ Integer.toString(x), Integer.toString(y), vid };
+				break;
+			case 1:
+				where = "_id > ? and _id < ? and vid <> ?";
+				args = new String[]{ Integer.toString(x), Integer.toString(y), vid };
+				orderby = "_id desc";
+				break;
+			case 2:
+				where = "vid = ? and time_start >= ? and time_start < ?";
+				args = new String[]{ vid, Integer.toString(t), Integer.toString(t + rnd.nextInt(timeSpan / 20 + 1)) };
+				orderby = "time_start, _id";
+				break;
+			case 3:
+				where = "(_id >= ?) and (_id <= ?) or vid = ?";
+				args = new String[]{ Integer.toString(x), Integer.toString(y), vid };
+				limit = 100;
+				break;
+			case 4:
+				{
+					StringBuilder sb = new StringBuilder("_id in (");
+					final int n = 1 + rnd.nextInt(60);
+					for (int i = 0; i < n; ++i)
+					{
+						if (i > 0)
+							sb.append(',');
+						sb.append(1 + rnd.nextInt(maxTripID + 1));
+					}
+					sb.append(") and vid = ?");
+					where = sb.toString();
+					args = new String[]{ vid };
+					orderby = "time_start, _id";
+				}
+				break;
+			case 5:
+				fields = TRIP_AGG_FIELDS;
+				where = "vid = ? and time_start >= ?";
+				args = new String[]{ vid, Integer.toString(t) };
+				orderby = null;
+				break;
+			case 6:
+				where = "vid = ?";
+				args = new String[]{ vid };
+				orderby = "time_start desc, _id desc";
+				limit = 1 + rnd.nextInt(100);
+				break;
+			default:
+				{
+					final int s = rnd.nextInt(maxTStopID + 10);
+					tabname = "tstop";
+					fields = TSTOP_FIELDS;
+					where = "tripid = ? and _id >= ? and _id <= ?";
+					args = new String[]{ Integer.toString(1 + rnd.nextInt(maxTripID + 1)),
+						Integer.toString(s - rnd.nextInt(1000)), Integer.toString(s + rnd.nextInt(1000)) };
+				}
+			}
+
+			String expected = null;
+			for (int i = 0; i < dbs.length; ++i)
+			{
+				final long t0 = System.nanoTime();
+				final Vector<String[]> rows = dbs[i].getRows(tabname, where, args, fields, orderby, limit);
+				queryNS[i] += System.nanoTime() - t0;
+				final String actual = rowsToString(rows);
+				if (i == 0)
+					expected = actual;
+				else
+					compare("query " + tabname + " where " + where + " " + Arrays.toString(args)
+						+ " order by " + orderby + " limit " + limit + ": " + DB_NAMES[i],
+						expected, actual);
+			}
+		}
+
+		System.out.println();
+		System.out.print(nChecks + " randomized queries:");
+		for (int i = 0; i < dbs.length; ++i)
+			System.out.print("  " + DB_NAMES[i] + " " + (queryNS[i] / 1000000) + " ms");
+		System.out.println();
+	}
+
+	/**
+	 * Find the vehicle having the most trips.
+	 * @param db  Db to search
+	 * @return  That vehicle, or null if no vehicle has any trips
+	 */
+	private static Vehicle vehicleWithMostTrips(final RDBAdapter db)
+	{
+		final Vehicle[] all = Vehicle.getAll(db, 0);
+		if (all == null)
+			return null;
+
+		Vehicle most = null;
+		int mostTrips = 0;
+		for (final Vehicle v : all)
+		{
+			final int n = db.getCount("trip", "vid", v.getID());
+			if (n > mostTrips)
+			{
+				most = v;
+				mostTrips = n;
+			}
+		}
+
+		return most;
+	}
+
+	/**
+	 * Time and check one adapter's logbook of a vehicle: 2-week, Lazy Mode and all-weeks opens,
+	 * Lazy Mode viewport jumps, random getValueAt calls, and simple-mode trip writing.
+	 * Uses the same random sequence for each adapter, so their rendered text can be compared.
+	 * @param dbi  Index of adapter in {@link #dbs}
+	 * @param vid  Vehicle ID
+	 * @return  Hash of all text rendered, to compare with the other adapters'
+	 * @throws RDBKeyNotFoundException if the vehicle can't be read
+	 */
+	private long checkLogbook(final int dbi, final int vid)
+		throws RDBKeyNotFoundException
+	{
+		final RDBAdapter db = dbs[dbi];
+		final String dbName = DB_NAMES[dbi];
+		final Random lrnd = new Random(seed);
+		long hash = 0;
+
+		Settings.clearSettingsCache();
+		final Vehicle veh = new Vehicle(db, vid);
+		final StringBuilder times = new StringBuilder("  " + dbName + ":");
+
+		long t0 = System.nanoTime();
+		final LogbookTableModel twoWeek = new LogbookTableModel(veh, 2, null, db);
+		times.append(" 2-week open " + msSince(t0) + " ms;");
+		hash = hashRows(twoWeek, 0, twoWeek.getRowCount(), hash);
+
+		t0 = System.nanoTime();
+		final LogbookTableModel lazy = new LogbookTableModel(veh, null, db);
+		times.append(" lazy open " + msSince(t0) + " ms;");
+
+		// Viewport jumps: 1 in 4 is a random jump, the rest scroll near the previous viewport
+		final int[] tracked = { lazy.getRowCount() };
+		lazy.setListener(new TableChangeListener()
+		{
+			public void fireTableRowsInserted(final int first, final int last) { tracked[0] += (last - first + 1); }
+			public void fireTableRowsDeleted(final int first, final int last) { tracked[0] -= (last - first + 1); }
+			public void fireTableRowsUpdated(final int first, final int last) {}
+			public void fireTableCellUpdated(final int row, final int col) {}
+		});
+		int r0 = 0;
+		t0 = System.nanoTime();
+		for (int k = 0; k < nChecks; ++k)
+		{
+			final int R = lazy.getRowCount();
+			if (R <= VIEWPORT_ROWS)
+				r0 = 0;
+			else if ((k % 4) == 0)
+				r0 = lrnd.nextInt(R - VIEWPORT_ROWS);
+			else
+				r0 = Math.min(R - VIEWPORT_ROWS, Math.max(0, r0 + lrnd.nextInt(200) - 60));
+
+			for (int pass = 0; pass < 5; ++pass)
+			{
+				hashRows(lazy, r0, r0 + VIEWPORT_ROWS, 0);
+				if (! lazy.renderLazyPending())
+					break;
+			}
+			hash = hashRows(lazy, r0, r0 + VIEWPORT_ROWS, hash);
+		}
+		times.append(" " + nChecks + " lazy viewport jumps " + msSince(t0) + " ms;");
+		compare("lazy row count from listener: " + dbName,
+			Integer.toString(lazy.getRowCount()), Integer.toString(tracked[0]));
+
+		t0 = System.nanoTime();
+		final LogbookTableModel all = new LogbookTableModel(veh, 0, null, db);
+		times.append(" all-weeks open " + msSince(t0) + " ms");
+		System.out.println(times);
+
+		// Random getValueAt vs linear scan of each range's rows
+		final ArrayList<String[]> allRows = new ArrayList<String[]>();
+		for (int i = 0; i < all.getRangeCount(); ++i)
+		{
+			final Vector<String[]> tText = all.getRange(i).tText;
+			if (tText != null)
+				allRows.addAll(tText);
+		}
+		compare("all-weeks row count: " + dbName,
+			Integer.toString(allRows.size()), Integer.toString(all.getRowCount()));
+		final int R = Math.min(allRows.size(), all.getRowCount()), C = all.getColumnCount();
+		final int nCalls = nChecks * GETVALUE_CALLS_PER_CHECK;
+		int bad = 0;
+		if (R > 0)
+		{
+			for (int k = 0; k < nChecks; ++k)
+			{
+				final int r = lrnd.nextInt(R), c = lrnd.nextInt(C);
+				if (! String.valueOf(allRows.get(r)[c]).equals(String.valueOf(all.getValueAt(r, c))))
+					++bad;
+			}
+			t0 = System.nanoTime();
+			for (int k = 0; k < nCalls; ++k)
+				hash = 31 * hash + String.valueOf(all.getValueAt(lrnd.nextInt(R), 0)).hashCode();
+			System.out.println("    " + nCalls + " random getValueAt calls: " + msSince(t0) + " ms");
+		}
+		compare("getValueAt vs row scan: " + dbName, "0 wrong", bad + " wrong");
+
+		// Simple-mode trips: write cells directly, or render a simple-mode copy's text rows
+		final StringBuilder written = new StringBuilder();
+		final LogbookTableModel.CellWriter w = new LogbookTableModel.CellWriter()
+		{
+			private boolean first = true;
+			public void writeCell(final CharSequence cell)
+			{
+				if (! first)
+					written.append(',');
+				if (cell != null)
+					written.append(cell);
+				first = false;
+			}
+			public void writeCell(final int cell)
+			{
+				if (! first)
+					written.append(',');
+				written.append(cell);
+				first = false;
+			}
+			public void endLine()
+			{
+				written.append('\n');
+				first = true;
+			}
+		};
+		t0 = System.nanoTime();
+		for (int i = 0; i < all.getRangeCount(); ++i)
+		{
+			final List<Trip> trips = all.getRange(i).tr;
+			if (trips != null)
+				all.writeTripsSimple(trips, w, db);
+		}
+		final long writeMS = msSince(t0);
+
+		final StringBuilder rendered = new StringBuilder();
+		final boolean wasSimple = LogbookTableModel.trip_simple_mode;
+		t0 = System.nanoTime();
+		try
+		{
+			LogbookTableModel.trip_simple_mode = true;
+			final LogbookTableModel simple = new LogbookTableModel(all, db);
+			for (int i = 0; i < simple.getRangeCount(); ++i)
+			{
+				final Vector<String[]> tText = simple.getRange(i).tText;
+				if (tText == null)
+					continue;
+
+				for (final String[] row : tText)
+				{
+					for (int c = 0; c < row.length; ++c)
+					{
+						if (c > 0)
+							rendered.append(',');
+						if (row[c] != null)
+							rendered.append(row[c]);
+					}
+					rendered.append('\n');
+				}
+			}
+		} finally {
+			LogbookTableModel.trip_simple_mode = wasSimple;
+		}
+		System.out.println("    simple-mode trips: writeTripsSimple " + writeMS + " ms; simple-mode copy "
+			+ msSince(t0) + " ms; " + written.length() + " chars");
+		final String writtenStr = written.toString();
+		compare("writeTripsSimple vs simple-mode copy: " + dbName, rendered.toString(), writtenStr);
+
+		return 31 * hash + writtenStr.hashCode();
+	}
+
+	/**
+	 * Add the text of some of a logbook's rows to a hash.
+	 * In Lazy Mode, also requests any unrendered rows, like a table showing them.
+	 * @param ltm  Logbook
+	 * @param from  First row
+	 * @param to  Row after the last one; may be past the end
+	 * @param hash  Hash so far
+	 * @return  Updated hash
+	 */
+	private static long hashRows(final LogbookTableModel ltm, final int from, int to, long hash)
+	{
+		to = Math.min(to, ltm.getRowCount());
+		final int C = ltm.getColumnCount();
+		for (int r = from; r < to; ++r)
+			for (int c = 0; c < C; ++c)
+				hash = 31 * hash + String.valueOf(ltm.getValueAt(r, c)).hashCode();
+
+		return hash;
+	}
+
+	/**
+	 * Count a comparison, and if {@code expected} and {@code actual} differ, count and describe the mismatch.
+	 * @param what  Description of what was compared, for output
+	 * @param expected  Expected value, from sqlite
+	 * @param actual  Actual value
+	 */
+	private void compare(final String what, final String expected, final String actual)
+	{
+		++compared;
+		if (expected.equals(actual))
+			return;
+
+		++mismatches;
+		if (mismatches <= MAX_MISMATCH_DETAILS)
+		{
+			System.out.println("MISMATCH: " + what);
+			System.out.println("  expected: " + abbreviate(expected));
+			System.out.println("  actual:   " + abbreviate(actual));
+		}
+	}
+
+	/** Abbreviate a long string to its first 300 characters, for {@link #compare(String, String, String)}. */
+	private static String abbreviate(final String s)
+	{
+		return (s.length() <= 300) ? s : (s.substring(0, 300) + "... (" + s.length() + " chars)");
+	}
+
+	/**
+	 * Format rows as a string for comparison, keeping their order.
+	 * @param rows  Rows from getRows, or null
+	 * @return  {@code "null"} or the rows' contents
+	 */
+	private static String rowsToString(final Vector<String[]> rows)
+	{
+		if (rows == null)
+			return "null";
+
+		final StringBuilder sb = new StringBuilder();
+		for (final String[] r : rows)
+			sb.append(Arrays.toString(r));
+
+		return sb.toString();
+	}
+
+	/**
+	 * Format each row as a string, sorted, for comparing tables whose rows may be read in any order.
+	 * @param rows  Rows from getRows, or null
+	 * @return  Sorted row strings; empty if {@code rows} is null
+	 */
+	private static List<String> rowStrings(final Vector<String[]> rows)
+	{
+		final ArrayList<String> ret = new ArrayList<String>();
+		if (rows != null)
+			for (final String[] r : rows)
+				ret.add(Arrays.toString(r));
+		Collections.sort(ret);
+
+		return ret;
+	}
+
+	/** Milliseconds elapsed since {@code t0} from {@link System#nanoTime()}. */
+	private static long msSince(final long t0)
+	{
+		return (System.nanoTime() - t0) / 1000000;
+	}
+
+	/** Approximate heap in use after garbage collection, in bytes. */
+	private static long usedHeap()
+	{
+		final Runtime rt = Runtime.getRuntime();
+		System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}  // public class AdapterCheck
@@ -0,0 +1,789 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.bookedit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBVerifier;
+import org.shadowlands.roadtrip.db.Settings;
+import org.shadowlands.roadtrip.db.Trip;
+import org.shadowlands.roadtrip.db.jdbc.RDBJDBCAdapter;
+import org.shadowlands.roadtrip.util.FixedDec;
+
+/**
+ * Headless batch mode for BookEdit: Processes every logbook file in a directory
+ * without opening any windows, using a fixed-size pool of worker threads.
+ * For each {@code .bak}, {@code .sqlite} or {@code .db} file:
+ *<OL>
+ * <LI> Open it and check its physical structure ({@link RDBVerifier#LEVEL_PHYS})
+ * <LI> If its schema is older than {@link RDBSchema#DATABASE_VERSION}, upgrade a copy
+ *      with {@link RDBSchema#upgradeCopyToCurrent(File, File, int, RDBSchema.UpgradeCopyCaller)}.
+ *      Input files are never changed.
+ * <LI> Verify its data at the requested level (default {@link RDBVerifier#LEVEL_TDATA})
+ * <LI> Export all vehicles' trips to a CSV file
+ * <LI> Gather summary stats: Number of vehicles, trips, stops, etc, date range, total distance
+ *</OL>
+ * Results for all files are written to the consolidated report {@link #REPORT_FILENAME}
+ * in the output directory, in filename order, and summarized on {@code System.out}.
+ *<P>
+ * Usage, as printed by {@link #printUsage()}:
+ *<pre>
+ * java -jar slroadtrip-bookedit.jar -batch [-threads n] [-verify phys|mdata|tdata|none] [-nocsv] indir [outdir]
+ *</pre>
+ * Each worker uses its own {@link RDBJDBCAdapter}. Verification, stats and CSV export run in parallel;
+ * they read the db directly, without the record classes' static caches: Verification uses
+ * {@link RDBVerifier#RDBVerifier(RDBAdapter, boolean) low-memory mode}, which reads rows into bitsets
+ * instead of caching records, so its memory use also stays small for huge logbooks.
+ * Those caches ({@link Settings}, {@code VehSettings}, the location and route indexes, etc) are process-wide
+ * and assume a single db, so the schema upgrade, which uses them, is serialized with {@link #SHARED_CACHE_LOCK}
+ * and clears the caches with {@link Settings#clearSettingsCache()} when done. Files don't affect each other.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class BatchProcessor
+{
+	/** Command-line flag to run batch mode instead of the GUI: {@code -batch} */
+	public static final String ARG_BATCH = "-batch";
+
+	/** Filename of the consolidated report written to the output directory: {@code "batch-report.csv"} */
+	public static final String REPORT_FILENAME = "batch-report.csv";
+
+	/** Suffix for a logbook's exported trips in the output directory: {@code "-trips.csv"} */
+	public static final String TRIPS_CSV_SUFFIX = "-trips.csv";
+
+	/** Suffix for a logbook's upgraded copy in the output directory: {@code "-upg.sqlite"} */
+	public static final String UPGRADED_SUFFIX = "-upg.sqlite";
+
+	/** Default output subdirectory within the input directory, if none given: {@code "batch-out"} */
+	public static final String DEFAULT_OUT_SUBDIR = "batch-out";
+
+	/** Number of trips read from the db at a time during CSV export */
+	private static final int EXPORT_CHUNK_SIZE = 500;
+
+	/** Max number of verifier failures to list in the report for each file */
+	private static final int REPORT_MAX_FAILURES = 3;
+
+	/** Columns of {@link #REPORT_FILENAME} */
+	private static final String[] REPORT_HEADINGS =
+		{ "file", "status", "schema_version", "upgraded", "verify_result",
+		  "vehicles", "trips", "stops", "gas_stops", "locations",
+		  "first_trip", "last_trip", "total_distance", "elapsed_ms", "message" };
+
+	/** Columns of each {@link #TRIPS_CSV_SUFFIX} export file */
+	private static final String[] TRIPS_CSV_HEADINGS =
+		{ "trip_id", "vehicle", "time_start", "time_end", "odo_start", "odo_end",
+		  "distance", "start_location", "stops", "comment" };
+
+	/** Trip fields read for CSV export */
+	private static final String[] TRIP_EXPORT_FIELDS =
+		{ "_id", "vid", "time_start", "time_end", "odo_start", "odo_end", "locid_start", "comment" };
+
+	/** Status of a file which was processed and verified without problems */
+	private static final String STATUS_OK = "OK";
+
+	/** Status of a file which was processed, but failed verification */
+	private static final String STATUS_VERIFY_FAILED = "VERIFY_FAILED";
+
+	/** Status of a file which couldn't be processed */
+	private static final String STATUS_ERROR = "ERROR";
+
+	/**
+	 * Lock held by a worker while it runs a step which uses the static single-db record caches:
+	 * Schema upgrade. The caches are cleared before releasing it.
+	 */
+	private static final Object SHARED_CACHE_LOCK = new Object();
+
+	/** Callback for {@link RDBSchema#upgradeCopyToCurrent(File, File, int, RDBSchema.UpgradeCopyCaller)} */
+	private static final RDBSchema.UpgradeCopyCaller rdbUpgCaller = new RDBSchema.UpgradeCopyCaller()
+	{
+		public RDBAdapter openRDB(final String fullPath)
+			throws ClassNotFoundException, SQLException
+		{
+			return new RDBJDBCAdapter(fullPath);
+		}
+	};
+
+	/** Input directory to process */
+	private final File inDir;
+
+	/** Output directory for report, exports and upgraded copies */
+	private final File outDir;
+
+	/** Number of worker threads */
+	private final int nThreads;
+
+	/** Verification level, such as {@link RDBVerifier#LEVEL_TDATA}, or 0 to skip verification */
+	private final int verifyLevel;
+
+	/** Should trips be exported to CSV? */
+	private final boolean doExport;
+
+	/**
+	 * Create a batch processor; call {@link #run()} to process the files.
+	 * @param inDir  Directory of logbook files to process
+	 * @param outDir  Output directory; will be created if needed
+	 * @param nThreads  Number of worker threads, at least 1
+	 * @param verifyLevel  Verification level such as {@link RDBVerifier#LEVEL_TDATA}, or 0 to skip verification
+	 * @param doExport  If true, export each logbook's trips to a CSV file in {@code outDir}
+	 * @throws IllegalArgumentException if {@code nThreads} &lt; 1 or {@code verifyLevel} out of range
+	 */
+	public BatchProcessor
+		(final File inDir, final File outDir, final int nThreads, final int verifyLevel, final boolean doExport)
+		throws IllegalArgumentException
+	{
+		if (nThreads < 1)
+			throw new IllegalArgumentException("nThreads: " + nThreads);
+		if ((verifyLevel < 0) || (verifyLevel > RDBVerifier.LEVEL_TDATA))
+			throw new IllegalArgumentException("verifyLevel: " + verifyLevel);
+
+		this.inDir = inDir;
+		this.outDir = outDir;
+		this.nThreads = nThreads;
+		this.verifyLevel = verifyLevel;
+		this.doExport = doExport;
+	}
+
+	/**
+	 * Run batch mode from the command line, as called from {@link Main#main(String[])}.
+	 * Calls {@link System#exit(int)} when done: Exit code 0 if all files are OK,
+	 * 1 if any failed verification or couldn't be processed, 2 for usage errors.
+	 * @param args  Command-line arguments, starting with {@link #ARG_BATCH}
+	 */
+	public static void main(final String[] args)
+	{
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		int verifyLevel = RDBVerifier.LEVEL_TDATA;
+		boolean doExport = true;
+		final List<String> dirs = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; ++i)
+		{
+			final String a = args[i];
+			if (a.equals(ARG_BATCH))
+				continue;
+
+			if (a.equals("-threads") && (i + 1 < args.length))
+			{
+				try
+				{
+					nThreads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					nThreads = 0;
+				}
+				if (nThreads < 1)
+				{
+					System.err.println("-threads: must be a number 1 or higher");
+					printUsage();
+					System.exit(2);
+				}
+			}
+			else if (a.equals("-verify") && (i + 1 < args.length))
+			{
+				final String lv = args[++i].toLowerCase(Locale.US);
+				if (lv.equals("none"))
+					verifyLevel = 0;
+				else if (lv.equals("phys"))
+					verifyLevel = RDBVerifier.LEVEL_PHYS;
+				else if (lv.equals("mdata"))
+					verifyLevel = RDBVerifier.LEVEL_MDATA;
+				else if (lv.equals("tdata"))
+					verifyLevel = RDBVerifier.LEVEL_TDATA;
+				else
+				{
+					System.err.println("-verify: unknown level " + lv);
+					printUsage();
+					System.exit(2);
+				}
+			}
+			else if (a.equals("-nocsv"))
+			{
+				doExport = false;
+			}
+			else if (a.startsWith("-"))
+			{
+				System.err.println("Unknown option: " + a);
+				printUsage();
+				System.exit(2);
+			}
+			else
+			{
+				dirs.add(a);
+			}
+		}
+
+		if ((dirs.size() < 1) || (dirs.size() > 2))
+		{
+			printUsage();
+			System.exit(2);
+		}
+
+		final File inDir = new File(dirs.get(0));
+		if (! inDir.isDirectory())
+		{
+			System.err.println("Not a directory: " + inDir);
+			System.exit(2);
+		}
+		final File outDir = (dirs.size() > 1) ? new File(dirs.get(1)) : new File(inDir, DEFAULT_OUT_SUBDIR);
+
+		int exitCode;
+		try
+		{
+			final BatchProcessor bp = new BatchProcessor
+				(inDir, outDir, nThreads, verifyLevel, doExport);
+			exitCode = (bp.run()) ? 0 : 1;
+		} catch (IOException e) {
+			System.err.println("Batch processing failed: " + e);
+			exitCode = 1;
+		}
+
+		System.exit(exitCode);
+	}
+
+	/** Print command-line usage to {@code System.err}. */
+	public static void printUsage()
+	{
+		System.err.println("Usage: java -jar slroadtrip-bookedit.jar " + ARG_BATCH
+			+ " [-threads n] [-verify phys|mdata|tdata|none] [-nocsv] indir [outdir]");
+		System.err.println("  Processes each .bak, .sqlite and .db logbook file in indir:");
+		System.err.println("  verifies it, upgrades a copy if its schema is old, exports its trips to CSV,");
+		System.err.println("  and writes a summary of all files to outdir/" + REPORT_FILENAME);
+		System.err.println("  Default outdir is indir/" + DEFAULT_OUT_SUBDIR
+			+ ", default threads is the number of CPUs, default verify is tdata.");
+	}
+
+	/**
+	 * Find the logbook files in the input directory, process them in the worker pool,
+	 * and write the consolidated report when all are done.
+	 * @return true if all files were processed and verified OK, false if any failed
+	 * @throws IOException if the output directory can't be created or the report can't be written
+	 */
+	public boolean run()
+		throws IOException
+	{
+		if (! (outDir.isDirectory() || outDir.mkdirs()))
+			throw new IOException("Could not create directory: " + outDir);
+
+		File[] files = inDir.listFiles(new FileFilter()
+		{
+			public boolean accept(final File f)
+			{
+				if (! f.isFile())
+					return false;
+				final String fn = f.getName().toLowerCase(Locale.US);
+				return fn.endsWith(".bak") || fn.endsWith(".sqlite") || fn.endsWith(".db");
+			}
+		});
+		if (files == null)
+			throw new IOException("Could not list directory: " + inDir);
+		Arrays.sort(files);
+
+		System.out.println("Batch: " + files.length + " files in " + inDir + ", " + nThreads + " threads");
+		final long t0 = System.currentTimeMillis();
+
+		final List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(files.length);
+		final ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		try
+		{
+			for (final File f : files)
+			{
+				futures.add(pool.submit(new Callable<FileResult>()
+				{
+					public FileResult call()
+					{
+						return processFile(f);
+					}
+				}));
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		final List<FileResult> results = new ArrayList<FileResult>(files.length);
+		for (int i = 0; i < files.length; ++i)
+		{
+			FileResult fr;
+			try
+			{
+				fr = futures.get(i).get();
+			} catch (InterruptedException e) {
+				fr = new FileResult(files[i]);
+				fr.setError("Interrupted");
+			} catch (ExecutionException e) {
+				fr = new FileResult(files[i]);
+				fr.setError(e.getCause().toString());
+			}
+			results.add(fr);
+			System.out.println(fr.file.getName() + ": " + fr.status
+				+ ((fr.message != null) ? (" - " + fr.message) : ""));
+		}
+
+		writeReport(results);
+
+		int nOK = 0;
+		for (FileResult fr : results)
+			if (fr.status.equals(STATUS_OK))
+				++nOK;
+		System.out.println("Batch done: " + nOK + " of " + results.size() + " OK in "
+			+ (System.currentTimeMillis() - t0) + " ms; report is "
+			+ new File(outDir, REPORT_FILENAME).getAbsolutePath());
+
+		return (nOK == results.size());
+	}
+
+	/**
+	 * Process one logbook file: Check, upgrade a copy if needed, verify, export, gather stats.
+	 * Runs in a worker thread; catches all exceptions into the result.
+	 * @param f  Logbook file; won't be changed
+	 * @return  Result of processing {@code f}; not null
+	 */
+	private FileResult processFile(final File f)
+	{
+		final long t0 = System.currentTimeMillis();
+		final FileResult fr = new FileResult(f);
+		RDBAdapter db = null;
+		try
+		{
+			final String fname = f.getAbsolutePath();
+
+			// Schema version, then physical structure
+			try
+			{
+				fr.schemaVersion = RDBJDBCAdapter.readSchemaVersion(fname);
+			} catch (Exception e) {
+				fr.setError("Could not read schema version: " + e);
+				return fr;  // <--- Early return: Not a logbook ---
+			}
+			if (fr.schemaVersion < RDBSchema.DB_VERSION_MIN_UPGRADE)
+			{
+				fr.setError("Schema version " + fr.schemaVersion + " too old to open");
+				return fr;
+			}
+			else if (fr.schemaVersion > RDBSchema.DATABASE_VERSION)
+			{
+				fr.setError("Schema version " + fr.schemaVersion + " newer than this program's "
+					+ RDBSchema.DATABASE_VERSION);
+				return fr;
+			}
+
+			db = new RDBJDBCAdapter(fname);
+			if (! verify(db, RDBVerifier.LEVEL_PHYS, fr))
+				return fr;  // <--- Early return: Can't use this file ---
+
+			if (fr.schemaVersion < RDBSchema.DATABASE_VERSION)
+			{
+				db.close();
+				db = null;
+				final File upgFile = new File(outDir, baseName(f) + UPGRADED_SUFFIX);
+				if (upgFile.exists() && ! upgFile.delete())
+				{
+					fr.setError("Could not replace previous upgraded copy " + upgFile);
+					return fr;
+				}
+				synchronized (SHARED_CACHE_LOCK)
+				{
+					try
+					{
+						RDBSchema.upgradeCopyToCurrent(f, upgFile, fr.schemaVersion, rdbUpgCaller);
+					} finally {
+						Settings.clearSettingsCache();
+					}
+				}
+				fr.upgraded = true;
+				db = new RDBJDBCAdapter(upgFile.getAbsolutePath());
+			}
+
+			if ((verifyLevel > RDBVerifier.LEVEL_PHYS) && ! verify(db, verifyLevel, fr))
+				fr.status = STATUS_VERIFY_FAILED;  // continue, for stats and export
+
+			gatherStats(db, fr);
+			if (doExport)
+				exportTrips(db, new File(outDir, baseName(f) + TRIPS_CSV_SUFFIX));
+		} catch (Throwable t) {
+			fr.setError(t.toString());
+		} finally {
+			if (db != null)
+			{
+				try { db.close(); }
+				catch (Throwable t) {}
+			}
+			fr.elapsedMillis = System.currentTimeMillis() - t0;
+		}
+
+		return fr;
+	}
+
+	/**
+	 * Verify a db at one level, and record the result.
+	 * Checks physical structure first. Uses {@link RDBVerifier}'s low-memory mode, which doesn't use
+	 * the static record caches, so workers can verify their files at the same time.
+	 * @param db  Open db to verify
+	 * @param level  Level such as {@link RDBVerifier#LEVEL_PHYS}
+	 * @param fr  Result to update: Sets {@link FileResult#verifyResult}, and error status if {@code LEVEL_PHYS} fails
+	 * @return true if verification passed
+	 */
+	private boolean verify(final RDBAdapter db, final int level, final FileResult fr)
+	{
+		final RDBVerifier v = new RDBVerifier(db, true);
+		int res;
+		try
+		{
+			res = v.verify(RDBVerifier.LEVEL_PHYS);
+			if ((res == 0) && (level > RDBVerifier.LEVEL_PHYS))
+				res = v.verify(level);
+		} catch (IllegalStateException e) {
+			res = level;
+		}
+
+		fr.verifyResult = res;
+		if (res != 0)
+		{
+			final StringBuilder sb = new StringBuilder("Verify failed at level ");
+			sb.append(res);
+			final int n = Math.min(v.failedItems.size(), REPORT_MAX_FAILURES);
+			for (int i = 0; i < n; ++i)
+			{
+				sb.append((i == 0) ? ": " : "; ");
+				final RDBVerifier.FailedItem fi = v.failedItems.get(i);
+				sb.append(fi.id);
+				if (fi.desc != null)
+				{
+					sb.append(' ');
+					sb.append(fi.desc);
+				}
+			}
+			if (v.failedItems.size() > n)
+				sb.append("; ...");
+			fr.message = sb.toString();
+			if (res == RDBVerifier.LEVEL_PHYS)
+				fr.status = STATUS_ERROR;
+		}
+		v.release();
+
+		return (res == 0);
+	}
+
+	/**
+	 * Count the db's records, and find its trip date range and total distance.
+	 * @param db  Open db
+	 * @param fr  Result to update
+	 */
+	private static void gatherStats(final RDBAdapter db, final FileResult fr)
+	{
+		fr.nVehicles = db.getCount("vehicle", null, null);
+		fr.nTrips = db.getCount("trip", null, null);
+		fr.nStops = db.getCount("tstop", null, null);
+		fr.nGas = db.getCount("tstop_gas", null, null);
+		fr.nLocations = db.getCount("location", null, null);
+		fr.tripTimes = Trip.getDBEarliestLatestTripTimes(db);
+		fr.totalDistance = db.getRowLongField
+			("trip", "sum(odo_end - odo_start)", "odo_end > 0", (String[]) null, 0);
+	}
+
+	/**
+	 * Export all trips to a CSV file, reading {@link #EXPORT_CHUNK_SIZE} trips at a time
+	 * so memory use doesn't depend on the db's size.
+	 * Distances are in the db's storage units, with 1 decimal place.
+	 * @param db  Open db
+	 * @param csvFile  File to write; will be replaced if exists
+	 * @throws IOException if an error occurs writing the file
+	 */
+	private static void exportTrips(final RDBAdapter db, final File csvFile)
+		throws IOException
+	{
+		final HashMap<String, String> vehNames = readNames(db, "vehicle", "nickname");
+		final HashMap<String, String> locNames = readNames(db, "location", "loc_descr");
+		final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		final String[] stopFields = { "tripid" };
+		final HashMap<String, Integer> stopCounts = new HashMap<String, Integer>();
+
+		final Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8"));
+		try
+		{
+			final StringBuilder sb = new StringBuilder();
+			writeCSVRow(w, sb, TRIPS_CSV_HEADINGS);
+
+			final CharSequence[] row = new CharSequence[TRIPS_CSV_HEADINGS.length];
+			final StringBuilder odoStartSB = new StringBuilder(), odoEndSB = new StringBuilder(),
+				distSB = new StringBuilder();  // reused for each row's distance fields
+			final String[] args = { "0" };
+			for (;;)
+			{
+				final Vector<String[]> trips = db.getRows
+					("trip", "_id > ?", args, TRIP_EXPORT_FIELDS, "_id", EXPORT_CHUNK_SIZE);
+				if (trips == null)
+					break;
+
+				// count this chunk's stops with 1 query
+				stopCounts.clear();
+				final Vector<String[]> stops = db.getRows
+					("tstop", "tripid > ? and tripid <= ?", new String[]{ args[0], trips.lastElement()[0] },
+					 stopFields, null, 0);
+				if (stops != null)
+				{
+					for (final String[] st : stops)
+					{
+						final Integer n = stopCounts.get(st[0]);
+						stopCounts.put(st[0], Integer.valueOf((n != null) ? (n.intValue() + 1) : 1));
+					}
+				}
+
+				for (final String[] tr : trips)
+				{
+					final int odoStart = parseIntOr0(tr[4]), odoEnd = parseIntOr0(tr[5]);
+					row[0] = tr[0];
+					row[1] = vehNames.get(tr[1]);
+					row[2] = formatTime(df, tr[2]);
+					row[3] = formatTime(df, tr[3]);
+					row[4] = formatTenths(odoStartSB, odoStart);
+					row[5] = (odoEnd != 0) ? formatTenths(odoEndSB, odoEnd) : null;
+					row[6] = (odoEnd != 0) ? formatTenths(distSB, odoEnd - odoStart) : null;
+					row[7] = (tr[6] != null) ? locNames.get(tr[6]) : null;
+					final Integer nStops = stopCounts.get(tr[0]);
+					row[8] = (nStops != null) ? nStops.toString() : "0";
+					row[9] = tr[7];
+					writeCSVRow(w, sb, row);
+				}
+
+				args[0] = trips.lastElement()[0];
+				if (trips.size() < EXPORT_CHUNK_SIZE)
+					break;
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Read all of a table's {@code _id}s and one text field into a map.
+	 * @param db  Open db
+	 * @param tabname  Table to read
+	 * @param field  Field to read
+	 * @return  Map from {@code _id} to field value; may be empty, not null
+	 */
+	private static HashMap<String, String> readNames(final RDBAdapter db, final String tabname, final String field)
+	{
+		final HashMap<String, String> names = new HashMap<String, String>();
+		final Vector<String[]> rows = db.getRows
+			(tabname, (String) null, (String[]) null, new String[]{ "_id", field }, null, 0);
+		if (rows != null)
+			for (final String[] r : rows)
+				names.put(r[0], r[1]);
+
+		return names;
+	}
+
+	/**
+	 * Write the consolidated report for all files.
+	 * @param results  Results, in the order to write them
+	 * @throws IOException if an error occurs writing the file
+	 */
+	private void writeReport(final List<FileResult> results)
+		throws IOException
+	{
+		final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		final Writer w = new BufferedWriter(new OutputStreamWriter
+			(new FileOutputStream(new File(outDir, REPORT_FILENAME)), "UTF-8"));
+		try
+		{
+			final StringBuilder sb = new StringBuilder();
+			writeCSVRow(w, sb, REPORT_HEADINGS);
+			final String[] row = new String[REPORT_HEADINGS.length];
+			for (final FileResult fr : results)
+			{
+				final boolean hasStats = (fr.nVehicles >= 0);
+				row[0] = fr.file.getName();
+				row[1] = fr.status;
+				row[2] = (fr.schemaVersion != 0) ? Integer.toString(fr.schemaVersion) : null;
+				row[3] = (fr.upgraded) ? "Y" : "N";
+				row[4] = (fr.verifyResult >= 0) ? Integer.toString(fr.verifyResult) : null;
+				row[5] = (hasStats) ? Integer.toString(fr.nVehicles) : null;
+				row[6] = (hasStats) ? Integer.toString(fr.nTrips) : null;
+				row[7] = (hasStats) ? Integer.toString(fr.nStops) : null;
+				row[8] = (hasStats) ? Integer.toString(fr.nGas) : null;
+				row[9] = (hasStats) ? Integer.toString(fr.nLocations) : null;
+				row[10] = (fr.tripTimes != null) ? df.format(new Date(fr.tripTimes[0] * 1000L)) : null;
+				row[11] = (fr.tripTimes != null) ? df.format(new Date(fr.tripTimes[1] * 1000L)) : null;
+				row[12] = (hasStats) ? FixedDec.format(fr.totalDistance, 1) : null;
+				row[13] = Long.toString(fr.elapsedMillis);
+				row[14] = fr.message;
+				writeCSVRow(w, sb, row);
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Write one row to a CSV file. Fields are quoted only if they contain a comma, quote or newline.
+	 * @param w  Writer
+	 * @param sb  Buffer to reuse for building the row; will be cleared
+	 * @param fields  Row's fields; null fields are written as empty
+	 * @throws IOException if an error occurs writing
+	 */
+	private static void writeCSVRow(final Writer w, final StringBuilder sb, final CharSequence[] fields)
+		throws IOException
+	{
+		sb.setLength(0);
+		for (int i = 0; i < fields.length; ++i)
+		{
+			if (i > 0)
+				sb.append(',');
+			final CharSequence s = fields[i];
+			if (s == null)
+				continue;
+
+			boolean quote = false;
+			for (int j = 0; j < s.length() && ! quote; ++j)
+			{
+				final char c = s.charAt(j);
+				quote = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+			}
+			if (! quote)
+			{
+				sb.append(s);
+				continue;
+			}
+
+			sb.append('"');
+			for (int j = 0; j < s.length(); ++j)
+			{
+				final char c = s.charAt(j);
+				if (c == '"')
+					sb.append('"');
+				sb.append(c);
+			}
+			sb.append('"');
+		}
+		sb.append('\n');
+		w.write(sb.toString());
+	}
+
+	/**
+	 * Format a distance or odometer in tenths into a reused buffer, such as 12345 -> "1234.5".
+	 * @param sb  Buffer to reuse; will be cleared
+	 * @param tenths  Distance, in tenths
+	 * @return  {@code sb}
+	 */
+	private static StringBuilder formatTenths(final StringBuilder sb, final long tenths)
+	{
+		sb.setLength(0);
+		return FixedDec.append(sb, tenths, 1);
+	}
+
+	/** Format a unix-time db field, or return null if {@code t} is null or 0 */
+	private static String formatTime(final SimpleDateFormat df, final String t)
+	{
+		final int ti = parseIntOr0(t);
+		return (ti != 0) ? df.format(new Date(ti * 1000L)) : null;
+	}
+
+	/** Parse an int db field, or return 0 if null or not an int */
+	private static int parseIntOr0(final String s)
+	{
+		if (s == null)
+			return 0;
+
+		try
+		{
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/** A file's name without its extension, for naming its output files */
+	private static String baseName(final File f)
+	{
+		final String fn = f.getName();
+		final int i = fn.lastIndexOf('.');
+		return (i > 0) ? fn.substring(0, i) : fn;
+	}
+
+	/**
+	 * Results of processing one logbook file, for the consolidated report.
+	 */
+	private static final class FileResult
+	{
+		final File file;
+
+		/** {@link BatchProcessor#STATUS_OK}, {@link BatchProcessor#STATUS_VERIFY_FAILED},
+		 *  or {@link BatchProcessor#STATUS_ERROR} */
+		String status = STATUS_OK;
+
+		/** Error or verification failure details, or null */
+		String message;
+
+		/** Schema version before any upgrade, or 0 if unknown */
+		int schemaVersion;
+
+		/** Was a copy upgraded to the current schema? */
+		boolean upgraded;
+
+		/** Result from {@link RDBVerifier#verify(int)}, or -1 if not verified */
+		int verifyResult = -1;
+
+		/** Record counts, or -1 if stats weren't gathered */
+		int nVehicles = -1, nTrips, nStops, nGas, nLocations;
+
+		/** From {@link Trip#getDBEarliestLatestTripTimes(RDBAdapter)}, or null */
+		int[] tripTimes;
+
+		/** Sum of completed trips' distances, in tenths of the db's distance unit */
+		long totalDistance;
+
+		long elapsedMillis;
+
+		FileResult(final File f)
+		{
+			file = f;
+		}
+
+		/** Set {@link #status} to {@link BatchProcessor#STATUS_ERROR} with this message */
+		void setError(final String msg)
+		{
+			status = STATUS_ERROR;
+			message = msg;
+		}
+	}
+
+}  // public class BatchProcessor
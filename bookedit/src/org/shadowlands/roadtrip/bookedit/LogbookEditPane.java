@@ -33,34 +33,43 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.io.File;
 import java.sql.SQLException;
+import java.util.Calendar;
 import java.util.zip.DataFormatException;
 
 import javax.swing.DefaultCellEditor;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 
 import org.shadowlands.roadtrip.db.AppInfo;
 import org.shadowlands.roadtrip.db.Person;
 import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBArchive;
 import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
+import org.shadowlands.roadtrip.db.RDBMaintenance;
+import org.shadowlands.roadtrip.db.RDBMerge;
 import org.shadowlands.roadtrip.db.RDBSchema;
 import org.shadowlands.roadtrip.db.RDBVerifier;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
 import org.shadowlands.roadtrip.db.jdbc.RDBJDBCAdapter;
+import org.shadowlands.roadtrip.db.mem.RDBMemAdapter;
 import org.shadowlands.roadtrip.model.LogbookTableModel;
 import org.shadowlands.roadtrip.model.TableChangeListener;
 
@@ -81,11 +90,18 @@ public class LogbookEditPane
 	extends JPanel implements ActionListener, ItemListener, WindowListener
 {
 	/**
-	 * Increment in weeks when loading newer/older trips from the database,
-	 * or 0 to load all (This may run out of memory).
+	 * Increment in weeks when loading newer/older trips from the database.
+	 * To show all weeks, see {@link #weeksShown}.
 	 */
 	public static final int WEEK_INCREMENT = 2;
 
+	/**
+	 * Default filename suffix for {@link #actionExportSnapshot()}: {@code "-snapshot.rtrsnap"}.
+	 * When opening a file, snapshots are recognized by their contents, not their name.
+	 * @since 0.9.93
+	 */
+	private static final String SNAPSHOT_FILENAME_SUFFIX = "-snapshot.rtrsnap";
+
 	/**
 	 * Callback for use by {@link #upgradeDBCopy(File, int, JFrame)} if needed.
 	 * @since 0.9.40
@@ -99,15 +115,46 @@ public class LogbookEditPane
 		}
 	};
 
+	/**
+	 * Progress listener for schema upgrades in place or by {@link #upgradeDBCopy(File, int, JFrame)}:
+	 * Prints each step to {@link System#err}.
+	 * @since 0.9.93
+	 */
+	private static final RDBSchema.UpgradeProgressListener rdbUpgProgress = new RDBSchema.UpgradeProgressListener()
+	{
+		public void upgradeProgress(final int stepsDone, final int stepsTotal, final int toVersion)
+		{
+			if (stepsDone < stepsTotal)
+				System.err.println("Upgrade step " + (stepsDone + 1) + " of " + stepsTotal + ": to schema v" + toVersion);
+			else
+				System.err.println("Upgrade steps done: now schema v" + toVersion);
+		}
+	};
+
 	private RDBAdapter conn;
 	private final boolean isReadOnly;
 
+	/**
+	 * Archives of {@link #conn}'s older trips, if any, for {@link #mdata} to load earlier trips from.
+	 * Replaced after {@link #actionArchiveTrips()}, closed when the window closes.
+	 * @since 0.9.93
+	 */
+	private RDBArchive archive;
+
 	/** Vehicle currently being shown in {@link #mdata} */
 	private Vehicle veh;
 
 	/** The trip data for {@link #tb}; see that field's javadoc. */
 	private LBSwingTableModel mdata;
 
+	/**
+	 * Week increment for {@link #mdata}: {@link #WEEK_INCREMENT},
+	 * or 0 to show all weeks by rendering trips only when they're scrolled into view.
+	 * Changed by {@link #cbAllWeeks}.
+	 * @since 0.9.93
+	 */
+	private int weeksShown = WEEK_INCREMENT;
+
 	/** Holds this jpanel */
 	private JFrame lbef;
 
@@ -140,11 +187,36 @@ public class LogbookEditPane
 	/** Label for {@link #jcbVehicles} */
 	private final JLabel lblVehicles;
 
+	/**
+	 * Checkbox to show all of the vehicle's trips, not just the most recent weeks;
+	 * see {@link #actionShowAllWeeks()}.
+	 * @since 0.9.93
+	 */
+	private final JCheckBox cbAllWeeks;
+
 	private JPanel pbtns;  // below JTable
 	private JButton bAddSimple, bAddWithStops, bAddDone, bAddCancel;
 	private JButton bTmpValidateDB;
 	private final JButton bVehicles, bDrivers;
 
+	/** Button to move old trips into archive dbs; see {@link #actionArchiveTrips()}. @since 0.9.93 */
+	private final JButton bArchive;
+
+	/** Button to show db size and health, and run maintenance; see {@link #actionDBHealth()}. @since 0.9.93 */
+	private final JButton bDBHealth;
+
+	/**
+	 * Merge other logbook files into this one.
+	 * @since 0.9.93
+	 */
+	private final JButton bMerge;
+
+	/**
+	 * Export a read-only snapshot file of this logbook, for fast viewing.
+	 * @since 0.9.93
+	 */
+	private final JButton bSnapshot;
+
 	/**
 	 * Create and show a new scrolling grid, in a new {@link JFrame}, to view or edit this logbook data.
 	 * When the JFrame is closed, it will call {@link RDBAdapter#close() conn.close()}.
@@ -161,7 +233,8 @@ public class LogbookEditPane
 		this.conn = conn;
 		this.veh = veh;
 		this.isReadOnly = isReadOnly;
-		mdata = new LBSwingTableModel(veh, WEEK_INCREMENT, conn, isReadOnly);
+		archive = new RDBArchive(conn, rdbUpgSingleton);
+		mdata = new LBSwingTableModel(veh, weeksShown, conn, isReadOnly, archive);
 		lbef = new JFrame
 		    ( (isReadOnly ? "Quick Viewer - " : "Quick Editor - ") + fname);
 		lbef.addWindowListener(this);  // needed for conn.close() when window closes
@@ -205,6 +278,10 @@ public class LogbookEditPane
 			jcbVehicles.setEditable(false);
 			vehRow.add(lblVehicles);
 			vehRow.add(jcbVehicles);
+			cbAllWeeks = new JCheckBox("All weeks");
+			cbAllWeeks.setToolTipText("Show all of this vehicle's trips, not just the most recent weeks. Trips are read as they're scrolled into view.");
+			cbAllWeeks.addActionListener(this);
+			vehRow.add(cbAllWeeks);
 			pba.add(vehRow);
 
 			bLoadPrevious = new JButton("<< Earlier trips");
@@ -216,7 +293,7 @@ public class LogbookEditPane
 		}
 
 		// Buttons below JTable
-		GridLayout bgl = new GridLayout(3, 3);
+		GridLayout bgl = new GridLayout(4, 3);
 		pbtns = new JPanel(bgl);
 		bAddSimple = new JButton("+ Simple Trip");
 		bAddSimple.setToolTipText("Add a new trip. If clicked when already adding, ends current trip first.");
@@ -242,6 +319,20 @@ public class LogbookEditPane
 		bDrivers = new JButton("Drivers...");
 		bDrivers.setToolTipText("Show the list of drivers in the logbook.");
 		bDrivers.addActionListener(this);
+		bArchive = new JButton("Archive...");
+		bArchive.setToolTipText("Move trips before a certain year into separate archive files, to keep this logbook small.");
+		bArchive.addActionListener(this);
+		bArchive.setEnabled(! isReadOnly);
+		bDBHealth = new JButton("DB Health...");
+		bDBHealth.setToolTipText("Show the db size, free space and index statistics, and run maintenance.");
+		bDBHealth.addActionListener(this);
+		bMerge = new JButton("Merge...");
+		bMerge.setToolTipText("Add the trips and locations from other logbook files, such as from other phones, into this one.");
+		bMerge.addActionListener(this);
+		bMerge.setEnabled(! isReadOnly);
+		bSnapshot = new JButton("Snapshot...");
+		bSnapshot.setToolTipText("Export a read-only snapshot of this logbook, which opens and scrolls faster for viewing.");
+		bSnapshot.addActionListener(this);
 
 		// TODO temporarily disabling Add buttons until LTM.finishAdd() is tested.
 		//if (isReadOnly)
@@ -255,10 +346,12 @@ public class LogbookEditPane
 		pbtns.add(bTmpValidateDB);
 		pbtns.add(bAddDone);
 		pbtns.add(bAddCancel);
-		pbtns.add(new JLabel());  // end of middle row
-		pbtns.add(new JLabel());  // start of bottom row; before v0.9.80, was "Change Vehicle..." button
+		pbtns.add(bDBHealth);  // end of middle row
+		pbtns.add(bArchive);  // start of bottom row; before v0.9.80, was "Change Vehicle..." button
 		pbtns.add(bVehicles);
 		pbtns.add(bDrivers);
+		pbtns.add(bMerge);  // start of 4th row
+		pbtns.add(bSnapshot);
 		lbef.add(pbtns, BorderLayout.SOUTH);
 
 		lbef.pack();
@@ -280,6 +373,8 @@ public class LogbookEditPane
 
 		if (src == bLoadPrevious)
 			actionLoadPrevious();
+		else if (src == cbAllWeeks)
+			actionShowAllWeeks();
 		else if (src == bAddSimple)
 			actionAddTripBegin(false);
 		else if (src == bAddWithStops)
@@ -294,6 +389,14 @@ public class LogbookEditPane
 			new DriverListDialog(conn, isReadOnly, lbef);
 		else if (src == bTmpValidateDB)
 			actionValidateDB();
+		else if (src == bArchive)
+			actionArchiveTrips();
+		else if (src == bDBHealth)
+			actionDBHealth();
+		else if (src == bMerge)
+			actionMergeLogbooks();
+		else if (src == bSnapshot)
+			actionExportSnapshot();
 	}
 
 	private void actionLoadPrevious()
@@ -305,6 +408,43 @@ public class LogbookEditPane
 			tb.scrollRectToVisible(tb.getCellRect(0, 0, true));  // scroll to top
 	}
 
+	/**
+	 * Show all of the vehicle's trips, or only the most recent weeks, depending on {@link #cbAllWeeks}.
+	 * When showing all, the {@link LogbookTableModel} is in Lazy Mode and scrolls to the newest trips.
+	 * Can't change while adding a trip.
+	 * @since 0.9.93
+	 */
+	private void actionShowAllWeeks()
+	{
+		final boolean showAll = cbAllWeeks.isSelected();
+		if (! canChangeVehicle)
+		{
+			cbAllWeeks.setSelected(! showAll);
+			return;  // not allowed to change right now
+		}
+
+		weeksShown = (showAll) ? 0 : WEEK_INCREMENT;
+		replaceTableModel();
+	}
+
+	/**
+	 * Replace {@link #mdata} with a new table model for the current {@link #veh}, {@link #weeksShown} and {@link #archive}.
+	 * If showing all weeks, scrolls to the newest trips.
+	 * @since 0.9.93
+	 */
+	private void replaceTableModel()
+	{
+		mdata.fireTableRowsDeleted(1, mdata.getRowCount());
+		mdata = new LBSwingTableModel(veh, weeksShown, conn, isReadOnly, archive);
+		// setModel and loads the current data from mdata,
+		// but loses the column model.
+		tb.setModel(mdata);
+		setupTbColumnModel();
+		bLoadPrevious.setEnabled(true);  // in case disabled because prev vehicle had no earlier trips
+		if (weeksShown == 0)
+			tb.scrollRectToVisible(tb.getCellRect(mdata.getRowCount() - 1, 0, true));
+	}
+
 	private void actionAddTripBegin(final boolean withStops)
 	{
 		if (isReadOnly)
@@ -361,12 +501,190 @@ public class LogbookEditPane
 		new VehicleChooserDialog(allV, isActive, veh.getID());
 	}
 
-	/** Validate the DB consistency with {@link RDBVerifier#verify(int)}, and show a passed/failed message box. */
+	/**
+	 * Ask for a cutoff year, then move trips before that year into archive dbs with
+	 * {@link RDBArchive#archiveTripsBefore(RDBAdapter, int, RDBSchema.UpgradeCopyCaller)}
+	 * and reload the current vehicle's trips.
+	 * @since 0.9.93
+	 */
+	private void actionArchiveTrips()
+	{
+		if (isReadOnly || ! canChangeVehicle)
+			return;  // just in case
+
+		final String defaultYear = Integer.toString(Calendar.getInstance().get(Calendar.YEAR) - 2);
+		final String yearStr = (String) JOptionPane.showInputDialog(lbef,
+			"Move trips which started before January 1st of this year into a separate\n"
+			+ "archive file for each year, in the same directory as this logbook.\n"
+			+ "Please make a backup of the logbook first.\n\nArchive trips before year:",
+			"Archive old trips", JOptionPane.QUESTION_MESSAGE, null, null, defaultYear);
+		if (yearStr == null)
+			return;
+
+		final int year;
+		try
+		{
+			year = Integer.parseInt(yearStr.trim());
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(lbef, "Not a year: " + yearStr, "Archive old trips", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		String msg;
+		int msgLevel = JOptionPane.INFORMATION_MESSAGE;
+		lbef.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		try
+		{
+			archive.close();
+			final int n = RDBArchive.archiveTripsBefore(conn, year, rdbUpgSingleton);
+			msg = (n > 0)
+				? "Moved " + n + " trip(s) into archive files."
+				: "No trips before " + year + " to archive.";
+		} catch (Exception e) {
+			e.printStackTrace();
+			msg = "An error occurred while archiving:\n" + e;
+			msgLevel = JOptionPane.ERROR_MESSAGE;
+		} finally {
+			lbef.setCursor(Cursor.getDefaultCursor());
+		}
+
+		reloadTrips();  // with any new archive files
+		JOptionPane.showMessageDialog(lbef, msg, "Archive old trips", msgLevel);
+	}
+
+	/**
+	 * Reload the current vehicle's trips and the list of archive files,
+	 * after {@link #actionArchiveTrips()} or {@link #actionMergeLogbooks()}.
+	 * @since 0.9.93
+	 */
+	private void reloadTrips()
+	{
+		archive = new RDBArchive(conn, rdbUpgSingleton);
+		replaceTableModel();
+	}
+
+	/**
+	 * Ask for one or more other logbook files, then merge them into this one with
+	 * {@link RDBMerge#mergeFrom(String)} and reload the current vehicle's trips.
+	 * @since 0.9.93
+	 */
+	private void actionMergeLogbooks()
+	{
+		if (isReadOnly)
+			return;  // just in case
+
+		final String title = "Merge logbooks";
+		final JFileChooser fc = new JFileChooser();
+		final String dbPath = conn.getFilenameFullPath();
+		if (dbPath != null)
+			fc.setCurrentDirectory(new File(dbPath).getParentFile());
+		fc.setMultiSelectionEnabled(true);
+		fc.setDialogTitle("Choose logbook files to merge into this one");
+		if (fc.showOpenDialog(lbef) != JFileChooser.APPROVE_OPTION)
+			return;
+		final File[] files = fc.getSelectedFiles();
+		if ((files == null) || (files.length == 0))
+			return;
+
+		final int choice = JOptionPane.showConfirmDialog(lbef,
+			"Add the trips, stops, locations and other data from " + files.length + " logbook file(s)\n"
+			+ "into this one? Locations, people and vehicles with the same names are combined.\n"
+			+ "Please make a backup of this logbook first.",
+			title, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+		if (choice != JOptionPane.OK_OPTION)
+			return;
+
+		final String[] paths = new String[files.length];
+		for (int i = 0; i < files.length; ++i)
+			paths[i] = files[i].getAbsolutePath();
+
+		StringBuilder msg = new StringBuilder();
+		int msgLevel = JOptionPane.INFORMATION_MESSAGE;
+		lbef.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		try
+		{
+			final RDBMerge merger = new RDBMerge(conn);
+			for (final String path : paths)
+				msg.append(merger.mergeFrom(path)).append('\n');
+		} catch (Exception e) {
+			e.printStackTrace();
+			msg.append("An error occurred while merging; that file's changes were rolled back:\n").append(e);
+			msgLevel = JOptionPane.ERROR_MESSAGE;
+		} finally {
+			lbef.setCursor(Cursor.getDefaultCursor());
+		}
+
+		reloadTrips();
+		JOptionPane.showMessageDialog(lbef, msg.toString(), title, msgLevel);
+	}
+
+	/**
+	 * Show the db health statistics from {@link RDBMaintenance#getStats(RDBAdapter)};
+	 * unless read-only, offer to run {@link RDBMaintenance#run(RDBAdapter, boolean)} now,
+	 * including a full vacuum if needed.
+	 * @since 0.9.93
+	 */
+	private void actionDBHealth()
+	{
+		final String title = "DB Health";
+		final String stats;
+		try
+		{
+			stats = RDBMaintenance.getStats(conn).toString();
+		} catch (RuntimeException e) {
+			JOptionPane.showMessageDialog(lbef, "Could not read db statistics:\n" + e, title, JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		if (isReadOnly)
+		{
+			JOptionPane.showMessageDialog(lbef, stats, title, JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		final int choice = JOptionPane.showConfirmDialog(lbef,
+			stats + "\n\nRun maintenance now? (Analyze, and vacuum if needed)",
+			title, JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+		if (choice != JOptionPane.YES_OPTION)
+			return;
+
+		String msg;
+		int msgLevel = JOptionPane.INFORMATION_MESSAGE;
+		lbef.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		try
+		{
+			msg = "Maintenance done: " + RDBMaintenance.run(conn, true)
+				+ "\n\n" + RDBMaintenance.getStats(conn);
+		} catch (Exception e) {
+			e.printStackTrace();
+			msg = "An error occurred during maintenance:\n" + e;
+			msgLevel = JOptionPane.ERROR_MESSAGE;
+		} finally {
+			lbef.setCursor(Cursor.getDefaultCursor());
+		}
+
+		JOptionPane.showMessageDialog(lbef, msg, title, msgLevel);
+	}
+
+	/**
+	 * Validate the DB consistency with {@link RDBVerifier#verify(int)}, and show a passed/failed message box.
+	 * Shows a {@link ValidateProgressDialog} while validating, which the user can cancel.
+	 */
 	public void actionValidateDB()
 	{
 		RDBVerifier verif = new RDBVerifier(conn);
-		final int vResult = verif.verify(RDBVerifier.LEVEL_TDATA);
+		final ValidateProgressDialog vpd = new ValidateProgressDialog(verif);  // returns when done or cancelled
+		final int vResult = vpd.result;
 		verif.release();
+		if (vpd.error != null)
+		{
+			JOptionPane.showMessageDialog(lbef,
+				"Validation error: " + vpd.error, "Validation results", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		if (vResult == RDBVerifier.CANCELLED)
+			return;
+
 		String optionPaneMsg;
 		int optionPaneLevel;
 		if (vResult == 0)
@@ -494,14 +812,8 @@ public class LogbookEditPane
 			return;  // not allowed to change right now
 
 		try {
-			mdata.fireTableRowsDeleted(1, mdata.getRowCount());
 			veh = new Vehicle(conn, vID);
-			mdata = new LBSwingTableModel(veh, WEEK_INCREMENT, conn, isReadOnly);
-			// setModel and loads the current data from mdata,
-			// but loses the column model.
-			tb.setModel(mdata);
-			setupTbColumnModel();
-			bLoadPrevious.setEnabled(true);  // in case disabled because prev vehicle had no earlier trips
+			replaceTableModel();
 			updateVehicleInfoRow(veh, false);
 		} catch (IllegalStateException e) {
 			// TODO Auto-generated catch block
@@ -532,10 +844,64 @@ public class LogbookEditPane
 		setupFromMain(fname, fname, f, false, false);  // TODO extract fnshort
 	}
 
+	/**
+	 * Ask for a filename, then write a read-only snapshot of this logbook there with
+	 * {@link RDBMemAdapter#writeSnapshot(RDBAdapter, File)}. Opening that file later
+	 * in BookEdit memory-maps it instead of using sqlite.
+	 * @since 0.9.93
+	 */
+	private void actionExportSnapshot()
+	{
+		final String title = "Export snapshot";
+		final JFileChooser fc = new JFileChooser();
+		final String dbPath = conn.getFilenameFullPath();
+		if (dbPath != null)
+		{
+			final File dbFile = new File(dbPath);
+			fc.setCurrentDirectory(dbFile.getParentFile());
+			String name = dbFile.getName();
+			final int dot = name.lastIndexOf('.');
+			if (dot > 0)
+				name = name.substring(0, dot);
+			fc.setSelectedFile(new File(dbFile.getParentFile(), name + SNAPSHOT_FILENAME_SUFFIX));
+		}
+		fc.setDialogTitle("Save a read-only snapshot of this logbook");
+		if (fc.showSaveDialog(lbef) != JFileChooser.APPROVE_OPTION)
+			return;
+		final File f = fc.getSelectedFile();
+		if ((f == null) || ((dbPath != null) && f.getAbsolutePath().equals(new File(dbPath).getAbsolutePath())))
+			return;
+		if (f.exists() && (JOptionPane.OK_OPTION != JOptionPane.showConfirmDialog(lbef,
+			"Overwrite the existing file " + f.getName() + "?", title, JOptionPane.OK_CANCEL_OPTION)))
+			return;
+
+		String msg;
+		int msgLevel = JOptionPane.INFORMATION_MESSAGE;
+		lbef.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		try
+		{
+			final long t0 = System.currentTimeMillis();
+			RDBMemAdapter.writeSnapshot(conn, f);
+			msg = "Wrote snapshot " + f.getName() + " (" + ((f.length() + 1023) / 1024) + " KB) in "
+				+ (System.currentTimeMillis() - t0) + " ms.\nTo view it, open that file in BookEdit.";
+		} catch (Exception e) {
+			e.printStackTrace();
+			msg = "An error occurred while writing the snapshot:\n" + e;
+			msgLevel = JOptionPane.ERROR_MESSAGE;
+		} finally {
+			lbef.setCursor(Cursor.getDefaultCursor());
+		}
+
+		JOptionPane.showMessageDialog(lbef, msg, title, msgLevel);
+	}
+
 	/**
 	 * Check the structure and schema of the db file selected by the {@link Main} panel's "Open" or "View Backup"
 	 * button, ask to upgrade if needed, then create and show a new {@link LogbookEditPane} with that db.
 	 *<P>
+	 * If the file is a snapshot written by {@link RDBMemAdapter#writeSnapshot(RDBAdapter, File)},
+	 * it's opened read-only with {@link RDBMemAdapter#openSnapshot(File)}, like a backup.
+	 *<P>
 	 * Does it need an upgrade to current version?  If so, upgrade a temp copy if backup,
 	 * or ask first if not a backup.  Similar logic, with different APIs, is in
 	 * {@code org.shadowlands.roadtrip.android.BackupsMain.onItemClick(...)}
@@ -555,10 +921,18 @@ public class LogbookEditPane
 		(String fname, final String fnshort, final JFrame parentf, boolean isBackup, boolean isReadOnly)
 	{
 		RDBAdapter conn = null;
+		final boolean isSnapshot = RDBMemAdapter.isSnapshotFile(new File(fname));
 
 		try
 		{
-			conn = new RDBJDBCAdapter(fname);
+			if (isSnapshot)
+			{
+				conn = RDBMemAdapter.openSnapshot(new File(fname));
+				isBackup = true;
+				isReadOnly = true;
+			} else {
+				conn = new RDBJDBCAdapter(fname);
+			}
 		} catch (Throwable t)
 		{
 			System.err.println("Could not open SQLite db " + fname);
@@ -637,9 +1011,23 @@ public class LogbookEditPane
 		}
 
 		// Does it need an upgrade?
-		final int user_version = ((RDBJDBCAdapter) conn).getSchemaVersion();
+		final int user_version = (isSnapshot)
+			? ((RDBMemAdapter) conn).getSchemaVersion()
+			: ((RDBJDBCAdapter) conn).getSchemaVersion();
 		System.out.println("user_version is " + user_version + " (current: " + RDBSchema.DATABASE_VERSION + ")");
 
+		if (isSnapshot && (user_version < RDBSchema.DATABASE_VERSION))
+		{
+			// snapshots are read-only, so can't be upgraded like a backup copy
+			conn.close();
+			JOptionPane.showMessageDialog(parentf,
+				"This snapshot has an older schema version " + user_version
+					+ ".\nPlease upgrade its logbook and export a new snapshot.",
+				"Snapshot version can't be opened",
+				JOptionPane.ERROR_MESSAGE);
+			return;  // <--- Early return: Snapshot too old ---
+		}
+
 		// Quick check for too old or too new
 		if (user_version != RDBSchema.DATABASE_VERSION)
 		{
@@ -713,7 +1101,7 @@ public class LogbookEditPane
 				case 0:  // upgrade in place
 					try
 					{
-						RDBSchema.upgradeToCurrent(conn, user_version, false);
+						RDBSchema.upgradeToCurrent(conn, user_version, false, rdbUpgProgress);
 					} catch (Exception e) {
 						// TODO capture it somewhere gui-accessible?
 						e.printStackTrace();
@@ -945,7 +1333,8 @@ public class LogbookEditPane
 			System.err.println
 				("Calling upgradeCopyToCurrent(\"" + destTempFile.getAbsolutePath() + "\", " + sourceSchemaVers + ")");
 
-			RDBSchema.upgradeCopyToCurrent(sourceBkupFile, destTempFile, sourceSchemaVers, rdbUpgSingleton);
+			RDBSchema.upgradeCopyToCurrent
+				(sourceBkupFile, destTempFile, sourceSchemaVers, rdbUpgSingleton, rdbUpgProgress);
 
 			System.err.println("Completed upgrade");
 			return destTempFile;
@@ -981,6 +1370,8 @@ public class LogbookEditPane
 	/** When the window is closing, close the database connection. */
 	public void windowClosing(WindowEvent e)
 	{
+		if (archive != null)
+			archive.close();
 		if (conn != null)
 			 conn.close();
 	}
@@ -1006,12 +1397,23 @@ public class LogbookEditPane
 	 *<P>
 	 * The GUI has column headings, so this adapter clears the {@link LogbookTableModel#render_comments_brackets}
 	 * rendering flag.
+	 *<P>
+	 * When showing all weeks, {@code ltm} is in Lazy Mode: Rows which haven't been rendered are blank
+	 * until {@link LogbookTableModel#renderLazyPending()} is called from the AWT event thread,
+	 * after {@link JTable} has finished painting.
 	 */
 	private static class LBSwingTableModel extends AbstractTableModel implements TableChangeListener
 	{
 		public LogbookTableModel ltm;
 		private final boolean isReadOnly;
 
+		/**
+		 * True if {@link #getValueAt(int, int)} has queued a call to {@link LogbookTableModel#renderLazyPending()}
+		 * which hasn't run yet.
+		 * @since 0.9.93
+		 */
+		private boolean renderQueued;
+
 		static
 		{
 			LogbookTableModel.render_comments_brackets = false;
@@ -1020,13 +1422,19 @@ public class LogbookEditPane
 		/**
     	 * Create and populate with existing data.
     	 * @param veh  Vehicle
-    	 * @param weeks  Week increment when loading data
+    	 * @param weeks  Week increment when loading data, or 0 to show all weeks in Lazy Mode
     	 * @param conn Add existing rows from this connection, via addRowsFromTrips.
+    	 * @param archive  Archives of {@code conn}'s older trips, or null; see {@link LogbookTableModel#setArchive(RDBArchive)}
     	 */
-    	public LBSwingTableModel(Vehicle veh, final int weeks, RDBAdapter conn, final boolean isReadOnly)
+    	public LBSwingTableModel
+    		(Vehicle veh, final int weeks, RDBAdapter conn, final boolean isReadOnly, final RDBArchive archive)
     	{
     		this.isReadOnly = isReadOnly;
-    		ltm = new LogbookTableModel(veh, weeks, null, conn);
+    		if (weeks != 0)
+    			ltm = new LogbookTableModel(veh, weeks, null, conn);
+    		else
+    			ltm = new LogbookTableModel(veh, null, conn);
+    		ltm.setArchive(archive);
     		ltm.setListener(this);
     	}
 
@@ -1039,7 +1447,21 @@ public class LogbookEditPane
 		}
 
 		public Object getValueAt(int rowIndex, int columnIndex) {
-			return ltm.getValueAt(rowIndex, columnIndex);
+			final Object val = ltm.getValueAt(rowIndex, columnIndex);
+			if ((! renderQueued) && ltm.hasLazyPending())
+			{
+				renderQueued = true;
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					public void run()
+					{
+						renderQueued = false;
+						ltm.renderLazyPending();
+					}
+				});
+			}
+
+			return val;
 		}
 
 		public String getColumnName(int col) {
@@ -1156,5 +1578,102 @@ public class LogbookEditPane
 
 	}  // inner class VehicleChooserDialog
 
+	/**
+	 * Modal dialog to show the progress of {@link LogbookEditPane#actionValidateDB()},
+	 * with a Cancel button. The constructor starts a thread to verify at {@link RDBVerifier#LEVEL_TDATA},
+	 * shows the dialog, and returns when verification is done or cancelled; then check {@link #result}.
+	 * @since 0.9.93
+	 */
+	private class ValidateProgressDialog extends JDialog
+		implements RDBVerifier.ProgressListener, ActionListener, Runnable
+	{
+		private final RDBVerifier verif;
+		private final JLabel phaseLabel;
+		private final JProgressBar bar;
+
+		/** Result from {@link RDBVerifier#verify(int)}, or {@link RDBVerifier#CANCELLED} */
+		public int result = RDBVerifier.CANCELLED;
+
+		/** Exception thrown during verification, if any */
+		public RuntimeException error;
+
+		/**
+		 * Create and show the dialog, and verify the data.
+		 * @param verif  Verifier for the db; this constructor sets its progress listener
+		 */
+		public ValidateProgressDialog(final RDBVerifier verif)
+		{
+			super(lbef, "Validating", true);
+			this.verif = verif;
+			setLayout(new BorderLayout());
+			phaseLabel = new JLabel("Checking db structure");
+			add(phaseLabel, BorderLayout.NORTH);
+			bar = new JProgressBar();
+			bar.setIndeterminate(true);
+			bar.setStringPainted(true);
+			bar.setString("");
+			add(bar, BorderLayout.CENTER);
+			JPanel bp = new JPanel(new FlowLayout());
+			JButton bCancel = new JButton("Cancel");
+			bCancel.addActionListener(this);
+			bp.add(bCancel);
+			add(bp, BorderLayout.SOUTH);
+			pack();
+			setLocationRelativeTo(lbef);
+			setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);  // use Cancel button
+
+			verif.setProgressListener(this);
+			new Thread(this, "ValidateDB").start();
+			setVisible(true);  // modal: returns after thread's dispose()
+		}
+
+		/** Verify in the background thread, then dispose the dialog. */
+		public void run()
+		{
+			try
+			{
+				result = verif.verify(RDBVerifier.LEVEL_TDATA);
+			} catch (RuntimeException e) {
+				error = e;
+			} finally {
+				verif.setProgressListener(null);
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					public void run() { dispose(); }
+				});
+			}
+		}
+
+		/** Update the progress bar from the verify thread */
+		public void verifyProgress(final int level, final String tabname, final int done, final int total)
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					phaseLabel.setText("Level " + level + ": Checking " + tabname);
+					if (total > 0)
+					{
+						bar.setIndeterminate(false);
+						bar.setMaximum(total);
+						bar.setValue(Math.min(done, total));
+						bar.setString(done + " of " + total);
+					} else {
+						bar.setIndeterminate(true);
+						bar.setString("");
+					}
+				}
+			});
+		}
+
+		/** handle 'cancel' button click */
+		public void actionPerformed(ActionEvent e)
+		{
+			verif.cancel();
+			phaseLabel.setText("Cancelling");
+		}
+
+	}  // inner class ValidateProgressDialog
+
 
 }  // public class LogbookEditPane
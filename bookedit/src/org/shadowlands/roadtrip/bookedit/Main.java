@@ -25,21 +25,26 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 import javax.swing.UIManager;
 
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBSlowQueryLog;
 
 /** Main startup for BookEdit. Prompts whether to use a database or a backup file, etc. */
 public class Main
@@ -70,6 +75,14 @@ public class Main
 	public static final boolean isJavaOnOSX =
 		System.getProperty("os.name").toLowerCase().contains("os x");
 
+	/**
+	 * System property to turn on the {@link RDBSlowQueryLog} in BookEdit: {@code roadtrip.slowquery.ms}.
+	 * Value is the threshold in milliseconds. The log is written to {@link RDBSlowQueryLog#DEFAULT_LOG_FILENAME}
+	 * in the user's home directory. Example: {@code java -Droadtrip.slowquery.ms=100 -jar bookedit.jar}
+	 * @since 0.9.93
+	 */
+	public static final String PROP_SLOWQUERY_MS = "roadtrip.slowquery.ms";
+
 	private String dbFilename = null;
 	private StartupChoiceFrame scf;
 	private RDBAdapter conn = null;
@@ -78,10 +91,26 @@ public class Main
 	/**
 	 * If there's a database file on the command line, try to open it.
 	 * Otherwise, bring up the startup buttons. 
+	 *<P>
+	 * If the first argument is {@link BatchProcessor#ARG_BATCH}, runs headless batch mode
+	 * instead of the GUI: See {@link BatchProcessor} for its arguments.
+	 * If it's {@link AdapterCheck#ARG_CHECK}, runs that headless check instead.
 	 * @param args
 	 */
 	public static void main(String[] args)
 	{
+		if ((args.length > 0) && args[0].equals(BatchProcessor.ARG_BATCH))
+		{
+			initSlowQueryLog();
+			BatchProcessor.main(args);  // calls System.exit when done
+			return;
+		}
+		else if ((args.length > 0) && args[0].equals(AdapterCheck.ARG_CHECK))
+		{
+			AdapterCheck.main(args);  // calls System.exit when done
+			return;
+		}
+
 		try
 		{
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -89,10 +118,33 @@ public class Main
 
 		// TODO look for a filename
 		// TODO allow option for open bkup, etc, with cmdline flags
+		initSlowQueryLog();
 		Main m = new Main();
 		m.initAndShow();
 	}
 
+	/**
+	 * If system property {@link #PROP_SLOWQUERY_MS} is set, turn on the {@link RDBSlowQueryLog}.
+	 * @since 0.9.93
+	 */
+	private static void initSlowQueryLog()
+	{
+		final String ms = System.getProperty(PROP_SLOWQUERY_MS);
+		if (ms == null)
+			return;
+
+		try
+		{
+			RDBSlowQueryLog.setThresholdMillis(Integer.parseInt(ms.trim()));
+			final File f = new File(System.getProperty("user.home"), RDBSlowQueryLog.DEFAULT_LOG_FILENAME);
+			RDBSlowQueryLog.setLogFile(f);
+			System.err.println("Slow-query log: " + f.getAbsolutePath());
+		} catch (RuntimeException e) {
+			// NumberFormatException, IllegalArgumentException
+			System.err.println("Ignoring property " + PROP_SLOWQUERY_MS + ": " + e);
+		}
+	}
+
 	private void initAndShow()
 	{
 		scf = new StartupChoiceFrame();
@@ -140,7 +192,7 @@ public class Main
 		implements ActionListener
 	{
 		private JPanel btns;
-		private JButton bNew, bOpen, bOpenBackup, bExit;
+		private JButton bNew, bOpen, bOpenBackup, bQueryLog, bExit;
 
 		/**
 		 * {@link Preferences} key in {@link #userPrefs} for directory of the most recently opened logbook.
@@ -175,6 +227,7 @@ public class Main
 			bNew = addBtn("New...", KeyEvent.VK_N);
 			bOpen = addBtn("Open...", KeyEvent.VK_O);
 			bOpenBackup = addBtn("View Backup...", KeyEvent.VK_V);
+			bQueryLog = addBtn("View Slow Query Log...", KeyEvent.VK_Q);
 			bExit = addBtn("Exit", KeyEvent.VK_X);
 			btns.add(new JLabel("Version " + APP_VERSION_STRING
 					+ ", database schema version " + RDBSchema.DATABASE_VERSION));
@@ -240,12 +293,57 @@ public class Main
 					 null, JOptionPane.INFORMATION_MESSAGE);
 				// TODO implement it
 			}
+			else if (src == bQueryLog)
+			{
+				showSlowQueryLog();
+			}
 			else if (src == bExit)
 			{
 				clickedExit(true);
 			}
 		}
 
+		/**
+		 * Choose and show a {@link RDBSlowQueryLog} file, such as one copied from an Android device's
+		 * {@code SLRoadtrip} directory, in a scrolling text dialog. If BookEdit's own log is turned on
+		 * with {@link #PROP_SLOWQUERY_MS}, the chooser starts with that file selected.
+		 * @since 0.9.93
+		 */
+		private void showSlowQueryLog()
+		{
+			final JFileChooser fc = new JFileChooser();
+			final File currLog = RDBSlowQueryLog.getLogFile();
+			if (currLog != null)
+				fc.setSelectedFile(currLog);
+			else if (prevFileOpenDir != null)
+				fc.setCurrentDirectory(prevFileOpenDir);
+			if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+				return;
+
+			final File logf = fc.getSelectedFile();
+			String text;
+			try
+			{
+				text = RDBSlowQueryLog.readLog(logf);
+				if (text.length() == 0)
+					text = "(Log is empty)";
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog
+					(this, "Could not read " + logf.getName() + ":\n" + e,
+					 "Error reading log", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+
+			final JTextArea ta = new JTextArea(text, 30, 100);
+			ta.setEditable(false);
+			ta.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, ta.getFont().getSize()));
+			final JDialog d = new JDialog(this, "Slow Query Log - " + logf.getName());
+			d.getContentPane().add(new JScrollPane(ta));
+			d.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+			d.pack();
+			d.setVisible(true);
+		}
+
 		/**
 		 * Handle a click on the "Exit" button, or the {@link StartupChoiceFrame} window's Close button.
 		 * Currently exits the program, but should review open logbooks for unsaved changes first.
@@ -78,6 +78,20 @@ public class AppInfo extends RDBRecord
 	/** time of {@link #KEY_DB_BACKUP_THISFILE}, in unix format */
 	public static final String KEY_DB_BACKUP_THISTIME = "DB_BACKUP_THISTIME";
 
+	/**
+	 * Time of most recent {@link RDBMaintenance#run(RDBAdapter, boolean)}, in unix format.
+	 * @since 0.9.93
+	 */
+	public static final String KEY_DB_MAINT_PREVTIME = "DB_MAINT_PREVTIME";
+
+	/**
+	 * Activity mark at most recent {@link RDBMaintenance#run(RDBAdapter, boolean)}:
+	 * Sum of the highest trip and tstop ids at that time.
+	 * Used to estimate how many have been written since then.
+	 * @since 0.9.93
+	 */
+	public static final String KEY_DB_MAINT_ROWID_MARK = "DB_MAINT_ROWID_MARK";
+
 	private String aifield, aivalue;
 
 	/**
@@ -0,0 +1,620 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Change journal of the logbook's data tables, for incremental backup, export, and sync.
+ * Each insert, update, or delete of a data record adds a row to the {@code change_journal} table
+ * with the next sequence number and the changed fields' new values.
+ * A reader remembers the last sequence number it saw, and later calls
+ * {@link #readSince(RDBAdapter, int, int)} to get only the changes made since then,
+ * or {@link #applySince(RDBAdapter, RDBAdapter, int)} to copy them into another db
+ * which was a full copy of this one as of that sequence number.
+ *<P>
+ * The journal is written by the record classes' {@code insert}, {@code commit} and {@code delete} methods
+ * ({@link Trip}, {@link TStop}, {@link TStopGas}, {@link Location}, {@link ViaRoute}, {@link GeoArea},
+ * {@link FreqTrip}, {@link FreqTripTStop}, {@link GasBrandGrade}, {@link Person}, {@link Vehicle},
+ * {@link VehicleMake}, {@link TripCategory}), by {@link RDBArchive} for the rows it moves out,
+ * and by {@link RDBMerge} for the rows it merges in.
+ * {@link Settings}, {@link VehSettings} and {@link AppInfo} aren't journaled, since they describe
+ * each device's own current state. The {@code comment_fts} index isn't journaled either;
+ * {@link #applySince(RDBAdapter, RDBAdapter, int)} updates the destination's index from the changed comments.
+ *<P>
+ * Sequence numbers come from the table's {@code autoincrement} primary key, so they increase
+ * monotonically and are never reused, even after {@link #purgeThrough(RDBAdapter, int)}.
+ * To keep the journal from growing forever, {@link RDBMaintenance#run(RDBAdapter, boolean)}
+ * calls {@link #purgeOldest(RDBAdapter)} to keep only the latest {@link #KEEP_ENTRIES} entries.
+ * Restoring a backup replaces the db and its journal; a reader whose last-seen sequence number is
+ * greater than {@link #getLatestSeq(RDBAdapter)}, or less than {@link #getEarliestSeq(RDBAdapter)} - 1,
+ * must start over from a full copy.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class ChangeJournal
+{
+	/** db table name: {@code change_journal} */
+	static final String TABNAME = "change_journal";
+
+	/**
+	 * Number of most recent entries kept by {@link #purgeOldest(RDBAdapter)}.
+	 * A reader which falls further behind than this must start over from a full copy.
+	 */
+	public static final int KEEP_ENTRIES = 10000;
+
+	/**
+	 * Tables whose changes are journaled, and which {@link #apply(RDBAdapter, List)} will change.
+	 * Keep this in sync with the record classes listed in the class javadoc.
+	 */
+	private static final String[] JOURNALED_TABLES =
+		{
+		"trip", "tstop", "tstop_gas", "location", "via_route", "geoarea", "freqtrip", "freqtrip_tstop",
+		"gas_brandgrade", "person", "vehicle", "vehiclemake", "tripcategory"
+		};
+
+	/** Field array for inserting rows */
+	private static final String[] FIELDS = { "tabname", "row_id", "op", "fields", "vals", "time_chg" };
+
+	/** Field array for reading rows: {@link #FIELDS} and {@code "seq"} */
+	private static final String[] FIELDS_AND_SEQ =
+		{ "tabname", "row_id", "op", "fields", "vals", "time_chg", "seq" };
+
+	/** Value for {@link Change#op} when a row was inserted */
+	public static final char OP_INSERT = 'I';
+
+	/** Value for {@link Change#op} when a row was updated */
+	public static final char OP_UPDATE = 'U';
+
+	/** Value for {@link Change#op} when a row was deleted */
+	public static final char OP_DELETE = 'D';
+
+	/** Separator between encoded values within the {@code vals} field */
+	private static final char SEP = '\t';
+
+	/** Encoded form of a null value within the {@code vals} field */
+	private static final String NULL_VAL = "\\N";
+
+	/**
+	 * One change from the journal, from {@link ChangeJournal#readSince(RDBAdapter, int, int)}.
+	 */
+	public static final class Change
+	{
+		/** Sequence number, unique and increasing */
+		public final int seq;
+
+		/** Table name, such as {@code "trip"} */
+		public final String tabname;
+
+		/** Changed row's {@code _id} */
+		public final int rowID;
+
+		/** {@link ChangeJournal#OP_INSERT}, {@link ChangeJournal#OP_UPDATE} or {@link ChangeJournal#OP_DELETE} */
+		public final char op;
+
+		/** Changed field names, or null for {@link ChangeJournal#OP_DELETE} */
+		public final String[] fields;
+
+		/** Changed fields' new values (may contain nulls), or null for {@link ChangeJournal#OP_DELETE} */
+		public final String[] values;
+
+		/** Time of change (unix format) */
+		public final int time;
+
+		Change(final String[] rec)
+		{
+			tabname = rec[0];
+			rowID = Integer.parseInt(rec[1]);
+			op = rec[2].charAt(0);
+			if ((rec[3] != null) && (rec[4] != null))
+			{
+				fields = rec[3].split(",");
+				values = decodeValues(rec[4], fields.length);
+			} else {
+				fields = null;
+				values = null;
+			}
+			time = (rec[5] != null) ? Integer.parseInt(rec[5]) : 0;
+			seq = Integer.parseInt(rec[6]);
+		}
+
+		/** For debugging, such as {@code "12: U trip 3 [odo_end, time_end]"} */
+		public String toString()
+		{
+			return seq + ": " + op + " " + tabname + " " + rowID
+				+ ((fields != null) ? (" " + java.util.Arrays.toString(fields)) : "");
+		}
+	}
+
+	/**
+	 * Journal a newly inserted record. Called by the record classes' {@code insert} methods.
+	 * @param db  db connection
+	 * @param tabname  Record's table name
+	 * @param id  New record's {@code _id}
+	 * @param fn  Field names inserted
+	 * @param fv  Field values inserted, in same order as {@code fn}; may contain nulls
+	 * @throws IllegalStateException if db not open
+	 */
+	static void inserted
+		(RDBAdapter db, final String tabname, final int id, final String[] fn, final String[] fv)
+		throws IllegalStateException
+	{
+		add(db, tabname, id, OP_INSERT, fn, fv);
+	}
+
+	/**
+	 * Journal an updated record. Called by the record classes' {@code commit} methods
+	 * and others which update some fields.
+	 * @param db  db connection
+	 * @param tabname  Record's table name
+	 * @param id  Record's {@code _id}
+	 * @param fn  Field names updated
+	 * @param fv  Field values updated, in same order as {@code fn}; may contain nulls
+	 * @throws IllegalStateException if db not open
+	 */
+	static void updated
+		(RDBAdapter db, final String tabname, final int id, final String[] fn, final String[] fv)
+		throws IllegalStateException
+	{
+		add(db, tabname, id, OP_UPDATE, fn, fv);
+	}
+
+	/**
+	 * Journal a deleted record. Called by the record classes' {@code delete} methods.
+	 * @param db  db connection
+	 * @param tabname  Record's table name
+	 * @param id  Deleted record's {@code _id}
+	 * @throws IllegalStateException if db not open
+	 */
+	static void deleted(RDBAdapter db, final String tabname, final int id)
+		throws IllegalStateException
+	{
+		add(db, tabname, id, OP_DELETE, null, null);
+	}
+
+	/**
+	 * Journal the deletion of each row matching a where clause, before deleting them with SQL.
+	 * Used by {@link RDBArchive} within its transaction.
+	 * @param db  db connection
+	 * @param tabname  Table name, optionally with {@code "main."} schema prefix
+	 * @param where  Where clause, without {@code "WHERE"}, which will be used to delete the rows
+	 * @throws IllegalStateException if db not open
+	 * @throws SQLException if a syntax or database error occurs
+	 */
+	static void deletingWhere(RDBAdapter db, final String tabname, final String where)
+		throws IllegalStateException, SQLException
+	{
+		final int dot = tabname.indexOf('.');
+		final String schema = (dot != -1) ? tabname.substring(0, dot + 1) : "";
+		final String tab = (dot != -1) ? tabname.substring(dot + 1) : tabname;
+		db.execStrucUpdate("INSERT INTO " + schema + TABNAME + " (tabname, row_id, op, time_chg) SELECT '"
+			+ tab + "', _id, '" + OP_DELETE + "', " + (System.currentTimeMillis() / 1000L)
+			+ " FROM " + tabname + " WHERE " + where + ";");
+	}
+
+	/**
+	 * Journal the insertion of each row matching a where clause, after inserting them with SQL.
+	 * Each row's fields are encoded in SQL like {@link #encodeValues(String[])}, without reading
+	 * them into memory. Used by {@link RDBMerge} within its transaction.
+	 * @param db  db connection
+	 * @param tabname  Table name, optionally with {@code "main."} schema prefix
+	 * @param fields  Field names to journal, not including {@code _id}
+	 * @param where  Where clause, without {@code "WHERE"}, matching the inserted rows
+	 * @throws IllegalStateException if db not open
+	 * @throws SQLException if a syntax or database error occurs
+	 */
+	static void insertedWhere(RDBAdapter db, final String tabname, final String[] fields, final String where)
+		throws IllegalStateException, SQLException
+	{
+		final int dot = tabname.indexOf('.');
+		final String schema = (dot != -1) ? tabname.substring(0, dot + 1) : "";
+		final String tab = (dot != -1) ? tabname.substring(dot + 1) : tabname;
+
+		StringBuilder sb = new StringBuilder("INSERT INTO ");
+		sb.append(schema).append(TABNAME).append(" (tabname, row_id, op, fields, vals, time_chg) SELECT '")
+		  .append(tab).append("', _id, '").append(OP_INSERT).append("', '");
+		for (int i = 0; i < fields.length; ++i)
+		{
+			if (i > 0)
+				sb.append(',');
+			sb.append(fields[i]);
+		}
+		sb.append("', ");
+		for (int i = 0; i < fields.length; ++i)
+		{
+			if (i > 0)
+				sb.append(" || '").append(SEP).append("' || ");
+			// Literal control chars within the quotes, since char() needs sqlite 3.7.16
+			sb.append("ifnull(replace(replace(replace(replace(").append(fields[i])
+			  .append(", '\\', '\\\\'), '\t', '\\t'), '\n', '\\n'), '\r', '\\r'), '")
+			  .append(NULL_VAL).append("')");
+		}
+		sb.append(", ").append(System.currentTimeMillis() / 1000L)
+		  .append(" FROM ").append(tabname).append(" WHERE ").append(where).append(" ORDER BY _id;");
+		db.execStrucUpdate(sb.toString());
+	}
+
+	/** Add a row to the journal. */
+	private static void add
+		(RDBAdapter db, final String tabname, final int id, final char op,
+		 final String[] fn, final String[] fv)
+		throws IllegalStateException
+	{
+		String fields = null, vals = null;
+		if (fn != null)
+		{
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < fn.length; ++i)
+			{
+				if (i > 0)
+					sb.append(',');
+				sb.append(fn[i]);
+			}
+			fields = sb.toString();
+			vals = encodeValues(fv);
+		}
+
+		final String[] jv =
+			{ tabname, Integer.toString(id), String.valueOf(op), fields, vals,
+			  Integer.toString((int) (System.currentTimeMillis() / 1000L)) };
+		db.insert(TABNAME, FIELDS, jv, true);
+	}
+
+	/**
+	 * Encode field values for the {@code vals} field: Separated by tabs,
+	 * with backslash escapes for tab, newline, carriage return and backslash, and {@link #NULL_VAL} for null.
+	 */
+	static String encodeValues(final String[] fv)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fv.length; ++i)
+		{
+			if (i > 0)
+				sb.append(SEP);
+			final String v = fv[i];
+			if (v == null)
+			{
+				sb.append(NULL_VAL);
+				continue;
+			}
+			for (int j = 0; j < v.length(); ++j)
+			{
+				final char c = v.charAt(j);
+				switch (c)
+				{
+				case '\\':  sb.append("\\\\");  break;
+				case '\t':  sb.append("\\t");  break;
+				case '\n':  sb.append("\\n");  break;
+				case '\r':  sb.append("\\r");  break;
+				default:    sb.append(c);
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Decode field values encoded by {@link #encodeValues(String[])}.
+	 * @param vals  Encoded values
+	 * @param n  Number of values expected
+	 * @throws IllegalArgumentException if {@code vals} doesn't contain {@code n} values
+	 */
+	static String[] decodeValues(final String vals, final int n)
+		throws IllegalArgumentException
+	{
+		String[] fv = new String[n];
+		int i = 0, start = 0;
+		final int L = vals.length();
+		while (start <= L)
+		{
+			if (i == n)
+				throw new IllegalArgumentException("too many values: " + vals);
+
+			int end = vals.indexOf(SEP, start);
+			if (end == -1)
+				end = L;
+			final String raw = vals.substring(start, end);
+			if (raw.equals(NULL_VAL))
+				fv[i] = null;
+			else if (raw.indexOf('\\') == -1)
+				fv[i] = raw;
+			else
+			{
+				StringBuilder sb = new StringBuilder(raw.length());
+				for (int j = 0; j < raw.length(); ++j)
+				{
+					char c = raw.charAt(j);
+					if ((c == '\\') && (j + 1 < raw.length()))
+					{
+						++j;
+						c = raw.charAt(j);
+						switch (c)
+						{
+						case 't':  c = '\t';  break;
+						case 'n':  c = '\n';  break;
+						case 'r':  c = '\r';  break;
+						default:   // '\\' stays as is
+						}
+					}
+					sb.append(c);
+				}
+				fv[i] = sb.toString();
+			}
+
+			++i;
+			start = end + 1;
+		}
+		if (i != n)
+			throw new IllegalArgumentException("expected " + n + " values: " + vals);
+
+		return fv;
+	}
+
+	/**
+	 * Get the latest sequence number in the journal.
+	 * @param db  db connection
+	 * @return  Latest sequence number, or 0 if journal is empty
+	 * @throws IllegalStateException if db not open
+	 */
+	public static int getLatestSeq(RDBAdapter db)
+		throws IllegalStateException
+	{
+		return db.getRowIntField(TABNAME, "max(seq)", (String) null, (String[]) null, 0);
+	}
+
+	/**
+	 * Get the earliest sequence number remaining in the journal, after any {@link #purgeThrough(RDBAdapter, int)}.
+	 * @param db  db connection
+	 * @return  Earliest sequence number, or 0 if journal is empty
+	 * @throws IllegalStateException if db not open
+	 */
+	public static int getEarliestSeq(RDBAdapter db)
+		throws IllegalStateException
+	{
+		return db.getRowIntField(TABNAME, "min(seq)", (String) null, (String[]) null, 0);
+	}
+
+	/**
+	 * Read changes made after a given sequence number, oldest first.
+	 * @param db  db connection
+	 * @param sinceSeq  Sequence number last seen by the reader, or 0 for all changes
+	 * @param limit  Maximum number of changes to read, or 0 for no limit
+	 * @return  Changes with sequence numbers greater than {@code sinceSeq}; may be empty, never null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static List<Change> readSince(RDBAdapter db, final int sinceSeq, final int limit)
+		throws IllegalStateException
+	{
+		final Vector<String[]> rows = db.getRows
+			(TABNAME, "seq > ?", new String[]{ Integer.toString(sinceSeq) }, FIELDS_AND_SEQ, "seq", limit);
+		final List<Change> ret = new ArrayList<Change>((rows != null) ? rows.size() : 0);
+		if (rows != null)
+			for (final String[] rec : rows)
+				ret.add(new Change(rec));
+
+		return ret;
+	}
+
+	/**
+	 * Apply changes to another db, in order, within a transaction.
+	 * Each change is also journaled in {@code dest}, so it can in turn be read from there.
+	 * Caches of {@code dest}'s records ({@link Settings#clearSettingsCache()}) are cleared afterwards.
+	 * @param dest  db connection to change, which should match the source db as of the
+	 *     sequence number just before {@code changes}
+	 * @param changes  Changes from {@link #readSince(RDBAdapter, int, int)}
+	 * @return  Sequence number of the last change applied, or 0 if {@code changes} is empty
+	 * @throws IllegalStateException if {@code dest} not open, or if a change can't be applied
+	 *     because {@code dest} doesn't match the source: For example, inserting a row whose {@code _id}
+	 *     is already used. Also thrown if a change is to a table which isn't journaled, or has a field name
+	 *     which isn't a plain identifier, since those are used in SQL.
+	 *     If thrown, {@code dest}'s transaction is rolled back and nothing is changed.
+	 * @throws SQLException if a database error occurs beginning or ending the transaction
+	 */
+	public static int apply(RDBAdapter dest, final List<Change> changes)
+		throws IllegalStateException, SQLException
+	{
+		if (changes.isEmpty())
+			return 0;
+
+		int lastSeq = 0;
+		dest.beginTransaction();
+		boolean committed = false;
+		try
+		{
+			for (final Change ch : changes)
+			{
+				applyOne(dest, ch);
+				lastSeq = ch.seq;
+			}
+			dest.endTransaction(true);
+			committed = true;
+		} finally {
+			if (! committed)
+			{
+				try { dest.endTransaction(false); }
+				catch (Exception e) {}  // don't hide the original exception
+			}
+			Settings.clearSettingsCache();
+		}
+
+		return lastSeq;
+	}
+
+	/**
+	 * Read changes from one db made after a given sequence number, and apply them to another db.
+	 * Calls {@link #readSince(RDBAdapter, int, int)} and then {@link #apply(RDBAdapter, List)}.
+	 * @param src  db connection to read changes from
+	 * @param dest  db connection to change
+	 * @param sinceSeq  Sequence number in {@code src} of the previous sync or full copy to {@code dest}
+	 * @return  Sequence number in {@code src} of the last change applied, or {@code sinceSeq} if none;
+	 *     pass this as {@code sinceSeq} the next time
+	 * @throws IllegalStateException if a db isn't open, or if a change can't be applied;
+	 *     see {@link #apply(RDBAdapter, List)}
+	 * @throws SQLException if a database error occurs beginning or ending the transaction
+	 */
+	public static int applySince(RDBAdapter src, RDBAdapter dest, final int sinceSeq)
+		throws IllegalStateException, SQLException
+	{
+		final int last = apply(dest, readSince(src, sinceSeq, 0));
+		return (last != 0) ? last : sinceSeq;
+	}
+
+	/**
+	 * Apply one change and journal it in {@code dest}.
+	 * @throws IllegalStateException if the change can't be applied, or its table or a field name is unexpected
+	 */
+	private static void applyOne(RDBAdapter dest, final Change ch)
+		throws IllegalStateException
+	{
+		final String tab = ch.tabname;
+		final int id = ch.rowID;
+
+		// Table and field names go into SQL: Accept only the expected ones
+		boolean tabOK = false;
+		for (final String jt : JOURNALED_TABLES)
+			if (jt.equals(tab))
+			{
+				tabOK = true;
+				break;
+			}
+		if (! tabOK)
+			throw new IllegalStateException("Seq " + ch.seq + ": table not journaled: " + tab);
+		if (ch.fields != null)
+			for (final String fn : ch.fields)
+				if (! isPlainName(fn))
+					throw new IllegalStateException("Seq " + ch.seq + ": bad field name: " + fn);
+
+		switch (ch.op)
+		{
+		case OP_INSERT:
+			{
+				// Insert with the same _id as the source
+				final String[] fn, fv;
+				int idIdx = -1;
+				for (int i = 0; i < ch.fields.length; ++i)
+					if (ch.fields[i].equals("_id"))
+						idIdx = i;
+				if (idIdx == -1)
+				{
+					fn = new String[ch.fields.length + 1];
+					fv = new String[fn.length];
+					fn[0] = "_id";
+					fv[0] = Integer.toString(id);
+					System.arraycopy(ch.fields, 0, fn, 1, ch.fields.length);
+					System.arraycopy(ch.values, 0, fv, 1, ch.values.length);
+				} else {
+					fn = ch.fields;
+					fv = ch.values;
+				}
+				if (dest.getCount(tab, "_id", id) != 0)
+					throw new IllegalStateException("Seq " + ch.seq + ": " + tab + " already has _id " + id);
+				dest.insert(tab, fn, fv, false);
+			}
+			break;
+
+		case OP_UPDATE:
+			if (dest.getCount(tab, "_id", id) == 0)
+				throw new IllegalStateException("Seq " + ch.seq + ": " + tab + " has no _id " + id);
+			dest.update(tab, id, ch.fields, ch.values);
+			break;
+
+		case OP_DELETE:
+			dest.delete(tab, id);
+			if (tab.equals(Trip.TABNAME))
+				CommentIndex.delete(dest, -id);
+			else if (tab.equals(TStop.TABNAME))
+				CommentIndex.delete(dest, id);
+			add(dest, tab, id, OP_DELETE, null, null);
+			return;
+
+		default:
+			throw new IllegalStateException("Seq " + ch.seq + ": unknown op " + ch.op);
+		}
+
+		// Keep comment search index current
+		if (tab.equals(Trip.TABNAME) || tab.equals(TStop.TABNAME))
+		{
+			for (int i = 0; i < ch.fields.length; ++i)
+			{
+				if (! ch.fields[i].equals("comment"))
+					continue;
+
+				final int docid = (tab.equals(Trip.TABNAME)) ? -id : id;
+				CommentIndex.update(dest, docid, ch.values[i], (ch.op == OP_INSERT));
+				break;
+			}
+		}
+
+		add(dest, tab, id, ch.op, ch.fields, ch.values);
+	}
+
+	/**
+	 * Remove journal entries which all readers have already seen, to save space.
+	 * Sequence numbers of later changes are unaffected.
+	 * @param db  db connection
+	 * @param seq  Remove entries with this sequence number or earlier
+	 * @throws IllegalStateException if db not open
+	 */
+	public static void purgeThrough(RDBAdapter db, final int seq)
+		throws IllegalStateException
+	{
+		db.delete(TABNAME, "seq <= ?", seq);
+	}
+
+	/**
+	 * Remove all but the latest {@link #KEEP_ENTRIES} journal entries.
+	 * Called during maintenance by {@link RDBMaintenance#run(RDBAdapter, boolean)}.
+	 * @param db  db connection
+	 * @return  Number of entries removed
+	 * @throws IllegalStateException if db not open
+	 */
+	public static int purgeOldest(RDBAdapter db)
+		throws IllegalStateException
+	{
+		final int through = getLatestSeq(db) - KEEP_ENTRIES;
+		if (through < getEarliestSeq(db))
+			return 0;
+
+		final int n = db.getRowIntField(TABNAME, "count(*)", "seq <= " + through, (String[]) null, 0);
+		purgeThrough(db, through);
+		return n;
+	}
+
+	/** Is this name a plain lowercase identifier, such as {@code "odo_start"}? */
+	private static boolean isPlainName(final String name)
+	{
+		final int L = name.length();
+		if (L == 0)
+			return false;
+		for (int i = 0; i < L; ++i)
+		{
+			final char c = name.charAt(i);
+			if (! (((c >= 'a') && (c <= 'z')) || (c == '_') || ((i > 0) && (c >= '0') && (c <= '9'))))
+				return false;
+		}
+		return true;
+	}
+
+}  // public class ChangeJournal
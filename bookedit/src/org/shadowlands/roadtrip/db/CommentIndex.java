@@ -0,0 +1,249 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Full-text search of {@link Trip} and {@link TStop} comments, using the
+ * SQLite FTS4 virtual table {@code comment_fts} added in schema v1000.
+ *<P>
+ * Each row's {@code docid} identifies the record whose comment it holds:
+ * A TStop's ID, or the negative of a Trip's ID.
+ * Rows are kept in sync by {@link TStop} and {@link Trip}'s {@code insert}, {@code commit}
+ * and {@code delete} methods and by {@link TStop#setComment(String, boolean, boolean)};
+ * the v1000 upgrade script fills the table from existing comments.
+ *<P>
+ * To search, call {@link #searchComments(RDBAdapter, String, Vehicle, int)}.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class CommentIndex
+{
+	/** db table name: {@code comment_fts} */
+	static final String TABNAME = "comment_fts";
+
+	/** Field array for inserting rows: { {@code "docid", "comment"} } */
+	private static final String[] FIELDS = { "docid", "comment" };
+
+	/** Where-clause subquery for TStop IDs with matching comments; expects 1 argument, the FTS query */
+	private static final String SUBQ_MATCH_TSTOP =
+		"select docid from " + TABNAME + " where comment MATCH ? and docid > 0";
+
+	/** Where-clause subquery for Trip IDs with matching comments; expects 1 argument, the FTS query */
+	private static final String SUBQ_MATCH_TRIP =
+		"select -docid from " + TABNAME + " where comment MATCH ? and docid < 0";
+
+	/** TStop fields read for search results */
+	private static final String[] TSTOP_FIELDS = { "_id", "tripid", "comment" };
+
+	/** Trip fields read for search results */
+	private static final String[] TRIP_FIELDS = { "_id", "vid", "time_start", "comment" };
+
+	/** Trip fields read for TStop search results */
+	private static final String[] TRIP_FIELDS_VID_TIME = { "vid", "time_start" };
+
+	/**
+	 * Update the index for a record's new or changed comment.
+	 * @param db  db connection
+	 * @param docid  TStop ID, or negative Trip ID
+	 * @param comment  Comment now in the db, or null or "" if none
+	 * @param isNew  True if record was just inserted, so it has no previous comment to remove
+	 * @throws IllegalStateException if db not open
+	 */
+	static void update(RDBAdapter db, final int docid, final String comment, final boolean isNew)
+		throws IllegalStateException
+	{
+		if (! isNew)
+			db.delete(TABNAME, "docid = ?", docid);
+
+		if ((comment != null) && (comment.length() > 0))
+		{
+			final String[] fv = { Integer.toString(docid), comment };
+			db.insert(TABNAME, FIELDS, fv, false);
+		}
+	}
+
+	/**
+	 * Remove a deleted record's comment from the index.
+	 * @param db  db connection
+	 * @param docid  TStop ID, or negative Trip ID
+	 * @throws IllegalStateException if db not open
+	 */
+	static void delete(RDBAdapter db, final int docid)
+		throws IllegalStateException
+	{
+		db.delete(TABNAME, "docid = ?", docid);
+	}
+
+	/**
+	 * Search trip and stop comments containing all words of a search string.
+	 * Words are matched as prefixes ("rec" finds "receipt"), not case-sensitive;
+	 * punctuation in {@code query} is ignored.
+	 * @param db  db connection
+	 * @param query  Words to search for
+	 * @param veh  Vehicle whose trips to search, or null for all vehicles
+	 * @param limit  Maximum number of results to return; cannot be 0
+	 * @return  Matches, newest trip first; within a trip, the trip's comment is before its stops'.
+	 *     Null if none, or if {@code query} has no words.
+	 * @throws IllegalArgumentException if {@code limit} &lt;= 0
+	 * @throws IllegalStateException if db not open
+	 */
+	public static List<Match> searchComments
+		(RDBAdapter db, final String query, final Vehicle veh, final int limit)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		if (limit <= 0)
+			throw new IllegalArgumentException("limit");
+
+		final String ftsQuery = buildMatchQuery(query);
+		if (ftsQuery == null)
+			return null;
+
+		final String[] args;
+		final String tripWhere, tstopWhere;
+		if (veh != null)
+		{
+			args = new String[]{ ftsQuery, Integer.toString(veh.getID()) };
+			tripWhere = "_id in (" + SUBQ_MATCH_TRIP + ") and vid = ?";
+			tstopWhere = "_id in (" + SUBQ_MATCH_TSTOP + ") and tripid in (select _id from trip where vid = ?)";
+		} else {
+			args = new String[]{ ftsQuery };
+			tripWhere = "_id in (" + SUBQ_MATCH_TRIP + ")";
+			tstopWhere = "_id in (" + SUBQ_MATCH_TSTOP + ")";
+		}
+
+		final Vector<String[]> trRows = db.getRows(Trip.TABNAME, tripWhere, args, TRIP_FIELDS, "_id DESC", limit);
+		final Vector<String[]> tsRows = db.getRows
+			(TStop.TABNAME, tstopWhere, args, TSTOP_FIELDS, "tripid DESC, _id", limit);
+
+		// Merge the two lists, each already sorted newest trip first
+		final List<Match> found = new ArrayList<Match>();
+		final int nTr = (trRows != null) ? trRows.size() : 0,
+		          nTs = (tsRows != null) ? tsRows.size() : 0;
+		int iTr = 0, iTs = 0;
+		while ((found.size() < limit) && ((iTr < nTr) || (iTs < nTs)))
+		{
+			final String[] tr = (iTr < nTr) ? trRows.elementAt(iTr) : null;
+			final String[] ts = (iTs < nTs) ? tsRows.elementAt(iTs) : null;
+			if ((ts == null) || ((tr != null) && (Integer.parseInt(tr[0]) >= Integer.parseInt(ts[1]))))
+			{
+				found.add(new Match
+					(Integer.parseInt(tr[0]), 0, Integer.parseInt(tr[1]),
+					 (tr[2] != null) ? Integer.parseInt(tr[2]) : 0, tr[3]));
+				++iTr;
+			} else {
+				final int tripID = Integer.parseInt(ts[1]);
+				final String[] trip = db.getRow(Trip.TABNAME, tripID, TRIP_FIELDS_VID_TIME);
+				int vid = 0, timeStart = 0;
+				if (trip != null)
+				{
+					vid = Integer.parseInt(trip[0]);
+					if (trip[1] != null)
+						timeStart = Integer.parseInt(trip[1]);
+				}
+				found.add(new Match(tripID, Integer.parseInt(ts[0]), vid, timeStart, ts[2]));
+				++iTs;
+			}
+		}
+
+		return (found.isEmpty()) ? null : found;
+	}
+
+	/**
+	 * Build an FTS {@code MATCH} query from the user's search words.
+	 * Keeps only letters and digits, so the user can't enter FTS syntax by accident,
+	 * and makes each word a prefix search: {@code "Oil change!"} becomes {@code "oil* change*"}.
+	 * @param query  Words to search for, or null
+	 * @return  FTS query, or null if {@code query} has no words
+	 */
+	static String buildMatchQuery(final String query)
+	{
+		if (query == null)
+			return null;
+
+		final StringBuilder sb = new StringBuilder();
+		boolean inWord = false;
+		for (int i = 0; i < query.length(); ++i)
+		{
+			final char c = query.charAt(i);
+			if (Character.isLetterOrDigit(c))
+			{
+				if ((! inWord) && (sb.length() > 0))
+					sb.append(' ');
+				sb.append(Character.toLowerCase(c));
+				inWord = true;
+			} else if (inWord) {
+				sb.append('*');
+				inWord = false;
+			}
+		}
+		if (inWord)
+			sb.append('*');
+
+		return (sb.length() > 0) ? sb.toString() : null;
+	}
+
+	/**
+	 * One comment found by {@link CommentIndex#searchComments(RDBAdapter, String, Vehicle, int)}.
+	 */
+	public static final class Match
+	{
+		/** ID of the Trip with this comment, or containing the TStop with this comment */
+		public final int tripID;
+
+		/** ID of the TStop with this comment, or 0 if it's the Trip's comment */
+		public final int tstopID;
+
+		/** Trip's vehicle ID */
+		public final int vehicleID;
+
+		/** Trip's starting time (unix format), or 0 if unused */
+		public final int tripTimeStart;
+
+		/** The comment text */
+		public final String comment;
+
+		private Match(final int tripID, final int tstopID, final int vehicleID,
+			final int tripTimeStart, final String comment)
+		{
+			this.tripID = tripID;
+			this.tstopID = tstopID;
+			this.vehicleID = vehicleID;
+			this.tripTimeStart = tripTimeStart;
+			this.comment = comment;
+		}
+
+		/** Is this the Trip's own comment, not one of its TStops'? */
+		public boolean isTripComment()
+		{
+			return (tstopID == 0);
+		}
+
+		public String toString()
+		{
+			return comment;
+		}
+	}
+
+}  // public class CommentIndex
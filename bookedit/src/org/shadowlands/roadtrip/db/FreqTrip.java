@@ -487,7 +487,9 @@ public class FreqTrip extends RDBRecord
 	public int insert(RDBAdapter db)
 		throws IllegalStateException
 	{
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		if (allStops != null)
@@ -516,7 +518,9 @@ public class FreqTrip extends RDBRecord
 	public void commit()
 		throws IllegalStateException, NullPointerException
 	{
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
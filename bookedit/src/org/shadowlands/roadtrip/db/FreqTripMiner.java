@@ -0,0 +1,588 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Mines the logbook's completed trips for frequently repeated routes, to propose new
+ * {@link FreqTrip}s and rank existing ones by how likely they are at the current time and place.
+ *<P>
+ * For each starting location, the trips' sequences of {@link TStop} locations are kept in a trie.
+ * Each trie node where trips have ended has a histogram of their starting hour of day
+ * and weekday/weekend. {@link #proposePatterns(int, int, int)} lists the sequences made at least
+ * {@link #MIN_SUPPORT} times; {@link #rankFreqTrips(List, int)} sorts frequent trips by
+ * {@link #score(int, int, int)}, which combines how often trips from that start went to that end
+ * with how well the current hour and weekday match those trips' histogram.
+ *<P>
+ * Like {@link LocationTripIndex}, the trie is built from the db the first time {@link #get(RDBAdapter)}
+ * is called for that db, and only one db's trie is kept at a time.
+ * {@link VehSettings#endCurrentTrip(RDBAdapter, Vehicle, int, int, int, TripCategory, int)}
+ * adds each newly completed trip; cancelling a trip's end discards the trie, to be rebuilt when next needed.
+ * All methods are thread-safe.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class FreqTripMiner
+{
+	/** Minimum number of trips along the same sequence for {@link #proposePatterns(int, int, int)} to list it */
+	public static final int MIN_SUPPORT = 3;
+
+	/** Trips with more stops than this are too varied to be frequent, and aren't added to the trie */
+	public static final int MAX_SEQUENCE_STOPS = 12;
+
+	/** Lock for {@link #cached} and {@link #cachedDB}, and for the contents of {@link #cached} */
+	private static final Object lock = new Object();
+
+	/** Trie for {@link #cachedDB}, or null */
+	private static FreqTripMiner cached;
+
+	/** DB from which {@link #cached} was built, or null */
+	private static RDBAdapter cachedDB;
+
+	/** Starting location ID -&gt; root of its trie */
+	private final HashMap<Integer, Node> roots = new HashMap<Integer, Node>();
+
+	/**
+	 * Start and end location IDs' {@link #edgeKey(int, int)} -&gt; histogram of all trips between them,
+	 * whatever their intermediate stops, for {@link #score(int, int, int)}.
+	 */
+	private final HashMap<Long, Histogram> byStartEnd = new HashMap<Long, Histogram>();
+
+	/** Number of trips added to the trie */
+	private int tripCount;
+
+	/** Reused by {@link #add(int, int[], int[], int)} to find the hour and weekday */
+	private final Calendar cal = Calendar.getInstance();
+
+	/**
+	 * A frequently repeated route found by {@link FreqTripMiner#proposePatterns(int, int, int)}.
+	 */
+	public static final class Pattern
+	{
+		/** Starting location ID */
+		public final int startLocID;
+
+		/** Location IDs of each stop, in order; the last one is the trip's ending location */
+		public final int[] stopLocIDs;
+
+		/** Mean trip odometer at each stop, or 0 if unknown */
+		public final int[] stopOdoTrips;
+
+		/** Number of trips along this exact sequence */
+		public final int count;
+
+		/** Typical starting time of day (60 * hours + minutes), to use in a new {@link FreqTrip} */
+		public final int typicalTimeOfDay;
+
+		/** True if at least 80% of the trips were on weekends, or on weekdays, respectively */
+		public final boolean isWeekends, isWeekdays;
+
+		/** Relative likelihood at the time given to {@code proposePatterns}; see {@link FreqTripMiner#score(int, int, int)} */
+		public final double score;
+
+		Pattern(final int startLocID, final int[] stopLocIDs, final int[] stopOdoTrips,
+			final Histogram h, final double score)
+		{
+			this.startLocID = startLocID;
+			this.stopLocIDs = stopLocIDs;
+			this.stopOdoTrips = stopOdoTrips;
+			count = h.count;
+			typicalTimeOfDay = h.typicalTimeOfDay();
+			isWeekends = (h.weekends * 5 >= h.count * 4);
+			isWeekdays = (h.weekdays * 5 >= h.count * 4);
+			this.score = score;
+		}
+
+		/** Get the trip's ending location ID: The last element of {@link #stopLocIDs}. */
+		public int getEndLocID()
+		{
+			return stopLocIDs[stopLocIDs.length - 1];
+		}
+
+		/** For debugging, such as {@code "12 -> 4,7 (count=9, time=510, score=0.62)"} */
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append(startLocID).append(" ->");
+			for (int i = 0; i < stopLocIDs.length; ++i)
+				sb.append((i == 0) ? " " : ",").append(stopLocIDs[i]);
+			sb.append(" (count=").append(count).append(", time=").append(typicalTimeOfDay)
+			  .append(", score=").append(Math.round(score * 100) / 100.0).append(')');
+
+			return sb.toString();
+		}
+	}
+
+	/** Trie node for one stop location within a sequence. */
+	private static final class Node
+	{
+		/** Child nodes by location ID, or null if none yet */
+		HashMap<Integer, Node> children;
+
+		/** Number of trips whose sequence reaches this node */
+		int passCount;
+
+		/** Sum and count of known trip odometers at this node, for the mean */
+		long odoSum;
+		int odoCount;
+
+		/** Histogram of trips ending at this node, or null if none */
+		Histogram ends;
+
+		Node child(final int locID)
+		{
+			if (children == null)
+				children = new HashMap<Integer, Node>();
+			final Integer key = Integer.valueOf(locID);
+			Node n = children.get(key);
+			if (n == null)
+			{
+				n = new Node();
+				children.put(key, n);
+			}
+			return n;
+		}
+	}
+
+	/** Starting hour and weekday/weekend counts of a group of trips. */
+	private static final class Histogram
+	{
+		int count, weekdays, weekends;
+		final int[] byHour = new int[24];
+
+		void add(final int hour, final boolean isWeekend)
+		{
+			++count;
+			++byHour[hour];
+			if (isWeekend)
+				++weekends;
+			else
+				++weekdays;
+		}
+
+		/** Trips starting within 1 hour of {@code hour}: Sum of the 3 hourly bins centered there */
+		int hourWindow(final int hour)
+		{
+			return byHour[(hour + 23) % 24] + byHour[hour] + byHour[(hour + 1) % 24];
+		}
+
+		/** Center of the busiest 3-hour window, as 60 * hours + 30 minutes */
+		int typicalTimeOfDay()
+		{
+			int best = 0, bestCount = -1;
+			for (int h = 0; h < 24; ++h)
+			{
+				final int c = hourWindow(h);
+				if ((c > bestCount) || ((c == bestCount) && (byHour[h] > byHour[best])))
+				{
+					best = h;
+					bestCount = c;
+				}
+			}
+			return best * 60 + 30;
+		}
+
+		/**
+		 * How well an hour and day type match these trips, smoothed so that rare trips aren't 0.
+		 * About 1.0 when the trips are spread evenly; higher when concentrated near {@code hour}.
+		 */
+		double timeFactor(final int hour, final boolean isWeekend)
+		{
+			final double hourF = (hourWindow(hour) + 1.0) * 8.0 / (count + 8.0);  // 3 of 24 bins
+			final double dayF = ((isWeekend ? weekends : weekdays) + 1.0) * 2.0 / (count + 2.0);
+			return hourF * dayF;
+		}
+	}
+
+	/**
+	 * Get the trie for this db, building it if needed.
+	 * @param db  db connection
+	 * @return  the trie for {@code db}; not null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static FreqTripMiner get(RDBAdapter db)
+		throws IllegalStateException
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				return cached;
+
+			cached = null;
+			cachedDB = null;
+			FreqTripMiner m = new FreqTripMiner(db);
+			cached = m;
+			cachedDB = db;
+
+			return m;
+		}
+	}
+
+	/**
+	 * Discard the cached trie, if any; it will be rebuilt at the next call to {@link #get(RDBAdapter)}.
+	 * Call this when a db file is replaced by restoring a backup.
+	 */
+	public static void invalidate()
+	{
+		synchronized (lock)
+		{
+			cached = null;
+			cachedDB = null;
+		}
+	}
+
+	/**
+	 * Discard the trie if it's cached for this db.
+	 * Called by {@link Trip#cancelEndPreviousTrip(RDBAdapter)}.
+	 * @param db  db connection being changed
+	 */
+	static void changed(RDBAdapter db)
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				invalidate();
+		}
+	}
+
+	/**
+	 * Update the trie, if cached for this db, with a newly completed trip.
+	 * Called from {@link VehSettings#endCurrentTrip(RDBAdapter, Vehicle, int, int, int, TripCategory, int)}.
+	 * @param db  db connection being changed
+	 * @param t  Trip which has just ended
+	 * @throws IllegalStateException if db not open
+	 */
+	static void tripEnded(RDBAdapter db, final Trip t)
+		throws IllegalStateException
+	{
+		synchronized (lock)
+		{
+			if ((cached == null) || ! db.hasSameOwner(cachedDB))
+				return;
+
+			final int tripID = t.getID();
+			int startLoc = db.getRowIntField(Trip.TABNAME, tripID, "locid_start", 0);
+			if (startLoc == 0)
+			{
+				final int tsID = db.getRowIntField(Trip.TABNAME, tripID, "tstopid_start", 0);
+				if (tsID != 0)
+					startLoc = db.getRowIntField(TStop.TABNAME, tsID, TStop.FIELD_LOCID, 0);
+			}
+			final Vector<String[]> sv = db.getRows
+				(TStop.TABNAME, TStop.FIELD_TRIPID, Integer.toString(tripID),
+				 new String[]{ TStop.FIELD_LOCID, "odo_trip" }, "_id", 0);
+			if ((startLoc == 0) || (sv == null) || (sv.size() > MAX_SEQUENCE_STOPS))
+				return;
+
+			final int n = sv.size();
+			int[] locs = new int[n], odos = new int[n];
+			for (int i = 0; i < n; ++i)
+			{
+				final String[] r = sv.elementAt(i);
+				if (r[0] == null)
+					return;  // location unknown
+				locs[i] = Integer.parseInt(r[0]);
+				odos[i] = (r[1] != null) ? Integer.parseInt(r[1]) : 0;
+			}
+			cached.add(startLoc, locs, odos, t.getTime_start());
+		}
+	}
+
+	/** Key into {@link #byStartEnd} */
+	private static long edgeKey(final int startLocID, final int endLocID)
+	{
+		return (((long) startLocID) << 32) | (endLocID & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Build the trie by reading all completed trips and their stops from the db, in one pass over each table.
+	 * @param db  db connection
+	 * @throws IllegalStateException if db not open
+	 */
+	private FreqTripMiner(RDBAdapter db)
+		throws IllegalStateException
+	{
+		final Vector<String[]> trips = db.getRows
+			(Trip.TABNAME, "odo_end is not null", (String[]) null,
+			 new String[]{ "_id", "locid_start", "tstopid_start", "time_start" }, "_id", 0);
+		if (trips == null)
+			return;
+		final Vector<String[]> stops = db.getRows
+			(TStop.TABNAME, "tripid is not null", (String[]) null,
+			 new String[]{ TStop.FIELD_TRIPID, TStop.FIELD_LOCID, "odo_trip", "_id" }, "tripid, _id", 0);
+		if (stops == null)
+			return;
+
+		// Older trips have no locid_start; use their starting TStop's location
+		HashMap<Integer, Integer> stopLoc = new HashMap<Integer, Integer>();
+		for (final String[] s : stops)
+			if (s[1] != null)
+				stopLoc.put(Integer.valueOf(s[3]), Integer.valueOf(s[1]));
+
+		// Merge the two lists, both sorted by trip ID
+		final int nStops = stops.size();
+		int si = 0;
+		int[] locs = new int[MAX_SEQUENCE_STOPS], odos = new int[MAX_SEQUENCE_STOPS];
+		for (final String[] t : trips)
+		{
+			final int tripID = Integer.parseInt(t[0]);
+			while ((si < nStops) && (Integer.parseInt(stops.elementAt(si)[0]) < tripID))
+				++si;
+
+			int n = 0;
+			boolean usable = true;
+			for (; (si < nStops) && (Integer.parseInt(stops.elementAt(si)[0]) == tripID); ++si)
+			{
+				final String[] s = stops.elementAt(si);
+				if ((n == MAX_SEQUENCE_STOPS) || (s[1] == null))
+				{
+					usable = false;
+					continue;
+				}
+				locs[n] = Integer.parseInt(s[1]);
+				odos[n] = (s[2] != null) ? Integer.parseInt(s[2]) : 0;
+				++n;
+			}
+			if ((! usable) || (n == 0))
+				continue;
+
+			int startLoc = 0;
+			if (t[1] != null)
+				startLoc = Integer.parseInt(t[1]);
+			else if (t[2] != null)
+			{
+				final Integer sl = stopLoc.get(Integer.valueOf(t[2]));
+				if (sl != null)
+					startLoc = sl.intValue();
+			}
+			if (startLoc == 0)
+				continue;
+
+			int[] l = new int[n], o = new int[n];
+			System.arraycopy(locs, 0, l, 0, n);
+			System.arraycopy(odos, 0, o, 0, n);
+			add(startLoc, l, o, (t[3] != null) ? Integer.parseInt(t[3]) : 0);
+		}
+	}
+
+	/**
+	 * Add a completed trip to the trie. Caller must synchronize if needed.
+	 * @param startLoc  Starting location ID
+	 * @param locs  Each stop's location ID
+	 * @param odos  Each stop's trip odometer, or 0 if unknown
+	 * @param timeStart  Trip's starting time (unix format), or 0 if unknown
+	 */
+	private void add(final int startLoc, final int[] locs, final int[] odos, final int timeStart)
+	{
+		Node node = roots.get(Integer.valueOf(startLoc));
+		if (node == null)
+		{
+			node = new Node();
+			roots.put(Integer.valueOf(startLoc), node);
+		}
+		++node.passCount;
+
+		for (int i = 0; i < locs.length; ++i)
+		{
+			node = node.child(locs[i]);
+			++node.passCount;
+			if (odos[i] > 0)
+			{
+				node.odoSum += odos[i];
+				++node.odoCount;
+			}
+		}
+
+		if (timeStart == 0)
+			return;  // can't place it in the histograms
+		cal.setTimeInMillis(timeStart * 1000L);
+		final int hour = cal.get(Calendar.HOUR_OF_DAY);
+		final int dow = cal.get(Calendar.DAY_OF_WEEK);
+		final boolean isWeekend = (dow == Calendar.SATURDAY) || (dow == Calendar.SUNDAY);
+
+		if (node.ends == null)
+			node.ends = new Histogram();
+		node.ends.add(hour, isWeekend);
+
+		final Long key = Long.valueOf(edgeKey(startLoc, locs[locs.length - 1]));
+		Histogram h = byStartEnd.get(key);
+		if (h == null)
+		{
+			h = new Histogram();
+			byStartEnd.put(key, h);
+		}
+		h.add(hour, isWeekend);
+		++tripCount;
+	}
+
+	/**
+	 * Get the number of completed trips with a known starting time that were mined.
+	 * @return  Number of trips
+	 */
+	public int getTripCount()
+	{
+		synchronized (lock)
+		{
+			return tripCount;
+		}
+	}
+
+	/**
+	 * Calculate the hour and weekday/weekend of a time.
+	 * @return  Hour of day (0-23), plus 100 if on a weekend
+	 */
+	private int hourAndDayType(final int timeSec)
+	{
+		cal.setTimeInMillis(timeSec * 1000L);
+		final int dow = cal.get(Calendar.DAY_OF_WEEK);
+
+		return cal.get(Calendar.HOUR_OF_DAY)
+			+ (((dow == Calendar.SATURDAY) || (dow == Calendar.SUNDAY)) ? 100 : 0);
+	}
+
+	/**
+	 * Relative likelihood of a trip from one location to another at a given time:
+	 * The fraction of trips from {@code startLocID} which ended at {@code endLocID},
+	 * times a factor for how well the hour and weekday/weekend match those trips.
+	 * Scores can be compared between trips; they aren't probabilities.
+	 * @param startLocID  Starting location ID
+	 * @param endLocID  Ending location ID
+	 * @param timeSec  Time (unix format) at which the trip would start, usually now
+	 * @return  Score, or 0 if no trips found from {@code startLocID} to {@code endLocID}
+	 */
+	public double score(final int startLocID, final int endLocID, final int timeSec)
+	{
+		synchronized (lock)
+		{
+			final Histogram h = byStartEnd.get(Long.valueOf(edgeKey(startLocID, endLocID)));
+			if (h == null)
+				return 0;
+
+			final int hd = hourAndDayType(timeSec);
+			return h.count / (double) roots.get(Integer.valueOf(startLocID)).passCount
+				* h.timeFactor(hd % 100, (hd >= 100));
+		}
+	}
+
+	/**
+	 * Sort frequent trips by {@link #score(int, int, int)}, most likely first.
+	 * Trips with equal scores keep their previous order.
+	 * @param fts  Frequent trips to sort in place, from {@link FreqTrip#tripsForLocation(RDBAdapter, int, boolean, boolean)}
+	 *     or similar; may be null
+	 * @param timeSec  Time (unix format) at which the trip would start, usually now
+	 */
+	public void rankFreqTrips(final List<FreqTrip> fts, final int timeSec)
+	{
+		if ((fts == null) || (fts.size() < 2))
+			return;
+
+		final HashMap<FreqTrip, Double> scores = new HashMap<FreqTrip, Double>();
+		for (final FreqTrip ft : fts)
+			scores.put(ft, Double.valueOf(score(ft.getStart_locID(), ft.getEnd_locID(), timeSec)));
+
+		Collections.sort(fts, new Comparator<FreqTrip>()
+		{
+			public int compare(final FreqTrip a, final FreqTrip b)
+			{
+				return scores.get(b).compareTo(scores.get(a));
+			}
+		});
+	}
+
+	/**
+	 * Propose frequent trips from a starting location: Each stop-location sequence made
+	 * at least {@link #MIN_SUPPORT} times, most likely first at the given time.
+	 * Sequences which already match a {@link FreqTrip} aren't excluded.
+	 * @param startLocID  Starting location ID
+	 * @param timeSec  Time (unix format) at which the trip would start, usually now
+	 * @param limit  Maximum number of patterns to return
+	 * @return  Patterns sorted by {@link Pattern#score}; may be empty, never null
+	 */
+	public List<Pattern> proposePatterns(final int startLocID, final int timeSec, final int limit)
+	{
+		final List<Pattern> found = new ArrayList<Pattern>();
+
+		synchronized (lock)
+		{
+			final Node root = roots.get(Integer.valueOf(startLocID));
+			if (root == null)
+				return found;
+
+			final int hd = hourAndDayType(timeSec);
+			collectPatterns(root, startLocID, root.passCount, hd % 100, (hd >= 100),
+				new int[MAX_SEQUENCE_STOPS], new int[MAX_SEQUENCE_STOPS], 0, found);
+		}
+
+		Collections.sort(found, new Comparator<Pattern>()
+		{
+			public int compare(final Pattern a, final Pattern b)
+			{
+				return Double.compare(b.score, a.score);
+			}
+		});
+		if (found.size() > limit)
+			found.subList(limit, found.size()).clear();
+
+		return found;
+	}
+
+	/**
+	 * Recursively collect patterns from this trie node's children. Caller must synchronize on {@link #lock}.
+	 * @param pathLocs  Location IDs from the root to {@code node}, in elements 0 to {@code depth} - 1
+	 * @param pathOdos  Mean trip odometers along the path
+	 */
+	private void collectPatterns
+		(final Node node, final int startLocID, final int total, final int hour, final boolean isWeekend,
+		 final int[] pathLocs, final int[] pathOdos, final int depth, final List<Pattern> found)
+	{
+		if (node.children == null)
+			return;
+
+		for (final Integer locKey : node.children.keySet())
+		{
+			final Node ch = node.children.get(locKey);
+			if (ch.passCount < MIN_SUPPORT)
+				continue;  // no frequent sequence can continue through here
+
+			pathLocs[depth] = locKey.intValue();
+			pathOdos[depth] = (ch.odoCount > 0) ? (int) (ch.odoSum / ch.odoCount) : 0;
+			final Histogram h = ch.ends;
+			if ((h != null) && (h.count >= MIN_SUPPORT))
+			{
+				int[] l = new int[depth + 1], o = new int[depth + 1];
+				System.arraycopy(pathLocs, 0, l, 0, depth + 1);
+				System.arraycopy(pathOdos, 0, o, 0, depth + 1);
+				found.add(new Pattern
+					(startLocID, l, o, h, h.count / (double) total * h.timeFactor(hour, isWeekend)));
+			}
+
+			collectPatterns(ch, startLocID, total, hour, isWeekend, pathLocs, pathOdos, depth + 1, found);
+		}
+	}
+
+}  // public class FreqTripMiner
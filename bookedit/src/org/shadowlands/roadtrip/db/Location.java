@@ -91,6 +91,38 @@ public class Location extends RDBRecord
 		}
 	}
 
+	/**
+	 * Find the Locations nearest a point, using {@link LocationGeoIndex}.
+	 * Only locations with coordinates ({@link #getGeoLat()}, {@link #getGeoLon()}) are found.
+	 * @param db  db connection
+	 * @param lat  Latitude, in degrees
+	 * @param lon  Longitude, in degrees
+	 * @param radiusMeters  Maximum distance from the point, in meters
+	 * @param limit  Maximum number of locations to return
+	 * @return  Locations within {@code radiusMeters}, nearest first, or null if none
+	 * @throws IllegalStateException if db not open
+	 * @since 0.9.93
+	 */
+	public static Location[] nearestLocations
+		(RDBAdapter db, final double lat, final double lon, final double radiusMeters, final int limit)
+		throws IllegalStateException
+	{
+		final int[] ids = LocationGeoIndex.get(db).nearestLocationIDs(lat, lon, radiusMeters, limit);
+		if (ids.length == 0)
+			return null;
+
+		Location[] rv = new Location[ids.length];
+		try {
+			for (int i = 0; i < ids.length; ++i)
+				rv[i] = new Location(db, ids[i]);
+
+			return rv;
+		} catch (RDBKeyNotFoundException e) {
+			LocationGeoIndex.invalidate();  // index is stale; shouldn't happen
+			return null;
+		}
+	}
+
 	/**
 	 * Search the table for a Location with this description within an area.
 	 * @param db  db connection
@@ -216,9 +248,12 @@ public class Location extends RDBRecord
 	public int insert(RDBAdapter db)
 		throws IllegalStateException
 	{
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
+		LocationGeoIndex.update(db, id, geo_lat, geo_lon);
 		return id;
 	}
 
@@ -238,8 +273,11 @@ public class Location extends RDBRecord
 		if (! dirty)
 			return;
 
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
+		LocationGeoIndex.update(dbConn, id, geo_lat, geo_lon);
 	}
 
 	/**
@@ -299,6 +337,42 @@ public class Location extends RDBRecord
 		dirty = true;
 	}
 
+	/**
+	 * Get the latitude, if known.
+	 * @return  Latitude in degrees as stored in the db, or null
+	 * @see #setGeoCoords(String, String)
+	 * @since 0.9.93
+	 */
+	public String getGeoLat()
+	{
+		return geo_lat;
+	}
+
+	/**
+	 * Get the longitude, if known.
+	 * @return  Longitude in degrees as stored in the db, or null
+	 * @see #setGeoCoords(String, String)
+	 * @since 0.9.93
+	 */
+	public String getGeoLon()
+	{
+		return geo_lon;
+	}
+
+	/**
+	 * Set or clear the location's coordinates.
+	 * After {@link #commit()}, {@link #nearestLocations(RDBAdapter, double, double, double, int)} can find it.
+	 * @param lat  Latitude in degrees, or null
+	 * @param lon  Longitude in degrees, or null
+	 * @since 0.9.93
+	 */
+	public void setGeoCoords(final String lat, final String lon)
+	{
+		geo_lat = lat;
+		geo_lon = lon;
+		dirty = true;
+	}
+
 	/** For gas stop locations, get the latest {@link GasBrandGrade} ID, or 0 if unused. */
 	public int getLatestGasBrandGradeID()
 	{
@@ -327,7 +401,9 @@ public class Location extends RDBRecord
 	public void delete()
 		throws NullPointerException
 	{
+		LocationGeoIndex.update(dbConn, id, null, null);
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
@@ -0,0 +1,352 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * In-memory spatial index of the {@link Location}s which have coordinates
+ * ({@code geo_lat}, {@code geo_lon}), to find the locations nearest a point
+ * with {@link #nearestLocationIDs(double, double, double, int)}.
+ *<P>
+ * Locations are bucketed into a uniform grid of {@link #CELL_DEGREES} cells;
+ * a search only looks at the cells within its radius, so its time depends on how many
+ * locations are nearby, not how many are in the logbook.
+ *<P>
+ * Like {@link LocationTripIndex}, the index is built from the db the first time {@link #get(RDBAdapter)}
+ * is called for that db, and only one db's index is kept at a time.
+ * It's kept consistent afterwards by {@link Location}'s {@code insert}, {@code commit} and {@code delete};
+ * code which changes {@code location.geo_lat} or {@code geo_lon} any other way should call {@link #invalidate()}.
+ * All methods are thread-safe.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class LocationGeoIndex
+{
+	/** Size of each grid cell, in degrees of latitude and longitude: 0.01, about 1.1 km of latitude. */
+	public static final double CELL_DEGREES = 0.01;
+
+	/** Number of grid columns around the globe */
+	private static final int NUM_COLS = (int) Math.round(360.0 / CELL_DEGREES);
+
+	/** Mean earth radius in meters, for {@link #distanceMeters(double, double, double, double)} */
+	private static final double EARTH_RADIUS_M = 6371008.8;
+
+	/** Meters per degree of latitude */
+	private static final double METERS_PER_DEGREE = EARTH_RADIUS_M * Math.PI / 180.0;
+
+	/**
+	 * If a search's radius covers more than this many grid cells,
+	 * check every location instead of looking up each cell.
+	 */
+	private static final int MAX_SEARCH_CELLS = 4096;
+
+	/** Lock for {@link #cached} and {@link #cachedDB}, and for the contents of {@link #cached} */
+	private static final Object lock = new Object();
+
+	/** Index for {@link #cachedDB}, or null */
+	private static LocationGeoIndex cached;
+
+	/** DB from which {@link #cached} was built, or null */
+	private static RDBAdapter cachedDB;
+
+	/** Location ID -&gt; {latitude, longitude} */
+	private final HashMap<Integer, double[]> coordsByID = new HashMap<Integer, double[]>();
+
+	/** Grid cell key from {@link #cellKey(double, double)} -&gt; sorted IDs of the locations in that cell */
+	private final HashMap<Long, LocationTripIndex.IntList> cells = new HashMap<Long, LocationTripIndex.IntList>();
+
+	/**
+	 * Get the index for this db, building it if needed.
+	 * @param db  db connection
+	 * @return  the index for {@code db}; not null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static LocationGeoIndex get(RDBAdapter db)
+		throws IllegalStateException
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				return cached;
+
+			cached = null;
+			cachedDB = null;
+			LocationGeoIndex idx = new LocationGeoIndex(db);
+			cached = idx;
+			cachedDB = db;
+
+			return idx;
+		}
+	}
+
+	/**
+	 * Discard the cached index, if any; it will be rebuilt at the next call to {@link #get(RDBAdapter)}.
+	 * Call this after changing location coordinates other than through {@link Location},
+	 * or when a db file is replaced by restoring a backup.
+	 */
+	public static void invalidate()
+	{
+		synchronized (lock)
+		{
+			cached = null;
+			cachedDB = null;
+		}
+	}
+
+	/**
+	 * Update the index, if cached for this db, for a {@link Location} which has been inserted,
+	 * changed, or deleted. Called from {@link Location}.
+	 * @param db  db connection being changed
+	 * @param locID  Location ID
+	 * @param geoLat  Latitude now in the db, or null if none or deleted
+	 * @param geoLon  Longitude now in the db, or null if none or deleted
+	 */
+	static void update(RDBAdapter db, final int locID, final String geoLat, final String geoLon)
+	{
+		synchronized (lock)
+		{
+			if ((cached == null) || ! db.hasSameOwner(cachedDB))
+				return;
+
+			cached.remove(locID);
+			cached.add(locID, parseCoord(geoLat, 90.0), parseCoord(geoLon, 180.0));
+		}
+	}
+
+	/**
+	 * Parse a latitude or longitude field.
+	 * @param coord  Field contents, or null
+	 * @param maxAbs  Maximum absolute value: 90 for latitude, 180 for longitude
+	 * @return  The coordinate in degrees, or {@link Double#NaN} if null, malformed, or out of range
+	 */
+	public static double parseCoord(final String coord, final double maxAbs)
+	{
+		if (coord == null)
+			return Double.NaN;
+
+		try
+		{
+			final double d = Double.parseDouble(coord);
+			if (Math.abs(d) <= maxAbs)
+				return d;
+		} catch (NumberFormatException e) {}
+
+		return Double.NaN;
+	}
+
+	/**
+	 * Great-circle distance between two points, using the haversine formula.
+	 * @param lat1  Latitude of first point, in degrees
+	 * @param lon1  Longitude of first point, in degrees
+	 * @param lat2  Latitude of second point, in degrees
+	 * @param lon2  Longitude of second point, in degrees
+	 * @return  Distance in meters
+	 */
+	public static double distanceMeters(final double lat1, final double lon1, final double lat2, final double lon2)
+	{
+		final double dLat = Math.toRadians(lat2 - lat1), dLon = Math.toRadians(lon2 - lon1);
+		final double sinLat = Math.sin(dLat / 2), sinLon = Math.sin(dLon / 2);
+		final double a = sinLat * sinLat
+			+ Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+
+		return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(a)));
+	}
+
+	/** Grid row of a latitude */
+	private static int cellRow(final double lat)
+	{
+		return (int) Math.floor(lat / CELL_DEGREES);
+	}
+
+	/** Grid column of a longitude, 0 to {@link #NUM_COLS} - 1 */
+	private static int cellCol(final double lon)
+	{
+		return wrapCol((int) Math.floor((lon + 180.0) / CELL_DEGREES));
+	}
+
+	/** Wrap a grid column number around the 180th meridian, to be 0 to {@link #NUM_COLS} - 1 */
+	private static int wrapCol(final int col)
+	{
+		return ((col % NUM_COLS) + NUM_COLS) % NUM_COLS;
+	}
+
+	/** Key into {@link #cells} for this grid row and column */
+	private static long cellKey(final int row, final int col)
+	{
+		return (((long) row) << 32) | col;
+	}
+
+	/**
+	 * Build the index by reading all location coordinates from the db.
+	 * @param db  db connection
+	 * @throws IllegalStateException if db not open
+	 */
+	private LocationGeoIndex(RDBAdapter db)
+		throws IllegalStateException
+	{
+		final String[] fields = { "_id", "geo_lat", "geo_lon" };
+		final Vector<String[]> rows = db.getRows
+			("location", "geo_lat is not null and geo_lon is not null", (String[]) null, fields, "_id", 0);
+		if (rows == null)
+			return;
+
+		for (final String[] r : rows)
+			add(Integer.parseInt(r[0]), parseCoord(r[1], 90.0), parseCoord(r[2], 180.0));
+	}
+
+	/** Add a location to the grid, unless a coordinate is NaN. Caller must synchronize if needed. */
+	private void add(final int locID, final double lat, final double lon)
+	{
+		if (Double.isNaN(lat) || Double.isNaN(lon))
+			return;
+
+		coordsByID.put(Integer.valueOf(locID), new double[]{ lat, lon });
+		final Long key = Long.valueOf(cellKey(cellRow(lat), cellCol(lon)));
+		LocationTripIndex.IntList li = cells.get(key);
+		if (li == null)
+		{
+			li = new LocationTripIndex.IntList();
+			cells.put(key, li);
+		}
+		li.insertSorted(locID);
+	}
+
+	/** Remove a location from the grid, if present. Caller must synchronize if needed. */
+	private void remove(final int locID)
+	{
+		final double[] ll = coordsByID.remove(Integer.valueOf(locID));
+		if (ll == null)
+			return;
+
+		final Long key = Long.valueOf(cellKey(cellRow(ll[0]), cellCol(ll[1])));
+		LocationTripIndex.IntList li = cells.get(key);
+		if (li != null)
+		{
+			li.remove(locID);
+			if (li.size == 0)
+				cells.remove(key);
+		}
+	}
+
+	/**
+	 * Get the number of locations in the index, which are those having valid coordinates.
+	 * @return  Number of locations
+	 */
+	public int size()
+	{
+		synchronized (lock)
+		{
+			return coordsByID.size();
+		}
+	}
+
+	/**
+	 * Find the locations nearest a point, within a radius.
+	 * @param lat  Latitude, in degrees
+	 * @param lon  Longitude, in degrees
+	 * @param radiusMeters  Maximum distance from the point, in meters
+	 * @param limit  Maximum number of location IDs to return
+	 * @return  IDs of the locations within {@code radiusMeters}, nearest first; may be empty, never null
+	 */
+	public int[] nearestLocationIDs(final double lat, final double lon, final double radiusMeters, final int limit)
+	{
+		if ((limit <= 0) || ! (radiusMeters >= 0) || Double.isNaN(lat) || Double.isNaN(lon))
+			return new int[0];
+
+		// Nearest so far, sorted by distance
+		final int[] foundIDs = new int[limit];
+		final double[] foundDist = new double[limit];
+		int n = 0;
+
+		synchronized (lock)
+		{
+			final int dRows = (int) Math.ceil(radiusMeters / (METERS_PER_DEGREE * CELL_DEGREES));
+			final double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+			final int dCols = (int) Math.min(NUM_COLS / 2, Math.ceil(dRows / cosLat));
+			final long numCells = (2L * dRows + 1) * (2L * dCols + 1);
+
+			if ((numCells > MAX_SEARCH_CELLS) || (numCells > cells.size()))
+			{
+				// Large radius: Faster to check every location
+				for (final LocationTripIndex.IntList li : cells.values())
+					n = addNearest(li, lat, lon, radiusMeters, foundIDs, foundDist, n);
+			} else {
+				final int row0 = cellRow(lat), col0 = cellCol(lon);
+				for (int r = row0 - dRows; r <= row0 + dRows; ++r)
+				{
+					for (int c = col0 - dCols; c <= col0 + dCols; ++c)
+					{
+						final LocationTripIndex.IntList li = cells.get(Long.valueOf(cellKey(r, wrapCol(c))));
+						if (li != null)
+							n = addNearest(li, lat, lon, radiusMeters, foundIDs, foundDist, n);
+					}
+				}
+			}
+		}
+
+		if (n == limit)
+			return foundIDs;
+
+		int[] ret = new int[n];
+		System.arraycopy(foundIDs, 0, ret, 0, n);
+		return ret;
+	}
+
+	/**
+	 * Check one grid cell's locations, inserting into the sorted nearest-so-far arrays
+	 * each one within the radius and nearer than the farthest found so far.
+	 * Caller must synchronize on {@link #lock}.
+	 * @param li  Location IDs in the cell
+	 * @param foundIDs  Nearest location IDs found so far, sorted by distance
+	 * @param foundDist  Distance of each location in {@code foundIDs}
+	 * @param n  Number of entries used so far in {@code foundIDs}
+	 * @return  New number of entries used
+	 */
+	private int addNearest
+		(final LocationTripIndex.IntList li, final double lat, final double lon, final double radiusMeters,
+		 final int[] foundIDs, final double[] foundDist, int n)
+	{
+		final int limit = foundIDs.length;
+		for (int i = 0; i < li.size; ++i)
+		{
+			final int locID = li.data[i];
+			final double[] ll = coordsByID.get(Integer.valueOf(locID));
+			final double d = distanceMeters(lat, lon, ll[0], ll[1]);
+			if ((d > radiusMeters) || ((n == limit) && (d >= foundDist[n - 1])))
+				continue;
+
+			int j = (n < limit) ? n++ : (n - 1);
+			while ((j > 0) && (foundDist[j - 1] > d))
+			{
+				foundIDs[j] = foundIDs[j - 1];
+				foundDist[j] = foundDist[j - 1];
+				--j;
+			}
+			foundIDs[j] = locID;
+			foundDist[j] = d;
+		}
+
+		return n;
+	}
+
+}  // public class LocationGeoIndex
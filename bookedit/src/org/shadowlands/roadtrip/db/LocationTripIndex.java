@@ -0,0 +1,343 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * In-memory inverted index from {@link Location} ID to the sorted IDs of the {@link Trip}s
+ * which visit that location, for paging through Location Mode in
+ * {@link Trip#tripsForLocation(RDBAdapter, int, Vehicle, int, boolean, int, boolean)}.
+ * A trip visits a location if one of its {@link TStop}s is there, or if its
+ * {@code locid_start} is there.
+ *<P>
+ * Frequent places like "Home" can have thousands of visits. Without this index,
+ * each page of Location Mode re-runs a subquery over {@code tstop}; with it,
+ * finding the next page's trip IDs is a binary search plus the size of the page.
+ *<P>
+ * The index is built from the db the first time {@link #get(RDBAdapter)} is called for that db,
+ * and is kept consistent afterwards by {@link TStop} and {@link Trip}'s
+ * {@code insert}, {@code commit} and {@code delete} methods.
+ * Code which changes {@code tstop.locid} or {@code trip.locid_start} any other way
+ * should call {@link #invalidate()}.
+ *<P>
+ * Like {@link VehSettings}' current-trip cache, only one db's index is kept at a time;
+ * {@link RDBAdapter#hasSameOwner(RDBAdapter)} checks whether it's for the db being used.
+ * Each location's list is a multiset with one entry per {@code TStop} or trip start,
+ * so that removing one of a trip's several stops at a location doesn't remove the trip.
+ * All methods are static and thread-safe.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class LocationTripIndex
+{
+	/** Lock for {@link #cached} and {@link #cachedDB}, and for the contents of {@link #cached} */
+	private static final Object lock = new Object();
+
+	/** Index for {@link #cachedDB}, or null */
+	private static LocationTripIndex cached;
+
+	/** DB from which {@link #cached} was built, or null */
+	private static RDBAdapter cachedDB;
+
+	/** Location ID -&gt; sorted trip IDs visiting it */
+	private final HashMap<Integer, IntList> tripsByLoc = new HashMap<Integer, IntList>();
+
+	/**
+	 * Get the index for this db, building it if needed.
+	 * @param db  db connection
+	 * @return  the index for {@code db}; not null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static LocationTripIndex get(RDBAdapter db)
+		throws IllegalStateException
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				return cached;
+
+			cached = null;
+			cachedDB = null;
+			LocationTripIndex idx = new LocationTripIndex(db);
+			cached = idx;
+			cachedDB = db;
+
+			return idx;
+		}
+	}
+
+	/**
+	 * Discard the cached index, if any; it will be rebuilt at the next call to {@link #get(RDBAdapter)}.
+	 * Call this after changing {@code tstop.locid} or {@code trip.locid_start}
+	 * other than through {@link TStop} or {@link Trip}, or when a db file is replaced by restoring a backup.
+	 */
+	public static void invalidate()
+	{
+		synchronized (lock)
+		{
+			cached = null;
+			cachedDB = null;
+		}
+	}
+
+	/**
+	 * Update the index, if cached for this db, for a {@link TStop} or trip start
+	 * whose location has been inserted, changed, or deleted.
+	 * Called from {@link TStop} and {@link Trip}.
+	 * @param db  db connection being changed
+	 * @param tripID  Trip ID; if 0, discards the cached index instead
+	 * @param oldLocID  Location ID previously in the db, or 0 if none (new record or null field)
+	 * @param newLocID  Location ID now in the db, or 0 if none (deleted record or null field)
+	 */
+	static void update(RDBAdapter db, final int tripID, final int oldLocID, final int newLocID)
+	{
+		if (oldLocID == newLocID)
+			return;
+
+		synchronized (lock)
+		{
+			if ((cached == null) || ! db.hasSameOwner(cachedDB))
+				return;
+
+			if (tripID == 0)
+			{
+				invalidate();
+				return;
+			}
+
+			if (oldLocID != 0)
+			{
+				IntList li = cached.tripsByLoc.get(Integer.valueOf(oldLocID));
+				if ((li == null) || ! li.remove(tripID))
+				{
+					invalidate();  // inconsistent; rebuild when next needed
+					return;
+				}
+			}
+
+			if (newLocID != 0)
+			{
+				final Integer key = Integer.valueOf(newLocID);
+				IntList li = cached.tripsByLoc.get(key);
+				if (li == null)
+				{
+					li = new IntList();
+					cached.tripsByLoc.put(key, li);
+				}
+				li.insertSorted(tripID);
+			}
+		}
+	}
+
+	/**
+	 * Build the index by reading all trip-start and TStop locations from the db.
+	 * @param db  db connection
+	 * @throws IllegalStateException if db not open
+	 */
+	private LocationTripIndex(RDBAdapter db)
+		throws IllegalStateException
+	{
+		final String[] tsFields = { TStop.FIELD_LOCID, TStop.FIELD_TRIPID };
+		addAll(db.getRows(TStop.TABNAME, TStop.FIELD_LOCID + " is not null", (String[]) null, tsFields, null, 0));
+
+		final String[] trFields = { "locid_start", "_id" };
+		addAll(db.getRows(Trip.TABNAME, "locid_start is not null", (String[]) null, trFields, null, 0));
+
+		for (IntList li : tripsByLoc.values())
+			li.sort();
+	}
+
+	/**
+	 * Append rows to the unsorted lists while building the index.
+	 * @param rows  Rows of location ID, trip ID; may be null
+	 */
+	private void addAll(final Vector<String[]> rows)
+	{
+		if (rows == null)
+			return;
+
+		Integer prevKey = null;
+		IntList li = null;
+		for (final String[] r : rows)
+		{
+			if ((r[0] == null) || (r[1] == null))
+				continue;
+
+			final int locID = Integer.parseInt(r[0]);
+			if (locID == 0)
+				continue;
+			if ((prevKey == null) || (prevKey.intValue() != locID))
+			{
+				prevKey = Integer.valueOf(locID);
+				li = tripsByLoc.get(prevKey);
+				if (li == null)
+				{
+					li = new IntList();
+					tripsByLoc.put(prevKey, li);
+				}
+			}
+			li.add(Integer.parseInt(r[1]));
+		}
+	}
+
+	/**
+	 * Get a page of the trip IDs which visit a location.
+	 * @param locID  Location to look for
+	 * @param prevTripID  Previous end of trip range: A trip newer or older than the
+	 *          ones to return, or 0 to get the latest trips
+	 * @param towardsNewer  If true, return trip IDs greater than {@code prevTripID};
+	 *          otherwise return IDs less than {@code prevTripID}.
+	 *          Ignored if {@code prevTripID} is 0.
+	 * @param limit  Maximum number of trip IDs to return
+	 * @return  Distinct trip IDs, ordered starting from the one closest to {@code prevTripID}
+	 *          (ascending if {@code towardsNewer}, otherwise descending); may be empty, never null
+	 */
+	public int[] getTripIDs
+		(final int locID, final int prevTripID, final boolean towardsNewer, final int limit)
+	{
+		synchronized (lock)
+		{
+			final IntList li = tripsByLoc.get(Integer.valueOf(locID));
+			if ((li == null) || (li.size == 0) || (limit <= 0))
+				return new int[0];
+
+			final boolean ascending = towardsNewer && (prevTripID != 0);
+			int[] found = new int[Math.min(limit, li.size)];
+			int n = 0, prev = 0;
+			if (ascending)
+			{
+				for (int i = li.indexAfter(prevTripID); (i < li.size) && (n < limit); ++i)
+				{
+					final int tid = li.data[i];
+					if ((n == 0) || (tid != prev))
+						found[n++] = prev = tid;
+				}
+			} else {
+				final int start = (prevTripID != 0) ? li.indexBefore(prevTripID) : (li.size - 1);
+				for (int i = start; (i >= 0) && (n < limit); --i)
+				{
+					final int tid = li.data[i];
+					if ((n == 0) || (tid != prev))
+						found[n++] = prev = tid;
+				}
+			}
+
+			if (n < found.length)
+			{
+				int[] f = new int[n];
+				System.arraycopy(found, 0, f, 0, n);
+				found = f;
+			}
+
+			return found;
+		}
+	}
+
+	/**
+	 * Growable sorted list of ints, which may contain duplicates.
+	 * Trip IDs are usually appended in increasing order, so {@link #insertSorted(int)} is usually O(1).
+	 * Also used by {@link LocationGeoIndex} for its grid cells.
+	 */
+	static final class IntList
+	{
+		int[] data = new int[8];
+		int size;
+
+		/** Append without sorting; call {@link #sort()} when done. */
+		void add(final int v)
+		{
+			if (size == data.length)
+			{
+				int[] d = new int[size * 2];
+				System.arraycopy(data, 0, d, 0, size);
+				data = d;
+			}
+			data[size++] = v;
+		}
+
+		void sort()
+		{
+			Arrays.sort(data, 0, size);
+		}
+
+		/** Insert, keeping the list sorted. */
+		void insertSorted(final int v)
+		{
+			add(v);
+			int i = size - 1;
+			while ((i > 0) && (data[i - 1] > v))
+			{
+				data[i] = data[i - 1];
+				--i;
+			}
+			data[i] = v;
+		}
+
+		/**
+		 * Remove one occurrence of a value.
+		 * @return true if found and removed
+		 */
+		boolean remove(final int v)
+		{
+			final int i = Arrays.binarySearch(data, 0, size, v);
+			if (i < 0)
+				return false;
+
+			System.arraycopy(data, i + 1, data, i, size - i - 1);
+			--size;
+			return true;
+		}
+
+		/** Index of the first element &gt; v, or {@link #size} if none. */
+		int indexAfter(final int v)
+		{
+			int lo = 0, hi = size;
+			while (lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (data[mid] <= v)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		/** Index of the last element &lt; v, or -1 if none. */
+		int indexBefore(final int v)
+		{
+			int lo = 0, hi = size;
+			while (lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (data[mid] < v)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo - 1;
+		}
+	}
+
+}  // public class LocationTripIndex
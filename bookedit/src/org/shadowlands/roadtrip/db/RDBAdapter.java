@@ -485,6 +485,34 @@ public interface RDBAdapter
 	abstract void execStrucUpdate(final String sql)
 		throws IllegalStateException, SQLException;
 
+	/**
+	 * Begin a transaction, so that a group of {@link #execStrucUpdate(String)} calls
+	 * are committed or rolled back together by {@link #endTransaction(boolean)}.
+	 * For use by the db package, <b>not</b> the application, for example by
+	 * {@link RDBSchema#upgradeToCurrent(RDBAdapter, int, boolean, RDBSchema.UpgradeProgressListener)}.
+	 *<P>
+	 * On Android, if a transaction is already active (as during {@code SQLiteOpenHelper.onUpgrade}),
+	 * this begins a nested transaction; if it's rolled back, the outer transaction will also roll back.
+	 *
+	 * @throws IllegalStateException if db has been closed
+	 * @throws SQLException  if a database error occurs
+	 * @since 0.9.93
+	 */
+	abstract void beginTransaction()
+		throws IllegalStateException, SQLException;
+
+	/**
+	 * End the transaction begun by {@link #beginTransaction()}, committing or rolling back its changes.
+	 * For use by the db package, <b>not</b> the application.
+	 *
+	 * @param commit  True to commit, false to roll back
+	 * @throws IllegalStateException if db has been closed
+	 * @throws SQLException  if a database error occurs, or if no transaction is active
+	 * @since 0.9.93
+	 */
+	abstract void endTransaction(final boolean commit)
+		throws IllegalStateException, SQLException;
+
 	/**
 	 * Execute <tt>PRAGMA integrity_check;</tt>
 	 * for use by the db package, <b>not</b> the application.
@@ -500,4 +528,17 @@ public interface RDBAdapter
 	abstract String execPragmaIntegCheck()
 		throws IllegalStateException;
 
+	/**
+	 * Execute a <tt>PRAGMA</tt> which returns a single integer, such as
+	 * {@code page_count}, {@code freelist_count} or {@code auto_vacuum},
+	 * for use by the db package, <b>not</b> the application.
+	 * @param pragma  Pragma name, without the {@code PRAGMA} keyword or any argument
+	 * @return  The pragma's value from its first row, or -1 if no rows or not supported by this adapter
+	 * @throws IllegalStateException if db has been closed, or a database access error occurs
+	 * @see RDBMaintenance
+	 * @since 0.9.93
+	 */
+	abstract int execPragmaInt(final String pragma)
+		throws IllegalStateException;
+
 }  // public interface RDBAdapter
\ No newline at end of file
@@ -0,0 +1,441 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Year-based archive databases of old trips, to keep the current logbook db small.
+ *<P>
+ * {@link #archiveTripsBefore(RDBAdapter, int, RDBSchema.UpgradeCopyCaller)} moves the {@link Trip}s
+ * which started in each year before a cutoff year, with their {@link TStop}s, {@link TStopGas}
+ * and {@link CommentIndex} entries, into a separate archive db file for that year.
+ * Archive files have the same schema as the logbook and are kept in the same directory,
+ * named with {@link #getArchiveFile(String, int)}: {@code roadtrip-archive-2019}.
+ * Each archive also gets a copy of the logbook's master data (vehicles, people, locations,
+ * via routes, geoareas, gas brands, trip categories, frequent trips), with the same IDs,
+ * so its trips can be shown and verified on their own.
+ *<P>
+ * Trips are never archived if they're a vehicle's current trip or its {@code last_tripid},
+ * since those are needed to begin the next trip. When a trip which stays in the logbook
+ * began at an archived trip's final stop ({@code trip.tstopid_start}), that {@link TStop}
+ * is kept in the logbook too, with its {@link TStopGas} and {@link CommentIndex} entry,
+ * so the remaining trip's starting location can still be read. It's also copied to the archive.
+ *<P>
+ * To read archived trips, create an {@code RDBArchive} for the logbook db; it finds the archive files,
+ * and {@link #getArchive(int)} opens each one on demand. {@code LogbookTableModel}
+ * uses this to continue loading earlier trips from the archives once the logbook has none earlier.
+ * Call {@link #close()} when done.
+ *<P>
+ * Archive db files are opened with the platform's {@link RDBAdapter} implementation through
+ * a {@link RDBSchema.UpgradeCopyCaller}, the same callback used to open a copied db for upgrade.
+ * Moving trips uses SQLite's {@code ATTACH DATABASE} and so needs an adapter which runs SQL
+ * on a db file, not {@code RDBMemAdapter}.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBArchive
+{
+	/** Archive filename infix between the logbook's name and the year: {@code "-archive-"} */
+	public static final String ARCHIVE_FILENAME_INFIX = "-archive-";
+
+	/** Schema name for the archive db while {@code ATTACH}ed to the logbook db */
+	private static final String ATTACH_NAME = "archive";
+
+	/**
+	 * Master data tables copied from the logbook into each archive, in the same column order
+	 * since both dbs have the same schema version.
+	 */
+	private static final String[] MASTER_DATA_TABLES =
+		{ "geoarea", "person", "vehiclemake", "vehicle", "tripcategory",
+		  "gas_brandgrade", "location", "via_route", "freqtrip", "freqtrip_tstop" };
+
+	/**
+	 * Where-clause for trips which can be archived, to follow a time-range condition:
+	 * Excludes each vehicle's {@code last_tripid} and {@link VehSettings#CURRENT_TRIP}.
+	 */
+	private static final String WHERE_TRIPS_NOT_CURRENT =
+		" and _id not in (select last_tripid from main.vehicle where last_tripid is not null)"
+		+ " and _id not in (select ivalue from main.veh_settings where sname = '" + VehSettings.CURRENT_TRIP
+		+ "' and ivalue is not null)";
+
+	/** Logbook db, from constructor */
+	private final RDBAdapter db;
+
+	/** Callback to open archive files, from constructor */
+	private final RDBSchema.UpgradeCopyCaller opener;
+
+	/** Years having an archive file, newest first, or null if none; from {@link #findArchiveYears(String)} */
+	private final int[] years;
+
+	/** Archives opened so far by {@link #getArchive(int)}; key is the year */
+	private final HashMap<Integer, RDBAdapter> opened = new HashMap<Integer, RDBAdapter>();
+
+	/** Most recent exception from {@link #getArchive(int)} opening an archive, or null; see {@link #getOpenError()} */
+	private Exception openError;
+
+	/**
+	 * Find the archives of a logbook db. Archive files are opened later, as needed, by {@link #getArchive(int)}.
+	 * @param db  Logbook db connection; should have a filename, not be in-memory only
+	 * @param opener  Callback to open an archive file with the platform's {@link RDBAdapter}
+	 * @throws IllegalStateException if {@code db} isn't open
+	 */
+	public RDBArchive(RDBAdapter db, RDBSchema.UpgradeCopyCaller opener)
+		throws IllegalStateException
+	{
+		this.db = db;
+		this.opener = opener;
+		final String dbPath = db.getFilenameFullPath();
+		years = (dbPath != null) ? findArchiveYears(dbPath) : null;
+	}
+
+	/**
+	 * Get the years which have an archive db.
+	 * @return  Archive years, newest first, or null if none. Don't change the contents of this array.
+	 */
+	public int[] getArchiveYears()
+	{
+		return years;
+	}
+
+	/**
+	 * Get the archive db for a year, opening it if not already open.
+	 * @param year  An archive year, from {@link #getArchiveYears()}
+	 * @return  The open archive db, or null if {@code year} has no archive or it can't be opened;
+	 *     if it can't be opened, {@link #getOpenError()} has the reason
+	 */
+	public synchronized RDBAdapter getArchive(final int year)
+	{
+		final Integer key = Integer.valueOf(year);
+		RDBAdapter adb = opened.get(key);
+		if ((adb != null) || (years == null))
+			return adb;
+		if (! containsYear(years, year))
+			return null;
+
+		try
+		{
+			adb = opener.openRDB(getArchiveFile(db.getFilenameFullPath(), year).getAbsolutePath());
+			opened.put(key, adb);
+		} catch (Exception e) {
+			openError = e;
+		}
+
+		return adb;
+	}
+
+	/**
+	 * Get the reason {@link #getArchive(int)} most recently couldn't open an archive, for the caller to report.
+	 * @return  The exception thrown while opening the archive, or null if none has failed
+	 */
+	public synchronized Exception getOpenError()
+	{
+		return openError;
+	}
+
+	/**
+	 * Close any archive dbs opened by {@link #getArchive(int)}.
+	 * Doesn't close the logbook db. Archives can be reopened by calling {@code getArchive} again.
+	 */
+	public synchronized void close()
+	{
+		for (Iterator<RDBAdapter> it = opened.values().iterator(); it.hasNext(); )
+		{
+			try
+			{
+				it.next().close();
+			} catch (Exception e) {}
+		}
+		opened.clear();
+	}
+
+	/**
+	 * Get the archive db filename for a logbook db and year:
+	 * In the same directory, with {@link #ARCHIVE_FILENAME_INFIX} and the year added to the logbook's name
+	 * before any extension: {@code roadtrip} -&gt; {@code roadtrip-archive-2019},
+	 * {@code mylog.db} -&gt; {@code mylog-archive-2019.db}.
+	 * @param dbPath  Full path to the logbook db file
+	 * @param year  Archive year
+	 * @return  File for that year's archive, which might not exist
+	 */
+	public static File getArchiveFile(final String dbPath, final int year)
+	{
+		final File dbFile = new File(dbPath);
+		final String name = dbFile.getName();
+		final int dot = name.lastIndexOf('.');
+		final String archName = (dot > 0)
+			? name.substring(0, dot) + ARCHIVE_FILENAME_INFIX + year + name.substring(dot)
+			: name + ARCHIVE_FILENAME_INFIX + year;
+
+		return new File(dbFile.getParentFile(), archName);
+	}
+
+	/**
+	 * Find the years having an archive file for this logbook db, by looking for
+	 * {@link #getArchiveFile(String, int)} names in its directory.
+	 * @param dbPath  Full path to the logbook db file
+	 * @return  Archive years, newest first, or null if none
+	 */
+	public static int[] findArchiveYears(final String dbPath)
+	{
+		final File dbFile = new File(dbPath);
+		final File dir = dbFile.getAbsoluteFile().getParentFile();
+		final String[] names = (dir != null) ? dir.list() : null;
+		if (names == null)
+			return null;
+
+		final String name = dbFile.getName();
+		final int dot = name.lastIndexOf('.');
+		final String prefix = ((dot > 0) ? name.substring(0, dot) : name) + ARCHIVE_FILENAME_INFIX,
+			suffix = (dot > 0) ? name.substring(dot) : "";
+
+		List<Integer> found = new ArrayList<Integer>();
+		for (final String fname : names)
+		{
+			if (! (fname.startsWith(prefix) && fname.endsWith(suffix)))
+				continue;
+
+			final String y = fname.substring(prefix.length(), fname.length() - suffix.length());
+			if (y.length() != 4)
+				continue;
+			try
+			{
+				found.add(Integer.valueOf(Integer.parseInt(y)));
+			} catch (NumberFormatException e) {}
+		}
+		if (found.isEmpty())
+			return null;
+
+		final int[] ret = new int[found.size()];
+		for (int i = 0; i < ret.length; ++i)
+			ret[i] = found.get(i).intValue();
+		Arrays.sort(ret);
+		for (int i = 0, j = ret.length - 1; i < j; ++i, --j)
+		{
+			final int swap = ret[i];
+			ret[i] = ret[j];
+			ret[j] = swap;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Get the starting time of a year, 00:00:00 on January 1st in the local timezone.
+	 * Trips are archived by the year of their {@code time_start} in the local timezone.
+	 * @param year  Year, such as 2019
+	 * @return  Start of that year, in unix time format
+	 */
+	public static int getYearStartTime(final int year)
+	{
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, Calendar.JANUARY, 1);
+
+		return (int) (cal.getTimeInMillis() / 1000L);
+	}
+
+	/**
+	 * Move the trips which started before a cutoff year into a separate archive db for each year,
+	 * creating those archives if needed. Trips already in an archive are left there;
+	 * moving more trips from a year which already has an archive adds them to it.
+	 * See the {@link RDBArchive class javadoc} for which trips are moved, and what's copied with them.
+	 *<P>
+	 * Each year's trips are moved in a single transaction. Afterwards the logbook's cached records and
+	 * trip-based indexes ({@link LocationTripIndex}, {@link LocationGeoIndex}, {@link RouteGraph},
+	 * {@link FreqTripMiner}) are discarded with {@link Settings#clearSettingsCache()},
+	 * to be rebuilt without the moved trips.
+	 *
+	 * @param db  Logbook db connection, not {@code RDBMemAdapter}
+	 * @param cutoffYear  Archive trips which started before January 1st of this year
+	 * @param opener  Callback to open (and create) archive db files with the platform's {@link RDBAdapter};
+	 *     opened archives are closed before returning
+	 * @return  Number of trips moved into archives, or 0 if none
+	 * @throws IllegalStateException if {@code db} isn't open, or has no filename
+	 * @throws ClassNotFoundException if {@code opener} needs a JDBC driver and driver isn't found
+	 * @throws IOException if an archive's schema script can't be read
+	 * @throws SQLException if an error occurs creating an archive or moving trips;
+	 *     the year being moved is rolled back, previous years stay archived
+	 */
+	public static int archiveTripsBefore
+		(RDBAdapter db, final int cutoffYear, RDBSchema.UpgradeCopyCaller opener)
+		throws IllegalStateException, ClassNotFoundException, IOException, SQLException
+	{
+		final String dbPath = db.getFilenameFullPath();
+		if (dbPath == null)
+			throw new IllegalStateException("no filename");
+
+		final int cutoffTime = getYearStartTime(cutoffYear);
+		final int firstTime = db.getRowIntField
+			(Trip.TABNAME, "min(time_start)", "time_start < ?", new String[]{ Integer.toString(cutoffTime) }, 0);
+		if (firstTime == 0)
+			return 0;
+
+		final Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(firstTime * 1000L);
+		int nMoved = 0;
+		for (int year = cal.get(Calendar.YEAR); year < cutoffYear; ++year)
+		{
+			final int yearStart = getYearStartTime(year), yearEnd = getYearStartTime(year + 1);
+			final String[] range = { Integer.toString(yearStart), Integer.toString(yearEnd) };
+			if (0 == db.getRowIntField
+			         (Trip.TABNAME, "count(*)", "time_start >= ? and time_start < ?" + WHERE_TRIPS_NOT_CURRENT, range, 0))
+				continue;
+
+			nMoved += archiveYear(db, getArchiveFile(dbPath, year), yearStart, yearEnd, opener);
+		}
+
+		if (nMoved > 0)
+			Settings.clearSettingsCache();  // also clears location and route indexes
+
+		return nMoved;
+	}
+
+	/**
+	 * Move one year's trips into its archive, for {@link #archiveTripsBefore(RDBAdapter, int, RDBSchema.UpgradeCopyCaller)}.
+	 * @param db  Logbook db connection
+	 * @param archFile  Archive file for the year; created if it doesn't exist
+	 * @param yearStart  Start time of the year
+	 * @param yearEnd  Start time of the next year
+	 * @param opener  Callback to open the archive file
+	 * @return  Number of trips moved
+	 */
+	private static int archiveYear
+		(RDBAdapter db, final File archFile, final int yearStart, final int yearEnd,
+		 RDBSchema.UpgradeCopyCaller opener)
+		throws ClassNotFoundException, IOException, SQLException
+	{
+		// Create the archive db, if new
+		final String archPath = archFile.getAbsolutePath();
+		RDBAdapter adb = opener.openRDB(archPath);
+		try
+		{
+			if (0 == adb.getRowIntField("sqlite_master", "count(*)", "type = 'table' and name = 'trip'", (String[]) null, 0))
+			{
+				final InputStream schema = adb.getSQLScript(0);
+				RDBSchema.execSQLbyLine(adb, schema);  // closes the stream
+				adb.execStrucUpdate("PRAGMA user_version = " + RDBSchema.DATABASE_VERSION + " ;");
+			}
+		} finally {
+			adb.close();
+		}
+
+		// Attach the archive to the logbook db, to copy rows with insert-select.
+		// ATTACH and DETACH can't be within a transaction.
+		db.execStrucUpdate("ATTACH DATABASE '" + archPath.replace("'", "''") + "' AS " + ATTACH_NAME + " ;");
+		final String arch = ATTACH_NAME + '.';
+		int nMoved = 0;
+		try
+		{
+			// Temp tables of the IDs being moved
+			db.execStrucUpdate("CREATE TEMP TABLE arch_trip (_id integer PRIMARY KEY not null);");
+			db.execStrucUpdate("CREATE TEMP TABLE arch_tstop (_id integer PRIMARY KEY not null);");
+			db.execStrucUpdate("CREATE TEMP TABLE arch_tstop_del (_id integer PRIMARY KEY not null);");
+
+			db.beginTransaction();
+			boolean committed = false;
+			try
+			{
+				db.execStrucUpdate("INSERT INTO temp.arch_trip SELECT _id FROM main.trip WHERE time_start >= "
+					+ yearStart + " and time_start < " + yearEnd + WHERE_TRIPS_NOT_CURRENT + ";");
+				db.execStrucUpdate
+					("INSERT INTO temp.arch_tstop SELECT _id FROM main.tstop WHERE tripid IN temp.arch_trip;");
+				nMoved = db.getRowIntField("temp.arch_trip", "count(*)", (String) null, (String[]) null, 0);
+
+				// Master data, including any changes since the archive was created
+				for (final String tab : MASTER_DATA_TABLES)
+					db.execStrucUpdate("INSERT OR REPLACE INTO " + arch + tab + " SELECT * FROM main." + tab + ";");
+
+				// Trip data; also each moved trip's starting TStop from its previous trip, if any
+				db.execStrucUpdate("INSERT INTO " + arch + "trip SELECT * FROM main.trip WHERE _id IN temp.arch_trip;");
+				db.execStrucUpdate
+					("INSERT INTO " + arch + "tstop SELECT * FROM main.tstop WHERE _id IN temp.arch_tstop;");
+				db.execStrucUpdate("INSERT OR IGNORE INTO " + arch + "tstop SELECT * FROM main.tstop WHERE _id IN"
+					+ " (SELECT tstopid_start FROM main.trip WHERE _id IN temp.arch_trip);");
+				db.execStrucUpdate
+					("INSERT INTO " + arch + "tstop_gas SELECT * FROM main.tstop_gas WHERE _id IN temp.arch_tstop;");
+				final String whereFTS = " WHERE docid IN temp.arch_tstop OR -docid IN temp.arch_trip;";
+				db.execStrucUpdate("INSERT INTO " + arch + "comment_fts(docid, comment)"
+					+ " SELECT docid, comment FROM main.comment_fts" + whereFTS);
+
+				// Remove from logbook: Trips first, so that startStopsRemaining has only the remaining trips
+				final String startStopsRemaining =
+					"(SELECT tstopid_start FROM main.trip WHERE tstopid_start is not null)";
+				db.execStrucUpdate("DELETE FROM main.comment_fts WHERE -docid IN temp.arch_trip;");
+				// Journal each deletion, then delete, for ChangeJournal readers
+				String where = "_id IN temp.arch_trip";
+				ChangeJournal.deletingWhere(db, "main.trip", where);
+				db.execStrucUpdate("DELETE FROM main.trip WHERE " + where + ";");
+
+				// TStops to remove: The moved trips' stops, and starting stops previously kept for moved trips
+				// if no longer needed. Keep any TStop which is a remaining trip's starting stop,
+				// along with its gas and comment index entry.
+				db.execStrucUpdate("INSERT INTO temp.arch_tstop_del SELECT _id FROM main.tstop WHERE"
+					+ " (_id IN temp.arch_tstop"
+					+ "  OR (_id IN (SELECT tstopid_start FROM " + arch + "trip WHERE _id IN temp.arch_trip)"
+					+ "      AND tripid NOT IN (SELECT _id FROM main.trip)))"
+					+ " AND _id NOT IN " + startStopsRemaining + ";");
+				db.execStrucUpdate("DELETE FROM main.comment_fts WHERE docid IN temp.arch_tstop_del;");
+				where = "_id IN temp.arch_tstop_del";
+				ChangeJournal.deletingWhere(db, "main.tstop_gas", where);
+				db.execStrucUpdate("DELETE FROM main.tstop_gas WHERE " + where + ";");
+				ChangeJournal.deletingWhere(db, "main.tstop", where);
+				db.execStrucUpdate("DELETE FROM main.tstop WHERE " + where + ";");
+
+				db.endTransaction(true);
+				committed = true;
+			} finally {
+				if (! committed)
+				{
+					try { db.endTransaction(false); }
+					catch (Exception e) {}  // don't hide the original exception
+				}
+			}
+		} finally {
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS temp.arch_trip;"); } catch (SQLException e) {}
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS temp.arch_tstop;"); } catch (SQLException e) {}
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS temp.arch_tstop_del;"); } catch (SQLException e) {}
+			db.execStrucUpdate("DETACH DATABASE " + ATTACH_NAME + " ;");
+		}
+
+		return nMoved;
+	}
+
+	/** Does this array contain {@code year}? */
+	private static boolean containsYear(final int[] years, final int year)
+	{
+		for (int i = 0; i < years.length; ++i)
+			if (years[i] == year)
+				return true;
+
+		return false;
+	}
+
+}
@@ -0,0 +1,381 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Periodic database maintenance and health statistics:
+ * Refreshes the query planner's statistics with {@code ANALYZE}, returns free pages
+ * with {@code PRAGMA incremental_vacuum}, and reports db size, free pages and index statistics.
+ *<P>
+ * The amount of logbook activity since the last maintenance run is estimated from the growth of the
+ * highest {@code trip} and {@code tstop} ids, compared to a mark stored in {@link AppInfo}
+ * ({@link AppInfo#KEY_DB_MAINT_ROWID_MARK}); nearly all logbook writes create trips and stops,
+ * and this costs nothing while the app is recording them.
+ * {@link #runIfDue(RDBAdapter)} is cheap to call when the app is idle, such as after a backup.
+ *<P>
+ * Callers should not run maintenance on read-only dbs, such as backups being viewed.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBMaintenance
+{
+	/**
+	 * Run maintenance when at least this many trips and stops have been added
+	 * since the previous run. Also run if {@link #MAX_INTERVAL_SECONDS} have passed
+	 * and anything has been added.
+	 */
+	public static final int WRITES_THRESHOLD = 400;
+
+	/** Run maintenance if this many seconds (30 days) have passed since the previous run. */
+	public static final int MAX_INTERVAL_SECONDS = 30 * 24 * 60 * 60;
+
+	/** Maximum number of free pages to return to the filesystem per {@link #run(RDBAdapter, boolean)}. */
+	public static final int INCREMENTAL_VACUUM_PAGES = 256;
+
+	/**
+	 * If auto_vacuum is off, and at least this percentage of pages is free,
+	 * {@link #run(RDBAdapter, boolean) run(db, true)} does a full {@code VACUUM}.
+	 */
+	public static final int FULL_VACUUM_FREE_PERCENT = 20;
+
+	/** {@code PRAGMA auto_vacuum} value for INCREMENTAL mode */
+	public static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+	/**
+	 * Get the current value of the activity mark: The sum of the highest trip id and tstop id.
+	 * @param db  An open db
+	 * @return  The current mark, or 0 if no trips
+	 * @throws IllegalStateException if db not open
+	 */
+	private static int getCurrentRowidMark(final RDBAdapter db)
+		throws IllegalStateException
+	{
+		return db.getRowIntField("trip", "max(_id)", (String) null, (String[]) null, 0)
+			+ db.getRowIntField("tstop", "max(_id)", (String) null, (String[]) null, 0);
+	}
+
+	/**
+	 * Read an int value from {@link AppInfo}.
+	 * @return  The value, or {@code def} if not found or not an int
+	 */
+	private static int getAppInfoInt(final RDBAdapter db, final String key, final int def)
+	{
+		try
+		{
+			return Integer.parseInt(new AppInfo(db, key).getValue());
+		}
+		catch (RDBKeyNotFoundException e) {}
+		catch (NumberFormatException e) {}
+
+		return def;
+	}
+
+	/**
+	 * Estimate how many trips and stops have been written since the previous maintenance run.
+	 * @param db  An open db
+	 * @return  Number of new trips and stops; if maintenance has never been run,
+	 *     the number of all trips and stops ever added
+	 * @throws IllegalStateException if db not open
+	 */
+	public static int getWritesSinceMaintenance(final RDBAdapter db)
+		throws IllegalStateException
+	{
+		final int w = getCurrentRowidMark(db) - getAppInfoInt(db, AppInfo.KEY_DB_MAINT_ROWID_MARK, 0);
+		return (w >= 0) ? w : 0;  // negative if ids were reused after deleting the newest trips
+	}
+
+	/**
+	 * Is maintenance due? True if at least {@link #WRITES_THRESHOLD} trips and stops have been written
+	 * since the previous run, or if anything has been written and it's been
+	 * {@link #MAX_INTERVAL_SECONDS} since that run or maintenance has never run.
+	 * @param db  An open db
+	 * @return  True if {@link #run(RDBAdapter, boolean)} should be called
+	 * @throws IllegalStateException if db not open
+	 */
+	public static boolean isDue(final RDBAdapter db)
+		throws IllegalStateException
+	{
+		final int writes = getWritesSinceMaintenance(db);
+		if (writes >= WRITES_THRESHOLD)
+			return true;
+		if (writes == 0)
+			return false;
+
+		final int prevTime = getAppInfoInt(db, AppInfo.KEY_DB_MAINT_PREVTIME, 0);
+		final int now = (int) (System.currentTimeMillis() / 1000L);
+
+		return (now - prevTime >= MAX_INTERVAL_SECONDS);
+	}
+
+	/**
+	 * If {@link #isDue(RDBAdapter)}, run the lightweight maintenance suitable for idle time:
+	 * {@code ANALYZE} and {@code incremental_vacuum}, but not a full {@code VACUUM}.
+	 * Any exception is caught and reported in the return value, since maintenance is optional.
+	 * @param db  An open writable db
+	 * @return  {@code null} if not due, otherwise the result from {@link #run(RDBAdapter, boolean)}
+	 *     or the text of the exception which occurred
+	 */
+	public static String runIfDue(final RDBAdapter db)
+	{
+		try
+		{
+			if (! isDue(db))
+				return null;
+
+			return run(db, false);
+		} catch (Exception e) {
+			return "maintenance failed: " + e;
+		}
+	}
+
+	/**
+	 * Run database maintenance now, then store the time and new activity mark in {@link AppInfo}:
+	 *<UL>
+	 * <LI> {@code ANALYZE} if {@link #WRITES_THRESHOLD} was reached or there are no statistics yet,
+	 *      otherwise the lighter {@code PRAGMA optimize} (ignored by SQLite versions before 3.18)
+	 * <LI> If auto_vacuum is incremental, {@code PRAGMA incremental_vacuum} to return up to
+	 *      {@link #INCREMENTAL_VACUUM_PAGES} free pages to the filesystem
+	 * <LI> If auto_vacuum is off, {@code allowFullVacuum}, and at least {@link #FULL_VACUUM_FREE_PERCENT}
+	 *      of the pages are free: Set auto_vacuum to incremental and rebuild the db with {@code VACUUM}.
+	 *      This can take a while and temporarily needs free space to hold a copy of the db.
+	 *</UL>
+	 * Before vacuuming, calls {@link ChangeJournal#purgeOldest(RDBAdapter)} to keep only
+	 * the latest {@link ChangeJournal#KEEP_ENTRIES} entries of the change journal.
+	 * No transaction may be active.
+	 *
+	 * @param db  An open writable db
+	 * @param allowFullVacuum  If true, a full {@code VACUUM} is allowed when needed;
+	 *     false when running during idle time
+	 * @return  Brief description of the work done, such as {@code "analyze, incremental_vacuum(12 pages)"}
+	 * @throws IllegalStateException if db not open
+	 * @throws SQLException  if a database error occurs
+	 */
+	public static String run(final RDBAdapter db, final boolean allowFullVacuum)
+		throws IllegalStateException, SQLException
+	{
+		StringBuilder sb = new StringBuilder();
+
+		final int writes = getWritesSinceMaintenance(db);
+		if ((writes >= WRITES_THRESHOLD)
+		    || (0 == db.getRowIntField("sqlite_master", "count(*)", "name = 'sqlite_stat1'", (String[]) null, 0)))
+		{
+			db.execStrucUpdate("ANALYZE");
+			sb.append("analyze");
+		} else {
+			db.execStrucUpdate("PRAGMA optimize");
+			sb.append("optimize");
+		}
+
+		final int purged = ChangeJournal.purgeOldest(db);
+		if (purged > 0)
+			sb.append(", change_journal(").append(purged).append(" purged)");
+
+		final int freePages = db.execPragmaInt("freelist_count");
+		if (freePages > 0)
+		{
+			final int autoVacuum = db.execPragmaInt("auto_vacuum");
+			if (autoVacuum == AUTO_VACUUM_INCREMENTAL)
+			{
+				final int n = Math.min(freePages, INCREMENTAL_VACUUM_PAGES);
+				db.execStrucUpdate("PRAGMA incremental_vacuum(" + n + ")");
+				sb.append(", incremental_vacuum(").append(n).append(" pages)");
+			}
+			else if (allowFullVacuum && (autoVacuum == 0)
+			         && (freePages * 100L >= db.execPragmaInt("page_count") * (long) FULL_VACUUM_FREE_PERCENT))
+			{
+				db.execStrucUpdate("PRAGMA auto_vacuum = INCREMENTAL");  // takes effect during VACUUM
+				db.execStrucUpdate("VACUUM");
+				sb.append(", vacuum(").append(freePages).append(" free pages)");
+			}
+		}
+
+		AppInfo.insertOrUpdate(db, AppInfo.KEY_DB_MAINT_ROWID_MARK, Integer.toString(getCurrentRowidMark(db)));
+		AppInfo.insertOrUpdate
+			(db, AppInfo.KEY_DB_MAINT_PREVTIME, Integer.toString((int) (System.currentTimeMillis() / 1000L)));
+
+		return sb.toString();
+	}
+
+	/**
+	 * Gather the db's current health statistics.
+	 * @param db  An open db
+	 * @return  Current statistics
+	 * @throws IllegalStateException if db not open
+	 */
+	public static Stats getStats(final RDBAdapter db)
+		throws IllegalStateException
+	{
+		return new Stats(db);
+	}
+
+	/**
+	 * Database health statistics from {@link RDBMaintenance#getStats(RDBAdapter)}.
+	 * Fields are -1 if the db adapter can't report them, such as {@code RDBMemAdapter}.
+	 * Call {@link #toString()} for a multi-line summary to show the user.
+	 */
+	public static class Stats
+	{
+		/** Page size in bytes, from {@code PRAGMA page_size} */
+		public final int pageSize;
+
+		/** Number of pages in the db, from {@code PRAGMA page_count} */
+		public final int pageCount;
+
+		/** Number of unused pages, from {@code PRAGMA freelist_count} */
+		public final int freePages;
+
+		/** {@code PRAGMA auto_vacuum} mode: 0 none, 1 full, {@link RDBMaintenance#AUTO_VACUUM_INCREMENTAL} */
+		public final int autoVacuum;
+
+		/** Time of previous maintenance run (unix format), or 0 if never */
+		public final int prevMaintTime;
+
+		/** Trips and stops written since then; see {@link RDBMaintenance#getWritesSinceMaintenance(RDBAdapter)} */
+		public final int writesSince;
+
+		/**
+		 * Each index's statistics, such as {@code "tstop_tripid: 10412 rows, 4 rows/key"},
+		 * or {@code "tstop_tripid: not analyzed"} if there are no {@code sqlite_stat1} statistics for it.
+		 * SQLite doesn't track how often an index is used, but rows per key shows how selective it is.
+		 */
+		public final List<String> indexStats;
+
+		private Stats(final RDBAdapter db)
+			throws IllegalStateException
+		{
+			pageSize = db.execPragmaInt("page_size");
+			pageCount = db.execPragmaInt("page_count");
+			freePages = db.execPragmaInt("freelist_count");
+			autoVacuum = db.execPragmaInt("auto_vacuum");
+			prevMaintTime = getAppInfoInt(db, AppInfo.KEY_DB_MAINT_PREVTIME, 0);
+			writesSince = getWritesSinceMaintenance(db);
+
+			// sqlite_stat1 stat column: "rowcount rowsPerKey1 [rowsPerKey2 ...]"
+			HashMap<String, String> statByIdx = new HashMap<String, String>();
+			if (0 != db.getRowIntField
+			      ("sqlite_master", "count(*)", "name = 'sqlite_stat1'", (String[]) null, 0))
+			{
+				Vector<String[]> sv = db.getRows
+					("sqlite_stat1", "idx is not null", (String[]) null, new String[]{ "idx", "stat" }, null, 0);
+				if (sv != null)
+					for (String[] s : sv)
+						statByIdx.put(s[0], s[1]);
+			}
+
+			indexStats = new ArrayList<String>();
+			Vector<String[]> iv = db.getRows
+				("sqlite_master", "type = 'index' and name not like 'sqlite_autoindex%'", (String[]) null,
+				 new String[]{ "name" }, "name", 0);
+			if (iv != null)
+			{
+				for (String[] idx : iv)
+				{
+					final String stat = statByIdx.get(idx[0]);
+					String desc = "not analyzed";
+					if (stat != null)
+					{
+						final String[] parts = stat.split(" ");
+						desc = parts[0] + " rows";
+						if (parts.length > 1)
+							desc += ", " + parts[1] + " rows/key";
+					}
+					indexStats.add(idx[0] + ": " + desc);
+				}
+			}
+		}
+
+		/**
+		 * Get the db size.
+		 * @return  {@link #pageCount} * {@link #pageSize}, or -1 if unknown
+		 */
+		public long getDBSizeBytes()
+		{
+			if ((pageCount < 0) || (pageSize < 0))
+				return -1;
+
+			return pageCount * (long) pageSize;
+		}
+
+		/**
+		 * Get the percentage of free pages, which can be reclaimed by vacuum.
+		 * @return  Percent of {@link #pageCount} which are {@link #freePages}, or 0 if unknown
+		 */
+		public int getFreePercent()
+		{
+			if ((pageCount <= 0) || (freePages < 0))
+				return 0;
+
+			return (int) ((freePages * 100L) / pageCount);
+		}
+
+		/**
+		 * Multi-line summary, such as:
+		 *<pre>
+		 * DB size: 1204 KB (301 pages of 4096 bytes)
+		 * Free pages: 12 (3%), auto_vacuum: incremental
+		 * Last maintenance: 2022-05-01 10:15; 37 trips and stops since then
+		 * Indexes:
+		 *   tstop_tripid: 10412 rows, 4 rows/key
+		 *</pre>
+		 */
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder("DB size: ");
+			final long sz = getDBSizeBytes();
+			if (sz >= 0)
+				sb.append(sz / 1024).append(" KB (").append(pageCount).append(" pages of ")
+				  .append(pageSize).append(" bytes)");
+			else
+				sb.append("unknown");
+			sb.append("\nFree pages: ");
+			if (freePages >= 0)
+				sb.append(freePages).append(" (").append(getFreePercent()).append("%)");
+			else
+				sb.append("unknown");
+			sb.append(", auto_vacuum: ");
+			switch (autoVacuum)
+			{
+			case 0:  sb.append("none");  break;
+			case 1:  sb.append("full");  break;
+			case AUTO_VACUUM_INCREMENTAL:  sb.append("incremental");  break;
+			default: sb.append("unknown");
+			}
+			sb.append("\nLast maintenance: ");
+			if (prevMaintTime != 0)
+				sb.append(new java.sql.Timestamp(prevMaintTime * 1000L).toString().substring(0, 16));
+			else
+				sb.append("never");
+			sb.append("; ").append(writesSince).append(" trips and stops since then");
+			sb.append("\nIndexes:");
+			for (String s : indexStats)
+				sb.append("\n  ").append(s);
+
+			return sb.toString();
+		}
+	}
+
+}
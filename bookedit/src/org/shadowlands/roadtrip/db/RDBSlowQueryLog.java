@@ -0,0 +1,374 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Slow-query log for the {@link RDBAdapter} implementations.
+ * When a query takes longer than {@link #getThresholdMillis()}, the adapter calls
+ * {@link #record(String, String[], long, List)} with its SQL, bound arguments, elapsed time
+ * and the output of sqlite's {@code EXPLAIN QUERY PLAN} for that statement.
+ *<P>
+ * Entries are appended to a plain-text log file set by {@link #setLogFile(File)}.
+ * When the file grows past {@link #getMaxLogSize()}, it's renamed to {@link #ROTATED_SUFFIX}
+ * and a new file is started, so at most 2 files are kept.
+ * The log can be read with {@link #readLog(File)}, for example by BookEdit
+ * when a user sends in a copy of the file from their device.
+ *<P>
+ * Logging is off until both a threshold and a log file are set; see {@link #isEnabled()}.
+ * When off, the adapters' only overhead is a {@link System#nanoTime()} call per query.
+ * The threshold can be stored per-database in {@link Settings#SLOW_QUERY_THRESHOLD_MS}.
+ *<P>
+ * Errors while writing the log are ignored: The log is only a diagnostic aid,
+ * and must never interfere with the query that's being logged.
+ * All methods are static and thread-safe.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBSlowQueryLog
+{
+	/** Default filename for the log: {@code "slowquery.log"} */
+	public static final String DEFAULT_LOG_FILENAME = "slowquery.log";
+
+	/**
+	 * Suffix {@code ".1"} appended to the log filename when it's rotated.
+	 * @see #setMaxLogSize(int)
+	 */
+	public static final String ROTATED_SUFFIX = ".1";
+
+	/**
+	 * Suggested threshold when user turns on the slow-query log without choosing a value: 250 ms.
+	 * @see Settings#SLOW_QUERY_THRESHOLD_MS
+	 */
+	public static final int DEFAULT_THRESHOLD_MS = 250;
+
+	/** Default max size of the log file before rotating, in bytes: 256 KB */
+	public static final int DEFAULT_MAX_LOG_SIZE = 256 * 1024;
+
+	/** Timestamp format at start of each log entry */
+	private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	/** Minimum query duration to log, in milliseconds, or 0 if disabled. */
+	private static volatile int thresholdMillis = 0;
+
+	/** Log file to append to, or null if disabled */
+	private static volatile File logFile = null;
+
+	/** Max size of {@link #logFile} before rotating, in bytes */
+	private static int maxLogSize = DEFAULT_MAX_LOG_SIZE;
+
+	/** Lock for static fields and for writing to {@link #logFile} */
+	private static final Object lock = new Object();
+
+	/**
+	 * Is slow-query logging currently enabled?
+	 * True if {@link #getThresholdMillis()} &gt; 0 and a log file has been set.
+	 */
+	public static boolean isEnabled()
+	{
+		return (thresholdMillis > 0) && (logFile != null);
+	}
+
+	/**
+	 * Get the slow-query threshold.
+	 * @return Minimum query duration to log, in milliseconds, or 0 if disabled
+	 * @see #setThresholdMillis(int)
+	 */
+	public static int getThresholdMillis()
+	{
+		return thresholdMillis;
+	}
+
+	/**
+	 * Set or clear the slow-query threshold.
+	 * @param ms  Minimum query duration to log, in milliseconds, or 0 to disable logging
+	 * @throws IllegalArgumentException if {@code ms} &lt; 0
+	 * @see Settings#SLOW_QUERY_THRESHOLD_MS
+	 */
+	public static void setThresholdMillis(final int ms)
+		throws IllegalArgumentException
+	{
+		if (ms < 0)
+			throw new IllegalArgumentException("ms: " + ms);
+
+		synchronized (lock)
+		{
+			thresholdMillis = ms;
+		}
+	}
+
+	/**
+	 * Get the log file, if set.
+	 * @return the log file, or null
+	 * @see #setLogFile(File)
+	 */
+	public static File getLogFile()
+	{
+		return logFile;
+	}
+
+	/**
+	 * Set or clear the log file to append to.
+	 * Its directory must already exist; the file will be created if needed.
+	 * @param f  Log file, or null to disable logging
+	 */
+	public static void setLogFile(final File f)
+	{
+		synchronized (lock)
+		{
+			logFile = f;
+		}
+	}
+
+	/**
+	 * Get the maximum size of the log file before it's rotated.
+	 * @return max size in bytes; default is {@link #DEFAULT_MAX_LOG_SIZE}
+	 */
+	public static int getMaxLogSize()
+	{
+		return maxLogSize;
+	}
+
+	/**
+	 * Set the maximum size of the log file before it's rotated.
+	 * @param bytes  Max size in bytes
+	 * @throws IllegalArgumentException if {@code bytes} &lt;= 0
+	 */
+	public static void setMaxLogSize(final int bytes)
+		throws IllegalArgumentException
+	{
+		if (bytes <= 0)
+			throw new IllegalArgumentException("bytes: " + bytes);
+
+		synchronized (lock)
+		{
+			maxLogSize = bytes;
+		}
+	}
+
+	/**
+	 * Configure the log from this db's {@link Settings#SLOW_QUERY_THRESHOLD_MS} setting.
+	 * If the threshold is more than 0, the log file will be {@link #DEFAULT_LOG_FILENAME} in {@code logDir},
+	 * which will be created if needed. Otherwise logging is disabled.
+	 * @param db  connection to read the setting from
+	 * @param logDir  Directory for the log file, or null to disable logging
+	 * @return true if logging is now enabled, false if disabled or {@code logDir} can't be created
+	 * @throws IllegalArgumentException if db null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static boolean configureFromSettings(RDBAdapter db, final File logDir)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		int ms = Settings.getInt(db, Settings.SLOW_QUERY_THRESHOLD_MS, 0);
+		if (ms < 0)
+			ms = 0;
+		if ((ms > 0) && (logDir != null))
+		{
+			try
+			{
+				if (! (logDir.isDirectory() || logDir.mkdirs()))
+					ms = 0;
+			} catch (SecurityException e) {
+				ms = 0;
+			}
+		}
+
+		synchronized (lock)
+		{
+			if ((ms > 0) && (logDir != null))
+			{
+				thresholdMillis = ms;
+				logFile = new File(logDir, DEFAULT_LOG_FILENAME);
+			} else {
+				thresholdMillis = 0;
+				logFile = null;
+			}
+		}
+
+		return isEnabled();
+	}
+
+	/**
+	 * Is this elapsed time long enough to log?
+	 * @param elapsedNanos  Query duration from {@link System#nanoTime()}
+	 * @return true if {@link #isEnabled()} and {@code elapsedNanos} is at least {@link #getThresholdMillis()}
+	 */
+	public static boolean isSlow(final long elapsedNanos)
+	{
+		final int th = thresholdMillis;
+		return (th > 0) && (logFile != null) && (elapsedNanos >= th * 1000000L);
+	}
+
+	/**
+	 * Append an entry for a slow query to the log file, rotating the file first if needed.
+	 * Does nothing if not {@link #isEnabled()}. Ignores any errors while writing.
+	 *<P>
+	 * Entry format:
+	 *<pre>
+	 * -- 2022-12-20 14:05:11  elapsed 132 ms
+	 * select * from trip where _id in (select distinct tripid from tstop where locid = ?) order by _id desc limit 10
+	 * args: [42]
+	 * plan: SEARCH TABLE trip USING INTEGER PRIMARY KEY (rowid=?)
+	 * plan: LIST SUBQUERY 1
+	 * plan: SCAN TABLE tstop
+	 *</pre>
+	 *
+	 * @param sql  SQL of the query
+	 * @param args  Arguments bound to {@code sql}'s {@code ?} placeholders, or null
+	 * @param elapsedNanos  Query duration from {@link System#nanoTime()}
+	 * @param plan  Detail lines from {@code EXPLAIN QUERY PLAN}, or null if not available
+	 */
+	public static void record
+		(final String sql, final String[] args, final long elapsedNanos, final List<String> plan)
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append("-- ");
+		sb.append(new SimpleDateFormat(TIMESTAMP_FORMAT).format(new Date()));
+		sb.append("  elapsed ");
+		sb.append(elapsedNanos / 1000000L);
+		sb.append(" ms\n");
+		sb.append(sql);
+		sb.append('\n');
+		if ((args != null) && (args.length > 0))
+		{
+			sb.append("args: [");
+			for (int i = 0; i < args.length; ++i)
+			{
+				if (i > 0)
+					sb.append(", ");
+				sb.append(args[i]);
+			}
+			sb.append("]\n");
+		}
+		if (plan != null)
+		{
+			for (String p : plan)
+			{
+				sb.append("plan: ");
+				sb.append(p);
+				sb.append('\n');
+			}
+		}
+
+		synchronized (lock)
+		{
+			if ((thresholdMillis <= 0) || (logFile == null))
+				return;
+
+			Writer w = null;
+			try
+			{
+				if (logFile.length() > maxLogSize)
+				{
+					final File rotated = new File(logFile.getPath() + ROTATED_SUFFIX);
+					if (rotated.exists())
+						rotated.delete();
+					logFile.renameTo(rotated);
+				}
+
+				w = new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8");
+				w.write(sb.toString());
+			} catch (IOException e) {
+				// ignore: logging is only a diagnostic aid
+			} catch (SecurityException e) {
+			} finally {
+				if (w != null)
+				{
+					try { w.close(); }
+					catch (IOException e) {}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the contents of a slow-query log, including its rotated previous file if any.
+	 * The previous file's contents (older entries) are returned first.
+	 * @param f  Log file to read, such as {@link #getLogFile()} or one copied from a device
+	 * @return The log contents, or "" if neither {@code f} nor its rotated file exist
+	 * @throws IOException if an error occurs while reading
+	 */
+	public static String readLog(final File f)
+		throws IOException
+	{
+		final StringBuilder sb = new StringBuilder();
+		readLog_append(new File(f.getPath() + ROTATED_SUFFIX), sb);
+		readLog_append(f, sb);
+
+		return sb.toString();
+	}
+
+	/**
+	 * Append a log file's contents to this buffer, if the file exists.
+	 * @param f  File to read
+	 * @param sb  Buffer to append to
+	 * @throws IOException if an error occurs while reading
+	 */
+	private static void readLog_append(final File f, final StringBuilder sb)
+		throws IOException
+	{
+		if (! f.exists())
+			return;
+
+		BufferedReader br = null;
+		try
+		{
+			br = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+			String line;
+			while (null != (line = br.readLine()))
+			{
+				sb.append(line);
+				sb.append('\n');
+			}
+		} finally {
+			if (br != null)
+			{
+				try { br.close(); }
+				catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Delete the log file and its rotated previous file, if they exist.
+	 * @param f  Log file to delete, such as {@link #getLogFile()}
+	 */
+	public static void clearLog(final File f)
+	{
+		synchronized (lock)
+		{
+			new File(f.getPath() + ROTATED_SUFFIX).delete();
+			f.delete();
+		}
+	}
+
+}  // public class RDBSlowQueryLog
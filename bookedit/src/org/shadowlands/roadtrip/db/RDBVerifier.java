@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2011,2013,2015,2019 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2011,2013,2015,2019,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -20,6 +20,7 @@
 package org.shadowlands.roadtrip.db;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Vector;
 
@@ -29,6 +30,13 @@ import gnu.trove.TIntObjectIterator;
 /**
  * Structural verifier for an open {@link RDBAdapter RDB SQLite database}.
  * See {@link #verify(int)} for details on the available levels of verification.
+ *<P>
+ * Verifying a large logbook can take a while. To show its progress, call
+ * {@link #setProgressListener(ProgressListener)} before {@link #verify(int)}.
+ * To stop it early, call {@link #cancel()} from any thread.
+ *<P>
+ * For huge logbooks or low-memory devices, use {@link #RDBVerifier(RDBAdapter, boolean) low-memory mode},
+ * whose memory use doesn't grow with the number of trips and stops.
  */
 public class RDBVerifier
 {
@@ -67,8 +75,90 @@ public class RDBVerifier
 	 */
 	public static boolean FAILURES_HAVE_DESCRIPTIONS = true;
 
+	/**
+	 * Value returned from {@link #verify(int)} if verification was {@link #cancel() cancelled}.
+	 * @since 0.9.93
+	 */
+	public static final int CANCELLED = -1;
+
+	/**
+	 * Call {@link #progressListener} each time this many more items have been checked; must be a power of 2.
+	 * @since 0.9.93
+	 */
+	private static final int PROGRESS_INTERVAL = 64;
+
+	/**
+	 * In {@link #lowMemory} mode, read this many rows per query when reading a master-data table.
+	 * @since 0.9.93
+	 */
+	private static final int LOWMEM_ROW_WINDOW = 256;
+
+	/**
+	 * In {@link #lowMemory} mode, read this many trips per query, then read all of their stops.
+	 * @since 0.9.93
+	 */
+	private static final int LOWMEM_TRIP_WINDOW = 64;
+
+	/**
+	 * In {@link #lowMemory} mode, size of {@link #viaCacheID} and related arrays; must be a power of 2.
+	 * @since 0.9.93
+	 */
+	private static final int LOWMEM_VIA_CACHE_SIZE = 512;
+
+	private static final String[] LOWMEM_ID_FIELD = { "_id" };
+
+	private static final String[] LOWMEM_VIA_FIELDS = { "locid_from", "locid_to" };
+
+	/** {@link Trip} fields read in {@link #lowMemory} mode; {@code _id} must be last. */
+	private static final String[] LOWMEM_TRIP_FIELDS =
+		{ "vid", "did", "aid", "freqtripid", "roadtrip_end_aid", "tstopid_start", "_id" };
+
+	/** {@link Trip} fields read in {@link #lowMemory} mode when checking their stops; {@code _id} must be last. */
+	private static final String[] LOWMEM_TRIP_VID_FIELDS = { "vid", "_id" };
+
+	/** {@link TStop} fields read in {@link #lowMemory} mode; {@code _id} must be last. */
+	private static final String[] LOWMEM_TSTOP_FIELDS =
+		{ "tripid", "locid", "descr", "a_id", "via_id", "flag_sides", "time_stop", "_id" };
+
+	private static final String[] LOWMEM_TSTOPGAS_FIELDS = { "vid", "gas_brandgrade_id" };
+
 	private RDBAdapter db;
 
+	/**
+	 * If true, verify using ID bitsets and windows of rows instead of caches of full records.
+	 * @see #RDBVerifier(RDBAdapter, boolean)
+	 * @since 0.9.93
+	 */
+	private final boolean lowMemory;
+
+	/**
+	 * Optional progress listener, or null.
+	 * @see #setProgressListener(ProgressListener)
+	 * @since 0.9.93
+	 */
+	private ProgressListener progressListener;
+
+	/**
+	 * Set by {@link #cancel()} from any thread, checked while verifying each item.
+	 * @since 0.9.93
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * Progress within the level currently being verified, for {@link #progressListener}:
+	 * Level, items checked so far, estimated total items.
+	 * @see #progressStart(int, int)
+	 * @see #progressStep()
+	 * @since 0.9.93
+	 */
+	private int progressLevel, progressDone, progressTotal;
+
+	/**
+	 * Table name currently being verified, for {@link #progressListener}.
+	 * @since 0.9.93
+	 */
+	private String progressPhase;
+
 	/**
 	 * For iterative calls to {@link #verify(int)}, the level of the
 	 * last call if it was successful.
@@ -176,16 +266,55 @@ public class RDBVerifier
 	 */
 	private TIntObjectHashMap<Trip> trCache;
 
+	/**
+	 * For {@link #lowMemory} mode: Row IDs present in each master-data table,
+	 * read or built during {@link #verify_mdata_lowmem()}.
+	 * @since 0.9.93
+	 */
+	private BitSet idsVehMake, idsPerson, idsGeoArea, idsGasBrandGrade,
+		idsVehicle, idsLocation, idsViaRoute, idsFreqTrip;
+
+	/**
+	 * For {@link #lowMemory} mode: Small direct-mapped cache of {@link ViaRoute} endpoints, indexed by
+	 * via ID &amp; ({@link #LOWMEM_VIA_CACHE_SIZE} - 1). Unused slots have ID 0.
+	 * @see #viaCacheSlot(int)
+	 * @since 0.9.93
+	 */
+	private int[] viaCacheID, viaCacheFrom, viaCacheTo;
+
 	/**
 	 * Create a verifier against this open database.
 	 * Next call {@link #verify(int)}.
 	 * When done, call {@link #release()} to release the reference to <tt>forDB</tt>.
 	 *
 	 * @param forDB  A database to verify, already open.
+	 * @see #RDBVerifier(RDBAdapter, boolean)
 	 */
 	public RDBVerifier(RDBAdapter forDB)
+	{
+		this(forDB, false);
+	}
+
+	/**
+	 * Create a verifier against this open database, optionally in low-memory mode.
+	 * Next call {@link #verify(int)}.
+	 * When done, call {@link #release()} to release the reference to <tt>forDB</tt>.
+	 *<P>
+	 * Low-memory mode checks the same things, but instead of caching every master-data record
+	 * and loading every trip and stop as a full record, it keeps a bitset of each master-data table's row IDs
+	 * and reads trips and their stops in ID order, a fixed-size window at a time.
+	 * Its memory use doesn't grow with the number of trips and stops, so it can verify huge logbooks
+	 * on low-RAM devices. It's somewhat slower, because of the extra queries.
+	 * Records are loaded only for {@link #failedItems}.
+	 *
+	 * @param forDB  A database to verify, already open.
+	 * @param lowMemory  If true, use low-memory mode
+	 * @since 0.9.93
+	 */
+	public RDBVerifier(RDBAdapter forDB, final boolean lowMemory)
 	{
 		db = forDB;
+		this.lowMemory = lowMemory;
 	}
 
 	/**
@@ -197,6 +326,38 @@ public class RDBVerifier
 		db = null;
 	}
 
+	/**
+	 * Set or clear the listener for progress of {@link #verify(int)}.
+	 * @param pl  Progress listener, or null for none
+	 * @since 0.9.93
+	 */
+	public void setProgressListener(final ProgressListener pl)
+	{
+		progressListener = pl;
+	}
+
+	/**
+	 * Cancel verification. Can be called from any thread while {@link #verify(int)} is running;
+	 * verify will stop soon and return {@link #CANCELLED}.
+	 * Once called, any later calls to {@code verify} also return {@link #CANCELLED}:
+	 * To verify again, create a new RDBVerifier.
+	 * @see #isCancelled()
+	 * @since 0.9.93
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * Has {@link #cancel()} been called?
+	 * @since 0.9.93
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
 	/**
 	 * Verify the database to a given level.
 	 *<P>
@@ -216,7 +377,7 @@ public class RDBVerifier
 	 *     <LI> {@link #LEVEL_TDATA}: Transaction data consistency (most thorough)
 	 *     </UL>
 	 * @return  0 if verification passed, or, if problems were found, the <tt>LEVEL_</tt> constant
-	 *    at which the problems were found.
+	 *    at which the problems were found, or {@link #CANCELLED} if {@link #cancel()} was called.
 	 * @throws IllegalArgumentException  if <tt>level</tt> is not
 	 *    {@link #LEVEL_PHYS}, {@link #LEVEL_MDATA} or {@link #LEVEL_TDATA}.
 	 * @throws IllegalStateException  if db is closed or {@link #release() released}
@@ -228,9 +389,13 @@ public class RDBVerifier
 			throw new IllegalArgumentException();
 		if (db == null)
 			throw new IllegalStateException("null db");
+		if (cancelled)
+			return CANCELLED;
 
 		if (successfulVerifyLevel < LEVEL_PHYS)
 		{
+			progressStart(LEVEL_PHYS, 0);
+			progressPhase("integrity_check");
 			if (null != db.execPragmaIntegCheck())
 				return LEVEL_PHYS;
 			successfulVerifyLevel = LEVEL_PHYS;
@@ -241,7 +406,7 @@ public class RDBVerifier
 		if (successfulVerifyLevel < LEVEL_MDATA)
 		{
 			if (! verify_mdata())
-				return LEVEL_MDATA;
+				return (cancelled) ? CANCELLED : LEVEL_MDATA;
 			successfulVerifyLevel = LEVEL_MDATA;
 		}
 		if (level <= LEVEL_MDATA)
@@ -250,13 +415,79 @@ public class RDBVerifier
 		if (successfulVerifyLevel < LEVEL_TDATA)
 		{
 			if (! verify_tdata())
-				return LEVEL_TDATA;
+				return (cancelled) ? CANCELLED : LEVEL_TDATA;
 			successfulVerifyLevel = LEVEL_TDATA;
 		}
 
 		return 0;
 	}
 
+	///////////////////////////////////////////////////////////
+	// Progress and cancellation
+	///////////////////////////////////////////////////////////
+
+	/**
+	 * Start tracking progress for a verification level.
+	 * @param level  Level about to be verified
+	 * @param total  Estimated number of items to check, or 0 if unknown
+	 * @since 0.9.93
+	 */
+	private void progressStart(final int level, final int total)
+	{
+		progressLevel = level;
+		progressDone = 0;
+		progressTotal = total;
+	}
+
+	/**
+	 * Start verifying another table in the current level, and tell {@link #progressListener} if any.
+	 * @param tabname  Table name
+	 * @since 0.9.93
+	 */
+	private void progressPhase(final String tabname)
+	{
+		progressPhase = tabname;
+		if (progressListener != null)
+			progressListener.verifyProgress(progressLevel, tabname, progressDone, progressTotal);
+	}
+
+	/**
+	 * Count one more item checked, telling {@link #progressListener} every {@link #PROGRESS_INTERVAL} items.
+	 * Called at the start of each item's checks.
+	 * @return false if {@link #cancel()} has been called and verification should stop
+	 * @since 0.9.93
+	 */
+	private boolean progressStep()
+	{
+		if (cancelled)
+			return false;
+
+		++progressDone;
+		if ((progressListener != null) && ((progressDone & (PROGRESS_INTERVAL - 1)) == 0))
+			progressListener.verifyProgress(progressLevel, progressPhase, progressDone, progressTotal);
+
+		return true;
+	}
+
+	/**
+	 * Sum these tables' row counts, to estimate a level's total items for {@link #progressStart(int, int)}.
+	 * Skips counting if there's no {@link #progressListener}.
+	 * @param tabnames  Table names
+	 * @return  Total rows in those tables, or 0 if no listener
+	 * @since 0.9.93
+	 */
+	private int progressCountRows(final String[] tabnames)
+	{
+		if (progressListener == null)
+			return 0;
+
+		int n = 0;
+		for (int i = 0; i < tabnames.length; ++i)
+			n += db.getCount(tabnames[i], null, 0);
+
+		return n;
+	}
+
 	///////////////////////////////////////////////////////////
 	// Cache methods for LEVEL_MDATA, LEVEL_TDATA
 	///////////////////////////////////////////////////////////
@@ -411,6 +642,9 @@ public class RDBVerifier
 	private boolean verify_mdata()
 		throws IllegalStateException
 	{
+		if (lowMemory)
+			return verify_mdata_lowmem();
+
 		vehCache = new TIntObjectHashMap<Vehicle>();
 		persCache = new TIntObjectHashMap<Person>();
 		vehMakeCache = new TIntObjectHashMap<VehicleMake>();
@@ -420,6 +654,9 @@ public class RDBVerifier
 		gbgCache = new TIntObjectHashMap<GasBrandGrade>();
 		ftCache = new TIntObjectHashMap<FreqTrip>();
 
+		progressStart(LEVEL_MDATA, progressCountRows
+			(new String[]{ "vehicle", "location", "via_route", "freqtrip", "freqtrip_tstop" }));
+
 		if (! verify_mdata_vehicle())
 			return false;
 		if (! verify_mdata_location())
@@ -441,6 +678,7 @@ public class RDBVerifier
 	 */
 	private boolean verify_mdata_vehicle()
 	{
+		progressPhase("vehicle");
 		final Vehicle[] all = Vehicle.getAll(db, 0);
 		if (all == null)
 		{
@@ -450,6 +688,9 @@ public class RDBVerifier
 
 		for (int i = 0; i < all.length; ++i)
 		{
+			if (! progressStep())
+				return false;
+
 			Vehicle v = all[i];
 			vehCache.put(v.id, v);
 
@@ -473,12 +714,16 @@ public class RDBVerifier
 	 */
 	private boolean verify_mdata_location()
 	{
+		progressPhase("location");
 		final Location[] all = Location.getAll(db, -1);
 		if (all == null)
 			return true;
 
 		for (int i = 0; i < all.length; ++i)
 		{
+			if (! progressStep())
+				return false;
+
 			Location lo = all[i];
 			locCache.put(lo.id, lo);
 
@@ -506,12 +751,16 @@ public class RDBVerifier
 	 */
 	private boolean verify_mdata_viaroute()
 	{
+		progressPhase("via_route");
 		final ViaRoute[] all = ViaRoute.getAll(db, -1, -1);
 		if (all == null)
 			return true;
 
 		for (int i = 0; i < all.length; ++i)
 		{
+			if (! progressStep())
+				return false;
+
 			ViaRoute via = all[i];
 			viaCache.put(via.id, via);
 
@@ -539,12 +788,16 @@ public class RDBVerifier
 	 */
 	private boolean verify_mdata_freqtrip()
 	{
+		progressPhase("freqtrip");
 		final Vector<FreqTrip> all = FreqTrip.getAll(db, false);
 		if (all == null)
 			return true;
 
 		for (int i = all.size() - 1; i >= 0; --i)
 		{
+			if (! progressStep())
+				return false;
+
 			FreqTrip ft = all.elementAt(i);
 			ftCache.put(ft.id, ft);
 
@@ -590,12 +843,16 @@ public class RDBVerifier
 	 */
 	private boolean verify_mdata_freqtrip_tstop()
 	{
+		progressPhase("freqtrip_tstop");
 		final Vector<FreqTripTStop> all = FreqTripTStop.stopsForTrip(db, null);
 		if (all == null)
 			return true;
 
 		for (int i = all.size() - 1; i >= 0; --i)
 		{
+			if (! progressStep())
+				return false;
+
 			FreqTripTStop fts = all.elementAt(i);
 
 			int id = fts.getFreqTripID();
@@ -634,8 +891,13 @@ public class RDBVerifier
 	private boolean verify_tdata()
 		throws IllegalStateException
 	{
+		if (lowMemory)
+			return verify_tdata_lowmem();
+
 		trCache = new TIntObjectHashMap<Trip>();
 
+		progressStart(LEVEL_TDATA, progressCountRows(new String[]{ Trip.TABNAME, TStop.TABNAME }));
+
 		if (! verify_tdata_trip())
 			return false;
 		if (! verify_tdata_tstop())
@@ -651,12 +913,16 @@ public class RDBVerifier
 	 */
 	private boolean verify_tdata_trip()
 	{
+		progressPhase(Trip.TABNAME);
 		final List<Trip> all = Trip.tripsForVehicle(db, null, true);
 		if (all == null)
 			return true;
 
 		for (int i = all.size() - 1; i >= 0; --i)
 		{
+			if (! progressStep())
+				return false;
+
 			final Trip tr = all.get(i);
 			trCache.put(tr.id, tr);
 
@@ -714,10 +980,14 @@ public class RDBVerifier
 	 */
 	private boolean verify_tdata_tstop()
 	{
+		progressPhase(TStop.TABNAME);
 		TIntObjectIterator<Trip> iter = trCache.iterator();
 		while (iter.hasNext())
 		{
 			iter.advance();
+			if (cancelled)
+				return false;
+
 			Trip tr = iter.value();
 			Vector<TStop> vts = tr.readAllTStops();
 			if (vts == null)
@@ -727,6 +997,9 @@ public class RDBVerifier
 			TStop tsPrev = null;
 			for (int i = 0; i < L; ++i)
 			{
+				if (! progressStep())
+					return false;
+
 				final TStop ts = vts.elementAt(i);
 
 				int id = ts.getLocationID();
@@ -807,6 +1080,572 @@ public class RDBVerifier
 		return failedItems.isEmpty();
 	}
 
+	///////////////////////////////////////////////////////////
+	// Low-memory mode methods
+	///////////////////////////////////////////////////////////
+
+	/**
+	 * Parse an integer field from {@link RDBAdapter#getRows(String, String, String[], String[], String, int)}.
+	 * @param s  Field value, or null
+	 * @return  Its value, or 0 if null or empty
+	 * @since 0.9.93
+	 */
+	private static int intField(final String s)
+	{
+		return ((s == null) || (s.length() == 0)) ? 0 : Integer.parseInt(s);
+	}
+
+	/**
+	 * Is this ID in this set of row IDs?
+	 * @return true if {@code id} &gt; 0 and is in {@code ids}
+	 * @since 0.9.93
+	 */
+	private static boolean hasID(final BitSet ids, final int id)
+	{
+		return (id > 0) && ids.get(id);
+	}
+
+	/**
+	 * Read the next window of a table's rows in {@code _id} order, for {@link #lowMemory} mode.
+	 * @param tabname  Table to read
+	 * @param fields  Fields to read; the last one must be {@code "_id"}
+	 * @param afterID  Read rows whose {@code _id} is greater than this; 0 for the first window
+	 * @param limit  Maximum number of rows to read
+	 * @return  Rows, or null if none left
+	 * @since 0.9.93
+	 */
+	private Vector<String[]> readWindow
+		(final String tabname, final String[] fields, final int afterID, final int limit)
+	{
+		return db.getRows
+			(tabname, "_id > ?", new String[]{ Integer.toString(afterID) }, fields, "_id", limit);
+	}
+
+	/**
+	 * Read all of a table's row IDs into a bitset, {@link #LOWMEM_ROW_WINDOW} rows at a time.
+	 * @param tabname  Table to read
+	 * @return  The table's row IDs
+	 * @since 0.9.93
+	 */
+	private BitSet readIDs(final String tabname)
+	{
+		final BitSet ids = new BitSet();
+		int lastID = 0;
+		for (;;)
+		{
+			final Vector<String[]> rows = readWindow(tabname, LOWMEM_ID_FIELD, lastID, LOWMEM_ROW_WINDOW);
+			if (rows == null)
+				break;
+
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				lastID = intField(rows.elementAt(i)[0]);
+				if (lastID > 0)
+					ids.set(lastID);
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Load a record for {@link #failedItems}, in {@link #lowMemory} mode.
+	 * @param tabname  Table name, such as {@code "vehicle"} or {@link TStop#TABNAME}
+	 * @param id  Row ID
+	 * @return  The record, or null if it can't be loaded or {@code tabname} isn't a table checked by this class
+	 * @since 0.9.93
+	 */
+	private RDBRecord loadRecord(final String tabname, final int id)
+	{
+		try
+		{
+			if (tabname.equals(TStop.TABNAME))
+				return new TStop(db, id);
+			else if (tabname.equals(Trip.TABNAME))
+				return new Trip(db, id);
+			else if (tabname.equals("tstop_gas"))
+				return new TStopGas(db, id);
+			else if (tabname.equals("vehicle"))
+				return new Vehicle(db, id);
+			else if (tabname.equals("location"))
+				return new Location(db, id);
+			else if (tabname.equals("via_route"))
+				return new ViaRoute(db, id);
+			else if (tabname.equals("freqtrip"))
+				return new FreqTrip(db, id);
+			else if (tabname.equals("freqtrip_tstop"))
+				return new FreqTripTStop(db, id);
+		}
+		catch (Throwable th) {}
+
+		return null;
+	}
+
+	/**
+	 * In {@link #lowMemory} mode, add a {@link FailedItem} for a row whose reference to another table
+	 * can't be found. Loads the row's record for {@link FailedItem#failedRelData}.
+	 * @param refID  ID which can't be found
+	 * @param tabname  Table of the referring row
+	 * @param rowID  ID of the referring row
+	 * @param desc  Failure description
+	 * @return  false if too many items have failed, as with {@link #addFailedItem(int, RDBRecord, String)}
+	 * @since 0.9.93
+	 */
+	private boolean addFailedRef(final int refID, final String tabname, final int rowID, final String desc)
+	{
+		return addFailedItem(refID, loadRecord(tabname, rowID), desc);
+	}
+
+	/**
+	 * Find or read a {@link ViaRoute}'s endpoints in the {@link #viaCacheID} cache, in {@link #lowMemory} mode.
+	 * @param viaID  Via route ID, already found in {@link #idsViaRoute}
+	 * @return  Slot number in the cache arrays, or -1 if the route can't be read
+	 * @since 0.9.93
+	 */
+	private int viaCacheSlot(final int viaID)
+	{
+		final int slot = viaID & (LOWMEM_VIA_CACHE_SIZE - 1);
+		if (viaCacheID[slot] != viaID)
+		{
+			final String[] r = db.getRow("via_route", viaID, LOWMEM_VIA_FIELDS);
+			if (r == null)
+				return -1;
+
+			viaCacheID[slot] = viaID;
+			viaCacheFrom[slot] = intField(r[0]);
+			viaCacheTo[slot] = intField(r[1]);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Verify to {@link #LEVEL_MDATA} in {@link #lowMemory} mode; same checks as {@link #verify_mdata()}.
+	 * Reads the row IDs of tables which aren't checked here (VehicleMake, Person, GeoArea, GasBrandGrade),
+	 * then reads each checked table's rows in windows, adding their IDs to bitsets as they're checked.
+	 * @return true if consistent, false if problems found (see {@link #failedItems} for details).
+	 * @throws IllegalStateException  if db is closed
+	 * @since 0.9.93
+	 */
+	private boolean verify_mdata_lowmem()
+		throws IllegalStateException
+	{
+		progressStart(LEVEL_MDATA, progressCountRows
+			(new String[]{ "vehicle", "location", "via_route", "freqtrip", "freqtrip_tstop" }));
+
+		idsVehMake = readIDs("vehiclemake");
+		idsPerson = readIDs("person");
+		idsGeoArea = readIDs("geoarea");
+		idsGasBrandGrade = readIDs("gas_brandgrade");
+		idsVehicle = new BitSet();
+		idsLocation = new BitSet();
+		idsViaRoute = new BitSet();
+		idsFreqTrip = new BitSet();
+		viaCacheID = new int[LOWMEM_VIA_CACHE_SIZE];
+		viaCacheFrom = new int[LOWMEM_VIA_CACHE_SIZE];
+		viaCacheTo = new int[LOWMEM_VIA_CACHE_SIZE];
+
+		// vehicle: makeid, driverid
+		progressPhase("vehicle");
+		final String[] vehFields = { "makeid", "driverid", "_id" };
+		int lastID = 0;
+		for (Vector<String[]> rows; null != (rows = readWindow("vehicle", vehFields, lastID, LOWMEM_ROW_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				lastID = intField(r[2]);
+				idsVehicle.set(lastID);
+
+				int id = intField(r[0]);
+				if (! hasID(idsVehMake, id))
+					if (! addFailedRef(id, "vehicle", lastID, "Can't load VehicleMake"))
+						return false;
+				id = intField(r[1]);
+				if (! hasID(idsPerson, id))
+					if (! addFailedRef(id, "vehicle", lastID, "Can't load Person for driver"))
+						return false;
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+		if (idsVehicle.isEmpty())
+		{
+			addFailedItem(0, "0 vehicles in DB");
+			return false;  // there must be vehicles
+		}
+
+		// location: a_id, latest_gas_brandgrade_id
+		progressPhase("location");
+		final String[] locFields = { "a_id", "latest_gas_brandgrade_id", "_id" };
+		lastID = 0;
+		for (Vector<String[]> rows; null != (rows = readWindow("location", locFields, lastID, LOWMEM_ROW_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				lastID = intField(r[2]);
+				idsLocation.set(lastID);
+
+				final int aid = intField(r[0]);
+				if ((aid != 0) && ! hasID(idsGeoArea, aid))
+					if (! addFailedRef(aid, "location", lastID, "Can't load GeoArea"))
+						return false;
+				final int gbg = intField(r[1]);
+				if ((gbg != 0) && ! hasID(idsGasBrandGrade, gbg))
+					if (! addFailedRef(gbg, "location", lastID, "Can't load GasBrandGrade"))
+						return false;
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+		if (! failedItems.isEmpty())
+			return false;
+
+		// via_route: locid_from, locid_to
+		progressPhase("via_route");
+		final String[] viaFields = { "locid_from", "locid_to", "_id" };
+		lastID = 0;
+		for (Vector<String[]> rows; null != (rows = readWindow("via_route", viaFields, lastID, LOWMEM_ROW_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				lastID = intField(r[2]);
+				idsViaRoute.set(lastID);
+
+				int lid = intField(r[0]);
+				if (! hasID(idsLocation, lid))
+					if (! addFailedRef(lid, "via_route", lastID, "Can't load LocID_From"))
+						return false;
+				lid = intField(r[1]);
+				if (! hasID(idsLocation, lid))
+					if (! addFailedRef(lid, "via_route", lastID, "Can't load LocID_To"))
+						return false;
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+		if (! failedItems.isEmpty())
+			return false;
+
+		// freqtrip: a_id, start_locid, end_locid, roadtrip_end_aid, end_via_id
+		progressPhase("freqtrip");
+		final String[] ftFields = { "a_id", "start_locid", "end_locid", "roadtrip_end_aid", "end_via_id", "_id" };
+		lastID = 0;
+		for (Vector<String[]> rows; null != (rows = readWindow("freqtrip", ftFields, lastID, LOWMEM_ROW_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				lastID = intField(r[5]);
+				idsFreqTrip.set(lastID);
+
+				int id = intField(r[0]);
+				if (! hasID(idsGeoArea, id))
+					if (! addFailedRef(id, "freqtrip", lastID, "Can't load GeoArea"))
+						return false;
+				id = intField(r[1]);
+				if (! hasID(idsLocation, id))
+					if (! addFailedRef(id, "freqtrip", lastID, "Can't load Start_Location"))
+						return false;
+				id = intField(r[2]);
+				if (! hasID(idsLocation, id))
+					if (! addFailedRef(id, "freqtrip", lastID, "Can't load End_Location"))
+						return false;
+				id = intField(r[3]);
+				if ((id != 0) && ! hasID(idsGeoArea, id))
+					if (! addFailedRef(id, "freqtrip", lastID, "Can't load End_GeoArea"))
+						return false;
+				id = intField(r[4]);
+				if ((id != 0) && ! hasID(idsViaRoute, id))
+					if (! addFailedRef(id, "freqtrip", lastID, "Can't load ViaRoute"))
+						return false;
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+		if (! failedItems.isEmpty())
+			return false;
+
+		// freqtrip_tstop: freqtripid, locid, via_id
+		progressPhase("freqtrip_tstop");
+		final String[] ftsFields = { "freqtripid", "locid", "via_id", "_id" };
+		lastID = 0;
+		for (Vector<String[]> rows; null != (rows = readWindow("freqtrip_tstop", ftsFields, lastID, LOWMEM_ROW_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				lastID = intField(r[3]);
+
+				int id = intField(r[0]);
+				if (! hasID(idsFreqTrip, id))
+					if (! addFailedRef(id, "freqtrip_tstop", lastID, "Can't load FreqTrip"))
+						return false;
+				id = intField(r[1]);
+				if (! hasID(idsLocation, id))
+					if (! addFailedRef(id, "freqtrip_tstop", lastID, "Can't load Location"))
+						return false;
+				id = intField(r[2]);
+				if ((id != 0) && ! hasID(idsViaRoute, id))
+					if (! addFailedRef(id, "freqtrip_tstop", lastID, "Can't load ViaRoute"))
+						return false;
+			}
+			if (n < LOWMEM_ROW_WINDOW)
+				break;
+		}
+
+		return failedItems.isEmpty();
+	}
+
+	/**
+	 * Verify to {@link #LEVEL_TDATA} in {@link #lowMemory} mode; same checks as {@link #verify_tdata()}.
+	 * Assumes already verified at {@link #LEVEL_MDATA} in low-memory mode.
+	 * Reads {@link #LOWMEM_TRIP_WINDOW} trips at a time in {@code _id} order and checks them.
+	 * If they're all OK, reads them again a window at a time
+	 * and calls {@link #verify_tdata_lowmem_tstops(int[], int[], int)} to check their stops.
+	 * @return true if consistent, false if problems found (see {@link #failedItems} for details).
+	 * @throws IllegalStateException  if db is closed
+	 * @since 0.9.93
+	 */
+	private boolean verify_tdata_lowmem()
+		throws IllegalStateException
+	{
+		progressStart(LEVEL_TDATA, progressCountRows(new String[]{ Trip.TABNAME, TStop.TABNAME }));
+		progressPhase(Trip.TABNAME);
+
+		final int[] tripIDs = new int[LOWMEM_TRIP_WINDOW], tripVIDs = new int[LOWMEM_TRIP_WINDOW];
+		int lastID = 0;
+		for (Vector<String[]> rows;
+		     null != (rows = readWindow(Trip.TABNAME, LOWMEM_TRIP_FIELDS, lastID, LOWMEM_TRIP_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				if (! progressStep())
+					return false;
+
+				final String[] r = rows.elementAt(i);
+				final int tid = intField(r[6]);
+				lastID = tid;
+
+				int id = intField(r[0]);
+				if (! hasID(idsVehicle, id))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load Vehicle"))
+						return false;
+				id = intField(r[1]);
+				if (! hasID(idsPerson, id))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load Person for driver"))
+						return false;
+				id = intField(r[2]);
+				if (! hasID(idsGeoArea, id))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load GeoArea"))
+						return false;
+				id = intField(r[3]);
+				if ((id != 0) && ! hasID(idsFreqTrip, id))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load FreqTrip"))
+						return false;
+				id = intField(r[4]);
+				if ((id != 0) && ! hasID(idsGeoArea, id))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load Roadtrip_End_GeoArea"))
+						return false;
+				id = intField(r[5]);
+				if ((id != 0) && (null == db.getRow(TStop.TABNAME, id, LOWMEM_ID_FIELD)))
+					if (! addFailedRef(id, Trip.TABNAME, tid, "Can't load Start_TStop"))
+						return false;
+			}
+			if (n < LOWMEM_TRIP_WINDOW)
+				break;
+		}
+		if (! failedItems.isEmpty())
+			return false;
+
+		progressPhase(TStop.TABNAME);
+		lastID = 0;
+		for (Vector<String[]> rows;
+		     null != (rows = readWindow(Trip.TABNAME, LOWMEM_TRIP_VID_FIELDS, lastID, LOWMEM_TRIP_WINDOW)); )
+		{
+			final int n = rows.size();
+			for (int i = 0; i < n; ++i)
+			{
+				final String[] r = rows.elementAt(i);
+				tripVIDs[i] = intField(r[0]);
+				tripIDs[i] = intField(r[1]);
+			}
+			lastID = tripIDs[n - 1];
+
+			if (! verify_tdata_lowmem_tstops(tripIDs, tripVIDs, n))
+				return false;
+			if (n < LOWMEM_TRIP_WINDOW)
+				break;
+		}
+
+		return failedItems.isEmpty();
+	}
+
+	/**
+	 * Verify one window's trips' {@link TStop}s as part of {@link #verify_tdata_lowmem()};
+	 * same checks as {@link #verify_tdata_tstop()}.
+	 * Reads the stops of trips in the window's ID range, in order by trip and then stop ID.
+	 * @param tripIDs  The window's trip IDs, in ascending order
+	 * @param tripVIDs  Each trip's vehicle ID
+	 * @param n  Number of trips in the window
+	 * @return true if OK, false if too many inconsistencies or cancelled
+	 * @since 0.9.93
+	 */
+	private boolean verify_tdata_lowmem_tstops(final int[] tripIDs, final int[] tripVIDs, final int n)
+	{
+		final Vector<String[]> rows = db.getRows
+			(TStop.TABNAME, "tripid >= ? AND tripid <= ?",
+			 new String[]{ Integer.toString(tripIDs[0]), Integer.toString(tripIDs[n - 1]) },
+			 LOWMEM_TSTOP_FIELDS, "tripid, _id", 0);
+		if (rows == null)
+			return true;
+
+		int ti = 0;  // index within tripIDs[]
+		int prevTripID = 0, prevID = 0, prevLocID = 0, prevTimeStop = 0;  // prevTripID 0: no previous stop in trip
+		final int L = rows.size();
+		for (int i = 0; i < L; ++i)
+		{
+			final String[] r = rows.elementAt(i);
+			final int tripID = intField(r[0]);
+			while ((ti < n) && (tripIDs[ti] < tripID))
+				++ti;
+			if ((ti == n) || (tripIDs[ti] != tripID))
+				continue;  // not a trip in this window; verify_tdata_tstop doesn't check those either
+
+			if (! progressStep())
+				return false;
+
+			final int tsID = intField(r[7]);
+			final int locID = intField(r[1]);
+			final int timeStop = intField(r[6]);
+			if (prevTripID != tripID)
+				prevTripID = 0;  // first stop in this trip
+
+			int id = locID;
+			if (id != 0)
+			{
+				if (! hasID(idsLocation, id))
+					if (! addFailedRef(id, TStop.TABNAME, tsID, "Can't load Location"))
+						return false;
+			} else {
+				final String loc = r[2];
+				if ((loc == null) || (loc.length() == 0))
+				{
+					final RDBRecord ts = loadRecord(TStop.TABNAME, tsID);
+					if (! ((ts != null)
+					       ? addFailedItem(ts, "LocationDescr null or empty")
+					       : addFailedItem(tsID, "LocationDescr null or empty")))
+						return false;
+				}
+			}
+			id = intField(r[3]);
+			if ((id != 0) && ! hasID(idsGeoArea, id))
+				if (! addFailedRef(id, TStop.TABNAME, tsID, "Can't load GeoArea"))
+					return false;
+			id = intField(r[4]);
+			if (id != 0)
+			{
+				final int slot = (hasID(idsViaRoute, id)) ? viaCacheSlot(id) : -1;
+				if (slot == -1)
+				{
+					if (! addFailedRef(id, TStop.TABNAME, tsID, "Can't load ViaRoute"))
+						return false;
+				} else {
+					if (viaCacheTo[slot] != locID)
+					{
+						if (! addFailedItem(loadRecord("via_route", id), loadRecord(TStop.TABNAME, tsID),
+							 "TStop's Location != Via's LocID_To"))
+							return false;
+					}
+					if ((prevTripID != 0)
+					    && (timeStop != prevTimeStop)  // ignore duplicate here
+					    && (viaCacheFrom[slot] != prevLocID))
+					{
+						if (! addFailedItem(loadRecord("via_route", id), loadRecord(TStop.TABNAME, prevID),
+							 "TStop's Location != Via's LocID_From"))
+							return false;
+					}
+				}
+			}
+			if (0 != (intField(r[5]) & TStop.FLAG_GAS))
+			{
+				final String[] g = db.getRow("tstop_gas", tsID, LOWMEM_TSTOPGAS_FIELDS);
+				if (g == null)
+				{
+					if (! addFailedRef(tsID, TStop.TABNAME, tsID, "Can't load TStopGas"))
+						return false;
+				} else {
+					if (intField(g[0]) != tripVIDs[ti])
+					{
+						if (! addFailedItem(loadRecord("tstop_gas", tsID), loadRecord(TStop.TABNAME, tsID),
+							 "TStopGas's Vehicle != TStop's Vehicle"))
+							return false;
+					}
+					final int gbg = intField(g[1]);
+					if ((gbg != 0) && ! hasID(idsGasBrandGrade, gbg))
+						if (! addFailedRef(gbg, "tstop_gas", tsID, "Can't load GasBrandGrade"))
+							return false;
+				}
+			}
+
+			prevTripID = tripID;
+			prevID = tsID;
+			prevLocID = locID;
+			prevTimeStop = timeStop;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Callback interface for progress of {@link RDBVerifier#verify(int)}, to show a progress bar
+	 * during a long verification.
+	 * Called in the verifying thread, which may not be the UI thread.
+	 * @see RDBVerifier#setProgressListener(ProgressListener)
+	 * @author jdmonin
+	 * @since 0.9.93
+	 */
+	public interface ProgressListener
+	{
+		/**
+		 * Called when verification starts on each table, and periodically while checking its items.
+		 * To stop verification, call {@link RDBVerifier#cancel()}.
+		 * @param level  Level being verified, such as {@link RDBVerifier#LEVEL_TDATA}
+		 * @param tabname  Name of the table being checked, such as {@code "trip"}
+		 * @param done  Number of items checked so far in this level
+		 * @param total  Estimated total items to check in this level, from the tables' row counts,
+		 *     or 0 if unknown (such as during {@link RDBVerifier#LEVEL_PHYS}).
+		 *     {@code done} might exceed {@code total} if the db is being changed during verification.
+		 */
+		public void verifyProgress(final int level, final String tabname, final int done, final int total);
+	}
+
 	/**
 	 * Details about a data item which failed validation in {@link RDBVerifier#verify(int)}.
 	 * Validation failures for overall conditions (like no vehicles in DB) will have {@link #id} == 0
@@ -19,6 +19,9 @@
 
 package org.shadowlands.roadtrip.db;
 
+import java.util.HashMap;
+import java.util.List;
+
 /**
  * Read the Settings db table: Settings which change frequently.
  * For some common settings, see static string fields here or see the schema.
@@ -29,6 +32,9 @@ package org.shadowlands.roadtrip.db;
  * If you restore the database from a backup, call {@link #clearSettingsCache()}
  * to remove cached references to the overwritten db's settings objects.
  *<P>
+ * All rows of the settings table are read by one query the first time any setting is needed,
+ * or when {@link #preload(RDBAdapter)} is called, and cached afterwards.
+ *<P>
  * In version 0.9.40, some settings became per-vehicle {@link VehSettings}.
  * In older versions they're all in this global table.
  *
@@ -81,6 +87,14 @@ public class Settings extends RDBRecord
 	 */
 	public static final String SHOW_TRIP_PAX = "SHOW_TRIP_PAX";
 
+	/**
+	 * int setting for the {@link RDBSlowQueryLog} threshold, in milliseconds.
+	 * Queries taking at least this long are logged with their query plan.
+	 * Default is 0 (disabled).
+	 * @since 0.9.93
+	 */
+	public static final String SLOW_QUERY_THRESHOLD_MS = "SLOW_QUERY_THRESHOLD_MS";
+
 	private static final String TABNAME = "settings";
 	private static final String KEYFIELD = "sname";
 	private static final String VALFIELD_STR = "svalue";
@@ -88,6 +102,21 @@ public class Settings extends RDBRecord
 	private static final String[] FIELDS = { KEYFIELD, VALFIELD_STR, VALFIELD_INT };
 	private static final String[] VALFIELDS = { VALFIELD_STR, VALFIELD_INT };
 	private static final String[] VALFIELDS_AND_ID = { VALFIELD_STR, VALFIELD_INT, "_id" };
+	private static final String[] FIELDS_AND_ID = { KEYFIELD, VALFIELD_STR, VALFIELD_INT, "_id" };
+
+	/** Lock for {@link #cachedRows} and {@link #cachedRowsConn} */
+	private static final Object rowsLock = new Object();
+
+	/**
+	 * All rows of the settings table: Setting name -&gt; {@code svalue, ivalue, _id}, or null if not yet read.
+	 * Kept current by {@link #insert(RDBAdapter)}, {@link #commit()} and {@link #delete()}.
+	 * @see #readCached(RDBAdapter, String)
+	 * @since 0.9.93
+	 */
+	private static HashMap<String, String[]> cachedRows;
+
+	/** DB from which {@link #cachedRows} was read */
+	private static RDBAdapter cachedRowsConn;
 
 	/** Setting name (key) */
 	private String sfield;
@@ -110,8 +139,8 @@ public class Settings extends RDBRecord
 	{
 		try
 		{
-			String[] fv = db.getRow(TABNAME, KEYFIELD, settname, VALFIELDS);
-			return (fv != null);
+			readCached(db, settname);
+			return true;
 		} catch (Exception e) {
 			return false;
 		}
@@ -162,7 +191,7 @@ public class Settings extends RDBRecord
 			svalue = null;
 
 		try {
-			s = new Settings(db, settname);
+			s = readCached(db, settname);
 		} catch (RDBKeyNotFoundException e) {
 			// fall through, create it below
 		}
@@ -213,7 +242,7 @@ public class Settings extends RDBRecord
 		Settings s = null;
 
 		try {
-			s = new Settings(db, settname);
+			s = readCached(db, settname);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -281,7 +310,7 @@ public class Settings extends RDBRecord
 		Settings s = null;
 
 		try {
-			s = new Settings(db, settname);
+			s = readCached(db, settname);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -308,7 +337,7 @@ public class Settings extends RDBRecord
 		Settings s = null;
 
 		try {
-			s = new Settings(db, settname);
+			s = readCached(db, settname);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -353,6 +382,114 @@ public class Settings extends RDBRecord
 		}
 	}
 
+	/**
+	 * Existing Setting from a cached db row; used by {@link #readCached(RDBAdapter, String)}.
+	 * @param db  db connection
+	 * @param settname  field name
+	 * @param fv  Field values: {@code svalue}, {@code ivalue}, {@code _id}
+	 * @since 0.9.93
+	 */
+	private Settings(RDBAdapter db, final String settname, final String[] fv)
+		throws RDBKeyNotFoundException
+	{
+		super(db, -1);
+		sfield = settname;
+		try {
+			id = Integer.parseInt(fv[2]);
+		} catch (NumberFormatException e) {}
+		svalue = fv[0];
+		if (fv[1] != null)
+		{
+			try {
+				ivalue = Integer.parseInt(fv[1]);
+			} catch (NumberFormatException e) {}
+		}
+	}
+
+	/**
+	 * Read all rows of the settings table with one query, unless they're already cached for this db.
+	 * Later calls to this class's static getters won't need to query the db.
+	 * Useful at app startup, before reading several settings.
+	 * @param db  connection to use
+	 * @throws IllegalArgumentException  if db null
+	 * @throws IllegalStateException if db not open
+	 * @see VehSettings#preload(RDBAdapter, Vehicle)
+	 * @since 0.9.93
+	 */
+	public static void preload(RDBAdapter db)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		if (db == null)
+			throw new IllegalArgumentException("db null");
+
+		synchronized (rowsLock)
+		{
+			if ((cachedRows == null) || ! db.hasSameOwner(cachedRowsConn))
+			{
+				final List<String[]> rv = db.getRows(TABNAME, (String) null, (String[]) null, FIELDS_AND_ID, null, 0);
+				final HashMap<String, String[]> rows = new HashMap<String, String[]>();
+				if (rv != null)
+					for (final String[] fv : rv)
+						rows.put(fv[0], new String[]{ fv[1], fv[2], fv[3] });
+				cachedRows = rows;
+			}
+			cachedRowsConn = db;
+		}
+	}
+
+	/**
+	 * Look up a Setting, using the cached settings rows; calls {@link #preload(RDBAdapter)} to read them if needed.
+	 * Like {@link #Settings(RDBAdapter, String)}, returns a new object each time,
+	 * which the caller can change and commit.
+	 * @param db  connection to use
+	 * @param settname  field to retrieve
+	 * @return  the setting; not null
+	 * @throws IllegalArgumentException  if db null
+	 * @throws IllegalStateException if db not open
+	 * @throws RDBKeyNotFoundException if settname not found in database
+	 * @since 0.9.93
+	 */
+	private static Settings readCached(RDBAdapter db, final String settname)
+		throws IllegalArgumentException, IllegalStateException, RDBKeyNotFoundException
+	{
+		final String[] fv;
+		synchronized (rowsLock)
+		{
+			preload(db);
+			fv = cachedRows.get(settname);
+		}
+		if (fv == null)
+			throw new RDBKeyNotFoundException(settname);
+
+		return new Settings(db, settname, fv);
+	}
+
+	/**
+	 * Update the cached settings rows, if any, after an insert, commit, or delete of this record.
+	 * @param removed  True if record was deleted
+	 * @since 0.9.93
+	 */
+	private void updateCachedRow(final boolean removed)
+	{
+		synchronized (rowsLock)
+		{
+			if (cachedRows == null)
+				return;
+
+			if ((dbConn == null) || ! dbConn.hasSameOwner(cachedRowsConn))
+			{
+				cachedRows = null;  // can't tell if still valid; re-read when next needed
+				return;
+			}
+
+			if (removed)
+				cachedRows.remove(sfield);
+			else
+				cachedRows.put(sfield, new String[]
+					{ svalue, (svalue != null) ? null : Integer.toString(ivalue), Integer.toString(id) });
+		}
+	}
+
 	/**
 	 * Create a new string-valued Setting (not yet inserted to the database).
 	 * @param settname field to set; empty strings ("") are stored as null.
@@ -443,6 +580,7 @@ public class Settings extends RDBRecord
 		id = db.insert(TABNAME, FIELDS, fv, true);
 		dirty = false;
 		dbConn = db;
+		updateCachedRow(false);
 		return id;
 	}
 
@@ -467,6 +605,7 @@ public class Settings extends RDBRecord
 		String[] fv = { svalue, iv };
 		dbConn.update(TABNAME, KEYFIELD, sfield, VALFIELDS, fv);
 		dirty = false;
+		updateCachedRow(false);
 	}
 
 	/**
@@ -479,6 +618,7 @@ public class Settings extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		updateCachedRow(true);
 		deleteCleanup();
 	}
 
@@ -492,12 +632,21 @@ public class Settings extends RDBRecord
 	/**
 	 * Clear cached settings records and associated objects (such
 	 * as the Current {@link Vehicle}). Necessary after restoring from a backup.
-	 * Also calls {@link VehSettings#clearSettingsCache()}.
+	 * Also calls {@link VehSettings#clearSettingsCache()} and {@link LocationTripIndex#invalidate()}.
 	 */
 	public static void clearSettingsCache()
 	{
 		currentV = null;
+		synchronized (rowsLock)
+		{
+			cachedRows = null;
+			cachedRowsConn = null;
+		}
 		VehSettings.clearSettingsCache();
+		LocationTripIndex.invalidate();
+		LocationGeoIndex.invalidate();
+		RouteGraph.invalidate();
+		FreqTripMiner.invalidate();
 	}
 
 	/**
@@ -521,7 +670,7 @@ public class Settings extends RDBRecord
 		{
 			if (db != currentV.dbConn)
 				// currentV cached from earlier activity in Android:
-				// see VehSettings.currentA javadoc for more info
+				// see VehSettings.vehCaches javadoc for more info
 				currentV.dbConn = db;
 
 			return currentV;
@@ -530,7 +679,7 @@ public class Settings extends RDBRecord
 		Settings sCV = null;
 		try
 		{
-			sCV = new Settings(db, Settings.CURRENT_VEHICLE);
+			sCV = readCached(db, Settings.CURRENT_VEHICLE);
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCV.getIntValue();
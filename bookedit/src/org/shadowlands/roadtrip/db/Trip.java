@@ -65,7 +65,8 @@ import org.shadowlands.roadtrip.model.LogbookTableModel;  // strictly for COL_TS
  */
 public class Trip extends RDBRecord
 {
-	private static final String TABNAME = "trip";
+	/** Access is package, not private, for {@link LocationTripIndex}'s use */
+	static final String TABNAME = "trip";
 
 	/** The <tt>time_start</tt> db field; a trip's starting time */
 	private static final String FIELD_TIME_START = "time_start";
@@ -121,31 +122,12 @@ public class Trip extends RDBRecord
 		"(time_start < ?) and vid = ?";
 
 	/**
-	 * Where-clause for use in {@link #tripsForLocation(RDBAdapter, int, Vehicle, int, boolean, int, boolean)}.
-	 * Index 0 ignores trip VehicleID, index 1 filters by it.
+	 * Minimum batch size for trip IDs read from {@link LocationTripIndex} by
+	 * {@link #tripsForLocation(RDBAdapter, int, Vehicle, int, boolean, int, boolean)}
+	 * when filtering by vehicle, since some of those trips may be for other vehicles.
+	 * @since 0.9.93
 	 */
-	private static final String[] WHERE_LOCID = {
-		"locid_start = ? OR _id in ( select distinct tripid from tstop where locid = ? order by tripid desc limit ? )",
-		"(locid_start = ? OR _id in ( select distinct tripid from tstop where locid = ? )) and vid = ?",
-	};
-
-	/**
-	 * Where-clause for use in {@link #tripsForLocation(RDBAdapter, int, Vehicle, int, boolean, int, boolean)}.
-	 * Index 0 ignores trip VehicleID, index 1 filters by it.
-	 */
-	private static final String[] WHERE_LOCID_AND_TRIPID_BEFORE = {
-		"(locid_start = ? and _id < ?) OR _id in ( select distinct tripid from tstop where locid = ? and tripid < ? order by tripid desc limit ? )",
-		"((locid_start = ? and _id < ?) OR _id in ( select distinct tripid from tstop where locid = ? and tripid < ? )) and vid = ?",
-	};
-
-	/**
-	 * Where-clause for use in {@link #tripsForLocation(RDBAdapter, int, Vehicle, int, boolean, int, boolean)}.
-	 * Index 0 ignores trip VehicleID, index 1 filters by it.
-	 */
-	private static final String[] WHERE_LOCID_AND_TRIPID_AFTER = {
-		"(locid_start = ? and _id > ?) OR _id in ( select distinct tripid from tstop where locid = ? and tripid > ? order by tripid limit ? )",
-		"((locid_start = ? and _id > ?) OR _id in ( select distinct tripid from tstop where locid = ? and tripid > ? )) and vid = ?",
-	};
+	private static final int LOCID_VEH_BATCH_MIN = 40;
 
 	private static final int WEEK_IN_SECONDS = 7 * 24 * 60 * 60;
 
@@ -192,6 +174,13 @@ public class Trip extends RDBRecord
 	 */
 	private int locid_start;
 
+	/**
+	 * {@link #locid_start} as last read from or written to the db, or 0,
+	 * for updating {@link LocationTripIndex} when committed or deleted.
+	 * @since 0.9.93
+	 */
+	private transient int locid_start_db;
+
 	/** optional time field; see sql schema for date fmt. 0 if unused. */
 	private int time_start, time_end;
 
@@ -356,6 +345,83 @@ public class Trip extends RDBRecord
 		}
 	}
 
+	/**
+	 * Get the IDs and start times of all Trips for a Vehicle, without reading the rest of their fields.
+	 * Useful for dividing a long list of trips into ranges to read later with
+	 * {@link #tripsForVehicleIDs(RDBAdapter, Vehicle, int[], int, int, boolean)}.
+	 *<P>
+	 * Sorted by start time like {@link #tripsForVehicle(RDBAdapter, Vehicle, int, int, boolean, boolean, boolean, boolean)},
+	 * not by ID: After {@link RDBMerge}, older trips can have higher IDs.
+	 * @param db  db connection
+	 * @param veh  vehicle to look for; not null
+	 * @return Two arrays of the same length, sorted by start time and then trip ID:
+	 *     {@code [0]} has the trip IDs, {@code [1]} their {@link #getTime_start()}; or null if none
+	 * @throws IllegalStateException if db not open
+	 * @since 0.9.93
+	 */
+	public static int[][] tripIDsAndTimesForVehicle(RDBAdapter db, Vehicle veh)
+		throws IllegalStateException
+	{
+		if (db == null)
+			throw new IllegalStateException("db null");
+
+		final Vector<String[]> sv = db.getRows
+			(TABNAME, "vid", Integer.toString(veh.getID()), new String[]{ "_id", FIELD_TIME_START },
+			 FIELD_TIME_START + ", _id", 0);
+		if (sv == null)
+			return null;
+
+		final int L = sv.size();
+		final int[] ids = new int[L], times = new int[L];
+		for (int i = 0; i < L; ++i)
+		{
+			final String[] tRow = sv.elementAt(i);
+			ids[i] = Integer.parseInt(tRow[0]);
+			times[i] = (tRow[1] != null) ? Integer.parseInt(tRow[1]) : 0;
+		}
+
+		return new int[][]{ ids, times };
+	}
+
+	/**
+	 * Retrieve some of a Vehicle's Trips by ID, such as a range of the IDs
+	 * from {@link #tripIDsAndTimesForVehicle(RDBAdapter, Vehicle)}.
+	 * @param db  db connection
+	 * @param veh  vehicle to look for; not null
+	 * @param ids  Array of trip IDs
+	 * @param from  Index within {@code ids} of the first ID to retrieve
+	 * @param n  Number of IDs to retrieve, at least 1
+	 * @param alsoTStops  If true, call {@link #readAllTStops()} for each trip found
+	 * @return Those Trips which are for this Vehicle and still exist, sorted by start time and then ID,
+	 *     or null if none
+	 * @throws IllegalStateException if db not open
+	 * @since 0.9.93
+	 */
+	public static List<Trip> tripsForVehicleIDs
+		(RDBAdapter db, Vehicle veh, final int[] ids, final int from, final int n, final boolean alsoTStops)
+		throws IllegalStateException
+	{
+		if (db == null)
+			throw new IllegalStateException("db null");
+
+		StringBuilder where = new StringBuilder("_id in (");
+		for (int i = 0; i < n; ++i)
+		{
+			if (i > 0)
+				where.append(',');
+			where.append(ids[from + i]);
+		}
+		where.append(") and vid = ?");
+
+		final Vector<String[]> sv = db.getRows
+			(TABNAME, where.toString(), new String[]{ Integer.toString(veh.getID()) }, FIELDS_AND_ID,
+			 FIELD_TIME_START + ", _id", 0);
+		if (sv == null)
+			return null;
+
+		return parseStringsToTrips(db, alsoTStops, sv, false);
+	}
+
 	/**
 	 * Search for trips beyond this range.
 	 * Uses min or max to ensure any newer or older data is found,
@@ -420,6 +486,7 @@ public class Trip extends RDBRecord
 
 	/**
 	 * Retrieve a range of Trips that include a given Location.
+	 * Finds them with {@link LocationTripIndex}, which is built from the db on first use.
 	 * @param db  db connection
 	 * @param locID  Location to look for
 	 * @param veh  vehicle to look for, or null for all vehicles
@@ -447,49 +514,55 @@ public class Trip extends RDBRecord
 		if (limit <= 0)
 			throw new IllegalArgumentException("limit");
 
-		Vector<String[]> sv = null;
+		final boolean ascending = (prevTripID != 0) && towardsNewer;
+		final String orderClause = (veh != null)
+			? (ascending ? "_id" : "_id DESC")
+				// if no prevtripid, show most-recent trips up to row limit
+			: FIELD_TIME_START;
+		final boolean listReversed = (veh != null) && ! ascending;
+			// if true,  easier to build list backwards in parseStringsToTrips
+
+		// Get the next trip IDs from the index, then read those trips.
+		// When filtering by vehicle, some of those may be for other vehicles:
+		// Keep reading batches until limit is reached or the index has no more.
 
-		final String[] whereArgs;  // Length must match number of ? in whereClause
-		if (prevTripID == 0)
+		final LocationTripIndex idx = LocationTripIndex.get(db);
+		final String[] whereArgs = (veh != null) ? new String[]{ Integer.toString(veh.getID()) } : null;
+		final int batchSize = (veh != null) ? Math.max(limit, LOCID_VEH_BATCH_MIN) : limit;
+		int fromTripID = prevTripID;
+		Vector<String[]> sv = null;
+		for (;;)
 		{
-			whereArgs = new String[3];
-			whereArgs[0] = Integer.toString(locID);  // trip.locid_start
-			whereArgs[1] = whereArgs[0];   // subquery's tstop.locid
-			if (veh != null)
-				whereArgs[2] = Integer.toString(veh.getID());
-			else
-				whereArgs[2] = Integer.toString(limit);
-		} else {
-			whereArgs = new String[5];
-			whereArgs[0] = Integer.toString(locID);  // trip.locid_start
-			whereArgs[1] = Integer.toString(prevTripID);  // exclude already-shown trips
-			whereArgs[2] = whereArgs[0];   // subquery's tstop.locid
-			whereArgs[3] = whereArgs[1];   // subquery exclude already-shown trips
+			final int[] tripIDs = idx.getTripIDs(locID, fromTripID, ascending, batchSize);
+			if (tripIDs.length == 0)
+				break;
+
+			StringBuilder where = new StringBuilder("_id in (");
+			for (int i = 0; i < tripIDs.length; ++i)
+			{
+				if (i > 0)
+					where.append(',');
+				where.append(tripIDs[i]);
+			}
+			where.append(')');
 			if (veh != null)
-				whereArgs[4] = Integer.toString(veh.getID());
-			else
-				whereArgs[4] = Integer.toString(limit);
-		}
+				where.append(" and vid = ?");
 
-		String whereClause;
-		final String orderClause;
-		if (prevTripID != 0)
-		{
-			final int i = (veh != null) ? 1 : 0;
-			if (towardsNewer)
-				whereClause = WHERE_LOCID_AND_TRIPID_AFTER[i];
-			else
-				whereClause = WHERE_LOCID_AND_TRIPID_BEFORE[i];
-		} else {
-			whereClause = WHERE_LOCID[(veh != null) ? 1 : 0];
+			final int rowLimit = (sv != null) ? (limit - sv.size()) : limit;
+			Vector<String[]> rows = db.getRows(TABNAME, where.toString(), whereArgs, FIELDS_AND_ID, orderClause, rowLimit);
+			if (rows != null)
+			{
+				if (sv == null)
+					sv = rows;
+				else
+					sv.addAll(rows);
+			}
+
+			if ((veh == null) || (tripIDs.length < batchSize) || ((sv != null) && (sv.size() >= limit)))
+				break;
+
+			fromTripID = tripIDs[tripIDs.length - 1];
 		}
-		orderClause = (veh != null)
-			? (((prevTripID != 0) && towardsNewer) ? "_id" : "_id DESC")
-				// if no prevtripid, show most-recent trips up to row limit
-			: FIELD_TIME_START;
-		final boolean listReversed = (veh != null) && ((prevTripID == 0) || ! towardsNewer);
-			// if true,  easier to build list backwards in parseStringsToTrips
-		sv = db.getRows(TABNAME, whereClause, whereArgs, FIELDS_AND_ID, orderClause, limit);
 
 		if (sv == null)
 		{
@@ -689,6 +762,7 @@ public class Trip extends RDBRecord
 		tr.setOdo_end(0);
 		tr.setTime_end(0);
 		tr.commit();
+		FreqTripMiner.changed(db);
 
 		VehSettings.setCurrentTrip(db, currV, tr);
 		tr.cancelContinueFromTStop();  // find and update CURRENT_TSTOP, PREV_LOCATION, etc
@@ -750,6 +824,7 @@ public class Trip extends RDBRecord
 			tstopid_start = Integer.parseInt(rec[6]);  // FK
 		if (rec[7] != null)
 			locid_start = Integer.parseInt(rec[7]);  // FK
+		locid_start_db = locid_start;
 		if (rec[8] != null)
 			time_start = Integer.parseInt(rec[8]);
 		if (rec[9] != null)
@@ -1187,9 +1262,14 @@ public class Trip extends RDBRecord
 	public int insert(RDBAdapter db)
 		throws IllegalStateException
 	{
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
+		LocationTripIndex.update(db, id, 0, locid_start);
+		locid_start_db = locid_start;
+		CommentIndex.update(db, -id, comment, true);
 
 		return id;
 	}
@@ -1207,8 +1287,13 @@ public class Trip extends RDBRecord
 	public void commit()
 		throws IllegalStateException, NullPointerException
 	{
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
+		LocationTripIndex.update(dbConn, id, locid_start_db, locid_start);
+		locid_start_db = locid_start;
+		CommentIndex.update(dbConn, -id, comment, false);
 	}
 
 	/**
@@ -1643,6 +1728,9 @@ public class Trip extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
+		LocationTripIndex.update(dbConn, id, locid_start_db, 0);
+		CommentIndex.delete(dbConn, -id);
 		deleteCleanup();
 	}
 
@@ -20,7 +20,10 @@
 package org.shadowlands.roadtrip.db;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -36,6 +39,9 @@ import java.util.Vector;
  * If you restore the database from a backup, call {@link Settings#clearSettingsCache()}
  * to remove cached references to the overwritten db's settings objects.
  *<P>
+ * Settings rows and current-record objects are cached per vehicle for the most recently used
+ * vehicles; a vehicle's rows are all read by one query the first time any of its settings is needed.
+ *<P>
  * Version 0.9.40 made these settings per-vehicle. In older versions they're in {@link Settings}.
  * Some static fields here for setting names show their original version ("since 0.8.13" etc),
  * which often is older than 0.9.40.
@@ -127,6 +133,15 @@ public class VehSettings extends RDBRecord
 	private static final String[] VALFIELDS = { VALFIELD_STR, VALFIELD_INT };
 	private static final String[] VALFIELDS_AND_ID = { VALFIELD_STR, VALFIELD_INT, "_id" };
 
+	/** Fields to read all of a vehicle's settings in {@link #readCached(RDBAdapter, String, Vehicle)} */
+	private static final String[] FIELDS_NAME_VALS_ID = { KEYFIELD_S, VALFIELD_STR, VALFIELD_INT, "_id" };
+
+	/**
+	 * Maximum number of vehicles whose settings are kept in {@link #vehCaches}.
+	 * @since 0.9.93
+	 */
+	private static final int VEH_CACHE_SIZE = 8;
+
 	/** Setting name (key) */
 	private final String sfield;
 
@@ -158,9 +173,8 @@ public class VehSettings extends RDBRecord
 
 		try
 		{
-			final String[] kv = { settname, Integer.toString(v.getID()) };
-			List<String[]> rv = db.getRows(TABNAME, WHERE_KEYFIELDS, kv, VALFIELDS, null, 0);
-			return (rv != null);
+			readCached(db, settname, v);
+			return true;
 		} catch (Exception e) {
 			return false;
 		}
@@ -220,7 +234,7 @@ public class VehSettings extends RDBRecord
 			svalue = null;
 
 		try {
-			s = new VehSettings(db, settname, v);  // checks for null db, settname, v
+			s = readCached(db, settname, v);  // checks for null db, settname, v
 		} catch (RDBKeyNotFoundException e) {
 			// fall through, create it below
 		}
@@ -255,7 +269,7 @@ public class VehSettings extends RDBRecord
 		VehSettings s = null;
 
 		try {
-			s = new VehSettings(db, settname, v);
+			s = readCached(db, settname, v);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -324,7 +338,7 @@ public class VehSettings extends RDBRecord
 		VehSettings s = null;
 
 		try {
-			s = new VehSettings(db, settname, v);
+			s = readCached(db, settname, v);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -351,7 +365,7 @@ public class VehSettings extends RDBRecord
 		VehSettings s = null;
 
 		try {
-			s = new VehSettings(db, settname, v);
+			s = readCached(db, settname, v);
 		} catch (RDBKeyNotFoundException e) { }
 
 		if (s == null)
@@ -381,6 +395,10 @@ public class VehSettings extends RDBRecord
 			throw new IllegalArgumentException();
 
 		db.delete(TABNAME, "vid=?", v.getID());
+		synchronized (vehCaches)
+		{
+			vehCaches.remove(Integer.valueOf(v.getID()));
+		}
 	}
 
 	/**
@@ -423,6 +441,32 @@ public class VehSettings extends RDBRecord
 		}
 	}
 
+	/**
+	 * Existing VehSetting from a cached db row; used by {@link #readCached(RDBAdapter, String, Vehicle)}.
+	 * @param db  db connection
+	 * @param settname  field name
+	 * @param vid  Vehicle ID
+	 * @param fv  Field values: {@code svalue}, {@code ivalue}, {@code _id}
+	 * @since 0.9.93
+	 */
+	private VehSettings(RDBAdapter db, final String settname, final int vid, final String[] fv)
+		throws RDBKeyNotFoundException
+	{
+		super(db, -1);
+		sfield = settname;
+		this.vid = vid;
+		try {
+			id = Integer.parseInt(fv[2]);
+		} catch (NumberFormatException e) {}
+		svalue = fv[0];
+		if (fv[1] != null)
+		{
+			try {
+				ivalue = Integer.parseInt(fv[1]);
+			} catch (NumberFormatException e) {}
+		}
+	}
+
 	/**
 	 * Create a new string-valued VehSetting (not yet inserted to the database).
 	 * @param settname field to set
@@ -537,6 +581,7 @@ public class VehSettings extends RDBRecord
 		id = db.insert(TABNAME, FIELDS, fv, true);
 		dirty = false;
 		dbConn = db;
+		updateCachedRow(false);
 		return id;
 	}
 
@@ -563,6 +608,7 @@ public class VehSettings extends RDBRecord
 		String[] fv = { svalue, iv };
 		dbConn.update(TABNAME, id, VALFIELDS, fv);
 		dirty = false;
+		updateCachedRow(false);
 	}
 
 	/**
@@ -579,6 +625,7 @@ public class VehSettings extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		updateCachedRow(true);
 		deleteCleanup();
 	}
 
@@ -588,8 +635,10 @@ public class VehSettings extends RDBRecord
 	 */
 
 	/**
-	 * Cached record for {@link #getCurrentArea(RDBAdapter, Vehicle, boolean)}, or {@code null}.
-	 * This setting is for the vehicle with ID {@link #currentA_vid}.
+	 * Per-vehicle caches of settings rows and records, for {@link #getCurrentArea(RDBAdapter, Vehicle, boolean)}
+	 * and the other {@code getCurrentX} methods, keyed by vehicle ID. Holds the most recently used
+	 * {@link #VEH_CACHE_SIZE} vehicles, so that switching between a household's vehicles
+	 * doesn't evict and re-read the other vehicles' settings. Use the map only while synchronized on it.
 	 *<P>
 	 * <H5>Caching and the Activity lifecycle:</H5>
 	 *
@@ -607,52 +656,175 @@ public class VehSettings extends RDBRecord
 	 * same database as the caller, but uses a different RDBAdapter reference to access that db.  If so, the
 	 * method places the caller's db reference into the cached record's {@link RDBRecord#dbConn dbConn} before
 	 * returning it.  After that, any further queries or updates through the cached record would use the
-	 * caller's open RDBAdapter.
+	 * caller's open RDBAdapter. Cached settings rows ({@link VehCache#rows}) are checked the same way.
+	 * @since 0.9.93
+	 */
+	private static final LinkedHashMap<Integer, VehCache> vehCaches
+		= new LinkedHashMap<Integer, VehCache>(VEH_CACHE_SIZE + 1, 0.75f, true)
+	{
+		private static final long serialVersionUID = 993L;
+
+		protected boolean removeEldestEntry(Map.Entry<Integer, VehCache> eldest)
+		{
+			return (size() > VEH_CACHE_SIZE);
+		}
+	};
+
+	/**
+	 * Clear cached settings records and associated objects (such
+	 * as the Current {@link GeoArea}). Necessary after restoring from a backup.
+	 * Called from {@link Settings#clearSettingsCache()}.
 	 */
-	private static GeoArea currentA = null;
+	public static void clearSettingsCache()
+	{
+		synchronized (vehCaches)
+		{
+			vehCaches.clear();
+		}
+	}
 
-	/** vehicle ID for cached {@link #currentA} per-vehicle setting */
-	private static int currentA_vid;
+	/**
+	 * Get or create the cache entry for a vehicle.
+	 * @param vid  Vehicle ID
+	 * @return  The vehicle's cache entry, not null
+	 * @since 0.9.93
+	 */
+	private static VehCache getVehCache(final int vid)
+	{
+		final Integer key = Integer.valueOf(vid);
+		synchronized (vehCaches)
+		{
+			VehCache vc = vehCaches.get(key);
+			if (vc == null)
+			{
+				vc = new VehCache();
+				vehCaches.put(key, vc);
+			}
 
-	/** cached record for {@link #getCurrentDriver(RDBAdapter, Vehicle, boolean)} */
-	private static Person currentD = null;
-	private static int currentD_vid;
+			return vc;
+		}
+	}
+
+	/**
+	 * Look up a VehSetting, using the vehicle's cached settings rows if possible.
+	 * The first lookup for a vehicle reads all its settings rows with one query;
+	 * later lookups for that vehicle and db don't query the db.
+	 * Rows are kept current by {@link #insert(RDBAdapter)}, {@link #commit()}, {@link #delete()}
+	 * and {@link #deleteAll(RDBAdapter, Vehicle)}.
+	 *<P>
+	 * Like {@link #VehSettings(RDBAdapter, String, Vehicle)}, returns a new object each time,
+	 * which the caller can change and commit.
+	 *
+	 * @param db  connection to use
+	 * @param settname  field to retrieve
+	 * @param v  Vehicle to retrieve for
+	 * @return  the setting; not null
+	 * @throws IllegalArgumentException  if {@code db} null, {@code settname} null, or {@code v} null
+	 * @throws IllegalStateException if db not open
+	 * @throws RDBKeyNotFoundException if settname not found in database
+	 * @since 0.9.93
+	 */
+	private static VehSettings readCached(RDBAdapter db, final String settname, final Vehicle v)
+		throws IllegalArgumentException, IllegalStateException, RDBKeyNotFoundException
+	{
+		if (db == null)
+			throw new IllegalArgumentException("db null");
+		if (settname == null)
+			throw new IllegalArgumentException("null settname");
+		if (v == null)
+			throw new IllegalArgumentException("null vehicle");
 
-	/** cached record for {@link #getCurrentTrip(RDBAdapter, Vehicle, boolean)} */
-	private static Trip currentT = null;
-	private static int currentT_vid;
+		final int vid = v.getID();
+		final VehCache vc = getVehCache(vid);
+		final String[] fv;
+		synchronized (vehCaches)
+		{
+			loadRows(db, vc, vid);
+			fv = vc.rows.get(settname);
+		}
+		if (fv == null)
+			throw new RDBKeyNotFoundException(settname + "," + vid);
 
-	/** cached record for {@link #getCurrentFreqTrip(RDBAdapter, Vehicle, boolean)} */
-	private static FreqTrip currentFT = null;
-	private static int currentFT_vid;
+		return new VehSettings(db, settname, vid, fv);
+	}
 
-	/** cached record for {@link #getCurrentFreqTripTStops(RDBAdapter, Vehicle, boolean)};
-	 *  length never 0, is null in that case. */
-	private static List<FreqTripTStop> currentFTS = null;
-	private static int currentFTS_vid;
+	/**
+	 * Read all of a vehicle's settings rows with one query, unless they're already cached for this db.
+	 * Later calls to this class's static getters for that vehicle won't need to query the
+	 * {@code veh_settings} table. Useful at app startup, before reading several settings.
+	 * @param db  connection to use
+	 * @param v  Vehicle to read settings for
+	 * @throws IllegalArgumentException  if {@code db} null or {@code v} null
+	 * @throws IllegalStateException if db not open
+	 * @see Settings#preload(RDBAdapter)
+	 * @since 0.9.93
+	 */
+	public static void preload(RDBAdapter db, final Vehicle v)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		if (db == null)
+			throw new IllegalArgumentException("db null");
+		if (v == null)
+			throw new IllegalArgumentException("null vehicle");
 
-	/** cached record for {@link #getCurrentTStop(RDBAdapter, Vehicle, boolean)} */
-	private static TStop currentTS = null;
-	private static int currentTS_vid;
+		final int vid = v.getID();
+		final VehCache vc = getVehCache(vid);
+		synchronized (vehCaches)
+		{
+			loadRows(db, vc, vid);
+		}
+	}
 
-	/** cached record for {@link #getPreviousLocation(RDBAdapter, Vehicle, boolean)} */
-	private static Location prevL = null;
-	private static int prevL_vid;
+	/**
+	 * Read a vehicle's settings rows into its cache entry, unless already cached for this db.
+	 * Caller must synchronize on {@link #vehCaches}.
+	 * @param db  connection to use
+	 * @param vc  Vehicle's cache entry
+	 * @param vid  Vehicle ID
+	 * @throws IllegalStateException if db not open
+	 * @since 0.9.93
+	 */
+	private static void loadRows(RDBAdapter db, final VehCache vc, final int vid)
+		throws IllegalStateException
+	{
+		if ((vc.rows == null) || ! db.hasSameOwner(vc.rowsConn))
+		{
+			final String[] kv = { Integer.toString(vid) };
+			final List<String[]> rv = db.getRows(TABNAME, "vid=?", kv, FIELDS_NAME_VALS_ID, null, 0);
+			final HashMap<String, String[]> rows = new HashMap<String, String[]>();
+			if (rv != null)
+				for (final String[] r : rv)
+					rows.put(r[0], new String[]{ r[1], r[2], r[3] });
+			vc.rows = rows;
+		}
+		vc.rowsConn = db;
+	}
 
 	/**
-	 * Clear cached settings records and associated objects (such
-	 * as the Current {@link GeoArea}). Necessary after restoring from a backup.
-	 * Called from {@link Settings#clearSettingsCache()}.
+	 * Update the cached settings rows, if any, for this record's vehicle after an insert, commit, or delete.
+	 * @param removed  True if record was deleted
+	 * @since 0.9.93
 	 */
-	public static void clearSettingsCache()
+	private void updateCachedRow(final boolean removed)
 	{
-		currentA = null;
-		currentD = null;
-		currentT = null;
-		currentFT = null;
-		currentFTS = null;
-		currentTS = null;
-		prevL = null;
+		synchronized (vehCaches)
+		{
+			final VehCache vc = vehCaches.get(Integer.valueOf(vid));
+			if ((vc == null) || (vc.rows == null))
+				return;
+
+			if ((dbConn == null) || ! dbConn.hasSameOwner(vc.rowsConn))
+			{
+				vc.rows = null;  // can't tell if still valid; re-read when next needed
+				return;
+			}
+
+			if (removed)
+				vc.rows.remove(sfield);
+			else
+				vc.rows.put(sfield, new String[]
+					{ svalue, (svalue != null) ? null : Integer.toString(ivalue), Integer.toString(id) });
+		}
 	}
 
 	/**
@@ -678,40 +850,39 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentA != null) && (currentA_vid == vid) && db.hasSameOwner(currentA.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentA != null) && db.hasSameOwner(vc.currentA.dbConn))
 		{
-			if (db != currentA.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				currentA.dbConn = db;
+			if (db != vc.currentA.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.currentA.dbConn = db;
 
-			return currentA;
+			return vc.currentA;
 		}
 
 		VehSettings sCA = null;
 		try
 		{
-			sCA = new VehSettings(db, CURRENT_AREA, v);
+			sCA = readCached(db, CURRENT_AREA, v);
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCA.getIntValue();
 				if (id != 0)
 				{
-					currentA = new GeoArea(db, id);
-					currentA_vid = vid;
+					vc.currentA = new GeoArea(db, id);
 				} else {
-					currentA = null;
+					vc.currentA = null;
 				}
 			} catch (Throwable th) {
-				currentA = null;
+				vc.currentA = null;
 				if (clearIfBad)
 					sCA.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentA
+			return null;  // no setting found for this vehicle; don't use or change vc.currentA
 		}
 
-		return currentA;
+		return vc.currentA;
 	}
 
 	/**
@@ -731,8 +902,7 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		currentA = a;
-		currentA_vid = v.getID();
+		getVehCache(v.getID()).currentA = a;
 		final int id = (a != null) ? a.id : 0;
 		insertOrUpdate(db, CURRENT_AREA, v, id);
 	}
@@ -759,40 +929,39 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentD != null) && (currentD_vid == vid) && db.hasSameOwner(currentD.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentD != null) && db.hasSameOwner(vc.currentD.dbConn))
 		{
-			if (db != currentD.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				currentD.dbConn = db;
+			if (db != vc.currentD.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.currentD.dbConn = db;
 
-			return currentD;
+			return vc.currentD;
 		}
 
 		VehSettings sCD = null;
 		try
 		{
-			sCD = new VehSettings(db, CURRENT_DRIVER, v);
+			sCD = readCached(db, CURRENT_DRIVER, v);
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCD.getIntValue();
 				if (id != 0)
 				{
-					currentD = new Person(db, id);
-					currentD_vid = vid;
+					vc.currentD = new Person(db, id);
 				} else {
-					currentD = null;
+					vc.currentD = null;
 				}
 			} catch (Throwable th) {
-				currentD = null;
+				vc.currentD = null;
 				if (clearIfBad)
 					sCD.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentD
+			return null;  // no setting found for this vehicle; don't use or change vc.currentD
 		}
 
-		return currentD;
+		return vc.currentD;
 	}
 
 	/**
@@ -812,8 +981,7 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		currentD = dr;
-		currentD_vid = v.getID();
+		getVehCache(v.getID()).currentD = dr;
 		final int id = (dr != null) ? dr.id : 0;
 		insertOrUpdate(db, CURRENT_DRIVER, v, id);
 	}
@@ -839,41 +1007,40 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentT != null) && (currentT_vid == vid) && db.hasSameOwner(currentT.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentT != null) && db.hasSameOwner(vc.currentT.dbConn))
 		{
-			if (db != currentT.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				currentT.dbConn = db;
+			if (db != vc.currentT.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.currentT.dbConn = db;
 
-			return currentT;
+			return vc.currentT;
 		}
 
 		VehSettings sCT = null;
 		try
 		{
-			sCT = new VehSettings(db, CURRENT_TRIP, v);
+			sCT = readCached(db, CURRENT_TRIP, v);
 
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCT.getIntValue();
 				if (id != 0)
 				{
-					currentT = new Trip(db, id);
-					currentT_vid = vid;
+					vc.currentT = new Trip(db, id);
 				} else {
-					currentT = null;
+					vc.currentT = null;
 				}
 			} catch (Throwable th) {
-				currentT = null;
+				vc.currentT = null;
 				if (clearIfBad)
 					sCT.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentT
+			return null;  // no setting found for this vehicle; don't use or change vc.currentT
 		}
 
-		return currentT;
+		return vc.currentT;
 	}
 
 	/**
@@ -894,8 +1061,7 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		currentT = tr;
-		currentT_vid = v.getID();
+		getVehCache(v.getID()).currentT = tr;
 		final int id = (tr != null) ? tr.id : 0;
 		insertOrUpdate(db, CURRENT_TRIP, v, id);
 	}
@@ -969,6 +1135,7 @@ public class VehSettings extends RDBRecord
 			currT.setPassengerCount(pax);
 
 		currT.commit();
+		FreqTripMiner.tripEnded(db, currT);
 
 		v.setOdometerCurrentAndLastTrip(odo_total, currT, true);
 			// also calls currV.commit() for those 2 fields only
@@ -1013,41 +1180,40 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentFT != null) && (currentFT_vid == vid) && db.hasSameOwner(currentFT.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentFT != null) && db.hasSameOwner(vc.currentFT.dbConn))
 		{
-			if (db != currentFT.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				currentFT.dbConn = db;
+			if (db != vc.currentFT.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.currentFT.dbConn = db;
 
-			return currentFT;
+			return vc.currentFT;
 		}
 
 		VehSettings sCT = null;
 		try
 		{
-			sCT = new VehSettings(db, CURRENT_FREQTRIP, v);
+			sCT = readCached(db, CURRENT_FREQTRIP, v);
 
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCT.getIntValue();
 				if (id != 0)
 				{
-					currentFT = new FreqTrip(db, id);
-					currentFT_vid = vid;
+					vc.currentFT = new FreqTrip(db, id);
 				} else {
-					currentFT = null;
+					vc.currentFT = null;
 				}
 			} catch (Throwable th) {
-				currentFT = null;
+				vc.currentFT = null;
 				if (clearIfBad)
 					sCT.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentFT
+			return null;  // no setting found for this vehicle; don't use or change vc.currentFT
 		}
 
-		return currentFT;
+		return vc.currentFT;
 	}
 
 	/**
@@ -1070,31 +1236,32 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		currentFT = ft;
-		currentFT_vid = v.getID();
+		final VehCache vc = getVehCache(v.getID());
+		vc.currentFT = ft;
 		final int id = (ft != null) ? ft.id : 0;
 		insertOrUpdate(db, CURRENT_FREQTRIP, v, id);
 		if (ft == null)
 		{
-			currentFTS = null;
+			vc.currentFTS = null;
 			insertOrUpdate(db, CURRENT_FREQTRIP_TSTOPLIST, v, null);
 		} else {
 			Vector<FreqTripTStop> allStops = ft.readAllTStops();
 			if (allStops == null)
 			{
-				currentFTS = null;
+				vc.currentFTS = null;
 				insertOrUpdate(db, CURRENT_FREQTRIP_TSTOPLIST, v, null);
 				return;
 			}
-			insertOrUpdateCurrentFreqTripTStops(db, v, allStops);  // sets currentFTS, currentFTS_vid
+			insertOrUpdateCurrentFreqTripTStops(db, v, allStops);  // sets vc.currentFTS
 		}
 	}
 
 	/**
-	 * Write {@link #currentFTS}, as a string of IDs, to {@link #CURRENT_FREQTRIP_TSTOPLIST}.
+	 * Write frequent stops, as a string of IDs, to {@link #CURRENT_FREQTRIP_TSTOPLIST}
+	 * and cache them for {@link #getCurrentFreqTripTStops(RDBAdapter, Vehicle, boolean)}.
 	 * @param db  connection to use
 	 * @param v  Vehicle to update stop list for: not null
-	 * @param currFTS  Frequent stops from {@link #currentFTS} or a local variable, or null or empty to clear setting
+	 * @param currFTS  Frequent stops from the cached list or a local variable, or null or empty to clear setting
 	 * @throws IllegalArgumentException if {@code db} is null or {@code v} is null
 	 * @throws IllegalStateException if db not open
 	 */
@@ -1105,10 +1272,11 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
+		final VehCache vc = getVehCache(v.getID());
 		if ((currFTS == null) || currFTS.isEmpty())
 		{
 			insertOrUpdate(db, CURRENT_FREQTRIP_TSTOPLIST, v, null);
-			currentFTS = null;
+			vc.currentFTS = null;
 			return;
 		}
 
@@ -1120,8 +1288,7 @@ public class VehSettings extends RDBRecord
 			sb.append(currFTS.get(i).getID());
 		}
 
-		currentFTS = currFTS;
-		currentFTS_vid = v.getID();
+		vc.currentFTS = currFTS;
 		insertOrUpdate(db, CURRENT_FREQTRIP_TSTOPLIST, v, sb.toString());
 	}
 
@@ -1160,33 +1327,33 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentFTS != null) && (currentFTS_vid == vid) && (currentFTS.size() > 0))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentFTS != null) && (vc.currentFTS.size() > 0))
 		{
-			RDBAdapter firstConn = currentFTS.get(0).dbConn;
+			RDBAdapter firstConn = vc.currentFTS.get(0).dbConn;
 			if (db.hasSameOwner(firstConn))
 			{
 				if (db != firstConn)
 				{
-					// cached from earlier activity in Android: see currentA javadoc for more info
-					for (int i = currentFTS.size() - 1; i >= 0; --i)
-						currentFTS.get(i).dbConn = db;
+					// cached from earlier activity in Android: see vehCaches javadoc for more info
+					for (int i = vc.currentFTS.size() - 1; i >= 0; --i)
+						vc.currentFTS.get(i).dbConn = db;
 				}
 
-				return currentFTS;
+				return vc.currentFTS;
 			}
 		}
 
 		try
 		{
-			VehSettings sFSL = new VehSettings(db, CURRENT_FREQTRIP_TSTOPLIST, v);
+			VehSettings sFSL = readCached(db, CURRENT_FREQTRIP_TSTOPLIST, v);
 			// Sub-try: to cleanup in case the setting exists, but a record doesn't.
 			// We'll read each freq stop with an ID in the list.
 			try {
 				final String slist = sFSL.getStrValue();
 				if (slist == null)
 				{
-					currentFTS = null;
+					vc.currentFTS = null;
 					return null;
 				}
 
@@ -1195,18 +1362,17 @@ public class VehSettings extends RDBRecord
 				for (int i = 0; i < ids.length; ++i)
 					allStops.add(new FreqTripTStop(db, Integer.parseInt(ids[i])));
 
-				currentFTS = allStops;
-				currentFTS_vid = vid;
+				vc.currentFTS = allStops;
 			} catch (Throwable th) {
-				currentFTS = null;
+				vc.currentFTS = null;
 				if (clearIfBad)
 					sFSL.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentFTS
+			return null;  // no setting found for this vehicle; don't use or change vc.currentFTS
 		}
 
-		return currentFTS;
+		return vc.currentFTS;
 	}
 
 	/**
@@ -1267,40 +1433,39 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((currentTS != null) && (currentTS_vid == vid) && db.hasSameOwner(currentTS.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.currentTS != null) && db.hasSameOwner(vc.currentTS.dbConn))
 		{
-			if (db != currentTS.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				currentTS.dbConn = db;
+			if (db != vc.currentTS.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.currentTS.dbConn = db;
 
-			return currentTS;
+			return vc.currentTS;
 		}
 
 		VehSettings sCTS = null;
 		try
 		{
-			sCTS = new VehSettings(db, CURRENT_TSTOP, v);
+			sCTS = readCached(db, CURRENT_TSTOP, v);
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sCTS.getIntValue();
 				if (id != 0)
 				{
-					currentTS = new TStop(db, id);
-					currentTS_vid = vid;
+					vc.currentTS = new TStop(db, id);
 				} else {
-					currentTS = null;
+					vc.currentTS = null;
 				}
 			} catch (Throwable th) {
-				currentTS = null;
+				vc.currentTS = null;
 				if (clearIfBad)
 					sCTS.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change currentTS
+			return null;  // no setting found for this vehicle; don't use or change vc.currentTS
 		}
 
-		return currentTS;
+		return vc.currentTS;
 	}
 
 	/**
@@ -1320,8 +1485,7 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		currentTS = ts;
-		currentTS_vid = v.getID();
+		getVehCache(v.getID()).currentTS = ts;
 		final int id = (ts != null) ? ts.id : 0;
 		insertOrUpdate(db, CURRENT_TSTOP, v, id);
 	}
@@ -1347,41 +1511,40 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		final int vid = v.getID();
-		if ((prevL != null) && (prevL_vid == vid) && db.hasSameOwner(prevL.dbConn))
+		final VehCache vc = getVehCache(v.getID());
+		if ((vc.prevL != null) && db.hasSameOwner(vc.prevL.dbConn))
 		{
-			if (db != prevL.dbConn)
-				// cached from earlier activity in Android: see currentA javadoc for more info
-				prevL.dbConn = db;
+			if (db != vc.prevL.dbConn)
+				// cached from earlier activity in Android: see vehCaches javadoc for more info
+				vc.prevL.dbConn = db;
 
-			return prevL;
+			return vc.prevL;
 		}
 
 		VehSettings sPL = null;
 		try
 		{
-			sPL = new VehSettings(db, PREV_LOCATION, v);
+			sPL = readCached(db, PREV_LOCATION, v);
 
 			// Sub-try: cleanup in case the setting exists, but the record doesn't
 			try {
 				int id = sPL.getIntValue();
 				if (id != 0)
 				{
-					prevL = new Location(db, id);
-					prevL_vid = vid;
+					vc.prevL = new Location(db, id);
 				} else {
-					prevL = null;
+					vc.prevL = null;
 				}
 			} catch (Throwable th) {
-				prevL = null;
+				vc.prevL = null;
 				if (clearIfBad)
 					sPL.delete();
 			}
 		} catch (Throwable th) {
-			return null;  // no setting found for this vehicle; don't use or change prevL
+			return null;  // no setting found for this vehicle; don't use or change vc.prevL
 		}
 
-		return prevL;
+		return vc.prevL;
 	}
 
 	/**
@@ -1401,8 +1564,7 @@ public class VehSettings extends RDBRecord
 		if (v == null)
 			throw new IllegalArgumentException("null vehicle");
 
-		prevL = loc;
-		prevL_vid = v.getID();
+		getVehCache(v.getID()).prevL = loc;
 		final int id = (loc != null) ? loc.id : 0;
 		insertOrUpdate(db, PREV_LOCATION, v, id);
 	}
@@ -1462,7 +1624,7 @@ public class VehSettings extends RDBRecord
 		Trip newCurrT = null;
 		try
 		{
-			VehSettings vs = new VehSettings(db, CURRENT_TRIP, newV);
+			VehSettings vs = readCached(db, CURRENT_TRIP, newV);
 			final int trip_id = vs.ivalue;
 			if (trip_id != 0)
 			{
@@ -1492,7 +1654,7 @@ public class VehSettings extends RDBRecord
 			TStop ts = null;  // for current tstop or prev location
 			try
 			{
-				VehSettings vs = new VehSettings(db, CURRENT_TSTOP, newV);
+				VehSettings vs = readCached(db, CURRENT_TSTOP, newV);
 				final int tstop_id = vs.ivalue;
 				if (tstop_id != 0)
 				{
@@ -1518,7 +1680,7 @@ public class VehSettings extends RDBRecord
 
 			try
 			{
-				VehSettings vs = new VehSettings(db, PREV_LOCATION, newV);
+				VehSettings vs = readCached(db, PREV_LOCATION, newV);
 				final int loc_id = vs.ivalue;
 				if (loc_id != 0)
 				{
@@ -1585,7 +1747,7 @@ public class VehSettings extends RDBRecord
 
 			Location prevLoc = null;
 			try {
-				VehSettings vs = new VehSettings(db, PREV_LOCATION, newV);
+				VehSettings vs = readCached(db, PREV_LOCATION, newV);
 				if (vs.ivalue != 0)
 					prevLoc = new Location(db, vs.ivalue);
 			} catch (RDBKeyNotFoundException e) {}
@@ -1686,4 +1848,40 @@ public class VehSettings extends RDBRecord
 		}
 	}
 
+	/**
+	 * One vehicle's entry in {@link VehSettings#vehCaches}: Its settings rows, and the records
+	 * for its current area, trip, etc. Each record field is null if not yet read or if unset.
+	 * @since 0.9.93
+	 */
+	private static final class VehCache
+	{
+		/** Setting name -&gt; {@code svalue, ivalue, _id}, or null if not yet read */
+		HashMap<String, String[]> rows;
+
+		/** DB from which {@link #rows} was read */
+		RDBAdapter rowsConn;
+
+		/** cached record for {@link VehSettings#getCurrentArea(RDBAdapter, Vehicle, boolean)} */
+		GeoArea currentA;
+
+		/** cached record for {@link VehSettings#getCurrentDriver(RDBAdapter, Vehicle, boolean)} */
+		Person currentD;
+
+		/** cached record for {@link VehSettings#getCurrentTrip(RDBAdapter, Vehicle, boolean)} */
+		Trip currentT;
+
+		/** cached record for {@link VehSettings#getCurrentFreqTrip(RDBAdapter, Vehicle, boolean)} */
+		FreqTrip currentFT;
+
+		/** cached records for {@link VehSettings#getCurrentFreqTripTStops(RDBAdapter, Vehicle, boolean)};
+		 *  length never 0, is null in that case. */
+		List<FreqTripTStop> currentFTS;
+
+		/** cached record for {@link VehSettings#getCurrentTStop(RDBAdapter, Vehicle, boolean)} */
+		TStop currentTS;
+
+		/** cached record for {@link VehSettings#getPreviousLocation(RDBAdapter, Vehicle, boolean)} */
+		Location prevL;
+	}
+
 }  // public class VehSettings
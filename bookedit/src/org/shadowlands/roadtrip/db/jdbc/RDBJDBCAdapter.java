@@ -24,15 +24,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import org.shadowlands.roadtrip.bookedit.LogbookEditPane;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBSlowQueryLog;
 
 /**
  * SQLite connection via JDBC.
  *<P>
+ * If {@link RDBSlowQueryLog} is enabled, queries are timed and any slower than its threshold
+ * are logged along with their {@code EXPLAIN QUERY PLAN} output.
+ *<P>
  * Not safe for use by multiple threads; protect with synchronization if needed.
  * @author jdmonin
  */
@@ -198,10 +204,12 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		final String sql = "select * from " + tabname + " where _id=" + id + ";";
 		ResultSet rs = null;
 		try
 		{
-			rs = stat.executeQuery("select * from " + tabname + " where _id=" + id + ";");
+			rs = stat.executeQuery(sql);
 		} catch (SQLException e)
 		{
 			try
@@ -212,7 +220,9 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return null;
 		}
 
-		return get_extractRowFieldsAndCloseRS(fields, rs);
+		final String[] rv = get_extractRowFieldsAndCloseRS(fields, rs);
+		logIfSlow(sql, null, t0);
+		return rv;
 	}
 
 	public String[] getRow(final String tabname, final String kf, final String kv, final String[] fields)
@@ -221,14 +231,15 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		final String sql;
+		if (kf.endsWith("<>"))
+			sql = "select * from " + tabname + " where " + kf + " ? ;";  // sql ends with "<> ? ;"
+		else
+			sql = "select * from " + tabname + " where " + kf + " = ? ;";
 		ResultSet rs = null;
 		try
 		{
-			String sql;
-			if (kf.endsWith("<>"))
-				sql = "select * from " + tabname + " where " + kf + " ? ;";  // sql ends with "<> ? ;"
-			else
-				sql = "select * from " + tabname + " where " + kf + " = ? ;";
 			PreparedStatement prep = conn.prepareStatement(sql);
 			prep.setString(1, kv);
 			rs = prep.executeQuery();
@@ -242,7 +253,9 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return null;
 		}
 
-		return get_extractRowFieldsAndCloseRS(fields, rs);
+		final String[] rv = get_extractRowFieldsAndCloseRS(fields, rs);
+		logIfSlow(sql, new String[]{ kv }, t0);
+		return rv;
 	}
 
 	public Vector<String[]> getRows
@@ -255,6 +268,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		String sql = null;
 		ResultSet rs = null;
 		try
 		{
@@ -292,8 +307,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 				sb.append(limit);
 			}
 			sb.append(';');
-			PreparedStatement prep = conn.prepareStatement
-				(sb.toString());
+			sql = sb.toString();
+			PreparedStatement prep = conn.prepareStatement(sql);
 			if (kv != null)
 				prep.setString(1, kv);
 			rs = prep.executeQuery();
@@ -307,7 +322,9 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return null;
 		}
 
-		return get_extractRowsFieldsAndCloseRS(fieldnames, rs);
+		final Vector<String[]> rv = get_extractRowsFieldsAndCloseRS(fieldnames, rs);
+		logIfSlow(sql, (kv != null) ? new String[]{ kv } : null, t0);
+		return rv;
 	}
 
 	public Vector<String[]> getRows
@@ -320,6 +337,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		String sql = null;
 		ResultSet rs = null;
 		try
 		{
@@ -341,8 +360,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 				sb.append(limit);
 			}
 			sb.append(';');
-			PreparedStatement prep = conn.prepareStatement
-				(sb.toString());
+			sql = sb.toString();
+			PreparedStatement prep = conn.prepareStatement(sql);
 			if (whereArgs != null)
 			{
 				for (int i = 0; i < whereArgs.length; ++i)
@@ -359,7 +378,9 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return null;
 		}
 
-		return get_extractRowsFieldsAndCloseRS(fieldnames, rs);
+		final Vector<String[]> rv = get_extractRowsFieldsAndCloseRS(fieldnames, rs);
+		logIfSlow(sql, whereArgs, t0);
+		return rv;
 	}
 
 	/**
@@ -453,13 +474,14 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		final String sql = "select " + fn + " from " + tabname + " where " + kf + " = ? ;";
 		ResultSet rs = null;
 		try
 		{
-			PreparedStatement prep = conn.prepareStatement
-			    ("select " + fn + " from " + tabname + " where " + kf + " = ? ;");
+			PreparedStatement prep = conn.prepareStatement(sql);
 			prep.setString(1, kv);
-			rs = prep.executeQuery();
+			rs = prep.executeQuery();  // sqlite steps to the first result row here
 		} catch (SQLException e) {
 			try
 			{
@@ -468,6 +490,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 			} catch (SQLException ee) { }
 			return null;
 		}
+
+		logIfSlow(sql, new String[]{ kv }, t0);
 		return rs;
 	}
 
@@ -493,6 +517,8 @@ public class RDBJDBCAdapter implements RDBAdapter
 		if (conn == null)
 			throw new IllegalStateException("conn not open");
 
+		final long t0 = System.nanoTime();
+		String sql = null;
 		ResultSet rs = null;
 		try
 		{
@@ -510,14 +536,14 @@ public class RDBJDBCAdapter implements RDBAdapter
 				throw new IllegalArgumentException("null where, non-null whereArgs");
 			}
 			sb.append(';');
-			PreparedStatement prep = conn.prepareStatement
-				(sb.toString());
+			sql = sb.toString();
+			PreparedStatement prep = conn.prepareStatement(sql);
 			if (whereArgs != null)
 			{
 				for (int i = 0; i < whereArgs.length; ++i)
 					prep.setString(i+1, whereArgs[i]);
 			}
-			rs = prep.executeQuery();
+			rs = prep.executeQuery();  // sqlite steps to the first result row here
 		} catch (SQLException e)
 		{
 			try
@@ -528,6 +554,7 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return null;
 		}
 
+		logIfSlow(sql, whereArgs, t0);
 		return rs;
 	}
 
@@ -674,6 +701,7 @@ public class RDBJDBCAdapter implements RDBAdapter
 			throw new IllegalStateException("conn not open");
 
 		// assert: kf != null.
+		final long t0 = System.nanoTime();
 		StringBuffer sb = new StringBuffer("SELECT COUNT(*) FROM ");
 		sb.append(tabname);
 		sb.append(" WHERE ");
@@ -682,9 +710,10 @@ public class RDBJDBCAdapter implements RDBAdapter
 			sb.append(" IS NULL");
 		else
 			sb.append(" = ?");
+		final String sqlStr = sb.toString();
 		PreparedStatement sql;
 		try {
-			sql = conn.prepareStatement(sb.toString());
+			sql = conn.prepareStatement(sqlStr);
 		} catch (SQLException e) {
 			throw new IllegalStateException(e);
 		}
@@ -713,6 +742,12 @@ public class RDBJDBCAdapter implements RDBAdapter
 			} catch (SQLException ee) { }
 			throw new IllegalStateException(e);
 		}
+
+		if (bindString)
+			logIfSlow(sqlStr, (sv != null) ? new String[]{ sv } : null, t0);
+		else
+			logIfSlow(sqlStr, new String[]{ Integer.toString(iv) }, t0);
+
 		return retval;
 	}
 
@@ -1028,6 +1063,33 @@ public class RDBJDBCAdapter implements RDBAdapter
 		stat.executeUpdate(sql);  // may throw SQLException
 	}
 
+	public void beginTransaction()
+		throws IllegalStateException, SQLException
+	{
+		if (conn == null)
+			throw new IllegalStateException("conn not open");
+		conn.setAutoCommit(false);
+	}
+
+	public void endTransaction(final boolean commit)
+		throws IllegalStateException, SQLException
+	{
+		if (conn == null)
+			throw new IllegalStateException("conn not open");
+		if (conn.getAutoCommit())
+			throw new SQLException("no transaction active");
+
+		try
+		{
+			if (commit)
+				conn.commit();
+			else
+				conn.rollback();
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
 	public String execPragmaIntegCheck()
 		throws IllegalStateException
 	{
@@ -1064,10 +1126,100 @@ public class RDBJDBCAdapter implements RDBAdapter
 			return retval;
 	}
 
+	public int execPragmaInt(final String pragma)
+		throws IllegalStateException
+	{
+		if (conn == null)
+			throw new IllegalStateException("conn not open");
+
+		int retval = -1;
+		ResultSet rs = null;
+		try
+		{
+			rs = stat.executeQuery("pragma " + pragma + ";");
+			if (rs.next())
+				retval = rs.getInt(1);
+		} catch (SQLException e) {
+			throw new IllegalStateException("SQLException", e);
+		} finally {
+			try
+			{
+				if (rs != null)
+					rs.close();
+			} catch (SQLException ee) { }
+		}
+
+		return retval;
+	}
+
 	//
 	// misc
 	//
 
+	/**
+	 * If this query took at least as long as the {@link RDBSlowQueryLog} threshold,
+	 * log it there with its {@link #explainQueryPlan(String, String[])} output.
+	 * Does nothing if the log isn't enabled or the query was fast enough.
+	 * @param sql  SQL of the query; may contain {@code ?} placeholders
+	 * @param args  Values bound to {@code sql}'s placeholders, or null
+	 * @param t0  {@link System#nanoTime()} from just before the query was prepared
+	 * @since 0.9.93
+	 */
+	private void logIfSlow(final String sql, final String[] args, final long t0)
+	{
+		final long elapsed = System.nanoTime() - t0;
+		if ((sql == null) || ! RDBSlowQueryLog.isSlow(elapsed))
+			return;
+
+		RDBSlowQueryLog.record(sql, args, elapsed, explainQueryPlan(sql, args));
+	}
+
+	/**
+	 * Get sqlite's query plan for this query, from {@code EXPLAIN QUERY PLAN}.
+	 * The query itself isn't run.
+	 * @param sql  SQL of the query; may contain {@code ?} placeholders
+	 * @param args  Values to bind to {@code sql}'s placeholders, or null
+	 * @return The plan's detail lines, such as {@code "SCAN TABLE tstop"},
+	 *     or null if a SQLException occurs
+	 * @throws IllegalStateException if db has been closed
+	 * @see RDBSlowQueryLog
+	 * @since 0.9.93
+	 */
+	public List<String> explainQueryPlan(final String sql, final String[] args)
+		throws IllegalStateException
+	{
+		if (conn == null)
+			throw new IllegalStateException("conn not open");
+
+		List<String> plan = new ArrayList<String>();
+		PreparedStatement prep = null;
+		ResultSet rs = null;
+		try
+		{
+			prep = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+			if (args != null)
+			{
+				for (int i = 0; i < args.length; ++i)
+					prep.setString(i+1, args[i]);
+			}
+			rs = prep.executeQuery();
+			while (rs.next())
+				plan.add(rs.getString("detail"));
+		} catch (SQLException e) {
+			plan = null;
+		} finally {
+			try
+			{
+				if (rs != null)
+					rs.close();
+				if (prep != null)
+					prep.close();
+			} catch (SQLException ee) { }
+		}
+
+		return plan;
+	}
+
 	/**
 	 * Get the schema version (sqlite USER_VERSION).
 	 * @return the version, or 0 if a SQL error occurs.
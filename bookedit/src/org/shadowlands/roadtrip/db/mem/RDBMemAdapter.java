@@ -0,0 +1,4692 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db.mem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import org.shadowlands.roadtrip.db.AppInfo;
+import org.shadowlands.roadtrip.db.CommentIndex;
+import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBVerifier;
+
+/**
+ * In-memory {@link RDBAdapter} in pure java, without sqlite or any file I/O.
+ * Useful for benchmarking code such as {@code LogbookTableModel} or {@link RDBVerifier}
+ * separately from disk access, for testing, and as a read-only cache of a logbook.
+ *<P>
+ * To get a db:
+ *<UL>
+ * <LI> {@link #createFromSchema()}: Empty db created from the current schema script
+ *      {@link RDBSchema#DB_SCHEMA_CREATE_FILENAME}; {@link #execSQLScript(InputStream)} can then add data
+ * <LI> {@link #copyOf(RDBAdapter)}: Copy of all tables, rows and indexes of any open db,
+ *      such as a logbook file opened by {@code RDBJDBCAdapter}
+ * <LI> {@link #openSnapshot(File)}: Read-only db memory-mapped from a columnar snapshot file
+ *      written by {@link #writeSnapshot(RDBAdapter, File)}, whose rows are read from the file only when queried
+ *</UL>
+ * Call {@link #setReadOnly(boolean)} to reject all changes, for use as a cache.
+ *<P>
+ * Each table's rows are kept in a sorted map by rowid (the {@code _id} field), so
+ * lookups, ranges, and {@code order by _id} with a limit don't need to scan or sort.
+ * Hash indexes on other columns are created for {@code create index} statements,
+ * and also when first needed by a query which looks up that column with {@code =}.
+ *<P>
+ * Supports the SQL used by this package's record classes and schema scripts:
+ *<UL>
+ * <LI> Comparisons {@code = <> != < <= > >=}, {@code and}, {@code or}, {@code not}, parentheses,
+ *      {@code is [not] null}, {@code [not] in (list)}, {@code like}, {@code between}, {@code COLLATE NOCASE}
+ * <LI> Subqueries: {@code in (select ...)} and scalar {@code (select max(_id) ...)}, including correlated ones
+ * <LI> Aggregates {@code count max min sum total avg}, and functions {@code lower upper length abs ifnull coalesce}
+ * <LI> Joins written as {@code "tstop_gas g, tstop ts"} with the join condition in the where clause
+ * <LI> {@code order by} with {@code desc} and {@code COLLATE NOCASE}; {@code limit}
+ * <LI> Statements for {@link #execStrucUpdate(String)}: {@code create table}, {@code create [unique] index},
+ *      {@code create virtual table ... using fts3/fts4}, {@code alter table ... add column},
+ *      {@code drop table/index}, {@code insert} (values or select), {@code update}, {@code delete},
+ *      {@code PRAGMA user_version}. Other pragmas, {@code analyze}, {@code begin} and {@code commit} are ignored.
+ *</UL>
+ * FTS {@code MATCH} supports what {@link CommentIndex} uses: All words must be present,
+ * and a word ending with {@code *} matches as a prefix.
+ * Values are stored as strings, with sqlite's column type affinity applied
+ * so that for example integer fields read back the same as from sqlite.
+ *<P>
+ * Unsupported SQL is treated like a SQL error from sqlite: Query methods return null
+ * or the default value, and update methods throw {@link IllegalStateException}.
+ * Each change takes effect immediately. Within a transaction from {@link #beginTransaction()},
+ * each row change and each schema change is also recorded in an undo log, which
+ * {@link #endTransaction(boolean) endTransaction(false)} plays back to roll the transaction back.
+ * Transactions can be nested; as on Android, if an inner one is rolled back, the outermost also rolls back.
+ * The {@code rollback} SQL statement isn't supported.
+ * All methods are synchronized.
+ *<P>
+ * Schema scripts for {@link #getSQLScript(int)} are read as class resources, as bookedit packages them.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBMemAdapter implements RDBAdapter
+{
+	/** Filename returned by {@link #getFilenameFullPath()} if none was given: {@code ":memory:"} */
+	public static final String MEMORY_FILENAME = ":memory:";
+
+	/** Location of schema scripts as class resources, for {@link #getSQLScript(int)} */
+	private static final String SQL_SCRIPTS_DIR = "/org/shadowlands/roadtrip/db/script/";
+
+	/** Table listing the schema's tables and indexes, as in sqlite: {@code "sqlite_master"} */
+	private static final String TABNAME_MASTER = "sqlite_master";
+
+	/** {@link #TABNAME_MASTER} fields */
+	private static final String[] FIELDS_MASTER = { "type", "name", "tbl_name", "sql" };
+
+	/** Maximum number of parsed statements in {@link #stmtCache} before it's cleared */
+	private static final int STMT_CACHE_MAX = 256;
+
+	private static final String TRUE = "1", FALSE = "0";
+
+	private static final Table[] NO_TABLES = new Table[0];
+
+	private static final Expr[] NO_EXPRS = new Expr[0];
+
+	/** Value returned by {@link #getFilenameFullPath()} */
+	private final String dbFilename;
+
+	/** All tables, keyed by lowercase name, including {@link #TABNAME_MASTER} */
+	private final HashMap<String, Table> tables = new HashMap<String, Table>();
+
+	/** Indexes from {@code create index}, keyed by lowercase name */
+	private final HashMap<String, IndexDef> indexes = new HashMap<String, IndexDef>();
+
+	/**
+	 * Parsed queries and update statements, keyed by SQL text.
+	 * Cleared whenever the schema changes, since they refer to {@link Table}s.
+	 */
+	private final HashMap<String, Object> stmtCache = new HashMap<String, Object>();
+
+	/** Schema version, from {@code PRAGMA user_version} */
+	private int schemaVersion;
+
+	private boolean isOpen = true;
+
+	/** If true, all changes are rejected; see {@link #setReadOnly(boolean)} */
+	private boolean readOnly;
+
+	/** Undo log of the active transaction, oldest first, or null if none; see {@link #beginTransaction()} */
+	private ArrayList<Undo> undoLog;
+
+	/** Nesting depth of {@link #beginTransaction()}, or 0 if no transaction is active */
+	private int txDepth;
+
+	/** True if a nested transaction was rolled back, so the outermost one will roll back too */
+	private boolean txRollbackOnly;
+
+	/**
+	 * Create a new empty in-memory db, with no tables.
+	 * @param filename  Name to return from {@link #getFilenameFullPath()}, or null for {@link #MEMORY_FILENAME}
+	 */
+	public RDBMemAdapter(final String filename)
+	{
+		dbFilename = (filename != null) ? filename : MEMORY_FILENAME;
+
+		final Table master = new Table(this, TABNAME_MASTER);
+		for (int i = 0; i < FIELDS_MASTER.length; ++i)
+			master.addColumn(FIELDS_MASTER[i], 'T', null, false);
+		tables.put(TABNAME_MASTER, master);
+	}
+
+	/**
+	 * Create a new in-memory db by running the current schema create script,
+	 * {@link RDBSchema#DB_SCHEMA_CREATE_FILENAME}, found as a class resource.
+	 * @return the new db, with {@link #getSchemaVersion()} set by the script
+	 * @throws IOException  if the script can't be found or read
+	 * @throws SQLException  if the script contains SQL this class doesn't support
+	 */
+	public static RDBMemAdapter createFromSchema()
+		throws IOException, SQLException
+	{
+		RDBMemAdapter db = new RDBMemAdapter(null);
+		db.execSQLScript(db.getSQLScript(0));
+		return db;
+	}
+
+	/**
+	 * Create a new in-memory db with a copy of all tables, indexes and rows of another db.
+	 * Tables are read through {@code src}'s {@link RDBAdapter#getRows(String, String, String[], String[], String, int)}
+	 * from the list in its {@code sqlite_master}. If an FTS table's {@code docid}s can't be read that way,
+	 * its rows are copied from its {@code _content} shadow table.
+	 *<P>
+	 * Schema version is copied from {@code src} if it's a {@code RDBMemAdapter}, otherwise from
+	 * {@link AppInfo#KEY_DB_CURRENT_SCHEMAVERSION} or 0 if that's missing.
+	 *
+	 * @param src  Db to copy; not changed
+	 * @return  a new db, whose {@link #getFilenameFullPath()} is {@code src}'s filename
+	 * @throws IllegalStateException  if {@code src} is closed, or has a table using SQL that this class doesn't support
+	 */
+	public static RDBMemAdapter copyOf(RDBAdapter src)
+		throws IllegalStateException
+	{
+		RDBMemAdapter db = new RDBMemAdapter(src.getFilenameFullPath());
+
+		final Vector<String[]> objs = src.getRows
+			(TABNAME_MASTER, "sql is not null", (String[]) null, FIELDS_MASTER, null, 0);
+		if (objs == null)
+			return db;
+
+		// FTS shadow tables are named after their virtual table: comment_fts_content, comment_fts_segdir, etc
+		final ArrayList<String> vtabs = new ArrayList<String>();
+		for (final String[] obj : objs)
+			if ("table".equals(obj[0]) && obj[3].toLowerCase(Locale.US).startsWith("create virtual"))
+				vtabs.add(obj[1].toLowerCase(Locale.US) + '_');
+
+		try
+		{
+			for (final String[] obj : objs)
+			{
+				if (! "table".equals(obj[0]))
+					continue;
+				final String tname = obj[1].toLowerCase(Locale.US);
+				if (tname.startsWith("sqlite_") || isShadowTable(tname, vtabs))
+					continue;
+
+				db.execStrucUpdate(obj[3]);
+				copyRows(src, obj[1], db.tables.get(tname));
+			}
+
+			for (final String[] obj : objs)
+				if ("index".equals(obj[0]))
+					db.execStrucUpdate(obj[3]);
+		} catch (SQLException e) {
+			IllegalStateException ise = new IllegalStateException("copyOf: " + e.getMessage());
+			ise.initCause(e);
+			throw ise;
+		}
+
+		db.schemaVersion = readSchemaVersion(src);
+
+		return db;
+	}
+
+	/**
+	 * Read {@code src}'s schema version for {@link #copyOf(RDBAdapter)} or {@link #writeSnapshot(RDBAdapter, File)}:
+	 * From {@link #getSchemaVersion()} if it's a {@code RDBMemAdapter}, otherwise from
+	 * {@link AppInfo#KEY_DB_CURRENT_SCHEMAVERSION} or 0 if that's missing.
+	 * @since 0.9.93
+	 */
+	private static int readSchemaVersion(final RDBAdapter src)
+	{
+		if (src instanceof RDBMemAdapter)
+			return ((RDBMemAdapter) src).getSchemaVersion();
+
+		final String vers = src.getRowField
+			("appinfo", "aifield", AppInfo.KEY_DB_CURRENT_SCHEMAVERSION, "aivalue");
+		return RDBSchema.parseFixedDecOr0(vers, 0);
+	}
+
+	/**
+	 * Copy all rows of a table from {@code src} into {@code t}, which has the same columns.
+	 * If an FTS table's {@code docid}s can't be read, reads its {@code _content} shadow table instead.
+	 * @param src  Db to copy from
+	 * @param tabname  Table name in {@code src}
+	 * @param t  Table to copy into, created from the same SQL as {@code src}'s table
+	 * @throws SQLException if a row violates a constraint
+	 * @since 0.9.93
+	 */
+	private static void copyRows(final RDBAdapter src, final String tabname, final Table t)
+		throws SQLException
+	{
+		Vector<String[]> rows = src.getRows(tabname, (String) null, (String[]) null, t.cols, null, 0);
+		if (t.isFTS && ((rows == null) || (rows.firstElement()[0] == null)))
+		{
+			// docid isn't among the FTS table's columns for some adapters: read its shadow table
+			String[] cfields = new String[t.cols.length];
+			cfields[0] = "docid";
+			for (int i = 1; i < cfields.length; ++i)
+				cfields[i] = "c" + (i - 1) + t.cols[i];
+			rows = src.getRows(tabname + "_content", (String) null, (String[]) null, cfields, null, 0);
+		}
+		if (rows == null)
+			return;
+
+		for (final String[] r : rows)
+		{
+			for (int i = 0; i < r.length; ++i)
+				r[i] = applyAffinity(t.aff[i], r[i]);
+			t.insert(r, (t.idCol >= 0) ? -1 : 0);
+		}
+	}
+
+	/**
+	 * Write a read-only snapshot of all tables, rows and indexes of any open db to a file,
+	 * which {@link #openSnapshot(File)} can memory-map for fast viewing with little heap.
+	 * Tables are read like {@link #copyOf(RDBAdapter)}, one at a time.
+	 *<P>
+	 * The snapshot file stores each table's columns as arrays of ints, which are either integer values
+	 * or offsets into the table's pool of distinct strings, with a sorted index on each integer column
+	 * (such as a trip's {@code vid} or a stop's {@code tripid} and {@code locid}).
+	 *
+	 * @param src  Db to copy; not changed
+	 * @param file  File to write; will be overwritten if it exists
+	 * @throws IOException if an error occurs writing {@code file}
+	 * @throws IllegalStateException  if {@code src} is closed, or has a table using SQL that this class doesn't support
+	 * @see #isSnapshotFile(File)
+	 * @since 0.9.93
+	 */
+	public static void writeSnapshot(RDBAdapter src, final File file)
+		throws IOException, IllegalStateException
+	{
+		final Vector<String[]> objs = src.getRows
+			(TABNAME_MASTER, "sql is not null", (String[]) null, FIELDS_MASTER, null, 0);
+
+		// Same tables as copyOf: not sqlite internal or FTS shadow tables
+		final ArrayList<String> vtabs = new ArrayList<String>();
+		final ArrayList<String[]> tabObjs = new ArrayList<String[]>();
+		final ArrayList<String> schemaSQL = new ArrayList<String>();
+		if (objs != null)
+		{
+			for (final String[] obj : objs)
+				if ("table".equals(obj[0]) && obj[3].toLowerCase(Locale.US).startsWith("create virtual"))
+					vtabs.add(obj[1].toLowerCase(Locale.US) + '_');
+			for (final String[] obj : objs)
+			{
+				if (! "table".equals(obj[0]))
+					continue;
+				final String tname = obj[1].toLowerCase(Locale.US);
+				if (tname.startsWith("sqlite_") || isShadowTable(tname, vtabs))
+					continue;
+				tabObjs.add(obj);
+				schemaSQL.add(obj[3]);
+			}
+			for (final String[] obj : objs)
+				if ("index".equals(obj[0]))
+					schemaSQL.add(obj[3]);
+		}
+
+		// Parse each table's structure, then read its rows and write them out before reading the next table
+		final RDBMemAdapter db = new RDBMemAdapter(src.getFilenameFullPath());
+		final DataOutputStream out = new DataOutputStream
+			(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		try
+		{
+			RDBSnapshot.writeHeader(out, readSchemaVersion(src), schemaSQL, tabObjs.size());
+			for (final String[] obj : tabObjs)
+			{
+				db.execStrucUpdate(obj[3]);
+				final Table t = db.tables.get(obj[1].toLowerCase(Locale.US));
+				copyRows(src, obj[1], t);
+				RDBSnapshot.writeTable(out, t.name, t.cols, t.rows);
+				t.rows.clear();
+				t.colIndexes.clear();
+				for (final Unique u : t.uniques)
+					u.keys.clear();
+			}
+			out.flush();
+		} catch (SQLException e) {
+			IllegalStateException ise = new IllegalStateException("writeSnapshot: " + e.getMessage());
+			ise.initCause(e);
+			throw ise;
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Open a snapshot file written by {@link #writeSnapshot(RDBAdapter, File)} as a read-only db.
+	 * The file is memory-mapped: Opening reads only its table structure, and queries read the rows they need
+	 * from the file without keeping them in the heap. Lookups of a value in an integer column,
+	 * such as a vehicle's trips or a trip's stops, use the snapshot's sorted indexes.
+	 * Lookups on other columns build a hash index in memory when first needed, as in other {@code RDBMemAdapter}s.
+	 *
+	 * @param file  Snapshot file
+	 * @return  A new read-only db, whose {@link #getFilenameFullPath()} is {@code file}'s full path
+	 *     and {@link #getSchemaVersion()} is the version of the db it was written from
+	 * @throws IOException if the file can't be read, or isn't a snapshot file
+	 * @throws SQLException if the snapshot's schema has SQL that this class doesn't support,
+	 *     or its tables don't match that schema
+	 * @see #isSnapshotFile(File)
+	 * @since 0.9.93
+	 */
+	public static RDBMemAdapter openSnapshot(final File file)
+		throws IOException, SQLException
+	{
+		final RDBSnapshot snap = RDBSnapshot.map(file);
+		final RDBMemAdapter db = new RDBMemAdapter(file.getAbsolutePath());
+		for (final String sql : snap.schemaSQL)
+			db.execStrucUpdate(sql);
+
+		for (final RDBSnapshot.TableData td : snap.tables)
+		{
+			final Table t = db.tables.get(td.name.toLowerCase(Locale.US));
+			if ((t == null) || (t.cols.length != td.cols.length))
+				throw new SQLException("snapshot table doesn't match its schema: " + td.name);
+
+			t.rows = td.rows();
+			t.snap = td;
+			t.maxRowID = td.maxRowid();
+			t.colIndexes.clear();  // were built from empty table by create index
+			t.uniques.clear();  // constraints aren't needed, since read-only
+		}
+		db.schemaVersion = snap.schemaVersion;
+		db.readOnly = true;
+
+		return db;
+	}
+
+	/**
+	 * Is this file a snapshot which can be opened by {@link #openSnapshot(File)},
+	 * instead of an sqlite db or other file?
+	 * @param file  File to check
+	 * @return true if {@code file} can be read and starts like a snapshot file
+	 * @since 0.9.93
+	 */
+	public static boolean isSnapshotFile(final File file)
+	{
+		return RDBSnapshot.isSnapshot(file);
+	}
+
+	/**
+	 * Is this table one of a virtual table's shadow tables?
+	 * @param tname  Lowercase table name
+	 * @param vtabPrefixes  Virtual table names + "_", lowercase
+	 */
+	private static boolean isShadowTable(final String tname, final ArrayList<String> vtabPrefixes)
+	{
+		for (final String pfx : vtabPrefixes)
+			if (tname.startsWith(pfx))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Execute a SQL script, like {@link RDBSchema#execSQLbyLine(RDBAdapter, InputStream)}
+	 * but also running {@code PRAGMA user_version} statements to set {@link #getSchemaVersion()}.
+	 * Statements are split by {@link RDBSchema#readSQLStatements(InputStream)}.
+	 * The stream will be closed before returning.
+	 * @param sqlStream  Script to run, such as {@link RDBSchema#DB_SCHEMA_CREATE_FILENAME} or test data
+	 * @throws IOException  if an error occurs reading the stream
+	 * @throws SQLException  if a statement fails or isn't supported; earlier statements' changes are kept
+	 * @throws IllegalStateException  if db closed or {@link #isReadOnly()}
+	 */
+	public synchronized void execSQLScript(final InputStream sqlStream)
+		throws IOException, SQLException, IllegalStateException
+	{
+		final List<String> stmts;
+		try
+		{
+			stmts = RDBSchema.readSQLStatements(sqlStream);
+		} finally {
+			try { sqlStream.close(); } catch (IOException e) {}
+		}
+
+		for (final String sql : stmts)
+			execStrucUpdate(sql);
+	}
+
+	/**
+	 * Is this db read-only?
+	 * @see #setReadOnly(boolean)
+	 */
+	public synchronized boolean isReadOnly()
+	{
+		return readOnly;
+	}
+
+	/**
+	 * Set or clear the read-only flag. When set, all inserts, updates, deletes and
+	 * {@link #execStrucUpdate(String)} throw {@link IllegalStateException}.
+	 * @param ro  True for read-only
+	 */
+	public synchronized void setReadOnly(final boolean ro)
+	{
+		readOnly = ro;
+	}
+
+	/**
+	 * Get the schema version, as set by {@code PRAGMA user_version}.
+	 * @return the version, or 0 if never set
+	 */
+	public synchronized int getSchemaVersion()
+	{
+		return schemaVersion;
+	}
+
+	/**
+	 * Get the number of rows in a table. Faster than {@link #getCount(String, String, String)}
+	 * because it doesn't need a where clause.
+	 * @param tabname  Table name
+	 * @return the number of rows, or -1 if no such table
+	 * @throws IllegalStateException if db closed
+	 */
+	public synchronized int getTableRowCount(final String tabname)
+		throws IllegalStateException
+	{
+		checkOpen();
+		final Table t = tables.get(tabname.toLowerCase(Locale.US));
+		return (t != null) ? t.rows.size() : -1;
+	}
+
+	/**
+	 * Get a table's column names, as declared. An FTS table's first column is {@code docid}.
+	 * @param tabname  Table name
+	 * @return a copy of the column names, or null if no such table
+	 * @throws IllegalStateException if db closed
+	 */
+	public synchronized String[] getTableColumns(final String tabname)
+		throws IllegalStateException
+	{
+		checkOpen();
+		final Table t = tables.get(tabname.toLowerCase(Locale.US));
+		return (t != null) ? t.cols.clone() : null;
+	}
+
+	//
+	// Implement org.shadowlands.roadtrip.db.RDBAdapter:
+	// javadocs inherited from interface
+	//
+
+	public synchronized String[] getRow(final String tabname, final int id, final String[] fields)
+		throws IllegalStateException
+	{
+		final Vector<String[]> rv = getRows(tabname, "_id = ?", new String[]{ Integer.toString(id) }, fields, null, 1);
+		return (rv != null) ? rv.firstElement() : null;
+	}
+
+	public synchronized String[] getRow(final String tabname, final String kf, final String kv, final String[] fields)
+		throws IllegalStateException
+	{
+		final String where = (kf.endsWith("<>")) ? (kf + " ?") : (kf + " = ?");
+		final Vector<String[]> rv = getRows(tabname, where, new String[]{ kv }, fields, null, 1);
+		return (rv != null) ? rv.firstElement() : null;
+	}
+
+	public synchronized Vector<String[]> getRows
+		(final String tabname, final String kf, final String kv, final String[] fieldnames,
+		 final String orderby, final int limit)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		if (kf == null)
+			throw new IllegalArgumentException("null kf");
+
+		final String where;
+		if (kf.endsWith("<>"))
+			where = (kv != null) ? (kf + " ?") : (kf.substring(0, kf.length() - 2) + " is not null");
+		else
+			where = (kv != null) ? (kf + " = ?") : (kf + " is null");
+
+		return getRows(tabname, where, (kv != null) ? new String[]{ kv } : null, fieldnames, orderby, limit);
+	}
+
+	public synchronized Vector<String[]> getRows
+		(final String tabname, final String where, final String[] whereArgs, final String[] fieldnames,
+		 final String orderby, final int limit)
+		throws IllegalArgumentException, IllegalStateException
+	{
+		if ((whereArgs != null) && (where == null))
+			throw new IllegalArgumentException("null where, non-null whereArgs");
+		checkOpen();
+
+		StringBuilder sb = new StringBuilder("select ");
+		for (int i = 0; i < fieldnames.length; ++i)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(fieldnames[i]);
+		}
+		sb.append(" from ");
+		sb.append(tabname);
+		if (where != null)
+		{
+			sb.append(" where ");
+			sb.append(where);
+		}
+		if (orderby != null)
+		{
+			sb.append(" order by ");
+			sb.append(orderby);
+		}
+		if (limit != 0)
+		{
+			sb.append(" limit ");
+			sb.append(limit);
+		}
+
+		try
+		{
+			final ArrayList<String[]> res = ((Select) prepare(sb.toString(), true)).execute(null, whereArgs);
+			return (res.isEmpty()) ? null : new Vector<String[]>(res);
+		} catch (SQLException e) {
+			return null;
+		}
+	}
+
+	public synchronized String getRowField(final String tabname, final int id, final String fn)
+		throws IllegalStateException
+	{
+		return getRowField(tabname, fn, "_id = ?", new String[]{ Integer.toString(id) });
+	}
+
+	public synchronized String getRowField(final String tabname, final String kf, final String kv, final String fn)
+		throws IllegalStateException
+	{
+		return getRowField(tabname, fn, kf + " = ?", new String[]{ kv });
+	}
+
+	public synchronized String getRowField(final String tabname, final String fn, final String where, final String[] whereArgs)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		final Vector<String[]> rv = getRows(tabname, where, whereArgs, new String[]{ fn }, null, 1);
+		return (rv != null) ? rv.firstElement()[0] : null;
+	}
+
+	public synchronized int getRowIntField(final String tabname, final int id, final String fn, final int def)
+		throws IllegalStateException
+	{
+		return getRowIntField(tabname, fn, "_id = ?", new String[]{ Integer.toString(id) }, def);
+	}
+
+	public synchronized int getRowIntField(final String tabname, final String kf, final String kv, final String fn, final int def)
+		throws IllegalStateException
+	{
+		return getRowIntField(tabname, fn, kf + " = ?", new String[]{ kv }, def);
+	}
+
+	public synchronized int getRowIntField
+		(final String tabname, final String fn, final String where, final String[] whereArgs, final int def)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		return (int) getRowLongField(tabname, fn, where, whereArgs, def);
+	}
+
+	public synchronized long getRowLongField(final String tabname, final String kf, final String kv, final String fn, final long def)
+		throws IllegalStateException
+	{
+		return getRowLongField(tabname, fn, kf + " = ?", new String[]{ kv }, def);
+	}
+
+	public synchronized long getRowLongField
+		(final String tabname, final String fn, final String where, final String[] whereArgs, final long def)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		final String v = getRowField(tabname, fn, where, whereArgs);
+		if (v == null)
+			return def;
+
+		return (long) toDouble(v);  // like sqlite getLong: non-numeric is 0
+	}
+
+	public synchronized int getCount(final String tabname, final String kf, final String kv)
+		throws IllegalStateException
+	{
+		if (kf == null)
+			return count(tabname, null, null);
+		else if (kv == null)
+			return count(tabname, kf + " is null", null);
+		else
+			return count(tabname, kf + " = ?", new String[]{ kv });
+	}
+
+	public synchronized int getCount(final String tabname, final String kf, final int kv)
+		throws IllegalStateException
+	{
+		if (kf == null)
+			return count(tabname, null, null);
+		else
+			return count(tabname, kf + " = ?", new String[]{ Integer.toString(kv) });
+	}
+
+	/**
+	 * Common code for the getCount methods.
+	 * @throws IllegalStateException if db closed, table not found, or SQL error
+	 */
+	private int count(final String tabname, final String where, final String[] whereArgs)
+		throws IllegalStateException
+	{
+		checkOpen();
+		final String sql = "select count(*) from " + tabname + ((where != null) ? (" where " + where) : "");
+		try
+		{
+			final ArrayList<String[]> res = ((Select) prepare(sql, true)).execute(null, whereArgs);
+			return Integer.parseInt(res.get(0)[0]);
+		} catch (SQLException e) {
+			throw toISE(e);
+		}
+	}
+
+	public synchronized int insert(final String tabname, final String[] fn, final String[] fv, final boolean skipID)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		if (fn.length != fv.length)
+			throw new IllegalArgumentException("length mismatch");
+		checkWritable();
+
+		try
+		{
+			final Table t = getTable(tabname);
+			final String[] row = t.newRow();
+			for (int i = 0; i < fn.length; ++i)
+			{
+				final int c = t.colNum(fn[i]);
+				if (c < 0)
+					throw new SQLException("table " + tabname + " has no column named " + fn[i]);
+				row[c] = applyAffinity(t.aff[c], fv[i]);
+			}
+
+			return t.insert(row, 0);
+		} catch (SQLException e) {
+			throw toISE(e);
+		}
+	}
+
+	public synchronized void update(final String tabname, final int id, final String[] fn, final String[] fv)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		update(tabname, "_id = ?", new String[]{ Integer.toString(id) }, fn, fv);
+	}
+
+	public synchronized void update(final String tabname, final String kf, final String kv, final String[] fn, final String[] fv)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		update(tabname, kf + " = ?", new String[]{ kv }, fn, fv);
+	}
+
+	public synchronized void update
+		(final String tabname, final String where, final String[] whereArgs, final String[] fn, final String[] fv)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		if (fn == null)
+			throw new IllegalArgumentException("null fn");
+		if (fn.length != fv.length)
+			throw new IllegalArgumentException("length mismatch");
+		checkWritable();
+
+		StringBuilder sb = new StringBuilder("update ");
+		sb.append(tabname);
+		sb.append(" set ");
+		for (int i = 0; i < fn.length; ++i)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(fn[i]);
+			sb.append(" = ?");
+		}
+		if (where != null)
+		{
+			sb.append(" where ");
+			sb.append(where);
+		}
+
+		final int nArgs = (whereArgs != null) ? whereArgs.length : 0;
+		final String[] args = new String[fv.length + nArgs];
+		System.arraycopy(fv, 0, args, 0, fv.length);
+		if (nArgs > 0)
+			System.arraycopy(whereArgs, 0, args, fv.length, nArgs);
+
+		exec(sb.toString(), args);
+	}
+
+	public synchronized void updateField(final String tabname, final String kf, final String kv, final String fn, final String fv)
+		throws IllegalStateException
+	{
+		checkWritable();
+		exec("update " + tabname + " set " + fn + " = ? where " + kf + " = ?", new String[]{ fv, kv });
+	}
+
+	public synchronized void delete(final String tabname, final int id)
+		throws IllegalStateException
+	{
+		delete(tabname, "_id = ?", id);
+	}
+
+	public synchronized void delete(final String tabname, final String where, final int whereArg)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		delete(tabname, where, Integer.toString(whereArg));
+	}
+
+	public synchronized void delete(final String tabname, final String where, final String whereArg)
+		throws IllegalStateException, IllegalArgumentException
+	{
+		if (where == null)
+			throw new IllegalArgumentException("null: where");
+		checkWritable();
+
+		exec("delete from " + tabname + " where " + where, new String[]{ whereArg });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * (For {@code RDBMemAdapter}, this is the name given to the constructor, or the copied db's filename:
+	 * No file is read or written.)
+	 */
+	public synchronized String getFilenameFullPath()
+		throws IllegalStateException
+	{
+		checkOpen();
+		return dbFilename;
+	}
+
+	/** Close the db and discard its contents. */
+	public synchronized void close()
+	{
+		isOpen = false;
+		undoLog = null;
+		txDepth = 0;
+		tables.clear();
+		indexes.clear();
+		stmtCache.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * Each {@code RDBMemAdapter} is its own db, so this is true only if {@code other} is this same object.
+	 */
+	public boolean hasSameOwner(RDBAdapter other)
+	{
+		return (other == this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * Scripts are read as class resources from {@code /org/shadowlands/roadtrip/db/script/}, as bookedit packages them.
+	 * @throws FileNotFoundException if the script isn't found
+	 */
+	public InputStream getSQLScript(final int upgScriptToVersion)
+		throws FileNotFoundException, IOException
+	{
+		StringBuilder spath = new StringBuilder(SQL_SCRIPTS_DIR);
+		if (upgScriptToVersion == 0)
+		{
+			spath.append(RDBSchema.DB_SCHEMA_CREATE_FILENAME);
+		} else {
+			spath.append(RDBSchema.DB_SCHEMA_UPGRADE_FILENAME_PREFIX);
+			if (upgScriptToVersion < 1000)
+				spath.append('0');
+			spath.append(upgScriptToVersion);
+			spath.append(".sql");
+		}
+
+		InputStream is = RDBMemAdapter.class.getResourceAsStream(spath.toString());
+		if (is == null)
+			throw new FileNotFoundException("Not found: " + spath);
+
+		return is;
+	}
+
+	public synchronized void execStrucUpdate(final String sql)
+		throws IllegalStateException, SQLException
+	{
+		checkWritable();
+
+		String s = sql.trim();
+		if (s.endsWith(";"))
+			s = s.substring(0, s.length() - 1).trim();
+
+		// Schema statements change the db while being parsed; save the schema first to undo them
+		if ((undoLog != null) && ! (s.regionMatches(true, 0, "insert", 0, 6)
+		    || s.regionMatches(true, 0, "update", 0, 6) || s.regionMatches(true, 0, "delete", 0, 6)))
+			undoLog.add(new SchemaUndo(this));
+
+		final Object st = new Parser(this, s).parseStatement(s);
+		if (st instanceof Stmt)
+			((Stmt) st).exec(this, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * For {@code RDBMemAdapter}, changes still take effect immediately, and are also recorded in
+	 * an undo log until the outermost transaction ends.
+	 */
+	public synchronized void beginTransaction()
+		throws IllegalStateException
+	{
+		checkOpen();
+		if (txDepth == 0)
+		{
+			undoLog = new ArrayList<Undo>();
+			txRollbackOnly = false;
+		}
+		++txDepth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * For {@code RDBMemAdapter}, rolling back plays the undo log backwards, newest change first,
+	 * when the outermost transaction ends. Committing discards the undo log,
+	 * unless a nested transaction was rolled back.
+	 */
+	public synchronized void endTransaction(final boolean commit)
+		throws IllegalStateException, SQLException
+	{
+		checkOpen();
+		if (txDepth == 0)
+			throw new SQLException("no transaction active");
+
+		if (! commit)
+			txRollbackOnly = true;
+		--txDepth;
+		if (txDepth > 0)
+			return;
+
+		final ArrayList<Undo> log = undoLog;
+		undoLog = null;
+		if (txRollbackOnly)
+			for (int i = log.size() - 1; i >= 0; --i)
+				log.get(i).undo(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * For {@code RDBMemAdapter}, checks that each index has the same rows as its table.
+	 */
+	public synchronized String execPragmaIntegCheck()
+		throws IllegalStateException
+	{
+		checkOpen();
+
+		for (final Table t : tables.values())
+		{
+			final String err = t.checkIndexes();
+			if (err != null)
+				return err;
+		}
+
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * For {@code RDBMemAdapter}, only {@code user_version} is supported; there are no pages to count.
+	 */
+	public synchronized int execPragmaInt(final String pragma)
+		throws IllegalStateException
+	{
+		checkOpen();
+
+		return (pragma.equalsIgnoreCase("user_version")) ? schemaVersion : -1;
+	}
+
+	//
+	// misc
+	//
+
+	/** @throws IllegalStateException if closed */
+	private void checkOpen()
+		throws IllegalStateException
+	{
+		if (! isOpen)
+			throw new IllegalStateException("db not open");
+	}
+
+	/** @throws IllegalStateException if closed or {@link #readOnly} */
+	private void checkWritable()
+		throws IllegalStateException
+	{
+		checkOpen();
+		if (readOnly)
+			throw new IllegalStateException("db is read-only");
+	}
+
+	private static IllegalStateException toISE(final SQLException e)
+	{
+		IllegalStateException ise = new IllegalStateException("error: " + e.getMessage());
+		ise.initCause(e);
+		return ise;
+	}
+
+	/**
+	 * Get a table by name.
+	 * @throws SQLException if not found
+	 */
+	private Table getTable(final String tabname)
+		throws SQLException
+	{
+		final Table t = tables.get(tabname.toLowerCase(Locale.US));
+		if (t == null)
+			throw new SQLException("no such table: " + tabname);
+
+		return t;
+	}
+
+	/**
+	 * Get a parsed query or update statement from {@link #stmtCache}, or parse and cache it.
+	 * @param sql  SQL text
+	 * @param isQuery  True for a select, false for insert/update/delete
+	 * @return a {@link Select} or {@link Stmt}
+	 * @throws SQLException  if a syntax error, unsupported SQL, or unknown table or column
+	 */
+	private Object prepare(final String sql, final boolean isQuery)
+		throws SQLException
+	{
+		Object st = stmtCache.get(sql);
+		if (st != null)
+			return st;
+
+		final Parser p = new Parser(this, sql);
+		st = (isQuery) ? p.parseQuery() : p.parseStatement(sql);
+		if (stmtCache.size() >= STMT_CACHE_MAX)
+			stmtCache.clear();
+		stmtCache.put(sql, st);
+
+		return st;
+	}
+
+	/**
+	 * Prepare and run an update statement built by an update or delete method.
+	 * @throws IllegalStateException if a SQL error occurs
+	 */
+	private void exec(final String sql, final String[] args)
+		throws IllegalStateException
+	{
+		try
+		{
+			((Stmt) prepare(sql, false)).exec(this, args);
+		} catch (SQLException e) {
+			throw toISE(e);
+		}
+	}
+
+	/** Schema changed: Discard parsed statements */
+	private void schemaChanged()
+	{
+		stmtCache.clear();
+	}
+
+	/** Add a row to {@link #TABNAME_MASTER} */
+	private void masterAdd(final String type, final String name, final String tblName, final String sql)
+		throws SQLException
+	{
+		tables.get(TABNAME_MASTER).insert(new String[]{ type, name, tblName, sql }, 0);
+	}
+
+	/** Remove rows from {@link #TABNAME_MASTER} for this table or index name */
+	private void masterRemove(final String name, final boolean alsoTableIndexes)
+	{
+		final Table m = tables.get(TABNAME_MASTER);
+		final ArrayList<Integer> del = new ArrayList<Integer>();
+		for (final Map.Entry<Integer, String[]> ent : m.rows.entrySet())
+		{
+			final String[] r = ent.getValue();
+			if (name.equalsIgnoreCase(r[1]) || (alsoTableIndexes && name.equalsIgnoreCase(r[2])))
+				del.add(ent.getKey());
+		}
+		for (final Integer rowid : del)
+			m.delete(rowid.intValue());
+	}
+
+	//
+	// Values
+	//
+
+	/**
+	 * Is this string a number in sqlite's format, such as {@code "-12"} or {@code "3.5e2"}?
+	 * @param s  String to check; not null
+	 */
+	static boolean isNumeric(final String s)
+	{
+		final int L = s.length();
+		if (L == 0)
+			return false;
+
+		int i = 0;
+		char ch = s.charAt(0);
+		if ((ch == '-') || (ch == '+'))
+			++i;
+		boolean digits = false, dot = false;
+		for (; i < L; ++i)
+		{
+			ch = s.charAt(i);
+			if ((ch >= '0') && (ch <= '9'))
+			{
+				digits = true;
+			}
+			else if ((ch == '.') && ! dot)
+			{
+				dot = true;
+			}
+			else if (((ch == 'e') || (ch == 'E')) && digits)
+			{
+				++i;
+				if ((i < L) && ((s.charAt(i) == '+') || (s.charAt(i) == '-')))
+					++i;
+				if (i >= L)
+					return false;
+				for (; i < L; ++i)
+				{
+					ch = s.charAt(i);
+					if ((ch < '0') || (ch > '9'))
+						return false;
+				}
+				return true;
+			}
+			else
+			{
+				return false;
+			}
+		}
+
+		return digits;
+	}
+
+	/**
+	 * Is this string an integer which fits in a long, such as {@code "-12"}?
+	 * @param s  String to check, or null
+	 */
+	private static boolean isIntForm(final String s)
+	{
+		if (s == null)
+			return false;
+		final int L = s.length();
+		if ((L == 0) || (L > 18))
+			return false;
+
+		int i = 0;
+		final char ch0 = s.charAt(0);
+		if ((ch0 == '-') || (ch0 == '+'))
+		{
+			if (L == 1)
+				return false;
+			++i;
+		}
+		for (; i < L; ++i)
+		{
+			final char ch = s.charAt(i);
+			if ((ch < '0') || (ch > '9'))
+				return false;
+		}
+
+		return true;
+	}
+
+	/** Numeric value of this string, or 0 if not numeric, like sqlite's text-to-number conversion */
+	private static double toDouble(final String s)
+	{
+		return isNumeric(s) ? Double.parseDouble(s) : 0.0;
+	}
+
+	/** Is this value true in a where clause: Not null, and a nonzero number? */
+	private static boolean isTrue(final String v)
+	{
+		if (v == null)
+			return false;
+		if (v == TRUE)
+			return true;
+		if (v == FALSE)
+			return false;
+
+		return (toDouble(v) != 0.0);
+	}
+
+	/**
+	 * Normalize a value for use as a hash index key or {@code in} set member, so that
+	 * values which compare as equal have the same key: {@code "7"}, {@code "07"} and {@code "7.0"} are all {@code "7"}.
+	 * @param v  Value; not null
+	 */
+	private static String normKey(final String v)
+	{
+		if (! isNumeric(v))
+			return v;
+
+		if (isIntForm(v))
+		{
+			if ((v.charAt(0) != '+') && ((v.charAt(0) != '0') || (v.length() == 1))
+			    && ! (v.startsWith("-0")))
+				return v;  // already canonical
+
+			return Long.toString(Long.parseLong((v.charAt(0) == '+') ? v.substring(1) : v));
+		}
+
+		final double d = Double.parseDouble(v);
+		if ((d == Math.rint(d)) && (Math.abs(d) < 1e18))
+			return Long.toString((long) d);
+		else
+			return Double.toString(d);
+	}
+
+	/**
+	 * Apply sqlite column type affinity to a value being stored.
+	 * @param aff  Affinity: {@code 'I'} integer, {@code 'R'} real, {@code 'N'} numeric,
+	 *     {@code 'T'} text, {@code 'B'} none
+	 * @param v  Value, or null
+	 * @return  Value to store
+	 */
+	private static String applyAffinity(final char aff, final String v)
+	{
+		if ((v == null) || (aff == 'T') || (aff == 'B') || ! isNumeric(v))
+			return v;
+
+		if (aff == 'R')
+			return Double.toString(Double.parseDouble(v));
+		else
+			return normKey(v);
+	}
+
+	/**
+	 * Compare two non-null values like sqlite: Numbers by value, numbers before text,
+	 * text by {@link String#compareTo(String)} or ignoring ASCII case.
+	 * @param nocase  If true, text comparison ignores case ({@code COLLATE NOCASE})
+	 */
+	private static int compareValues(final String a, final String b, final boolean nocase)
+	{
+		final boolean na = isNumeric(a), nb = isNumeric(b);
+		if (na && nb)
+		{
+			if (isIntForm(a) && isIntForm(b))
+			{
+				final long la = Long.parseLong((a.charAt(0) == '+') ? a.substring(1) : a),
+				           lb = Long.parseLong((b.charAt(0) == '+') ? b.substring(1) : b);
+				return (la < lb) ? -1 : ((la == lb) ? 0 : 1);
+			}
+			return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+		}
+		else if (na)
+			return -1;
+		else if (nb)
+			return 1;
+
+		return (nocase) ? a.compareToIgnoreCase(b) : a.compareTo(b);
+	}
+
+	/** Compare two values which may be null: Null is less than any value. */
+	private static int compareNullable(final String a, final String b, final boolean nocase)
+	{
+		if (a == null)
+			return (b == null) ? 0 : -1;
+		else if (b == null)
+			return 1;
+		else
+			return compareValues(a, b, nocase);
+	}
+
+	/**
+	 * Parse this value as a rowid.
+	 * @return the rowid, or null if {@code v} is null or not an integer
+	 */
+	private static Integer toRowid(final String v)
+	{
+		if ((v == null) || ! isNumeric(v))
+			return null;
+
+		final double d = Double.parseDouble(v);
+		if ((d != Math.rint(d)) || (d > Integer.MAX_VALUE) || (d < Integer.MIN_VALUE))
+			return null;
+
+		return Integer.valueOf((int) d);
+	}
+
+	/** Format a number result: As an integer if {@code isInt}, otherwise as a double */
+	private static String numString(final boolean isInt, final long l, final double d)
+	{
+		return (isInt) ? Long.toString(l) : Double.toString(d);
+	}
+
+	/**
+	 * Split text into lowercase words of letters and digits, like the FTS simple tokenizer.
+	 * @param s  Text to split
+	 * @param words  List to add words to
+	 */
+	private static void ftsTokenize(final String s, final ArrayList<String> words)
+	{
+		final int L = s.length();
+		int start = -1;
+		for (int i = 0; i <= L; ++i)
+		{
+			final boolean isWordCh = (i < L) && Character.isLetterOrDigit(s.charAt(i));
+			if (isWordCh)
+			{
+				if (start == -1)
+					start = i;
+			}
+			else if (start != -1)
+			{
+				words.add(s.substring(start, i).toLowerCase(Locale.US));
+				start = -1;
+			}
+		}
+	}
+
+	/**
+	 * Does this text match an FTS query? Each word of the query must be found in the text.
+	 * A word ending with {@code *} matches any word it's a prefix of.
+	 * @param text  Text to search
+	 * @param query  FTS query, as built by {@link CommentIndex#buildMatchQuery(String)}
+	 */
+	private static boolean ftsMatch(final String text, final String query)
+	{
+		final ArrayList<String> words = new ArrayList<String>();
+		ftsTokenize(text, words);
+
+		final ArrayList<String> qwords = new ArrayList<String>();
+		for (final String term : query.trim().split("\\s+"))
+		{
+			if (term.length() == 0)
+				continue;
+
+			final boolean isPrefix = term.endsWith("*");
+			qwords.clear();
+			ftsTokenize(term, qwords);
+			for (int qi = 0; qi < qwords.size(); ++qi)
+			{
+				final String qw = qwords.get(qi);
+				final boolean pfx = isPrefix && (qi == qwords.size() - 1);
+				boolean found = false;
+				for (final String w : words)
+				{
+					if (pfx ? w.startsWith(qw) : w.equals(qw))
+					{
+						found = true;
+						break;
+					}
+				}
+				if (! found)
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Does this text match a {@code LIKE} pattern? ASCII letters match either case.
+	 * @param s  Text
+	 * @param p  Pattern: {@code %} matches any string, {@code _} any character
+	 */
+	private static boolean likeMatch(final String s, final int si, final String p, final int pi)
+	{
+		if (pi == p.length())
+			return (si == s.length());
+
+		final char pc = p.charAt(pi);
+		if (pc == '%')
+		{
+			for (int i = si; i <= s.length(); ++i)
+				if (likeMatch(s, i, p, pi + 1))
+					return true;
+			return false;
+		}
+		if (si == s.length())
+			return false;
+		if ((pc != '_') && (Character.toLowerCase(pc) != Character.toLowerCase(s.charAt(si))))
+			return false;
+
+		return likeMatch(s, si + 1, p, pi + 1);
+	}
+
+	//
+	// Storage
+	//
+
+	/**
+	 * One table's columns, rows and indexes.
+	 */
+	private static final class Table
+	{
+		/** Db containing this table, for its {@link RDBMemAdapter#undoLog} */
+		final RDBMemAdapter db;
+
+		String name;
+
+		/** Column names, as declared */
+		String[] cols = new String[0];
+
+		/** Each column's type affinity; see {@link RDBMemAdapter#applyAffinity(char, String)} */
+		char[] aff = new char[0];
+
+		/** Each column's default value, or null */
+		String[] defaults = new String[0];
+
+		/** Each column's {@code not null} constraint */
+		boolean[] notNull = new boolean[0];
+
+		/** Lowercase column name -&gt; column number */
+		final HashMap<String, Integer> colNums = new HashMap<String, Integer>();
+
+		/** Column number of the {@code integer primary key} which is the rowid, such as {@code _id}, or -1 */
+		int idCol = -1;
+
+		/** Is {@link #idCol} declared {@code autoincrement}, so rowids aren't reused? */
+		boolean autoIncrement;
+
+		/** Is this an FTS virtual table? Its first column is {@code docid}. */
+		boolean isFTS;
+
+		/**
+		 * Rows by rowid; each row has 1 element per column.
+		 * A {@link TreeMap}, or a read-only view of {@link #snap}'s mapped file.
+		 */
+		SortedMap<Integer, String[]> rows = new TreeMap<Integer, String[]>();
+
+		/**
+		 * If this table's rows are from a snapshot file opened by {@link RDBMemAdapter#openSnapshot(File)}, its data;
+		 * otherwise null. Its sorted indexes are used instead of building hash indexes.
+		 * @since 0.9.93
+		 */
+		RDBSnapshot.TableData snap;
+
+		/** Highest rowid ever used, for {@link #autoIncrement} */
+		int maxRowID;
+
+		/** Hash indexes: Column number -&gt; {@link RDBMemAdapter#normKey(String) normKey(value)} -&gt; rowids */
+		final HashMap<Integer, HashMap<String, TreeSet<Integer>>> colIndexes
+			= new HashMap<Integer, HashMap<String, TreeSet<Integer>>>();
+
+		/** Unique constraints */
+		final ArrayList<Unique> uniques = new ArrayList<Unique>();
+
+		Table(final RDBMemAdapter db, final String name)
+		{
+			this.db = db;
+			this.name = name;
+		}
+
+		/** Column number for this name, or -1 */
+		int colNum(final String cname)
+		{
+			final Integer c = colNums.get(cname.toLowerCase(Locale.US));
+			return (c != null) ? c.intValue() : -1;
+		}
+
+		/**
+		 * Add a column; existing rows get its default value.
+		 * @throws IllegalArgumentException if {@code notnull} and no default, but table has rows
+		 */
+		int addColumn(final String cname, final char affinity, final String def, final boolean notnull)
+		{
+			if (notnull && (def == null) && ! rows.isEmpty())
+				throw new IllegalArgumentException("Cannot add a NOT NULL column with default value NULL");
+
+			final int L = cols.length;
+			String[] c = new String[L + 1];
+			System.arraycopy(cols, 0, c, 0, L);
+			c[L] = cname;
+			cols = c;
+			char[] a = new char[L + 1];
+			System.arraycopy(aff, 0, a, 0, L);
+			a[L] = affinity;
+			aff = a;
+			String[] d = new String[L + 1];
+			System.arraycopy(defaults, 0, d, 0, L);
+			d[L] = applyAffinity(affinity, def);
+			defaults = d;
+			boolean[] n = new boolean[L + 1];
+			System.arraycopy(notNull, 0, n, 0, L);
+			n[L] = notnull;
+			notNull = n;
+			colNums.put(cname.toLowerCase(Locale.US), Integer.valueOf(L));
+
+			for (final Map.Entry<Integer, String[]> ent : rows.entrySet())
+			{
+				String[] r = new String[L + 1];
+				System.arraycopy(ent.getValue(), 0, r, 0, L);
+				r[L] = d[L];
+				ent.setValue(r);
+			}
+
+			return L;
+		}
+
+		/** A new row containing each column's default value */
+		String[] newRow()
+		{
+			return defaults.clone();
+		}
+
+		/**
+		 * Insert a row.
+		 * @param row  Row values, already affinity-applied; if {@link #idCol} value is null, a rowid is assigned
+		 * @param rowid  Rowid if no {@link #idCol}, or 0 to assign one; ignored (use -1) if {@link #idCol} is used
+		 * @return the new row's rowid
+		 * @throws SQLException if constraints fail
+		 */
+		int insert(final String[] row, int rowid)
+			throws SQLException
+		{
+			if ((idCol >= 0) && (row[idCol] != null))
+			{
+				final Integer k = toRowid(row[idCol]);
+				if (k == null)
+					throw new SQLException("datatype mismatch: " + name + "." + cols[idCol]);
+				rowid = k.intValue();
+			}
+			else if ((idCol >= 0) || (rowid == 0))
+			{
+				int last = (rows.isEmpty()) ? 0 : rows.lastKey().intValue();
+				if (autoIncrement && (maxRowID > last))
+					last = maxRowID;
+				rowid = last + 1;
+				if (idCol >= 0)
+					row[idCol] = Integer.toString(rowid);
+			}
+
+			final Integer key = Integer.valueOf(rowid);
+			if (rows.containsKey(key))
+				throw new SQLException("UNIQUE constraint failed: " + name + ".rowid");
+			checkConstraints(row, key);
+
+			if (db.undoLog != null)
+				db.undoLog.add(new RowUndo(this, null, null, key));
+			rows.put(key, row);
+			addToIndexes(key, row);
+			if (rowid > maxRowID)
+				maxRowID = rowid;
+
+			return rowid;
+		}
+
+		/**
+		 * Replace a row's contents.
+		 * @param key  Row's current rowid
+		 * @param row  New values, already affinity-applied
+		 * @throws SQLException if constraints fail
+		 */
+		void replace(final Integer key, final String[] row)
+			throws SQLException
+		{
+			final String[] old = rows.get(key);
+			if (old == null)
+				return;
+
+			Integer newKey = key;
+			if (idCol >= 0)
+			{
+				newKey = toRowid(row[idCol]);
+				if (newKey == null)
+					throw new SQLException("datatype mismatch: " + name + "." + cols[idCol]);
+				if ((! newKey.equals(key)) && rows.containsKey(newKey))
+					throw new SQLException("UNIQUE constraint failed: " + name + ".rowid");
+			}
+			checkConstraints(row, key);
+
+			if (db.undoLog != null)
+				db.undoLog.add(new RowUndo(this, key, old, newKey));
+			removeFromIndexes(key, old);
+			if (! newKey.equals(key))
+				rows.remove(key);
+			rows.put(newKey, row);
+			addToIndexes(newKey, row);
+			if (newKey.intValue() > maxRowID)
+				maxRowID = newKey.intValue();
+		}
+
+		/** Delete a row, if it exists */
+		void delete(final int rowid)
+		{
+			final Integer key = Integer.valueOf(rowid);
+			final String[] old = rows.remove(key);
+			if (old == null)
+				return;
+
+			if (db.undoLog != null)
+				db.undoLog.add(new RowUndo(this, key, old, null));
+			removeFromIndexes(key, old);
+		}
+
+		/**
+		 * Check a row's {@code not null} and {@code unique} constraints.
+		 * @param row  Row to check
+		 * @param self  Row's current rowid, which is allowed to have the same unique values
+		 * @throws SQLException if a constraint fails
+		 */
+		private void checkConstraints(final String[] row, final Integer self)
+			throws SQLException
+		{
+			for (int i = 0; i < row.length; ++i)
+				if (notNull[i] && (row[i] == null) && (i != idCol))
+					throw new SQLException("NOT NULL constraint failed: " + name + "." + cols[i]);
+
+			for (final Unique u : uniques)
+			{
+				final String k = u.key(row);
+				if (k == null)
+					continue;
+				final Integer other = u.keys.get(k);
+				if ((other != null) && ! other.equals(self))
+					throw new SQLException("UNIQUE constraint failed: " + name + " " + u.name);
+			}
+		}
+
+		private void addToIndexes(final Integer key, final String[] row)
+		{
+			for (final Map.Entry<Integer, HashMap<String, TreeSet<Integer>>> ent : colIndexes.entrySet())
+			{
+				final String v = row[ent.getKey().intValue()];
+				if (v == null)
+					continue;
+
+				final String k = normKey(v);
+				TreeSet<Integer> ids = ent.getValue().get(k);
+				if (ids == null)
+				{
+					ids = new TreeSet<Integer>();
+					ent.getValue().put(k, ids);
+				}
+				ids.add(key);
+			}
+
+			for (final Unique u : uniques)
+			{
+				final String k = u.key(row);
+				if (k != null)
+					u.keys.put(k, key);
+			}
+		}
+
+		private void removeFromIndexes(final Integer key, final String[] row)
+		{
+			for (final Map.Entry<Integer, HashMap<String, TreeSet<Integer>>> ent : colIndexes.entrySet())
+			{
+				final String v = row[ent.getKey().intValue()];
+				if (v == null)
+					continue;
+
+				final String k = normKey(v);
+				final TreeSet<Integer> ids = ent.getValue().get(k);
+				if (ids != null)
+				{
+					ids.remove(key);
+					if (ids.isEmpty())
+						ent.getValue().remove(k);
+				}
+			}
+
+			for (final Unique u : uniques)
+			{
+				final String k = u.key(row);
+				if ((k != null) && key.equals(u.keys.get(k)))
+					u.keys.remove(k);
+			}
+		}
+
+		/**
+		 * Get the hash index for a column, building it if needed.
+		 * @param col  Column number
+		 */
+		HashMap<String, TreeSet<Integer>> ensureIndex(final int col)
+		{
+			final Integer c = Integer.valueOf(col);
+			HashMap<String, TreeSet<Integer>> idx = colIndexes.get(c);
+			if (idx != null)
+				return idx;
+
+			idx = new HashMap<String, TreeSet<Integer>>();
+			for (final Map.Entry<Integer, String[]> ent : rows.entrySet())
+			{
+				final String v = ent.getValue()[col];
+				if (v == null)
+					continue;
+
+				final String k = normKey(v);
+				TreeSet<Integer> ids = idx.get(k);
+				if (ids == null)
+				{
+					ids = new TreeSet<Integer>();
+					idx.put(k, ids);
+				}
+				ids.add(ent.getKey());
+			}
+			colIndexes.put(c, idx);
+
+			return idx;
+		}
+
+		/**
+		 * Add a unique constraint.
+		 * @throws SQLException if the table's current rows have duplicates
+		 */
+		void addUnique(final Unique u)
+			throws SQLException
+		{
+			for (final Map.Entry<Integer, String[]> ent : rows.entrySet())
+			{
+				final String k = u.key(ent.getValue());
+				if (k == null)
+					continue;
+				if (u.keys.containsKey(k))
+					throw new SQLException("UNIQUE constraint failed: " + name + " " + u.name);
+				u.keys.put(k, ent.getKey());
+			}
+			uniques.add(u);
+		}
+
+		/**
+		 * Check that indexes match the table rows.
+		 * @return null if OK, or a description of the first problem found
+		 */
+		String checkIndexes()
+		{
+			int nIndexed = 0;
+			for (final Map.Entry<Integer, HashMap<String, TreeSet<Integer>>> ent : colIndexes.entrySet())
+			{
+				final int col = ent.getKey().intValue();
+				nIndexed = 0;
+				for (final Map.Entry<String, TreeSet<Integer>> ik : ent.getValue().entrySet())
+				{
+					for (final Integer rowid : ik.getValue())
+					{
+						final String[] r = rows.get(rowid);
+						if ((r == null) || (r[col] == null) || ! ik.getKey().equals(normKey(r[col])))
+							return "index on " + name + "." + cols[col] + " wrong for rowid " + rowid;
+						++nIndexed;
+					}
+				}
+				int nNonNull = 0;
+				for (final String[] r : rows.values())
+					if (r[col] != null)
+						++nNonNull;
+				if (nIndexed != nNonNull)
+					return "index on " + name + "." + cols[col] + " missing rows";
+			}
+
+			return null;
+		}
+	}
+
+	/** An entry in a transaction's {@link RDBMemAdapter#undoLog} */
+	private static abstract class Undo
+	{
+		/** Undo this change; the db is in the state just after it, since later changes are already undone. */
+		abstract void undo(RDBMemAdapter db);
+	}
+
+	/** Undo a row's insert, replace or delete */
+	private static final class RowUndo extends Undo
+	{
+		final Table t;
+
+		/** Rowid and contents before the change, or null if inserted */
+		final Integer oldKey;
+		final String[] oldRow;
+
+		/** Rowid after the change, or null if deleted */
+		final Integer newKey;
+
+		/** Table's {@link Table#maxRowID} before the change */
+		final int oldMaxRowID;
+
+		RowUndo(final Table t, final Integer oldKey, final String[] oldRow, final Integer newKey)
+		{
+			this.t = t;
+			this.oldKey = oldKey;
+			this.oldRow = oldRow;
+			this.newKey = newKey;
+			oldMaxRowID = t.maxRowID;
+		}
+
+		void undo(final RDBMemAdapter db)
+		{
+			if (newKey != null)
+			{
+				final String[] cur = t.rows.remove(newKey);
+				if (cur != null)
+					t.removeFromIndexes(newKey, cur);
+			}
+			if (oldKey != null)
+			{
+				t.rows.put(oldKey, oldRow);
+				t.addToIndexes(oldKey, oldRow);
+			}
+			t.maxRowID = oldMaxRowID;
+		}
+	}
+
+	/**
+	 * Undo a schema change: Saves the db's tables, indexes, schema version,
+	 * and each table's columns and constraints, before a statement from {@link RDBMemAdapter#execStrucUpdate(String)}.
+	 * Rows are changed only by {@link Table#addColumn(String, char, String, boolean)}, which appends a column,
+	 * so restoring a table's columns truncates its rows back to that width.
+	 * Row changes to {@link RDBMemAdapter#TABNAME_MASTER} have their own {@link RowUndo}s.
+	 */
+	private static final class SchemaUndo extends Undo
+	{
+		final HashMap<String, Table> tables;
+		final HashMap<String, IndexDef> indexes;
+		final int schemaVersion;
+
+		/** Each table's name and column fields, in same order as {@link #tabs} */
+		final Table[] tabs;
+		final String[] names;
+		final String[][] cols, defaults;
+		final char[][] aff;
+		final boolean[][] notNull;
+		final int[] idCol;
+		final boolean[] autoIncrement;
+		final Unique[][] uniques;
+
+		SchemaUndo(final RDBMemAdapter db)
+		{
+			tables = new HashMap<String, Table>(db.tables);
+			indexes = new HashMap<String, IndexDef>(db.indexes);
+			schemaVersion = db.schemaVersion;
+
+			final int n = tables.size();
+			tabs = tables.values().toArray(new Table[n]);
+			names = new String[n];
+			cols = new String[n][];
+			defaults = new String[n][];
+			aff = new char[n][];
+			notNull = new boolean[n][];
+			idCol = new int[n];
+			autoIncrement = new boolean[n];
+			uniques = new Unique[n][];
+			for (int i = 0; i < n; ++i)
+			{
+				// Table replaces these arrays when it changes them, instead of changing their contents
+				final Table t = tabs[i];
+				names[i] = t.name;
+				cols[i] = t.cols;
+				defaults[i] = t.defaults;
+				aff[i] = t.aff;
+				notNull[i] = t.notNull;
+				idCol[i] = t.idCol;
+				autoIncrement[i] = t.autoIncrement;
+				uniques[i] = t.uniques.toArray(new Unique[t.uniques.size()]);
+			}
+		}
+
+		void undo(final RDBMemAdapter db)
+		{
+			db.tables.clear();
+			db.tables.putAll(tables);
+			db.indexes.clear();
+			db.indexes.putAll(indexes);
+			db.schemaVersion = schemaVersion;
+
+			for (int i = 0; i < tabs.length; ++i)
+			{
+				final Table t = tabs[i];
+				final int L = cols[i].length;
+				if (t.cols.length > L)
+				{
+					// Remove added columns from rows and indexes
+					for (final Map.Entry<Integer, String[]> ent : t.rows.entrySet())
+					{
+						final String[] r = new String[L];
+						System.arraycopy(ent.getValue(), 0, r, 0, L);
+						ent.setValue(r);
+					}
+					final Iterator<Integer> it = t.colIndexes.keySet().iterator();
+					while (it.hasNext())
+						if (it.next().intValue() >= L)
+							it.remove();
+					t.colNums.clear();
+					for (int c = 0; c < L; ++c)
+						t.colNums.put(cols[i][c].toLowerCase(Locale.US), Integer.valueOf(c));
+				}
+
+				t.name = names[i];
+				t.cols = cols[i];
+				t.defaults = defaults[i];
+				t.aff = aff[i];
+				t.notNull = notNull[i];
+				t.idCol = idCol[i];
+				t.autoIncrement = autoIncrement[i];
+				t.uniques.clear();
+				Collections.addAll(t.uniques, uniques[i]);
+			}
+
+			db.schemaChanged();
+		}
+	}
+
+	/** A unique constraint on 1 or more columns of a {@link Table} */
+	private static final class Unique
+	{
+		/** Index name, or column name(s) for a column constraint */
+		final String name;
+
+		final int[] cols;
+
+		/** Key from {@link #key(String[])} -&gt; rowid */
+		final HashMap<String, Integer> keys = new HashMap<String, Integer>();
+
+		Unique(final String name, final int[] cols)
+		{
+			this.name = name;
+			this.cols = cols;
+		}
+
+		/** This row's key, or null if any of its columns are null (not constrained) */
+		String key(final String[] row)
+		{
+			if (cols.length == 1)
+				return (row[cols[0]] != null) ? normKey(row[cols[0]]) : null;
+
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < cols.length; ++i)
+			{
+				final String v = row[cols[i]];
+				if (v == null)
+					return null;
+				if (i > 0)
+					sb.append('\u0001');
+				sb.append(normKey(v));
+			}
+
+			return sb.toString();
+		}
+	}
+
+	/** An index created by {@code create index}, for {@code drop index} */
+	private static final class IndexDef
+	{
+		final Table table;
+
+		/** Unique constraint, or null */
+		final Unique unique;
+
+		IndexDef(final Table table, final Unique unique)
+		{
+			this.table = table;
+			this.unique = unique;
+		}
+	}
+
+	/**
+	 * Iterates rowids of a sorted map or set, ascending or descending.
+	 * Descending iteration uses only {@code headMap/headSet}, which are available in all java versions.
+	 */
+	private static final class KeyCursor
+	{
+		private final SortedMap<Integer, ?> m;
+		private final SortedSet<Integer> s;
+		private final boolean desc;
+		private Iterator<Integer> it;
+		private Integer prev;
+		private boolean started;
+
+		KeyCursor(final SortedMap<Integer, ?> m, final boolean desc)
+		{
+			this.m = m;
+			this.s = null;
+			this.desc = desc;
+		}
+
+		KeyCursor(final SortedSet<Integer> s, final boolean desc)
+		{
+			this.m = null;
+			this.s = s;
+			this.desc = desc;
+		}
+
+		/** Cursor over a single rowid, or none if null */
+		static KeyCursor of(final Integer k)
+		{
+			final TreeSet<Integer> ts = new TreeSet<Integer>();
+			if (k != null)
+				ts.add(k);
+
+			return new KeyCursor(ts, false);
+		}
+
+		/** Next rowid, or null when done */
+		Integer next()
+		{
+			if (! desc)
+			{
+				if (it == null)
+					it = (m != null) ? m.keySet().iterator() : s.iterator();
+				return (it.hasNext()) ? it.next() : null;
+			}
+
+			Integer k;
+			if (! started)
+			{
+				started = true;
+				if (m != null)
+					k = (m.isEmpty()) ? null : m.lastKey();
+				else
+					k = (s.isEmpty()) ? null : s.last();
+			}
+			else if (prev == null)
+			{
+				k = null;
+			}
+			else if (m != null)
+			{
+				final SortedMap<Integer, ?> h = m.headMap(prev);
+				k = (h.isEmpty()) ? null : h.lastKey();
+			} else {
+				final SortedSet<Integer> h = s.headSet(prev);
+				k = (h.isEmpty()) ? null : h.last();
+			}
+			prev = k;
+
+			return k;
+		}
+	}
+
+	//
+	// Query evaluation
+	//
+
+	/**
+	 * State while running a {@link Select}: Bound parameters, and the current row of each table.
+	 */
+	private static final class Ctx
+	{
+		/** Context of the enclosing query, for correlated subqueries, or null */
+		final Ctx parent;
+
+		/** Values for {@code ?} placeholders, or null */
+		final String[] params;
+
+		/** Current row of each table in the query's from list */
+		final String[][] rows;
+
+		/** Current rowid of each table in the query's from list */
+		final int[] rowids;
+
+		/** Results of uncorrelated subqueries; used only in the outermost context */
+		IdentityHashMap<Select, SubResult> subCache;
+
+		/** Aggregate accumulators, or null */
+		Acc[] accs;
+
+		/** True when {@link #accs} are complete and aggregate functions can return their results */
+		boolean aggDone;
+
+		Ctx(final Ctx parent, final String[] params, final int ntab)
+		{
+			this.parent = parent;
+			this.params = params;
+			rows = new String[ntab][];
+			rowids = new int[ntab];
+		}
+
+		/**
+		 * Run a subquery, or get its cached result if uncorrelated.
+		 * @param sub  Subquery to run in this context
+		 */
+		SubResult sub(final Select sub)
+		{
+			if (sub.correlated)
+				return new SubResult(sub.execute(this, params));
+
+			Ctx root = this;
+			while (root.parent != null)
+				root = root.parent;
+			if (root.subCache == null)
+				root.subCache = new IdentityHashMap<Select, SubResult>();
+			SubResult sr = root.subCache.get(sub);
+			if (sr == null)
+			{
+				sr = new SubResult(sub.execute(this, params));
+				root.subCache.put(sub, sr);
+			}
+
+			return sr;
+		}
+	}
+
+	/** A subquery's results, and the set of its first column's values for {@code in} */
+	private static final class SubResult
+	{
+		final ArrayList<String[]> rows;
+		private HashSet<String> keys;
+		private boolean hasNull;
+
+		SubResult(final ArrayList<String[]> rows)
+		{
+			this.rows = rows;
+		}
+
+		/** First column of first row, or null */
+		String scalar()
+		{
+			return (rows.isEmpty()) ? null : rows.get(0)[0];
+		}
+
+		/** Set of {@link RDBMemAdapter#normKey(String)} of each row's first column */
+		HashSet<String> keys()
+		{
+			if (keys == null)
+			{
+				keys = new HashSet<String>();
+				for (final String[] r : rows)
+				{
+					if (r[0] != null)
+						keys.add(normKey(r[0]));
+					else
+						hasNull = true;
+				}
+			}
+
+			return keys;
+		}
+
+		/** Did any row have a null first column? Call {@link #keys()} first. */
+		boolean hasNull()
+		{
+			return hasNull;
+		}
+	}
+
+	/** Aggregate function accumulator */
+	private static final class Acc
+	{
+		long count;
+		String best;
+		long lsum;
+		double dsum;
+		boolean allInt = true;
+	}
+
+	/** Receives each matching row from {@link Select#scan(Ctx, int, RowSink)} */
+	private static abstract class RowSink
+	{
+		/** @return true to continue, false to stop scanning */
+		abstract boolean row(Ctx c);
+	}
+
+	/** SQL expression */
+	private static abstract class Expr
+	{
+		/**
+		 * Evaluate in this context.
+		 * @return the value, or null for SQL NULL; boolean results are {@link RDBMemAdapter#TRUE} or {@link RDBMemAdapter#FALSE}
+		 */
+		abstract String eval(Ctx c);
+
+		/** Bitmask of the tables in this query's from list which this expression reads */
+		int tabMask()
+		{
+			return 0;
+		}
+
+		/** Does this expression have {@code COLLATE NOCASE}? */
+		boolean isNocase()
+		{
+			return false;
+		}
+	}
+
+	private static final class Lit extends Expr
+	{
+		final String v;
+
+		Lit(final String v)
+		{
+			this.v = v;
+		}
+
+		String eval(final Ctx c)
+		{
+			return v;
+		}
+	}
+
+	private static final class Param extends Expr
+	{
+		final int i;
+
+		Param(final int i)
+		{
+			this.i = i;
+		}
+
+		String eval(final Ctx c)
+		{
+			return ((c.params != null) && (i < c.params.length)) ? c.params[i] : null;
+		}
+	}
+
+	/** Column reference; resolved by {@link Select#resolve(Col)} */
+	private static final class Col extends Expr
+	{
+		final String qual, name;
+
+		/** Number of enclosing queries out from this column's query to the one with its table */
+		int depth;
+
+		/** Table number within its query's from list */
+		int tab;
+
+		/** Column number, or -1 for rowid of a table without {@code _id}, or -2 for all columns of FTS table */
+		int col;
+
+		/** Is this the table's rowid? */
+		boolean isRowid;
+
+		boolean resolved;
+
+		Col(final String qual, final String name)
+		{
+			this.qual = qual;
+			this.name = name;
+		}
+
+		String eval(final Ctx c)
+		{
+			Ctx cc = c;
+			for (int d = depth; d > 0; --d)
+				cc = cc.parent;
+			final String[] r = cc.rows[tab];
+			if (r == null)
+				return null;
+			if (col >= 0)
+				return r[col];
+			if (col == -1)
+				return Integer.toString(cc.rowids[tab]);
+
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 1; i < r.length; ++i)
+			{
+				if (r[i] == null)
+					continue;
+				if (sb.length() > 0)
+					sb.append(' ');
+				sb.append(r[i]);
+			}
+			return sb.toString();
+		}
+
+		int tabMask()
+		{
+			return (depth == 0) ? (1 << tab) : 0;
+		}
+	}
+
+	/** {@code expr COLLATE NOCASE} */
+	private static final class Nocase extends Expr
+	{
+		final Expr e;
+
+		Nocase(final Expr e)
+		{
+			this.e = e;
+		}
+
+		String eval(final Ctx c)
+		{
+			return e.eval(c);
+		}
+
+		int tabMask()
+		{
+			return e.tabMask();
+		}
+
+		boolean isNocase()
+		{
+			return true;
+		}
+	}
+
+	/** Unary {@code -} or {@code not} */
+	private static final class Unary extends Expr
+	{
+		final boolean isNot;
+		final Expr e;
+
+		Unary(final boolean isNot, final Expr e)
+		{
+			this.isNot = isNot;
+			this.e = e;
+		}
+
+		String eval(final Ctx c)
+		{
+			final String v = e.eval(c);
+			if (v == null)
+				return null;
+			if (isNot)
+				return isTrue(v) ? FALSE : TRUE;
+			if (isIntForm(v))
+				return Long.toString(- Long.parseLong((v.charAt(0) == '+') ? v.substring(1) : v));
+
+			return Double.toString(- toDouble(v));
+		}
+
+		int tabMask()
+		{
+			return e.tabMask();
+		}
+	}
+
+	private static final int OP_OR = 1, OP_AND = 2, OP_EQ = 3, OP_NE = 4, OP_LT = 5, OP_LE = 6, OP_GT = 7, OP_GE = 8,
+		OP_ADD = 9, OP_SUB = 10, OP_MUL = 11, OP_DIV = 12, OP_MOD = 13, OP_CONCAT = 14;
+
+	/** Binary operator: Logical, comparison, arithmetic or {@code ||} */
+	private static final class Bin extends Expr
+	{
+		final int op;
+		final Expr l, r;
+		final boolean nocase;
+
+		Bin(final int op, final Expr l, final Expr r)
+		{
+			this.op = op;
+			this.l = l;
+			this.r = r;
+			nocase = l.isNocase() || r.isNocase();
+		}
+
+		String eval(final Ctx c)
+		{
+			if (op == OP_OR)
+			{
+				final String a = l.eval(c);
+				if (isTrue(a))
+					return TRUE;
+				final String b = r.eval(c);
+				if (isTrue(b))
+					return TRUE;
+				return ((a == null) || (b == null)) ? null : FALSE;
+			}
+			if (op == OP_AND)
+			{
+				final String a = l.eval(c);
+				if ((a != null) && ! isTrue(a))
+					return FALSE;
+				final String b = r.eval(c);
+				if ((b != null) && ! isTrue(b))
+					return FALSE;
+				return ((a == null) || (b == null)) ? null : TRUE;
+			}
+
+			final String a = l.eval(c);
+			if (a == null)
+				return null;
+			final String b = r.eval(c);
+			if (b == null)
+				return null;
+
+			switch (op)
+			{
+			case OP_EQ:  return (compareValues(a, b, nocase) == 0) ? TRUE : FALSE;
+			case OP_NE:  return (compareValues(a, b, nocase) != 0) ? TRUE : FALSE;
+			case OP_LT:  return (compareValues(a, b, nocase) < 0) ? TRUE : FALSE;
+			case OP_LE:  return (compareValues(a, b, nocase) <= 0) ? TRUE : FALSE;
+			case OP_GT:  return (compareValues(a, b, nocase) > 0) ? TRUE : FALSE;
+			case OP_GE:  return (compareValues(a, b, nocase) >= 0) ? TRUE : FALSE;
+			case OP_CONCAT:  return a + b;
+			}
+
+			// arithmetic
+			if (isIntForm(a) && isIntForm(b))
+			{
+				final long la = Long.parseLong((a.charAt(0) == '+') ? a.substring(1) : a),
+				           lb = Long.parseLong((b.charAt(0) == '+') ? b.substring(1) : b);
+				switch (op)
+				{
+				case OP_ADD:  return Long.toString(la + lb);
+				case OP_SUB:  return Long.toString(la - lb);
+				case OP_MUL:  return Long.toString(la * lb);
+				case OP_DIV:  return (lb != 0) ? Long.toString(la / lb) : null;
+				default:      return (lb != 0) ? Long.toString(la % lb) : null;
+				}
+			}
+
+			final double da = toDouble(a), db = toDouble(b);
+			switch (op)
+			{
+			case OP_ADD:  return Double.toString(da + db);
+			case OP_SUB:  return Double.toString(da - db);
+			case OP_MUL:  return Double.toString(da * db);
+			case OP_DIV:  return (db != 0.0) ? Double.toString(da / db) : null;
+			default:      return (db != 0.0) ? Double.toString(da % db) : null;
+			}
+		}
+
+		int tabMask()
+		{
+			return l.tabMask() | r.tabMask();
+		}
+	}
+
+	/** {@code expr is [not] null} */
+	private static final class IsNull extends Expr
+	{
+		final Expr e;
+		final boolean negate;
+
+		IsNull(final Expr e, final boolean negate)
+		{
+			this.e = e;
+			this.negate = negate;
+		}
+
+		String eval(final Ctx c)
+		{
+			return ((e.eval(c) == null) != negate) ? TRUE : FALSE;
+		}
+
+		int tabMask()
+		{
+			return e.tabMask();
+		}
+	}
+
+	/** {@code expr [not] in (list)} or {@code expr [not] in (select ...)} */
+	private static final class In extends Expr
+	{
+		final Expr e;
+
+		/** Value list, or null if {@link #sub} */
+		final Expr[] list;
+
+		/** Subquery, or null if {@link #list} */
+		final Select sub;
+
+		final boolean negate;
+
+		In(final Expr e, final Expr[] list, final Select sub, final boolean negate)
+		{
+			this.e = e;
+			this.list = list;
+			this.sub = sub;
+			this.negate = negate;
+		}
+
+		String eval(final Ctx c)
+		{
+			final String v = e.eval(c);
+			if (v == null)
+				return null;
+
+			boolean found = false, sawNull = false;
+			if (sub != null)
+			{
+				final SubResult sr = c.sub(sub);
+				found = sr.keys().contains(normKey(v));
+				sawNull = sr.hasNull();
+			} else {
+				for (int i = 0; i < list.length; ++i)
+				{
+					final String w = list[i].eval(c);
+					if (w == null)
+					{
+						sawNull = true;
+					}
+					else if (compareValues(v, w, false) == 0)
+					{
+						found = true;
+						break;
+					}
+				}
+			}
+
+			if (found)
+				return (negate) ? FALSE : TRUE;
+			if (sawNull)
+				return null;
+			return (negate) ? TRUE : FALSE;
+		}
+
+		int tabMask()
+		{
+			int m = e.tabMask();
+			if (list != null)
+				for (int i = 0; i < list.length; ++i)
+					m |= list[i].tabMask();
+
+			return m;
+		}
+	}
+
+	/** {@code (select ...)} returning one value */
+	private static final class Scalar extends Expr
+	{
+		final Select sub;
+
+		Scalar(final Select sub)
+		{
+			this.sub = sub;
+		}
+
+		String eval(final Ctx c)
+		{
+			return c.sub(sub).scalar();
+		}
+	}
+
+	/** FTS {@code MATCH}, or {@code LIKE} */
+	private static final class Match extends Expr
+	{
+		final Expr l, r;
+		final boolean isLike;
+
+		Match(final Expr l, final Expr r, final boolean isLike)
+		{
+			this.l = l;
+			this.r = r;
+			this.isLike = isLike;
+		}
+
+		String eval(final Ctx c)
+		{
+			final String a = l.eval(c);
+			if (a == null)
+				return null;
+			final String b = r.eval(c);
+			if (b == null)
+				return null;
+
+			final boolean m = (isLike) ? likeMatch(a, 0, b, 0) : ftsMatch(a, b);
+			return (m) ? TRUE : FALSE;
+		}
+
+		int tabMask()
+		{
+			return l.tabMask() | r.tabMask();
+		}
+	}
+
+	/** Function call: Scalar, or aggregate if {@link #slot} &gt;= 0 */
+	private static final class Func extends Expr
+	{
+		/** Lowercase name */
+		final String name;
+
+		final Expr[] args;
+
+		/** Aggregate's accumulator number in {@link Ctx#accs}, or -1 if scalar */
+		int slot = -1;
+
+		Func(final String name, final Expr[] args)
+		{
+			this.name = name;
+			this.args = args;
+		}
+
+		/** Is this an aggregate function with these args? */
+		static boolean isAggregate(final String name, final int nargs)
+		{
+			if (nargs > 1)
+				return false;
+
+			return name.equals("count") || name.equals("max") || name.equals("min")
+				|| name.equals("sum") || name.equals("total") || name.equals("avg");
+		}
+
+		/** Is this a known scalar function? */
+		static boolean isScalar(final String name)
+		{
+			return name.equals("lower") || name.equals("upper") || name.equals("length") || name.equals("abs")
+				|| name.equals("ifnull") || name.equals("coalesce") || name.equals("max") || name.equals("min");
+		}
+
+		/** Add the current row to this aggregate's accumulator */
+		void accumulate(final Ctx c)
+		{
+			final Acc a = c.accs[slot];
+			if (args.length == 0)
+			{
+				++a.count;  // count(*)
+				return;
+			}
+
+			final String v = args[0].eval(c);
+			if (v == null)
+				return;
+
+			++a.count;
+			if (name.equals("max"))
+			{
+				if ((a.best == null) || (compareValues(v, a.best, args[0].isNocase()) > 0))
+					a.best = v;
+			}
+			else if (name.equals("min"))
+			{
+				if ((a.best == null) || (compareValues(v, a.best, args[0].isNocase()) < 0))
+					a.best = v;
+			}
+			else if (! name.equals("count"))
+			{
+				if (a.allInt && isIntForm(v))
+				{
+					a.lsum += Long.parseLong((v.charAt(0) == '+') ? v.substring(1) : v);
+				} else {
+					if (a.allInt)
+					{
+						a.allInt = false;
+						a.dsum = a.lsum;
+					}
+					a.dsum += toDouble(v);
+				}
+			}
+		}
+
+		String eval(final Ctx c)
+		{
+			if (slot >= 0)
+			{
+				if (! c.aggDone)
+					return null;
+
+				final Acc a = c.accs[slot];
+				if (name.equals("count"))
+					return Long.toString(a.count);
+				if (name.equals("max") || name.equals("min"))
+					return a.best;
+				if (name.equals("total"))
+					return Double.toString((a.allInt) ? a.lsum : a.dsum);
+				if (a.count == 0)
+					return null;
+				if (name.equals("sum"))
+					return numString(a.allInt, a.lsum, a.dsum);
+				return Double.toString(((a.allInt) ? a.lsum : a.dsum) / a.count);  // avg
+			}
+
+			if (name.equals("ifnull") || name.equals("coalesce"))
+			{
+				for (int i = 0; i < args.length; ++i)
+				{
+					final String v = args[i].eval(c);
+					if (v != null)
+						return v;
+				}
+				return null;
+			}
+			if (name.equals("max") || name.equals("min"))
+			{
+				String best = null;
+				for (int i = 0; i < args.length; ++i)
+				{
+					final String v = args[i].eval(c);
+					if (v == null)
+						return null;
+					final int cmp = (best == null) ? 0 : compareValues(v, best, false);
+					if ((best == null) || (name.equals("max") ? (cmp > 0) : (cmp < 0)))
+						best = v;
+				}
+				return best;
+			}
+
+			final String v = (args.length > 0) ? args[0].eval(c) : null;
+			if (v == null)
+				return null;
+			if (name.equals("lower"))
+				return v.toLowerCase(Locale.US);
+			if (name.equals("upper"))
+				return v.toUpperCase(Locale.US);
+			if (name.equals("length"))
+				return Integer.toString(v.length());
+
+			// abs
+			if (isIntForm(v))
+				return Long.toString(Math.abs(Long.parseLong((v.charAt(0) == '+') ? v.substring(1) : v)));
+			return Double.toString(Math.abs(toDouble(v)));
+		}
+
+		int tabMask()
+		{
+			if (slot >= 0)
+				return 0;
+
+			int m = 0;
+			for (int i = 0; i < args.length; ++i)
+				m |= args[i].tabMask();
+			return m;
+		}
+	}
+
+	/** One {@code order by} term */
+	private static final class Order
+	{
+		final Expr e;
+		final boolean desc;
+
+		Order(final Expr e, final boolean desc)
+		{
+			this.e = e;
+			this.desc = desc;
+		}
+	}
+
+	/** How to find candidate rows of one table in a {@link Select}: Scan all rows, or use an index */
+	private static final class Access
+	{
+		static final int SCAN = 0, ROWID_RANGE = 1, COL_EQ = 2, ROWID_IN = 3, ROWID_EQ = 4;
+
+		final int kind;
+
+		/** For {@link #COL_EQ}, column number */
+		final int col;
+
+		/** For {@link #ROWID_EQ}, {@link #COL_EQ} or {@link #ROWID_RANGE}: the value to look up */
+		final Expr key;
+
+		/** For {@link #ROWID_IN} */
+		final In in;
+
+		/** For {@link #ROWID_RANGE}: {@link RDBMemAdapter#OP_LT} etc, with the rowid on the left */
+		final int op;
+
+		Access(final int kind, final int col, final Expr key, final In in, final int op)
+		{
+			this.kind = kind;
+			this.col = col;
+			this.key = key;
+			this.in = in;
+			this.op = op;
+		}
+	}
+
+	private static final Access ACCESS_SCAN = new Access(Access.SCAN, 0, null, null, 0);
+
+	/**
+	 * A parsed query, or the scope of an update or delete statement.
+	 * Runs as nested loops over its from list, using an {@link Access} per table.
+	 */
+	private static final class Select
+	{
+		/** Enclosing query, for subqueries, or null */
+		final Select outer;
+
+		Table[] from = NO_TABLES;
+
+		/** Each from table's alias, or null */
+		String[] aliases = new String[0];
+
+		Expr[] out = NO_EXPRS;
+
+		/** Where clause, or null */
+		Expr where;
+
+		Order[] order;
+
+		/** Max rows to return, or 0 */
+		int limit;
+
+		boolean distinct;
+
+		/** True if this query or its subqueries refer to an enclosing query's columns */
+		boolean correlated;
+
+		/** Columns parsed in this scope, to resolve once the from list is known */
+		final ArrayList<Col> pending = new ArrayList<Col>();
+
+		/** Aggregate functions in this query, or null */
+		ArrayList<Func> aggs;
+
+		/** Where clause's {@code and}-terms, by the last from table they need */
+		Expr[][] conjAt;
+
+		/** Row access for each from table */
+		Access[] access;
+
+		/** If true, iterate the first from table in descending rowid order */
+		boolean orderDesc;
+
+		/** Order terms to sort results by, or null if iteration order already satisfies {@link #order} */
+		Order[] sortTerms;
+
+		Select(final Select outer)
+		{
+			this.outer = outer;
+		}
+
+		/**
+		 * Resolve a column to a table in this query's from list, or an enclosing query's.
+		 * @return true if found
+		 */
+		boolean resolve(final Col col)
+		{
+			int depth = 0;
+			for (Select s = this; s != null; s = s.outer, ++depth)
+			{
+				for (int ti = 0; ti < s.from.length; ++ti)
+				{
+					final Table t = s.from[ti];
+					if ((col.qual != null) && ! (col.qual.equalsIgnoreCase(t.name)
+					     || col.qual.equalsIgnoreCase(s.aliases[ti])))
+						continue;
+
+					int cn = t.colNum(col.name);
+					boolean isRowid = (cn >= 0) && (cn == t.idCol);
+					if (cn < 0)
+					{
+						if (col.name.equalsIgnoreCase("rowid") || col.name.equalsIgnoreCase("oid")
+						    || col.name.equalsIgnoreCase("_rowid_"))
+						{
+							cn = (t.idCol >= 0) ? t.idCol : -1;
+							isRowid = true;
+						}
+						else if (t.isFTS && (col.qual == null) && col.name.equalsIgnoreCase(t.name))
+						{
+							cn = -2;
+						}
+						else
+						{
+							continue;
+						}
+					}
+
+					col.depth = depth;
+					col.tab = ti;
+					col.col = cn;
+					col.isRowid = isRowid;
+					col.resolved = true;
+					Select x = this;
+					for (int d = 0; d < depth; ++d, x = x.outer)
+						x.correlated = true;
+
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * Resolve this scope's columns and plan its execution.
+		 * @param lenientOut  If true, output columns not found in any table are returned as null
+		 *     instead of an error, as {@link RDBAdapter#getRows(String, String, String[], String[], String, int)} requires
+		 * @throws SQLException if a column isn't found
+		 */
+		void finish(final boolean lenientOut)
+			throws SQLException
+		{
+			if (lenientOut)
+			{
+				for (int i = 0; i < out.length; ++i)
+					if ((out[i] instanceof Col) && ! resolve((Col) out[i]))
+					{
+						pending.remove(out[i]);
+						out[i] = new Lit(null);
+					}
+			}
+			for (final Col col : pending)
+				if (! (col.resolved || resolve(col)))
+					throw new SQLException("no such column: "
+						+ ((col.qual != null) ? (col.qual + '.' + col.name) : col.name));
+			pending.clear();
+
+			plan();
+		}
+
+		/** Choose each table's {@link Access}, and whether results need sorting */
+		private void plan()
+		{
+			final int n = from.length;
+			final ArrayList<Expr> conj = new ArrayList<Expr>();
+			splitAnd(where, conj);
+			final ArrayList<ArrayList<Expr>> byLevel = new ArrayList<ArrayList<Expr>>();
+			for (int i = 0; i < Math.max(n, 1); ++i)
+				byLevel.add(new ArrayList<Expr>());
+			for (final Expr e : conj)
+			{
+				final int m = e.tabMask();
+				final int level = (m == 0) ? 0 : (31 - Integer.numberOfLeadingZeros(m));
+				byLevel.get(level).add(e);
+			}
+
+			conjAt = new Expr[byLevel.size()][];
+			for (int i = 0; i < conjAt.length; ++i)
+				conjAt[i] = byLevel.get(i).toArray(NO_EXPRS);
+
+			access = new Access[n];
+			for (int i = 0; i < n; ++i)
+				access[i] = chooseAccess(i, conjAt[i]);
+
+			sortTerms = order;
+			orderDesc = false;
+			if ((order != null) && (order.length == 1) && (n > 0) && (aggs == null)
+			    && (order[0].e instanceof Col) && ! order[0].e.isNocase())
+			{
+				final Col oc = (Col) order[0].e;
+				if (oc.isRowid && (oc.depth == 0) && (oc.tab == 0))
+				{
+					sortTerms = null;
+					orderDesc = order[0].desc;
+				}
+			}
+		}
+
+		private static void splitAnd(final Expr e, final ArrayList<Expr> conj)
+		{
+			if (e == null)
+				return;
+
+			if ((e instanceof Bin) && (((Bin) e).op == OP_AND))
+			{
+				splitAnd(((Bin) e).l, conj);
+				splitAnd(((Bin) e).r, conj);
+			} else {
+				conj.add(e);
+			}
+		}
+
+		/** If this expression is a column of from table {@code ti} without {@code COLLATE}, return it */
+		private static Col colOf(final Expr e, final int ti)
+		{
+			if (! (e instanceof Col))
+				return null;
+
+			final Col c = (Col) e;
+			return ((c.depth == 0) && (c.tab == ti) && (c.col != -2)) ? c : null;
+		}
+
+		/** Does this expression only read from tables before {@code ti}, so it's known when reading table {@code ti}? */
+		private static boolean isKnownBefore(final Expr e, final int ti)
+		{
+			return (e.tabMask() >> ti) == 0;
+		}
+
+		/**
+		 * Choose the best way to find from table {@code ti}'s rows, from its where-clause terms.
+		 * @param ti  Table number
+		 * @param conj  {@code and}-terms whose last needed table is {@code ti}
+		 */
+		private static Access chooseAccess(final int ti, final Expr[] conj)
+		{
+			Access best = ACCESS_SCAN;
+			for (int i = 0; i < conj.length; ++i)
+			{
+				final Expr e = conj[i];
+				Access a = null;
+				if ((e instanceof Bin) && (((Bin) e).op >= OP_EQ) && (((Bin) e).op <= OP_GE) && ! ((Bin) e).nocase)
+				{
+					final Bin b = (Bin) e;
+					int op = b.op;
+					Col col = colOf(b.l, ti);
+					Expr other = b.r;
+					if ((col == null) || ! isKnownBefore(other, ti))
+					{
+						col = colOf(b.r, ti);
+						other = b.l;
+						switch (op)
+						{
+						case OP_LT:  op = OP_GT;  break;
+						case OP_LE:  op = OP_GE;  break;
+						case OP_GT:  op = OP_LT;  break;
+						case OP_GE:  op = OP_LE;  break;
+						}
+					}
+					if ((col == null) || ! isKnownBefore(other, ti))
+						continue;
+
+					if (op == OP_EQ)
+						a = (col.isRowid)
+							? new Access(Access.ROWID_EQ, 0, other, null, 0)
+							: new Access(Access.COL_EQ, col.col, other, null, 0);
+					else if (col.isRowid && (op != OP_NE))
+						a = new Access(Access.ROWID_RANGE, 0, other, null, op);
+				}
+				else if ((e instanceof In) && ! ((In) e).negate)
+				{
+					final In in = (In) e;
+					final Col col = colOf(in.e, ti);
+					if ((col != null) && col.isRowid && ((in.sub != null) || isKnownBefore(in, ti) || (in.tabMask() == (1 << ti) && in.list != null && listKnown(in.list, ti))))
+						a = new Access(Access.ROWID_IN, 0, null, in, 0);
+				}
+
+				if ((a != null) && (a.kind > best.kind))
+					best = a;
+			}
+
+			return best;
+		}
+
+		/** Are all of these list values known before reading table {@code ti}? */
+		private static boolean listKnown(final Expr[] list, final int ti)
+		{
+			for (int i = 0; i < list.length; ++i)
+				if (! isKnownBefore(list[i], ti))
+					return false;
+
+			return true;
+		}
+
+		/**
+		 * Open a cursor over the candidate rowids of from table {@code ti}.
+		 * @param desc  True for descending rowid order
+		 */
+		private KeyCursor open(final int ti, final Ctx c, final boolean desc)
+		{
+			final Table t = from[ti];
+			final Access a = access[ti];
+			switch (a.kind)
+			{
+			case Access.ROWID_EQ:
+				return KeyCursor.of(toRowid(a.key.eval(c)));
+
+			case Access.ROWID_IN:
+				{
+					final TreeSet<Integer> ids = new TreeSet<Integer>();
+					if (a.in.sub != null)
+					{
+						for (final String k : c.sub(a.in.sub).keys())
+						{
+							final Integer rid = toRowid(k);
+							if (rid != null)
+								ids.add(rid);
+						}
+					} else {
+						for (int i = 0; i < a.in.list.length; ++i)
+						{
+							final Integer rid = toRowid(a.in.list[i].eval(c));
+							if (rid != null)
+								ids.add(rid);
+						}
+					}
+					return new KeyCursor(ids, desc);
+				}
+
+			case Access.COL_EQ:
+				{
+					final String v = a.key.eval(c);
+					if (v == null)
+						return KeyCursor.of(null);
+					final int[] rb = rowidBounds(ti, c);  // such as "vid = ? and (_id >= ?) and (_id < ?)"
+					if ((rb != null) && (rb[0] > rb[1]))
+						return KeyCursor.of(null);
+					if (t.snap != null)
+					{
+						SortedSet<Integer> sids = t.snap.lookup(a.col, normKey(v));
+						if (sids != null)
+						{
+							if (rb != null)
+								sids = within(sids, rb);
+							final SortedSet<Integer> nids = snapNarrow(ti, c, sids);
+							return new KeyCursor((nids != null) ? nids : sids, desc);
+						}
+					}
+					final TreeSet<Integer> ids = t.ensureIndex(a.col).get(normKey(v));
+					if (ids == null)
+						return KeyCursor.of(null);
+					return new KeyCursor((rb != null) ? within(ids, rb) : ids, desc);
+				}
+
+			case Access.ROWID_RANGE:
+				{
+					final int[] rb = rowidBounds(ti, c);
+					if (rb == null)
+						break;  // compare to text: scan
+					if (rb[0] > rb[1])
+						return KeyCursor.of(null);
+
+					return new KeyCursor(within(t.rows, rb), desc);
+				}
+			}
+
+			if (t.snap != null)
+			{
+				final SortedSet<Integer> nids = snapNarrow(ti, c, null);
+				if (nids != null)
+					return new KeyCursor(nids, desc);
+			}
+
+			return new KeyCursor(t.rows, desc);
+		}
+
+		/**
+		 * Find the range of from table {@code ti}'s rowids allowed by all of its where-clause
+		 * comparisons of the rowid to numbers, such as {@code (_id >= ?) and (_id <= ?)}.
+		 * Rows are still checked against the entire where clause afterwards.
+		 * @param ti  From table number
+		 * @param c  Context, to evaluate compared values
+		 * @return  Lowest and highest rowid, inclusive, or null if no where-clause terms could be used.
+		 *     If no rowids are allowed, such as when compared to null, lowest will be greater than highest.
+		 * @see #within(SortedSet, int[])
+		 * @since 0.9.93
+		 */
+		private int[] rowidBounds(final int ti, final Ctx c)
+		{
+			final Expr[] conj = conjAt[ti];
+			long min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
+			boolean any = false;
+			for (int i = 0; i < conj.length; ++i)
+			{
+				final Expr e = conj[i];
+				if (! ((e instanceof Bin) && (((Bin) e).op >= OP_LT) && (((Bin) e).op <= OP_GE) && ! ((Bin) e).nocase))
+					continue;
+
+				final Bin b = (Bin) e;
+				int op = b.op;
+				Col col = colOf(b.l, ti);
+				Expr other = b.r;
+				if ((col == null) || ! isKnownBefore(other, ti))
+				{
+					col = colOf(b.r, ti);
+					other = b.l;
+					switch (op)
+					{
+					case OP_LT:  op = OP_GT;  break;
+					case OP_LE:  op = OP_GE;  break;
+					case OP_GT:  op = OP_LT;  break;
+					case OP_GE:  op = OP_LE;  break;
+					}
+				}
+				if ((col == null) || ! col.isRowid || ! isKnownBefore(other, ti))
+					continue;
+
+				final String v = other.eval(c);
+				if (v == null)
+					return new int[]{ 1, 0 };  // comparisons with null are never true
+				if (! isNumeric(v))
+					continue;  // text would compare as text
+
+				final double d = Double.parseDouble(v);
+				switch (op)
+				{
+				case OP_LT:  max = Math.min(max, (long) Math.ceil(d) - 1);  break;
+				case OP_LE:  max = Math.min(max, (long) Math.floor(d));  break;
+				case OP_GT:  min = Math.max(min, (long) Math.floor(d) + 1);  break;
+				default:     min = Math.max(min, (long) Math.ceil(d));  // OP_GE
+				}
+				any = true;
+			}
+			if (! any)
+				return null;
+			if (min > max)
+				return new int[]{ 1, 0 };
+
+			return new int[]{ (int) min, (int) max };
+		}
+
+		/**
+		 * Get the part of a sorted set of rowids within bounds from {@link #rowidBounds(int, Ctx)}.
+		 * @param ids  Rowids to narrow
+		 * @param rb  Inclusive lowest and highest rowid; lowest must not be greater than highest
+		 * @return  A view of the rowids within {@code rb}
+		 * @since 0.9.93
+		 */
+		private static SortedSet<Integer> within(final SortedSet<Integer> ids, final int[] rb)
+		{
+			return (rb[1] == Integer.MAX_VALUE) ? ids.tailSet(rb[0]) : ids.subSet(rb[0], rb[1] + 1);
+		}
+
+		/**
+		 * Get the part of a table's rows within bounds from {@link #rowidBounds(int, Ctx)}.
+		 * @param rows  Rows to narrow, keyed by rowid
+		 * @param rb  Inclusive lowest and highest rowid; lowest must not be greater than highest
+		 * @return  A view of the rows within {@code rb}
+		 * @since 0.9.93
+		 */
+		private static SortedMap<Integer, String[]> within(final SortedMap<Integer, String[]> rows, final int[] rb)
+		{
+			return (rb[1] == Integer.MAX_VALUE) ? rows.tailMap(rb[0]) : rows.subMap(rb[0], rb[1] + 1);
+		}
+
+		/**
+		 * For a from table whose rows are in a snapshot file, narrow its candidate rows
+		 * using its where-clause comparisons of integer columns to numbers, such as a range of {@code time_start}.
+		 * The snapshot checks those by reading only the compared columns, not each entire row.
+		 * Rows are still checked against the entire where clause afterwards.
+		 * @param ti  From table number; {@link Table#snap} must not be null
+		 * @param c  Context, to evaluate compared values
+		 * @param ids  Candidate rowids from a snapshot index lookup, or null for all rows
+		 * @return  Narrowed candidates, or null if no where-clause terms could be used
+		 * @since 0.9.93
+		 */
+		private SortedSet<Integer> snapNarrow(final int ti, final Ctx c, final SortedSet<Integer> ids)
+		{
+			final RDBSnapshot.TableData td = from[ti].snap;
+			final Expr[] conj = conjAt[ti];
+			int[] cols = null;
+			long[] mins = null, maxs = null;
+			int n = 0;
+			for (int i = 0; i < conj.length; ++i)
+			{
+				final Expr e = conj[i];
+				if (! ((e instanceof Bin) && (((Bin) e).op >= OP_EQ) && (((Bin) e).op <= OP_GE) && ! ((Bin) e).nocase))
+					continue;
+
+				final Bin b = (Bin) e;
+				int op = b.op;
+				Col col = colOf(b.l, ti);
+				Expr other = b.r;
+				if ((col == null) || ! isKnownBefore(other, ti))
+				{
+					col = colOf(b.r, ti);
+					other = b.l;
+					switch (op)
+					{
+					case OP_LT:  op = OP_GT;  break;
+					case OP_LE:  op = OP_GE;  break;
+					case OP_GT:  op = OP_LT;  break;
+					case OP_GE:  op = OP_LE;  break;
+					}
+				}
+				if ((col == null) || col.isRowid || (col.col < 0) || (op == OP_NE)
+				    || ! isKnownBefore(other, ti) || ! td.isIntColumn(col.col))
+					continue;
+
+				final String v = other.eval(c);
+				if ((v == null) || ! isNumeric(v))
+					continue;  // comparisons with null are never true, and text would compare as text
+
+				// This term's inclusive range of integer column values
+				final double d = Double.parseDouble(v);
+				long min = Long.MIN_VALUE, max = Long.MAX_VALUE;
+				switch (op)
+				{
+				case OP_EQ:
+					if (d == Math.rint(d))
+						min = max = (long) d;
+					else
+						max = min - 1;  // empty
+					break;
+				case OP_LT:  max = (long) Math.ceil(d) - 1;  break;
+				case OP_LE:  max = (long) Math.floor(d);  break;
+				case OP_GT:  min = (long) Math.floor(d) + 1;  break;
+				default:     min = (long) Math.ceil(d);  // OP_GE
+				}
+
+				if (cols == null)
+				{
+					cols = new int[conj.length];
+					mins = new long[conj.length];
+					maxs = new long[conj.length];
+				}
+				cols[n] = col.col;
+				mins[n] = min;
+				maxs[n] = max;
+				++n;
+			}
+			if (n == 0)
+				return null;
+
+			return td.filter(ids, n, cols, mins, maxs);
+		}
+
+		/** Are all of these terms true for the current rows? */
+		private static boolean check(final Expr[] conj, final Ctx c)
+		{
+			for (int i = 0; i < conj.length; ++i)
+				if (! isTrue(conj[i].eval(c)))
+					return false;
+
+			return true;
+		}
+
+		/**
+		 * Find each combination of from-table rows matching the where clause, as nested loops.
+		 * @param c  Context, whose current rows will be set
+		 * @param ti  From table number to loop over; start with 0
+		 * @param sink  Receives each matching combination
+		 * @return false if {@code sink} stopped the scan
+		 */
+		boolean scan(final Ctx c, final int ti, final RowSink sink)
+		{
+			if (ti == from.length)
+			{
+				if ((ti == 0) && ! check(conjAt[0], c))
+					return true;
+				return sink.row(c);
+			}
+
+			final Table t = from[ti];
+			final Expr[] conj = conjAt[ti];
+			final KeyCursor cur = open(ti, c, (ti == 0) && orderDesc);
+			for (Integer rid = cur.next(); rid != null; rid = cur.next())
+			{
+				final String[] row = t.rows.get(rid);
+				if (row == null)
+					continue;
+
+				c.rows[ti] = row;
+				c.rowids[ti] = rid.intValue();
+				if (! check(conj, c))
+					continue;
+				if (! scan(c, ti + 1, sink))
+				{
+					c.rows[ti] = null;
+					return false;
+				}
+			}
+			c.rows[ti] = null;
+
+			return true;
+		}
+
+		/** Evaluate the output expressions for the current rows */
+		private String[] project(final Ctx c)
+		{
+			final String[] r = new String[out.length];
+			for (int i = 0; i < out.length; ++i)
+				r[i] = out[i].eval(c);
+
+			return r;
+		}
+
+		/** Key for {@link #distinct} */
+		private static String rowKey(final String[] r)
+		{
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < r.length; ++i)
+			{
+				sb.append((r[i] != null) ? normKey(r[i]) : "\u0000");
+				sb.append('\u0001');
+			}
+
+			return sb.toString();
+		}
+
+		/**
+		 * Run this query.
+		 * @param outer  Context of the enclosing query, or null
+		 * @param params  Values for {@code ?} placeholders, or null
+		 * @return  Result rows; may be empty, never null
+		 */
+		ArrayList<String[]> execute(final Ctx outer, final String[] params)
+		{
+			final Ctx c = new Ctx(outer, params, from.length);
+			final ArrayList<String[]> res = new ArrayList<String[]>();
+
+			if (aggs != null)
+			{
+				c.accs = new Acc[aggs.size()];
+				for (int i = 0; i < c.accs.length; ++i)
+					c.accs[i] = new Acc();
+				final String[][] lastRows = new String[from.length][];
+				final int[] lastIDs = new int[from.length];
+				scan(c, 0, new RowSink()
+				{
+					boolean row(final Ctx cc)
+					{
+						for (final Func f : aggs)
+							f.accumulate(cc);
+						System.arraycopy(cc.rows, 0, lastRows, 0, lastRows.length);
+						System.arraycopy(cc.rowids, 0, lastIDs, 0, lastIDs.length);
+						return true;
+					}
+				});
+				System.arraycopy(lastRows, 0, c.rows, 0, lastRows.length);
+				System.arraycopy(lastIDs, 0, c.rowids, 0, lastIDs.length);
+				c.aggDone = true;
+				res.add(project(c));
+
+				return res;
+			}
+
+			final HashSet<String> seen = (distinct) ? new HashSet<String>() : null;
+
+			if (sortTerms == null)
+			{
+				scan(c, 0, new RowSink()
+				{
+					boolean row(final Ctx cc)
+					{
+						final String[] r = project(cc);
+						if ((seen == null) || seen.add(rowKey(r)))
+							res.add(r);
+						return (limit <= 0) || (res.size() < limit);
+					}
+				});
+
+				return res;
+			}
+
+			final ArrayList<String[][]> sorting = new ArrayList<String[][]>();
+			scan(c, 0, new RowSink()
+			{
+				boolean row(final Ctx cc)
+				{
+					final String[] keys = new String[sortTerms.length];
+					for (int i = 0; i < keys.length; ++i)
+						keys[i] = sortTerms[i].e.eval(cc);
+					sorting.add(new String[][]{ keys, project(cc) });
+					return true;
+				}
+			});
+			Collections.sort(sorting, new Comparator<String[][]>()
+			{
+				public int compare(final String[][] a, final String[][] b)
+				{
+					for (int i = 0; i < sortTerms.length; ++i)
+					{
+						int cmp = compareNullable(a[0][i], b[0][i], sortTerms[i].e.isNocase());
+						if (cmp != 0)
+							return (sortTerms[i].desc) ? -cmp : cmp;
+					}
+					return 0;
+				}
+			});
+			for (final String[][] sr : sorting)
+			{
+				if ((seen == null) || seen.add(rowKey(sr[1])))
+					res.add(sr[1]);
+				if ((limit > 0) && (res.size() >= limit))
+					break;
+			}
+
+			return res;
+		}
+	}
+
+	//
+	// Statements
+	//
+
+	/** A parsed statement for {@link RDBMemAdapter#execStrucUpdate(String)} or the update methods */
+	private static abstract class Stmt
+	{
+		/**
+		 * Run this statement.
+		 * @param db  Db to change
+		 * @param params  Values for {@code ?} placeholders, or null
+		 * @throws SQLException if a constraint fails or other error
+		 */
+		abstract void exec(RDBMemAdapter db, String[] params)
+			throws SQLException;
+	}
+
+	/** {@code insert into t [(cols)] values (...) [, (...)]} or {@code insert into t [(cols)] select ...} */
+	private static final class InsertStmt extends Stmt
+	{
+		final Table t;
+
+		/** Column number for each value */
+		final int[] cols;
+
+		/** Rows of values, or null if {@link #src} */
+		final ArrayList<Expr[]> values;
+
+		/** Query to insert results of, or null if {@link #values} */
+		final Select src;
+
+		InsertStmt(final Table t, final int[] cols, final ArrayList<Expr[]> values, final Select src)
+		{
+			this.t = t;
+			this.cols = cols;
+			this.values = values;
+			this.src = src;
+		}
+
+		void exec(final RDBMemAdapter db, final String[] params)
+			throws SQLException
+		{
+			final ArrayList<String[]> rows;
+			if (src != null)
+			{
+				rows = src.execute(null, params);
+			} else {
+				rows = new ArrayList<String[]>();
+				final Ctx c = new Ctx(null, params, 0);
+				for (final Expr[] ve : values)
+				{
+					final String[] r = new String[ve.length];
+					for (int i = 0; i < ve.length; ++i)
+						r[i] = ve[i].eval(c);
+					rows.add(r);
+				}
+			}
+
+			for (final String[] r : rows)
+			{
+				if (r.length != cols.length)
+					throw new SQLException(r.length + " values for " + cols.length + " columns");
+
+				final String[] row = t.newRow();
+				for (int i = 0; i < cols.length; ++i)
+					row[cols[i]] = applyAffinity(t.aff[cols[i]], r[i]);
+				t.insert(row, 0);
+			}
+		}
+	}
+
+	/** {@code update t set c = expr, ... [where ...]} */
+	private static final class UpdateStmt extends Stmt
+	{
+		/** Scope with the table, where clause and set-values as {@link Select#out} */
+		final Select scope;
+
+		/** Column number for each value in {@link Select#out} */
+		final int[] cols;
+
+		UpdateStmt(final Select scope, final int[] cols)
+		{
+			this.scope = scope;
+			this.cols = cols;
+		}
+
+		void exec(final RDBMemAdapter db, final String[] params)
+			throws SQLException
+		{
+			final Table t = scope.from[0];
+			final ArrayList<Integer> keys = new ArrayList<Integer>();
+			final ArrayList<String[]> newRows = new ArrayList<String[]>();
+			final Ctx c = new Ctx(null, params, 1);
+			scope.scan(c, 0, new RowSink()
+			{
+				boolean row(final Ctx cc)
+				{
+					final String[] r = cc.rows[0].clone();
+					for (int i = 0; i < cols.length; ++i)
+						r[cols[i]] = applyAffinity(t.aff[cols[i]], scope.out[i].eval(cc));
+					keys.add(Integer.valueOf(cc.rowids[0]));
+					newRows.add(r);
+					return true;
+				}
+			});
+
+			for (int i = 0; i < keys.size(); ++i)
+				t.replace(keys.get(i), newRows.get(i));
+		}
+	}
+
+	/** {@code delete from t [where ...]} */
+	private static final class DeleteStmt extends Stmt
+	{
+		final Select scope;
+
+		DeleteStmt(final Select scope)
+		{
+			this.scope = scope;
+		}
+
+		void exec(final RDBMemAdapter db, final String[] params)
+		{
+			final ArrayList<Integer> keys = new ArrayList<Integer>();
+			scope.scan(new Ctx(null, params, 1), 0, new RowSink()
+			{
+				boolean row(final Ctx cc)
+				{
+					keys.add(Integer.valueOf(cc.rowids[0]));
+					return true;
+				}
+			});
+
+			final Table t = scope.from[0];
+			for (final Integer k : keys)
+				t.delete(k.intValue());
+		}
+	}
+
+	//
+	// Parsing
+	//
+
+	/** Token from {@link Parser#tokenize(String)} */
+	private static final class Tok
+	{
+		/** Type: {@code 'i'} identifier or keyword, {@code 'n'} number, {@code 's'} string,
+		 *  {@code '?'} placeholder, {@code 'o'} operator, {@code 'e'} end */
+		final char type;
+
+		final String text;
+
+		/** For identifiers, was it quoted and so never a keyword? */
+		final boolean quoted;
+
+		Tok(final char type, final String text, final boolean quoted)
+		{
+			this.type = type;
+			this.text = text;
+			this.quoted = quoted;
+		}
+	}
+
+	/** Words which end an expression or table list, so they aren't taken as table aliases */
+	private static final String[] NOT_ALIASES =
+		{ "where", "order", "limit", "group", "on", "join", "inner", "left", "set", "values", "select" };
+
+	/** Parser for the SQL subset described in the class javadoc */
+	private static final class Parser
+	{
+		private final RDBMemAdapter db;
+		private final ArrayList<Tok> toks;
+		private int pos;
+
+		/** Number of {@code ?} placeholders so far */
+		private int nParams;
+
+		/** Current query scope, for resolving columns */
+		private Select scope;
+
+		Parser(final RDBMemAdapter db, final String sql)
+			throws SQLException
+		{
+			this.db = db;
+			toks = tokenize(sql);
+		}
+
+		private static ArrayList<Tok> tokenize(final String sql)
+			throws SQLException
+		{
+			final ArrayList<Tok> toks = new ArrayList<Tok>();
+			final int L = sql.length();
+			int i = 0;
+			while (i < L)
+			{
+				final char ch = sql.charAt(i);
+				final char ch2 = (i + 1 < L) ? sql.charAt(i + 1) : '\0';
+				if (Character.isWhitespace(ch))
+				{
+					++i;
+				}
+				else if ((ch == '-') && (ch2 == '-'))
+				{
+					while ((i < L) && (sql.charAt(i) != '\n'))
+						++i;
+				}
+				else if (Character.isLetter(ch) || (ch == '_'))
+				{
+					final int st = i;
+					while ((i < L) && (Character.isLetterOrDigit(sql.charAt(i))
+					       || (sql.charAt(i) == '_') || (sql.charAt(i) == '$')))
+						++i;
+					toks.add(new Tok('i', sql.substring(st, i), false));
+				}
+				else if (Character.isDigit(ch) || ((ch == '.') && Character.isDigit(ch2)))
+				{
+					final int st = i;
+					while ((i < L) && (Character.isDigit(sql.charAt(i)) || (sql.charAt(i) == '.')))
+						++i;
+					if ((i < L) && ((sql.charAt(i) == 'e') || (sql.charAt(i) == 'E')))
+					{
+						++i;
+						if ((i < L) && ((sql.charAt(i) == '+') || (sql.charAt(i) == '-')))
+							++i;
+						while ((i < L) && Character.isDigit(sql.charAt(i)))
+							++i;
+					}
+					toks.add(new Tok('n', sql.substring(st, i), false));
+				}
+				else if ((ch == '\'') || (ch == '"') || (ch == '`') || (ch == '['))
+				{
+					final char close = (ch == '[') ? ']' : ch;
+					final StringBuilder sb = new StringBuilder();
+					++i;
+					for (;;)
+					{
+						if (i >= L)
+							throw new SQLException("unterminated quote: " + sql);
+						final char c = sql.charAt(i++);
+						if (c == close)
+						{
+							if ((close != ']') && (i < L) && (sql.charAt(i) == close))
+							{
+								sb.append(c);
+								++i;
+								continue;
+							}
+							break;
+						}
+						sb.append(c);
+					}
+					toks.add(new Tok((ch == '\'') ? 's' : 'i', sb.toString(), true));
+				}
+				else if (ch == '?')
+				{
+					toks.add(new Tok('?', "?", false));
+					++i;
+				}
+				else
+				{
+					final String two = (i + 1 < L) ? sql.substring(i, i + 2) : "";
+					if (two.equals("<=") || two.equals(">=") || two.equals("<>") || two.equals("!=")
+					    || two.equals("==") || two.equals("||"))
+					{
+						toks.add(new Tok('o', two, false));
+						i += 2;
+					}
+					else if ("=<>(),*+-/.;%".indexOf(ch) >= 0)
+					{
+						toks.add(new Tok('o', String.valueOf(ch), false));
+						++i;
+					}
+					else
+					{
+						throw new SQLException("unrecognized token at: " + sql.substring(i));
+					}
+				}
+			}
+			toks.add(new Tok('e', "", false));
+
+			return toks;
+		}
+
+		private Tok peek()
+		{
+			return toks.get(pos);
+		}
+
+		private Tok peek(final int ahead)
+		{
+			final int i = pos + ahead;
+			return toks.get((i < toks.size()) ? i : (toks.size() - 1));
+		}
+
+		private static boolean isKw(final Tok t, final String kw)
+		{
+			return (t.type == 'i') && ! t.quoted && t.text.equalsIgnoreCase(kw);
+		}
+
+		private boolean acceptKw(final String kw)
+		{
+			if (! isKw(peek(), kw))
+				return false;
+			++pos;
+			return true;
+		}
+
+		private void expectKw(final String kw)
+			throws SQLException
+		{
+			if (! acceptKw(kw))
+				throw syntax("expected " + kw);
+		}
+
+		private boolean acceptOp(final String op)
+		{
+			final Tok t = peek();
+			if ((t.type != 'o') || ! t.text.equals(op))
+				return false;
+			++pos;
+			return true;
+		}
+
+		private void expectOp(final String op)
+			throws SQLException
+		{
+			if (! acceptOp(op))
+				throw syntax("expected " + op);
+		}
+
+		private String expectIdent()
+			throws SQLException
+		{
+			final Tok t = peek();
+			if (t.type != 'i')
+				throw syntax("expected name");
+			++pos;
+			return t.text;
+		}
+
+		private void expectEnd()
+			throws SQLException
+		{
+			acceptOp(";");
+			if (peek().type != 'e')
+				throw syntax("unexpected");
+		}
+
+		private SQLException syntax(final String msg)
+		{
+			final StringBuilder sb = new StringBuilder("syntax error: ");
+			sb.append(msg);
+			sb.append(" near \"");
+			sb.append(peek().text);
+			sb.append('"');
+
+			return new SQLException(sb.toString());
+		}
+
+		/** Parse the next token as a table name */
+		private Table parseTableName()
+			throws SQLException
+		{
+			return db.getTable(expectIdent());
+		}
+
+		/**
+		 * Parse a whole query for a getRows method.
+		 * @return the query, resolved and planned
+		 */
+		Select parseQuery()
+			throws SQLException
+		{
+			final Select s = parseSelect(null, true);
+			expectEnd();
+			return s;
+		}
+
+		/**
+		 * Parse {@code select ... from ... [where ...] [order by ...] [limit n]}.
+		 * @param outer  Enclosing query, or null
+		 * @param lenientOut  Passed to {@link Select#finish(boolean)}
+		 */
+		private Select parseSelect(final Select outer, final boolean lenientOut)
+			throws SQLException
+		{
+			expectKw("select");
+			final Select s = new Select(outer);
+			final Select prevScope = scope;
+			scope = s;
+
+			s.distinct = acceptKw("distinct");
+			acceptKw("all");
+			final ArrayList<Expr> out = new ArrayList<Expr>();
+			boolean star = false;
+			do
+			{
+				if (acceptOp("*"))
+				{
+					star = true;
+				} else {
+					out.add(parseExpr());
+					if (acceptKw("as"))
+						expectIdent();
+				}
+			} while (acceptOp(","));
+
+			if (acceptKw("from"))
+			{
+				final ArrayList<Table> from = new ArrayList<Table>();
+				final ArrayList<String> aliases = new ArrayList<String>();
+				do
+				{
+					from.add(parseTableName());
+					acceptKw("as");
+					final Tok t = peek();
+					String alias = null;
+					if ((t.type == 'i') && (t.quoted || ! isNotAlias(t.text)))
+					{
+						alias = t.text;
+						++pos;
+					}
+					aliases.add(alias);
+				} while (acceptOp(","));
+				if (from.size() > 31)
+					throw new SQLException("too many tables");
+				s.from = from.toArray(NO_TABLES);
+				s.aliases = aliases.toArray(new String[aliases.size()]);
+			}
+
+			if (star)
+			{
+				for (int ti = 0; ti < s.from.length; ++ti)
+				{
+					final Table t = s.from[ti];
+					for (int c = 0; c < t.cols.length; ++c)
+					{
+						final Col col = new Col(null, t.cols[c]);
+						col.tab = ti;
+						col.col = c;
+						col.isRowid = (c == t.idCol);
+						col.resolved = true;
+						out.add(col);
+					}
+				}
+			}
+			s.out = out.toArray(NO_EXPRS);
+
+			if (acceptKw("where"))
+				s.where = parseExpr();
+			if (acceptKw("order"))
+			{
+				expectKw("by");
+				final ArrayList<Order> order = new ArrayList<Order>();
+				do
+				{
+					final Expr e = parseExpr();
+					boolean desc = false;
+					if (acceptKw("desc"))
+						desc = true;
+					else
+						acceptKw("asc");
+					order.add(new Order(e, desc));
+				} while (acceptOp(","));
+				s.order = order.toArray(new Order[order.size()]);
+			}
+			if (acceptKw("limit"))
+			{
+				final Tok t = peek();
+				if (t.type != 'n')
+					throw syntax("expected limit number");
+				++pos;
+				s.limit = Integer.parseInt(t.text);
+			}
+
+			s.finish(lenientOut);
+			scope = prevScope;
+
+			return s;
+		}
+
+		private static boolean isNotAlias(final String word)
+		{
+			for (int i = 0; i < NOT_ALIASES.length; ++i)
+				if (NOT_ALIASES[i].equalsIgnoreCase(word))
+					return true;
+
+			return false;
+		}
+
+		private Expr parseExpr()
+			throws SQLException
+		{
+			Expr l = parseAnd();
+			while (acceptKw("or"))
+				l = new Bin(OP_OR, l, parseAnd());
+
+			return l;
+		}
+
+		private Expr parseAnd()
+			throws SQLException
+		{
+			Expr l = parseNot();
+			while (acceptKw("and"))
+				l = new Bin(OP_AND, l, parseNot());
+
+			return l;
+		}
+
+		private Expr parseNot()
+			throws SQLException
+		{
+			if (acceptKw("not"))
+				return new Unary(true, parseNot());
+
+			return parseCompare();
+		}
+
+		private Expr parseCompare()
+			throws SQLException
+		{
+			final Expr l = parseAdd();
+			final Tok t = peek();
+			if (t.type == 'o')
+			{
+				int op = 0;
+				if (t.text.equals("=") || t.text.equals("=="))
+					op = OP_EQ;
+				else if (t.text.equals("<>") || t.text.equals("!="))
+					op = OP_NE;
+				else if (t.text.equals("<"))
+					op = OP_LT;
+				else if (t.text.equals("<="))
+					op = OP_LE;
+				else if (t.text.equals(">"))
+					op = OP_GT;
+				else if (t.text.equals(">="))
+					op = OP_GE;
+				if (op != 0)
+				{
+					++pos;
+					return new Bin(op, l, parseAdd());
+				}
+
+				return l;
+			}
+
+			if (acceptKw("is"))
+			{
+				final boolean negate = acceptKw("not");
+				expectKw("null");
+				return new IsNull(l, negate);
+			}
+			if (acceptKw("isnull"))
+				return new IsNull(l, false);
+			if (acceptKw("notnull"))
+				return new IsNull(l, true);
+
+			final boolean negate = acceptKw("not");
+			if (acceptKw("in"))
+				return parseIn(l, negate);
+			if (acceptKw("like"))
+			{
+				final Expr e = new Match(l, parseAdd(), true);
+				return (negate) ? new Unary(true, e) : e;
+			}
+			if (acceptKw("between"))
+			{
+				final Expr lo = parseAdd();
+				expectKw("and");
+				final Expr hi = parseAdd();
+				final Expr e = new Bin(OP_AND, new Bin(OP_GE, l, lo), new Bin(OP_LE, l, hi));
+				return (negate) ? new Unary(true, e) : e;
+			}
+			if (negate)
+				throw syntax("expected in, like or between after not");
+			if (acceptKw("match"))
+				return new Match(l, parseAdd(), false);
+
+			return l;
+		}
+
+		/** Parse the list or subquery after {@code in} */
+		private Expr parseIn(final Expr l, final boolean negate)
+			throws SQLException
+		{
+			expectOp("(");
+			if (isKw(peek(), "select"))
+			{
+				final Select sub = parseSelect(scope, false);
+				expectOp(")");
+				return new In(l, null, sub, negate);
+			}
+
+			final ArrayList<Expr> list = new ArrayList<Expr>();
+			if (! acceptOp(")"))
+			{
+				do
+				{
+					list.add(parseExpr());
+				} while (acceptOp(","));
+				expectOp(")");
+			}
+
+			return new In(l, list.toArray(NO_EXPRS), null, negate);
+		}
+
+		private Expr parseAdd()
+			throws SQLException
+		{
+			Expr l = parseMul();
+			for (;;)
+			{
+				if (acceptOp("+"))
+					l = new Bin(OP_ADD, l, parseMul());
+				else if (acceptOp("-"))
+					l = new Bin(OP_SUB, l, parseMul());
+				else if (acceptOp("||"))
+					l = new Bin(OP_CONCAT, l, parseMul());
+				else
+					return l;
+			}
+		}
+
+		private Expr parseMul()
+			throws SQLException
+		{
+			Expr l = parseUnary();
+			for (;;)
+			{
+				if (acceptOp("*"))
+					l = new Bin(OP_MUL, l, parseUnary());
+				else if (acceptOp("/"))
+					l = new Bin(OP_DIV, l, parseUnary());
+				else if (acceptOp("%"))
+					l = new Bin(OP_MOD, l, parseUnary());
+				else
+					return l;
+			}
+		}
+
+		private Expr parseUnary()
+			throws SQLException
+		{
+			if (acceptOp("-"))
+			{
+				final Tok t = peek();
+				if (t.type == 'n')
+				{
+					++pos;
+					return new Lit("-" + t.text);
+				}
+				return new Unary(false, parseUnary());
+			}
+			if (acceptOp("+"))
+				return parseUnary();
+
+			Expr e = parsePrimary();
+			while (acceptKw("collate"))
+			{
+				final String coll = expectIdent();
+				if (coll.equalsIgnoreCase("nocase"))
+					e = new Nocase(e);
+				else if (! (coll.equalsIgnoreCase("binary") || coll.equalsIgnoreCase("rtrim")))
+					throw new SQLException("no such collation sequence: " + coll);
+			}
+
+			return e;
+		}
+
+		private Expr parsePrimary()
+			throws SQLException
+		{
+			final Tok t = peek();
+			switch (t.type)
+			{
+			case 'n':
+			case 's':
+				++pos;
+				return new Lit(t.text);
+
+			case '?':
+				++pos;
+				return new Param(nParams++);
+
+			case 'o':
+				if (t.text.equals("("))
+				{
+					++pos;
+					if (isKw(peek(), "select"))
+					{
+						final Select sub = parseSelect(scope, false);
+						expectOp(")");
+						return new Scalar(sub);
+					}
+					final Expr e = parseExpr();
+					expectOp(")");
+					return e;
+				}
+				throw syntax("unexpected");
+
+			case 'i':
+				break;
+
+			default:
+				throw syntax("unexpected end");
+			}
+
+			++pos;
+			if (! t.quoted && t.text.equalsIgnoreCase("null"))
+				return new Lit(null);
+
+			if (acceptOp("("))
+			{
+				final String fname = t.text.toLowerCase(Locale.US);
+				final ArrayList<Expr> args = new ArrayList<Expr>();
+				if (! acceptOp("*"))
+				{
+					acceptKw("distinct");
+					if (! isCloseParen(peek()))
+					{
+						do
+						{
+							args.add(parseExpr());
+						} while (acceptOp(","));
+					}
+				}
+				expectOp(")");
+
+				final Func f = new Func(fname, args.toArray(NO_EXPRS));
+				if (Func.isAggregate(fname, args.size()) && ((args.size() == 1) || fname.equals("count")))
+				{
+					if (scope.aggs == null)
+						scope.aggs = new ArrayList<Func>();
+					f.slot = scope.aggs.size();
+					scope.aggs.add(f);
+				}
+				else if (! Func.isScalar(fname))
+				{
+					throw new SQLException("no such function: " + t.text);
+				}
+
+				return f;
+			}
+
+			final Col col;
+			if (acceptOp("."))
+				col = new Col(t.text, expectIdent());
+			else
+				col = new Col(null, t.text);
+			scope.pending.add(col);
+
+			return col;
+		}
+
+		private static boolean isCloseParen(final Tok t)
+		{
+			return (t.type == 'o') && t.text.equals(")");
+		}
+
+		/**
+		 * Parse a statement for {@link RDBMemAdapter#execStrucUpdate(String)} or the update methods.
+		 * DDL statements such as {@code create table} are run immediately, and return null.
+		 * @param sql  Statement's text, to store in {@code sqlite_master} by {@code create} statements
+		 * @return a {@link Stmt} to run, or null if already done
+		 */
+		Object parseStatement(final String sql)
+			throws SQLException
+		{
+			if (acceptKw("select"))
+				throw new SQLException("query not allowed here");
+
+			if (acceptKw("insert"))
+			{
+				acceptKw("or");  // "insert or replace" etc aren't supported
+				expectKw("into");
+				final Table t = parseTableName();
+				int[] cols;
+				if (acceptOp("("))
+				{
+					final ArrayList<Integer> cl = new ArrayList<Integer>();
+					do
+					{
+						final String cname = expectIdent();
+						final int c = t.colNum(cname);
+						if (c < 0)
+							throw new SQLException("table " + t.name + " has no column named " + cname);
+						cl.add(Integer.valueOf(c));
+					} while (acceptOp(","));
+					expectOp(")");
+					cols = new int[cl.size()];
+					for (int i = 0; i < cols.length; ++i)
+						cols[i] = cl.get(i).intValue();
+				} else {
+					cols = new int[t.cols.length];
+					for (int i = 0; i < cols.length; ++i)
+						cols[i] = i;
+				}
+
+				final Stmt st;
+				if (isKw(peek(), "select"))
+				{
+					st = new InsertStmt(t, cols, null, parseSelect(null, false));
+				} else {
+					expectKw("values");
+					scope = new Select(null);
+					final ArrayList<Expr[]> values = new ArrayList<Expr[]>();
+					do
+					{
+						expectOp("(");
+						final ArrayList<Expr> vl = new ArrayList<Expr>();
+						do
+						{
+							vl.add(parseExpr());
+						} while (acceptOp(","));
+						expectOp(")");
+						values.add(vl.toArray(NO_EXPRS));
+					} while (acceptOp(","));
+					scope.finish(false);
+					st = new InsertStmt(t, cols, values, null);
+				}
+				expectEnd();
+				return st;
+			}
+
+			if (acceptKw("update"))
+			{
+				final Select s = new Select(null);
+				s.from = new Table[]{ parseTableName() };
+				s.aliases = new String[1];
+				scope = s;
+				expectKw("set");
+				final ArrayList<Integer> cl = new ArrayList<Integer>();
+				final ArrayList<Expr> vals = new ArrayList<Expr>();
+				do
+				{
+					final String cname = expectIdent();
+					final int c = s.from[0].colNum(cname);
+					if (c < 0)
+						throw new SQLException("no such column: " + cname);
+					cl.add(Integer.valueOf(c));
+					expectOp("=");
+					vals.add(parseExpr());
+				} while (acceptOp(","));
+				if (acceptKw("where"))
+					s.where = parseExpr();
+				expectEnd();
+				s.out = vals.toArray(NO_EXPRS);
+				s.finish(false);
+				final int[] cols = new int[cl.size()];
+				for (int i = 0; i < cols.length; ++i)
+					cols[i] = cl.get(i).intValue();
+
+				return new UpdateStmt(s, cols);
+			}
+
+			if (acceptKw("delete"))
+			{
+				expectKw("from");
+				final Select s = new Select(null);
+				s.from = new Table[]{ parseTableName() };
+				s.aliases = new String[1];
+				scope = s;
+				if (acceptKw("where"))
+					s.where = parseExpr();
+				expectEnd();
+				s.finish(false);
+
+				return new DeleteStmt(s);
+			}
+
+			if (acceptKw("pragma"))
+			{
+				final String pname = expectIdent();
+				if (pname.equalsIgnoreCase("user_version") && acceptOp("="))
+				{
+					final Tok t = peek();
+					if (t.type != 'n')
+						throw syntax("expected version number");
+					db.schemaVersion = Integer.parseInt(t.text);
+				}
+				return null;  // other pragmas have no effect here
+			}
+
+			if (acceptKw("analyze") || acceptKw("vacuum") || acceptKw("reindex")
+			    || acceptKw("begin") || acceptKw("commit") || acceptKw("end"))
+				return null;
+
+			if (acceptKw("rollback"))
+				throw new SQLException("rollback not supported");
+
+			if (acceptKw("create"))
+			{
+				final boolean unique = acceptKw("unique");
+				if (acceptKw("index"))
+				{
+					parseCreateIndex(sql, unique);
+					return null;
+				}
+				if (unique)
+					throw syntax("expected index");
+				acceptKw("temp");
+				acceptKw("temporary");
+				final boolean isVirtual = acceptKw("virtual");
+				expectKw("table");
+				if (isVirtual)
+					parseCreateVirtualTable(sql);
+				else
+					parseCreateTable(sql);
+				return null;
+			}
+
+			if (acceptKw("drop"))
+			{
+				final boolean isIndex = acceptKw("index");
+				if (! isIndex)
+					expectKw("table");
+				boolean ifExists = false;
+				if (acceptKw("if"))
+				{
+					expectKw("exists");
+					ifExists = true;
+				}
+				final String name = expectIdent();
+				final String lname = name.toLowerCase(Locale.US);
+				expectEnd();
+
+				if (isIndex)
+				{
+					final IndexDef idx = db.indexes.remove(lname);
+					if (idx == null)
+					{
+						if (! ifExists)
+							throw new SQLException("no such index: " + name);
+						return null;
+					}
+					if (idx.unique != null)
+						idx.table.uniques.remove(idx.unique);
+					db.masterRemove(name, false);
+				} else {
+					final Table t = db.tables.get(lname);
+					if ((t == null) || lname.equals(TABNAME_MASTER))
+					{
+						if (! ifExists)
+							throw new SQLException("no such table: " + name);
+						return null;
+					}
+					db.tables.remove(lname);
+					final Iterator<IndexDef> it = db.indexes.values().iterator();
+					while (it.hasNext())
+						if (it.next().table == t)
+							it.remove();
+					db.masterRemove(name, true);
+				}
+				db.schemaChanged();
+
+				return null;
+			}
+
+			if (acceptKw("alter"))
+			{
+				expectKw("table");
+				final Table t = parseTableName();
+				if (acceptKw("rename"))
+				{
+					expectKw("to");
+					final String newName = expectIdent();
+					expectEnd();
+					final String lnew = newName.toLowerCase(Locale.US);
+					if (db.tables.containsKey(lnew))
+						throw new SQLException("there is already another table named " + newName);
+					db.tables.remove(t.name.toLowerCase(Locale.US));
+					db.masterRemove(t.name, false);
+					t.name = newName;
+					db.tables.put(lnew, t);
+					db.masterAdd("table", newName, newName, sql);
+				} else {
+					expectKw("add");
+					acceptKw("column");
+					parseColumnDef(t);
+					expectEnd();
+					db.masterAdd("alter", t.name, t.name, sql);
+				}
+				db.schemaChanged();
+
+				return null;
+			}
+
+			throw syntax("unsupported statement");
+		}
+
+		/**
+		 * Parse the rest of {@code create table} and create the table.
+		 * @param sql  Statement text for {@code sqlite_master}
+		 */
+		private void parseCreateTable(final String sql)
+			throws SQLException
+		{
+			final boolean ifNotExists = parseIfNotExists();
+			final String name = expectIdent();
+			final String lname = name.toLowerCase(Locale.US);
+			if (db.tables.containsKey(lname))
+			{
+				if (ifNotExists)
+					return;
+				throw new SQLException("table " + name + " already exists");
+			}
+
+			final Table t = new Table(db, name);
+			expectOp("(");
+			do
+			{
+				if (acceptKw("primary"))
+				{
+					expectKw("key");
+					final int[] cols = parseColumnList(t);
+					if ((cols.length == 1) && (t.aff[cols[0]] == 'I'))
+						t.idCol = cols[0];
+					else
+						t.addUnique(new Unique("primary key", cols));
+					skipToComma();
+				}
+				else if (acceptKw("unique"))
+				{
+					t.addUnique(new Unique("unique", parseColumnList(t)));
+					skipToComma();
+				}
+				else if (acceptKw("constraint") || acceptKw("foreign") || acceptKw("check"))
+				{
+					skipToComma();
+				} else {
+					parseColumnDef(t);
+				}
+			} while (acceptOp(","));
+			expectOp(")");
+			expectEnd();
+
+			db.tables.put(lname, t);
+			db.masterAdd("table", name, name, sql);
+			db.schemaChanged();
+		}
+
+		private boolean parseIfNotExists()
+			throws SQLException
+		{
+			if (! acceptKw("if"))
+				return false;
+
+			expectKw("not");
+			expectKw("exists");
+			return true;
+		}
+
+		/** Parse {@code (col, col, ...)} within a table */
+		private int[] parseColumnList(final Table t)
+			throws SQLException
+		{
+			expectOp("(");
+			final ArrayList<Integer> cl = new ArrayList<Integer>();
+			do
+			{
+				final String cname = expectIdent();
+				final int c = t.colNum(cname);
+				if (c < 0)
+					throw new SQLException("no such column: " + cname);
+				cl.add(Integer.valueOf(c));
+				while (acceptKw("collate") || acceptKw("asc") || acceptKw("desc"))
+					if (peek().type == 'i' && ! isKw(peek(), "asc") && ! isKw(peek(), "desc"))
+						++pos;
+			} while (acceptOp(","));
+			expectOp(")");
+
+			final int[] cols = new int[cl.size()];
+			for (int i = 0; i < cols.length; ++i)
+				cols[i] = cl.get(i).intValue();
+
+			return cols;
+		}
+
+		/** Skip tokens to the next {@code ,} or {@code )} not within parentheses */
+		private void skipToComma()
+		{
+			int depth = 0;
+			for (;;)
+			{
+				final Tok t = peek();
+				if (t.type == 'e')
+					return;
+				if (t.type == 'o')
+				{
+					if (t.text.equals("("))
+						++depth;
+					else if (t.text.equals(")"))
+					{
+						if (depth == 0)
+							return;
+						--depth;
+					}
+					else if (t.text.equals(",") && (depth == 0))
+						return;
+				}
+				++pos;
+			}
+		}
+
+		/** Parse a column definition and add it to the table: {@code name [type] [constraints]} */
+		private void parseColumnDef(final Table t)
+			throws SQLException
+		{
+			final String cname = expectIdent();
+			if (t.colNum(cname) >= 0)
+				throw new SQLException("duplicate column name: " + cname);
+
+			// Type: words until a constraint keyword, with optional (n) or (n, m)
+			final StringBuilder type = new StringBuilder();
+			while ((peek().type == 'i') && ! peek().quoted && ! isConstraintWord(peek().text))
+			{
+				if (type.length() > 0)
+					type.append(' ');
+				type.append(peek().text);
+				++pos;
+			}
+			if (acceptOp("("))
+			{
+				while (! acceptOp(")"))
+				{
+					if (peek().type == 'e')
+						throw syntax("expected )");
+					++pos;
+				}
+			}
+
+			final char affinity = affinityOf(type.toString());
+			boolean notnull = false, pk = false, autoinc = false, unique = false;
+			String def = null;
+			for (;;)
+			{
+				if (acceptKw("constraint"))
+				{
+					expectIdent();
+				}
+				else if (acceptKw("primary"))
+				{
+					expectKw("key");
+					acceptKw("asc");
+					acceptKw("desc");
+					pk = true;
+					if (acceptKw("autoincrement"))
+						autoinc = true;
+				}
+				else if (acceptKw("not"))
+				{
+					expectKw("null");
+					notnull = true;
+				}
+				else if (acceptKw("null"))
+				{
+				}
+				else if (acceptKw("unique"))
+				{
+					unique = true;
+				}
+				else if (acceptKw("default"))
+				{
+					def = parseUnary().eval(new Ctx(null, null, 0));
+				}
+				else if (acceptKw("collate"))
+				{
+					expectIdent();
+				}
+				else if (acceptKw("references") || acceptKw("check"))
+				{
+					skipToComma();
+				}
+				else
+				{
+					break;
+				}
+			}
+
+			final int c;
+			try
+			{
+				c = t.addColumn(cname, affinity, def, notnull);
+			} catch (IllegalArgumentException e) {
+				throw new SQLException(e.getMessage());
+			}
+			if (pk)
+			{
+				if (type.toString().equalsIgnoreCase("integer") && (t.idCol == -1) && t.rows.isEmpty())
+				{
+					t.idCol = c;
+					t.autoIncrement = autoinc;
+				} else {
+					t.addUnique(new Unique(cname, new int[]{ c }));
+				}
+			}
+			if (unique)
+			{
+				t.addUnique(new Unique(cname, new int[]{ c }));
+				t.ensureIndex(c);
+			}
+		}
+
+		private static boolean isConstraintWord(final String w)
+		{
+			return w.equalsIgnoreCase("primary") || w.equalsIgnoreCase("not") || w.equalsIgnoreCase("null")
+				|| w.equalsIgnoreCase("unique") || w.equalsIgnoreCase("default") || w.equalsIgnoreCase("collate")
+				|| w.equalsIgnoreCase("references") || w.equalsIgnoreCase("check")
+				|| w.equalsIgnoreCase("constraint");
+		}
+
+		/** sqlite's column type affinity rules */
+		private static char affinityOf(final String type)
+		{
+			final String t = type.toUpperCase(Locale.US);
+			if (t.indexOf("INT") >= 0)
+				return 'I';
+			if ((t.indexOf("CHAR") >= 0) || (t.indexOf("CLOB") >= 0) || (t.indexOf("TEXT") >= 0))
+				return 'T';
+			if ((t.length() == 0) || (t.indexOf("BLOB") >= 0))
+				return 'B';
+			if ((t.indexOf("REAL") >= 0) || (t.indexOf("FLOA") >= 0) || (t.indexOf("DOUB") >= 0))
+				return 'R';
+
+			return 'N';
+		}
+
+		/** Parse the rest of {@code create virtual table name using fts4(cols)} */
+		private void parseCreateVirtualTable(final String sql)
+			throws SQLException
+		{
+			final boolean ifNotExists = parseIfNotExists();
+			final String name = expectIdent();
+			final String lname = name.toLowerCase(Locale.US);
+			expectKw("using");
+			final String module = expectIdent();
+			if (! (module.equalsIgnoreCase("fts3") || module.equalsIgnoreCase("fts4")))
+				throw new SQLException("no such module: " + module);
+			if (db.tables.containsKey(lname))
+			{
+				if (ifNotExists)
+					return;
+				throw new SQLException("table " + name + " already exists");
+			}
+
+			final Table t = new Table(db, name);
+			t.isFTS = true;
+			t.idCol = t.addColumn("docid", 'I', null, false);
+			expectOp("(");
+			do
+			{
+				final String cname = expectIdent();
+				if (acceptOp("="))
+					++pos;  // option such as tokenize=simple
+				else
+					t.addColumn(cname, 'B', null, false);
+				skipToComma();
+			} while (acceptOp(","));
+			expectOp(")");
+			expectEnd();
+
+			db.tables.put(lname, t);
+			db.masterAdd("table", name, name, sql);
+			db.schemaChanged();
+		}
+
+		/** Parse the rest of {@code create [unique] index name on table(cols)} */
+		private void parseCreateIndex(final String sql, final boolean unique)
+			throws SQLException
+		{
+			final boolean ifNotExists = parseIfNotExists();
+			final String name = expectIdent();
+			final String lname = name.toLowerCase(Locale.US);
+			expectKw("on");
+			final Table t = parseTableName();
+			final int[] cols = parseColumnList(t);
+			expectEnd();
+
+			if (db.indexes.containsKey(lname))
+			{
+				if (ifNotExists)
+					return;
+				throw new SQLException("index " + name + " already exists");
+			}
+
+			Unique u = null;
+			if (unique)
+			{
+				u = new Unique(name, cols);
+				t.addUnique(u);
+			}
+			t.ensureIndex(cols[0]);
+			db.indexes.put(lname, new IndexDef(t, u));
+			db.masterAdd("index", name, t.name, sql);
+			db.schemaChanged();
+		}
+	}
+
+}  // public class RDBMemAdapter
@@ -0,0 +1,811 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db.mem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.shadowlands.roadtrip.db.RDBAdapter;
+
+/**
+ * Read-only columnar snapshot file of a logbook db, which {@link RDBMemAdapter} can memory-map
+ * and query without reading all rows into the heap. Written and opened through
+ * {@link RDBMemAdapter#writeSnapshot(RDBAdapter, File)} and {@link RDBMemAdapter#openSnapshot(File)}.
+ *<P>
+ * File format (big-endian, strings as int byte length + UTF-8):
+ *<UL>
+ * <LI> Header: {@link #MAGIC}, {@link #FORMAT_VERSION}, db schema version,
+ *      count and text of the {@code create} statements for tables and indexes, table count
+ * <LI> Each table: Name, row count, column count, column names, column types ({@link #COL_INT} or {@link #COL_STR});
+ *      rowids in ascending order; each column's values as an int per row; the table's string pool;
+ *      sorted indexes
+ *</UL>
+ * A {@link #COL_INT} column holds values which are all canonical integers, or {@link #NULL_INT} for null.
+ * A {@link #COL_STR} column holds each value's byte offset into the string pool, or -1 for null;
+ * each distinct string is stored once per table.
+ * Each {@link #COL_INT} column has a sorted index: Its non-null rows' positions, ordered by value and then rowid,
+ * so that {@link TableData#lookup(int, String)} can find a vehicle's trips or a trip's stops by binary search.
+ *<P>
+ * Rows are read from the mapped file only when a query reaches them; see {@link TableData#rows()}.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+final class RDBSnapshot
+{
+	/** Magic number at start of file: "RTRS" */
+	static final int MAGIC = 0x52545253;
+
+	/** File format version written by this class */
+	static final int FORMAT_VERSION = 1;
+
+	/** Column type: Integer values */
+	private static final byte COL_INT = 0;
+
+	/** Column type: Offsets into the string pool */
+	private static final byte COL_STR = 1;
+
+	/** Value of a null in a {@link #COL_INT} column */
+	private static final int NULL_INT = Integer.MIN_VALUE;
+
+	/** Db schema version, from {@code PRAGMA user_version} */
+	final int schemaVersion;
+
+	/** {@code create table} statements, then {@code create index} statements */
+	final String[] schemaSQL;
+
+	/** Each table's data, in file order */
+	final TableData[] tables;
+
+	private RDBSnapshot(final int schemaVersion, final String[] schemaSQL, final TableData[] tables)
+	{
+		this.schemaVersion = schemaVersion;
+		this.schemaSQL = schemaSQL;
+		this.tables = tables;
+	}
+
+	/**
+	 * Does this file start with the snapshot {@link #MAGIC} number?
+	 * @param f  File to check
+	 * @return true if {@code f} is a readable snapshot file; false if not, or if it can't be read
+	 */
+	static boolean isSnapshot(final File f)
+	{
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new FileInputStream(f));
+			return (in.readInt() == MAGIC);
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (in != null)
+				try { in.close(); } catch (IOException e) {}
+		}
+	}
+
+	//
+	// Writing
+	//
+
+	/**
+	 * Write the snapshot file header.
+	 * @param out  Stream to write to
+	 * @param schemaVersion  Db schema version
+	 * @param schemaSQL  {@code create table} statements, then {@code create index} statements
+	 * @param nTables  Number of tables which will be written by {@link #writeTable(DataOutputStream, String, String[], SortedMap)}
+	 * @throws IOException if an error occurs writing
+	 */
+	static void writeHeader
+		(final DataOutputStream out, final int schemaVersion, final List<String> schemaSQL, final int nTables)
+		throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(schemaVersion);
+		out.writeInt(schemaSQL.size());
+		for (final String sql : schemaSQL)
+			writeString(out, sql);
+		out.writeInt(nTables);
+	}
+
+	/**
+	 * Write one table's columns, string pool and indexes.
+	 * @param out  Stream to write to
+	 * @param name  Table name
+	 * @param cols  Column names
+	 * @param rows  Table rows by rowid; each has 1 element per column
+	 * @throws IOException if an error occurs writing
+	 */
+	static void writeTable
+		(final DataOutputStream out, final String name, final String[] cols, final SortedMap<Integer, String[]> rows)
+		throws IOException
+	{
+		final int nRows = rows.size(), nCols = cols.length;
+
+		// Choose column types
+		final byte[] types = new byte[nCols];
+		for (final String[] r : rows.values())
+			for (int c = 0; c < nCols; ++c)
+				if ((types[c] == COL_INT) && (r[c] != null) && ! isCanonicalInt(r[c]))
+					types[c] = COL_STR;
+
+		// Column values, and string pool
+		final int[][] vals = new int[nCols][nRows];
+		final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		final DataOutputStream pool = new DataOutputStream(poolBytes);
+		final HashMap<String, Integer> poolOffsets = new HashMap<String, Integer>();
+		final int[] rowids = new int[nRows];
+		int pos = 0;
+		for (final Map.Entry<Integer, String[]> ent : rows.entrySet())
+		{
+			rowids[pos] = ent.getKey().intValue();
+			final String[] r = ent.getValue();
+			for (int c = 0; c < nCols; ++c)
+			{
+				final String v = r[c];
+				if (types[c] == COL_INT)
+				{
+					vals[c][pos] = (v != null) ? Integer.parseInt(v) : NULL_INT;
+				}
+				else if (v == null)
+				{
+					vals[c][pos] = -1;
+				} else {
+					Integer off = poolOffsets.get(v);
+					if (off == null)
+					{
+						off = Integer.valueOf(pool.size());
+						writeString(pool, v);
+						poolOffsets.put(v, off);
+					}
+					vals[c][pos] = off.intValue();
+				}
+			}
+			++pos;
+		}
+		pool.flush();
+
+		writeString(out, name);
+		out.writeInt(nRows);
+		out.writeInt(nCols);
+		for (int c = 0; c < nCols; ++c)
+			writeString(out, cols[c]);
+		out.write(types);
+		writeInts(out, rowids, nRows);
+		for (int c = 0; c < nCols; ++c)
+			writeInts(out, vals[c], nRows);
+		out.writeInt(poolBytes.size());
+		poolBytes.writeTo(out);
+
+		// Sorted indexes: Each integer column's non-null row positions, by value and then position
+		int nIdx = 0;
+		for (int c = 0; c < nCols; ++c)
+			if (types[c] == COL_INT)
+				++nIdx;
+		out.writeInt(nIdx);
+		final long[] keys = new long[nRows];
+		for (int c = 0; c < nCols; ++c)
+		{
+			if (types[c] != COL_INT)
+				continue;
+
+			final int[] cv = vals[c];
+			int n = 0;
+			for (int i = 0; i < nRows; ++i)
+				if (cv[i] != NULL_INT)
+					keys[n++] = (((long) cv[i]) << 32) | i;
+			Arrays.sort(keys, 0, n);
+			out.writeInt(c);
+			out.writeInt(n);
+			for (int i = 0; i < n; ++i)
+				out.writeInt((int) keys[i]);
+		}
+	}
+
+	/**
+	 * Is this value an integer in canonical form which fits in an int, such as {@code "-12"} but not {@code "012"},
+	 * and isn't {@link #NULL_INT}? Only those can be stored in a {@link #COL_INT} column and read back unchanged.
+	 */
+	private static boolean isCanonicalInt(final String v)
+	{
+		final int L = v.length();
+		if ((L == 0) || (L > 11))
+			return false;
+		try
+		{
+			final int i = Integer.parseInt(v);
+			return (i != NULL_INT) && v.equals(Integer.toString(i));
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static void writeInts(final DataOutputStream out, final int[] a, final int n)
+		throws IOException
+	{
+		for (int i = 0; i < n; ++i)
+			out.writeInt(a[i]);
+	}
+
+	private static void writeString(final DataOutputStream out, final String s)
+		throws IOException
+	{
+		final byte[] b = s.getBytes("UTF-8");
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	//
+	// Reading
+	//
+
+	/**
+	 * Memory-map a snapshot file and read its header and table directory.
+	 * Table contents stay in the mapped file until queried.
+	 * @param f  Snapshot file
+	 * @return  the snapshot's structure
+	 * @throws IOException if the file can't be read, or isn't a snapshot of a format version this class can read
+	 */
+	static RDBSnapshot map(final File f)
+		throws IOException
+	{
+		final ByteBuffer buf;
+		final RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try
+		{
+			final FileChannel ch = raf.getChannel();
+			buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		} finally {
+			try { raf.close(); } catch (IOException e) {}
+		}
+
+		try
+		{
+			if (buf.getInt() != MAGIC)
+				throw new IOException("Not a logbook snapshot: " + f);
+			final int fmt = buf.getInt();
+			if (fmt != FORMAT_VERSION)
+				throw new IOException("Unknown snapshot format version " + fmt + ": " + f);
+
+			final int schemaVersion = buf.getInt();
+			final String[] sql = new String[buf.getInt()];
+			for (int i = 0; i < sql.length; ++i)
+				sql[i] = readString(buf);
+
+			final TableData[] tables = new TableData[buf.getInt()];
+			for (int i = 0; i < tables.length; ++i)
+				tables[i] = new TableData(buf);
+
+			return new RDBSnapshot(schemaVersion, sql, tables);
+		} catch (RuntimeException e) {
+			// BufferUnderflowException, IndexOutOfBoundsException, etc from a truncated file
+			IOException ioe = new IOException("Snapshot file damaged: " + f);
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	private static String readString(final ByteBuffer buf)
+		throws UnsupportedEncodingException
+	{
+		final byte[] b = new byte[buf.getInt()];
+		buf.get(b);
+		return new String(b, "UTF-8");
+	}
+
+	/** Slice of {@code n} ints at {@code buf}'s position, which is moved past them */
+	private static IntBuffer sliceInts(final ByteBuffer buf, final int n)
+	{
+		final ByteBuffer b = buf.duplicate();
+		b.limit(b.position() + 4 * n);
+		buf.position(buf.position() + 4 * n);
+
+		return b.slice().asIntBuffer();
+	}
+
+	/**
+	 * One table of a mapped snapshot. Rows are read from the file when accessed,
+	 * through the sorted map from {@link #rows()} or the sets from {@link #lookup(int, String)}.
+	 */
+	static final class TableData
+	{
+		/** Table name, as in the file */
+		final String name;
+
+		/** Column names */
+		final String[] cols;
+
+		/** Number of rows */
+		final int nRows;
+
+		/** Rowids in ascending order; a row's position is its index here */
+		private final IntBuffer rowids;
+
+		/** Each column's type, {@link RDBSnapshot#COL_INT} or {@link RDBSnapshot#COL_STR} */
+		private final byte[] types;
+
+		/** Each column's values or string pool offsets, by row position */
+		private final IntBuffer[] colData;
+
+		/** String pool */
+		private final ByteBuffer pool;
+
+		/** For each {@link RDBSnapshot#COL_INT} column, its sorted index of row positions; otherwise null */
+		private final IntBuffer[] indexes;
+
+		/** Read the table's structure at {@code buf}'s position, and move past its data */
+		TableData(final ByteBuffer buf)
+			throws IOException
+		{
+			name = readString(buf);
+			nRows = buf.getInt();
+			final int nCols = buf.getInt();
+			cols = new String[nCols];
+			for (int c = 0; c < nCols; ++c)
+				cols[c] = readString(buf);
+			types = new byte[nCols];
+			buf.get(types);
+			rowids = sliceInts(buf, nRows);
+			colData = new IntBuffer[nCols];
+			for (int c = 0; c < nCols; ++c)
+				colData[c] = sliceInts(buf, nRows);
+
+			final int poolLen = buf.getInt();
+			final ByteBuffer p = buf.duplicate();
+			p.limit(p.position() + poolLen);
+			pool = p.slice();
+			buf.position(buf.position() + poolLen);
+
+			indexes = new IntBuffer[nCols];
+			for (int nIdx = buf.getInt(); nIdx > 0; --nIdx)
+			{
+				final int c = buf.getInt();
+				indexes[c] = sliceInts(buf, buf.getInt());
+			}
+		}
+
+		/** Highest rowid, or 0 if no rows */
+		int maxRowid()
+		{
+			return (nRows > 0) ? rowids.get(nRows - 1) : 0;
+		}
+
+		/**
+		 * All rows, as a read-only sorted map by rowid which reads each row from the file when it's accessed.
+		 * Iterating its {@code keySet()} or looking up a key doesn't read any row contents.
+		 */
+		SortedMap<Integer, String[]> rows()
+		{
+			return new Rows(this, 0, nRows);
+		}
+
+		/**
+		 * Look up the rows having a value in an integer column, using its sorted index.
+		 * @param col  Column number
+		 * @param key  Value to look for, normalized by {@code RDBMemAdapter.normKey}
+		 * @return  Sorted set of the matching rowids, possibly empty;
+		 *     or null if this column has no index, because it isn't a {@link RDBSnapshot#COL_INT} column
+		 */
+		SortedSet<Integer> lookup(final int col, final String key)
+		{
+			final IntBuffer idx = indexes[col];
+			if (idx == null)
+				return null;
+
+			final int v;
+			try
+			{
+				v = Integer.parseInt(key);
+			} catch (NumberFormatException e) {
+				return new RowidSet(this, idx, 0, 0);  // text or non-integer: no int column value can match
+			}
+
+			// binary search for the range of index entries having value v
+			final IntBuffer cd = colData[col];
+			int lo = 0, hi = idx.limit();
+			while (lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (cd.get(idx.get(mid)) < v)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			final int start = lo;
+			hi = idx.limit();
+			while (lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (cd.get(idx.get(mid)) <= v)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+
+			return new RowidSet(this, idx, start, lo);
+		}
+
+		/** Is this column's type {@link RDBSnapshot#COL_INT}, which can be used by {@link #filter(SortedSet, int, int[], long[], long[])}? */
+		boolean isIntColumn(final int col)
+		{
+			return (types[col] == COL_INT);
+		}
+
+		/**
+		 * Find the rows whose integer columns are all within given ranges,
+		 * by reading only those columns. Rows where any of those columns is null don't match.
+		 * @param ids  Candidate rowids, from {@link #lookup(int, String)} or {@link #rows()}'s key set, or null for all rows
+		 * @param n  Number of ranges in {@code cols}, {@code mins} and {@code maxs}
+		 * @param cols  Column number of each range; each must be an {@link #isIntColumn(int)}
+		 * @param mins  Minimum value of each range, inclusive
+		 * @param maxs  Maximum value of each range, inclusive
+		 * @return  Sorted set of the matching rowids, possibly empty
+		 */
+		SortedSet<Integer> filter
+			(final SortedSet<Integer> ids, final int n, final int[] cols, final long[] mins, final long[] maxs)
+		{
+			// candidate row positions, in ascending rowid order
+			final IntBuffer cidx;
+			final int clo, chi;
+			if (ids == null)
+			{
+				cidx = null;
+				clo = 0;
+				chi = nRows;
+			}
+			else if ((ids instanceof RowidSet) && (((RowidSet) ids).t == this))
+			{
+				final RowidSet rs = (RowidSet) ids;
+				cidx = rs.idx;
+				clo = rs.lo;
+				chi = rs.hi;
+			} else {
+				final int[] pos = new int[ids.size()];
+				int i = 0;
+				for (final Integer rowid : ids)
+				{
+					final int p = lowerBound(0, nRows, rowid.intValue());
+					if ((p < nRows) && (rowids.get(p) == rowid.intValue()))
+						pos[i++] = p;
+				}
+				cidx = IntBuffer.wrap(pos, 0, i).slice();
+				clo = 0;
+				chi = i;
+			}
+
+			int[] found = new int[Math.min(chi - clo, 64)];
+			int nFound = 0;
+			for (int i = clo; i < chi; ++i)
+			{
+				final int p = (cidx != null) ? cidx.get(i) : i;
+				boolean ok = true;
+				for (int k = 0; ok && (k < n); ++k)
+				{
+					final int v = colData[cols[k]].get(p);
+					ok = (v != NULL_INT) && (v >= mins[k]) && (v <= maxs[k]);
+				}
+				if (! ok)
+					continue;
+
+				if (nFound == found.length)
+				{
+					final int[] f = new int[2 * nFound];
+					System.arraycopy(found, 0, f, 0, nFound);
+					found = f;
+				}
+				found[nFound++] = p;
+			}
+
+			return new RowidSet(this, IntBuffer.wrap(found, 0, nFound).slice(), 0, nFound);
+		}
+
+		/** Read the row at this position from the file */
+		String[] row(final int pos)
+		{
+			final String[] r = new String[cols.length];
+			for (int c = 0; c < r.length; ++c)
+			{
+				final int v = colData[c].get(pos);
+				if (types[c] == COL_INT)
+					r[c] = (v != NULL_INT) ? Integer.toString(v) : null;
+				else
+					r[c] = (v != -1) ? poolString(v) : null;
+			}
+
+			return r;
+		}
+
+		/** Read a string from the pool at this byte offset */
+		private String poolString(final int off)
+		{
+			final byte[] b = new byte[pool.getInt(off)];
+			final ByteBuffer p = pool.duplicate();
+			p.position(off + 4);
+			p.get(b);
+			try
+			{
+				return new String(b, "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e.toString());  // UTF-8 is always supported
+			}
+		}
+
+		/** First position in [lo, hi) whose rowid is &gt;= {@code rowid}, or {@code hi} */
+		int lowerBound(int lo, int hi, final int rowid)
+		{
+			while (lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (rowids.get(mid) < rowid)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+
+			return lo;
+		}
+	}
+
+	/**
+	 * Read-only view of a range of a {@link TableData}'s rows by position, as a sorted map from rowid to row.
+	 * Row contents are read from the file by {@link #get(Object)} and entry iteration;
+	 * other methods read only rowids.
+	 */
+	private static final class Rows
+		extends AbstractMap<Integer, String[]> implements SortedMap<Integer, String[]>
+	{
+		private final TableData t;
+
+		/** Range of row positions: lo inclusive, hi exclusive */
+		private final int lo, hi;
+
+		Rows(final TableData t, final int lo, final int hi)
+		{
+			this.t = t;
+			this.lo = lo;
+			this.hi = (hi > lo) ? hi : lo;
+		}
+
+		/** Position of this rowid, or -1 */
+		private int find(final Object key)
+		{
+			if (! (key instanceof Integer))
+				return -1;
+			final int rowid = ((Integer) key).intValue();
+			final int pos = t.lowerBound(lo, hi, rowid);
+
+			return ((pos < hi) && (t.rowids.get(pos) == rowid)) ? pos : -1;
+		}
+
+		public int size() { return hi - lo; }
+
+		public boolean isEmpty() { return (hi == lo); }
+
+		public boolean containsKey(final Object key) { return (find(key) != -1); }
+
+		public String[] get(final Object key)
+		{
+			final int pos = find(key);
+			return (pos != -1) ? t.row(pos) : null;
+		}
+
+		public Comparator<? super Integer> comparator() { return null; }
+
+		public Integer firstKey()
+		{
+			if (hi == lo)
+				throw new NoSuchElementException();
+			return Integer.valueOf(t.rowids.get(lo));
+		}
+
+		public Integer lastKey()
+		{
+			if (hi == lo)
+				throw new NoSuchElementException();
+			return Integer.valueOf(t.rowids.get(hi - 1));
+		}
+
+		public SortedMap<Integer, String[]> headMap(final Integer toKey)
+		{
+			return new Rows(t, lo, t.lowerBound(lo, hi, toKey.intValue()));
+		}
+
+		public SortedMap<Integer, String[]> tailMap(final Integer fromKey)
+		{
+			return new Rows(t, t.lowerBound(lo, hi, fromKey.intValue()), hi);
+		}
+
+		public SortedMap<Integer, String[]> subMap(final Integer fromKey, final Integer toKey)
+		{
+			return new Rows(t, t.lowerBound(lo, hi, fromKey.intValue()), t.lowerBound(lo, hi, toKey.intValue()));
+		}
+
+		public Set<Integer> keySet()
+		{
+			return new RowidSet(t, null, lo, hi);
+		}
+
+		public Set<Map.Entry<Integer, String[]>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Integer, String[]>>()
+			{
+				public int size() { return hi - lo; }
+
+				public Iterator<Map.Entry<Integer, String[]>> iterator()
+				{
+					return new Iterator<Map.Entry<Integer, String[]>>()
+					{
+						private int pos = lo;
+
+						public boolean hasNext() { return (pos < hi); }
+
+						public Map.Entry<Integer, String[]> next()
+						{
+							if (pos >= hi)
+								throw new NoSuchElementException();
+							final Map.Entry<Integer, String[]> ent = new AbstractMap.SimpleImmutableEntry<Integer, String[]>
+								(Integer.valueOf(t.rowids.get(pos)), t.row(pos));
+							++pos;
+							return ent;
+						}
+
+						public void remove() { throw new UnsupportedOperationException(); }
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * Read-only sorted set of rowids: A range of a {@link TableData}'s row positions,
+	 * or of entries in one of its sorted indexes whose rowids are ascending.
+	 */
+	private static final class RowidSet
+		extends AbstractSet<Integer> implements SortedSet<Integer>
+	{
+		private final TableData t;
+
+		/** Index of row positions, or null to use positions directly */
+		private final IntBuffer idx;
+
+		/** Range within {@link #idx} or of row positions: lo inclusive, hi exclusive */
+		private final int lo, hi;
+
+		RowidSet(final TableData t, final IntBuffer idx, final int lo, final int hi)
+		{
+			this.t = t;
+			this.idx = idx;
+			this.lo = lo;
+			this.hi = (hi > lo) ? hi : lo;
+		}
+
+		/** Rowid of element {@code i} of the range */
+		private int rowid(final int i)
+		{
+			return t.rowids.get((idx != null) ? idx.get(i) : i);
+		}
+
+		/** First element &gt;= {@code rowid}, or {@code hi} */
+		private int lowerBound(final int rowid)
+		{
+			if (idx == null)
+				return t.lowerBound(lo, hi, rowid);
+
+			int l = lo, h = hi;
+			while (l < h)
+			{
+				final int mid = (l + h) >>> 1;
+				if (rowid(mid) < rowid)
+					l = mid + 1;
+				else
+					h = mid;
+			}
+
+			return l;
+		}
+
+		public int size() { return hi - lo; }
+
+		public boolean isEmpty() { return (hi == lo); }
+
+		public boolean contains(final Object o)
+		{
+			if (! (o instanceof Integer))
+				return false;
+			final int rowid = ((Integer) o).intValue();
+			final int i = lowerBound(rowid);
+
+			return (i < hi) && (rowid(i) == rowid);
+		}
+
+		public Iterator<Integer> iterator()
+		{
+			return new Iterator<Integer>()
+			{
+				private int i = lo;
+
+				public boolean hasNext() { return (i < hi); }
+
+				public Integer next()
+				{
+					if (i >= hi)
+						throw new NoSuchElementException();
+					return Integer.valueOf(rowid(i++));
+				}
+
+				public void remove() { throw new UnsupportedOperationException(); }
+			};
+		}
+
+		public Comparator<? super Integer> comparator() { return null; }
+
+		public Integer first()
+		{
+			if (hi == lo)
+				throw new NoSuchElementException();
+			return Integer.valueOf(rowid(lo));
+		}
+
+		public Integer last()
+		{
+			if (hi == lo)
+				throw new NoSuchElementException();
+			return Integer.valueOf(rowid(hi - 1));
+		}
+
+		public SortedSet<Integer> headSet(final Integer toElement)
+		{
+			return new RowidSet(t, idx, lo, lowerBound(toElement.intValue()));
+		}
+
+		public SortedSet<Integer> tailSet(final Integer fromElement)
+		{
+			return new RowidSet(t, idx, lowerBound(fromElement.intValue()), hi);
+		}
+
+		public SortedSet<Integer> subSet(final Integer fromElement, final Integer toElement)
+		{
+			return new RowidSet(t, idx, lowerBound(fromElement.intValue()), lowerBound(toElement.intValue()));
+		}
+	}
+
+}  // class RDBSnapshot
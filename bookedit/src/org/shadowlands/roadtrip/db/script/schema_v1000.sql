@@ -1,5 +1,5 @@
 -- org.shadowlands.roadtrip
--- version 0.9.90 schema (2019-09-29, comments updated 2020-01-30) for SQLite 3.4 or higher
+-- version 1.0.00 schema (2022-12-22) for SQLite 3.4 or higher
 --
 -- The db schema version is sometimes lower than the app version, never higher.
 --
@@ -13,7 +13,7 @@
 -- and doing a fresh install with the new schema, then restoring a
 -- previous backup that has an older schema (which will also upgrade).
 
-PRAGMA user_version = 0990;
+PRAGMA user_version = 1000;
 
 -- This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
 --
@@ -67,9 +67,11 @@ create table appinfo ( _id integer PRIMARY KEY AUTOINCREMENT not null, aifield v
 	-- DB_BACKUP_THISFILE: written just before closing db for backup copy; if backup fails, clear it afterwards (copy it back from DB_BACKUP_PREVFILE)
 	-- DB_BACKUP_THISTIME: (unix format) time of DB_BACKUP_THISFILE
 	-- DB_CURRENT_SCHEMAVERSION '0961' if upgraded to current schema version
+	-- DB_MAINT_PREVTIME: (unix format) time of most recent db maintenance (RDBMaintenance: analyze, vacuum)
+	-- DB_MAINT_ROWID_MARK: max(trip._id) + max(tstop._id) at DB_MAINT_PREVTIME, to estimate writes since then
 
-insert into appinfo (aifield, aivalue) values ('DB_CREATE_SCHEMAVERSION', '0961');
-insert into appinfo (aifield, aivalue) values ('DB_CURRENT_SCHEMAVERSION', '0961');
+insert into appinfo (aifield, aivalue) values ('DB_CREATE_SCHEMAVERSION', '1000');
+insert into appinfo (aifield, aivalue) values ('DB_CURRENT_SCHEMAVERSION', '1000');
 
 create table settings ( _id integer PRIMARY KEY AUTOINCREMENT not null, sname varchar(32) not null unique, svalue varchar(64), ivalue int );
 	-- General current settings. See also veh_settings.
@@ -84,6 +86,7 @@ create table settings ( _id integer PRIMARY KEY AUTOINCREMENT not null, sname va
 	--   Default yes in 0.9.43 (schema v0943) for new installs only.
 	-- HIDE_VIA (bool) -- Hide the Via entry field?  Added in app version 0.9.12.
 	-- SHOW_TRIP_PAX (bool) -- Show the optional Passenger Count field for trip?  Added in app version 0.9.13.
+	-- SLOW_QUERY_THRESHOLD_MS (int) -- Log queries slower than this to RDBSlowQueryLog, or 0 for off.  Added in 0.9.93.
 
 insert into settings (sname, ivalue) values ('HIDE_FREQTRIP', 1);
 
@@ -194,6 +197,8 @@ create table trip ( _id integer PRIMARY KEY AUTOINCREMENT not null, vid integer
 create index "trip~odo" ON trip(vid, odo_start);
 create index "trip~d" ON trip(vid, time_start);
 create index "trip~cv" ON trip(catid, vid);
+create index "trip~l" ON trip(locid_start);
+	-- trip~l added in v1000 for Location Mode
 
 create table freqtrip ( _id integer PRIMARY KEY AUTOINCREMENT not null, a_id int, start_locid integer not null, end_locid integer not null, end_odo_trip int not null, roadtrip_end_aid int, descr varchar(255), end_via_id int, typ_timeofday int, flag_weekends int not null default 0, flag_weekdays int not null default 0, is_roundtrip int not null default 0, catid int );
 	-- start_locid, end_locid are location IDs.
@@ -238,6 +243,8 @@ create table tstop ( _id integer PRIMARY KEY AUTOINCREMENT not null, tripid int
 	--    Added in v0961: Data from earlier tstops having tstop_gas will have null expense_total.
 
 create index "tstop~t" ON tstop(tripid);
+create index "tstop~l" ON tstop(locid, tripid);
+	-- tstop~l added in v1000 for Location Mode; covers the trips-for-location subquery
 
 -- tstop_gas is a "side table" for tstop.
 --   When a tstop has a tstop_gas, the FLAG_GAS bit is set in its flag_sides field.
@@ -263,16 +270,30 @@ create table gas_brandgrade ( _id integer PRIMARY KEY AUTOINCREMENT not null, na
 --    a_id is the geoarea ID, or null for roadtrip locations between areas. 
 --    latest_gas_brandgrade_id is for the auto-fill default at gas stop locations.
 create table location ( _id integer PRIMARY KEY AUTOINCREMENT not null, a_id int, geo_lat float, geo_lon float, loc_descr varchar(255) not null, latest_gas_brandgrade_id int );
+create index "location~a" ON location(a_id, loc_descr COLLATE NOCASE);
+	-- location~a added in v1000
 
 -- Via routes, between locations
 create table via_route ( _id integer PRIMARY KEY AUTOINCREMENT not null, locid_from int not null, locid_to int not null, odo_dist int, via_descr varchar(255) not null);
 --	odo_dist is the optional trip-odometer distance for this route between locid_from and locid_to.
-create index "via_route~l" ON via_route(locid_from);
+create index "via_route~lt" ON via_route(locid_from, locid_to);
+	-- via_route~lt replaces via_route~l (locid_from) in v1000
 
 -- Frequent Trip tstop/location linkage:
 create table freqtrip_tstop ( _id integer PRIMARY KEY AUTOINCREMENT not null, freqtripid int not null, locid int not null, via_id int, odo_trip int);
 create index "freqtrip_tstop~f" ON freqtrip_tstop(freqtripid);
 
+-- Full-text index of trip and tstop comments, for CommentIndex.searchComments. Added in v1000.
+--	docid is the tstop._id, or the negative trip._id for a trip's comment.
+--	Kept in sync by the TStop and Trip classes, not by triggers.
+create virtual table comment_fts using fts4(comment);
+
+-- Change journal of data tables, for incremental backup, export and sync. Added in v1000.
+--	seq is the sequence number, never reused. op is I, U or D (insert, update, delete).
+--	fields is the comma-separated changed field names, vals their tab-separated escaped new values; null for D.
+--	Written by ChangeJournal from the record classes, not by triggers. Not used for settings, veh_settings or appinfo.
+create table change_journal ( seq integer PRIMARY KEY AUTOINCREMENT not null, tabname varchar(32) not null, row_id int not null, op varchar(1) not null, fields varchar(255), vals varchar(255), time_chg int not null );
+
 -- master-data inserts begin --
 
 begin transaction;
@@ -29,6 +29,12 @@ public interface TableChangeListener {
 	/** The rows in this range (inclusive) have been deleted. */
 	public void fireTableRowsDeleted(int first, int last);
 
+	/**
+	 * The contents of the rows in this range (inclusive) have changed.
+	 * @since 0.9.93
+	 */
+	public void fireTableRowsUpdated(int first, int last);
+
 	/** The value at this row,column has been updated. */
 	public void fireTableCellUpdated(int row, int col); 
 }
@@ -0,0 +1,254 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.util;
+
+/**
+ * Parse, format, and calculate with fixed-point decimal amounts stored as integers,
+ * such as {@code TStopGas.quant} or {@code TStop.getExpense_total()}: 12345 with 2 decimal places is 123.45.
+ * The number of decimal places comes from the vehicle's settings, such as {@code Vehicle.expense_curr_deci}.
+ *<P>
+ * Parsing reads the characters of a {@link CharSequence} and formatting appends to a {@link StringBuilder},
+ * without creating intermediate Strings, so callers formatting many amounts can reuse one buffer.
+ * The decimal separator is always '.'.
+ *<P>
+ * Before v0.9.93, only {@code RDBSchema.parseFixedDecOr0} and {@code formatFixedDec} were available;
+ * they now call this class.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public final class FixedDec
+{
+	/** Powers of 10 which fit in a long, for scaling by decimal places */
+	private static final long[] POW10 = new long[19];
+	static
+	{
+		long p = 1;
+		for (int i = 0; i < POW10.length; ++i)
+		{
+			POW10[i] = p;
+			p *= 10;
+		}
+	}
+
+	private FixedDec() {}
+
+	/**
+	 * Parse this CharSequence as a fixed decimal, or return 0 if it can't be parsed.
+	 * Calls {@link #parseOr0(CharSequence, int, int, int) parseOr0(cs, 0, cs.length(), deci)}.
+	 * @param cs  Text to parse, such as "5.2", or null
+	 * @param deci  Number of digits to keep after the decimal
+	 * @return  The amount as an integer: parse("5.2", 1) returns 52, parse("5.2", 2) returns 520;
+	 *     0 if {@code cs} is null, empty, or can't be parsed
+	 */
+	public static int parseOr0(final CharSequence cs, final int deci)
+	{
+		if (cs == null)
+			return 0;
+
+		return parseOr0(cs, 0, cs.length(), deci);
+	}
+
+	/**
+	 * Parse part of this CharSequence as a fixed decimal, or return 0 if it can't be parsed.
+	 * The text is an optional leading '+' or '-', digits, and optionally '.' and more digits;
+	 * either side of the '.' can be empty, but not both.
+	 * Digits past {@code deci} places after the '.' are ignored, not rounded.
+	 * @param cs  Text to parse, not null
+	 * @param start  Index of first character to parse
+	 * @param end  Index just past the last character to parse
+	 * @param deci  Number of digits to keep after the decimal
+	 * @return  The amount as an integer: parse("5.2", 1) returns 52, parse("-5.2", 2) returns -520,
+	 *     parse("5.123", 1) returns 51; 0 if it can't be parsed or is outside the range of an int
+	 */
+	public static int parseOr0(final CharSequence cs, int start, final int end, final int deci)
+	{
+		if (start >= end)
+			return 0;
+
+		boolean neg = false;
+		char c = cs.charAt(start);
+		if ((c == '-') || (c == '+'))
+		{
+			neg = (c == '-');
+			++start;
+		}
+
+		long ret = 0;
+		boolean anyDigits = false;
+		int i = start;
+		for (; i < end; ++i)
+		{
+			c = cs.charAt(i);
+			if (c == '.')
+				break;
+			final int d = Character.digit(c, 10);
+			if (d == -1)
+				return 0;  // <--- Early return: Not a digit ---
+			ret = ret * 10 + d;
+			if (ret > Integer.MAX_VALUE)
+				return 0;  // <--- Early return: Too large ---
+			anyDigits = true;
+		}
+
+		if (i < end)
+		{
+			// i is the '.'; read up to deci digits after it, padding with 0s
+			for (int n = 0; n < deci; ++n)
+			{
+				++i;
+				ret *= 10;
+				if (i < end)
+				{
+					final int d = Character.digit(cs.charAt(i), 10);
+					if (d == -1)
+						return 0;  // <--- Early return: Not a digit ---
+					ret += d;
+					anyDigits = true;
+				}
+				if (ret > Integer.MAX_VALUE)
+					return 0;
+			}
+		} else {
+			if (deci > 0)
+			{
+				if (deci >= POW10.length)
+					return 0;
+				ret *= POW10[deci];
+				if (ret > Integer.MAX_VALUE)
+					return 0;
+			}
+		}
+
+		if (! anyDigits)
+			return 0;
+
+		return (int) ((neg) ? -ret : ret);
+	}
+
+	/**
+	 * Format a fixed decimal into a new String.
+	 * To format many amounts, {@link #append(StringBuilder, long, int)} is quicker.
+	 * @param fixedDec  Integer form, such as 12345
+	 * @param deci  Number of places after the decimal
+	 * @return  "1.2345" or "0.0123" or "-0.05"
+	 */
+	public static String format(final long fixedDec, final int deci)
+	{
+		return append(new StringBuilder(24), fixedDec, deci).toString();
+	}
+
+	/**
+	 * Append a fixed decimal to this StringBuilder, without any intermediate Strings.
+	 * @param sb  Append to this StringBuilder; not null
+	 * @param fixedDec  Integer form, such as 12345
+	 * @param deci  Number of places after the decimal; if 0, appends {@code fixedDec} as a plain integer
+	 * @return  {@code sb}, with "1.2345" or "0.0123" or "-0.05" appended
+	 */
+	public static StringBuilder append(final StringBuilder sb, final long fixedDec, final int deci)
+	{
+		if (deci <= 0)
+			return sb.append(fixedDec);
+
+		final int digitsStart;
+		if (fixedDec < 0)
+		{
+			sb.append('-');
+			digitsStart = sb.length();
+			if (fixedDec == Long.MIN_VALUE)
+				sb.append(-(fixedDec / 10)).append(-(fixedDec % 10));  // can't negate MIN_VALUE
+			else
+				sb.append(-fixedDec);
+		} else {
+			digitsStart = sb.length();
+			sb.append(fixedDec);
+		}
+
+		// pad to at least deci + 1 digits: 12 -> 0012 for 3 places
+		for (int nDigits = sb.length() - digitsStart; nDigits <= deci; ++nDigits)
+			sb.insert(digitsStart, '0');
+
+		sb.insert(sb.length() - deci, '.');  // 0012 -> 0.012, 12345 -> 12.345
+		return sb;
+	}
+
+	/**
+	 * Calculate a ratio of two fixed decimals, with {@code toDeci} decimal places, rounded half away from 0.
+	 * The amounts can have different numbers of decimal places, such as converting
+	 * a distance in tenths and a fuel quantity in thousandths to distance per unit of fuel.
+	 * @param num  Numerator, as a fixed decimal
+	 * @param numDeci  Number of decimal places in {@code num}
+	 * @param den  Denominator, as a fixed decimal
+	 * @param denDeci  Number of decimal places in {@code den}
+	 * @param toDeci  Number of decimal places in the result
+	 * @return  ({@code num} / {@code den}) as a fixed decimal with {@code toDeci} places,
+	 *     or 0 if {@code den} is 0
+	 * @throws ArithmeticException if the decimal places are too many to calculate within a long
+	 */
+	public static long divide
+		(final long num, final int numDeci, final long den, final int denDeci, final int toDeci)
+		throws ArithmeticException
+	{
+		if (den == 0)
+			return 0;
+
+		// num * 10^(toDeci + denDeci - numDeci) / den
+		final int shift = toDeci + denDeci - numDeci;
+		long n = num, d = den;
+		if (shift >= 0)
+			n = multiplyExact(n, pow10(shift));
+		else
+			d = multiplyExact(d, pow10(-shift));
+
+		long q = n / d;
+		final long r = n % d;
+		if (r != 0)
+		{
+			// round half away from 0: compare |2r| to |d| without overflow
+			final long absR = Math.abs(r), absD = Math.abs(d);
+			if (absR >= absD - absR)
+				q += ((n < 0) != (d < 0)) ? -1 : 1;
+		}
+
+		return q;
+	}
+
+	/** Get 10^{@code n}, or throw ArithmeticException if too large for a long. */
+	private static long pow10(final int n)
+		throws ArithmeticException
+	{
+		if (n >= POW10.length)
+			throw new ArithmeticException("10^" + n);
+
+		return POW10[n];
+	}
+
+	/** Multiply, or throw ArithmeticException if overflow; like Java 8's {@code Math.multiplyExact}. */
+	private static long multiplyExact(final long a, final long b)
+		throws ArithmeticException
+	{
+		final long r = a * b;
+		if ((a != 0) && ((r / a != b) || ((a == -1) && (b == Long.MIN_VALUE))))
+			throw new ArithmeticException("overflow");
+
+		return r;
+	}
+
+}  // public final class FixedDec
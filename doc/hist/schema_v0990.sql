@@ -84,6 +84,7 @@ create table settings ( _id integer PRIMARY KEY AUTOINCREMENT not null, sname va
 	--   Default yes in 0.9.43 (schema v0943) for new installs only.
 	-- HIDE_VIA (bool) -- Hide the Via entry field?  Added in app version 0.9.12.
 	-- SHOW_TRIP_PAX (bool) -- Show the optional Passenger Count field for trip?  Added in app version 0.9.13.
+	-- SLOW_QUERY_THRESHOLD_MS (int) -- Log queries slower than this to RDBSlowQueryLog, or 0 for off.  Added in 0.9.93.
 
 insert into settings (sname, ivalue) values ('HIDE_FREQTRIP', 1);
 
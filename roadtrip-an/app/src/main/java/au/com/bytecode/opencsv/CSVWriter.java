@@ -18,8 +18,14 @@ package au.com.bytecode.opencsv;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 // import java.sql.ResultSet;
 // import java.sql.SQLException;
 import java.util.List;
@@ -36,27 +42,70 @@ import java.util.List;
  *   >http://sourceforge.net/projects/opencsv/files/opencsv/2.3/</A>. <BR>
  * (opencsv 2.3, released 2011-04-15).
  *<P>
- * 2012-12-08  jdmonin  Remove unneeded ResultSetHelper reference
+ * 2012-12-08  jdmonin  Remove unneeded ResultSetHelper reference <BR>
+ * 2022-10-18  jdmonin  Rewrite output for large exports: Lines are built in one reused char buffer instead of
+ *   a StringBuilder per line and per escaped cell, and written in large blocks to the Writer, or through a
+ *   {@link CharsetEncoder} to a {@link WritableByteChannel}. Cells are copied in bulk and scanned in place for
+ *   characters to escape. Add {@link #writeCell(CharSequence)}, {@link #writeCell(int)} and {@link #endLine()}
+ *   to write cells without building a String[] per line. Output format is unchanged.
+ *<P>
+ * Write errors are remembered: {@link #checkError()} returns true, and {@link #flush()}
+ * and {@link #close()} throw the first error.
  *
  * @author Glen Smith
  *
  */
 public class CSVWriter implements Closeable {
-    
+
     public static final int INITIAL_STRING_SIZE = 128;
 
+    /** Initial size of {@link #buf}, in chars. */
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    /** When {@link #buf} holds this many chars at the end of a line, write them out. */
+    private static final int FLUSH_THRESHOLD = 12 * 1024;
+
+    /** Size of {@link #bytes} for writing to a channel. */
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+	/** Writer to write to, or null if writing to {@link #channel} */
 	private Writer rawWriter;
 
-    private PrintWriter pw;
+    /** Channel to write to through {@link #encoder}, or null if writing to {@link #rawWriter} */
+    private WritableByteChannel channel;
+
+    /** Encoder for {@link #channel}, or null */
+    private CharsetEncoder encoder;
+
+    /** Encoded bytes waiting to be written to {@link #channel}, or null */
+    private ByteBuffer bytes;
+
+    /** Output not yet written, reused for all lines; {@link #len} chars are in use. */
+    private char[] buf = new char[INITIAL_BUFFER_SIZE];
+
+    /** Number of chars in use in {@link #buf}. */
+    private int len;
+
+    /** Number of cells written so far on the current line by {@link #writeCell(CharSequence)} etc. */
+    private int cellsInLine;
+
+    /** First write error, if any; see {@link #checkError()}. */
+    private IOException error;
+
+    /** True if {@link #close()} has been called. */
+    private boolean closed;
 
     private char separator;
 
     private char quotechar;
-    
+
     private char escapechar;
-    
+
     private String lineEnd;
 
+    /** {@link #lineEnd}'s contents. */
+    private char[] lineEndChars;
+
     /** The character used for escaping quotes. */
     public static final char DEFAULT_ESCAPE_CHARACTER = '"';
 
@@ -68,18 +117,18 @@ public class CSVWriter implements Closeable {
      * constructor.
      */
     public static final char DEFAULT_QUOTE_CHARACTER = '"';
-    
+
     /** The quote constant to use when you wish to suppress all quoting. */
     public static final char NO_QUOTE_CHARACTER = '\u0000';
-    
+
     /** The escape constant to use when you wish to suppress all escaping. */
     public static final char NO_ESCAPE_CHARACTER = '\u0000';
-    
+
     /** Default line terminator uses platform encoding. */
     public static final String DEFAULT_LINE_END = "\n";
 
     // SLRoadtrip 2012-12-08 // private ResultSetHelper resultService = new ResultSetHelperService();
-    
+
     /**
      * Constructs CSVWriter using a comma for the separator.
      *
@@ -131,8 +180,8 @@ public class CSVWriter implements Closeable {
     public CSVWriter(Writer writer, char separator, char quotechar, char escapechar) {
         this(writer, separator, quotechar, escapechar, DEFAULT_LINE_END);
     }
-    
-    
+
+
     /**
      * Constructs CSVWriter with supplied separator and quote char.
      *
@@ -147,10 +196,10 @@ public class CSVWriter implements Closeable {
      */
     public CSVWriter(Writer writer, char separator, char quotechar, String lineEnd) {
         this(writer, separator, quotechar, DEFAULT_ESCAPE_CHARACTER, lineEnd);
-    }   
-    
-    
-    
+    }
+
+
+
     /**
      * Constructs CSVWriter with supplied separator, quote char, escape char and line ending.
      *
@@ -167,13 +216,55 @@ public class CSVWriter implements Closeable {
      */
     public CSVWriter(Writer writer, char separator, char quotechar, char escapechar, String lineEnd) {
         this.rawWriter = writer;
-        this.pw = new PrintWriter(writer);
         this.separator = separator;
         this.quotechar = quotechar;
         this.escapechar = escapechar;
         this.lineEnd = lineEnd;
+        this.lineEndChars = lineEnd.toCharArray();
+    }
+
+    /**
+     * Constructs CSVWriter using a comma for the separator, which encodes its output
+     * and writes it to a channel such as a {@code FileChannel}.
+     * Unmappable characters are replaced with the charset's default replacement.
+     *
+     * @param channel
+     *            the channel to write to; closed by {@link #close()}
+     * @param charset
+     *            the charset to encode with, such as UTF-8
+     */
+    public CSVWriter(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_SEPARATOR, DEFAULT_QUOTE_CHARACTER, DEFAULT_ESCAPE_CHARACTER, DEFAULT_LINE_END);
+    }
+
+    /**
+     * Constructs CSVWriter with supplied separator, quote char, escape char and line ending,
+     * which encodes its output and writes it to a channel such as a {@code FileChannel}.
+     * Unmappable characters are replaced with the charset's default replacement.
+     *
+     * @param channel
+     *            the channel to write to; closed by {@link #close()}
+     * @param charset
+     *            the charset to encode with, such as UTF-8
+     * @param separator
+     *            the delimiter to use for separating entries
+     * @param quotechar
+     *            the character to use for quoted elements
+     * @param escapechar
+     *            the character to use for escaping quotechars or escapechars
+     * @param lineEnd
+     * 			  the line feed terminator to use
+     */
+    public CSVWriter
+        (WritableByteChannel channel, Charset charset, char separator, char quotechar, char escapechar, String lineEnd) {
+        this((Writer) null, separator, quotechar, escapechar, lineEnd);
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
     }
-    
+
     /**
      * Writes the entire list to a CSV file. The list is assumed to be a
      * String[]
@@ -211,12 +302,12 @@ public class CSVWriter implements Closeable {
      * @throws java.io.IOException thrown by getColumnValue
      * @throws java.sql.SQLException thrown by getColumnValue
     public void writeAll(java.sql.ResultSet rs, boolean includeColumnNames)  throws SQLException, IOException {
-    	
-    	
+
+
     	if (includeColumnNames) {
 			writeColumnNames(rs);
 		}
-    	
+
     	while (rs.next())
     	{
     		writeNext(resultService.getColumnValues(rs));
@@ -224,7 +315,7 @@ public class CSVWriter implements Closeable {
     }
      */
 
-    
+
     /**
      * Writes the next line to the file.
      *
@@ -233,83 +324,314 @@ public class CSVWriter implements Closeable {
      *            entry.
      */
     public void writeNext(String[] nextLine) {
-    	
+        writeNext((CharSequence[]) nextLine);
+    }
+
+    /**
+     * Writes the next line to the file.
+     * If {@link #writeCell(CharSequence)} or similar methods have been called to begin a line,
+     * these cells are added to that line.
+     *
+     * @param nextLine
+     *            an array with each comma-separated element as a separate
+     *            entry; null elements are written as empty cells without quotes.
+     */
+    public void writeNext(CharSequence[] nextLine) {
+
     	if (nextLine == null)
     		return;
-    	
-        StringBuilder sb = new StringBuilder(INITIAL_STRING_SIZE);
-        for (int i = 0; i < nextLine.length; i++) {
 
-            if (i != 0) {
-                sb.append(separator);
+        for (int i = 0; i < nextLine.length; i++)
+            writeCell(nextLine[i]);
+
+        endLine();
+    }
+
+    /**
+     * Writes the next cell of the current line, and the separator before it if it's not the line's first cell.
+     * Call {@link #endLine()} after the line's last cell.
+     *
+     * @param cell
+     *            the cell's contents, or null to write an empty cell without quotes
+     */
+    public void writeCell(CharSequence cell) {
+        beginCell();
+        if (cell == null)
+            return;
+
+        final int n = cell.length();
+        final boolean quoted = (quotechar != NO_QUOTE_CHARACTER);
+        ensureCapacity(n + 2);
+        if (quoted)
+            buf[len++] = quotechar;
+
+        // Copy the cell in bulk, then scan the copy for any chars to escape
+        final int start = len;
+        if (cell instanceof String)
+            ((String) cell).getChars(0, n, buf, start);
+        else if (cell instanceof StringBuilder)
+            ((StringBuilder) cell).getChars(0, n, buf, start);
+        else
+            for (int i = 0; i < n; ++i)
+                buf[start + i] = cell.charAt(i);
+        len += n;
+        if (escapechar != NO_ESCAPE_CHARACTER)
+            escapeFrom(start);
+
+        if (quoted)
+            buf[len++] = quotechar;
+    }
+
+    /**
+     * Writes the next cell of the current line, and the separator before it if it's not the line's first cell.
+     * The number is quoted like any other cell, but its digits are written without building a String.
+     * Call {@link #endLine()} after the line's last cell.
+     *
+     * @param cell
+     *            the cell's contents
+     */
+    public void writeCell(int cell) {
+        beginCell();
+        ensureCapacity(13);  // '-', 10 digits, 2 quotes
+        final boolean quoted = (quotechar != NO_QUOTE_CHARACTER);
+        if (quoted)
+            buf[len++] = quotechar;
+
+        if (cell < 0) {
+            buf[len++] = '-';
+            if (cell == Integer.MIN_VALUE) {
+                // can't negate; write the last digit separately
+                writeDigits(214748364);
+                buf[len++] = '8';
+                cell = 0;
+            } else {
+                cell = -cell;
+                writeDigits(cell);
             }
+        } else {
+            writeDigits(cell);
+        }
+
+        if (quoted)
+            buf[len++] = quotechar;
+    }
 
-            String nextElement = nextLine[i];
-            if (nextElement == null)
-                continue;
-            if (quotechar !=  NO_QUOTE_CHARACTER)
-            	sb.append(quotechar);
-            
-            sb.append(stringContainsSpecialCharacters(nextElement) ? processLine(nextElement) : nextElement);
+    /**
+     * Ends the current line begun by {@link #writeCell(CharSequence)} or similar methods.
+     * If the buffered output is large, writes it out.
+     */
+    public void endLine() {
+        ensureCapacity(lineEndChars.length);
+        for (int i = 0; i < lineEndChars.length; ++i)
+            buf[len++] = lineEndChars[i];
+        cellsInLine = 0;
+
+        if (len >= FLUSH_THRESHOLD)
+            writeBuffer(false);
+    }
 
-            if (quotechar != NO_QUOTE_CHARACTER)
-            	sb.append(quotechar);
+    /** Write the separator if the current line already has a cell. */
+    private void beginCell() {
+        if (cellsInLine != 0) {
+            ensureCapacity(1);
+            buf[len++] = separator;
         }
-        
-        sb.append(lineEnd);
-        pw.write(sb.toString());
+        ++cellsInLine;
+    }
 
+    /** Write the digits of a non-negative number into {@link #buf}; there must be room for 10 chars. */
+    private void writeDigits(int v) {
+        int nDigits = 1;
+        for (int p = v; p >= 10; p /= 10)
+            ++nDigits;
+        for (int i = len + nDigits - 1; i >= len; --i) {
+            buf[i] = (char) ('0' + (v % 10));
+            v /= 10;
+        }
+        len += nDigits;
     }
 
-	private boolean stringContainsSpecialCharacters(String line) {
-	    return line.indexOf(quotechar) != -1 || line.indexOf(escapechar) != -1;
+    /**
+     * Escape any quote or escape chars in {@link #buf} from {@code start} to {@link #len}, in place.
+     * Most cells have none, so they're only scanned.
+     */
+    private void escapeFrom(final int start) {
+        int nEsc = 0;
+        for (int i = start; i < len; ++i) {
+            final char c = buf[i];
+            if ((c == quotechar) || (c == escapechar))
+                ++nEsc;
+        }
+        if (nEsc == 0)
+            return;
+
+        // Shift chars right from the end, inserting escapechars
+        ensureCapacity(nEsc + 1);
+        int to = len + nEsc - 1;
+        for (int from = len - 1; from >= start; --from) {
+            final char c = buf[from];
+            buf[to--] = c;
+            if ((c == quotechar) || (c == escapechar))
+                buf[to--] = escapechar;
+        }
+        len += nEsc;
     }
 
-	protected StringBuilder processLine(String nextElement)
+    /**
+     * Escape any quote or escape chars in a cell.
+     *
+     * @param nextElement
+     *            the cell's contents
+     * @return the escaped contents
+     * @deprecated Cells are now escaped in place in the output buffer,
+     *            so overriding this method no longer changes what's written.
+     *            Kept for compatibility with subclasses which call it.
+     */
+    @Deprecated
+    protected StringBuilder processLine(String nextElement)
     {
-		StringBuilder sb = new StringBuilder(INITIAL_STRING_SIZE);
-	    for (int j = 0; j < nextElement.length(); j++) {
-	        char nextChar = nextElement.charAt(j);
-	        if (escapechar != NO_ESCAPE_CHARACTER && nextChar == quotechar) {
-	        	sb.append(escapechar).append(nextChar);
-	        } else if (escapechar != NO_ESCAPE_CHARACTER && nextChar == escapechar) {
-	        	sb.append(escapechar).append(nextChar);
-	        } else {
-	            sb.append(nextChar);
-	        }
-	    }
-	    
-	    return sb;
+        StringBuilder sb = new StringBuilder(INITIAL_STRING_SIZE);
+        for (int j = 0; j < nextElement.length(); j++) {
+            char nextChar = nextElement.charAt(j);
+            if (escapechar != NO_ESCAPE_CHARACTER && (nextChar == quotechar || nextChar == escapechar)) {
+                sb.append(escapechar).append(nextChar);
+            } else {
+                sb.append(nextChar);
+            }
+        }
+
+        return sb;
+    }
+
+    /** Make sure {@link #buf} has room for {@code n} more chars, growing it if needed. */
+    private void ensureCapacity(final int n) {
+        if (len + n <= buf.length)
+            return;
+
+        int newSize = buf.length * 2;
+        if (newSize < len + n)
+            newSize = len + n;
+        final char[] nb = new char[newSize];
+        System.arraycopy(buf, 0, nb, 0, len);
+        buf = nb;
+    }
+
+    /**
+     * Write out all chars in {@link #buf}, through {@link #encoder} if writing to a channel.
+     * If an error occurs, remembers it for {@link #checkError()} and discards the output.
+     * @param endOfInput  True if no more chars will be written, to flush the encoder
+     */
+    private void writeBuffer(final boolean endOfInput) {
+        if ((error != null) || closed) {
+            len = 0;
+            return;
+        }
+
+        try {
+            if (channel == null) {
+                if (len > 0)
+                    rawWriter.write(buf, 0, len);
+            } else {
+                final CharBuffer cb = CharBuffer.wrap(buf, 0, len);
+                for (;;) {
+                    final CoderResult cr = encoder.encode(cb, bytes, endOfInput);
+                    if (cr.isOverflow())
+                        writeBytes();
+                    else
+                        break;
+                }
+                if (endOfInput)
+                    while (encoder.flush(bytes).isOverflow())
+                        writeBytes();
+
+                // Keep any partial surrogate pair for next time
+                final int rem = cb.remaining();
+                if (rem > 0)
+                    System.arraycopy(buf, cb.position(), buf, 0, rem);
+                len = rem;
+                return;
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        len = 0;
+    }
+
+    /** Write all of {@link #bytes} to {@link #channel} and clear it. */
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        bytes.clear();
     }
 
     /**
      * Flush underlying stream to writer.
-     * 
-     * @throws IOException if bad things happen
+     *
+     * @throws IOException if bad things happen, now or during a previous write
      */
     public void flush() throws IOException {
 
-        pw.flush();
+        writeBuffer(false);
+        flushOutput();
 
-    } 
+    }
+
+    /**
+     * Write out {@link #bytes} if writing to a channel, and flush the Writer.
+     * @throws IOException if bad things happen, now or during a previous write
+     */
+    private void flushOutput() throws IOException {
+        if ((error == null) && (channel != null) && (bytes.position() > 0)) {
+            try {
+                writeBytes();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null)
+            throw error;
+        if (rawWriter != null)
+            rawWriter.flush();
+    }
 
     /**
      * Close the underlying stream writer flushing any buffered content.
      *
-     * @throws IOException if bad things happen
+     * @throws IOException if bad things happen, now or during a previous write
      *
      */
     public void close() throws IOException {
-        flush();
-        pw.close();
-        rawWriter.close();
+        if (closed)
+            return;
+
+        try {
+            writeBuffer(true);
+            len = 0;  // discard any unpaired surrogate
+            flushOutput();
+        } finally {
+            closed = true;
+            if (rawWriter != null)
+                rawWriter.close();
+            else
+                channel.close();
+        }
     }
 
     /**
-     *  Checks to see if the there has been an error in the printstream. 
+     *  Checks to see if the there has been an error writing the output.
+     *  Flushes the output first.
      */
     public boolean checkError() {
-        return pw.checkError();
+        if (error == null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        return (error != null);
     }
 
     /*
@@ -19,25 +19,32 @@
 
 package org.shadowlands.roadtrip;
 
+import java.io.File;
+
 import org.shadowlands.roadtrip.android.BackupsMain;
 import org.shadowlands.roadtrip.android.DriverEntry;
 import org.shadowlands.roadtrip.android.Main;
 import org.shadowlands.roadtrip.android.VehicleEntry;
+import org.shadowlands.roadtrip.android.util.AnFileUtils;
 import org.shadowlands.roadtrip.android.util.Misc;
 import org.shadowlands.roadtrip.db.GeoArea;
 import org.shadowlands.roadtrip.db.Person;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBRecord;
 import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBSlowQueryLog;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.util.PhaseTimer;
 
 import android.app.Activity;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -84,15 +91,22 @@ public class AndroidStartup extends Activity
      *<P>
      * Called when first created, or from the Back button from {@link BackupsMain}
      * (which might have restored the db from a backup).
+     *<P>
+     * Logs the time taken by each phase of startup, as info-level messages with tag {@link #TAG}.
      */
 	@Override
 	public void onResume()
 	{
 		super.onResume();
+		final PhaseTimer timer = new PhaseTimer("startup");
 
         // pointer to retrieve schema sql text, if needed
     	RDBOpenHelper.dbSQLRsrcs = getApplicationContext().getResources();
-        db = new RDBOpenHelper(this);
+        db = RDBExecutor.getDB(this);
+
+        // first query opens the db, creating or upgrading the schema if needed
+        Settings.preload(db);
+        timer.mark("openDB");
 
 	final Resources rsrcs = getResources();
 
@@ -101,7 +115,7 @@ public class AndroidStartup extends Activity
         // TODO move default-geoarea creation to a generic android class
         {
         	RDBSchema.SettingsCheckResult rv
-        		= RDBSchema.checkSettings(db, RDBSchema.SettingsCheckLevel.SETT_VEHICLE);
+        		= RDBSchema.checkSettings(db, RDBSchema.SettingsCheckLevel.SETT_VEHICLE, timer);
         	int ret = rv.result;
         	if (ret == RDBSchema.SettingsCheckLevel.SETT_GEOAREA)
         	{
@@ -135,6 +149,15 @@ public class AndroidStartup extends Activity
         	}
         }
 
+        // Slow-query log, if turned on in SettingsActivity: written to the app's SD directory
+        // next to the backups folder, so the user can copy it to a computer to view in BookEdit
+        {
+        	final String logDir = AnFileUtils.getAppSDPath(getApplicationContext(), "");
+        	RDBSlowQueryLog.configureFromSettings(db, (logDir != null) ? new File(logDir) : null);
+        }
+        timer.mark("slowQueryLog");
+        Log.i(TAG, timer.toString());
+
         if (RDBOpenHelper.dbSQLRsrcs != null)
         {
         	// done using it by now, if we needed it at all
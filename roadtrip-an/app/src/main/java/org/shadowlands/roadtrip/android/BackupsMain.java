@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2010-2011,2013-2017,2019 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2010-2011,2013-2017,2019,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -31,6 +31,7 @@ import org.shadowlands.roadtrip.android.util.Misc;
 import org.shadowlands.roadtrip.db.AppInfo;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
+import org.shadowlands.roadtrip.db.RDBMaintenance;
 import org.shadowlands.roadtrip.db.RDBVerifier;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.Trip;
@@ -101,6 +102,15 @@ public class BackupsMain extends Activity
 	/** Backup Now button; handled in {@link #onClick_BtnBackupNow(View)} */
 	private Button btnBackupNow;
 	private TextView tvTimeOfLastBkup, tvTimeOfLastTrip;
+
+	/**
+	 * Brief db health summary, tapped to show {@link #dbHealthDetails}; see {@link #readDBHealth(RDBAdapter)}.
+	 * @since 0.9.93
+	 */
+	private TextView tvDBHealth;
+
+	/** Full db health statistics from {@link RDBMaintenance#getStats(RDBAdapter)}, or null. @since 0.9.93 */
+	private String dbHealthDetails;
 	private ListView lvBackupsList;
 
 	/**
@@ -123,6 +133,7 @@ public class BackupsMain extends Activity
 	    btnBackupNow = (Button) findViewById(R.id.backups_main_btn_backupnow);
 	    tvTimeOfLastBkup = (TextView) findViewById(R.id.backups_main_timeOfLastBkup);
 	    tvTimeOfLastTrip = (TextView) findViewById(R.id.backups_main_timeOfLastTrip);
+	    tvDBHealth = (TextView) findViewById(R.id.backups_main_dbHealth);
 	    lvBackupsList = (ListView) findViewById(R.id.backups_main_list);
 	    lvBackupsList.setOnItemClickListener(this);
 
@@ -165,6 +176,7 @@ public class BackupsMain extends Activity
 
 		dbContainsData = readDBLastTripTime(db);
 		readDBLastBackupTime(db, -1);
+		readDBHealth(db);
 		btnBackupNow.setEnabled(isSDCardWritable && dbContainsData);
 
 		if (! isSDCardReadable)
@@ -259,6 +271,38 @@ public class BackupsMain extends Activity
 		}
 	}
 
+	/**
+	 * Read db size, free pages and index statistics; update {@link #tvDBHealth} and {@link #dbHealthDetails}.
+	 * @param db  db conn to read
+	 * @since 0.9.93
+	 */
+	private void readDBHealth(RDBAdapter db)
+	{
+		try
+		{
+			final RDBMaintenance.Stats st = RDBMaintenance.getStats(db);
+			dbHealthDetails = st.toString();
+			tvDBHealth.setText(getResources().getString
+				(R.string.backups_main_db_health_summary__fmt, st.getDBSizeBytes() / 1024, st.getFreePercent()));
+		} catch (RuntimeException e) {
+			dbHealthDetails = null;
+			tvDBHealth.setText("");
+		}
+	}
+
+	/**
+	 * Show {@link #dbHealthDetails} when {@link #tvDBHealth} is tapped.
+	 * @since 0.9.93
+	 */
+	public void onClick_DBHealth(View v)
+	{
+		if (dbHealthDetails == null)
+			return;
+
+		new AlertDialog.Builder(this).setMessage(dbHealthDetails).setTitle(R.string.backups_main_db_health)
+			.setCancelable(true).setPositiveButton(android.R.string.ok, null).show();
+	}
+
 	/**
 	 * Read most recent current trip, update {@link #lastTripDataChange}.
 	 * @return true if the DB contains data (current vehicle setting exists); return added in v0.9.20.
@@ -386,7 +430,7 @@ public class BackupsMain extends Activity
 		RDBOpenHelper db = new RDBOpenHelper(this);
 
 		/** Cached verifier object, for successive manual calls from {@link #doDBValidation()} */
-		RDBVerifier verifCache = new RDBVerifier(db);
+		RDBVerifier verifCache = new RDBVerifier(db, Misc.useLowMemoryVerifier(this));
 
 		// do "quick validation" levels (below LEVEL_TDATA)
 		int chkLevel;
@@ -562,6 +606,9 @@ public class BackupsMain extends Activity
 			DBBackup.backupCurrentDB(this, restoreFromDirectory);
 			Toast.makeText(this, "Backup successful.", Toast.LENGTH_SHORT).show();
 			readDBLastBackupTime(null, bktime);
+			RDBAdapter db = new RDBOpenHelper(this);
+			readDBHealth(db);  // backup may have run db maintenance
+			db.close();
 			populateBackupsList(true);  // refresh the list of backups
 		} catch (IOException e)
 		{
@@ -33,6 +33,7 @@ import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBSchema;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.RDBSchema.UpgradeCopyCaller;
+import org.shadowlands.roadtrip.db.RDBSchema.UpgradeProgressListener;
 import org.shadowlands.roadtrip.db.RDBVerifier;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
@@ -73,7 +74,7 @@ import android.widget.Toast;
  * @author jdmonin
  */
 public class BackupsRestore
-	extends Activity implements UpgradeCopyCaller
+	extends Activity implements UpgradeCopyCaller, UpgradeProgressListener
 {
 	// db is not kept open, so we can restore, so there is no RDBAdapter field in this activity.
 
@@ -302,7 +303,7 @@ public class BackupsRestore
 			final String destTempFullPath = destTempFile.getAbsolutePath();
 			Log.i(TAG, "Calling upgradeCopyToCurrent(\""+ destTempFullPath + "\", " + bkupSchemaVers + ")");
 
-			RDBSchema.upgradeCopyToCurrent(srcBkupFile, destTempFile, bkupSchemaVers, this);
+			RDBSchema.upgradeCopyToCurrent(srcBkupFile, destTempFile, bkupSchemaVers, this, this);
 
 			Log.i(TAG, "Completed upgradeCopyToCurrent");
 			ok = true;
@@ -519,12 +520,15 @@ public class BackupsRestore
 		alert.show();
 	}
 
-	/** If Cancel is clicked, cancel the validatingTask and finish the activity. */
+	/** If Cancel is clicked, cancel the validatingTask and its verifier, and finish the activity. */
 	public void onClick_BtnCancel(View v)
 	{
 		setResult(RESULT_CANCELED);
 		if ((validatingTask != null) && ! validatingTask.isCancelled())
+		{
 			validatingTask.cancel(true);
+			validatingTask.cancelVerify();
+		}
 		finish();
 	}
 
@@ -564,9 +568,54 @@ public class BackupsRestore
 		return new RDBOpenHelper(this, fullPath);
 	}
 
-	/** Run db validation in a separate thread. */
+	/**
+	 * Callback for copyAndUpgradeTempFile; implement {@link RDBSchema.UpgradeProgressListener}
+	 * to log each step of the upgrade.
+	 * @since 0.9.93
+	 */
+	public void upgradeProgress(final int stepsDone, final int stepsTotal, final int toVersion)
+	{
+		Log.i(TAG, "upgradeCopyToCurrent: " + stepsDone + " of " + stepsTotal + " steps done, next v" + toVersion);
+	}
+
+	/**
+	 * Run db validation in a separate thread.
+	 * Progress percentages: 1 after reading backup time, 2-29 during {@link RDBVerifier#LEVEL_MDATA},
+	 * 30 after reading trip date range, 31-99 during {@link RDBVerifier#LEVEL_TDATA}, 100 when done.
+	 */
 	private class ValidateDBTask extends AsyncTask<String, Integer, Boolean>
+		implements RDBVerifier.ProgressListener
 	{
+		/** Verifier while running, for {@link #cancelVerify()} */
+		private volatile RDBVerifier verifier;
+
+		/** Most recent percentage from {@link #verifyProgress(int, String, int, int)} */
+		private int verifyPercent;
+
+		/** Cancel the verifier if running; its verify will return soon. Can call from any thread. */
+		public void cancelVerify()
+		{
+			final RDBVerifier v = verifier;
+			if (v != null)
+				v.cancel();
+		}
+
+		/** Publish verification progress as a percentage, if changed. */
+		public void verifyProgress(final int level, final String tabname, final int done, final int total)
+		{
+			if (total <= 0)
+				return;
+
+			final int pct = (level == RDBVerifier.LEVEL_MDATA)
+				? 2 + (int) ((27L * Math.min(done, total)) / total)
+				: 31 + (int) ((68L * Math.min(done, total)) / total);
+			if (pct == verifyPercent)
+				return;
+
+			verifyPercent = pct;
+			publishProgress(Integer.valueOf(pct));
+		}
+
 		protected Boolean doInBackground(final String... bkupFullPath)
 		{
 			RDBAdapter bkupDB = new RDBOpenHelper(BackupsRestore.this, bkupFullPath[0]);
@@ -582,7 +631,11 @@ public class BackupsRestore
 
 			RDBVerifier.MAX_FAILURE_ITEMS = VALIDATION_MAX_FAILURE_ITEMS;
 			RDBVerifier.FAILURES_HAVE_DESCRIPTIONS = false;
-			RDBVerifier v = new RDBVerifier(bkupDB);
+			RDBVerifier v = new RDBVerifier(bkupDB, Misc.useLowMemoryVerifier(BackupsRestore.this));
+			v.setProgressListener(this);
+			verifier = v;
+			if (isCancelled())
+				v.cancel();
 			int rc = v.verify(RDBVerifier.LEVEL_MDATA);
 			if (rc == 0)
 			{
@@ -602,11 +655,15 @@ public class BackupsRestore
 
 				rc = v.verify(RDBVerifier.LEVEL_TDATA);
 			}
-			final boolean ok = (0 == rc);  // TODO progress bar
+			final boolean ok = (0 == rc);
+			verifier = null;
 			v.release();
 			bkupDB.close();
-			publishProgress(Integer.valueOf(100));
 			Log.d(TAG, "verify: rc = " + rc);
+			if (rc == RDBVerifier.CANCELLED)
+				return Boolean.FALSE;  // activity is finishing; onPostExecute won't be called
+
+			publishProgress(Integer.valueOf(100));
 
 			validatedOK = ok;
 			validationFailedLevel = rc;
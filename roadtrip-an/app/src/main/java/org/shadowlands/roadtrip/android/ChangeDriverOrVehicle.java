@@ -26,7 +26,7 @@ import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -98,7 +98,7 @@ public class ChangeDriverOrVehicle
 
 		hasCurrentTrip = false;
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 		currV = Settings.getCurrentVehicle(db, false);
 		currVID = currV.getID();
 		currDID = VehSettings.getCurrentDriver(db, currV, false).getID();
@@ -274,7 +274,7 @@ public class ChangeDriverOrVehicle
 				spinnerAddNewItem_Ask(true, driver, idata);
 			} else if (resultCode == RESULT_CHANGES_MADE) {
 				if (db == null)
-					db = new RDBOpenHelper(this);
+					db = RDBExecutor.getDB(this);
 				SpinnerDataFactory.setupDriversSpinner(db, this, driver, currDID);
 			} else {
 				changed = false;
@@ -286,7 +286,7 @@ public class ChangeDriverOrVehicle
 				spinnerAddNewItem_Ask(false, veh, idata);
 			} else if (resultCode == RESULT_CHANGES_MADE) {
 				if (db == null)
-					db = new RDBOpenHelper(this);
+					db = RDBExecutor.getDB(this);
 				SpinnerDataFactory.setupVehiclesSpinner(db, Vehicle.FLAG_ONLY_ACTIVE, this, veh, currVID);
 			} else {
 				changed = false;
@@ -27,7 +27,7 @@ import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -107,7 +107,7 @@ public class DriverEntry extends Activity
         name = (EditText) findViewById(R.id.driver_entry_name);
         comment = (EditText) findViewById(R.id.driver_entry_comment);
 
-        db = new RDBOpenHelper(this);
+        db = RDBExecutor.getDB(this);
 
         int cameFromEdit_id;
 		Intent i = getIntent();
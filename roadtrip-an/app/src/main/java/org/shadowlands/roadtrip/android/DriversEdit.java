@@ -26,7 +26,7 @@ import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -78,7 +78,7 @@ public class DriversEdit extends Activity
 	    super.onCreate(savedInstanceState);
 	    setContentView(R.layout.drivers_edit);
 
-	    db = new RDBOpenHelper(this);
+	    db = RDBExecutor.getDB(this);
 
 	    lvPeople = (ListView) findViewById(R.id.list);
 	    lvPeople.setOnItemClickListener(this);
@@ -188,7 +188,7 @@ public class DriversEdit extends Activity
 			setResult(ChangeDriverOrVehicle.RESULT_CHANGES_MADE);
 		}
 		if (db == null)
-			db = new RDBOpenHelper(this);
+			db = RDBExecutor.getDB(this);
 		populatePeopleList(db);		
 	}
 
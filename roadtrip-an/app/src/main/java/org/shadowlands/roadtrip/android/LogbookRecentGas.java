@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2011,2013-2015,2017 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2011,2013-2015,2017,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -34,7 +34,7 @@ import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.TStop;
 import org.shadowlands.roadtrip.db.TStopGas;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 import org.shadowlands.roadtrip.model.LogbookTableModel;
 
 import android.app.Activity;
@@ -124,7 +124,7 @@ public class LogbookRecentGas extends Activity
 	public void onCreate(Bundle savedInstanceState)
 	{
 		super.onCreate(savedInstanceState);
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 		setContentView(R.layout.logbook_recent_gas);
 
 		tvTopText = (TextView) findViewById(R.id.logbook_recent_gas_toptext);
@@ -220,7 +220,7 @@ public class LogbookRecentGas extends Activity
 					sb.append(ts.getOdo_total() / 10);
 					sb.append(' ');
 
-					sb.append(tsg.toStringBuilder(ve));  // quant @ price-per [totalprice] [gas_brandgrade]
+					tsg.toStringBuilder(ve, sb);  // quant @ price-per [totalprice] [gas_brandgrade]
 					if (gradeID != 0)
 						tsg.gas_brandgrade = null;  // clear the reference
 
@@ -22,22 +22,30 @@ package org.shadowlands.roadtrip.android;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.shadowlands.roadtrip.R;
 import org.shadowlands.roadtrip.android.util.DBExport;
+import org.shadowlands.roadtrip.android.util.Misc;
 import org.shadowlands.roadtrip.db.AppInfo;
+import org.shadowlands.roadtrip.db.CommentIndex;
 import org.shadowlands.roadtrip.db.GeoArea;
 import org.shadowlands.roadtrip.db.Location;
 import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBArchive;
 import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
+import org.shadowlands.roadtrip.db.RDBSchema;
 import org.shadowlands.roadtrip.db.RDBVerifier;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
 import org.shadowlands.roadtrip.db.ViaRoute;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
 import org.shadowlands.roadtrip.model.LogbookTableModel;
 import org.shadowlands.roadtrip.util.RTRDateTimeFormatter;
@@ -50,24 +58,24 @@ import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
+import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.DatePicker;
 import android.widget.EditText;
 import android.widget.ImageButton;
-import android.widget.LinearLayout;
 import android.widget.ListAdapter;
-import android.widget.ScrollView;
+import android.widget.ListView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -75,7 +83,7 @@ import android.widget.Toast;
 /**
  * Present a lightly formatted view or search of the current vehicle's trip log,
  * or a different vehicle by calling with {@link #EXTRAS_VEHICLE_ID}.
- * Can tap on any Trip for more details; see {@link #onClick(View)}.
+ * Can tap on any Trip for more details; see {@link #onItemClick(AdapterView, View, int, long)}.
  * Logbook text can be lightly styled: See {@link TripListTimeRangeAn}.
  *<P>
  * Optionally, can filter to show only trips that include a given {@link #EXTRAS_LOCID location ID}
@@ -85,6 +93,9 @@ import android.widget.Toast;
  * Or, can set the starting date to {@link #EXTRAS_DATE}; this date and 2 weeks of newer trips are
  * shown, with buttons to show older and newer trips.
  *<P>
+ * Trips are shown in a {@link ListView} which has views only for the visible trips, reusing them
+ * while scrolling. Scrolling to the top or bottom of the list loads earlier or later trips.
+ *<P>
  * Can validate the database contents through a menu item.
  * After successful validation, if it's been more than 10 days since
  * the last backup ({@link #BACKUP_ASK_TIME_AGO_DAYS}), will ask if user
@@ -93,7 +104,7 @@ import android.widget.Toast;
  * @author jdmonin
  */
 public class LogbookShow extends Activity
-	implements View.OnClickListener, LogbookShowTripDetailDialogBuilder.DetailDialogListener
+	implements AdapterView.OnItemClickListener, LogbookShowTripDetailDialogBuilder.DetailDialogListener
 {
 	/**
 	 * Increment in weeks when loading newer/older trips from the database,
@@ -157,23 +168,117 @@ public class LogbookShow extends Activity
 	private static final String TAG = "RTR.LogbookShow";
 
 	/**
-	 * Params for use by {@link #onClick_BtnEarlier(View)} and {@link #onClick_BtnLater(View)}
-	 * to dynamically create TextViews to show more trips.
-	 * Width {@code FILL_PARENT}, height {@code WRAP_CONTENT}.
-	 * @see #addTripsTextViews(List, List, boolean, boolean)
+	 * Maximum number of {@link #ltm}'s ranges whose rows' text is kept in {@link #rowStrs},
+	 * like {@link LogbookTableModel}'s Lazy Mode.
+	 * @see #rowStrsRendered
+	 * @since 0.9.93
 	 */
-	private static ViewGroup.LayoutParams TS_ROW_LP = null;
+	private static final int ROWSTRS_MAX_RANGES = 12;
 
 	private RDBAdapter db = null;
 
-	/** Message that no trips were found in {@link #onCreate(Bundle)}, or null */
-	private TextView tvNoTripsFound = null;
+	/**
+	 * Virtualized list of trips, one row per trip, using {@link #tripAdapter}.
+	 * Header is {@link #btnEarlier}; footer (in Go To Date mode) is {@link #btnLater}.
+	 * Before v0.9.93 each trip had its own TextView in a ScrollView.
+	 * @since 0.9.93
+	 */
+	private ListView tripList;
+
+	/** Adapter for {@link #tripList} over {@link #rowStrs} and {@link #rowTrips}. */
+	private TripRowAdapter tripAdapter;
+
+	/**
+	 * Text of each row of {@link #tripList}, from {@link Trip.TripListTimeRange#getTripListRowsTabbed()}
+	 * of {@link #ltm}'s loaded ranges, oldest first.
+	 * Rows of ranges not in {@link #rowStrsRendered} are null, and rendered again by
+	 * {@link #renderRangeRows(int)} when shown.
+	 * @since 0.9.93
+	 */
+	private final List<CharSequence> rowStrs = new ArrayList<CharSequence>();
+
+	/**
+	 * Range of {@link #ltm} containing each row of {@link #rowStrs}, or null for the "no trips found" message row.
+	 * @since 0.9.93
+	 */
+	private final List<Trip.TripListTimeRange> rowRanges = new ArrayList<Trip.TripListTimeRange>();
+
+	/**
+	 * Ranges whose rows' text is currently in {@link #rowStrs}, least recently shown first,
+	 * limited to {@link #ROWSTRS_MAX_RANGES} entries. When a range is removed to make room,
+	 * its rows' text in {@link #rowStrs} is cleared to null; the number of rows stays the same.
+	 * @since 0.9.93
+	 */
+	private final LinkedHashMap<Trip.TripListTimeRange, Boolean> rowStrsRendered
+		= new LinkedHashMap<Trip.TripListTimeRange, Boolean>(ROWSTRS_MAX_RANGES + 1, 0.75f, true)
+	{
+		private static final long serialVersionUID = 993L;
+
+		protected boolean removeEldestEntry(Map.Entry<Trip.TripListTimeRange, Boolean> eldest)
+		{
+			if (size() <= ROWSTRS_MAX_RANGES)
+				return false;
+
+			final Trip.TripListTimeRange range = eldest.getKey();
+			for (int i = rowRanges.indexOf(range); (i != -1) && (i < rowRanges.size())
+			     && (rowRanges.get(i) == range); ++i)
+				rowStrs.set(i, null);
+
+			return true;
+		}
+	};
+
+	/**
+	 * Range whose last row has the "Current Trip in progress" note, or null;
+	 * used when {@link #renderRangeRows(int)} renders its rows again.
+	 * @since 0.9.93
+	 */
+	private Trip.TripListTimeRange currentTripRange;
+
+	/**
+	 * Trip of each row of {@link #rowStrs}, or null for the "no trips found" message row.
+	 * @since 0.9.93
+	 */
+	private final List<Trip> rowTrips = new ArrayList<Trip>();
+
+	/**
+	 * If true, the only row is a "no trips found" message, which will be
+	 * replaced by the first trips loaded with {@link #addTripRows(List, List, boolean)}.
+	 * @since 0.9.93
+	 */
+	private boolean rowsAreNoTripsMsg;
+
+	/**
+	 * {@link #tripList}'s header and footer buttons to load earlier and later trips.
+	 * @since 0.9.93
+	 */
+	private Button btnEarlier, btnLater;
+
+	/**
+	 * Is {@link #btnEarlier} or {@link #btnLater} currently in {@link #tripList}?
+	 * If not, there are no more trips to load in that direction.
+	 * @since 0.9.93
+	 */
+	private boolean hasBtnEarlier, hasBtnLater;
+
+	/**
+	 * True if {@link #tripList}'s scroll listener has posted a call to
+	 * {@link #onClick_BtnEarlier(View)} or {@link #onClick_BtnLater(View)} which hasn't run yet.
+	 * @since 0.9.93
+	 */
+	private boolean scrollLoadPending;
 
-	private ScrollView sv;
 	/** see also {@link #showV} */
 	private Vehicle currV;
 	private LogbookTableModel ltm;
 
+	/**
+	 * Archives of older trips, if any, for {@link #ltm} to load earlier trips from
+	 * once {@link #db} has none earlier. Opened on demand, closed in {@link #onPause()}.
+	 * @since 0.9.93
+	 */
+	private RDBArchive archive;
+
 	/**
 	 * Starting date for "Go To Date" mode ({@link #EXTRAS_DATE}); 0 otherwise.
 	 */
@@ -196,38 +301,17 @@ public class LogbookShow extends Activity
 
 	/**
 	 * The Builder for the currently/most recently shown Trip Detail Dialog, or null.
-	 * Shows the Trip held in {@link #tddb_tripView}.
+	 * When dismissed, {@link #onDetailDialogDismissed(LogbookShowTripDetailDialogBuilder)} updates its row.
 	 * @since 0.9.60
 	 */
 	private LogbookShowTripDetailDialogBuilder tddb;
 
-	/**
-	 * The TextView of the {@link Trip} currently/most recently shown in {@link #tddb}, or null.
-	 * @since 0.9.60
-	 */
-	private TextView tddb_tripView;
-
 	/** Cached verifier object, for successive manual calls from {@link #doDBValidation()} */
 	private RDBVerifier verifCache = null;
 
-	/** Non-null if currently running. Set and cleared in {@link ValidateDBTDataTask#doInBackground(String...)}. */
+	/** Non-null if currently running. Set in {@link ValidateDBTDataTask#start()}, cleared in {@link ValidateDBTDataTask#run(RDBAdapter)}. */
 	private ValidateDBTDataTask verifTask = null;
 
-	/** Used by {@link #onClick_BtnEarlier(View)}, {@link #onClick_BtnLater(View)} */
-	private LinearLayout tripListParentLayout = null;
-
-	/**
-	 * Used by {@link #onClick_BtnEarlier(View)},
-	 * {@link #addTripsTextViews_addOne(CharSequence, Trip, List, boolean)}.
-	 */
-	private int tripListBtnEarlierPosition = -1;
-
-	/**
-	 * Used by {@link #onClick_BtnLater(View)},
-	 * {@link #addTripsTextViews_addOne(CharSequence, Trip, List, boolean)}.
-	 */
-	private int tripListBtnLaterPosition = -1;
-
 	/**
 	 * Start this activity in Location Mode: Only show trips including a given location.
 	 * @param locID  Location ID
@@ -252,7 +336,7 @@ public class LogbookShow extends Activity
 	/**
 	 * Export some of this logbook's data from {@link #ltm}.
 	 * Called from the dialog created in {@link #onCreateExportDialog()}.
-	 * Calls {@link DBExport#exportTripData(android.content.Context, LogbookTableModel, String)}.
+	 * Calls {@link DBExport#exportTripData(android.content.Context, LogbookTableModel, RDBAdapter, String)}.
 	 *<P>
 	 * If {@link #ltm} is empty, does nothing.
 	 * @param fname  Filename for export (not a path)
@@ -266,11 +350,7 @@ public class LogbookShow extends Activity
 		// TODO bg task, like ValidateDBTDataTask
 		try
 		{
-			final boolean prevMode = LogbookTableModel.trip_simple_mode;
-			LogbookTableModel.trip_simple_mode = true;
-			LogbookTableModel expLTM = new LogbookTableModel(ltm, db);
-			DBExport.exportTripData(this, expLTM, fname);
-			LogbookTableModel.trip_simple_mode = prevMode;
+			DBExport.exportTripData(this, ltm, db, fname);
 			Toast.makeText(this, R.string.logbook_show__export_complete, Toast.LENGTH_SHORT).show();
 			/*
 			 * For a selected date range, instead would use:
@@ -307,7 +387,7 @@ public class LogbookShow extends Activity
 		if (verifCache == null)
 		{
 			RDBVerifier.FAILURES_HAVE_DESCRIPTIONS = false;
-			verifCache = new RDBVerifier(db);
+			verifCache = new RDBVerifier(db, Misc.useLowMemoryVerifier(this));
 		}
 
 		// do "quick validation" levels (below LEVEL_TDATA) first
@@ -328,7 +408,7 @@ public class LogbookShow extends Activity
 		{
 			// completed all "quick" levels successfully
 			// Now finish the slow parts in a separate task
-			new ValidateDBTDataTask().execute();
+			new ValidateDBTDataTask().start();
 
 			return;  // <--- Early return: Verify DB in bg task ---
 		}
@@ -363,8 +443,7 @@ public class LogbookShow extends Activity
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.logbook_show);
 
-		TextView tvContent = (TextView) findViewById(R.id.logbook_show_textview);
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 
 		if ( ! checkCurrentVehicleSetting())
 		{
@@ -424,15 +503,22 @@ public class LogbookShow extends Activity
 		} else {
 			ltm = new LogbookTableModel(showV, locMode_allV, locID, LOCID_TRIP_INCREMENT, dtf, db);
 		}
+		archive = new RDBArchive(db, new RDBSchema.UpgradeCopyCaller()
+		{
+			public RDBAdapter openRDB(final String fullPath)
+			{
+				return new RDBOpenHelper(LogbookShow.this, fullPath);
+			}
+		});
+		ltm.setArchive(archive);
 
 		boolean sbEmpty = false;
 		List<CharSequence> tripsStrs = null;
-		List<Trip> trips = null;
+		Trip.TripListTimeRange range = null;
 		if (ltm.getRangeCount() > 0)
 		{
-			Trip.TripListTimeRange range = ltm.getRange(0);
+			range = ltm.getRange(0);
 			tripsStrs = range.getTripListRowsTabbed();
-			trips = range.tr;
 		}
 
 		if ((tripsStrs == null) || tripsStrs.isEmpty())
@@ -443,11 +529,9 @@ public class LogbookShow extends Activity
 		}
 		if (ltm.hasCurrentTrip())
 		{
-			CharSequence tripCS = tripsStrs.get(tripsStrs.size() - 1);
-			if (tripCS instanceof Appendable)  // StringBuilder or android.text.SpannableStringBuilder
-				try {
-					((Appendable) tripCS).append("\n\t\t(Current Trip in progress)");
-				} catch (IOException e) {}
+			appendCurrentTripNote(tripsStrs);
+			if (! sbEmpty)
+				currentTripRange = range;
 		}
 		else if (sbEmpty || (tripsStrs.get(0).length() < 5))
 		{
@@ -466,54 +550,46 @@ public class LogbookShow extends Activity
 				} catch (IOException e) {}
 		}
 
-		// Find the trip layout linearlayout, to benefit addTripsTextViews
-		tripListParentLayout = (LinearLayout) findViewById(R.id.logbook_show_triplist_parent);
-		if (tripListParentLayout != null)
-		{
-			View v = findViewById(R.id.logbook_show_btn_earlier);
-			if (v != null)
-				tripListBtnEarlierPosition = tripListParentLayout.indexOfChild(v);
-			v = findViewById(R.id.logbook_show_btn_later);
-			if (v != null)
-				tripListBtnLaterPosition = tripListParentLayout.indexOfChild(v);
-		}
-		if ((tripListBtnEarlierPosition == -1) || (tripListParentLayout == null))
+		// Set up the trip list, with buttons to load earlier and later trips
+		tripList = (ListView) findViewById(R.id.logbook_show_triplist);
+		btnEarlier = new Button(this);
+		btnEarlier.setText(R.string.logbook_show__earlier_trips);
+		btnEarlier.setOnClickListener(new View.OnClickListener() {
+			public void onClick(View v) { onClick_BtnEarlier(v); }
+		});
+		tripList.addHeaderView(btnEarlier, null, false);
+		hasBtnEarlier = true;
+
+		// If we're in Go To Date Mode, show the "newer trips" button.
+		btnLater = new Button(this);
+		btnLater.setText(R.string.logbook_show__later_trips);
+		btnLater.setOnClickListener(new View.OnClickListener() {
+			public void onClick(View v) { onClick_BtnLater(v); }
+		});
+		if ((goToDate != 0) && (ltm.getRangeCount() > 0))
 		{
-			// shouldn't happen, but just in case
-			Log.e(TAG, "layout items not found");
-			Toast.makeText(this, "L110: internal error: layout items not found", Toast.LENGTH_SHORT).show();
-			View btnEarlier = findViewById(R.id.logbook_show_btn_earlier);
-			if (btnEarlier != null)
-				btnEarlier.setVisibility(View.GONE);
+			tripList.addFooterView(btnLater, null, false);
+			hasBtnLater = true;
 		}
 
-		// Add the trip rows to textview
-		tvNoTripsFound = tvContent;  // first textview, for addTripsTextViews to reuse
-		addTripsTextViews(tripsStrs, trips, true, false);
+		// Add the trip rows to the list
+		tripAdapter = new TripRowAdapter();
 		if (sbEmpty)
-			tvNoTripsFound = tvContent;  // addTripsTextViews may have set it null
-		else
-			tvNoTripsFound = null;
-
-		// If we're in Go To Date Mode, show the hidden "newer trips" button.
-		if ((goToDate != 0) && (ltm.getRangeCount() > 0))
 		{
-			View btnLater = findViewById(R.id.logbook_show_btn_later);
-			if (btnLater != null)
-				btnLater.setVisibility(View.VISIBLE);
+			rowStrs.addAll(tripsStrs);
+			rowTrips.add(null);
+			rowRanges.add(null);
+			rowsAreNoTripsMsg = true;
+		} else {
+			addTripRows(range, tripsStrs, true);
 		}
+		tripList.setAdapter(tripAdapter);
+		tripList.setOnItemClickListener(this);
+		tripList.setOnScrollListener(new TripListScrollListener());
 
 		// Scroll to bottom (most recent), unless in Go To Date mode.
 		if (goToDate == 0)
-		{
-			sv = (ScrollView) findViewById(R.id.logbook_show_triplist_scroll);
-			if (sv != null)
-				sv.post(new Runnable() {
-					public void run() {
-						sv.fullScroll(ScrollView.FOCUS_DOWN);
-					}
-				});
-		}
+			tripList.setSelection(tripList.getHeaderViewsCount() + rowStrs.size() - 1);
 	}
 
 	/** Show a logbook-related dialog. */
@@ -533,6 +609,9 @@ public class LogbookShow extends Activity
 		case R.id.menu_logbook_search_vias:
 			return new SearchViasPopup(((showV != null) ? showV.getID() : 0), this, db).getDialog();
 
+		case R.id.menu_logbook_search_comments:
+			return new SearchCommentsPopup(((showV != null) ? showV.getID() : 0), this, db).getDialog();
+
 		case R.id.menu_logbook_export:
 			return onCreateExportDialog();
 	    }
@@ -774,6 +853,10 @@ public class LogbookShow extends Activity
 			showDialog(R.id.menu_logbook_search_vias);
 			return true;
 
+		case R.id.menu_logbook_search_comments:
+			showDialog(R.id.menu_logbook_search_comments);
+			return true;
+
 		case R.id.menu_logbook_validate:
 			doDBValidation();
 			return true;
@@ -789,17 +872,19 @@ public class LogbookShow extends Activity
 
 	/**
 	 * Load a few weeks of earlier trips from the database.
+	 * Called when {@link #btnEarlier} is tapped, or when {@link #tripList} is scrolled to its top.
 	 * @param v  ignored
 	 * @see #onClick_BtnLater(View)
 	 */
 	public void onClick_BtnEarlier(View v)
 	{
-		// TODO if too many ranges loaded, consider clear out most recent ones
 		if (! ltm.addEarlierTrips(db))
 		{
-			View btnEarlier = findViewById(R.id.logbook_show_btn_earlier);
-			if (btnEarlier != null)
-				btnEarlier.setVisibility(View.GONE);
+			if (hasBtnEarlier)
+			{
+				tripList.removeHeaderView(btnEarlier);
+				hasBtnEarlier = false;
+			}
 			Toast.makeText
 				(this, R.string.no_earlier_trips_found, Toast.LENGTH_SHORT).show();
 			return;
@@ -807,37 +892,31 @@ public class LogbookShow extends Activity
 
 		rangeEarlierClicked = true;
 
+		// Remember the current scroll position, so that what's currently visible stays visible
+		final int firstPos = tripList.getFirstVisiblePosition();
+		final View firstV = tripList.getChildAt(0);
+		final int firstTop = (firstV != null) ? firstV.getTop() : 0;
+
 		final Trip.TripListTimeRange range = ltm.getRange(0);
-		final List<TextView> ltv = addTripsTextViews
-			(range.getTripListRowsTabbed(), range.tr, false, true);
-
-		// Once layout is done, scroll to the bottom of the newly added text
-		// so that what's currently visible, stays visible.
-		if (sv != null)
-			sv.post(new Runnable() {
-				public void run() {
-					int h = 0;
-					if (ltv != null)
-						for (TextView tv : ltv)
-							h += tv.getMeasuredHeight();
-					sv.scrollTo(0, h);
-				}
-			});
+		final int nAdded = addTripRows(range, range.getTripListRowsTabbed(), false);
+		tripList.setSelectionFromTop(firstPos + nAdded, firstTop);
 	}
 
 	/**
 	 * Load a few weeks of later trips from the database.
+	 * Called when {@link #btnLater} is tapped, or when {@link #tripList} is scrolled to its bottom.
 	 * @param v  ignored
 	 * @see #onClick_BtnEarlier(View)
 	 */
 	public void onClick_BtnLater(View v)
 	{
-		// TODO if too many ranges loaded, consider clear out oldest ones
 		if (! ltm.addLaterTrips(db))
 		{
-			View btnLater = findViewById(R.id.logbook_show_btn_later);
-			if (btnLater != null)
-				btnLater.setVisibility(View.GONE);
+			if (hasBtnLater)
+			{
+				tripList.removeFooterView(btnLater);
+				hasBtnLater = false;
+			}
 			Toast.makeText
 				(this, R.string.no_later_trips_found, Toast.LENGTH_SHORT).show();
 			return;
@@ -845,111 +924,125 @@ public class LogbookShow extends Activity
 		rangeEarlierClicked = false;
 
 		final Trip.TripListTimeRange range = ltm.getRange(ltm.getRangeCount() - 1);
-		addTripsTextViews(range.getTripListRowsTabbed(), range.tr, true, false);
+		addTripRows(range, range.getTripListRowsTabbed(), true);
 	}
 
 	/**
-	 * Add new Trips as TextViews to the top or bottom of the activity.
-	 *<P>
-	 * If {@code tr != null}, will call {@link View#setTag(Object) tv.setTag(tr)} and add {@code LogbookShow}
-	 * as an onClickListener.
+	 * Add a range's Trips as rows at the top or bottom of {@link #tripList}.
+	 * If {@link #rowsAreNoTripsMsg}, that message row is replaced by the new trips.
+	 * The range becomes the most recently shown in {@link #rowStrsRendered},
+	 * which may clear the text of the least recently shown range's rows.
 	 *
-	 * @param tripsStrs  New trip strings to add, by calling {@link Trip.TripListTimeRange#getTripListRowsTabbed()}
-	 * @param trips    Optional list of {@link Trip}s (one per sbTrips item) to associate one per TextView,
-	 *     or {@code null}
-	 * @param isLaterPos  True to add at the bottom of the activity (at {@link #tripListBtnLaterPosition}),
-	 *     false to add at the top (below {@link #tripListBtnEarlierPosition}).
-	 *     If {@link #tvNoTripsFound} != {@code null}, that TextView's contents will be replaced
-	 *     with the first trip's strings.
-	 * @param wantTVList  True to return a list of the created TextViews for callback use
-	 * @return A list of the created TextViews if {@code wantTVList} (which may be null), or {@code null}
-	 * @throws IllegalArgumentException if {@code trips} != {@code null} but its size differs from {@code sbTrips}
-	 * @since 0.9.60
+	 * @param range  Range of {@link #ltm} being added
+	 * @param tripsStrs  New trip strings to add, from {@code range}'s
+	 *     {@link Trip.TripListTimeRange#getTripListRowsTabbed()}
+	 * @param isLaterPos  True to add at the bottom of the list, false to add at the top
+	 * @return  Net number of rows added, for adjusting the scroll position
+	 * @throws IllegalArgumentException if {@code range.tr} != {@code null} but its size differs from {@code tripsStrs}
+	 * @since 0.9.93
 	 */
-	private List<TextView> addTripsTextViews
-		(final List<CharSequence> tripsStrs, final List<Trip> trips,
-		 final boolean isLaterPos, final boolean wantTVList)
+	private int addTripRows
+		(final Trip.TripListTimeRange range, final List<CharSequence> tripsStrs, final boolean isLaterPos)
 		throws IllegalArgumentException
 	{
+		final List<Trip> trips = range.tr;
 		if ((tripsStrs == null) || tripsStrs.isEmpty())
-			return null;
+			return 0;
 		final int S = tripsStrs.size();
 		if ((trips != null) && (trips.size() != S))
-			throw new IllegalArgumentException("trips size != sbTrips");
+			throw new IllegalArgumentException("trips size != tripsStrs");
 
-		if (TS_ROW_LP == null)
-			TS_ROW_LP = new ViewGroup.LayoutParams
-				(ViewGroup.LayoutParams.FILL_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+		int nAdded = S;
+		if (rowsAreNoTripsMsg)
+		{
+			rowStrs.clear();
+			rowTrips.clear();
+			rowRanges.clear();
+			rowsAreNoTripsMsg = false;
+			--nAdded;
+		}
 
-		final List<TextView> tvl = (wantTVList) ? new ArrayList<TextView>(tripsStrs.size()) : null;
-		if (isLaterPos)
+		final List<Trip> addTrips;
+		if (trips != null)
+		{
+			addTrips = trips;
+		} else {
+			addTrips = new ArrayList<Trip>(S);
 			for (int i = 0; i < S; ++i)
-				addTripsTextViews_addOne
-				    (tripsStrs.get(i), ((trips != null) ? trips.get(i) : null), tvl, true);
-		else
-			for (int i = S - 1; i >= 0; --i)
-				addTripsTextViews_addOne
-				    (tripsStrs.get(i), ((trips != null) ? trips.get(i) : null), tvl, false);
+				addTrips.add(null);
+		}
 
-		return tvl;
+		final List<Trip.TripListTimeRange> addRanges = Collections.nCopies(S, range);
+		if (isLaterPos)
+		{
+			rowStrs.addAll(tripsStrs);
+			rowTrips.addAll(addTrips);
+			rowRanges.addAll(addRanges);
+		} else {
+			rowStrs.addAll(0, tripsStrs);
+			rowTrips.addAll(0, addTrips);
+			rowRanges.addAll(0, addRanges);
+		}
+		rowStrsRendered.put(range, Boolean.TRUE);  // may clear the least recently shown range's rows
+		tripAdapter.notifyDataSetChanged();
+
+		return nAdded;
 	}
 
 	/**
-	 * Add one trip's text to a new TextView within {@link #addTripsTextViews(List, List, boolean, boolean)}'s loop.
-	 * @since 0.9.60
+	 * Render again the text of a range's rows, which was cleared from {@link #rowStrs}
+	 * because its range wasn't recently shown; see {@link #rowStrsRendered}.
+	 * @param position  Position within {@link #rowStrs} of any row in the range
+	 * @return  Text of the row at {@code position}
+	 * @since 0.9.93
 	 */
-	private void addTripsTextViews_addOne
-		(final CharSequence tripStr, final Trip tr, final List<TextView> tvl, final boolean isLaterPos)
+	private CharSequence renderRangeRows(final int position)
 	{
-		final TextView tv;
-
-		if (tvNoTripsFound != null)
-		{
-			// replace that with the trip text
-			tv = tvNoTripsFound;
-			tv.setText(tripStr);
-			tvNoTripsFound = null;
-		} else {
-			// create a new textview
-			tv = new TextView(this);
-			tv.setLayoutParams(TS_ROW_LP);
-			tv.setText(tripStr);
-
-			if (isLaterPos)
-				tripListParentLayout.addView(tv, tripListBtnLaterPosition);
-			else
-				tripListParentLayout.addView(tv, tripListBtnEarlierPosition + 1);
-
-			++tripListBtnLaterPosition;
-		}
-
-		if (tr != null)
-		{
-			tv.setTag(tr);
-			tv.setOnClickListener(this);
-		}
+		final Trip.TripListTimeRange range = rowRanges.get(position);
+		List<CharSequence> tripsStrs = range.getTripListRowsTabbed();
+		if ((tripsStrs != null) && (range == currentTripRange))
+			appendCurrentTripNote(tripsStrs);
+
+		int i = position;
+		while ((i > 0) && (rowRanges.get(i - 1) == range))
+			--i;
+		for (int j = 0; (i < rowRanges.size()) && (rowRanges.get(i) == range); ++i, ++j)
+			rowStrs.set(i, ((tripsStrs != null) && (j < tripsStrs.size())) ? tripsStrs.get(j) : "");
+		rowStrsRendered.put(range, Boolean.TRUE);  // may clear the least recently shown range's rows
+
+		return rowStrs.get(position);
+	}
 
-		if (tvl != null)
-			tvl.add(tv);
+	/**
+	 * Append the "Current Trip in progress" note to the last of these trip strings.
+	 * @param tripsStrs  Trip strings from {@link Trip.TripListTimeRange#getTripListRowsTabbed()}; not empty
+	 * @since 0.9.93
+	 */
+	private static void appendCurrentTripNote(final List<CharSequence> tripsStrs)
+	{
+		CharSequence tripCS = tripsStrs.get(tripsStrs.size() - 1);
+		if (tripCS instanceof Appendable)  // StringBuilder or android.text.SpannableStringBuilder
+			try {
+				((Appendable) tripCS).append("\n\t\t(Current Trip in progress)");
+			} catch (IOException e) {}
 	}
 
 	/**
-	 * Handle taps on a Trip's TextView to show more info.
+	 * Handle taps on a Trip's row to show more info.
 	 * Creates and shows a dialog using {@link LogbookShowTripDetailDialogBuilder}.
-	 * @param v  A trip's TextView; {@link View#getTag() v.getTag()} contains the {@link Trip} to show
+	 * @param parent  {@link #tripList}
+	 * @param position  Position within {@code parent}, including header
 	 * @since 0.9.60
 	 */
-	@Override
-	public void onClick(View v)
+	public void onItemClick(AdapterView<?> parent, View v, int position, long id)
 	{
-		final Object tag = v.getTag();
-		if ((tag == null) || ! (tag instanceof Trip))
+		final Object item = parent.getItemAtPosition(position);
+		if ((item == null) || ! (item instanceof Trip))
 			return;
 
-		tddb_tripView = (TextView) v;
 		tddb = new LogbookShowTripDetailDialogBuilder
 			(this, R.id.logbook_show_popup_trip_detail_tstop_list, this,
-			 (Trip) tag, ltm, db);
+			 (Trip) item, ltm, db);
 		tddb.create().show();
 	}
 
@@ -978,8 +1071,6 @@ public class LogbookShow extends Activity
 	 */
 	public void onDetailDialogDismissed(LogbookShowTripDetailDialogBuilder src)
 	{
-		final TextView tripView = tddb_tripView;
-
 		final HashSet<Integer> changedTSIDs = src.getUpdatedTStopIDs();
 		if (changedTSIDs == null)
 			return;
@@ -992,11 +1083,15 @@ public class LogbookShow extends Activity
 				tripTTR = ttr;
 		}
 
-		if ((tripTTR != null) && (tripView != null))
+		if (tripTTR != null)
 		{
 			CharSequence tstr = tripTTR.getTripRowsTabbed(src.tr.getID());
-			if (tstr != null)
-				tripView.setText(tstr);
+			final int i = rowTrips.indexOf(src.tr);
+			if ((tstr != null) && (i != -1))
+			{
+				rowStrs.set(i, tstr);
+				tripAdapter.notifyDataSetChanged();
+			}
 		}
 	}
 
@@ -1011,6 +1106,8 @@ public class LogbookShow extends Activity
 			verifCache = null;
 		}
 
+		if (archive != null)
+			archive.close();  // reopened on demand
 		if (db != null)
 			db.close();
 	}
@@ -1033,28 +1130,167 @@ public class LogbookShow extends Activity
 			verifCache = null;
 		}
 
+		if (archive != null)
+			archive.close();
 		if (db != null)
 			db.close();
 	}
 
 	/**
-	 * Run db validation level {@link RDBVerifier#LEVEL_TDATA} in a separate thread.
+	 * Adapter for {@link LogbookShow#tripList}: One row per trip, from {@link LogbookShow#rowStrs}.
+	 * Only visible rows have views; rows scrolled out of view are reused by {@link #getView(int, View, ViewGroup)}.
+	 * @since 0.9.93
+	 */
+	private class TripRowAdapter extends BaseAdapter
+	{
+		public int getCount() { return rowStrs.size(); }
+
+		public Object getItem(final int position) { return rowTrips.get(position); }
+
+		public long getItemId(final int position)
+		{
+			final Trip tr = rowTrips.get(position);
+			return (tr != null) ? tr.getID() : -1;
+		}
+
+		@Override
+		public boolean areAllItemsEnabled() { return false; }
+
+		/** The "no trips found" message row isn't tappable. */
+		@Override
+		public boolean isEnabled(final int position) { return (rowTrips.get(position) != null); }
+
+		public View getView(final int position, final View convertView, final ViewGroup parent)
+		{
+			final TextView tv;
+			if (convertView instanceof TextView)
+			{
+				tv = (TextView) convertView;
+			} else {
+				tv = new TextView(LogbookShow.this);
+				tv.setLayoutParams(new AbsListView.LayoutParams
+					(AbsListView.LayoutParams.FILL_PARENT, AbsListView.LayoutParams.WRAP_CONTENT));
+			}
+			CharSequence cs = rowStrs.get(position);
+			if (cs == null)
+				cs = renderRangeRows(position);
+			else if (rowRanges.get(position) != null)
+				rowStrsRendered.get(rowRanges.get(position));  // mark as recently shown
+			tv.setText(cs);
+
+			return tv;
+		}
+	}
+
+	/**
+	 * Scroll listener for {@link LogbookShow#tripList}: When the user scrolls to the top or bottom,
+	 * load earlier or later trips if the header or footer button is still shown.
+	 * @since 0.9.93
+	 */
+	private class TripListScrollListener implements AbsListView.OnScrollListener
+	{
+		/** Has the user scrolled yet? Prevents loading when the list is first shown. */
+		private boolean userScrolled;
+
+		public void onScrollStateChanged(final AbsListView view, final int scrollState)
+		{
+			if (scrollState != SCROLL_STATE_IDLE)
+				userScrolled = true;
+		}
+
+		public void onScroll
+			(final AbsListView view, final int firstVisible, final int visibleCount, final int totalCount)
+		{
+			if ((! userScrolled) || scrollLoadPending || (visibleCount == 0))
+				return;
+
+			final boolean atTop = hasBtnEarlier && (firstVisible == 0);
+			final boolean atBottom = hasBtnLater && (firstVisible + visibleCount >= totalCount);
+			if (! (atTop || atBottom))
+				return;
+
+			// Load after this scroll callback returns, not during it
+			scrollLoadPending = true;
+			view.post(new Runnable()
+			{
+				public void run()
+				{
+					scrollLoadPending = false;
+					if (atTop)
+						onClick_BtnEarlier(null);
+					else
+						onClick_BtnLater(null);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Run db validation level {@link RDBVerifier#LEVEL_TDATA} on a {@link RDBExecutor} reader thread.
 	 * Uses {@link LogbookShow#verifCache}, which must not be null.
 	 * Calls {@link RDBVerifier#verify(int)}, then clears {@link LogbookShow#verifTask}.
-	 * If OK, clears {@link LogbookShow#verifCache} to free memory.
+	 * If OK or cancelled, clears {@link LogbookShow#verifCache} to free memory.
+	 * Shows a progress bar; the user can cancel by pressing Back.
 	 *
 	 * @see LogbookShow#doDBValidation()
 	 * @see BackupsRestore.ValidateDBTask
 	 */
-	private class ValidateDBTDataTask extends AsyncTask<Void, Integer, Boolean>
+	private class ValidateDBTDataTask
+		implements RDBExecutor.Task<Boolean>, RDBExecutor.Callback<Boolean>, RDBVerifier.ProgressListener
 	{
 		ProgressDialog dia;
 
-		@Override
-		protected Boolean doInBackground(final Void... unusedParam)
+		/** {@link LogbookShow#verifCache} when started, which run() may clear */
+		RDBVerifier verif;
+
+		/** Show the progress dialog and submit this task to the shared executor. Call from the UI thread. */
+		public void start()
 		{
-			final boolean ok = (verifCache.verify(RDBVerifier.LEVEL_TDATA) == 0);
-			if (ok)
+			verifTask = this;
+			verif = verifCache;
+			verif.setProgressListener(this);
+
+			dia = new ProgressDialog(LogbookShow.this);
+			dia.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+			dia.setMessage(getResources().getString(R.string.logbook_show__validating_db));
+			dia.setIndeterminate(true);
+			dia.setCancelable(true);
+			dia.setOnCancelListener(new DialogInterface.OnCancelListener()
+			{
+				public void onCancel(DialogInterface dialog)
+				{
+					verif.cancel();  // verify will return soon, then onResult
+				}
+			});
+			dia.show();
+
+			RDBExecutor.get(LogbookShow.this).submitRead(this, this);
+		}
+
+		/** Update the progress bar; called from the reader thread. */
+		public void verifyProgress(final int level, final String tabname, final int done, final int total)
+		{
+			runOnUiThread(new Runnable()
+			{
+				public void run()
+				{
+					if (total > 0)
+					{
+						dia.setIndeterminate(false);
+						dia.setMax(total);
+						dia.setProgress(Math.min(done, total));
+					} else {
+						dia.setIndeterminate(true);
+					}
+				}
+			});
+		}
+
+		public Boolean run(final RDBAdapter unusedDB)
+		{
+			final boolean ok = (verif.verify(RDBVerifier.LEVEL_TDATA) == 0);
+			verif.setProgressListener(null);
+			if (ok || verif.isCancelled())
 			{
 				if (verifCache != null)
 				{
@@ -1067,27 +1303,21 @@ public class LogbookShow extends Activity
 			return ok ? Boolean.TRUE : Boolean.FALSE;
 		}
 
-		@Override
-		protected void onPreExecute()
+		public void onError(final Exception e)
 		{
-			verifTask = this;
-
-			dia = new ProgressDialog(LogbookShow.this);
-			// dia.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);  TODO progress bar
-			dia.setMessage(getResources().getString(R.string.logbook_show__validating_db));
-			dia.setIndeterminate(true);
-			dia.setCancelable(false);
-			dia.show();
+			verifTask = null;
+			onResult(Boolean.FALSE);
 		}
 
-		@Override
-		protected void onProgressUpdate(Integer... progress) { }
-
-		@Override
-		protected void onPostExecute(final Boolean ok)
+		public void onResult(final Boolean ok)
 		{
 			if (dia.isShowing())
 				dia.dismiss();
+			if (verif.isCancelled())
+			{
+				Toast.makeText(LogbookShow.this, R.string.logbook_show__validation_cancelled, Toast.LENGTH_SHORT).show();
+				return;
+			}
 
 			boolean shouldAskBkup = false;
 			int bkupDaysAgo = 0;
@@ -1330,6 +1560,150 @@ public class LogbookShow extends Activity
 		}
 	}
 
+	/**
+	 * Search trip and stop comments: A popup where the user enters words to search for,
+	 * then a list of the matching comments. Tapping one shows a new {@link LogbookShow}
+	 * in "Go To Date" mode ({@link LogbookShow#EXTRAS_DATE}) starting at that comment's trip.
+	 * Uses {@link CommentIndex#searchComments(RDBAdapter, String, Vehicle, int)}.
+	 * @since 0.9.93
+	 */
+	public static final class SearchCommentsPopup
+	{
+		/** Maximum number of search results to show */
+		private static final int RESULTS_LIMIT = 100;
+
+		/** Maximum length of each comment shown in the search results */
+		private static final int RESULT_COMMENT_MAXLEN = 80;
+
+		/** Most recent search text, to show again in next popup; null if none */
+		private static String prevQuery = null;
+
+		/** Search all vehicles? */
+		private static boolean allV = false;
+
+		private AlertDialog aDia;
+
+		/**
+		 * Create a new {@link SearchCommentsPopup}, ready to show.
+		 * Remember to call {@link #getDialog()} from the UI thread.
+		 * @param vID  Vehicle to search, or 0 for current vehicle, unless user checks "All vehicles"
+		 * @param fromActivity  Current activity; will call {@link Activity#startActivity(Intent)} on it
+		 * @param db  Connection to use
+		 */
+		public SearchCommentsPopup(final int vID, final Activity fromActivity, final RDBAdapter db)
+		{
+			final View askItems =
+				fromActivity.getLayoutInflater().inflate(R.layout.logbook_show_popup_comment_search, null);
+			final EditText etQuery =
+				(EditText) askItems.findViewById(R.id.logbook_show_popup_comments_text);
+			final CheckBox cbAllV =
+				(CheckBox) askItems.findViewById(R.id.logbook_show_popup_comments_allv);
+			if (prevQuery != null)
+				etQuery.setText(prevQuery);
+			cbAllV.setChecked(allV);
+
+			AlertDialog.Builder alert = new AlertDialog.Builder(fromActivity);
+			alert.setMessage(R.string.logbook_show__search_comments__desc);
+			alert.setView(askItems);
+			alert.setPositiveButton(android.R.string.search_go, new DialogInterface.OnClickListener() {
+				public void onClick(DialogInterface dialog, int whichButton)
+				{
+					final String qText = etQuery.getText().toString().trim();
+					prevQuery = qText;
+					allV = cbAllV.isChecked();
+					if (qText.length() == 0)
+					{
+						Toast.makeText
+							(fromActivity, R.string.logbook_show__search_comments__please_enter,
+							 Toast.LENGTH_SHORT).show();
+						return;
+					}
+
+					Vehicle veh = null;
+					if (! allV)
+					{
+						if (vID == 0) {
+							veh = Settings.getCurrentVehicle(db, false);
+						} else {
+							try {
+								veh = new Vehicle(db, vID);
+							} catch (RDBKeyNotFoundException e) {}
+						}
+					}
+
+					List<CommentIndex.Match> found = null;
+					try
+					{
+						found = CommentIndex.searchComments(db, qText, veh, RESULTS_LIMIT);
+					} catch (RuntimeException e) {
+						// IllegalStateException from JDBC-style adapter, or SQLiteException
+						Log.e(TAG, "searchComments failed", e);
+					}
+					showResults(found, fromActivity);
+				}
+			});
+			alert.setNegativeButton(android.R.string.cancel, null);
+
+			aDia = alert.create();
+		}
+
+		/**
+		 * Show the search results in a list popup.
+		 * Tapping a result shows its trip in a new {@link LogbookShow}.
+		 * @param found  Search results, or null if none
+		 * @param fromActivity  Current activity; will call {@link Activity#startActivity(Intent)} on it
+		 */
+		private static void showResults(final List<CommentIndex.Match> found, final Activity fromActivity)
+		{
+			if (found == null)
+			{
+				Toast.makeText(fromActivity, R.string.none_found, Toast.LENGTH_SHORT).show();
+				return;
+			}
+
+			final RTRDateTimeFormatter dtf = new RTRAndroidDateTimeFormatter(fromActivity.getApplicationContext());
+			final CharSequence[] items = new CharSequence[found.size()];
+			for (int i = 0; i < items.length; ++i)
+			{
+				final CommentIndex.Match m = found.get(i);
+				String comm = m.comment.replace('\n', ' ');
+				if (comm.length() > RESULT_COMMENT_MAXLEN)
+					comm = comm.substring(0, RESULT_COMMENT_MAXLEN) + "...";
+				items[i] = (m.tripTimeStart != 0)
+					? (dtf.formatDate(m.tripTimeStart * 1000L) + ": " + comm)
+					: comm;
+			}
+
+			new AlertDialog.Builder(fromActivity)
+				.setTitle(R.string.logbook_show__search_comments)
+				.setItems(items, new DialogInterface.OnClickListener() {
+					public void onClick(DialogInterface dialog, int which)
+					{
+						final CommentIndex.Match m = found.get(which);
+						final int goToDate = (m.tripTimeStart != 0)
+							? (int) (dtf.startTimeOfDay(m.tripTimeStart * 1000L) / 1000L)
+							: 0;
+						Intent i = new Intent(fromActivity, LogbookShow.class);
+						i.putExtra(EXTRAS_DATE, goToDate);
+						i.putExtra(EXTRAS_VEHICLE_ID, m.vehicleID);
+						fromActivity.startActivity(i);
+					}
+				})
+				.setNegativeButton(android.R.string.cancel, null)
+				.show();
+		}
+
+		/**
+		 * Get the built search dialog. Call this method from {@code onCreateDialog(..)}
+		 * instead of building a new one.
+		 * @return the AlertDialog
+		 */
+		public AlertDialog getDialog()
+		{
+			return aDia;
+		}
+	}
+
 	/**
 	 * Show {@link ViaRoute}s between two locations:
 	 * A popup where two locations can be chosen by the user from the current
@@ -35,7 +35,8 @@ import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.TripCategory;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
+import org.shadowlands.roadtrip.util.PhaseTimer;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
@@ -52,6 +53,7 @@ import android.text.SpannableStringBuilder;
 import android.text.format.DateUtils;
 import android.text.method.LinkMovementMethod;
 import android.text.util.Linkify;
+import android.util.Log;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -72,6 +74,9 @@ import android.widget.Toast;
  */
 public class Main extends Activity
 {
+	/** android log tag */
+	private static final String TAG = "Roadtrip.Main";
+
 	private RDBAdapter db = null;
 
 	/** Current vehicle; updated in {@link #updateDriverVehTripTextAndButtons()} */
@@ -98,7 +103,7 @@ public class Main extends Activity
 		setContentView(R.layout.main);
 
 		tvCurrentSet = (TextView) findViewById(R.id.main_text_current);
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 
 		btnBeginTrip = (Button) findViewById(R.id.main_btn_begin_trip);
 		btnBeginFreq = (Button) findViewById(R.id.main_btn_begin_freqtrip);
@@ -679,12 +684,19 @@ public class Main extends Activity
 			db.close();
 	}
 
-	// TODO javadoc
+	/**
+	 * Check current settings and update the displayed driver, vehicle, trip, and buttons.
+	 * If current settings aren't found, go back to {@link AndroidStartup}.
+	 * Logs the time taken by each phase, as an info-level message with tag {@link #TAG}.
+	 */
 	@Override
 	public void onResume()
 	{
 		super.onResume();
-		if (! checkCurrentDriverVehicleSettings())
+		final PhaseTimer timer = new PhaseTimer("Main.onResume");
+		final boolean settingsOK = checkCurrentDriverVehicleSettings();
+		timer.mark("checkSettings");
+		if (! settingsOK)
 		{
 			Toast.makeText(getApplicationContext(),
 				"Current driver/vehicle not found in db",
@@ -696,6 +708,8 @@ public class Main extends Activity
 
 		// Give status
 		updateDriverVehTripTextAndButtons();
+		timer.mark("updateText");
+		Log.i(TAG, timer.toString());
 	}
 
 	@Override
@@ -20,9 +20,12 @@
 package org.shadowlands.roadtrip.android;
 
 
+import java.io.File;
+
 import org.shadowlands.roadtrip.R;
+import org.shadowlands.roadtrip.android.util.AnFileUtils;
 import org.shadowlands.roadtrip.db.*;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.os.Bundle;
@@ -50,6 +53,12 @@ public class SettingsActivity extends Activity
 	/** Checkbox for <tt>HIDE_VIA</tt> */
 	private CheckBox cbHideVia;
 
+	/**
+	 * Checkbox for <tt>SLOW_QUERY_THRESHOLD_MS</tt> != 0
+	 * @since 0.9.93
+	 */
+	private CheckBox cbLogSlowQueries;
+
 	/** Called when the activity is first created.
 	 * See {@link #onResume()} for remainder of init work,
 	 * which includes checking the current settings
@@ -64,14 +73,15 @@ public class SettingsActivity extends Activity
 		cbHideTripPax = (CheckBox) findViewById(R.id.cb_set_hide_trip_pax);
 		cbHideVia = (CheckBox) findViewById(R.id.cb_set_hide_via);
 		cbReqTripCat = (CheckBox) findViewById(R.id.cb_req_tripcat); 
-		db = new RDBOpenHelper(this);
+		cbLogSlowQueries = (CheckBox) findViewById(R.id.cb_set_log_slow_queries);
+		db = RDBExecutor.getDB(this);
 
 		// see onResume for rest of initialization.
 	}
 
 	/**
 	 * Check Settings table for <tt>REQUIRE_TRIPCAT</tt>.  Set {@link #cbReqTripCat}.
-	 * Also <tt>HIDE_FREQTRIP</tt>, <tt>SHOW_TRIP_PAX</tt> and <tt>HIDE_VIA</tt>.
+	 * Also <tt>HIDE_FREQTRIP</tt>, <tt>SHOW_TRIP_PAX</tt>, <tt>HIDE_VIA</tt> and <tt>SLOW_QUERY_THRESHOLD_MS</tt>.
 	 */
 	@Override
 	public void onResume()
@@ -85,11 +95,14 @@ public class SettingsActivity extends Activity
 		cbHideVia.setChecked(b);
 		b = Settings.getBoolean(db, Settings.REQUIRE_TRIPCAT, false);
 		cbReqTripCat.setChecked(b);
+		b = (0 != Settings.getInt(db, Settings.SLOW_QUERY_THRESHOLD_MS, 0));
+		cbLogSlowQueries.setChecked(b);
 	}
 
 	/**
 	 * Update <tt>REQUIRE_TRIPCAT</tt> in db, if different from {@link #cbReqTripCat}.
-	 * Also <tt>HIDE_FREQTRIP</tt>, <tt>SHOW_TRIP_PAX</tt> and <tt>HIDE_VIA</tt>.
+	 * Also <tt>HIDE_FREQTRIP</tt>, <tt>SHOW_TRIP_PAX</tt>, <tt>HIDE_VIA</tt> and <tt>SLOW_QUERY_THRESHOLD_MS</tt>;
+	 * if that threshold changes, calls {@link RDBSlowQueryLog#configureFromSettings(RDBAdapter, File)}.
 	 */
 	@Override
 	public void onPause()
@@ -116,6 +129,16 @@ public class SettingsActivity extends Activity
 		if (db_reqTripCat != cb_reqTripCat)
 			Settings.setBoolean(db, Settings.REQUIRE_TRIPCAT, cb_reqTripCat);
 
+		final boolean db_logSlow = (0 != Settings.getInt(db, Settings.SLOW_QUERY_THRESHOLD_MS, 0));
+		final boolean cb_logSlow = cbLogSlowQueries.isChecked();
+		if (db_logSlow != cb_logSlow)
+		{
+			Settings.setInt(db, Settings.SLOW_QUERY_THRESHOLD_MS,
+				(cb_logSlow) ? RDBSlowQueryLog.DEFAULT_THRESHOLD_MS : 0);
+			final String logDir = AnFileUtils.getAppSDPath(getApplicationContext(), "");
+			RDBSlowQueryLog.configureFromSettings(db, (logDir != null) ? new File(logDir) : null);
+		}
+
 		if (db != null)
 			db.close();
 	}
@@ -37,7 +37,7 @@ import org.shadowlands.roadtrip.db.TStop;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -303,7 +303,7 @@ public class TripBegin extends Activity
 			isFrequent = i.getBooleanExtra(EXTRAS_FLAG_FREQUENT, false);
 		} // else, is false
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 		startTime = Calendar.getInstance();
 		startTimeAtCreate = System.currentTimeMillis();
 		startTime.setTimeInMillis(startTimeAtCreate);
@@ -23,13 +23,14 @@ import java.util.Vector;
 
 import org.shadowlands.roadtrip.R;
 import org.shadowlands.roadtrip.db.FreqTrip;
+import org.shadowlands.roadtrip.db.FreqTripMiner;
 import org.shadowlands.roadtrip.db.GeoArea;
 import org.shadowlands.roadtrip.db.Location;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -90,7 +91,7 @@ public class TripBeginChooseFreq extends Activity
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.trip_begin_choose_freq);
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 
 		lvFreqTripsList = (ListView) findViewById(R.id.trip_begin_choosefreq_list);
 		lvFreqTripsList.setOnItemClickListener(this);
@@ -161,6 +162,7 @@ public class TripBeginChooseFreq extends Activity
 
 	/**
 	 * List the frequent trips currently available, from {@link #locID} if known, or for current area.
+	 * Trips are ranked most likely first for the current time of day by {@link FreqTripMiner}.
 	 * @return true if {@link FreqTrip}s found, false otherwise
 	 */
 	private boolean populateTripsList(RDBAdapter db)
@@ -187,6 +189,7 @@ public class TripBeginChooseFreq extends Activity
 			freqTrips = null;
 			return false;
 		}
+		FreqTripMiner.get(db).rankFreqTrips(fts, (int) (System.currentTimeMillis() / 1000L));
 		freqTrips = fts;
 		lvFreqTripsList.setAdapter(new ArrayAdapter<FreqTrip>(this, R.layout.list_item, fts));
 
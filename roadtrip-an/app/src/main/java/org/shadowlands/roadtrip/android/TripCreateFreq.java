@@ -31,7 +31,7 @@ import org.shadowlands.roadtrip.db.TStop;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.db.TripCategory;
 import org.shadowlands.roadtrip.db.ViaRoute;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -168,7 +168,7 @@ public class TripCreateFreq extends Activity
 	    // Listeners, contents of tpAtTime, etDescr will be set once we've
 	    // read the trip data from the db.
 
-	    db = new RDBOpenHelper(this);
+	    db = RDBExecutor.getDB(this);
 
 		Intent i = getIntent();
 		srcT = null;
@@ -28,7 +28,7 @@ import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -71,7 +71,7 @@ public class TripTStopChooseFreq extends Activity
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.trip_tstop_choose_freq);
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 
 		lvFreqStopsList = (ListView) findViewById(R.id.trip_tstop_choosefreq_list);
 		lvFreqStopsList.setOnItemClickListener(this);
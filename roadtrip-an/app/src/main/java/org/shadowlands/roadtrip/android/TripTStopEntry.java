@@ -33,6 +33,7 @@ import org.shadowlands.roadtrip.db.Person;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
 import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RouteGraph;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.TStop;
 import org.shadowlands.roadtrip.db.TStopGas;
@@ -41,7 +42,7 @@ import org.shadowlands.roadtrip.db.TripCategory;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
 import org.shadowlands.roadtrip.db.ViaRoute;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 import org.shadowlands.roadtrip.util.android.RTRAndroidDateTimeFormatter;
 
 import android.app.Activity;
@@ -167,6 +168,23 @@ public class TripTStopEntry extends Activity
 
 	private RDBAdapter db = null;
 
+	/**
+	 * While {@link #enterTStop(boolean)}'s db updates are running on the {@link RDBExecutor} writer thread,
+	 * that task; otherwise null. Used to ignore more button presses until it finishes.
+	 * If the activity is recreated (screen rotation, etc) while saving, the task is passed to the new
+	 * instance by {@link #onRetainNonConfigurationInstance()} and {@link #onCreate(Bundle)}.
+	 * @since 0.9.93
+	 */
+	private SaveTStopTask saveTask;
+
+	/**
+	 * While {@link #prefillOdosFromRouteGraph()}'s estimate is being read on an {@link RDBExecutor} reader thread,
+	 * that task; otherwise null. If the location changes before it's done, a newer task replaces it
+	 * and the older one's result is ignored.
+	 * @since 0.9.93
+	 */
+	private RouteEstimateTask routeEstTask;
+
 	/**
 	 * Current or most recent GeoArea, from {@link #checkCurrentDriverVehicleTripSettings()}.
 	 * For more details see {@link VehSettings#CURRENT_AREA}.
@@ -321,6 +339,12 @@ public class TripTStopEntry extends Activity
 	private boolean odosAreSetFromVia = false;
 	/** if true, the odometer values were adjusted using FreqTrip data. */
 	private boolean odosAreSetFromFreq = false;
+	/**
+	 * if true, the odometer values were prefilled using {@link RouteGraph} data
+	 * by {@link #prefillOdosFromRouteGraph()}.
+	 * @since 0.9.93
+	 */
+	private boolean odosAreSetFromRoute = false;
 
 	/** if true, {@link #onClick_BtnEnterTStop(View)} has already asked the user to
 	 *  confirm continuing from the stop without entering any odometer.
@@ -583,10 +607,19 @@ public class TripTStopEntry extends Activity
 	{
 		super.onCreate(savedInstanceState);
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 		setContentView(R.layout.trip_tstop_entry);
 		neverPaused = true;
 
+		// If the previous instance was still saving when it was destroyed
+		// for a configuration change, wait for that save instead of allowing another.
+		saveTask = (SaveTStopTask) getLastNonConfigurationInstance();
+		if (saveTask != null)
+		{
+			saveTask.act = this;
+			disableSaveButtons();
+		}
+
 		odo_total_chk = (CheckBox) findViewById(R.id.trip_tstop_odo_total_chk);
 		odo_total = (OdometerNumberPicker) findViewById(R.id.trip_tstop_odo_total);
 		odo_total.setCheckboxOnChanges(odo_total_chk);
@@ -1072,7 +1105,7 @@ public class TripTStopEntry extends Activity
 				// Ending frequent trip. Copy default field values from FreqTrip.
 				copyValuesFromFreqTrip(ft);
 			}
-			else if (ft != null)
+			else if ((ft != null) && (saveTask == null))
 			{
 				// Not ending trip yet. Should ask the user to choose a FreqTripTStop, if available.
 				try {
@@ -1951,6 +1984,32 @@ public class TripTStopEntry extends Activity
 			db.close();
 	}
 
+	/**
+	 * If a {@link SaveTStopTask} is running, keep it for the new activity instance
+	 * created for this configuration change; see {@link #saveTask}.
+	 * @since 0.9.93
+	 */
+	@Override
+	public Object onRetainNonConfigurationInstance()
+	{
+		return saveTask;
+	}
+
+	/**
+	 * Disable the Enter/Continue/End Trip and Save buttons while {@link #saveTask} is running.
+	 * The activity finishes when the task is done, so nothing re-enables them.
+	 * @since 0.9.93
+	 */
+	private void disableSaveButtons()
+	{
+		View b = findViewById(R.id.trip_tstop_btn_enter);
+		if (b != null)
+			b.setEnabled(false);
+		b = findViewById(R.id.trip_tstop_btn_save);
+		if (b != null)
+			b.setEnabled(false);
+	}
+
 	/** For roadtrips, update GUI and data from a click on the 'starting geoarea' button. */
 	public void onClick_BtnAreaStart(View v)
 	{
@@ -2113,6 +2172,9 @@ public class TripTStopEntry extends Activity
 	 * save changes to db, continue from stop if {@link #isCurrentlyStopped}
 	 * unless <tt>saveOnly</tt>, and finish this Activity.
 	 *<P>
+	 * The checks run on the UI thread. The db changes are then made on the {@link RDBExecutor}
+	 * writer thread in one transaction by {@link SaveTStopTask}, which finishes the Activity when done.
+	 *<P>
 	 * If {@link #viewTS} != null: There's nothing to save except possibly comments:
 	 * finish the activity immediately after checking those. If also {@link #isViewTScurrTS},
 	 * everything is read-only including comments. If {@code ! saveOnly}, treat as Close button
@@ -2126,8 +2188,9 @@ public class TripTStopEntry extends Activity
 	protected void enterTStop(final boolean saveOnly)
 	{
 		String locat = null, via_route = null, comment = null;
-		boolean createdGeoArea = false, createdLoc = false, createdVia = false;
-		boolean allOK = true;  // set to false if exception thrown, etc; if false, won't finish() the activity
+
+		if (saveTask != null)
+			return;  // <--- Early return: Already saving to db ---
 
 		/**
 		 * View Previous TStop mode: Almost no changes to save.
@@ -2421,565 +2484,727 @@ public class TripTStopEntry extends Activity
 		}
 
 		/**
-		 * Done checking data entered, time to update the db.
-		 * tsid is the TStop ID we'll create or update here.
-		 * May convert a local trip into a roadtrip; see wantsConvertLocalToRoadtrip below.
+		 * Done checking data entered. Read the rest of the form here on the UI thread,
+		 * then update the db on the {@link RDBExecutor} writer thread: See {@link SaveTStopTask}.
 		 */
-		final int tsid;
+		Location locPicked = null;
+		{
+			final int locatIdx = loc.getListSelection();
+			final ListAdapter la = loc.getAdapter();
+			if ((locatIdx != ListView.INVALID_POSITION)
+			    && (locatIdx != ListAdapter.NO_SELECTION) && (la != null))
+				locPicked = (Location) la.getItem(locatIdx);
+		}
+
+		final TripCategory tripCat = (stopEndsTrip) ? (TripCategory) spTripCat.getSelectedItem() : null;
 
-		// Roadtrip stop within other geoarea:
-		// Get or create the GeoArea db record, if we don't already have it
-		if (usedAreaOther && (areaOther == null))
+		int pax = -1;
+		if (stopEndsTrip && ! saveOnly)
 		{
-			if (areaOtherCreatedHere == null)
+			final String paxTxt = textIfEntered(R.id.trip_tstop_end_pax);
+			if (paxTxt != null)
 			{
-				areaOther = new GeoArea(areaOtherName);
-				areaLocs_areaID = areaOther.insert(db);
-				createdGeoArea = true;
-			} else {
-				// re-use it
-				areaOther = areaOtherCreatedHere;
-				areaOther.setName(areaOtherName);
-				areaOther.commit();
-				areaLocs_areaID = areaOther.getID();
+				try
+				{
+					pax = Integer.parseInt(paxTxt);
+				} catch (NumberFormatException e) {
+					// shouldn't occur: layout declaration has inputType=number
+				}
 			}
 		}
 
-		if ((areaOtherCreatedHere != null) && (areaLocs_areaID != areaOtherCreatedHere.getID()))
-		{
-			// record created at this tstop wasn't used, so remove it from db
-			areaOtherCreatedHere.delete();
-			areaOtherCreatedHere = null;
-			// code below will clearFlagSingle(TEMPFLAG_CREATED_GEOAREA)
-		}
+		new SaveTStopTask
+			(this, saveOnly, locat, via_route, comment, odoTotal, odoTrip,
+			 (odo_trip_chk != null) && odo_trip_chk.isChecked(), stopTimeSec, contTimeSec, expense_total,
+			 usedAreaOther, areaOtherName, wantsConvertLocalToRoadtrip, mkFreqTrip, locPicked, tripCat, pax).start();
+	}
 
-		int locID = 0;
+	/**
+	 * The db updates for {@link TripTStopEntry#enterTStop(boolean)}, run on the {@link RDBExecutor} writer thread
+	 * as one transaction: Creates or updates the TStop and any GeoArea, Location, ViaRoute, GasBrandGrade,
+	 * and TStopGas it uses, and ends the trip if {@link TripTStopEntry#stopEndsTrip}.
+	 * Fields hold the form contents, which were read and checked on the UI thread.
+	 *<P>
+	 * The task doesn't touch the activity's fields from the writer thread: The constructor copies
+	 * the ones {@link #run(RDBAdapter)} uses, like {@link TripTStopEntry#locObj} and {@link TripTStopEntry#stopGas},
+	 * into same-named task fields, and {@link #onResult(Void)} copies the updated ones back on the UI thread.
+	 * While {@link TripTStopEntry#saveTask} is set, the save buttons are disabled and {@code enterTStop}
+	 * ignores button presses. If the activity is recreated while saving, {@link #act} is updated to the new instance.
+	 * When the transaction is committed, {@link #onResult(Void)} finishes the activity.
+	 * If an exception is thrown, the transaction is rolled back and {@link #onError(Exception)} shows it;
+	 * since the activity's records may have rolled-back changes, the activity finishes when that's dismissed.
+	 * @since 0.9.93
+	 */
+	private static final class SaveTStopTask
+		implements RDBExecutor.Task<Void>, RDBExecutor.Callback<Void>
+	{
+		/** The activity to update when done; use only on the UI thread. */
+		private TripTStopEntry act;
 
-		// Get or create the Location db record,
-		// if we don't already have it or its area ID != areaLocs_areaID
-		if ((locObj == null)
-			|| (! locObj.getLocation().equalsIgnoreCase(locat))
-			|| ((areaLocs_areaID != locObj.getAreaID())
-			    && ((locObjCreatedHere == null) || (locObj.getID() != locObjCreatedHere.getID()))))
-		{
-			locObj = null;
+		private final boolean saveOnly, hasOdoTrip, usedAreaOther, wantsConvertLocalToRoadtrip, mkFreqTrip;
+		private final String locat, via_route, comment, areaOtherName;
+		private final int odoTotal, odoTrip, stopTimeSec, contTimeSec, expense_total;
 
-			final int locatIdx = loc.getListSelection();
-			ListAdapter la = loc.getAdapter();
-			if ((locatIdx != ListView.INVALID_POSITION)
-			    && (locatIdx != ListAdapter.NO_SELECTION) && (la != null))
-			{
-				locObj = (Location) la.getItem(locatIdx);
-				// use same criteria as above
-				if ((locObj != null) && locObj.getLocation().equalsIgnoreCase(locat)
-				    && (areaLocs_areaID == locObj.getAreaID()))
-					locID = locObj.getID();
-			}
+		/** Location picked from {@link TripTStopEntry#loc}'s dropdown, or null */
+		private final Location locPicked;
 
-			if (locObj == null)
-			{
-				// search the table, avoid creating 2 locations with same name
-				locObj = Location.getByDescr(db, areaLocs_areaID, locat);
-				if (locObj != null)
-					locID = locObj.getID();
-			}
+		/** Trip category chosen if {@link TripTStopEntry#stopEndsTrip}, otherwise null */
+		private final TripCategory tripCat;
+
+		/** Passenger count entered when ending the trip, or -1 */
+		private final int pax;
+
+		/** Copies of activity fields which {@link #run(RDBAdapter)} reads but doesn't change */
+		private final boolean isCurrentlyStopped, stopEndsTrip;
+		private final Vehicle currV;
+		private final Trip currT;
+		private final TStop currTS;
+		private final Location prevLocObj;
+		private final FreqTripTStop wantsFTS;
+
+		/**
+		 * Copies of activity fields which {@link #run(RDBAdapter)} may change;
+		 * {@link #onResult(Void)} copies them back to the activity.
+		 * {@link #bundleGas} is a copy of the activity's bundle, if any.
+		 */
+		private GeoArea currA, areaOther, areaOtherCreatedHere;
+		private int areaLocs_areaID;
+		private Location locObj, locObjCreatedHere;
+		private ViaRoute viaRouteObj, viaRouteObjCreatedHere;
+		private TStopGas stopGas;
+		private boolean gbgCreatedHere;
+		private final Bundle bundleGas;
 
-			if (locObj == null)
+		/**
+		 * Create the task with the checked form contents; see {@code enterTStop} for details.
+		 * Also copies the activity fields used by {@link #run(RDBAdapter)}. Call from the UI thread.
+		 * @param act  The activity which is saving
+		 * @param hasOdoTrip  True if {@link TripTStopEntry#odo_trip_chk} is checked
+		 */
+		SaveTStopTask
+			(final TripTStopEntry act, final boolean saveOnly, final String locat, final String via_route, final String comment,
+			 final int odoTotal, final int odoTrip, final boolean hasOdoTrip,
+			 final int stopTimeSec, final int contTimeSec, final int expense_total,
+			 final boolean usedAreaOther, final String areaOtherName, final boolean wantsConvertLocalToRoadtrip,
+			 final boolean mkFreqTrip, final Location locPicked, final TripCategory tripCat, final int pax)
+		{
+			this.saveOnly = saveOnly;
+			this.locat = locat;
+			this.via_route = via_route;
+			this.comment = comment;
+			this.odoTotal = odoTotal;
+			this.odoTrip = odoTrip;
+			this.hasOdoTrip = hasOdoTrip;
+			this.stopTimeSec = stopTimeSec;
+			this.contTimeSec = contTimeSec;
+			this.expense_total = expense_total;
+			this.usedAreaOther = usedAreaOther;
+			this.areaOtherName = areaOtherName;
+			this.wantsConvertLocalToRoadtrip = wantsConvertLocalToRoadtrip;
+			this.mkFreqTrip = mkFreqTrip;
+			this.locPicked = locPicked;
+			this.tripCat = tripCat;
+			this.pax = pax;
+
+			this.act = act;
+			isCurrentlyStopped = act.isCurrentlyStopped;
+			stopEndsTrip = act.stopEndsTrip;
+			currV = act.currV;
+			currT = act.currT;
+			currTS = act.currTS;
+			prevLocObj = act.prevLocObj;
+			wantsFTS = act.wantsFTS;
+			currA = act.currA;
+			areaOther = act.areaOther;
+			areaOtherCreatedHere = act.areaOtherCreatedHere;
+			areaLocs_areaID = act.areaLocs_areaID;
+			locObj = act.locObj;
+			locObjCreatedHere = act.locObjCreatedHere;
+			viaRouteObj = act.viaRouteObj;
+			viaRouteObjCreatedHere = act.viaRouteObjCreatedHere;
+			stopGas = act.stopGas;
+			gbgCreatedHere = act.gbgCreatedHere;
+			bundleGas = (act.bundleGas != null) ? new Bundle(act.bundleGas) : null;
+		}
+
+		/** Submit this task to the shared executor's writer thread. Call from the UI thread. */
+		public void start()
+		{
+			act.saveTask = this;
+			act.disableSaveButtons();
+			RDBExecutor.get(act).submitWrite(this, this);
+		}
+
+		public Void run(final RDBAdapter db)
+			throws Exception
+		{
+			boolean createdGeoArea = false, createdLoc = false, createdVia = false;
+
+			/**
+			 * Done checking data entered, time to update the db.
+			 * tsid is the TStop ID we'll create or update here.
+			 * May convert a local trip into a roadtrip; see wantsConvertLocalToRoadtrip below.
+			 */
+			final int tsid;
+
+			// Roadtrip stop within other geoarea:
+			// Get or create the GeoArea db record, if we don't already have it
+			if (usedAreaOther && (areaOther == null))
 			{
-				if (locObjCreatedHere == null)
+				if (areaOtherCreatedHere == null)
 				{
-					locObj = new Location(areaLocs_areaID, null, null, locat);
-					locID = locObj.insert(db);
-					createdLoc = true;
+					areaOther = new GeoArea(areaOtherName);
+					areaLocs_areaID = areaOther.insert(db);
+					createdGeoArea = true;
 				} else {
 					// re-use it
-					locObj = locObjCreatedHere;
-					locID = locObj.getID();
-					locObj.setAreaID(areaLocs_areaID);
-					locObj.setLocation(locat);
-					locObj.commit();
+					areaOther = areaOtherCreatedHere;
+					areaOther.setName(areaOtherName);
+					areaOther.commit();
+					areaLocs_areaID = areaOther.getID();
 				}
 			}
-			else if ((locObjCreatedHere != null) && (locID == locObjCreatedHere.getID())
-				 && ! locObjCreatedHere.getLocation().equals(locat))
+
+			if ((areaOtherCreatedHere != null) && (areaLocs_areaID != areaOtherCreatedHere.getID()))
 			{
-				// update description if loc created here and its capitalization has changed;
-				// if so, form field's listener had set locObj null and we found it through
-				// the Location.getByDescr call above.
-				locObjCreatedHere.setLocation(locat);
-				locObjCreatedHere.commit();
+				// record created at this tstop wasn't used, so remove it from db
+				areaOtherCreatedHere.delete();
+				areaOtherCreatedHere = null;
+				// code below will clearFlagSingle(TEMPFLAG_CREATED_GEOAREA)
 			}
-		} else {
-			// not null, and text matches: use it
-			locID = locObj.getID();
 
-			if ((locObjCreatedHere != null) && (locID == locObjCreatedHere.getID())
-			    && (areaLocs_areaID != locObjCreatedHere.getAreaID()))
+			int locID = 0;
+
+			// Get or create the Location db record,
+			// if we don't already have it or its area ID != areaLocs_areaID
+			if ((locObj == null)
+				|| (! locObj.getLocation().equalsIgnoreCase(locat))
+				|| ((areaLocs_areaID != locObj.getAreaID())
+				    && ((locObjCreatedHere == null) || (locObj.getID() != locObjCreatedHere.getID()))))
 			{
-				locObjCreatedHere.setAreaID(areaLocs_areaID);
-				locObjCreatedHere.commit();
-
-				// no need to also update locObj.areaid field, because
-				// we're resuming travel from this stop and won't be at
-				// locObj next time this activity is called; locObj and
-				// locObjCreatedHere are the same row in the db, which
-				// we've updated from locObjCreatedHere.
-			}
+				locObj = null;
 
-		}
-		if ((locObjCreatedHere != null) && (locID != locObjCreatedHere.getID()))
-		{
-			// record created at this tstop wasn't used, so remove it from db
-			locObjCreatedHere.delete();
-			locObjCreatedHere = null;
-			// code below will clearFlagSingle(TEMPFLAG_CREATED_LOCATION)
-		}
+				if (locPicked != null)
+				{
+					locObj = locPicked;
+					// use same criteria as above
+					if (locObj.getLocation().equalsIgnoreCase(locat)
+					    && (areaLocs_areaID == locObj.getAreaID()))
+						locID = locObj.getID();
+				}
 
-		// Get or create the ViaRoute db record,
-		// if we don't already have it
-		final int viaID;
+				if (locObj == null)
+				{
+					// search the table, avoid creating 2 locations with same name
+					locObj = Location.getByDescr(db, areaLocs_areaID, locat);
+					if (locObj != null)
+						locID = locObj.getID();
+				}
 
-		if ((viaRouteObj == null)
-		    && ! ((locID == 0) || (via_route == null) || (prevLocObj == null)))
-			// via description may have been typed instead of picked from dropdown.
-			// search the table: avoid creating 2 vias with same locations and desc.
-			viaRouteObj = ViaRoute.getByLocsAndDescr(db, prevLocObj.getID(), locID, via_route);
-			    // if none found, will still be null
+				if (locObj == null)
+				{
+					if (locObjCreatedHere == null)
+					{
+						locObj = new Location(areaLocs_areaID, null, null, locat);
+						locID = locObj.insert(db);
+						createdLoc = true;
+					} else {
+						// re-use it
+						locObj = locObjCreatedHere;
+						locID = locObj.getID();
+						locObj.setAreaID(areaLocs_areaID);
+						locObj.setLocation(locat);
+						locObj.commit();
+					}
+				}
+				else if ((locObjCreatedHere != null) && (locID == locObjCreatedHere.getID())
+					 && ! locObjCreatedHere.getLocation().equals(locat))
+				{
+					// update description if loc created here and its capitalization has changed;
+					// if so, form field's listener had set locObj null and we found it through
+					// the Location.getByDescr call above.
+					locObjCreatedHere.setLocation(locat);
+					locObjCreatedHere.commit();
+				}
+			} else {
+				// not null, and text matches: use it
+				locID = locObj.getID();
 
-		if ((locID == 0) || (via_route == null) || (prevLocObj == null))
-		{
-			viaID = 0;
-			viaRouteObj = null;  // it's probably already null
-		} else if ((viaRouteObj != null) && viaRouteObj.getDescr().equalsIgnoreCase(via_route))
-		{
-			viaID = viaRouteObj.getID();
+				if ((locObjCreatedHere != null) && (locID == locObjCreatedHere.getID())
+				    && (areaLocs_areaID != locObjCreatedHere.getAreaID()))
+				{
+					locObjCreatedHere.setAreaID(areaLocs_areaID);
+					locObjCreatedHere.commit();
+
+					// no need to also update locObj.areaid field, because
+					// we're resuming travel from this stop and won't be at
+					// locObj next time this activity is called; locObj and
+					// locObjCreatedHere are the same row in the db, which
+					// we've updated from locObjCreatedHere.
+				}
 
-			// update description if via created here and its capitalization has changed;
-			// must check because of above getDescr().equalsIgnoreCase
-			if ((viaRouteObjCreatedHere != null) && (viaID == viaRouteObjCreatedHere.getID())
-			    && ! viaRouteObjCreatedHere.getDescr().equals(via_route))
+			}
+			if ((locObjCreatedHere != null) && (locID != locObjCreatedHere.getID()))
 			{
-				viaRouteObjCreatedHere.setDescr(via_route);
-				viaRouteObjCreatedHere.commit();
+				// record created at this tstop wasn't used, so remove it from db
+				locObjCreatedHere.delete();
+				locObjCreatedHere = null;
+				// code below will clearFlagSingle(TEMPFLAG_CREATED_LOCATION)
 			}
 
-			// if isCurrentlyStopped, or ending the trip,
-			// and we don't yet have odo_dist for
-			// this ViaRoute, set it from this tstop:
-			if ((isCurrentlyStopped || stopEndsTrip) && ! saveOnly)
+			// Get or create the ViaRoute db record,
+			// if we don't already have it
+			final int viaID;
+
+			if ((viaRouteObj == null)
+			    && ! ((locID == 0) || (via_route == null) || (prevLocObj == null)))
+				// via description may have been typed instead of picked from dropdown.
+				// search the table: avoid creating 2 vias with same locations and desc.
+				viaRouteObj = ViaRoute.getByLocsAndDescr(db, prevLocObj.getID(), locID, via_route);
+				    // if none found, will still be null
+
+			if ((locID == 0) || (via_route == null) || (prevLocObj == null))
 			{
-				if (odo_trip_chk.isChecked())
+				viaID = 0;
+				viaRouteObj = null;  // it's probably already null
+			} else if ((viaRouteObj != null) && viaRouteObj.getDescr().equalsIgnoreCase(via_route))
+			{
+				viaID = viaRouteObj.getID();
+
+				// update description if via created here and its capitalization has changed;
+				// must check because of above getDescr().equalsIgnoreCase
+				if ((viaRouteObjCreatedHere != null) && (viaID == viaRouteObjCreatedHere.getID())
+				    && ! viaRouteObjCreatedHere.getDescr().equals(via_route))
 				{
-					if ((0 == viaRouteObj.getOdoDist())
-						|| ((viaRouteObjCreatedHere != null)
-							&& (viaID == viaRouteObjCreatedHere.getID())))
+					viaRouteObjCreatedHere.setDescr(via_route);
+					viaRouteObjCreatedHere.commit();
+				}
+
+				// if isCurrentlyStopped, or ending the trip,
+				// and we don't yet have odo_dist for
+				// this ViaRoute, set it from this tstop:
+				if ((isCurrentlyStopped || stopEndsTrip) && ! saveOnly)
+				{
+					if (hasOdoTrip)
 					{
-						final int prev_tripOdo = TStop.tripReadPrevTStopOdo
-							(currT, prevLocObj, currTS);
-						if (prev_tripOdo != -1)
+						if ((0 == viaRouteObj.getOdoDist())
+							|| ((viaRouteObjCreatedHere != null)
+								&& (viaID == viaRouteObjCreatedHere.getID())))
 						{
-							int odo_dist = odo_trip.getCurrent10d() - prev_tripOdo;
-							viaRouteObj.setOdoDist(odo_dist);  // if unchanged, does nothing
-							viaRouteObj.commit();              // if unchanged, does nothing
+							final int prev_tripOdo = TStop.tripReadPrevTStopOdo
+								(currT, prevLocObj, currTS);
+							if (prev_tripOdo != -1)
+							{
+								int odo_dist = odoTrip - prev_tripOdo;
+								viaRouteObj.setOdoDist(odo_dist);  // if unchanged, does nothing
+								viaRouteObj.commit();              // if unchanged, does nothing
+							}
 						}
 					}
-				}
-				else if ((viaRouteObjCreatedHere != null) && (viaID == viaRouteObjCreatedHere.getID()))
-				{
-					// odo_trip_chk not checked, but we created ViaRoute for this TStop;
-					// clear that via's odo_dist
-					if (0 != viaRouteObjCreatedHere.getOdoDist())
+					else if ((viaRouteObjCreatedHere != null) && (viaID == viaRouteObjCreatedHere.getID()))
 					{
-						viaRouteObjCreatedHere.setOdoDist(0);
-						viaRouteObjCreatedHere.commit();
+						// odo_trip_chk not checked, but we created ViaRoute for this TStop;
+						// clear that via's odo_dist
+						if (0 != viaRouteObjCreatedHere.getOdoDist())
+						{
+							viaRouteObjCreatedHere.setOdoDist(0);
+							viaRouteObjCreatedHere.commit();
+						}
 					}
 				}
+			} else {
+				// via-route text doesn't match; create new ViaRoute or change viaRouteObjCreatedHere
+				int odo_dist = 0;
+				if (hasOdoTrip)
+				{
+					final int prev_tripOdo = TStop.tripReadPrevTStopOdo(currT, prevLocObj, currTS);
+					if (prev_tripOdo != -1)
+						odo_dist = odoTrip - prev_tripOdo;
+				}
+				if (viaRouteObjCreatedHere == null)
+				{
+					viaRouteObj = new ViaRoute(prevLocObj.getID(), locID, odo_dist, via_route);
+					viaID = viaRouteObj.insert(db);
+					createdVia = true;
+				} else {
+					// re-use it
+					viaRouteObj = viaRouteObjCreatedHere;
+					viaID = viaRouteObj.getID();
+					viaRouteObj.set(locID, odo_dist, via_route);
+					viaRouteObj.commit();
+				}
 			}
-		} else {
-			// via-route text doesn't match; create new ViaRoute or change viaRouteObjCreatedHere
-			int odo_dist = 0;
-			if (odo_trip_chk.isChecked())
-			{
-				final int prev_tripOdo = TStop.tripReadPrevTStopOdo(currT, prevLocObj, currTS);
-				if (prev_tripOdo != -1)
-					odo_dist = odo_trip.getCurrent10d() - prev_tripOdo;
-			}
-			if (viaRouteObjCreatedHere == null)
+			if ((viaRouteObjCreatedHere != null) && (viaID != viaRouteObjCreatedHere.getID()))
 			{
-				viaRouteObj = new ViaRoute(prevLocObj.getID(), locID, odo_dist, via_route);
-				viaID = viaRouteObj.insert(db);
-				createdVia = true;
-			} else {
-				// re-use it
-				viaRouteObj = viaRouteObjCreatedHere;
-				viaID = viaRouteObj.getID();
-				viaRouteObj.set(locID, odo_dist, via_route);
-				viaRouteObj.commit();
+				// record created at this tstop wasn't used, so remove it from db
+				viaRouteObjCreatedHere.delete();
+				viaRouteObjCreatedHere = null;
+				// code below will clearFlagSingle(TEMPFLAG_CREATED_VIAROUTE)
 			}
-		}
-		if ((viaRouteObjCreatedHere != null) && (viaID != viaRouteObjCreatedHere.getID()))
-		{
-			// record created at this tstop wasn't used, so remove it from db
-			viaRouteObjCreatedHere.delete();
-			viaRouteObjCreatedHere = null;
-			// code below will clearFlagSingle(TEMPFLAG_CREATED_VIAROUTE)
-		}
 
-		// If we've chosen a frequent tstop's location,
-		// remove it from the list of unused ones.
-		if ((wantsFTS != null) && (locID == wantsFTS.getLocationID())
-			 && isCurrentlyStopped && (! stopEndsTrip) && (! saveOnly))
-		{
-			VehSettings.reduceCurrentFreqTripTStops(db, currV, wantsFTS);
-		}
-
-		// If the stop has gas, check for a new GasBrandGrade.
-		boolean createdGasBrandGrade = false;
-		if ((bundleGas != null)
-			&& bundleGas.containsKey(TripTStopGas.EXTRAS_FIELD_BRANDGRADE))
-		{
-			int bgid = bundleGas.getInt(TripTStopGas.EXTRAS_FIELD_BRANDGRADE_ID);
-			String gbName = bundleGas.getString(TripTStopGas.EXTRAS_FIELD_BRANDGRADE);
-			if (gbName != null)
+			// If we've chosen a frequent tstop's location,
+			// remove it from the list of unused ones.
+			if ((wantsFTS != null) && (locID == wantsFTS.getLocationID())
+				 && isCurrentlyStopped && (! stopEndsTrip) && (! saveOnly))
 			{
-				gbName = gbName.trim();
-				if (gbName.length() == 0)
-					gbName = null;
+				VehSettings.reduceCurrentFreqTripTStops(db, currV, wantsFTS);
 			}
 
-			createdGasBrandGrade = (0 == bgid);
-			if (createdGasBrandGrade)
+			// If the stop has gas, check for a new GasBrandGrade.
+			boolean createdGasBrandGrade = false;
+			if ((bundleGas != null)
+				&& bundleGas.containsKey(TripTStopGas.EXTRAS_FIELD_BRANDGRADE))
 			{
+				int bgid = bundleGas.getInt(TripTStopGas.EXTRAS_FIELD_BRANDGRADE_ID);
+				String gbName = bundleGas.getString(TripTStopGas.EXTRAS_FIELD_BRANDGRADE);
 				if (gbName != null)
 				{
-					GasBrandGrade bg = new GasBrandGrade(gbName);
-					bgid = bg.insert(db);
-					bundleGas.putInt(TripTStopGas.EXTRAS_FIELD_BRANDGRADE_ID, bgid);
-					gbgCreatedHere = true;
-					if (stopGas != null)
-					{
-						stopGas.gas_brandgrade_id = bgid;
-						stopGas.gas_brandgrade = bg;
-					}
-				} else {
-					createdGasBrandGrade = false;  // null or 0-length name
-					if (gbgCreatedHere)
+					gbName = gbName.trim();
+					if (gbName.length() == 0)
+						gbName = null;
+				}
+
+				createdGasBrandGrade = (0 == bgid);
+				if (createdGasBrandGrade)
+				{
+					if (gbName != null)
 					{
-						gbgCreatedHere = false;
-						// TODO delete the gbg created, since we aren't using it
+						GasBrandGrade bg = new GasBrandGrade(gbName);
+						bgid = bg.insert(db);
+						bundleGas.putInt(TripTStopGas.EXTRAS_FIELD_BRANDGRADE_ID, bgid);
+						gbgCreatedHere = true;
+						if (stopGas != null)
+						{
+							stopGas.gas_brandgrade_id = bgid;
+							stopGas.gas_brandgrade = bg;
+						}
+					} else {
+						createdGasBrandGrade = false;  // null or 0-length name
+						if (gbgCreatedHere)
+						{
+							gbgCreatedHere = false;
+							// TODO delete the gbg created, since we aren't using it
+						}
 					}
 				}
-			}
-			else if (gbgCreatedHere && (0 != bgid))
-			{
-				// brand was created here when we stopped, now we're saving
-				// or continuing; see if the created name was changed.
-				if (stopGas.gas_brandgrade == null)
+				else if (gbgCreatedHere && (0 != bgid))
 				{
-					try
+					// brand was created here when we stopped, now we're saving
+					// or continuing; see if the created name was changed.
+					if (stopGas.gas_brandgrade == null)
 					{
-						stopGas.gas_brandgrade = new GasBrandGrade(db, bgid);
+						try
+						{
+							stopGas.gas_brandgrade = new GasBrandGrade(db, bgid);
+						}
+						catch (Throwable th) {}
 					}
-					catch (Throwable th) {}
-				}
 
-				if ((stopGas.gas_brandgrade != null)
-					&& ! gbName.equalsIgnoreCase(stopGas.gas_brandgrade.getName()))
-				{
-					stopGas.gas_brandgrade.setName(gbName);
-					stopGas.gas_brandgrade.commit();
+					if ((stopGas.gas_brandgrade != null)
+						&& ! gbName.equalsIgnoreCase(stopGas.gas_brandgrade.getName()))
+					{
+						stopGas.gas_brandgrade.setName(gbName);
+						stopGas.gas_brandgrade.commit();
+					}
 				}
-			}
-
-		}  // if (bundle contains gas brand)
-
-		// Now either create a new TStop in the database, or update currTS there.
-
-		// Note: A roadtrip can't end in geoarea 0, the db roadtrip field uses 0 when it's a local trip.
-		//       Can't allow tstop in area 0 if stopEndsTrip, so code earlier in this method checks
-		//       for (stopEndsTrip && (areaLocs_areaID <= 0) && ! saveOnly) and if found, shows a
-		//       Toast and returns. So at this point areaLocs_areaID > 0 if stopEndsTrip && ! saveOnly.
 
-		/**
-		 * Done creating/updating related and 'master record' data.
-		 * Now, create or update the actual TStop.
-		 */
-		if (! isCurrentlyStopped)
-		{
-			// Create a new TStop; set tsid (not currTS).
+			}  // if (bundle contains gas brand)
 
-			int areaID;  // geoarea of new tstop
-			if (stopEndsTrip && ! saveOnly)
-			{
-				// For local trips, this ending TStop's areaID will be 0.
-				// For roadtrips, can't end in area ID 0 (no geoarea),
-				// so as a fallback change that here to the ending area.
-				// (The GUI has already given the user a chance to correct it.)
-				// If all the roadtrip's stops are in the starting geoarea, it will be
-				// converted into a local trip by VehSettings.endCurrentTrip.
-				// Similar code is below, used when updating an existing TStop;
-				// search for "For local trips, this ending TStop's areaID".
+			// Now either create a new TStop in the database, or update currTS there.
 
-				if (wantsConvertLocalToRoadtrip)
-					areaID = areaLocs_areaID;  // in a non-local area. Assert: areaID > 0
-				else if (currT.isRoadtrip() && (areaLocs_areaID > 0))
-					areaID = areaLocs_areaID;  // in any geoarea > 0
-				else
-					areaID = currT.getRoadtripEndAreaID();  // in ending area, or 0 if local trip
-			}
-			else if ((areaLocs_areaID >= 0)
-				 && (currT.isRoadtrip() || wantsConvertLocalToRoadtrip))
-			{
-				areaID = areaLocs_areaID;
-				// New tstop during roadtrip; areaID 0 is OK since not ending trip.
-				// historical db note: before March 2011 (r48) unless stopEndsTrip, tstop.a_id always 0
-			} else {
-				areaID = 0;  // unused in local trip tstops
-			}
+			// Note: A roadtrip can't end in geoarea 0, the db roadtrip field uses 0 when it's a local trip.
+			//       Can't allow tstop in area 0 if stopEndsTrip, so code earlier in this method checks
+			//       for (stopEndsTrip && (areaLocs_areaID <= 0) && ! saveOnly) and if found, shows a
+			//       Toast and returns. So at this point areaLocs_areaID > 0 if stopEndsTrip && ! saveOnly.
 
-			int flags = 0;
-			if (saveOnly || ! stopEndsTrip)
-			{
-				if (createdGeoArea)
-					flags |= TStop.TEMPFLAG_CREATED_GEOAREA;
-				if (createdLoc)
-					flags |= TStop.TEMPFLAG_CREATED_LOCATION;
-				if (createdVia)
-					flags |= TStop.TEMPFLAG_CREATED_VIAROUTE;
-				if (createdGasBrandGrade)
-					flags |= TStop.TEMPFLAG_CREATED_GASBRANDGRADE;
-			}
-			TStop newStop = new TStop
-			  (currT, odoTotal, odoTrip, stopTimeSec, 0, locID, areaID, null, null, flags, viaID, comment);
-			newStop.setExpense_total(expense_total);
-			tsid = newStop.insert(db);
-			currT.addCommittedTStop(newStop);  // update the Trip's cached TStop list, if any
-			if (saveOnly || ! stopEndsTrip)
-				VehSettings.setCurrentTStop(db, currV, newStop);
-
-			// Convert local trip to roadtrip now if requested.
-			// areaID 0 (none) is allowed for TStops during a trip,
-			// but not for the final tstop ending the trip.
-			if (wantsConvertLocalToRoadtrip
-			    && (areaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
-				currT.convertLocalToRoadtrip(newStop);
-
-			// Don't set currTS field yet, it needs to be null for code here.
-
-			// Now set the gas info, if any:
-			if (bundleGas != null)
-			{
-				stopGas = TripTStopGas.saveDBObjFromBundle(bundleGas, null);
-				if (stopGas != null)
-				{
-					stopGas.setTStop(newStop);
-					stopGas.insert(db);
-					newStop.setFlagSingle(TStop.FLAG_GAS);
-					newStop.commit();
-				}
-			}
-		} else {
-			// Currently stopped; saving, resuming travel from stop, or ending trip.
-			tsid = currTS.getID();
-			currTS.setOdos(odoTotal, odoTrip);
-			currTS.setTime_stop(stopTimeSec);
-			// text fields, info fields
-			currTS.setLocationID(locID);
-			currTS.setVia_id(viaID);
-			currTS.setComment(comment, false, false);
-			currTS.setExpense_total(expense_total);
-			if ((currT.isRoadtrip() || wantsConvertLocalToRoadtrip)
-			    && (areaLocs_areaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
-				currTS.setAreaID(areaLocs_areaID);
-
-			if (! saveOnly)
+			/**
+			 * Done creating/updating related and 'master record' data.
+			 * Now, create or update the actual TStop.
+			 */
+			if (! isCurrentlyStopped)
 			{
-				currTS.clearTempFlags();
-
-				// continue-time
-				if ((! stopEndsTrip) && (contTimeSec != 0))
-					currTS.setTime_continue(contTimeSec, false);
+				// Create a new TStop; set tsid (not currTS).
 
-				// when ending trip, check tstop's geoarea vs trip's areas
-				if (stopEndsTrip)
+				int areaID;  // geoarea of new tstop
+				if (stopEndsTrip && ! saveOnly)
 				{
-					// For local trips, this ending TStop's areaID is already 0.
+					// For local trips, this ending TStop's areaID will be 0.
 					// For roadtrips, can't end in area ID 0 (no geoarea),
 					// so as a fallback change that here to the ending area.
-					// (The GUI has likely already given the user a chance to correct it.)
+					// (The GUI has already given the user a chance to correct it.)
 					// If all the roadtrip's stops are in the starting geoarea, it will be
 					// converted into a local trip by VehSettings.endCurrentTrip.
-					// Similar code is above, used when creating a new TStop;
+					// Similar code is below, used when updating an existing TStop;
 					// search for "For local trips, this ending TStop's areaID".
 
-					if (currT.isRoadtrip() && (currTS.getAreaID() <= 0))
-						currTS.setAreaID(currT.getRoadtripEndAreaID());
+					if (wantsConvertLocalToRoadtrip)
+						areaID = areaLocs_areaID;  // in a non-local area. Assert: areaID > 0
+					else if (currT.isRoadtrip() && (areaLocs_areaID > 0))
+						areaID = areaLocs_areaID;  // in any geoarea > 0
+					else
+						areaID = currT.getRoadtripEndAreaID();  // in ending area, or 0 if local trip
+				}
+				else if ((areaLocs_areaID >= 0)
+					 && (currT.isRoadtrip() || wantsConvertLocalToRoadtrip))
+				{
+					areaID = areaLocs_areaID;
+					// New tstop during roadtrip; areaID 0 is OK since not ending trip.
+					// historical db note: before March 2011 (r48) unless stopEndsTrip, tstop.a_id always 0
+				} else {
+					areaID = 0;  // unused in local trip tstops
+				}
+
+				int flags = 0;
+				if (saveOnly || ! stopEndsTrip)
+				{
+					if (createdGeoArea)
+						flags |= TStop.TEMPFLAG_CREATED_GEOAREA;
+					if (createdLoc)
+						flags |= TStop.TEMPFLAG_CREATED_LOCATION;
+					if (createdVia)
+						flags |= TStop.TEMPFLAG_CREATED_VIAROUTE;
+					if (createdGasBrandGrade)
+						flags |= TStop.TEMPFLAG_CREATED_GASBRANDGRADE;
+				}
+				TStop newStop = new TStop
+				  (currT, odoTotal, odoTrip, stopTimeSec, 0, locID, areaID, null, null, flags, viaID, comment);
+				newStop.setExpense_total(expense_total);
+				tsid = newStop.insert(db);
+				currT.addCommittedTStop(newStop);  // update the Trip's cached TStop list, if any
+				if (saveOnly || ! stopEndsTrip)
+					VehSettings.setCurrentTStop(db, currV, newStop);
+
+				// Convert local trip to roadtrip now if requested.
+				// areaID 0 (none) is allowed for TStops during a trip,
+				// but not for the final tstop ending the trip.
+				if (wantsConvertLocalToRoadtrip
+				    && (areaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
+					currT.convertLocalToRoadtrip(newStop);
+
+				// Don't set currTS field yet, it needs to be null for code here.
+
+				// Now set the gas info, if any:
+				if (bundleGas != null)
+				{
+					stopGas = TripTStopGas.saveDBObjFromBundle(bundleGas, null);
+					if (stopGas != null)
+					{
+						stopGas.setTStop(newStop);
+						stopGas.insert(db);
+						newStop.setFlagSingle(TStop.FLAG_GAS);
+						newStop.commit();
+					}
 				}
 			} else {
-				// Currently stopped, not continuing yet, so this stop may be edited again:
-
-				// If any related records were newly created, make sure their flags are set in currTS.
-
-				// If any related records were previously created for this stop, but the current changes
-				// chose other preexisting ones instead of the ones created, clear those flags in currTS
-				// so that future edits won't think the preexisting ones were created for this stop, and
-				// then mistakenly delete them if their activity field is cleared.
-
-				if ((areaOtherCreatedHere == null)
-				    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_GEOAREA))
-					currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_GEOAREA);
-				else if (createdGeoArea)
-					currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_GEOAREA);
-
-				if ((locObjCreatedHere == null)
-				    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_LOCATION))
-					currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_LOCATION);
-				else if (createdLoc)
-					currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_LOCATION);
-
-				if (((currTS.getVia_id() == 0) || (viaRouteObjCreatedHere == null))
-				    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_VIAROUTE))
-					currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_VIAROUTE);
-				else if (createdVia)
-					currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_VIAROUTE);
-
-				if ((! (gbgCreatedHere && currTS.isSingleFlagSet(TStop.FLAG_GAS)))
-				    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_GASBRANDGRADE))
-					currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_GASBRANDGRADE);
-				else if (createdGasBrandGrade)
-					currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_GASBRANDGRADE);
-			}
+				// Currently stopped; saving, resuming travel from stop, or ending trip.
+				tsid = currTS.getID();
+				currTS.setOdos(odoTotal, odoTrip);
+				currTS.setTime_stop(stopTimeSec);
+				// text fields, info fields
+				currTS.setLocationID(locID);
+				currTS.setVia_id(viaID);
+				currTS.setComment(comment, false, false);
+				currTS.setExpense_total(expense_total);
+				if ((currT.isRoadtrip() || wantsConvertLocalToRoadtrip)
+				    && (areaLocs_areaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
+					currTS.setAreaID(areaLocs_areaID);
+
+				if (! saveOnly)
+				{
+					currTS.clearTempFlags();
 
-			currTS.commit();
-			currT.updateCachedCurrentTStop(currTS);
+					// continue-time
+					if ((! stopEndsTrip) && (contTimeSec != 0))
+						currTS.setTime_continue(contTimeSec, false);
 
-			if (wantsConvertLocalToRoadtrip)
-			{
-				final int newAreaID = currTS.getAreaID();
-				if ((newAreaID != currT.getAreaID())
-				    && (newAreaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
-					currT.convertLocalToRoadtrip(currTS);
-			}
+					// when ending trip, check tstop's geoarea vs trip's areas
+					if (stopEndsTrip)
+					{
+						// For local trips, this ending TStop's areaID is already 0.
+						// For roadtrips, can't end in area ID 0 (no geoarea),
+						// so as a fallback change that here to the ending area.
+						// (The GUI has likely already given the user a chance to correct it.)
+						// If all the roadtrip's stops are in the starting geoarea, it will be
+						// converted into a local trip by VehSettings.endCurrentTrip.
+						// Similar code is above, used when creating a new TStop;
+						// search for "For local trips, this ending TStop's areaID".
+
+						if (currT.isRoadtrip() && (currTS.getAreaID() <= 0))
+							currTS.setAreaID(currT.getRoadtripEndAreaID());
+					}
+				} else {
+					// Currently stopped, not continuing yet, so this stop may be edited again:
+
+					// If any related records were newly created, make sure their flags are set in currTS.
+
+					// If any related records were previously created for this stop, but the current changes
+					// chose other preexisting ones instead of the ones created, clear those flags in currTS
+					// so that future edits won't think the preexisting ones were created for this stop, and
+					// then mistakenly delete them if their activity field is cleared.
+
+					if ((areaOtherCreatedHere == null)
+					    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_GEOAREA))
+						currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_GEOAREA);
+					else if (createdGeoArea)
+						currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_GEOAREA);
+
+					if ((locObjCreatedHere == null)
+					    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_LOCATION))
+						currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_LOCATION);
+					else if (createdLoc)
+						currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_LOCATION);
+
+					if (((currTS.getVia_id() == 0) || (viaRouteObjCreatedHere == null))
+					    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_VIAROUTE))
+						currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_VIAROUTE);
+					else if (createdVia)
+						currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_VIAROUTE);
+
+					if ((! (gbgCreatedHere && currTS.isSingleFlagSet(TStop.FLAG_GAS)))
+					    && currTS.isSingleFlagSet(TStop.TEMPFLAG_CREATED_GASBRANDGRADE))
+						currTS.clearFlagSingle(TStop.TEMPFLAG_CREATED_GASBRANDGRADE);
+					else if (createdGasBrandGrade)
+						currTS.setFlagSingle(TStop.TEMPFLAG_CREATED_GASBRANDGRADE);
+				}
 
-			// Now set the gas info, if any:
-			if (bundleGas != null)
-			{
-				stopGas = TripTStopGas.saveDBObjFromBundle(bundleGas, stopGas);
-				if (stopGas != null)
+				currTS.commit();
+				currT.updateCachedCurrentTStop(currTS);
+
+				if (wantsConvertLocalToRoadtrip)
+				{
+					final int newAreaID = currTS.getAreaID();
+					if ((newAreaID != currT.getAreaID())
+					    && (newAreaID >= ((stopEndsTrip && ! saveOnly) ? 1 : 0)))
+						currT.convertLocalToRoadtrip(currTS);
+				}
+
+				// Now set the gas info, if any:
+				if (bundleGas != null)
 				{
-					if (stopGas.getID() > 0)
+					stopGas = TripTStopGas.saveDBObjFromBundle(bundleGas, stopGas);
+					if (stopGas != null)
 					{
-						stopGas.commit();
-						if (! currTS.isSingleFlagSet(TStop.FLAG_GAS))
+						if (stopGas.getID() > 0)
 						{
+							stopGas.commit();
+							if (! currTS.isSingleFlagSet(TStop.FLAG_GAS))
+							{
+								currTS.setFlagSingle(TStop.FLAG_GAS);
+								currTS.commit();
+							}
+						} else {
+							stopGas.setTStop(currTS);
+							stopGas.insert(db);
 							currTS.setFlagSingle(TStop.FLAG_GAS);
 							currTS.commit();
 						}
-					} else {
-						stopGas.setTStop(currTS);
-						stopGas.insert(db);
-						currTS.setFlagSingle(TStop.FLAG_GAS);
-						currTS.commit();
 					}
+					// TODO else delete?
 				}
-				// TODO else delete?
-			}
-		}  // if (! currently stopped)
-
-		if ((stopGas != null) && (bundleGas != null) && ! saveOnly)
-		{
-			// For gas, update Location's latest_gas_brandgrade_id
-			if (stopGas.gas_brandgrade_id != 0)
-			{
-				locObj.setLatestGasBrandGradeID(stopGas.gas_brandgrade_id);
-				locObj.commit();  // does nothing if unchanged from location's previous bgid
-			}
-		}
+			}  // if (! currently stopped)
 
-		if (stopEndsTrip && ! saveOnly)
-		{
-			int pax = -1;
-			final String paxTxt = textIfEntered(R.id.trip_tstop_end_pax);
-			if (paxTxt != null)
+			if ((stopGas != null) && (bundleGas != null) && ! saveOnly)
 			{
-				try
+				// For gas, update Location's latest_gas_brandgrade_id
+				if (stopGas.gas_brandgrade_id != 0)
 				{
-					pax = Integer.parseInt(paxTxt);
-				} catch (NumberFormatException e) {
-					// shouldn't occur: layout declaration has inputType=number
+					locObj.setLatestGasBrandGradeID(stopGas.gas_brandgrade_id);
+					locObj.commit();  // does nothing if unchanged from location's previous bgid
 				}
 			}
 
-			try
+			if (stopEndsTrip && ! saveOnly)
 			{
+				// All validation was done before this task, so no exception is expected;
+				// if one is thrown, the whole transaction is rolled back.
 				VehSettings.endCurrentTrip
-					(db, currV, tsid, odo_total.getCurrent10d(), stopTimeSec,
-					 (TripCategory) spTripCat.getSelectedItem(), pax);
-			} catch (Exception e) {
-				// All validation is done above, so no exception is expected
-				allOK = false;
-				Misc.showExceptionAlertDialog(this, e);
-			}
-		} else {
-			// Continuing current trip.
+					(db, currV, tsid, odoTotal, stopTimeSec, tripCat, pax);
+			} else {
+				// Continuing current trip.
 
-			// Update TripCategory if its spinner was showing
-			if (stopEndsTrip)
-			{
-				int tripCat = ((TripCategory) (spTripCat.getSelectedItem())).getID();
-				if (tripCat < 0)
-					tripCat = 0;
-				currT.setTripCategoryID(tripCat);
-				if (currT.isDirty())
-					try
-					{
-						currT.commit();
-					} catch (Exception e) {
-						// All validation is done above, so no exception is expected
-						allOK = false;
-						Misc.showExceptionAlertDialog(this, e);
-					}
-			}
+				// Update TripCategory if its spinner was showing
+				if (stopEndsTrip)
+				{
+					int tripCatID = tripCat.getID();
+					if (tripCatID < 0)
+						tripCatID = 0;
+					currT.setTripCategoryID(tripCatID);
+					if (currT.isDirty())
+						currT.commit();  // as with endCurrentTrip, no exception is expected
+				}
 
-			// If roadtrip, update CURRENT_AREA if new stop is in a new GeoArea
-			// (optional, helps future guesses for currA after stops in no area).
-			if (currT.isRoadtrip())
-			{
-				final int locAID = locObj.getAreaID();
-				if (locAID > 0)
+				// If roadtrip, update CURRENT_AREA if new stop is in a new GeoArea
+				// (optional, helps future guesses for currA after stops in no area).
+				if (currT.isRoadtrip())
 				{
-					GeoArea dbCurrA = VehSettings.getCurrentArea(db, currV, false);
-					if ((dbCurrA == null) || (locAID != dbCurrA.getID()))
-						try
-						{
-							GeoArea geo = new GeoArea(db, locAID);
-							VehSettings.setCurrentArea(db, currV, geo);
-							currA = geo;
-						}
-						catch (Exception e) {}
+					final int locAID = locObj.getAreaID();
+					if (locAID > 0)
+					{
+						GeoArea dbCurrA = VehSettings.getCurrentArea(db, currV, false);
+						if ((dbCurrA == null) || (locAID != dbCurrA.getID()))
+							try
+							{
+								GeoArea geo = new GeoArea(db, locAID);
+								VehSettings.setCurrentArea(db, currV, geo);
+								currA = geo;
+							}
+							catch (Exception e) {}
+					}
 				}
 			}
-		}
 
-		if (! saveOnly)
-		{
-			if (currTS != null)  // if we were stopped already, now continuing trip...
+			if ((! saveOnly) && (currTS != null))  // if we were stopped already, now continuing trip...
 			{
 				VehSettings.setCurrentTStop(db, currV, null);
 				VehSettings.setPreviousLocation(db, currV, locObj); // update PREV_LOCATION
 			}
 
-			if (stopEndsTrip && mkFreqTrip && allOK)
+			return null;
+		}
+
+		public void onResult(final Void unused)
+		{
+			act.saveTask = null;
+
+			// Committed: copy back the fields run may have changed
+			act.currA = currA;
+			act.areaOther = areaOther;
+			act.areaOtherCreatedHere = areaOtherCreatedHere;
+			act.areaLocs_areaID = areaLocs_areaID;
+			act.locObj = locObj;
+			act.locObjCreatedHere = locObjCreatedHere;
+			act.viaRouteObj = viaRouteObj;
+			act.viaRouteObjCreatedHere = viaRouteObjCreatedHere;
+			act.stopGas = stopGas;
+			act.gbgCreatedHere = gbgCreatedHere;
+			if (bundleGas != null)
+				act.bundleGas = bundleGas;
+
+			if (stopEndsTrip && mkFreqTrip)
 			{
 				// make new intent, set "_id" to currT.id, call it.
-				Intent i = new Intent(TripTStopEntry.this, TripCreateFreq.class);
+				Intent i = new Intent(act, TripCreateFreq.class);
 				i.putExtra("_id", currT.getID());
-				startActivity(i);
+				act.startActivity(i);
 			}
+
+			act.finish();
 		}
 
-		if (allOK)
-			finish();
+		public void onError(final Exception e)
+		{
+			final TripTStopEntry a = act;
+			a.saveTask = null;
+			Settings.clearSettingsCache();  // cached records may have changes which were rolled back
+			Misc.showExceptionAlertDialog
+				(a, e, new DialogInterface.OnDismissListener()
+				{
+					public void onDismiss(DialogInterface dialog)
+					{
+						a.finish();
+					}
+				});
+		}
 	}
 
 	/**
@@ -3370,6 +3595,101 @@ public class TripTStopEntry extends Activity
 		if (la == null)
 			return;
 		setLocObjUpdateVias((Location) la.getItem(position), null, false);
+		prefillOdosFromRouteGraph();
+	}
+
+	/**
+	 * If the odometers haven't been entered or set from a via route or FreqTrip,
+	 * prefill them with the expected distance from {@link #prevLocObj} to {@link #locObj}
+	 * from {@link RouteGraph}, which is built once from the logbook's previous stops.
+	 * Building the graph can take a while, so the estimate is read by a {@link RouteEstimateTask}
+	 * on an {@link RDBExecutor} reader thread; the odometers are prefilled when it's done,
+	 * if the form still has the same locations and odometers haven't been entered meanwhile.
+	 * Sets {@link #odosAreSetFromRoute} if prefilled.
+	 * @since 0.9.93
+	 */
+	private void prefillOdosFromRouteGraph()
+	{
+		if (! canPrefillOdosFromRouteGraph())
+			return;
+
+		new RouteEstimateTask(this, prevLocObj.getID(), locObj.getID()).start();
+	}
+
+	/**
+	 * Can {@link #prefillOdosFromRouteGraph()} prefill the odometers now?
+	 * True if {@link #prevLocObj} and {@link #locObj} are both set, this isn't a view of a previous stop
+	 * or being saved, neither odometer came from a via route or FreqTrip, and at least one isn't entered yet.
+	 * @since 0.9.93
+	 */
+	private boolean canPrefillOdosFromRouteGraph()
+	{
+		if ((prevLocObj == null) || (locObj == null) || (viewTS != null) || (saveTask != null)
+		    || odosAreSetFromVia || odosAreSetFromFreq)
+			return false;
+
+		return ! (odo_trip_chk.isChecked() && odo_total_chk.isChecked());
+	}
+
+	/**
+	 * Reads {@link TripTStopEntry#prefillOdosFromRouteGraph()}'s distance estimate on an {@link RDBExecutor}
+	 * reader thread, building the {@link RouteGraph} if needed, so the UI thread doesn't wait for that
+	 * or for the graph's lock. {@link #onResult(RouteGraph.Estimate)} prefills the odometers on the UI thread
+	 * unless the activity is finishing, a newer task has replaced this one in {@link TripTStopEntry#routeEstTask},
+	 * or {@link TripTStopEntry#canPrefillOdosFromRouteGraph()} is now false.
+	 * @since 0.9.93
+	 */
+	private static final class RouteEstimateTask
+		implements RDBExecutor.Task<RouteGraph.Estimate>, RDBExecutor.Callback<RouteGraph.Estimate>
+	{
+		/** The activity to update when done; use only on the UI thread. */
+		private final TripTStopEntry act;
+
+		/** IDs of {@link TripTStopEntry#prevLocObj} and {@link TripTStopEntry#locObj} when started */
+		private final int fromLocID, toLocID;
+
+		public RouteEstimateTask(final TripTStopEntry act, final int fromLocID, final int toLocID)
+		{
+			this.act = act;
+			this.fromLocID = fromLocID;
+			this.toLocID = toLocID;
+		}
+
+		/** Submit this task to the shared executor's reader threads. Call from the UI thread. */
+		public void start()
+		{
+			act.routeEstTask = this;
+			RDBExecutor.get(act).submitRead(this, this);
+		}
+
+		public RouteGraph.Estimate run(final RDBAdapter db)
+		{
+			return RouteGraph.get(db).estimate(fromLocID, toLocID);
+		}
+
+		public void onResult(final RouteGraph.Estimate est)
+		{
+			if (act.routeEstTask != this)
+				return;  // superseded by a newer location
+			act.routeEstTask = null;
+
+			if ((est == null) || act.isFinishing() || ! act.canPrefillOdosFromRouteGraph()
+			    || (act.prevLocObj.getID() != fromLocID) || (act.locObj.getID() != toLocID))
+				return;
+
+			act.odosAreSetFromRoute = true;
+			if (! act.odo_trip_chk.isChecked())
+				act.odo_trip.setCurrent10d(act.odoTripOrig + est.distance, false);
+			if (! act.odo_total_chk.isChecked())
+				act.odo_total.setCurrent10d(act.odoTotalOrig + est.distance, false);
+		}
+
+		/** The estimate is only a convenience, so errors (already logged by RDBExecutor) are ignored. */
+		public void onError(final Exception e)
+		{
+			if (act.routeEstTask == this)
+				act.routeEstTask = null;
+		}
 	}
 
 	/**
@@ -3431,6 +3751,14 @@ public class TripTStopEntry extends Activity
 			// Mismatch: object no longer matches typed location
 			locObj = null;
 			updateViaRouteAutocomplete(null, false);
+			if (odosAreSetFromRoute)
+			{
+				if (! odo_trip_chk.isChecked())
+					odo_trip.setCurrent10d(odoTripOrig, false);
+				if (! odo_total_chk.isChecked())
+					odo_total.setCurrent10d(odoTotalOrig, false);
+				odosAreSetFromRoute = false;
+			}
 		}
 	}
 
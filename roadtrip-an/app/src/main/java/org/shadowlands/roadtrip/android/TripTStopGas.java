@@ -29,7 +29,7 @@ import org.shadowlands.roadtrip.db.RDBSchema;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.TStopGas;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -135,7 +135,7 @@ public class TripTStopGas extends Activity
 	    isFillup_chk = (CheckBox) findViewById(R.id.trip_tstopgas_fillup_chk);
 	    brandGrade_at = (AutoCompleteTextView) findViewById(R.id.trip_tstopgas_brandgrade);
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 	    currV = Settings.getCurrentVehicle(db, false);
 
 	    Bundle b = savedInstanceState;
@@ -31,7 +31,7 @@ import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
 import org.shadowlands.roadtrip.db.VehicleMake;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -199,7 +199,7 @@ public class VehicleEntry
 		btnDateFrom = (Button) findViewById(R.id.vehicle_entry_btn_date_from);
 		cbActive = (CheckBox) findViewById(R.id.vehicle_entry_active_cb);
 
-		db = new RDBOpenHelper(this);
+		db = RDBExecutor.getDB(this);
 
 		if ((cameFromEdit_id == 0) && (Vehicle.getMostRecent(db) == null))
 		{
@@ -25,7 +25,7 @@ import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Settings;
 import org.shadowlands.roadtrip.db.VehSettings;
 import org.shadowlands.roadtrip.db.Vehicle;
-import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 
 import android.app.Activity;
 import android.content.Context;
@@ -81,7 +81,7 @@ public class VehiclesEdit extends Activity
 	    super.onCreate(savedInstanceState);
 	    setContentView(R.layout.vehicles_edit);
 
-	    db = new RDBOpenHelper(this);
+	    db = RDBExecutor.getDB(this);
 
 	    lvVeh = (ListView) findViewById(R.id.list);
 	    lvVeh.setOnItemClickListener(this);
@@ -222,7 +222,7 @@ public class VehiclesEdit extends Activity
 			setResult(ChangeDriverOrVehicle.RESULT_CHANGES_MADE);
 		}
 		if (db == null)
-			db = new RDBOpenHelper(this);
+			db = RDBExecutor.getDB(this);
 		populateVehiclesList(db);		
 	}
 
@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2010-2014 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2010-2014,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -26,12 +26,15 @@ import java.util.ArrayList;
 import org.shadowlands.roadtrip.db.AppInfo;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBKeyNotFoundException;
+import org.shadowlands.roadtrip.db.RDBMaintenance;
+import org.shadowlands.roadtrip.db.android.RDBExecutor;
 import org.shadowlands.roadtrip.db.android.RDBOpenHelper;
 
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.text.format.DateFormat;
+import android.util.Log;
 
 /**
  * Utilities for DB backup/restore.
@@ -39,6 +42,9 @@ import android.text.format.DateFormat;
  */
 public class DBBackup {
 
+	/** tag for android logging */
+	private static final String TAG = "Roadtrip.DBBackup";
+
 	/**
 	 * db backup dir within {@link AnFileUtils#APP_SD_DIR} directory.
 	 * Used by {@link #getDBBackupPath(Context)}.
@@ -92,6 +98,8 @@ public class DBBackup {
 	 * Updates status fields in the database to indicate this,
 	 * as directed in the schema's comments.
 	 * The DB should be closed before calling this method.
+	 * Closes the {@link RDBExecutor#closeShared() shared connection} if open, so that closing
+	 * this method's connection checkpoints the write-ahead log into the db file being copied.
 	 *
 	 * @param ctx  Context from which to obtain db info
 	 * @param dirname  Full path of directory to write to, or {@code null} to use {@link #getDBBackupPath(Context)}
@@ -105,6 +113,7 @@ public class DBBackup {
 		/**
 		 * First, briefly open database, to get paths and update backup-related fields.
 		 */
+		RDBExecutor.closeShared();
 		RDBAdapter db = new RDBOpenHelper(ctx);
 		String fromFilePath = db.getFilenameFullPath();
 
@@ -274,6 +283,16 @@ public class DBBackup {
 			throw e;  // <--- Problem occurred ---
 		}
 
+		/**
+		 * Backup is done: Good idle time for db maintenance, if due,
+		 * now that there's a copy of the data.
+		 */
+		db = new RDBOpenHelper(ctx);
+		final String maintResult = RDBMaintenance.runIfDue(db);
+		db.close();
+		if (maintResult != null)
+			Log.i(TAG, "db maintenance: " + maintResult);
+
 		return toFilePath.toString();
 	}
 
@@ -282,6 +301,8 @@ public class DBBackup {
 	 * Before calling, use RDBVerifier to validate the backup, and confirm
 	 * with the user that it's OK to overwrite the current data.
 	 * The DBs should be closed before calling this method.
+	 * Closes the {@link RDBExecutor#closeShared() shared connection} if open,
+	 * and removes any write-ahead log files left from the current db.
 	 *
 	 * @param fromBackupFilePath Full path to source backup-database file; db must not be open.
 	 * @param ctx  Context from which to obtain db info
@@ -293,11 +314,17 @@ public class DBBackup {
 		/**
 		 * First, briefly open database, to get paths and update backup-related fields.
 		 */
+		RDBExecutor.closeShared();
 		RDBAdapter db = new RDBOpenHelper(ctx);
 		final String defaultDbFilePath = db.getFilenameFullPath();
 		db.close();
 		db = null;
 
+		// Closing the last connection checkpoints the WAL; remove any leftovers,
+		// which sqlite would otherwise try to apply to the restored file
+		new File(defaultDbFilePath + "-wal").delete();
+		new File(defaultDbFilePath + "-shm").delete();
+
 		// Confirm backup readable
 		File fbak = new File(fromBackupFilePath);
 		if (! fbak.exists())
@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2012,2014 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2012,2014,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -20,10 +20,12 @@
 package org.shadowlands.roadtrip.android.util;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Vector;
+import java.nio.charset.Charset;
+import java.util.List;
 
+import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.Trip;
 import org.shadowlands.roadtrip.model.LogbookTableModel;
 
@@ -63,21 +65,28 @@ public class DBExport {
 	public static final String DBEXPORT_FILENAME_SUFFIX = ".csv";
 
 	/**
-	 * Export the current trip data from <tt>ltm</tt> to a new file.
+	 * Export the current trip data from <tt>ltm</tt> to a new file,
+	 * in the columns of {@link LogbookTableModel#COL_HEADINGS_SIMPLE}.
+	 * The file is written in UTF-8 through a file channel.
+	 * Each trip's cells are written directly from its data by
+	 * {@link LogbookTableModel#writeTripsSimple(List, LogbookTableModel.CellWriter, RDBAdapter)},
+	 * without rendering the logbook's text rows again.
+	 *<P>
+	 * Before v0.9.93, <tt>ltm</tt> had to be in {@link LogbookTableModel#trip_simple_mode}.
 	 *
 	 * @param ctx  Context from which to obtain db info
-	 * @param ltm  Logbook with trip data to export; {@link LogbookTableModel#trip_simple_mode} must be true
+	 * @param ltm  Logbook with trip data to export, in any mode; ranges not loaded yet
+	 *     (Lazy Mode) are skipped
+	 * @param conn  Connection for any db lookups, such as trip stops' locations
 	 * @param fname  Filename to create (short name only, not a path) within {@link #EXP_SUBDIR}.
 	 *               Suggested suffix is {@link #DBEXPORT_FILENAME_SUFFIX}.
-	 * @throws IllegalStateException if SDCard isn't mounted or isn't writeable, or if LTM not simple mode
+	 * @throws IllegalStateException if SDCard isn't mounted or isn't writeable
 	 * @throws IOException if an error occurs
 	 */
-	public static void exportTripData(Context ctx, LogbookTableModel ltm, final String fname)
+	public static void exportTripData
+		(Context ctx, LogbookTableModel ltm, RDBAdapter conn, final String fname)
 		throws IllegalStateException, IOException
 	{
-		if (! ltm.trip_simple_mode)  // check flag, check ltm != null
-			throw new IllegalStateException("LTM not simple mode");
-
 		/**
 		 * First, check paths
 		 */
@@ -108,17 +117,24 @@ public class DBExport {
 		 */
 		try
 		{
-			CSVWriter writer = new CSVWriter(new FileWriter(toFilePath.toString()));
+			final CSVWriter writer = new CSVWriter
+				(new FileOutputStream(toFilePath.toString()).getChannel(), Charset.forName("UTF-8"));
+			final LogbookTableModel.CellWriter cells = new LogbookTableModel.CellWriter()
+			{
+				public void writeCell(final CharSequence cell) { writer.writeCell(cell); }
+				public void writeCell(final int cell) { writer.writeCell(cell); }
+				public void endLine() { writer.endLine(); }
+			};
+
 			writer.writeNext(LogbookTableModel.COL_HEADINGS_SIMPLE);
 			final int L = ltm.getRangeCount();
 			for (int i = 0; i < L; ++i)
 			{
-				Trip.TripListTimeRange ttr = ltm.getRange(i);
-				Vector<String[]> tRows = ttr.tText;
-				for (String[] row : tRows)
-					writer.writeNext(row);
+				final List<Trip> trips = ltm.getRange(i).tr;
+				if (trips != null)
+					ltm.writeTripsSimple(trips, cells, conn);
 			}
-			writer.close();
+			writer.close();  // throws any write error
 		} catch (IOException e)
 		{
 			throw e;  // <--- Problem occurred ---
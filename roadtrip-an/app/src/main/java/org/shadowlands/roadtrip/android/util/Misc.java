@@ -24,9 +24,12 @@ import java.util.Date;
 import java.util.Vector;
 
 import org.shadowlands.roadtrip.R;
+import org.shadowlands.roadtrip.db.RDBVerifier;
 
+import android.app.ActivityManager;
 import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.text.format.DateFormat;
 import android.util.Log;
 
@@ -34,6 +37,12 @@ import android.util.Log;
 public abstract class Misc
 {
 
+	/**
+	 * Heap limit in MB at or below which {@link #useLowMemoryVerifier(Context)} returns true.
+	 * @since 0.9.93
+	 */
+	private static final int VERIFIER_LOWMEM_HEAP_MB = 64;
+
 	/**
 	 * DateFormatter (day-of-week + short date) for use by {@link DateFormat#format(CharSequence, Calendar)}.
 	 * Format will be: Day-of-week\nshort-date  or  Day-of-week short-date
@@ -165,6 +174,20 @@ public abstract class Misc
 	 * @since 0.9.50
 	 */
 	public static void showExceptionAlertDialog(final Context c, final Throwable th)
+	{
+		showExceptionAlertDialog(c, th, null);
+	}
+
+	/**
+	 * Show an AlertDialog about an exception, including its {@link Throwable#getMessage()} if any,
+	 * and call a listener when it's dismissed.
+	 * @param c  Context to use, for {@link Context#getResources()} and {@link AlertDialog}
+	 * @param th  Exception to show
+	 * @param onDismiss  Listener to call when the dialog is dismissed, or null
+	 * @since 0.9.93
+	 */
+	public static void showExceptionAlertDialog
+		(final Context c, final Throwable th, final DialogInterface.OnDismissListener onDismiss)
 	{
 		StringBuilder sb = new StringBuilder();
 		sb.append(th.toString());
@@ -181,9 +204,29 @@ public abstract class Misc
 		new AlertDialog.Builder(c)
 		.setMessage(msg)
 		.setNeutralButton(android.R.string.cancel, null)
+		.setOnDismissListener(onDismiss)
 		.show();
 	}
 
+	/**
+	 * Should db validation use {@link RDBVerifier}'s low-memory mode on this device?
+	 * True if the device is a low-RAM device, or the app's heap limit is
+	 * {@link #VERIFIER_LOWMEM_HEAP_MB} or smaller: Normal mode caches every trip,
+	 * which for a large logbook can use more than that.
+	 * @param ctx  Context, to get the {@link ActivityManager}
+	 * @return  True to create the verifier with {@link RDBVerifier#RDBVerifier(org.shadowlands.roadtrip.db.RDBAdapter, boolean)}
+	 *     {@code lowMemory} true
+	 * @since 0.9.93
+	 */
+	public static boolean useLowMemoryVerifier(final Context ctx)
+	{
+		final ActivityManager am = (ActivityManager) ctx.getSystemService(Context.ACTIVITY_SERVICE);
+		if (am == null)
+			return true;
+
+		return am.isLowRamDevice() || (am.getMemoryClass() <= VERIFIER_LOWMEM_HEAP_MB);
+	}
+
 	/**
 	 * For debugging, print the current stack trace for LogCat with {@link Log#d(String, String)}.
 	 * The method calling this one will be the first line in the trace; {@code printCurrentStackTrace} isn't included.
@@ -174,7 +174,9 @@ public class FreqTripTStop extends RDBRecord
 		if (freqtripid < 1)
 			throw new IllegalStateException("freqtripid not set");
 
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -193,7 +195,9 @@ public class FreqTripTStop extends RDBRecord
 	public void commit()
 		throws IllegalStateException, NullPointerException
 	{
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -132,6 +132,7 @@ public class GasBrandGrade extends RDBRecord
 	{
 		String[] fv = { name };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -152,6 +153,7 @@ public class GasBrandGrade extends RDBRecord
 	{
 		String[] fv = { name };
 		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -235,6 +235,7 @@ public class GeoArea extends RDBRecord
 		final String dateAdded_str = (date_added != 0) ? Integer.toString(date_added) : null;
 		String[] fv = { aname, dateAdded_str };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -256,6 +257,7 @@ public class GeoArea extends RDBRecord
 		final String dateAdded_str = (date_added != 0) ? Integer.toString(date_added) : null;
 		String[] fv = { aname, dateAdded_str };
 		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -290,6 +292,7 @@ public class GeoArea extends RDBRecord
 		throws NullPointerException, UnsupportedOperationException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
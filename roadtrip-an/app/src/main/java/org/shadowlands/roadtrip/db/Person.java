@@ -308,6 +308,7 @@ public class Person extends RDBRecord
 		String[] fv =
 			{ is_driver ? "1" : "0", name, contact_uri, is_active ? "1" : "0", dateAdded_str, comment };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -330,6 +331,7 @@ public class Person extends RDBRecord
 		String[] fv =
 			{ is_driver ? "1" : "0", name, contact_uri, is_active ? "1" : "0", dateAdded_str, comment };
 		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -343,6 +345,7 @@ public class Person extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
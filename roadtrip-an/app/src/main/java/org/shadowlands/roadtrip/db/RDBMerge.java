@@ -0,0 +1,623 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Merge other logbook db files into this one, such as those from several phones in a household or fleet.
+ *<P>
+ * Master data is matched by natural key, and each source row is either mapped to the matching row
+ * already in the logbook or inserted with a new {@code _id}:
+ *<UL>
+ *<LI> {@link GeoArea} by name, like {@link GeoArea#getByName(RDBAdapter, String)}
+ *<LI> {@link Person} and {@link VehicleMake} and {@link TripCategory} and {@link GasBrandGrade} by name
+ *<LI> {@link Vehicle} by nickname, make, model and year
+ *<LI> {@link Location} by geoarea and description, like {@link Location#getByDescr(RDBAdapter, int, String)}
+ *<LI> {@link ViaRoute} by its locations and description
+ *<LI> {@link FreqTrip} by its start and end locations, ending via route, and description;
+ *     a new FreqTrip's {@link FreqTripTStop}s are inserted with it
+ *</UL>
+ * Names and descriptions are compared case-insensitively. Then all {@link Trip}s, {@link TStop}s and
+ * {@link TStopGas} are copied with set-based SQL, their IDs offset past the logbook's highest,
+ * and their foreign keys remapped through a temporary ID remap table ({@code temp.merge_idmap}).
+ * A source trip with the same vehicle, starting time and starting odometer as one already in the logbook
+ * is a duplicate, from merging the same file twice or from an earlier copy, and is skipped with its stops.
+ * Vehicles' current odometer and last trip are updated if the source's are later.
+ *<P>
+ * Each source file is merged in one transaction, so a failure leaves the logbook unchanged
+ * from that file. Sources must have the current {@link RDBSchema#DATABASE_VERSION};
+ * settings and each device's current-trip state ({@link Settings}, {@link VehSettings}) aren't merged.
+ * Inserted master data rows, trips, stops and gas stops, and vehicles' updates, are written to the
+ * {@link ChangeJournal} within the same transaction, so its readers get the merged data from
+ * {@link ChangeJournal#applySince(RDBAdapter, RDBAdapter, int)}.
+ *<P>
+ * Uses SQLite's {@code ATTACH DATABASE} and so needs an adapter which runs SQL
+ * on a db file, not {@code RDBMemAdapter}.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBMerge
+{
+	/** Schema name for the source db while {@code ATTACH}ed to the logbook db */
+	private static final String ATTACH_NAME = "mrg";
+
+	/** Temp table mapping each source master-data row's ID to its logbook ID: (tab, src_id, dest_id) */
+	private static final String TEMP_IDMAP = "temp.merge_idmap";
+
+	/** Fields of {@link #TEMP_IDMAP} for insert */
+	private static final String[] IDMAP_FIELDS = { "tab", "src_id", "dest_id" };
+
+	/**
+	 * Master data tables in merge order: Each table's foreign keys refer only to earlier tables,
+	 * except {@code vehicle.last_tripid} which is updated after trips are copied.
+	 */
+	private static final MasterTable[] MASTER_TABLES =
+	{
+		new MasterTable("geoarea", new String[]{ "aname", "date_added" }, null, new int[]{ 0 }),
+		new MasterTable("person",
+			new String[]{ "is_driver", "name", "contact_uri", "is_active", "date_added", "comment" },
+			null, new int[]{ 1 }),
+		new MasterTable("vehiclemake", new String[]{ "mname", "is_user_add" }, null, new int[]{ 0 }),
+		new MasterTable("vehicle",
+			new String[]{ "nickname", "driverid", "makeid", "model", "year", "date_from", "date_to", "vin",
+				"plate", "odo_orig", "odo_curr", "last_tripid", "distance_storage", "expense_currency",
+				"expense_curr_sym", "expense_curr_deci", "fuel_curr_deci", "fuel_type", "fuel_qty_unit",
+				"fuel_qty_deci", "comment", "is_active", "date_added" },
+			new String[]{ null, "person", "vehiclemake", null, null, null, null, null,
+				null, null, null, "trip" },
+			new int[]{ 0, 2, 3, 4 }),
+		new MasterTable("tripcategory",
+			new String[]{ "cname", "rank", "is_work_related", "is_user_add" }, null, new int[]{ 0 }),
+		new MasterTable("gas_brandgrade", new String[]{ "name" }, null, new int[]{ 0 }),
+		new MasterTable("location",
+			new String[]{ "a_id", "geo_lat", "geo_lon", "loc_descr", "latest_gas_brandgrade_id" },
+			new String[]{ "geoarea", null, null, null, "gas_brandgrade" },
+			new int[]{ 0, 3 }),
+		new MasterTable("via_route",
+			new String[]{ "locid_from", "locid_to", "odo_dist", "via_descr" },
+			new String[]{ "location", "location" },
+			new int[]{ 0, 1, 3 }),
+		new MasterTable("freqtrip",
+			new String[]{ "a_id", "start_locid", "end_locid", "end_odo_trip", "roadtrip_end_aid", "descr",
+				"end_via_id", "typ_timeofday", "flag_weekends", "flag_weekdays", "is_roundtrip", "catid" },
+			new String[]{ "geoarea", "location", "location", null, "geoarea", null,
+				"via_route", null, null, null, null, "tripcategory" },
+			new int[]{ 1, 2, 6, 5 }),
+		new MasterTable("freqtrip_tstop",
+			new String[]{ "freqtripid", "locid", "via_id", "odo_trip" },
+			new String[]{ "freqtrip", "location", "via_route" },
+			null),  // no natural key: inserted only with a new freqtrip
+	};
+
+	/** Trip fields, in schema order after {@code _id} */
+	private static final String[] TRIP_FIELDS =
+		{ "vid", "did", "catid", "odo_start", "odo_end", "aid", "tstopid_start", "locid_start",
+		  "time_start", "time_end", "start_lat", "start_lon", "end_lat", "end_lon", "freqtripid",
+		  "comment", "passengers", "roadtrip_end_aid", "has_continue" };
+
+	/** Master data table referenced by each of {@link #TRIP_FIELDS}, or null */
+	private static final String[] TRIP_FKS =
+		{ "vehicle", "person", "tripcategory", null, null, "geoarea", null, "location",
+		  null, null, null, null, null, null, "freqtrip",
+		  null, null, "geoarea", null };
+
+	/** TStop fields, in schema order after {@code _id} and {@code tripid} */
+	private static final String[] TSTOP_FIELDS =
+		{ "odo_total", "odo_trip", "time_stop", "time_continue", "locid", "a_id", "geo_lat", "geo_lon",
+		  "flag_sides", "descr", "via_id", "via_route", "comment", "expense_total" };
+
+	/** Master data table referenced by each of {@link #TSTOP_FIELDS}, or null */
+	private static final String[] TSTOP_FKS =
+		{ null, null, null, null, "location", "geoarea", null, null,
+		  null, null, "via_route", null, null, null };
+
+	/** TStopGas fields, in schema order after {@code _id} */
+	private static final String[] TSTOPGAS_FIELDS =
+		{ "quant", "price_per", "price_total", "fillup", "vid", "gas_brandgrade_id" };
+
+	/** Master data table referenced by each of {@link #TSTOPGAS_FIELDS}, or null */
+	private static final String[] TSTOPGAS_FKS =
+		{ null, null, null, null, "vehicle", "gas_brandgrade" };
+
+	/** Logbook db, from constructor */
+	private final RDBAdapter db;
+
+	/** Source table name -&gt; (source ID -&gt; logbook ID), for the source being merged */
+	private final HashMap<String, HashMap<Integer, Integer>> idMaps = new HashMap<String, HashMap<Integer, Integer>>();
+
+	/** Source table name -&gt; source IDs of rows inserted as new, for the source being merged */
+	private final HashMap<String, HashSet<Integer>> insertedIDs = new HashMap<String, HashSet<Integer>>();
+
+	/**
+	 * A master data table, its fields, and which ones are foreign keys or part of its natural key.
+	 */
+	private static final class MasterTable
+	{
+		final String name;
+
+		/** Fields, in schema order after {@code _id} */
+		final String[] fields;
+
+		/** Table referenced by each field, or null; may be shorter than {@link #fields} */
+		final String[] fks;
+
+		/** Indexes within {@link #fields} of the natural key, or null if none */
+		final int[] keyIdx;
+
+		/** {@link #fields} and {@code "_id"} */
+		final String[] fieldsAndID;
+
+		MasterTable(final String name, final String[] fields, final String[] fks, final int[] keyIdx)
+		{
+			this.name = name;
+			this.fields = fields;
+			this.fks = fks;
+			this.keyIdx = keyIdx;
+			fieldsAndID = new String[fields.length + 1];
+			System.arraycopy(fields, 0, fieldsAndID, 0, fields.length);
+			fieldsAndID[fields.length] = "_id";
+		}
+
+		/** Get the table referenced by field {@code i}, or null. */
+		String fk(final int i)
+		{
+			return ((fks != null) && (i < fks.length)) ? fks[i] : null;
+		}
+	}
+
+	/**
+	 * Counts of rows merged from one source db, from {@link RDBMerge#mergeFrom(String)}.
+	 */
+	public static final class Result
+	{
+		/** Source db file path */
+		public final String path;
+
+		/** Trips copied, and trips skipped as duplicates of ones already in the logbook */
+		public int tripsAdded, tripsDuplicate;
+
+		/** TStops copied */
+		public int stopsAdded;
+
+		/** Master data rows inserted, and rows matched to existing ones by natural key */
+		public int masterAdded, masterMatched;
+
+		/** Time taken, in milliseconds */
+		public long millis;
+
+		Result(final String path)
+		{
+			this.path = path;
+		}
+
+		/** Summary such as {@code "roadtrip-b.db: 1200 trips, 4711 stops added; 3 duplicate trips skipped; ..."} */
+		public String toString()
+		{
+			return new File(path).getName() + ": " + tripsAdded + " trips, " + stopsAdded + " stops added; "
+				+ tripsDuplicate + " duplicate trips skipped; master data: " + masterAdded + " added, "
+				+ masterMatched + " matched; " + millis + " ms";
+		}
+	}
+
+	/**
+	 * Create a merger into this logbook db.
+	 * @param db  Logbook db connection, which will receive the merged data
+	 */
+	public RDBMerge(RDBAdapter db)
+	{
+		this.db = db;
+	}
+
+	/**
+	 * Merge each of several source db files into the logbook, in order.
+	 * Stops at the first file which fails; files before it remain merged.
+	 * @param paths  Full paths to source db files
+	 * @return  Each source's counts, in the same order as {@code paths}
+	 * @throws IllegalArgumentException  if a source file isn't found, has a different schema version,
+	 *     or is the logbook itself
+	 * @throws IllegalStateException  if a db error occurs
+	 * @throws SQLException  if a db error occurs while attaching or beginning the transaction
+	 */
+	public Result[] mergeAll(final String[] paths)
+		throws IllegalArgumentException, IllegalStateException, SQLException
+	{
+		Result[] ret = new Result[paths.length];
+		for (int i = 0; i < paths.length; ++i)
+			ret[i] = mergeFrom(paths[i]);
+
+		return ret;
+	}
+
+	/**
+	 * Merge one source db file into the logbook, within a transaction.
+	 * @param path  Full path to source db file
+	 * @return  Counts of rows merged
+	 * @throws IllegalArgumentException  if the source file isn't found, has a different schema version,
+	 *     or is the logbook itself
+	 * @throws IllegalStateException  if a db error occurs
+	 * @throws SQLException  if a db error occurs while attaching or beginning the transaction
+	 */
+	public Result mergeFrom(final String path)
+		throws IllegalArgumentException, IllegalStateException, SQLException
+	{
+		final File srcFile = new File(path);
+		if (! srcFile.isFile())
+			throw new IllegalArgumentException("Not found: " + path);
+		final String dbPath = db.getFilenameFullPath();
+		if ((dbPath != null) && new File(dbPath).getAbsoluteFile().equals(srcFile.getAbsoluteFile()))
+			throw new IllegalArgumentException("Can't merge a logbook into itself: " + path);
+
+		final long startTime = System.currentTimeMillis();
+		final Result res = new Result(path);
+		idMaps.clear();
+		insertedIDs.clear();
+
+		// ATTACH and DETACH can't be within a transaction.
+		db.execStrucUpdate("ATTACH DATABASE '" + path.replace("'", "''") + "' AS " + ATTACH_NAME + " ;");
+		try
+		{
+			final String srcVers = db.getRowField(ATTACH_NAME + ".appinfo", "aivalue",
+				"aifield = ?", new String[]{ AppInfo.KEY_DB_CURRENT_SCHEMAVERSION });
+			if (! Integer.toString(RDBSchema.DATABASE_VERSION).equals(srcVers))
+				throw new IllegalArgumentException
+					("Schema version " + srcVers + " must be upgraded to " + RDBSchema.DATABASE_VERSION
+					 + " before merging: " + path);
+
+			db.execStrucUpdate("CREATE TEMP TABLE merge_idmap"
+				+ " (tab varchar(32) not null, src_id int not null, dest_id int, PRIMARY KEY(tab, src_id));");
+			db.execStrucUpdate("CREATE TEMP TABLE merge_trip (src_id integer PRIMARY KEY not null, dest_id int);");
+			db.execStrucUpdate("CREATE TEMP TABLE merge_tstop (src_id integer PRIMARY KEY not null, dest_id int);");
+
+			db.beginTransaction();
+			boolean committed = false;
+			try
+			{
+				for (final MasterTable mt : MASTER_TABLES)
+					mergeMasterTable(mt, res);
+				writeIDMaps();
+				copyTrips(res);
+				updateVehicles();
+
+				db.endTransaction(true);
+				committed = true;
+			} finally {
+				if (! committed)
+				{
+					try { db.endTransaction(false); }
+					catch (Exception e) {}  // don't hide the original exception
+				}
+			}
+		} finally {
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS " + TEMP_IDMAP + ";"); } catch (SQLException e) {}
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS temp.merge_trip;"); } catch (SQLException e) {}
+			try { db.execStrucUpdate("DROP TABLE IF EXISTS temp.merge_tstop;"); } catch (SQLException e) {}
+			db.execStrucUpdate("DETACH DATABASE " + ATTACH_NAME + " ;");
+		}
+
+		idMaps.clear();
+		insertedIDs.clear();
+		Settings.clearSettingsCache();  // also clears location and route indexes
+		res.millis = System.currentTimeMillis() - startTime;
+
+		return res;
+	}
+
+	/**
+	 * Map each row of a master data table to its match in the logbook, or insert it as new.
+	 * Fills this table's entries in {@link #idMaps} and {@link #insertedIDs}.
+	 */
+	private void mergeMasterTable(final MasterTable mt, final Result res)
+		throws IllegalStateException
+	{
+		final HashMap<Integer, Integer> idMap = new HashMap<Integer, Integer>();
+		final HashSet<Integer> inserted = new HashSet<Integer>();
+		idMaps.put(mt.name, idMap);
+		insertedIDs.put(mt.name, inserted);
+
+		final Vector<String[]> srcRows = db.getRows
+			(ATTACH_NAME + '.' + mt.name, (String) null, (String[]) null, mt.fieldsAndID, "_id", 0);
+		if (srcRows == null)
+			return;
+
+		// Natural keys already in the logbook
+		final HashMap<String, Integer> destKeys = new HashMap<String, Integer>();
+		if (mt.keyIdx != null)
+		{
+			final Vector<String[]> destRows = db.getRows
+				("main." + mt.name, (String) null, (String[]) null, mt.fieldsAndID, "_id", 0);
+			if (destRows != null)
+				for (final String[] rec : destRows)
+				{
+					final String key = naturalKey(mt, rec);
+					if (! destKeys.containsKey(key))
+						destKeys.put(key, Integer.valueOf(rec[mt.fields.length]));
+				}
+		}
+
+		final int nf = mt.fields.length;
+		for (final String[] rec : srcRows)
+		{
+			final Integer srcID = Integer.valueOf(rec[nf]);
+			final String[] fv = new String[nf];
+			for (int i = 0; i < nf; ++i)
+			{
+				final String fkTab = mt.fk(i);
+				if (fkTab == null)
+					fv[i] = rec[i];
+				else if (fkTab.equals("trip"))
+					fv[i] = null;  // vehicle.last_tripid: set by updateVehicles after copying trips
+				else
+					fv[i] = mapID(fkTab, rec[i]);
+			}
+
+			if (mt.keyIdx != null)
+			{
+				final String key = naturalKey(mt, fv);
+				final Integer destID = destKeys.get(key);
+				if (destID != null)
+				{
+					idMap.put(srcID, destID);
+					++res.masterMatched;
+					continue;
+				}
+
+				final int newID = db.insert("main." + mt.name, mt.fields, fv, true);
+				ChangeJournal.inserted(db, mt.name, newID, mt.fields, fv);
+				destKeys.put(key, Integer.valueOf(newID));  // for any duplicates within the source
+				idMap.put(srcID, Integer.valueOf(newID));
+				inserted.add(srcID);
+				++res.masterAdded;
+			} else {
+				// freqtrip_tstop: Insert only if its parent freqtrip is new
+				final String parentTab = mt.fk(0);
+				if ((rec[0] == null) || ! insertedIDs.get(parentTab).contains(Integer.valueOf(rec[0])))
+					continue;
+
+				final int newID = db.insert("main." + mt.name, mt.fields, fv, true);
+				ChangeJournal.inserted(db, mt.name, newID, mt.fields, fv);
+				idMap.put(srcID, Integer.valueOf(newID));
+				inserted.add(srcID);
+				++res.masterAdded;
+			}
+		}
+	}
+
+	/**
+	 * Build a case-insensitive natural key string from a master table row's key fields.
+	 * Foreign keys within the row should already be mapped to logbook IDs.
+	 */
+	private static String naturalKey(final MasterTable mt, final String[] rec)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (final int i : mt.keyIdx)
+		{
+			String v = rec[i];
+			if ((v != null) && (mt.fk(i) != null) && v.equals("0"))
+				v = null;  // 0 and null both mean none
+			sb.append((v != null) ? v.toLowerCase(Locale.US) : "\u0001").append('\u0000');
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Map a source foreign-key value to its logbook ID.
+	 * @param tab  Master table referenced
+	 * @param srcID  Source ID, or null or "0" for none
+	 * @return  Logbook ID, or {@code srcID} if null or "0", or null if {@code srcID} isn't found in the source
+	 */
+	private String mapID(final String tab, final String srcID)
+	{
+		if ((srcID == null) || srcID.equals("0"))
+			return srcID;
+
+		final Integer destID = idMaps.get(tab).get(Integer.valueOf(srcID));
+		return (destID != null) ? destID.toString() : null;
+	}
+
+	/** Write {@link #idMaps} to {@link #TEMP_IDMAP}, for use by {@link #copyTrips(Result)}'s SQL. */
+	private void writeIDMaps()
+		throws IllegalStateException
+	{
+		final String[] fv = new String[3];
+		for (final Map.Entry<String, HashMap<Integer, Integer>> tabEnt : idMaps.entrySet())
+		{
+			fv[0] = tabEnt.getKey();
+			for (final Map.Entry<Integer, Integer> ent : tabEnt.getValue().entrySet())
+			{
+				fv[1] = ent.getKey().toString();
+				fv[2] = ent.getValue().toString();
+				db.insert(TEMP_IDMAP, IDMAP_FIELDS, fv, true);
+			}
+		}
+	}
+
+	/**
+	 * SQL expression mapping a source row's foreign key to its logbook ID through {@link #TEMP_IDMAP}.
+	 * Null and 0 are kept as is.
+	 * @param tab  Master table referenced
+	 * @param srcExpr  Source field, such as {@code "s.locid"}
+	 */
+	private static String sqlMapID(final String tab, final String srcExpr)
+	{
+		return "(CASE WHEN ifnull(" + srcExpr + ", 0) = 0 THEN " + srcExpr
+			+ " ELSE (SELECT dest_id FROM " + TEMP_IDMAP + " WHERE tab = '" + tab + "' AND src_id = "
+			+ srcExpr + ") END)";
+	}
+
+	/**
+	 * Append a comma-separated list of source fields to {@code sb}, each remapped if it's a foreign key.
+	 * @param fields  Field names
+	 * @param fks  Master table referenced by each field, or null
+	 */
+	private static void appendMappedFields(final StringBuilder sb, final String[] fields, final String[] fks)
+	{
+		for (int i = 0; i < fields.length; ++i)
+		{
+			sb.append(", ");
+			if (fks[i] != null)
+				sb.append(sqlMapID(fks[i], "s." + fields[i]));
+			else
+				sb.append("s.").append(fields[i]);
+		}
+	}
+
+	/** Append a comma-separated field list to {@code sb}, each preceded by ", ". */
+	private static void appendFields(final StringBuilder sb, final String[] fields)
+	{
+		for (final String f : fields)
+			sb.append(", ").append(f);
+	}
+
+	/**
+	 * Get the next unused ID in a logbook table: Its highest current {@code _id},
+	 * or its {@code autoincrement} sequence if higher.
+	 */
+	private int getHighestID(final String tab)
+		throws IllegalStateException
+	{
+		final int maxID = db.getRowIntField("main." + tab, "max(_id)", (String) null, (String[]) null, 0);
+		final int seq = db.getRowIntField("main.sqlite_sequence", "seq", "name = ?", new String[]{ tab }, 0);
+		return (seq > maxID) ? seq : maxID;
+	}
+
+	/**
+	 * Copy trips, stops, gas stops and their comments' search index entries with set-based SQL,
+	 * and journal them with {@link ChangeJournal#insertedWhere(RDBAdapter, String, String[], String)}.
+	 * New trips and stops get their source ID plus the logbook's highest ID,
+	 * which are recorded in {@code temp.merge_trip} and {@code temp.merge_tstop}.
+	 */
+	private void copyTrips(final Result res)
+		throws IllegalStateException, SQLException
+	{
+		final int tripOffset = getHighestID("trip"), tstopOffset = getHighestID("tstop");
+		final String src = ATTACH_NAME + '.';
+
+		// Trip ID map: duplicate of an existing trip, or new
+		db.execStrucUpdate("INSERT INTO temp.merge_trip SELECT s._id, ifnull("
+			+ "(SELECT min(d._id) FROM main.trip d WHERE d.vid = " + sqlMapID("vehicle", "s.vid")
+			+ " AND d.time_start = s.time_start AND d.odo_start = s.odo_start), s._id + " + tripOffset
+			+ ") FROM " + src + "trip s;");
+
+		StringBuilder sb = new StringBuilder("INSERT INTO main.trip (_id");
+		appendFields(sb, TRIP_FIELDS);
+		sb.append(") SELECT mt.dest_id");
+		appendMappedFields(sb, TRIP_FIELDS, TRIP_FKS);
+		sb.append(" FROM ").append(src).append("trip s JOIN temp.merge_trip mt ON mt.src_id = s._id")
+		  .append(" WHERE mt.dest_id > ").append(tripOffset).append(';');
+		db.execStrucUpdate(sb.toString());
+		res.tripsAdded = db.getRowIntField
+			("temp.merge_trip", "count(*)", "dest_id > " + tripOffset, (String[]) null, 0);
+		res.tripsDuplicate = db.getRowIntField("temp.merge_trip", "count(*)", (String) null, (String[]) null, 0)
+			- res.tripsAdded;
+
+		// TStop ID map: New for new trips; for duplicate trips, the matching existing stop if any
+		db.execStrucUpdate("INSERT INTO temp.merge_tstop SELECT s._id, CASE WHEN mt.dest_id > " + tripOffset
+			+ " THEN s._id + " + tstopOffset
+			+ " ELSE (SELECT min(d._id) FROM main.tstop d WHERE d.tripid = mt.dest_id"
+			+ " AND d.odo_total IS s.odo_total AND d.time_stop IS s.time_stop) END"
+			+ " FROM " + src + "tstop s JOIN temp.merge_trip mt ON mt.src_id = s.tripid;");
+
+		sb = new StringBuilder("INSERT INTO main.tstop (_id, tripid");
+		appendFields(sb, TSTOP_FIELDS);
+		sb.append(") SELECT ms.dest_id, mt.dest_id");
+		appendMappedFields(sb, TSTOP_FIELDS, TSTOP_FKS);
+		sb.append(" FROM ").append(src).append("tstop s JOIN temp.merge_tstop ms ON ms.src_id = s._id")
+		  .append(" JOIN temp.merge_trip mt ON mt.src_id = s.tripid WHERE mt.dest_id > ")
+		  .append(tripOffset).append(';');
+		db.execStrucUpdate(sb.toString());
+		res.stopsAdded = db.getRowIntField
+			("temp.merge_tstop", "count(*)", "dest_id > " + tstopOffset, (String[]) null, 0);
+
+		// New trips' starting stops, which may be in the previous trip
+		db.execStrucUpdate("UPDATE main.trip SET tstopid_start = (SELECT ms.dest_id FROM temp.merge_tstop ms"
+			+ " JOIN " + src + "trip s ON ms.src_id = s.tstopid_start WHERE s._id = main.trip._id - " + tripOffset
+			+ ") WHERE _id > " + tripOffset + ";");
+
+		sb = new StringBuilder("INSERT INTO main.tstop_gas (_id");
+		appendFields(sb, TSTOPGAS_FIELDS);
+		sb.append(") SELECT ms.dest_id");
+		appendMappedFields(sb, TSTOPGAS_FIELDS, TSTOPGAS_FKS);
+		sb.append(" FROM ").append(src).append("tstop_gas s JOIN temp.merge_tstop ms ON ms.src_id = s._id")
+		  .append(" WHERE ms.dest_id > ").append(tstopOffset).append(';');
+		db.execStrucUpdate(sb.toString());
+
+		// Journal the new rows, now that trips' tstopid_start is set
+		ChangeJournal.insertedWhere(db, "main.trip", TRIP_FIELDS, "_id > " + tripOffset);
+		final String[] tstopFields = new String[TSTOP_FIELDS.length + 1];
+		tstopFields[0] = "tripid";
+		System.arraycopy(TSTOP_FIELDS, 0, tstopFields, 1, TSTOP_FIELDS.length);
+		ChangeJournal.insertedWhere(db, "main.tstop", tstopFields, "_id > " + tstopOffset);
+		ChangeJournal.insertedWhere(db, "main.tstop_gas", TSTOPGAS_FIELDS, "_id > " + tstopOffset);
+
+		// Comment search index, as in RDBSchema's v1000 upgrade
+		db.execStrucUpdate("INSERT INTO main." + CommentIndex.TABNAME + " (docid, comment) SELECT _id, comment"
+			+ " FROM main.tstop WHERE _id > " + tstopOffset + " AND comment is not null AND comment <> '';");
+		db.execStrucUpdate("INSERT INTO main." + CommentIndex.TABNAME + " (docid, comment) SELECT -_id, comment"
+			+ " FROM main.trip WHERE _id > " + tripOffset + " AND comment is not null AND comment <> '';");
+	}
+
+	/**
+	 * Update vehicles' {@code last_tripid} and {@code odo_curr} from the source:
+	 * For new vehicles, always; for existing ones, if the source's odometer is higher.
+	 */
+	private void updateVehicles()
+		throws IllegalStateException
+	{
+		final Vector<String[]> srcRows = db.getRows
+			(ATTACH_NAME + ".vehicle", (String) null, (String[]) null,
+			 new String[]{ "_id", "odo_curr", "last_tripid" }, "_id", 0);
+		if (srcRows == null)
+			return;
+
+		final HashMap<Integer, Integer> vMap = idMaps.get("vehicle");
+		final HashSet<Integer> vInserted = insertedIDs.get("vehicle");
+		final String[] fn = { "odo_curr", "last_tripid" };
+		for (final String[] rec : srcRows)
+		{
+			final Integer srcID = Integer.valueOf(rec[0]);
+			final Integer destID = vMap.get(srcID);
+			if ((destID == null) || (rec[2] == null))
+				continue;
+
+			if (! vInserted.contains(srcID))
+			{
+				final int destOdo = db.getRowIntField("main.vehicle", destID.intValue(), "odo_curr", 0);
+				if ((rec[1] == null) || (Integer.parseInt(rec[1]) <= destOdo))
+					continue;
+			}
+
+			final String lastTrip = db.getRowField
+				("temp.merge_trip", "dest_id", "src_id = ?", new String[]{ rec[2] });
+			final String[] fv = { rec[1], lastTrip };
+			db.update("main.vehicle", destID.intValue(), fn, fv);
+			ChangeJournal.updated(db, "vehicle", destID.intValue(), fn, fv);
+		}
+	}
+
+}  // public class RDBMerge
@@ -19,16 +19,21 @@
 
 package org.shadowlands.roadtrip.db;
 
-import java.io.DataInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
 import java.util.zip.DataFormatException;
 
 import org.shadowlands.roadtrip.util.FileUtils;
+import org.shadowlands.roadtrip.util.FixedDec;
+import org.shadowlands.roadtrip.util.PhaseTimer;
 
 /**
  * Schema-related utility methods, common to SQLite and Android implementations.
@@ -50,7 +55,7 @@ import org.shadowlands.roadtrip.util.FileUtils;
  *<UL>
  *<LI> {@link #DATABASE_VERSION}
  *<LI> {@link #DB_SCHEMA_CREATE_FILENAME}
- *<LI> {@link #upgradeToCurrent(RDBAdapter, int, boolean)}
+ *<LI> {@link #UPGRADE_STEP_VERSIONS}
  *<LI> Under roadtrip-an, {@code RDBOpenHelper}'s class javadoc (schema filename)
  *     and override of {@link RDBAdapter#getSQLScript(int)}
  *     (update case 0, add case for new schema version)
@@ -71,10 +76,10 @@ public abstract class RDBSchema
 	 * See the class javadoc for what to change in the code when you update the schema version.
 	 * @see #DB_VERSION_MIN_UPGRADE
 	 */
-	public static final int DATABASE_VERSION = 990;
+	public static final int DATABASE_VERSION = 1000;
 
 	/** Filename of schema create sql script for the current {@link #DATABASE_VERSION}. */
-	public static final String DB_SCHEMA_CREATE_FILENAME = "schema_v0990.sql";
+	public static final String DB_SCHEMA_CREATE_FILENAME = "schema_v1000.sql";
 
 	/**
 	 * The minimum {@link #DATABASE_VERSION} (901) that can be upgraded by
@@ -91,67 +96,189 @@ public abstract class RDBSchema
 	public static final String DB_SCHEMA_UPGRADE_FILENAME_PREFIX = "upg_v";
 
 	/**
-	 * Execute this stream's SQL one line at a time.
-	 * Ignore some items. (pragma, begin transaction, commit, -- comments)
+	 * Schema versions which can be upgraded, in order, starting with {@link #DB_VERSION_MIN_UPGRADE}
+	 * and ending with {@link #DATABASE_VERSION}. Each version after the first has an upgrade script
+	 * from the previous one; {@link #upgradeToCurrent(RDBAdapter, int, boolean, UpgradeProgressListener)}
+	 * runs each needed script as one step. Obsolete pre-beta versions not encountered in the wild,
+	 * which aren't listed, are 800, 805, 806, 807, 809, 812, 813.
+	 *<P>
+	 * REMEMBER: When adding a version, also update RDBOpenHelper.getSQLScript!
+	 * @since 0.9.93
+	 */
+	private static final int[] UPGRADE_STEP_VERSIONS =
+	{
+		901,   // 2010-11-16: DB_VERSION_MIN_UPGRADE
+		905,   // 2010-11-30
+		906,   // 2010-12-16
+		908,   // 2012-04-01
+		909,   // 2012-12-06
+		940,   // 2014-02-15
+		943,   // 2015-05-26
+		961,   // 2017-02-02
+		990,   // 2019-09-29
+		1000   // 2022-12-22
+	};
+
+	/**
+	 * Execute this stream's SQL statements, as split by {@link #readSQLStatements(InputStream)}.
+	 * Ignore {@code pragma} statements.
+	 * Before v0.9.93 each statement had to be on a single line; statements can now span lines.
 	 *<P>
 	 * The stream will be closed before returning from this method.
 	 * @param db an open database
-	 * @param sqlStream contents to execute one line at a time
+	 * @param sqlStream contents to execute
 	 * @throws SQLException  if an error occurs; the stream will still be closed.
 	 */
 	public static void execSQLbyLine(RDBAdapter db, InputStream sqlStream)
 		throws SQLException
 	{
-		SQLException ex = null;
-
 		// TODO some error flag field, on fail
-		DataInputStream dsql = new DataInputStream(sqlStream);
+		List<String> stmts = null;
 		try
 		{
-			String sqline;
-			for (;;)
-			{
-				sqline = dsql.readLine();
-				if (sqline == null)
-					break;
-
-				int i = sqline.indexOf("--");
-				if (i == 0)
-					sqline = "";
-				else if (i > 0)
-					sqline = sqline.substring(0, i).trim();
-				else
-					sqline = sqline.trim();
-
-				String sqlower = sqline.toLowerCase(Locale.US);
-				if (sqlower.startsWith("pragma"))
-					continue;
-				//if (sqlower.startsWith("begin transaction"))
-				//	continue;
-				//if (sqlower.startsWith("commit"))
-				//	continue;
-
-				if (sqline.length() > 0)
-					db.execStrucUpdate(sqline);
-			}
+			stmts = readSQLStatements(sqlStream);
 		} catch (IOException ie) {
 			ie.printStackTrace();
 			// empty catch; not expected.
-		} catch (SQLException se) {
-			ex = se;
-			// deal with it after finally closing the streams.
 		} finally {
-			try { dsql.close(); } catch (IOException e) {}
 			try { sqlStream.close(); } catch (IOException e) {}
 		}
+		if (stmts == null)
+			return;
 
-		if (ex != null)
+		try
 		{
+			for (final String sql : stmts)
+				if (! sql.toLowerCase(Locale.US).startsWith("pragma"))
+					db.execStrucUpdate(sql);
+		} catch (SQLException ex) {
 			ex.printStackTrace();
 			throw ex;
 		}
 	}
 
+	/**
+	 * Read and split a SQL script into statements, each ending with {@code ';'}.
+	 * Statements can span multiple lines. Removes {@code --} and {@code /* *}{@code /} comments,
+	 * except within quoted strings and identifiers. A {@code CREATE TRIGGER} statement
+	 * continues through the {@code ';'} after its {@code END}.
+	 * Statements are returned as-is, including transaction statements and pragmas.
+	 *<P>
+	 * The caller should close the stream afterwards.
+	 * @param sqlStream  Script contents, in UTF-8
+	 * @return  Statements without their final {@code ';'}, trimmed, non-empty; may be an empty list
+	 * @throws IOException  if an error occurs reading the stream
+	 * @since 0.9.93
+	 */
+	public static List<String> readSQLStatements(final InputStream sqlStream)
+		throws IOException
+	{
+		final List<String> stmts = new ArrayList<String>();
+		final BufferedReader rd = new BufferedReader(new InputStreamReader(sqlStream, "UTF-8"));
+		final StringBuilder sb = new StringBuilder();
+		char quote = 0;  // if within a quoted string or identifier, its closing char
+		int c;
+		while (-1 != (c = rd.read()))
+		{
+			if (quote != 0)
+			{
+				sb.append((char) c);
+				if (c == quote)
+					quote = 0;  // 'it''s' is read as two adjacent quoted strings, with the same result
+				continue;
+			}
+
+			switch (c)
+			{
+			case '\'':
+			case '"':
+			case '`':
+				quote = (char) c;
+				sb.append((char) c);
+				break;
+
+			case '[':
+				quote = ']';
+				sb.append('[');
+				break;
+
+			case '-':
+			case '/':
+				{
+					rd.mark(1);
+					int c2 = rd.read();
+					if ((c == '-') && (c2 == '-'))
+					{
+						while ((c2 != -1) && (c2 != '\n'))
+							c2 = rd.read();
+						sb.append('\n');
+					}
+					else if ((c == '/') && (c2 == '*'))
+					{
+						int prev = 0;
+						c2 = rd.read();
+						while ((c2 != -1) && ! ((prev == '*') && (c2 == '/')))
+						{
+							prev = c2;
+							c2 = rd.read();
+						}
+						sb.append(' ');
+					} else {
+						sb.append((char) c);
+						if (c2 != -1)
+							rd.reset();
+					}
+				}
+				break;
+
+			case ';':
+				if (isWithinTriggerBody(sb))
+				{
+					sb.append(';');
+				} else {
+					addSQLStatement(stmts, sb);
+					sb.setLength(0);
+				}
+				break;
+
+			default:
+				sb.append((char) c);
+			}
+		}
+		addSQLStatement(stmts, sb);  // in case last statement has no ';'
+
+		return stmts;
+	}
+
+	/**
+	 * For {@link #readSQLStatements(InputStream)}, is this statement text a {@code CREATE TRIGGER}
+	 * which hasn't yet reached its {@code END}?
+	 * @param sb  Statement text read so far, not including the current {@code ';'}
+	 * @return  True if the current {@code ';'} ends a statement within the trigger body
+	 */
+	private static boolean isWithinTriggerBody(final StringBuilder sb)
+	{
+		final String s = sb.toString().trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+		if (! (s.startsWith("create trigger ") || s.startsWith("create temp trigger ")
+		       || s.startsWith("create temporary trigger ")))
+			return false;
+
+		final char beforeEnd = s.charAt(s.length() - 4);  // s is longer than "create trigger "
+		return ! (s.endsWith("end") && ! (Character.isLetterOrDigit(beforeEnd) || (beforeEnd == '_')));
+	}
+
+	/**
+	 * For {@link #readSQLStatements(InputStream)}, add this statement to the list unless it's empty.
+	 * @param stmts  List to add to
+	 * @param sb  Statement text
+	 */
+	private static void addSQLStatement(final List<String> stmts, final StringBuilder sb)
+	{
+		final String sql = sb.toString().trim();
+		if (sql.length() > 0)
+			stmts.add(sql);
+	}
+
 	/**
 	 * Make a copy of this database file, then upgrade the copy to the current schema version
 	 * by calling {@link #upgradeToCurrent(RDBAdapter, int, boolean)}.
@@ -171,11 +298,28 @@ public abstract class RDBSchema
 	 * @throws IOException  if a problem occurs copying the file, or locating or opening an upgrade script.
 	 *           Consider calling this again with a different temporary location.
 	 * @throws SQLException  if a syntax or database error occurs during the upgrade
+	 * @see #upgradeCopyToCurrent(File, File, int, UpgradeCopyCaller, UpgradeProgressListener)
 	 * @since 0.9.40
 	 */
 	public static void upgradeCopyToCurrent
 		(final File sourceDB, final File destTempFile, final int sourceSchemaVers, UpgradeCopyCaller caller)
 		throws ClassNotFoundException, DataFormatException, IllegalStateException, IOException, SQLException
+	{
+		upgradeCopyToCurrent(sourceDB, destTempFile, sourceSchemaVers, caller, null);
+	}
+
+	/**
+	 * Make a copy of this database file, then upgrade the copy to the current schema version
+	 * by calling {@link #upgradeToCurrent(RDBAdapter, int, boolean, UpgradeProgressListener)}.
+	 * Same parameters and exceptions as {@link #upgradeCopyToCurrent(File, File, int, UpgradeCopyCaller)},
+	 * with an optional progress listener.
+	 * @param listener  Listener for progress of each upgrade step, or null
+	 * @since 0.9.93
+	 */
+	public static void upgradeCopyToCurrent
+		(final File sourceDB, final File destTempFile, final int sourceSchemaVers, UpgradeCopyCaller caller,
+		 final UpgradeProgressListener listener)
+		throws ClassNotFoundException, DataFormatException, IllegalStateException, IOException, SQLException
 	{
 		FileUtils.copyFile(sourceDB, destTempFile);  // May throw IOException (disk space, etc)
 
@@ -190,7 +334,7 @@ public abstract class RDBSchema
 
 		// upgradeToCurrent
 		try {
-			upgradeToCurrent(bkupDB, sourceSchemaVers, false);  // may throw various exceptions
+			upgradeToCurrent(bkupDB, sourceSchemaVers, false, listener);  // may throw various exceptions
 		} finally {
 			bkupDB.close();
 		}
@@ -207,7 +351,8 @@ public abstract class RDBSchema
 	 * @param  oldVersion  The old schema version
 	 * @param  skipSetVersion  Are we running on android under SQLiteOpenHelper?  If so, skip the setVersion pragma.
 	 * @see RDBAdapter#getSQLScript(int)
-	 * @see #upgradeCopyToCurrent(File, File)
+	 * @see #upgradeCopyToCurrent(File, File, int, UpgradeCopyCaller)
+	 * @see #upgradeToCurrent(RDBAdapter, int, boolean, UpgradeProgressListener)
 	 * @throws IllegalStateException  if {@code oldVersion} is earlier than 901, too old to upgrade.
 	 *      Schema v0.9.01 was released on 2010-11-16, previous versions are very early pre-betas.
 	 *      This will also be thrown if {@code oldVersion} is newer than the current schema version.
@@ -217,66 +362,56 @@ public abstract class RDBSchema
 	public static void upgradeToCurrent(RDBAdapter db, final int oldVersion, final boolean skipSetVersion)
 		throws IllegalStateException, IOException, SQLException
 	{
-		// Use switch fallthrough to begin schema changes
-		// from a starting old version.
+		upgradeToCurrent(db, oldVersion, skipSetVersion, null);
+	}
+
+	/**
+	 * Perform all needed SQL scripts to upgrade the db schema from an
+	 * old version to the current version, reporting progress to a listener.
+	 *<P>
+	 * Each step is one version's upgrade script from {@link #UPGRADE_STEP_VERSIONS}, run in one
+	 * transaction which also sets the db's schema version to that step's version. Data-migration
+	 * statements in a script are committed together with the rest of its step, not one at a time.
+	 * If a step fails, that step is rolled back and the db is left at the previous step's
+	 * consistent schema version, so the upgrade can be retried from there.
+	 *<P>
+	 * On Android when called from {@code SQLiteOpenHelper.onUpgrade} ({@code skipSetVersion} true),
+	 * each step's transaction is nested within {@code onUpgrade}'s own transaction, so the steps
+	 * are only committed when the whole upgrade succeeds: If a step fails, the entire upgrade
+	 * is rolled back, the db stays at {@code oldVersion}, and the next open starts over from there.
+	 *
+	 * @param  db  an open database
+	 * @param  oldVersion  The old schema version
+	 * @param  skipSetVersion  Are we running on android under SQLiteOpenHelper?  If so, skip the setVersion pragma.
+	 * @param  listener  Listener for progress of each step, or null
+	 * @throws IllegalStateException  if {@code oldVersion} is earlier than 901, too old to upgrade,
+	 *      or is newer than the current schema version
+	 * @throws IOException  if a problem occurs locating or opening an upgrade script
+	 * @throws SQLException  if a syntax or database error occurs; the failed step is rolled back,
+	 *      or on Android within {@code onUpgrade}, the entire upgrade
+	 * @since 0.9.93
+	 */
+	public static void upgradeToCurrent
+		(RDBAdapter db, final int oldVersion, final boolean skipSetVersion, final UpgradeProgressListener listener)
+		throws IllegalStateException, IOException, SQLException
+	{
 		// Android will call db.setVersion for us.
 		// REMEMBER: Also update RDBOpenHelper.getSQLScript !
 
-		boolean anythingDone = false;
+		if (oldVersion == DATABASE_VERSION)
+			return;  // Nothing to do, current version already
 
-		switch (oldVersion)
+		int fromIdx = -1;
+		for (int i = 0; i < UPGRADE_STEP_VERSIONS.length; ++i)
+		{
+			if (UPGRADE_STEP_VERSIONS[i] == oldVersion)
+			{
+				fromIdx = i;
+				break;
+			}
+		}
+		if (fromIdx == -1)
 		{
-			/* 
-			 * obsolete versions, not encountered in the wild:
-			 * 
-		case 800:  // 800 -> 805
-			upgradeStep(db, 805);
-		case 805:  // 805 -> 806
-			upgradeStep(db, 806);
-		case 806:  // 806 -> 807
-			upgradeStep(db, 807);
-		case 807:  // 807 -> 809
-			upgradeStep(db, 809);
-		case 809:  // 809 -> 812
-			upgradeStep(db, 812);
-		case 812:  // 812 -> 813
-			upgradeStep(db, 813);
-		case 813:  // 813 -> 901
-			upgradeStep(db, 901);
-			*
-			*/
-
-		case 990:
-			// Nothing to do, current version already. Don't fall through, don't set anythingDone.
-			break;
-
-			/*
-			 * older versions that aren't obsolete:
-			 * (if minimum changes, please update method javadocs and DB_VERSION_MIN_UPGRADE)
-			 */
-
-		case 901:  // 901 -> 905   2010-11-30
-			upgradeStep(db, 905);
-		case 905:  // 905 -> 906   2010-12-16
-			upgradeStep(db, 906);
-		case 906:  // 906 -> 908   2012-04-01
-			upgradeStep(db, 908);
-		case 908:  // 908 -> 909   2012-12-06
-			upgradeStep(db, 909);
-		case 909:  // 909 -> 940   2014-02-15
-			upgradeStep(db, 940);
-		case 940:  // 0940 -> 0943   2015-05-26
-			upgradeStep(db, 943);
-		case 943:  // 0943 -> 0961   2017-02-02
-			upgradeStep(db, 961);
-		case 961:  // 0961 -> 0990   2019-09-29
-			upgradeStep(db, 990);
-
-		// after all cases, but NOT default case or already-current case
-			anythingDone = true;
-			break;
-
-		default:
 			// Too old; only very early pre-betas affected. v901 is from 2010-11-16.
 			// Too new would also be caught here.
 			final String tooOldMsg =
@@ -284,109 +419,119 @@ public abstract class RDBSchema
 			throw new IllegalStateException(tooOldMsg);  // <--- Throw: too old ---
 		}
 
-		if (! anythingDone)
-			return;
-
-		// Update the schema version number in both places within the db
-		String dbvers = Integer.toString(DATABASE_VERSION);
-		if (! skipSetVersion)
+		final int stepsTotal = UPGRADE_STEP_VERSIONS.length - 1 - fromIdx;
+		for (int step = 0; step < stepsTotal; ++step)
 		{
-			db.execStrucUpdate("PRAGMA user_version = " + dbvers + " ;");
+			final int toVers = UPGRADE_STEP_VERSIONS[fromIdx + 1 + step];
+			if (listener != null)
+				listener.upgradeProgress(step, stepsTotal, toVers);
+
+			upgradeStep(db, toVers, skipSetVersion, (step == stepsTotal - 1) ? oldVersion : 0);
 		}
-		if (dbvers.length() < 4)
-			dbvers = "0" + dbvers;
-		db.execStrucUpdate("UPDATE appinfo SET aivalue = '" + dbvers + "' WHERE aifield = 'DB_CURRENT_SCHEMAVERSION' ;");
-
-		// Upgrade history timestamp (table added in v0908)
-		final int now = (int) (System.currentTimeMillis() / 1000L); 
-		db.execStrucUpdate("INSERT into app_db_upgrade_hist(db_vers_to, db_vers_from, upg_time) VALUES("
-			+ DATABASE_VERSION + ", " + oldVersion + ", " + now + ");");
+
+		if (listener != null)
+			listener.upgradeProgress(stepsTotal, stepsTotal, DATABASE_VERSION);
 	}
 
-	private static void upgradeStep(RDBAdapter db, final int toVers)
+	/**
+	 * Run one step of {@link #upgradeToCurrent(RDBAdapter, int, boolean, UpgradeProgressListener)}
+	 * in a transaction: That version's upgrade script, then set the schema version number
+	 * in both places within the db. Transaction statements and pragmas in the script are ignored.
+	 * @param db  an open database
+	 * @param toVers  Version to upgrade to, from {@link #UPGRADE_STEP_VERSIONS}
+	 * @param skipSetVersion  If true, skip the {@code user_version} pragma
+	 * @param histFromVers  If not 0, this is the final step: Also add an {@code app_db_upgrade_hist} row
+	 *     for the upgrade from this version
+	 * @throws IOException  if a problem occurs locating or reading the upgrade script
+	 * @throws SQLException  if a syntax or database error occurs; the step's transaction is rolled back,
+	 *     along with any transaction it's nested in, such as Android's {@code onUpgrade}
+	 */
+	private static void upgradeStep
+		(RDBAdapter db, final int toVers, final boolean skipSetVersion, final int histFromVers)
 		throws IOException, SQLException
 	{
+		List<String> stmts = null;
 		InputStream sql = db.getSQLScript(toVers);
-		if (sql == null)
-			return;
-		execSQLbyLine(db, sql);
-		// sql.close(); is done in execSQLbyLine.
+		if (sql != null)
+		{
+			try
+			{
+				stmts = readSQLStatements(sql);
+			} finally {
+				try { sql.close(); } catch (IOException e) {}
+			}
+		}
+
+		db.beginTransaction();
+		boolean committed = false;
+		try
+		{
+			if (stmts != null)
+			{
+				for (final String stmt : stmts)
+				{
+					final String sqlower = stmt.toLowerCase(Locale.US);
+					if (sqlower.startsWith("pragma") || sqlower.startsWith("begin") || sqlower.startsWith("commit")
+					    || sqlower.startsWith("end") || sqlower.startsWith("rollback"))
+						continue;
+
+					db.execStrucUpdate(stmt);
+				}
+			}
+
+			// Update the schema version number in both places within the db
+			String dbvers = Integer.toString(toVers);
+			if (! skipSetVersion)
+			{
+				db.execStrucUpdate("PRAGMA user_version = " + dbvers + " ;");
+			}
+			if (dbvers.length() < 4)
+				dbvers = "0" + dbvers;
+			db.execStrucUpdate("UPDATE appinfo SET aivalue = '" + dbvers + "' WHERE aifield = 'DB_CURRENT_SCHEMAVERSION' ;");
+
+			if (histFromVers != 0)
+			{
+				// Upgrade history timestamp (table added in v0908)
+				final int now = (int) (System.currentTimeMillis() / 1000L);
+				db.execStrucUpdate("INSERT into app_db_upgrade_hist(db_vers_to, db_vers_from, upg_time) VALUES("
+					+ toVers + ", " + histFromVers + ", " + now + ");");
+			}
+
+			db.endTransaction(true);
+			committed = true;
+		} finally {
+			if (! committed)
+			{
+				try { db.endTransaction(false); }
+				catch (Exception e) {}  // don't hide the original exception
+			}
+		}
 	}
 
 	/**
-	 * Try to parse this CharSequence with {@link Integer#parseInt(String)}.
+	 * Try to parse this CharSequence as a fixed decimal.
 	 * If it doesn't work, return 0 instead of an error.
+	 * Calls {@link FixedDec#parseOr0(CharSequence, int)}.
 	 * @param cs charseq
 	 * @param deci number of digits after the decimal
 	 * @return the sequence as an integer; parse("5.2", 1) returns 52, parse("5.2", 2) returns 520.
 	 */
 	public static int parseFixedDecOr0(CharSequence cs, final int deci)
 	{
-		if (cs == null)
-			return 0;
-		int ret = 0;
-		try {
-			final String s = cs.toString();
-			int dot = s.indexOf('.');
-			if (dot == -1)
-				ret = Integer.parseInt(s);
-			else if (dot > 0)
-				ret = Integer.parseInt(cs.subSequence(0, dot).toString());
-			for (int i = deci ; i > 0; --i)
-				ret *= 10;  // likely quicker than float convs & Math.pow(10, deci)
-			if (dot != -1) 
-			{
-				int L = s.length();
-				if (dot < (L-1))
-				{
-					int dtotal = 0;
-					for (int i = 0; i < deci; ++i)
-					{
-						++dot;  // now it's char pos of a digit past dot
-						dtotal *= 10;
-						if (dot < L)
-						{
-							final char c = cs.charAt(dot);
-							if (! Character.isDigit(c))
-								return 0;  // <--- Early return: Not a digit ---
-							dtotal += Character.digit(c, 10);
-						}
-					}
-					ret += dtotal;
-				}
-			}
-		}
-		catch (NumberFormatException e) {
-			ret = 0;
-		}
-		return ret;
+		return FixedDec.parseOr0(cs, deci);
 	}
 
 	/**
 	 * Format a fixed decimal into a proper human-readable string.
+	 * Calls {@link FixedDec#format(long, int)}; to format many amounts,
+	 * {@link FixedDec#append(StringBuilder, long, int)} is quicker.
 	 * @param fixedDec  integer form, such as 12345, as parsed from {@link #parseFixedDecOr0(CharSequence, int)}
 	 * @param deci number of places to keep after the decimal
 	 * @return "1.2345" or "0.0123"
 	 */
 	public static String formatFixedDec(final int fixedDec, final int deci)
 	{
-		if (deci == 0)
-			return Integer.toString(fixedDec);
-		StringBuffer sb = new StringBuffer(Integer.toString(fixedDec));
-		int L = sb.length();
-		if (L > deci) {
-			sb.insert(L - deci, '.');  // 12345 -> 1.2345
-		} else {
-			// value must be less than 1.0,
-			// because it fits within deci places
-			while (L < deci)
-			{
-				sb.insert(0, '0');  // 12 -> 0012
-				++L;
-			}
-			sb.insert(0, "0.");  // 123 -> 0.123
-		}
-		return sb.toString();
+		return FixedDec.format(fixedDec, deci);
 	}
 
 	/**
@@ -496,10 +641,32 @@ public abstract class RDBSchema
 	 *          then {@link SettingsCheckResult#currTS} is probably not retrieved and null.
 	 *
 	 * @throws IllegalArgumentException  if <tt>level</tt> is out of range 
+	 * @see #checkSettings(RDBAdapter, int, PhaseTimer)
 	 */
 	public static SettingsCheckResult checkSettings
 		(RDBAdapter db, final int level)
 		throws IllegalArgumentException 
+	{
+		return checkSettings(db, level, null);
+	}
+
+	/**
+	 * Consistency-check, and possibly retrieve, the current settings from the database,
+	 * optionally timing each phase for a startup trace.
+	 * Reads all {@link Settings} rows, and all of the current vehicle's {@link VehSettings} rows,
+	 * with one query each; each setting's record (area, driver, etc) is then read by its ID.
+	 * See {@link #checkSettings(RDBAdapter, int)} for details.
+	 *
+	 * @param db  An open database
+	 * @param level  How many settings to request
+	 * @param timer  Timer to mark each phase's time, or null
+	 * @return the overall result, any logging messages, and the current settings if requested
+	 * @throws IllegalArgumentException  if <tt>level</tt> is out of range
+	 * @since 0.9.93
+	 */
+	public static SettingsCheckResult checkSettings
+		(RDBAdapter db, final int level, final PhaseTimer timer)
+		throws IllegalArgumentException
 	{
 		if ((level < SettingsCheckLevel.SETT_GEOAREA) || (level > SettingsCheckLevel.SETT_MAX))
 			throw new IllegalArgumentException("level out of range: " + level);
@@ -511,7 +678,10 @@ public abstract class RDBSchema
 		boolean fixedGuessed = false;   // to recover, did we have to guess? Ignored if ! fixedSettings. Check guessedArea too.
 		boolean guessedArea = false;    // did we guess from multiple GeoAreas?  Ignored if ! fixedSettings.
 
+		Settings.preload(db);
 		rv.currV = Settings.getCurrentVehicle(db, true);
+		if (timer != null)
+			timer.mark("currV");
 		if (rv.currV == null)
 		{
 			// Most other settings are per-vehicle: Try to recover it
@@ -548,6 +718,10 @@ public abstract class RDBSchema
 			VehSettings.changeCurrentVehicle(db, null, rv.currV);  // calls Settings.setCurrentVehicle
 		}
 
+		VehSettings.preload(db, rv.currV);
+		if (timer != null)
+			timer.mark("vehSettings");
+
 		// Check the area before other settings, because if it doesn't exist,
 		// it might get created with default values and we'll be called again soon.
 
@@ -573,6 +747,8 @@ public abstract class RDBSchema
 
 			VehSettings.setCurrentArea(db, rv.currV, rv.currA);
 		}
+		if (timer != null)
+			timer.mark("currA");
 
 		// Check currT for recovering other settings, even if level < SETT_TRIP.
 		// Does current trip have a different geoarea than currA?
@@ -592,6 +768,9 @@ public abstract class RDBSchema
 			}
 		}
 
+		if (timer != null)
+			timer.mark("currT");
+
 		rv.currD = VehSettings.getCurrentDriver(db, rv.currV, false);
 		if (rv.currD == null)
 		{
@@ -641,6 +820,8 @@ public abstract class RDBSchema
 			rv.currD.commit();
 			msgv.addElement("recov: Set isDriver flag for CURRENT_DRIVER");
 		}
+		if (timer != null)
+			timer.mark("currD");
 
     		// TODO if no trip, check for a current tstop to get trip id
 
@@ -648,6 +829,8 @@ public abstract class RDBSchema
     		{
     			rv.currTS = VehSettings.getCurrentTStop(db, rv.currV, true);
     				// might be null; reported in switch below
+    			if (timer != null)
+    				timer.mark("currTS");
     		}
 
     		/**
@@ -736,4 +919,24 @@ public abstract class RDBSchema
 			throws ClassNotFoundException, SQLException;
 	}
 
+	/**
+	 * Callback interface for progress of
+	 * {@link RDBSchema#upgradeToCurrent(RDBAdapter, int, boolean, UpgradeProgressListener) upgradeToCurrent},
+	 * to show or log progress of a long upgrade.
+	 * Called in the upgrading thread, which may not be the UI thread.
+	 * @author jdmonin
+	 * @since 0.9.93
+	 */
+	public interface UpgradeProgressListener
+	{
+		/**
+		 * Called before each upgrade step, and once more after the last step completes.
+		 * @param stepsDone  Number of steps completed so far
+		 * @param stepsTotal  Total number of steps in this upgrade
+		 * @param toVersion  Schema version of the step about to start, or {@link RDBSchema#DATABASE_VERSION}
+		 *     when {@code stepsDone == stepsTotal}
+		 */
+		public void upgradeProgress(final int stepsDone, final int stepsTotal, final int toVersion);
+	}
+
 }
@@ -0,0 +1,440 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db;
+
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+/**
+ * In-memory weighted graph of the distances driven between {@link Location}s, to predict
+ * the trip odometer when arriving at a stop: See {@link #estimate(int, int)}.
+ *<P>
+ * Each directed edge holds the sorted distance samples between two locations:
+ * The trip-odometer difference of each pair of consecutive {@link TStop}s in the logbook
+ * (or a trip's starting location and its first stop), or if there are none,
+ * the {@link ViaRoute#getOdoDist()} of the routes between them.
+ * Locations without a direct edge are estimated along the shortest path of edge medians.
+ * Distances are in the same fixed-point units as the trip odometer (1 decimal place).
+ *<P>
+ * Like {@link LocationTripIndex}, the graph is built from the db the first time {@link #get(RDBAdapter)}
+ * is called for that db, and only one db's graph is kept at a time.
+ * New stops are added incrementally by {@link TStop#insert(RDBAdapter)} and new routes by
+ * {@link ViaRoute#insert(RDBAdapter)}; other changes to their locations or odometers discard
+ * the graph, to be rebuilt when next needed.
+ * All methods are thread-safe.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RouteGraph
+{
+	/**
+	 * Maximum number of locations to visit when searching for a path between two locations
+	 * which have no direct edge; if exceeded, {@link #estimate(int, int)} gives up.
+	 */
+	public static final int MAX_PATH_SEARCH = 2000;
+
+	/** Lock for {@link #cached} and {@link #cachedDB}, and for the contents of {@link #cached} */
+	private static final Object lock = new Object();
+
+	/** Graph for {@link #cachedDB}, or null */
+	private static RouteGraph cached;
+
+	/** DB from which {@link #cached} was built, or null */
+	private static RDBAdapter cachedDB;
+
+	/** Edge key from {@link #edgeKey(int, int)} -&gt; sorted distances from consecutive TStops */
+	private final HashMap<Long, LocationTripIndex.IntList> stopSamples = new HashMap<Long, LocationTripIndex.IntList>();
+
+	/** Edge key from {@link #edgeKey(int, int)} -&gt; sorted nonzero {@link ViaRoute} distances */
+	private final HashMap<Long, LocationTripIndex.IntList> viaSamples = new HashMap<Long, LocationTripIndex.IntList>();
+
+	/** From-location ID -&gt; sorted unique to-location IDs having samples */
+	private final HashMap<Integer, LocationTripIndex.IntList> adjacent = new HashMap<Integer, LocationTripIndex.IntList>();
+
+	/**
+	 * Expected distance between two locations, from {@link RouteGraph#estimate(int, int)}.
+	 */
+	public static final class Estimate
+	{
+		/** Median distance */
+		public final int distance;
+
+		/** Low end of the usual range: 25th percentile, or sum of them along a path */
+		public final int low;
+
+		/** High end of the usual range: 75th percentile, or sum of them along a path */
+		public final int high;
+
+		/** Number of samples of the direct edge, or fewest samples of any edge along the path */
+		public final int samples;
+
+		/** Number of edges: 1 if direct, more if estimated along a path through other locations */
+		public final int hops;
+
+		Estimate(final int distance, final int low, final int high, final int samples, final int hops)
+		{
+			this.distance = distance;
+			this.low = low;
+			this.high = high;
+			this.samples = samples;
+			this.hops = hops;
+		}
+
+		/** For debugging, such as {@code "distance=123 (110-130), samples=4, hops=1"} */
+		public String toString()
+		{
+			return "distance=" + distance + " (" + low + "-" + high + "), samples=" + samples + ", hops=" + hops;
+		}
+	}
+
+	/**
+	 * Get the graph for this db, building it if needed.
+	 * @param db  db connection
+	 * @return  the graph for {@code db}; not null
+	 * @throws IllegalStateException if db not open
+	 */
+	public static RouteGraph get(RDBAdapter db)
+		throws IllegalStateException
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				return cached;
+
+			cached = null;
+			cachedDB = null;
+			RouteGraph g = new RouteGraph(db);
+			cached = g;
+			cachedDB = db;
+
+			return g;
+		}
+	}
+
+	/**
+	 * Discard the cached graph, if any; it will be rebuilt at the next call to {@link #get(RDBAdapter)}.
+	 * Call this after changing stop locations or odometers other than through {@link TStop},
+	 * or when a db file is replaced by restoring a backup.
+	 */
+	public static void invalidate()
+	{
+		synchronized (lock)
+		{
+			cached = null;
+			cachedDB = null;
+		}
+	}
+
+	/**
+	 * Discard the graph if it's cached for this db.
+	 * Called by {@link TStop} and {@link ViaRoute} for changes which can't be applied incrementally.
+	 * @param db  db connection being changed
+	 */
+	static void changed(RDBAdapter db)
+	{
+		synchronized (lock)
+		{
+			if ((cached != null) && db.hasSameOwner(cachedDB))
+				invalidate();
+		}
+	}
+
+	/**
+	 * Update the graph, if cached for this db, for a newly inserted {@link TStop}:
+	 * Adds the distance from the trip's previous stop, or from its starting location.
+	 * Called from {@link TStop#insert(RDBAdapter)}.
+	 * @param db  db connection being changed
+	 * @param tripID  The stop's trip ID
+	 * @param stopID  The new stop's ID
+	 * @param locID  The stop's location ID, or 0 if none
+	 * @param odoTrip  The stop's trip odometer, or 0 if none
+	 */
+	static void addStop(RDBAdapter db, final int tripID, final int stopID, final int locID, final int odoTrip)
+	{
+		if ((locID == 0) || (odoTrip == 0))
+			return;
+
+		synchronized (lock)
+		{
+			if ((cached == null) || ! db.hasSameOwner(cachedDB))
+				return;
+
+			int prevLoc = 0, prevOdo = 0;
+			final String[] whereArgs = { Integer.toString(tripID), Integer.toString(stopID) };
+			final Vector<String[]> prev = db.getRows
+				(TStop.TABNAME, "tripid=? and _id<?", whereArgs, new String[]{ "locid", "odo_trip" }, "_id DESC", 1);
+			if (prev != null)
+			{
+				final String[] p = prev.firstElement();
+				if ((p[0] == null) || (p[1] == null))
+					return;  // previous stop's location or odometer unknown
+				prevLoc = Integer.parseInt(p[0]);
+				prevOdo = Integer.parseInt(p[1]);
+			} else {
+				prevLoc = db.getRowIntField(Trip.TABNAME, tripID, "locid_start", 0);
+			}
+
+			cached.addSample(cached.stopSamples, prevLoc, locID, odoTrip - prevOdo);
+		}
+	}
+
+	/**
+	 * Update the graph, if cached for this db, for a newly inserted {@link ViaRoute}.
+	 * Called from {@link ViaRoute#insert(RDBAdapter)}.
+	 * @param db  db connection being changed
+	 * @param fromLocID  Starting location ID
+	 * @param toLocID  Ending location ID
+	 * @param odoDist  The route's distance, or 0 if unknown
+	 */
+	static void addVia(RDBAdapter db, final int fromLocID, final int toLocID, final int odoDist)
+	{
+		synchronized (lock)
+		{
+			if ((cached == null) || ! db.hasSameOwner(cachedDB))
+				return;
+
+			cached.addSample(cached.viaSamples, fromLocID, toLocID, odoDist);
+		}
+	}
+
+	/** Key into the sample maps for a directed edge */
+	private static long edgeKey(final int fromLocID, final int toLocID)
+	{
+		return (((long) fromLocID) << 32) | (toLocID & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Build the graph by reading all stops, trip starting locations, and via routes from the db.
+	 * @param db  db connection
+	 * @throws IllegalStateException if db not open
+	 */
+	private RouteGraph(RDBAdapter db)
+		throws IllegalStateException
+	{
+		// Trip starting locations, for each trip's first stop
+		HashMap<Integer, Integer> tripStartLoc = new HashMap<Integer, Integer>();
+		Vector<String[]> rows = db.getRows
+			(Trip.TABNAME, "locid_start is not null", (String[]) null, new String[]{ "_id", "locid_start" }, null, 0);
+		if (rows != null)
+			for (final String[] r : rows)
+				tripStartLoc.put(Integer.valueOf(r[0]), Integer.valueOf(r[1]));
+
+		// Consecutive stops within each trip
+		rows = db.getRows
+			(TStop.TABNAME, "tripid is not null", (String[]) null,
+			 new String[]{ "tripid", "locid", "odo_trip" }, "tripid, _id", 0);
+		if (rows != null)
+		{
+			int prevTrip = 0, prevLoc = 0, prevOdo = 0;
+			for (final String[] r : rows)
+			{
+				final int tripID = Integer.parseInt(r[0]);
+				if (tripID != prevTrip)
+				{
+					prevTrip = tripID;
+					final Integer startLoc = tripStartLoc.get(Integer.valueOf(tripID));
+					prevLoc = (startLoc != null) ? startLoc.intValue() : 0;
+					prevOdo = 0;
+				}
+
+				final int locID = (r[1] != null) ? Integer.parseInt(r[1]) : 0;
+				final boolean hasOdo = (r[2] != null);
+				final int odo = hasOdo ? Integer.parseInt(r[2]) : 0;
+				if (hasOdo && (odo > 0))
+					addSample(stopSamples, prevLoc, locID, odo - prevOdo);
+
+				// if this stop's location or odometer is unknown, the next stop can't use it
+				prevLoc = hasOdo ? locID : 0;
+				prevOdo = odo;
+			}
+		}
+
+		rows = db.getRows
+			("via_route", "odo_dist is not null", (String[]) null,
+			 new String[]{ "locid_from", "locid_to", "odo_dist" }, null, 0);
+		if (rows != null)
+			for (final String[] r : rows)
+				addSample(viaSamples, Integer.parseInt(r[0]), Integer.parseInt(r[1]), Integer.parseInt(r[2]));
+	}
+
+	/**
+	 * Add a distance sample to an edge, unless a location is 0 or the distance isn't positive.
+	 * Caller must synchronize if needed.
+	 * @param samples  {@link #stopSamples} or {@link #viaSamples}
+	 */
+	private void addSample
+		(HashMap<Long, LocationTripIndex.IntList> samples, final int fromLocID, final int toLocID, final int dist)
+	{
+		if ((fromLocID <= 0) || (toLocID <= 0) || (fromLocID == toLocID) || (dist <= 0))
+			return;
+
+		final Long key = Long.valueOf(edgeKey(fromLocID, toLocID));
+		LocationTripIndex.IntList li = samples.get(key);
+		if (li == null)
+		{
+			li = new LocationTripIndex.IntList();
+			samples.put(key, li);
+		}
+		li.insertSorted(dist);
+
+		final Integer from = Integer.valueOf(fromLocID);
+		LocationTripIndex.IntList adj = adjacent.get(from);
+		if (adj == null)
+		{
+			adj = new LocationTripIndex.IntList();
+			adjacent.put(from, adj);
+		}
+		if (adj.indexAfter(toLocID - 1) == adj.indexAfter(toLocID))
+			adj.insertSorted(toLocID);  // not already there
+	}
+
+	/**
+	 * Get an edge's samples: From stops if any, otherwise from via routes.
+	 * Caller must synchronize on {@link #lock}.
+	 * @return  Sorted samples, or null if none
+	 */
+	private LocationTripIndex.IntList getSamples(final int fromLocID, final int toLocID)
+	{
+		final Long key = Long.valueOf(edgeKey(fromLocID, toLocID));
+		LocationTripIndex.IntList li = stopSamples.get(key);
+		if (li == null)
+			li = viaSamples.get(key);
+
+		return li;
+	}
+
+	/** Value at this fraction (0.0 to 1.0) of a sorted non-empty list: 0.5 for median */
+	private static int percentile(final LocationTripIndex.IntList li, final double frac)
+	{
+		final double pos = frac * (li.size - 1);
+		final int lo = (int) Math.floor(pos), hi = (int) Math.ceil(pos);
+
+		return (int) Math.round(li.data[lo] + (li.data[hi] - li.data[lo]) * (pos - lo));
+	}
+
+	/**
+	 * Estimate the distance from one location to another.
+	 * Uses the direct edge's samples if any, otherwise the shortest path
+	 * of edge medians through other locations.
+	 * @param fromLocID  Starting location ID
+	 * @param toLocID  Ending location ID
+	 * @return  The estimate, or null if no path is known
+	 */
+	public Estimate estimate(final int fromLocID, final int toLocID)
+	{
+		if ((fromLocID <= 0) || (toLocID <= 0) || (fromLocID == toLocID))
+			return null;
+
+		synchronized (lock)
+		{
+			final LocationTripIndex.IntList li = getSamples(fromLocID, toLocID);
+			if (li != null)
+				return new Estimate
+					(percentile(li, 0.5), percentile(li, 0.25), percentile(li, 0.75), li.size, 1);
+
+			return estimatePath(fromLocID, toLocID);
+		}
+	}
+
+	/**
+	 * Predict the trip odometer when arriving at a location.
+	 * @param fromLocID  Previous stop's location ID
+	 * @param toLocID  Next stop's location ID
+	 * @param odoAtFrom  Trip odometer at the previous stop
+	 * @return  {@code odoAtFrom} plus the {@link #estimate(int, int)} distance, or -1 if no estimate
+	 */
+	public int predictArrivalOdo(final int fromLocID, final int toLocID, final int odoAtFrom)
+	{
+		final Estimate est = estimate(fromLocID, toLocID);
+
+		return (est != null) ? (odoAtFrom + est.distance) : -1;
+	}
+
+	/**
+	 * Dijkstra's shortest path using each edge's median, visiting at most {@link #MAX_PATH_SEARCH} locations.
+	 * Caller must synchronize on {@link #lock}.
+	 * @return  Estimate along the path, or null if none found
+	 */
+	private Estimate estimatePath(final int fromLocID, final int toLocID)
+	{
+		// Queue entries: (distance << 32) | locID
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		HashMap<Integer, Integer> dist = new HashMap<Integer, Integer>();
+		HashMap<Integer, Integer> prevLoc = new HashMap<Integer, Integer>();
+
+		dist.put(Integer.valueOf(fromLocID), Integer.valueOf(0));
+		queue.add(Long.valueOf(fromLocID));
+		int visited = 0;
+		boolean found = false;
+		while (! queue.isEmpty())
+		{
+			final long q = queue.poll().longValue();
+			final int d = (int) (q >>> 32), loc = (int) q;
+			final Integer locKey = Integer.valueOf(loc);
+			if (d > dist.get(locKey).intValue())
+				continue;  // already reached by a shorter path
+			if (loc == toLocID)
+			{
+				found = true;
+				break;
+			}
+			if (++visited > MAX_PATH_SEARCH)
+				break;
+
+			final LocationTripIndex.IntList adj = adjacent.get(locKey);
+			if (adj == null)
+				continue;
+			for (int i = 0; i < adj.size; ++i)
+			{
+				final int next = adj.data[i];
+				final int nd = d + percentile(getSamples(loc, next), 0.5);
+				final Integer nextKey = Integer.valueOf(next);
+				final Integer prevD = dist.get(nextKey);
+				if ((prevD == null) || (nd < prevD.intValue()))
+				{
+					dist.put(nextKey, Integer.valueOf(nd));
+					prevLoc.put(nextKey, locKey);
+					queue.add(Long.valueOf((((long) nd) << 32) | next));
+				}
+			}
+		}
+
+		if (! found)
+			return null;
+
+		int low = 0, high = 0, samples = Integer.MAX_VALUE, hops = 0;
+		for (int loc = toLocID; loc != fromLocID; )
+		{
+			final int from = prevLoc.get(Integer.valueOf(loc)).intValue();
+			final LocationTripIndex.IntList li = getSamples(from, loc);
+			low += percentile(li, 0.25);
+			high += percentile(li, 0.75);
+			if (li.size < samples)
+				samples = li.size;
+			++hops;
+			loc = from;
+		}
+
+		return new Estimate(dist.get(Integer.valueOf(toLocID)).intValue(), low, high, samples, hops);
+	}
+
+}  // public class RouteGraph
@@ -114,6 +114,9 @@ public class TStop extends RDBRecord
 	/** Field array with only the GeoArea ID field: { {@code "a_id"} } */
 	private final static String[] FIELD_AREA_ID_ARR = { "a_id" };
 
+	/** Field array for reading IDs of changed rows to journal them: { {@code "_id"} } */
+	private final static String[] FIELD_ID_ARR = { "_id" };
+
 	/**
 	 * Field array with only the Comment and Flags fields: { {@code "comment", "flag_sides"} }
 	 * @since 0.9.60
@@ -238,6 +241,20 @@ public class TStop extends RDBRecord
 	/** Location ID.  0 is empty/unused. */
 	private int locid;
 
+	/**
+	 * {@link #locid} as last read from or written to the db, or 0,
+	 * for updating {@link LocationTripIndex} when committed or deleted.
+	 * @since 0.9.93
+	 */
+	private transient int locid_db;
+
+	/**
+	 * {@link #odo_trip} as last read from or written to the db, or 0,
+	 * for updating {@link RouteGraph} when committed.
+	 * @since 0.9.93
+	 */
+	private transient int odo_trip_db;
+
 	/** GeoArea ID.  0 is empty/unused.  See {@link #getAreaID()} javadoc. */
 	private int areaid;
 
@@ -532,6 +549,7 @@ public class TStop extends RDBRecord
 		if (time_cont != null)
 			this.time_continue = Integer.parseInt(time_cont);
 		this.locid = Integer.parseInt(locid);
+		locid_db = this.locid;
 	}
 
 	/**
@@ -574,6 +592,8 @@ public class TStop extends RDBRecord
 			time_continue = Integer.parseInt(rec[4]);
 		if (rec[5] != null)
 			locid = Integer.parseInt(rec[5]);
+		locid_db = locid;
+		odo_trip_db = odo_trip;
 		if (rec[6] != null)
 			areaid = Integer.parseInt(rec[6]);
 		geo_lat = rec[7];
@@ -699,10 +719,17 @@ public class TStop extends RDBRecord
 	public int insert(RDBAdapter db)
 		throws IllegalStateException
 	{
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		recalcIsCommentSetInDB();
 		dirty = false;
 		dbConn = db;
+		LocationTripIndex.update(db, tripid, 0, locid);
+		locid_db = locid;
+		RouteGraph.addStop(db, tripid, id, locid, odo_trip);
+		odo_trip_db = odo_trip;
+		CommentIndex.update(db, id, comment, true);
 
 		return id;
 	}
@@ -723,9 +750,19 @@ public class TStop extends RDBRecord
 		if (! dirty)
 			return;
 
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
+		final boolean wasCommentSet = isCommentSetInDB;
 		recalcIsCommentSetInDB();
 		dirty = false;
+		if (wasCommentSet || isCommentSetInDB)
+			CommentIndex.update(dbConn, id, comment, false);
+		if ((locid != locid_db) || (odo_trip != odo_trip_db))
+			RouteGraph.changed(dbConn);
+		LocationTripIndex.update(dbConn, tripid, locid_db, locid);
+		locid_db = locid;
+		odo_trip_db = odo_trip;
 	}
 
 	/**
@@ -910,6 +947,7 @@ public class TStop extends RDBRecord
 
 		String[] newTStart = { Integer.toString(sTime) };
 		dbConn.update(TABNAME, id, FIELD_TIME_CONTINUE_ARR, newTStart);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELD_TIME_CONTINUE_ARR, newTStart);
 	}
 
 	/**
@@ -1336,7 +1374,9 @@ public class TStop extends RDBRecord
 
 		String[] newVals = { comment, Integer.toString(flag_sides) };
 		dbConn.update(TABNAME, id, FIELD_COMMENT_AND_FLAGS_ARR, newVals);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELD_COMMENT_AND_FLAGS_ARR, newVals);
 		recalcIsCommentSetInDB();
+		CommentIndex.update(dbConn, id, comment, false);
 
 		return true;
 	}
@@ -1362,6 +1402,11 @@ public class TStop extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
+		LocationTripIndex.update(dbConn, tripid, locid_db, 0);
+		RouteGraph.changed(dbConn);
+		if (isCommentSetInDB)
+			CommentIndex.delete(dbConn, id);
 		deleteCleanup();
 	}
 
@@ -1382,22 +1427,29 @@ public class TStop extends RDBRecord
 		if (trip.dbConn == null)
 			throw new IllegalStateException("db null");
 
-		Vector<TStop> tsv = stopsForTrip(trip.dbConn, trip);  // may throw IllegalStateException
-			// TODO limit 2
-		if (tsv == null)
+		// Only the latest 2 stops are needed, not all of the trip's stops
+		final Vector<String[]> sv = trip.dbConn.getRows
+			(TABNAME, FIELD_TRIPID, Integer.toString(trip.getID()), FIELDS_AND_ID, "_id DESC", 2);
+			// may throw IllegalStateException
+		if (sv == null)
 		{
 			// no previous stops; use 0 for start of trip
 			return 0;
 		}
 
 		// Any previous stops at all?
-		TStop ts = tsv.lastElement();
-		if ((currTS != null) && (ts.id == currTS.id))
+		TStop ts;
+		try
 		{
-			final int sz = tsv.size();
-			if (sz < 2)
-				return 0;  // No previous stop; use 0 for start of trip
-			ts = tsv.elementAt(sz - 2);  // stop before currTS
+			ts = new TStop(trip.dbConn, sv.firstElement());
+			if ((currTS != null) && (ts.id == currTS.id))
+			{
+				if (sv.size() < 2)
+					return 0;  // No previous stop; use 0 for start of trip
+				ts = new TStop(trip.dbConn, sv.elementAt(1));  // stop before currTS
+			}
+		} catch (RDBKeyNotFoundException e) {
+			return -1;  // required by constructor, but won't happen: record came from db
 		}
 
 		// Does its loc match prevLoc? Is its trip-odometer known?
@@ -1445,7 +1497,12 @@ public class TStop extends RDBRecord
 
 		final String[] whereArgs = { Integer.toString(trip.getID()), Integer.toString(exceptTSID) };
 		final String[] fv = { Integer.toString(newAreaID) };
+		final Vector<String[]> changedIDs = trip.dbConn.getRows
+			(TABNAME, WHERE_TRIPID_AND_NOT_TSTOPID, whereArgs, FIELD_ID_ARR, null, 0);
 		trip.dbConn.update(TABNAME, WHERE_TRIPID_AND_NOT_TSTOPID, whereArgs, FIELD_AREA_ID_ARR, fv);
+		if (changedIDs != null)
+			for (final String[] rec : changedIDs)
+				ChangeJournal.updated(trip.dbConn, TABNAME, Integer.parseInt(rec[0]), FIELD_AREA_ID_ARR, fv);
 
 		if (cachedStops != null)
 		{
@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2010-2011,2017 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2010-2011,2017,2022 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -21,6 +21,8 @@ package org.shadowlands.roadtrip.db;
 
 import java.util.Vector;
 
+import org.shadowlands.roadtrip.util.FixedDec;
+
 /**
  * In-memory representation, and database access for,
  * a stop for gas during a Trip's {@link TStop}.
@@ -28,7 +30,8 @@ import java.util.Vector;
  * {@link TStop#FLAG_GAS} set.
  *<P>
  * Several fields here ({@link #quant}, etc) are fixed-point decimal but stored as integers;
- * use {@link #toStringBuilder(Vehicle)} for user-friendly formatting.
+ * use {@link #toStringBuilder(Vehicle)} for user-friendly formatting,
+ * or {@link FixedDec} to parse, format, or calculate with them.
  * {@link #quant}, {@link #price_per}, and {@link #price_total} fields' number of decimal digits
  * could in future be different per vehicle; different installations or
  * different vehicles in the same db could use different decimal places or units.
@@ -362,7 +365,9 @@ public class TStopGas extends RDBRecord
 			if (id < 1)
 				throw new IllegalStateException("tstop.id not set");
 		}
-		db.insert(TABNAME, FIELDS_AND_ID, buildInsertUpdate(true), true);
+		final String[] fv = buildInsertUpdate(true);
+		db.insert(TABNAME, FIELDS_AND_ID, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS_AND_ID, fv);
 		dirty = false;
 		dbConn = db;
 
@@ -382,7 +387,9 @@ public class TStopGas extends RDBRecord
 	public void commit()
 		throws IllegalStateException, NullPointerException
 	{
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate(false));
+		final String[] fv = buildInsertUpdate(false);
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -421,6 +428,7 @@ public class TStopGas extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
@@ -466,6 +474,9 @@ public class TStopGas extends RDBRecord
 	 * Calculate the efficiency and add to this stringbuilder, if data available
 	 * and calculated by {@link #recentGasForVehicle(RDBAdapter, Vehicle, int)}.
 	 * Format is "##.#" for mpg, or "##.##" for L/100km.
+	 * Calculated in fixed point with {@link FixedDec#divide(long, int, long, int, int)}, rounded half up;
+	 * before v0.9.93 this used floats and {@link String#format(String, Object...)},
+	 * whose decimal separator depends on the locale.
 	 *<P>
 	 * Before v0.9.61, this method was {@code efficToStringBuffer(..)}.
 	 *
@@ -486,17 +497,13 @@ public class TStopGas extends RDBRecord
 
 		if (sb == null)
 			sb = new StringBuilder();
-		float dist = effic_dist / 10f;  // Convert from 10ths
-		float quant = effic_quant * (float) Math.pow(10, -v.fuel_qty_deci);
-		float effic;
+		// effic_dist is in 10ths; effic_quant has fuel_qty_deci places
 		if (fmtPer100)
-		{
-			effic = (quant * 100f) / dist;
-			sb.append(String.format("%.2f", effic));
-		} else {
-			effic = dist / quant;
-			sb.append(String.format("%.1f", effic));
-		}
+			FixedDec.append
+				(sb, FixedDec.divide(effic_quant * 100L, v.fuel_qty_deci, effic_dist, 1, 2), 2);
+		else
+			FixedDec.append
+				(sb, FixedDec.divide(effic_dist, 1, effic_quant, v.fuel_qty_deci, 1), 1);
 
 		return sb;
 	}
@@ -510,18 +517,32 @@ public class TStopGas extends RDBRecord
 	 *
 	 * @param v  Vehicle taking the Trip containing this TStopGas;
 	 *     used for number of decimal places, currency symbol
+	 * @see #toStringBuilder(Vehicle, StringBuilder)
 	 * @see #efficToStringBuilder(boolean, StringBuilder, Vehicle)
 	 * @since 0.9.61
 	 */
 	public StringBuilder toStringBuilder(Vehicle v)
 	{
-		StringBuilder sb = new StringBuilder();
+		return toStringBuilder(v, new StringBuilder());
+	}
 
+	/**
+	 * Append this gas stop's details to a StringBuilder, in the same format as {@link #toStringBuilder(Vehicle)}.
+	 * Useful when formatting many gas stops with one reused StringBuilder.
+	 *
+	 * @param v  Vehicle taking the Trip containing this TStopGas;
+	 *     used for number of decimal places, currency symbol
+	 * @param sb  Append to this StringBuilder; not null
+	 * @return  {@code sb}
+	 * @since 0.9.93
+	 */
+	public StringBuilder toStringBuilder(Vehicle v, StringBuilder sb)
+	{
 		if (! fillup)
 			sb.append("partial: ");
-		sb.append(RDBSchema.formatFixedDec(quant, v.fuel_qty_deci));
+		FixedDec.append(sb, quant, v.fuel_qty_deci);
 		sb.append(" @ ");
-		sb.append(RDBSchema.formatFixedDec(price_per, v.fuel_curr_deci));
+		FixedDec.append(sb, price_per, v.fuel_curr_deci);
 		sb.append(" [");
 		v.formatCurrFixedDeci(sb, price_total, true);
 		sb.append(']');
@@ -164,6 +164,7 @@ public class TripCategory extends RDBRecord
 		String[] fv =
 			{ name, Integer.toString(rank) };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -185,6 +186,7 @@ public class TripCategory extends RDBRecord
 		String[] fv =
 			{ name, Integer.toString(rank) };
 		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -198,6 +200,7 @@ public class TripCategory extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
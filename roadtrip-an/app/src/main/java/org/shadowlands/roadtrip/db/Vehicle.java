@@ -1,7 +1,7 @@
 /*
  *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
  *
- *  This file Copyright (C) 2010-2015,2017,2019-2020,2025 Jeremy D Monin <jdmonin@nand.net>
+ *  This file Copyright (C) 2010-2015,2017,2019-2020,2022,2025 Jeremy D Monin <jdmonin@nand.net>
  *
  *  This program is free software: you can redistribute it and/or modify
  *  it under the terms of the GNU General Public License as published by
@@ -22,6 +22,8 @@ package org.shadowlands.roadtrip.db;
 import java.util.List;
 import java.util.Vector;
 
+import org.shadowlands.roadtrip.util.FixedDec;
+
 /**
  * In-memory representation, and database access for, a Vehicle.
  * To distinctly identify the vehicle at least one of the Year, Model, or Nickname fields
@@ -554,6 +556,7 @@ public class Vehicle extends RDBRecord
 		      comment, (is_active ? "1" : "0"), dte_a, plate
 		    };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 
@@ -586,6 +589,7 @@ public class Vehicle extends RDBRecord
 			comment, (is_active ? "1" : "0"), dte_a, plate
 		    };
 		dbConn.update(TABNAME, id, FIELDS_BASIC, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS_BASIC, fv);
 		dirty = false;
 	}
 
@@ -792,6 +796,7 @@ public class Vehicle extends RDBRecord
 
 		String[] odo_lastTrip = { Integer.toString(newValue10ths), Integer.toString(last_tripid) };
 		dbConn.update(TABNAME, id, FIELDS_ODO_LASTTRIP, odo_lastTrip);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS_ODO_LASTTRIP, odo_lastTrip);
 	}
 
 	public String getComment() {
@@ -831,7 +836,7 @@ public class Vehicle extends RDBRecord
 
 		if (withSymbol)
 			sb.append(expense_curr_sym);
-		sb.append(RDBSchema.formatFixedDec(deciAmt, expense_curr_deci));
+		FixedDec.append(sb, deciAmt, expense_curr_deci);
 
 		return sb;
 	}
@@ -892,6 +897,7 @@ public class Vehicle extends RDBRecord
 	{
 		VehSettings.deleteAll(dbConn, this);  // remove related records before Vehicle
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
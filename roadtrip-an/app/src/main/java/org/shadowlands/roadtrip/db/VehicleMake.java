@@ -118,6 +118,7 @@ public class VehicleMake extends RDBRecord
 	{
 		String[] fv = { name };
 		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
 		return id;
@@ -138,6 +139,7 @@ public class VehicleMake extends RDBRecord
 	{
 		String[] fv = { name };
 		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
 	}
 
@@ -154,6 +156,7 @@ public class VehicleMake extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
 		deleteCleanup();
 	}
 
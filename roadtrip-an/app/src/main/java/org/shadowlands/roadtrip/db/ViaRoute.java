@@ -282,9 +282,12 @@ public class ViaRoute extends RDBRecord
 	public int insert(RDBAdapter db)
 		throws IllegalStateException
 	{
-		id = db.insert(TABNAME, FIELDS, buildInsertUpdate(), true);
+		final String[] fv = buildInsertUpdate();
+		id = db.insert(TABNAME, FIELDS, fv, true);
+		ChangeJournal.inserted(db, TABNAME, id, FIELDS, fv);
 		dirty = false;
 		dbConn = db;
+		RouteGraph.addVia(db, locid_from, locid_to, odo_dist);
 		return id;
 	}
 
@@ -304,8 +307,11 @@ public class ViaRoute extends RDBRecord
 		if (! dirty)
 			return;
 
-		dbConn.update(TABNAME, id, FIELDS, buildInsertUpdate());
+		final String[] fv = buildInsertUpdate();
+		dbConn.update(TABNAME, id, FIELDS, fv);
+		ChangeJournal.updated(dbConn, TABNAME, id, FIELDS, fv);
 		dirty = false;
+		RouteGraph.changed(dbConn);
 	}
 
 	/**
@@ -399,6 +405,8 @@ public class ViaRoute extends RDBRecord
 		throws NullPointerException
 	{
 		dbConn.delete(TABNAME, id);
+		ChangeJournal.deleted(dbConn, TABNAME, id);
+		RouteGraph.changed(dbConn);
 		deleteCleanup();
 	}
 
@@ -0,0 +1,297 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.db.android;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.shadowlands.roadtrip.db.RDBAdapter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * The app's shared connection to its default db, and background threads to use it:
+ * One writer thread which runs each write task in its own transaction, one at a time in the order submitted,
+ * and a few reader threads for heavy queries such as {@link org.shadowlands.roadtrip.db.RDBVerifier RDBVerifier}.
+ *<P>
+ * The connection stays open for the life of the app process, instead of each activity opening and
+ * closing its own {@link RDBOpenHelper}: Activities get it from {@link #getDB(Context)}.
+ * Its {@link RDBAdapter#close()} has no effect, so activities can keep calling that when paused.
+ * The db uses sqlite's write-ahead log (WAL), so background readers don't block the UI thread's queries
+ * and the UI can keep reading while the writer thread has a transaction open.
+ *<P>
+ * Before copying the db file for backup or restore, call {@link #closeShared()};
+ * the next call to {@link #get(Context)} or {@link #getDB(Context)} will reopen it.
+ *<P>
+ * Tasks' results are returned through a {@link Future}, and optionally a {@link Callback}
+ * which is called on the UI thread.
+ *<P>
+ * Most activities still make their quick queries and updates from the UI thread through {@link #getDB(Context)}.
+ * The heavier work which uses the background threads so far:
+ *<UL>
+ * <LI> {@code TripTStopEntry} saves a stop, including its gas details, and ends the trip with {@link #submitWrite(Task, Callback)}
+ * <LI> {@code LogbookShow} validates the db's trip data with {@link #submitRead(Task, Callback)}
+ *</UL>
+ * Some model classes keep static caches which aren't thread-safe, such as {@link org.shadowlands.roadtrip.db.VehSettings}'s;
+ * while a write task changes them, the UI thread shouldn't be using the same records.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class RDBExecutor
+{
+	/** android log tag */
+	private static final String TAG = "Roadtrip.RDBExecutor";
+
+	/** Number of reader threads for {@link #submitRead(Task, Callback)} */
+	private static final int READER_THREADS = 2;
+
+	/** How long {@link #closeShared()} waits for queued tasks to finish, in seconds */
+	private static final int CLOSE_WAIT_SECONDS = 30;
+
+	/**
+	 * A task to run on the shared db from a background thread.
+	 * @param <T>  Type of result
+	 */
+	public interface Task<T>
+	{
+		/**
+		 * Run this task.
+		 * @param db  The shared db connection. Tasks which read from some other db, such as a backup file, can ignore it.
+		 * @return  The task's result, or null
+		 * @throws Exception  if an error occurs; for a write task, its transaction will be rolled back
+		 */
+		public T run(RDBAdapter db) throws Exception;
+	}
+
+	/**
+	 * Callback for a task's result, called on the UI thread.
+	 * @param <T>  Type of result
+	 */
+	public interface Callback<T>
+	{
+		/** The task finished and returned this result. */
+		public void onResult(T result);
+
+		/** The task threw this exception. */
+		public void onError(Exception e);
+	}
+
+	/** The shared instance, or null if not opened yet or after {@link #closeShared()} */
+	private static RDBExecutor shared;
+
+	/** The shared connection */
+	private final RDBOpenHelper db;
+
+	/** Single thread which runs write tasks in order */
+	private final ExecutorService writer;
+
+	/** Threads which run read tasks */
+	private final ExecutorService readers;
+
+	/** Posts callbacks to the UI thread */
+	private final Handler uiHandler;
+
+	/**
+	 * Get the shared executor and connection, opening the default db if needed.
+	 * The first call opens the db, which may create or upgrade its schema;
+	 * like the {@link RDBOpenHelper} constructor, call it from the UI thread.
+	 * @param ctx  Context, to open the default db
+	 * @return  The shared executor
+	 */
+	public static synchronized RDBExecutor get(Context ctx)
+	{
+		if (shared == null)
+		{
+			if (RDBOpenHelper.dbSQLRsrcs == null)
+				RDBOpenHelper.dbSQLRsrcs = ctx.getApplicationContext().getResources();
+			shared = new RDBExecutor(ctx.getApplicationContext());
+		}
+
+		return shared;
+	}
+
+	/**
+	 * Get the shared connection to the default db; convenience method for
+	 * {@link #get(Context) get(ctx)}.{@link #getDB()}.
+	 * @param ctx  Context, to open the default db
+	 * @return  The shared connection; calling its {@link RDBAdapter#close()} has no effect
+	 */
+	public static RDBAdapter getDB(Context ctx)
+	{
+		return get(ctx).getDB();
+	}
+
+	/**
+	 * Close the shared executor and connection, if open: Waits for tasks already submitted to finish,
+	 * then closes the db, which checkpoints its write-ahead log into the main db file.
+	 * Activities which still have a reference to the old connection can keep using it;
+	 * it will reopen on demand as a non-shared {@link RDBOpenHelper}.
+	 *<P>
+	 * Call before copying the db file for backup or restore.
+	 */
+	public static synchronized void closeShared()
+	{
+		if (shared == null)
+			return;
+
+		final RDBExecutor ex = shared;
+		shared = null;
+		ex.writer.shutdown();
+		ex.readers.shutdown();
+		try
+		{
+			if (! (ex.writer.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)
+			       && ex.readers.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)))
+				Log.w(TAG, "closeShared: tasks still running after " + CLOSE_WAIT_SECONDS + " seconds");
+		} catch (InterruptedException e) {}
+
+		ex.db.closeShared();
+	}
+
+	private RDBExecutor(Context appCtx)
+	{
+		db = new RDBOpenHelper(appCtx);
+		db.openShared();
+		writer = Executors.newSingleThreadExecutor(new NamedThreadFactory("RDBExecutor-writer"));
+		readers = Executors.newFixedThreadPool(READER_THREADS, new NamedThreadFactory("RDBExecutor-reader"));
+		uiHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * Get the shared connection to the default db.
+	 * It can be used directly from the UI thread for quick queries and updates.
+	 * @return  The shared connection; calling its {@link RDBAdapter#close()} has no effect
+	 */
+	public RDBAdapter getDB()
+	{
+		return db;
+	}
+
+	/**
+	 * Run a read-only task on a background reader thread.
+	 * Read tasks can run at the same time as each other, as a write task, and as UI-thread queries.
+	 * @param task  Task to run; must not change the db
+	 * @param cb  Callback for the result on the UI thread, or null
+	 * @return  The task's future result
+	 */
+	public <T> Future<T> submitRead(final Task<T> task, final Callback<T> cb)
+	{
+		return readers.submit(new Callable<T>()
+		{
+			public T call()
+				throws Exception
+			{
+				try
+				{
+					final T result = task.run(db);
+					postResult(cb, result, null);
+					return result;
+				} catch (Exception e) {
+					Log.e(TAG, "submitRead: " + e, e);
+					postResult(cb, null, e);
+					throw e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Run a task which changes the db on the writer thread, in its own transaction.
+	 * Write tasks run one at a time, in the order they're submitted.
+	 * If the task throws an exception, the transaction is rolled back.
+	 * @param task  Task to run
+	 * @param cb  Callback for the result on the UI thread after the transaction is committed, or null
+	 * @return  The task's future result
+	 */
+	public <T> Future<T> submitWrite(final Task<T> task, final Callback<T> cb)
+	{
+		return writer.submit(new Callable<T>()
+		{
+			public T call()
+				throws Exception
+			{
+				boolean committed = false;
+				try
+				{
+					db.beginTransaction();
+					final T result = task.run(db);
+					db.endTransaction(true);
+					committed = true;
+					postResult(cb, result, null);
+					return result;
+				} catch (Exception e) {
+					if (! committed)
+						try { db.endTransaction(false); }
+						catch (Exception ee) {}
+					Log.e(TAG, "submitWrite: " + e, e);
+					postResult(cb, null, e);
+					throw e;
+				}
+			}
+		});
+	}
+
+	/** If {@code cb} isn't null, call it on the UI thread with this result or exception. */
+	private <T> void postResult(final Callback<T> cb, final T result, final Exception e)
+	{
+		if (cb == null)
+			return;
+
+		uiHandler.post(new Runnable()
+		{
+			public void run()
+			{
+				if (e == null)
+					cb.onResult(result);
+				else
+					cb.onError(e);
+			}
+		});
+	}
+
+	/** Names the executors' threads, for debugging and logs */
+	private static class NamedThreadFactory implements ThreadFactory
+	{
+		private final String name;
+		private int n;
+
+		NamedThreadFactory(final String name)
+		{
+			this.name = name;
+		}
+
+		public synchronized Thread newThread(final Runnable r)
+		{
+			++n;
+			final Thread t = new Thread(r, name + '-' + n);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}  // public class RDBExecutor
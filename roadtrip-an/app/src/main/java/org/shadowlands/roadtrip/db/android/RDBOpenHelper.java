@@ -22,12 +22,15 @@ package org.shadowlands.roadtrip.db.android;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
 
 import org.shadowlands.roadtrip.R;
 import org.shadowlands.roadtrip.db.RDBAdapter;
 import org.shadowlands.roadtrip.db.RDBSchema;
+import org.shadowlands.roadtrip.db.RDBSlowQueryLog;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -38,6 +41,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
@@ -46,7 +50,7 @@ import android.util.Log;
  * Calling any insert/update/query method will call {@link #getWritableDatabase()}.
  * Be sure to call {@link #close()} when you are done.
  *<P>
- * The schema is stored in {@code res/raw/schema_v0961.sql}.
+ * The schema is stored in {@code res/raw/schema_v1000.sql}.
  * This location is hardcoded in {@link #getSQLScript(int)}.
  * If you update the schema, please update {@link #getSQLScript(int)}
  * and {@link RDBSchema#DATABASE_VERSION}; see the {@code DATABASE_VERSION} javadoc
@@ -56,6 +60,13 @@ import android.util.Log;
  * everything but backup/restore; see {@link #RDBOpenHelper(Context)}.  For backup/restore
  * with any other sqlite db file, {@link #onUpgrade(SQLiteDatabase, int, int)} won't be
  * automatically called; see {@link #RDBOpenHelper(Context, String)}.
+ *<P>
+ * If {@link RDBSlowQueryLog} is enabled, queries are timed and any slower than its threshold
+ * are logged along with their {@code EXPLAIN QUERY PLAN} output.
+ *<P>
+ * The default database uses sqlite's write-ahead log (WAL), so that queries from one thread
+ * aren't blocked by another thread's write transaction. Most activities use the app's shared
+ * connection from {@link RDBExecutor#getDB(android.content.Context)} instead of constructing their own.
  */
 public class RDBOpenHelper
 	implements RDBAdapter
@@ -95,6 +106,13 @@ public class RDBOpenHelper
 	 */
 	private final String owner;
 
+	/**
+	 * If true, this is {@link RDBExecutor}'s shared connection, and {@link #close()} has no effect.
+	 * Set by {@link #openShared()}, cleared by {@link #closeShared()}.
+	 * @since 0.9.93
+	 */
+	private volatile boolean isShared;
+
 	/**
 	 * Read the schema version from a closed db file (not the current db).
 	 * Uses generic SQLite open, not the RDBOpenHelper class, to avoid auto-upgrading the file being read.
@@ -210,7 +228,13 @@ public class RDBOpenHelper
 		db = dbWritable;
 		try
 		{
-			RDBSchema.upgradeToCurrent(this, oldVersion, true);
+			RDBSchema.upgradeToCurrent(this, oldVersion, true, new RDBSchema.UpgradeProgressListener()
+			{
+				public void upgradeProgress(final int stepsDone, final int stepsTotal, final int toVersion)
+				{
+					Log.i(TAG, "Database onUpgrade: " + stepsDone + " of " + stepsTotal + " steps done, next v" + toVersion);
+				}
+			});
 			Log.i(TAG, "Database onUpgrade success.");
 		} catch (Throwable e) {
 			// TODO some error flag field, on fail
@@ -270,6 +294,7 @@ public class RDBOpenHelper
 		if (db == null)
 			db = getWritableDatabase();  // TODO chk exceptions
 
+		final long t0 = System.nanoTime();
 		final String[] whereValue = new String[]{ Integer.toString(id) };
 		Cursor dbqc = db.query(tabname, fields, WHERE_ID, whereValue, null, null, null);
 		String[] rv;
@@ -284,6 +309,7 @@ public class RDBOpenHelper
 		}
 
 		dbqc.close();
+		logIfSlow(tabname, fields, WHERE_ID, whereValue, null, null, t0);
 		return rv;
 	}
 
@@ -300,6 +326,7 @@ public class RDBOpenHelper
 			tWhere = kf + "=?";
 		final String[] tWhereArg = new String[]{ kv };
 
+		final long t0 = System.nanoTime();
 		Cursor dbqc = db.query(tabname, fields, tWhere, tWhereArg, null, null, null /* ORDERBY */ );
 		String[] rv;
 
@@ -313,6 +340,7 @@ public class RDBOpenHelper
 		}
 
 		dbqc.close();
+		logIfSlow(tabname, fields, tWhere, tWhereArg, null, null, t0);
 		return rv;
 	}
 
@@ -353,6 +381,7 @@ public class RDBOpenHelper
 		if (db == null)
 			db = getWritableDatabase();  // TODO chk exceptions
 
+		final long t0 = System.nanoTime();
 		final String limitStr = (limit == 0) ? null : Integer.toString(limit);
 		Cursor dbqc = db.query(tabname, fieldnames, where, whereArgs, null, null, orderby, limitStr);
 		Vector<String[]> rv;
@@ -374,6 +403,7 @@ public class RDBOpenHelper
 		}
 
 		dbqc.close();
+		logIfSlow(tabname, fieldnames, where, whereArgs, orderby, limitStr, t0);
 		return rv;
 	}
 
@@ -399,7 +429,9 @@ public class RDBOpenHelper
 		if (db == null)
 			db = getWritableDatabase();  // TODO chk exceptions
 
-		Cursor dbqc = db.query(tabname, new String[]{ fn }, where, whereArgs, null, null, null /* ORDERBY */ );
+		final long t0 = System.nanoTime();
+		final String[] fields = { fn };
+		Cursor dbqc = db.query(tabname, fields, where, whereArgs, null, null, null /* ORDERBY */ );
 		String rv;
 
 		if (dbqc.moveToFirst() && ! dbqc.isNull(0))
@@ -411,6 +443,7 @@ public class RDBOpenHelper
 			rv = null;
 
 		dbqc.close();
+		logIfSlow(tabname, fields, where, whereArgs, null, null, t0);
 		return rv;
 	}
 
@@ -435,7 +468,9 @@ public class RDBOpenHelper
 		if (db == null)
 			db = getWritableDatabase();  // TODO chk exceptions
 
-		Cursor dbqc = db.query(tabname, new String[]{ fn }, where, whereArgs, null, null, null /* ORDERBY */ );
+		final long t0 = System.nanoTime();
+		final String[] fields = { fn };
+		Cursor dbqc = db.query(tabname, fields, where, whereArgs, null, null, null /* ORDERBY */ );
 		int rv;
 
 		if (dbqc.moveToFirst() && ! dbqc.isNull(0))
@@ -447,6 +482,7 @@ public class RDBOpenHelper
 			rv = def;
 
 		dbqc.close();
+		logIfSlow(tabname, fields, where, whereArgs, null, null, t0);
 		return rv;
 	}
 
@@ -464,7 +500,9 @@ public class RDBOpenHelper
 		if (db == null)
 			db = getWritableDatabase();  // TODO chk exceptions
 
-		Cursor dbqc = db.query(tabname, new String[]{ fn }, where, whereArgs, null, null, null /* ORDERBY */ );
+		final long t0 = System.nanoTime();
+		final String[] fields = { fn };
+		Cursor dbqc = db.query(tabname, fields, where, whereArgs, null, null, null /* ORDERBY */ );
 		long rv;
 
 		if (dbqc.moveToFirst() && ! dbqc.isNull(0))
@@ -476,6 +514,7 @@ public class RDBOpenHelper
 			rv = def;
 
 		dbqc.close();
+		logIfSlow(tabname, fields, where, whereArgs, null, null, t0);
 		return rv;
 	}
 
@@ -500,6 +539,7 @@ public class RDBOpenHelper
 			return (int) DatabaseUtils.queryNumEntries(db, tabname);  // might be optimized
 
 		// assert: kf != null.
+		final long t0 = System.nanoTime();
 		StringBuffer sb = new StringBuffer("SELECT COUNT(*) FROM ");
 		sb.append(tabname);
 		sb.append(" WHERE ");
@@ -508,9 +548,10 @@ public class RDBOpenHelper
 			sb.append(" IS NULL");
 		else
 			sb.append(" = ?");
+		final String sqlStr = sb.toString();
 		SQLiteStatement sql;
 		try {
-			sql = db.compileStatement(sb.toString());
+			sql = db.compileStatement(sqlStr);
 		} catch (android.database.SQLException e) {
 			throw new IllegalStateException(e);
 		}
@@ -521,8 +562,9 @@ public class RDBOpenHelper
 		} else {
 			sql.bindLong(1, iv);
 		}
+		final int rv;
 		try {
-			return (int) sql.simpleQueryForLong();  // SELECT COUNT(*) FROM ...
+			rv = (int) sql.simpleQueryForLong();  // SELECT COUNT(*) FROM ...
 		} catch (SQLiteDoneException e) {
 			throw new IllegalStateException(e);
 		} finally {
@@ -530,6 +572,19 @@ public class RDBOpenHelper
 				sql.close();
 			} catch (Exception e) {}
 		}
+
+		final long elapsed = System.nanoTime() - t0;
+		if (RDBSlowQueryLog.isSlow(elapsed))
+		{
+			final String[] args;
+			if (bindString)
+				args = (sv != null) ? new String[]{ sv } : null;
+			else
+				args = new String[]{ Integer.toString(iv) };
+			logSlowQuery(sqlStr, args, elapsed);
+		}
+
+		return rv;
 	}
 
 	public int insert(final String tabname, final String[] fn, final String[] fv, final boolean skipID)
@@ -682,14 +737,41 @@ public class RDBOpenHelper
 		return dbPath;
 	}
 
+	/**
+	 * Open the db now, as {@link RDBExecutor}'s shared connection which stays open until
+	 * {@link #closeShared()}: Until then, {@link #close()} has no effect.
+	 * @since 0.9.93
+	 */
+	void openShared()
+	{
+		db = getWritableDatabase();
+		isShared = true;
+	}
+
+	/**
+	 * Close {@link RDBExecutor}'s shared connection. Afterwards, this object can still be used
+	 * like any other {@code RDBOpenHelper}, reopening on demand, and {@link #close()} closes it.
+	 * @since 0.9.93
+	 */
+	void closeShared()
+	{
+		isShared = false;
+		close();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *<P>
 	 * If our SQLiteHelper is open, {@link SQLiteOpenHelper#close() close()}s it too.
 	 * If our underlying db is open, {@link SQLiteDatabase#close() close()}s it too.
+	 *<P>
+	 * Has no effect if this is {@link RDBExecutor}'s shared connection.
 	 */
 	public void close()
 	{
+		if (isShared)
+			return;
+
 		if (opener != null)
 			opener.close();
 
@@ -744,12 +826,12 @@ public class RDBOpenHelper
 			return null;  // TODO error msg for user?
 		}
 
-		// REMINDER: Please also update RDBSchema.upgradeToCurrent!
+		// REMINDER: Please also update RDBSchema.UPGRADE_STEP_VERSIONS!
 
 		int res = 0;
 		switch (upgScriptToVersion)
 		{
-		case   0: res = R.raw.schema_v0990;  break;  // create, not upgrade
+		case   0: res = R.raw.schema_v1000;  break;  // create, not upgrade
 
 		/* 
 		 * obsolete versions, not encountered in the wild:
@@ -771,6 +853,7 @@ public class RDBOpenHelper
 		case 943: res = R.raw.upg_v0943;  break;   // 2015-05-26
 		case 961: res = R.raw.upg_v0961;  break;   // 2017-02-02
 		case 990: res = R.raw.upg_v0990;  break;   // 2019-09-29
+		case 1000: res = R.raw.upg_v1000;  break;   // 2022-12-22
 		}
 
 		if (res == 0)
@@ -814,6 +897,40 @@ public class RDBOpenHelper
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *<P>
+	 * Uses {@link SQLiteDatabase#beginTransaction()}, which can be nested within a transaction
+	 * already begun by Android, such as during {@code onUpgrade()}.
+	 */
+	public void beginTransaction()
+		throws IllegalStateException, java.sql.SQLException
+	{
+		if (db == null)
+			db = getWritableDatabase();  // TODO chk exceptions
+		try
+		{
+			db.beginTransaction();
+		} catch (android.database.SQLException e) {
+			throw new java.sql.SQLException(e.getMessage());
+		}
+	}
+
+	public void endTransaction(final boolean commit)
+		throws IllegalStateException, java.sql.SQLException
+	{
+		if ((db == null) || ! db.inTransaction())
+			throw new java.sql.SQLException("no transaction active");
+		try
+		{
+			if (commit)
+				db.setTransactionSuccessful();
+			db.endTransaction();
+		} catch (android.database.SQLException e) {
+			throw new java.sql.SQLException(e.getMessage());
+		}
+	}
+
 	public String execPragmaIntegCheck()
 		throws IllegalStateException
 	{
@@ -850,10 +967,113 @@ public class RDBOpenHelper
 			return retval;
 	}
 
+	public int execPragmaInt(final String pragma)
+		throws IllegalStateException
+	{
+		if (db == null)
+			db = getWritableDatabase();  // TODO chk exceptions
+
+		int retval = -1;
+		Cursor dbqc = null;
+		try
+		{
+			dbqc = db.rawQuery("pragma " + pragma, null);
+			if (dbqc.moveToFirst())
+				retval = dbqc.getInt(0);
+		} catch (Exception e)  // SQLException has been thrown on devices, but isn't documented in API
+		{
+			throw new IllegalStateException("SQLException", e);
+		} finally {
+			try
+			{
+				if (dbqc != null)
+					dbqc.close();
+			} catch (Throwable ee) { }
+		}
+
+		return retval;
+	}
+
 	//
 	// misc
 	//
 
+	/**
+	 * If this query took at least as long as the {@link RDBSlowQueryLog} threshold,
+	 * log it there with its {@link #explainQueryPlan(String, String[])} output.
+	 * Does nothing if the log isn't enabled or the query was fast enough.
+	 * Parameters are the same as those given to {@link SQLiteDatabase#query(String, String[], String,
+	 * String[], String, String, String, String)}, to rebuild its SQL if needed.
+	 * @param t0  {@link System#nanoTime()} from just before the query was started
+	 * @since 0.9.93
+	 */
+	private void logIfSlow
+		(final String tabname, final String[] fields, final String where, final String[] whereArgs,
+		 final String orderby, final String limit, final long t0)
+	{
+		final long elapsed = System.nanoTime() - t0;
+		if (! RDBSlowQueryLog.isSlow(elapsed))
+			return;
+
+		final String sql = SQLiteQueryBuilder.buildQueryString
+			(false, tabname, fields, where, null, null, orderby, limit);
+		logSlowQuery(sql, whereArgs, elapsed);
+	}
+
+	/**
+	 * Log this slow query and its plan to {@link RDBSlowQueryLog} and to the android log.
+	 * @param sql  SQL of the query; may contain {@code ?} placeholders
+	 * @param args  Values bound to {@code sql}'s placeholders, or null
+	 * @param elapsed  Query duration from {@link System#nanoTime()}
+	 * @since 0.9.93
+	 */
+	private void logSlowQuery(final String sql, final String[] args, final long elapsed)
+	{
+		Log.w(TAG, "slow query (" + (elapsed / 1000000L) + " ms): " + sql);
+		RDBSlowQueryLog.record(sql, args, elapsed, explainQueryPlan(sql, args));
+	}
+
+	/**
+	 * Get sqlite's query plan for this query, from {@code EXPLAIN QUERY PLAN}.
+	 * The query itself isn't run.
+	 * @param sql  SQL of the query; may contain {@code ?} placeholders
+	 * @param args  Values to bind to {@code sql}'s placeholders, or null
+	 * @return The plan's detail lines, such as {@code "SCAN TABLE tstop"},
+	 *     or null if an error occurs
+	 * @see RDBSlowQueryLog
+	 * @since 0.9.93
+	 */
+	public List<String> explainQueryPlan(final String sql, final String[] args)
+	{
+		if (db == null)
+			db = getWritableDatabase();  // TODO chk exceptions
+
+		List<String> plan = new ArrayList<String>();
+		Cursor dbqc = null;
+		try
+		{
+			dbqc = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+			final int col = dbqc.getColumnIndex("detail");
+			if ((col != -1) && dbqc.moveToFirst())
+			{
+				do
+				{
+					plan.add(dbqc.getString(col));
+				} while (dbqc.moveToNext());
+			}
+		} catch (Exception e) {  // SQLException is runtime on android
+			plan = null;
+		} finally {
+			if (dbqc != null)
+			{
+				try { dbqc.close(); }
+				catch (Throwable th) {}
+			}
+		}
+
+		return plan;
+	}
+
 	/** for debugging, print this table's columns to Log, using pragma table_info. */
 	public void debugLogDescribeTableCols(final String tabname)
 	{
@@ -902,6 +1122,7 @@ public class RDBOpenHelper
 		public OpenHelper(Context context)
 		{
 			super(context, DATABASE_DEFAULT_DBNAME, null, RDBSchema.DATABASE_VERSION);
+			setWriteAheadLoggingEnabled(true);  // readers on other threads aren't blocked by writes; since 0.9.93
 		}
 
 		@Override
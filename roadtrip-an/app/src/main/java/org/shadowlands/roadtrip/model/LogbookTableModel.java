@@ -21,16 +21,20 @@ package org.shadowlands.roadtrip.model;
 
 import gnu.trove.TIntObjectHashMap;
 
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
 import org.shadowlands.roadtrip.db.GasBrandGrade;
 import org.shadowlands.roadtrip.db.Location;
 import org.shadowlands.roadtrip.db.RDBAdapter;
+import org.shadowlands.roadtrip.db.RDBArchive;
 import org.shadowlands.roadtrip.db.TStop;
 import org.shadowlands.roadtrip.db.TStopGas;
 import org.shadowlands.roadtrip.db.Trip;
@@ -56,6 +60,8 @@ import org.shadowlands.roadtrip.util.RTRDateTimeFormatter;
  *   Call {@link #getTripIncrement()} to get the increment.
  *   To highlight matching {@link TStop}s, see {@link TripListTimeRange#tMatchedRows} and related fields.
  * </UL>
+ * Week Mode can also show all of a vehicle's trips in Lazy Mode, which renders each range's text
+ * only when its rows are first shown: See {@link #LogbookTableModel(Vehicle, RTRDateTimeFormatter, RDBAdapter)}.
  *<P>
  * The data is loaded in "ranges" of several weeks or several trips,
  * depending on the mode: See {@link TripListTimeRange} for data details.
@@ -63,6 +69,8 @@ import org.shadowlands.roadtrip.util.RTRDateTimeFormatter;
  * by calling {@link #getRangeCount()} and {@link #getRange(int)}.
  * When first constructed, all data is loaded into a single range.
  * Load increments of earlier data by calling {@link #addEarlierTrips(RDBAdapter)}.
+ * If trips before a certain year have been moved to archive dbs, call {@link #setArchive(RDBArchive)}
+ * so that {@code addEarlierTrips} continues into those archives.
  *<P>
  * Assumes that data won't change elsewhere while displayed; for example,
  * cached ViaRoute object contents.
@@ -115,6 +123,28 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	 */
 	public static final String TXT_PASSENGERS = "Passengers";
 
+	/**
+	 * In Lazy Mode, the number of trips in each range.
+	 * @see #lazyRanges
+	 * @since 0.9.93
+	 */
+	private static final int LAZY_RANGE_TRIPS = 50;
+
+	/**
+	 * In Lazy Mode, the maximum number of ranges whose text is rendered at any time;
+	 * the least recently shown ranges beyond this are cleared until they're shown again.
+	 * @see #lazyRendered
+	 * @since 0.9.93
+	 */
+	private static final int LAZY_MAX_RENDERED = 24;
+
+	/**
+	 * In Lazy Mode, estimated text rows per trip for ranges not yet rendered,
+	 * until a range has been rendered to measure the actual average.
+	 * @since 0.9.93
+	 */
+	private static final int LAZY_EST_ROWS_PER_TRIP = 6;
+
 	private static final String[][] TEMPLATE_ADD_SIMPLE
 	   = { { null, null, "/", "Start-odo", null, null, "Start at" },
 		   { "Date", "Start-Time", },
@@ -278,12 +308,74 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	/** {@link #getValue_RangeText}'s low and high row numbers, or -1; Optimization for {@link #getValueAt(int, int)} */
 	private transient int getValue_RangeRow0, getValue_RangeRowN;
 
+	/**
+	 * Prefix sums of {@link #tData}'s text row counts: {@code tDataRowStart[i]} is the row number of
+	 * range {@code i}'s first text row, and {@code tDataRowStart[tData.size()]} == {@link #tDataTextRowCount}.
+	 * Ranges with null {@code tText} have the same start as the next range.
+	 * Null if ranges have been added or their row counts changed; rebuilt by {@link #findRangeForRow(int)}.
+	 * Optimization for random access in {@link #getValueAt(int, int)}.
+	 * @since 0.9.93
+	 */
+	private transient int[] tDataRowStart;
+
+	/**
+	 * In Lazy Mode, each {@link #tData} range's trip IDs and row count, at the same index as in {@code tData};
+	 * null if not Lazy Mode.
+	 * Ranges not currently rendered are placeholders in {@code tData} having {@code tr} and {@code tText} null;
+	 * see {@link LazyRange#placeholder}.
+	 * @see #lazyRendered
+	 * @see #isLazyMode()
+	 * @since 0.9.93
+	 */
+	private Vector<LazyRange> lazyRanges;
+
+	/**
+	 * In Lazy Mode, the ranges currently rendered, least recently shown first,
+	 * limited to {@link #LAZY_MAX_RENDERED} entries; null if not Lazy Mode.
+	 * Keys are from {@link #lazyRanges}, values are their rendered ranges in {@link #tData}.
+	 * @since 0.9.93
+	 */
+	private LinkedHashMap<LazyRange, TripListTimeRange> lazyRendered;
+
+	/**
+	 * In Lazy Mode, indexes within {@link #tData} of unrendered ranges whose rows were requested by
+	 * {@link #getValueAt(int, int)}, to be rendered by {@link #renderLazyPending()}; null if not Lazy Mode.
+	 * @see #lazyPendingLatest
+	 * @since 0.9.93
+	 */
+	private BitSet lazyPending;
+
+	/**
+	 * In Lazy Mode, index within {@link #tData} of the unrendered range most recently requested by
+	 * {@link #getValueAt(int, int)}, or -1. Used by {@link #renderLazyPending()} to skip pending ranges
+	 * which are far from the currently shown rows.
+	 * @since 0.9.93
+	 */
+	private int lazyPendingLatest = -1;
+
 	/**
 	 * Our date & time format, for {@link #addRowsFromTrips(TripListTimeRange, RDBAdapter)}.
 	 * May be null; lazily initialized in <tt>addRowsFromTrips</tt>.
 	 */
 	private transient RTRDateTimeFormatter dtf;
 
+	/**
+	 * Archive dbs of older trips, searched by {@link #addEarlierTrips(RDBAdapter)}
+	 * once the current db has no earlier trips, or null.
+	 * @see #setArchive(RDBArchive)
+	 * @see #archiveIdx
+	 * @since 0.9.93
+	 */
+	private RDBArchive archive;
+
+	/**
+	 * Index within {@link #archive}'s {@link RDBArchive#getArchiveYears()} of the archive
+	 * which {@link #addEarlierTrips(RDBAdapter)} is loading earlier trips from,
+	 * or -1 if still loading from the current db.
+	 * @since 0.9.93
+	 */
+	private int archiveIdx = -1;
+
 	/**
 	 * Common setup to all constructors (location mode, week mode).
 	 * Set veh, tData, locCache, etc.
@@ -337,6 +429,26 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		filterWeekModeStartDate = ltm.filterWeekModeStartDate;
 		addMode = ltm.addMode;
 		maxRowBeforeAdd = ltm.maxRowBeforeAdd;
+		archive = ltm.archive;
+		archiveIdx = ltm.archiveIdx;
+
+		if (ltm.lazyRanges != null)
+		{
+			// Copy the range definitions; will render as needed, starting with the newest.
+			// Row counts will be re-measured because rendering options may differ.
+			initLazyMode();
+			for (LazyRange lr : ltm.lazyRanges)
+			{
+				final LazyRange lrCopy = new LazyRange(lr);
+				lazyRanges.add(lrCopy);
+				tData.add(lrCopy.placeholder);
+				tDataTextRowCount += lrCopy.rowCount;
+			}
+			if (! tData.isEmpty())
+				renderLazyRange(tData.size() - 1, false);
+
+			return;
+		}
 
 		// format trip data text, update tDataTextRowCount
 		if (! ltm.tData.isEmpty())
@@ -464,6 +576,47 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		addRowsFromDBTrips(timeStart, weekIncr, true, towardsNewer, false, conn);
 	}
 
+	/**
+	 * Create in Week Mode showing all of the vehicle's trips, in Lazy Mode: Reads only the trip IDs and start times,
+	 * and divides them into ranges of several trips. Each range's trips are read and rendered as text
+	 * only when its rows are requested by {@link #getValueAt(int, int)} and then {@link #renderLazyPending()} is called,
+	 * so opening a vehicle with many years of trips takes about as long as opening a few weeks of them.
+	 * Only the {@link #LAZY_MAX_RENDERED} most recently shown ranges are kept rendered.
+	 *<P>
+	 * The vehicle's newest range is rendered in this constructor, to estimate the row counts of the other ranges.
+	 * When a range is rendered and its row count differs from the estimate, rows are inserted or deleted
+	 * at the end of the range; the {@link TableChangeListener} is told about those changes.
+	 *<P>
+	 * If {@link #setArchive(RDBArchive)} is called, {@link #addEarlierTrips(RDBAdapter)} adds
+	 * all of the next archive's trips, also in Lazy Mode. {@link #addLaterTrips(RDBAdapter)} always returns false.
+	 *
+	 * @param veh  Vehicle; never null
+	 * @param dtf  date-time format for {@link #addRowsFromTrips(TripListTimeRange, RDBAdapter)}, or null for default
+	 * @param conn Add existing rows from this connection; the LTM keeps using it when rendering ranges
+	 * @throws IllegalArgumentException if veh is null
+	 * @see #isLazyMode()
+	 * @since 0.9.93
+	 */
+	public LogbookTableModel(Vehicle veh, RTRDateTimeFormatter dtf, RDBAdapter conn)
+		throws IllegalArgumentException
+	{
+		initCommonConstruc(veh, dtf);  // set veh, tData, locCache, etc
+
+		filterLocID = 0;  // Week Mode
+		filterLoc_showAllV = false;  // this field not used in Week Mode
+		weekIncr = 0;
+		tripIncr = 0;
+		filterWeekModeStartDate = 0;
+		hasCurrT = (VehSettings.getCurrentTrip(conn, veh, false) != null);
+
+		initLazyMode();
+		if (addLazyRanges(conn) != 0)
+		{
+			setLazyNoneBeyond(0, false, true);
+			setLazyNoneBeyond(tData.size() - 1, true, true);
+		}
+	}
+
 	/**
 	 * Create in Location Mode, and populate with the most recent trip data.
 	 *<P>
@@ -520,10 +673,27 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		return hasCurrT;
 	}
 
+	/**
+	 * Set or clear the archive dbs of older trips, to be searched by {@link #addEarlierTrips(RDBAdapter)}
+	 * once the current db has no trips earlier than those in the model.
+	 * Trips from an archive are read from that archive's db connection.
+	 * This LTM doesn't close the archive; the caller should close it when done with the LTM.
+	 * @param arc  Archive for the db used to construct this LTM, or null
+	 * @since 0.9.93
+	 */
+	public void setArchive(RDBArchive arc)
+	{
+		archive = arc;
+		archiveIdx = -1;
+	}
+
 	/**
 	 * Load vehicle trips earlier than those currently in the model.
 	 * In Week Mode, looks back {@link #getWeekIncrement()} weeks.
 	 * In Location Mode, looks back {@link #getTripIncrement()} trips.
+	 * If none are found and {@link #setArchive(RDBArchive)} was called,
+	 * continues looking in the archive dbs, newest first.
+	 * In Lazy Mode, adds all of the next archive's trips, as unrendered ranges.
 	 *<P>
 	 * The added trips will be a new {@link TripListTimeRange}
 	 * inserted at the start of the range list; keep this
@@ -534,35 +704,133 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	 */
 	public boolean addEarlierTrips(RDBAdapter conn)
 	{
+		if (lazyRanges != null)
+			return addEarlierTripsLazy();
+
 		final boolean tDataIsEmpty = tData.isEmpty();
-		if (tDataIsEmpty && (filterWeekModeStartDate == 0))
+		if (tDataIsEmpty && (filterWeekModeStartDate == 0) && ((archive == null) || (filterLocID == 0)))
 			return false;  // No trips at all were previously found for this vehicle.
 
-		int nAdded;
+		// Continue from the current db, or from the archive already being read
+		final RDBAdapter fromConn =
+			(archiveIdx == -1) ? conn : archive.getArchive(archive.getArchiveYears()[archiveIdx]);
+
+		int nAdded = 0;
+		int loadToTime = 0;
 		if (filterLocID == 0)
 		{
 			// Week Mode
-			final int loadToTime;
 			if (tDataIsEmpty)
 				loadToTime = filterWeekModeStartDate;
 			else
 				loadToTime = tData.firstElement().timeStart;
-			nAdded = addRowsFromDBTrips(loadToTime, weekIncr, true, false, false, conn);
-		} else {
+			if (fromConn != null)
+				nAdded = addRowsFromDBTrips(loadToTime, weekIncr, true, false, false, fromConn);
+		} else if ((fromConn != null) && ! tDataIsEmpty) {
 			// Location Mode
 			final int laterTripID = tData.firstElement().tr.get(0).getID();
-			nAdded = addRowsFromDBTrips(laterTripID, false, tripIncr, conn);
+			nAdded = addRowsFromDBTrips(laterTripID, false, tripIncr, fromConn);
 		}
+		if ((nAdded == 0) && (archive != null))
+			nAdded = addEarlierTripsFromArchive(loadToTime);
+
 		if ((nAdded != 0) && (listener != null))
 			listener.fireTableRowsInserted(0, nAdded - 1);
 
 		return (nAdded != 0);
 	}
 
+	/**
+	 * For {@link #addEarlierTrips(RDBAdapter)}, load earlier trips from the next {@link #archive} db
+	 * after the current db or archive has none earlier. Archives are searched newest first
+	 * until trips are found; updates {@link #archiveIdx}.
+	 * @param loadToTime  For Week Mode, load trips earlier than this time,
+	 *     or earlier than the archive's year if that's sooner. Ignored in Location Mode.
+	 * @return Number of rows of text added to the table
+	 * @since 0.9.93
+	 */
+	private int addEarlierTripsFromArchive(final int loadToTime)
+	{
+		final int[] years = archive.getArchiveYears();
+		if (years == null)
+			return 0;
+
+		int nAdded = 0;
+		while ((nAdded == 0) && (archiveIdx + 1 < years.length))
+		{
+			++archiveIdx;
+			final int year = years[archiveIdx];
+			final RDBAdapter adb = archive.getArchive(year);
+			if (adb == null)
+				continue;  // can't open this one; try the next
+
+			final boolean wasEmpty = tData.isEmpty();
+			if (! wasEmpty)
+				tData.firstElement().noneEarlier = false;  // was set when previous db had none earlier
+
+			if (filterLocID == 0)
+			{
+				int toTime = RDBArchive.getYearStartTime(year + 1);
+				if ((loadToTime != 0) && (loadToTime < toTime))
+					toTime = loadToTime;
+				nAdded = addRowsFromDBTrips(toTime, weekIncr, true, false, false, adb);
+			} else {
+				// Archive's trips are all older than those already loaded, so start at its latest trip
+				nAdded = addRowsFromDBTrips(0, false, tripIncr, adb);
+				if ((nAdded != 0) && ! wasEmpty)
+					tData.firstElement().noneLater = false;  // was set because prevTripID == 0
+			}
+		}
+
+		return nAdded;
+	}
+
+	/**
+	 * For {@link #addEarlierTrips(RDBAdapter)} in Lazy Mode, add all trips from the next {@link #archive} db
+	 * which has any for this vehicle. Archives are searched newest first; updates {@link #archiveIdx}.
+	 * @return true if trips were added, false if none found or no archive
+	 * @since 0.9.93
+	 */
+	private boolean addEarlierTripsLazy()
+	{
+		if (archive == null)
+			return false;
+		final int[] years = archive.getArchiveYears();
+		if (years == null)
+			return false;
+
+		while (archiveIdx + 1 < years.length)
+		{
+			++archiveIdx;
+			final RDBAdapter adb = archive.getArchive(years[archiveIdx]);
+			if (adb == null)
+				continue;  // can't open this one; try the next
+
+			final int nPrevRanges = tData.size();
+			final int nAdded = addLazyRanges(adb);
+			if (tData.size() == nPrevRanges)
+				continue;  // no trips for this vehicle
+
+			final int nRanges = tData.size() - nPrevRanges;
+			if (nPrevRanges != 0)
+				setLazyNoneBeyond(nRanges, false, false);  // was set when previous db had none earlier
+			else
+				setLazyNoneBeyond(nRanges - 1, true, true);
+			setLazyNoneBeyond(0, false, true);
+			if ((nAdded != 0) && (listener != null))
+				listener.fireTableRowsInserted(0, nAdded - 1);
+
+			return true;
+		}
+
+		return false;
+	}
+
 	/**
 	 * Load vehicle trips later than those currently in the model.
 	 * In Week Mode, looks forward {@link #getWeekIncrement()} weeks.
 	 * In Location Mode, looks forward {@link #getTripIncrement()} trips.
+	 * In Lazy Mode, does nothing because all trips were loaded by the constructor.
 	 *<P>
 	 * The added trips will be a new {@link TripListTimeRange}
 	 * inserted at the end of the range list; keep this
@@ -577,8 +845,8 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	{
 		if (addMode)
 			throw new IllegalStateException();
-		if (tData.isEmpty())
-			return false;  // No trips at all were previously found for this vehicle.
+		if (tData.isEmpty() || (lazyRanges != null))
+			return false;  // No trips at all were previously found for this vehicle, or Lazy Mode has them all.
 
 		int nAdded;
 		if (filterLocID == 0)
@@ -727,10 +995,227 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		addRowsFromTrips(ttr, conn);
 	}
 
+	/**
+	 * Set up the fields used in Lazy Mode; called from constructors.
+	 * @since 0.9.93
+	 */
+	private void initLazyMode()
+	{
+		lazyRanges = new Vector<LazyRange>();
+		lazyPending = new BitSet();
+		lazyRendered = new LinkedHashMap<LazyRange, TripListTimeRange>(LAZY_MAX_RENDERED + 1, 0.75f, true)
+		{
+			private static final long serialVersionUID = 993L;
+
+			protected boolean removeEldestEntry(Map.Entry<LazyRange, TripListTimeRange> eldest)
+			{
+				if (size() <= LAZY_MAX_RENDERED)
+					return false;
+
+				// Clear the least recently shown range's text; its row count stays the same
+				final LazyRange lr = eldest.getKey();
+				final int i = tData.indexOf(eldest.getValue());
+				if (i != -1)
+					tData.set(i, lr.placeholder);
+				getValue_RangeRow0 = -1;  // in case it was the most recently used range
+				getValue_RangeRowN = -1;
+
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * For Lazy Mode, add all of this vehicle's trips from a db as unrendered ranges
+	 * of {@link #LAZY_RANGE_TRIPS} trips, inserted at the start of {@link #tData}.
+	 * Renders the newest added range, then estimates the row counts of the others from
+	 * the average rows per trip of all ranges rendered so far.
+	 *<P>
+	 * If not called from the constructor, you must call
+	 * {@link TableChangeListener#fireTableRowsInserted(int, int)} after calling this method.
+	 * @param conn  Add trips from this db connection, the current db or an archive
+	 * @return Number of rows added to the table, including estimated rows
+	 * @since 0.9.93
+	 */
+	private int addLazyRanges(RDBAdapter conn)
+	{
+		final int[][] idTimes = Trip.tripIDsAndTimesForVehicle(conn, veh);
+		if (idTimes == null)
+			return 0;  // <--- nothing found ---
+
+		final int[] ids = idTimes[0], times = idTimes[1];
+		final int L = ids.length;
+		final int nRanges = (L + LAZY_RANGE_TRIPS - 1) / LAZY_RANGE_TRIPS;
+		for (int ri = 0; ri < nRanges; ++ri)
+		{
+			final int i0 = ri * LAZY_RANGE_TRIPS, i1 = Math.min(i0 + LAZY_RANGE_TRIPS, L) - 1;
+			final LazyRange lr = new LazyRange(conn, ids, i0, i1 - i0 + 1, times[i0], times[i1]);
+			lazyRanges.insertElementAt(lr, ri);
+			tData.insertElementAt(lr.placeholder, ri);
+		}
+
+		// render the newest, then estimate the rest
+		renderLazyRange(nRanges - 1, false);
+		int nRendRows = 0, nRendTrips = 0;
+		for (final LazyRange lr : lazyRanges)
+		{
+			if (lr.rowCountExact)
+			{
+				nRendRows += lr.rowCount;
+				nRendTrips += lr.tripCount;
+			}
+		}
+		int nAdded = lazyRanges.elementAt(nRanges - 1).rowCount;
+		for (int ri = 0; ri < nRanges - 1; ++ri)
+		{
+			final LazyRange lr = lazyRanges.elementAt(ri);
+			lr.rowCount = (nRendTrips != 0)
+				? Math.max(1, (lr.tripCount * nRendRows + nRendTrips / 2) / nRendTrips)
+				: (lr.tripCount * LAZY_EST_ROWS_PER_TRIP);
+			nAdded += lr.rowCount;
+		}
+		tDataTextRowCount += (nAdded - lazyRanges.elementAt(nRanges - 1).rowCount);
+			// renderLazyRange already added the newest range's rows
+		tDataRowStart = null;
+		getValue_RangeRow0 = -1;  // row#s changing, so reset getValue_* vars
+		getValue_RangeRowN = -1;
+
+		return nAdded;
+	}
+
+	/**
+	 * In Lazy Mode, read and render an unrendered range's trips, and add it to {@link #lazyRendered}.
+	 * If the range's actual row count differs from its estimate, updates {@link #tDataTextRowCount}.
+	 * @param i  Index of range within {@link #tData}
+	 * @param fireChanges  If true and there's a {@link TableChangeListener}, tell it that the range's rows
+	 *     were updated, and about any rows inserted or deleted at the end of the range
+	 * @since 0.9.93
+	 */
+	private void renderLazyRange(final int i, final boolean fireChanges)
+	{
+		final LazyRange lr = lazyRanges.elementAt(i);
+		final TripListTimeRange ph = lr.placeholder;
+		final int rowStart = (fireChanges) ? getRangeStartRow(i) : 0;
+		final int prevRowCount = lr.rowCount;
+
+		final List<Trip> trips = Trip.tripsForVehicleIDs(lr.conn, veh, lr.tripIDs, lr.tripIDsFrom, lr.tripCount, true);
+		final int rowCount;
+		if (trips != null)
+		{
+			final TripListTimeRange ttr = TripListTimeRange.build(ph.timeStart, ph.timeEnd, trips);
+			ttr.noneEarlier = ph.noneEarlier;
+			ttr.noneLater = ph.noneLater;
+			tData.set(i, ttr);
+			addRowsFromTrips(ttr, lr.conn);  // adds all its rows to tDataTextRowCount; will adjust below
+			rowCount = ttr.tText.size();
+			lazyRendered.put(lr, ttr);  // may clear the least recently shown range
+		} else {
+			rowCount = 0;  // trips deleted since constructor; leave the empty placeholder
+		}
+
+		tDataTextRowCount -= prevRowCount;
+		if (trips == null)
+			tDataRowStart = null;
+		lr.rowCount = rowCount;
+		lr.rowCountExact = true;
+		getValue_RangeRow0 = -1;  // row#s may be changing, so reset getValue_* vars
+		getValue_RangeRowN = -1;
+
+		if (! (fireChanges && (listener != null)))
+			return;
+
+		if (rowCount > prevRowCount)
+			listener.fireTableRowsInserted(rowStart + prevRowCount, rowStart + rowCount - 1);
+		else if (rowCount < prevRowCount)
+			listener.fireTableRowsDeleted(rowStart + rowCount, rowStart + prevRowCount - 1);
+		final int nUpdated = Math.min(rowCount, prevRowCount);
+		if (nUpdated > 0)
+			listener.fireTableRowsUpdated(rowStart, rowStart + nUpdated - 1);
+	}
+
+	/**
+	 * In Lazy Mode, set a range's {@link TripListTimeRange#noneEarlier noneEarlier} or
+	 * {@link TripListTimeRange#noneLater noneLater} flag in its placeholder and, if rendered, in {@link #tData}.
+	 * @param i  Index of range within {@link #tData}
+	 * @param later  If true set {@code noneLater}, otherwise {@code noneEarlier}
+	 * @param none  Value to set
+	 * @since 0.9.93
+	 */
+	private void setLazyNoneBeyond(final int i, final boolean later, final boolean none)
+	{
+		final TripListTimeRange ph = lazyRanges.elementAt(i).placeholder, ttr = tData.elementAt(i);
+		if (later)
+		{
+			ph.noneLater = none;
+			ttr.noneLater = none;
+		} else {
+			ph.noneEarlier = none;
+			ttr.noneEarlier = none;
+		}
+	}
+
+	/**
+	 * Is this LTM in Lazy Mode, which renders ranges of trips only when needed?
+	 * @see #LogbookTableModel(Vehicle, RTRDateTimeFormatter, RDBAdapter)
+	 * @see #hasLazyPending()
+	 * @since 0.9.93
+	 */
+	public boolean isLazyMode() { return (lazyRanges != null); }
+
+	/**
+	 * In Lazy Mode, are there rows which {@link #getValueAt(int, int)} was asked for,
+	 * but haven't been rendered yet? If so, the caller should soon call {@link #renderLazyPending()}.
+	 * @return  True if rows need rendering, false otherwise or if not Lazy Mode
+	 * @since 0.9.93
+	 */
+	public boolean hasLazyPending()
+	{
+		return (lazyPending != null) && ! lazyPending.isEmpty();
+	}
+
+	/**
+	 * In Lazy Mode, render the ranges having rows which {@link #getValueAt(int, int)} was asked for,
+	 * and the range after the most recently requested one, so it's ready when scrolling down.
+	 * Requested ranges which are far from the most recently requested one are skipped;
+	 * if they're still shown, they'll be requested again.
+	 *<P>
+	 * The {@link TableChangeListener} is told that those ranges' rows were updated,
+	 * and about any rows inserted or deleted because a range's row count differs from its estimate.
+	 * Rendering is done from the caller's thread, which should be the same thread calling {@link #getValueAt(int, int)}.
+	 * @return  True if any ranges were rendered, false if none were pending or if not Lazy Mode
+	 * @since 0.9.93
+	 */
+	public boolean renderLazyPending()
+	{
+		if (! hasLazyPending())
+			return false;
+
+		final int latest = lazyPendingLatest;
+		final int near = LAZY_MAX_RENDERED / 2 - 1;
+		if ((latest != -1) && (latest + 1 < tData.size()))
+			lazyPending.set(latest + 1);
+
+		boolean any = false;
+		for (int i = lazyPending.nextSetBit(0); i >= 0; i = lazyPending.nextSetBit(i + 1))
+		{
+			if ((latest != -1) && (Math.abs(i - latest) > near))
+				continue;
+			if (tData.elementAt(i).tText == null)
+			{
+				renderLazyRange(i, true);
+				any = true;
+			}
+		}
+		lazyPending.clear();
+		lazyPendingLatest = -1;
+
+		return any;
+	}
+
 	/**
 	 * Add trip data as text from range {@code ttr} to ttr.tText, looking up from the database as needed.
 	 *<UL>
-	 * <LI> Updates {@link #tDataTextRowCount} to include the new text rows.
+	 * <LI> Updates {@link #tDataTextRowCount} to include the new text rows, and clears {@link #tDataRowStart}.
 	 * <LI> Updates {@link TripListTimeRange#tText}, and {@link TripListTimeRange#trBeginTextIdx}
 	 *      unless using {@link #trip_simple_mode}.
 	 * <LI> If {@link TripListTimeRange#matchLocID} != -1, also updates {@link TripListTimeRange#tMatchedRows}.
@@ -740,6 +1225,8 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	 */
 	private void addRowsFromTrips(TripListTimeRange ttr, RDBAdapter conn)
 	{
+		tDataRowStart = null;  // range was just added to tData, and its row count may change
+
 		final List<Trip> trips = ttr.tr;
 		if (trips == null)
 		{
@@ -1117,7 +1604,7 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 									tsg.gas_brandgrade = grade;  // for toStringBuilder's use
 							}
 							StringBuilder gsb = new StringBuilder("* Gas: ");  // TODO i18n
-							gsb.append(tsg.toStringBuilder(veh));
+							tsg.toStringBuilder(veh, gsb);
 							if (gradeID != 0)
 								tsg.gas_brandgrade = null;  // clear the reference
 							if (desc.length() > 0)
@@ -1247,6 +1734,8 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		for (int i = 0; i < S; ++i)
 		{
 			TripListTimeRange ttr = tData.get(i);
+			if (ttr.tstopTextIdx == null)
+				continue;  // Lazy Mode: not rendered
 			Integer tsRow = ttr.tstopTextIdx.get(tsIdObj);
 			if (tsRow != null)
 			{
@@ -1308,6 +1797,7 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 	 *     {@link TripListTimeRange#trBeginTextIdx ttr.trBeginTextIdx} with the new {@code trips}, or {@code null}
 	 * @param conn  Add from this connection
 	 * @see #addRowsFromTrips_formatTripsStops(List, Vector, TripListTimeRange, int, Set, RDBAdapter)
+	 * @see #writeTripsSimple(List, CellWriter, RDBAdapter)
 	 */
 	public void addRowsFromTrips_formatTripsSimple
 		(final List<Trip> trips, final Vector<String[]> tText, final TripListTimeRange ttr, RDBAdapter conn)
@@ -1329,91 +1819,125 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		}
 
 		// Loop for each trip in trips
+		final StringBuilder sb = new StringBuilder(10);
+		final RowsCellWriter rows = new RowsCellWriter(tText);
 		for (int i = 0; i < L; ++i)  // towards end of trip, must look at next trip
 		{
 			if (ttr != null)
 				ttr.trBeginTextIdx[tripIdx0 + i] = tText.size();
 
-			final Trip t = trips.get(i);
+			writeTripSimple(trips.get(i), rows, sb, conn);
+		}
+	}
 
-			String[] tr = new String[COL_HEADINGS_SIMPLE.length];
+	/**
+	 * Write the simple-mode rows of a list of {@link Trip}s and their {@link TStop}s to a {@link CellWriter},
+	 * cell by cell, instead of adding them to a {@code Vector<String[]>} like
+	 * {@link #addRowsFromTrips_formatTripsSimple(List, Vector, TripListTimeRange, RDBAdapter)}.
+	 * Useful for exporting many trips. Columns line up with {@link #COL_HEADINGS_SIMPLE}.
+	 * Can be used in any mode; doesn't check or change {@link #trip_simple_mode}.
+	 * @param trips Trips data to write
+	 * @param w  Write each trip's cells and end its line here
+	 * @param conn  Read from this connection
+	 * @since 0.9.93
+	 */
+	public void writeTripsSimple(final List<Trip> trips, final CellWriter w, RDBAdapter conn)
+	{
+		if (dtf == null)
+			dtf = new RTRDateTimeFormatter();  // fallback: caller should have set before constructing LTM
 
-			// trip starting date: yyyy-mm-dd (not localized date-time format)
-			final long tstart = t.getTime_start() * 1000L;
-			{
-				final Date tstartDate = new Date(tstart);
-				tr[0] = Integer.toString(tstartDate.getYear() + 1900)
-					+ '-' + digits2(tstartDate.getMonth() + 1) + '-' + digits2(tstartDate.getDate());
-			}
+		final StringBuilder sb = new StringBuilder(10);
+		final int L = trips.size();
+		for (int i = 0; i < L; ++i)
+			writeTripSimple(trips.get(i), w, sb, conn);
+	}
 
-			// start,end odo
-			tr[1] = Integer.toString((int) (t.getOdo_start() / 10.0f));
-			final int odo_end = t.getOdo_end();
-			if (odo_end > 0)
-				tr[2] = Integer.toString((int) (odo_end / 10.0f));
+	/**
+	 * Write one trip's simple-mode row, with columns lining up with {@link #COL_HEADINGS_SIMPLE}.
+	 * Common code for {@link #addRowsFromTrips_formatTripsSimple(List, Vector, TripListTimeRange, RDBAdapter)}
+	 * and {@link #writeTripsSimple(List, CellWriter, RDBAdapter)}.
+	 * @param t  Trip to write
+	 * @param w  Write the trip's cells and end its line here
+	 * @param sb  Buffer to reuse for the date cell; its contents are replaced
+	 * @param conn  Read from this connection
+	 * @since 0.9.93
+	 */
+	private void writeTripSimple(final Trip t, final CellWriter w, final StringBuilder sb, RDBAdapter conn)
+	{
+		// trip starting date: yyyy-mm-dd (not localized date-time format)
+		final long tstart = t.getTime_start() * 1000L;
+		{
+			final Date tstartDate = new Date(tstart);
+			sb.setLength(0);
+			sb.append(tstartDate.getYear() + 1900)
+			  .append('-').append(digits2(tstartDate.getMonth() + 1))
+			  .append('-').append(digits2(tstartDate.getDate()));
+			w.writeCell(sb);
+		}
 
-			// start,end time
-			tr[3] = dtf.formatTime(tstart);
-			final int time_end = t.getTime_end();
-			if (time_end != 0)
-				tr[4] = dtf.formatTime(time_end * 1000L);
+		// start,end odo
+		w.writeCell((int) (t.getOdo_start() / 10.0f));
+		final int odo_end = t.getOdo_end();
+		if (odo_end > 0)
+			w.writeCell((int) (odo_end / 10.0f));
+		else
+			w.writeCell(null);
 
-			// Remaining fields might require TStops, so read them and continue.
-			// All well-formed trips have 1 or more TStops.
-			Vector<TStop> stops = t.readAllTStops();	// works for current, if addCommittedTStop was called
+		// start,end time
+		w.writeCell(dtf.formatTime(tstart));
+		final int time_end = t.getTime_end();
+		w.writeCell((time_end != 0) ? dtf.formatTime(time_end * 1000L) : null);
 
-			final TStop ts_start = t.readStartTStop(true);
-			final TStop ts_end = (stops != null) ? stops.lastElement() : null;
+		// Remaining fields might require TStops, so read them and continue.
+		// All well-formed trips have 1 or more TStops.
+		Vector<TStop> stops = t.readAllTStops();	// works for current, if addCommittedTStop was called
 
-			// start,end location
-			if (ts_start != null)
-				tr[5] = getTStopLocDescr(ts_start, conn);
-			if (ts_end != null)
-				tr[6] = getTStopLocDescr(ts_end, conn);
+		final TStop ts_start = t.readStartTStop(true);
+		final TStop ts_end = (stops != null) ? stops.lastElement() : null;
 
-			// trip comment, or highest tstop comment:
-			tr[7] = t.readLatestComment();
+		// start,end location
+		w.writeCell((ts_start != null) ? getTStopLocDescr(ts_start, conn) : null);
+		w.writeCell((ts_end != null) ? getTStopLocDescr(ts_end, conn) : null);
 
-			// Done with this row
-			tText.addElement(tr);
+		// trip comment, or highest tstop comment:
+		w.writeCell(t.readLatestComment());
 
+		// Done with this row
+		w.endLine();
 
-			/*
-			final int tcatID = t.getTripCategoryID();
-			if (tcatID != 0)
+		/*
+		final int tcatID = t.getTripCategoryID();
+		if (tcatID != 0)
+		{
+			TripCategory tcat = tcatCache.get(tcatID);
+			if (tcat == null)
 			{
-				TripCategory tcat = tcatCache.get(tcatID);
-				if (tcat == null)
+				try
 				{
-					try
-					{
-						tcat = new TripCategory(conn, tcatID);
-						tcat.setName("[" + tcat.getName() + "]");
-						tcatCache.put(tcatID, tcat);
-					}
-					catch (Throwable th) {}
+					tcat = new TripCategory(conn, tcatID);
+					tcat.setName("[" + tcat.getName() + "]");
+					tcatCache.put(tcatID, tcat);
 				}
-				tr5 = tcat.getName();
+				catch (Throwable th) {}
 			}
+			tr5 = tcat.getName();
+		}
 
-			final int pax = t.getPassengerCount();
-			if (pax != -1)
+		final int pax = t.getPassengerCount();
+		if (pax != -1)
+		{
+			StringBuilder sb = new StringBuilder();
+			if (tr5 != null)
 			{
-				StringBuilder sb = new StringBuilder();
-				if (tr5 != null)
-				{
-					sb.append(tr5);
-					sb.append(' ');
-				}
-				sb.append(TXT_PASSENGERS);  // "Passengers"
-				sb.append(": ");
-				sb.append(Integer.toString(pax));
-				tr5 = sb.toString();
+				sb.append(tr5);
+				sb.append(' ');
 			}
-		 	*/
-
-
+			sb.append(TXT_PASSENGERS);  // "Passengers"
+			sb.append(": ");
+			sb.append(Integer.toString(pax));
+			tr5 = sb.toString();
 		}
+	 	*/
 	}
 
 	/**
@@ -1560,6 +2084,7 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 
 	/**
 	 * Get a {@link TripListTimeRange} currently loaded from the database.
+	 * In Lazy Mode, the range might not be rendered yet: Its {@code tr} and {@code tText} would be null.
 	 * @param i  index of this range, 0 to {@link #getRangeCount()} - 1
 	 * @return the range at index <tt>i</tt>
 	 * @throws ArrayIndexOutOfBoundsException  if i &lt; 0 or i >= {@link #getRangeCount()}
@@ -1655,94 +2180,30 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 				return "";
 			}
 
-		} else if (r == getValue_RangeRowN)
-		{
-			// just beyond end of previous range
-			boolean trFound;
-			tr = -1;  // satisfy javac
-			if (getValue_RangeIndex == tData.size())
-			{
-				trFound = false;
-			} else {
-				++getValue_RangeIndex;
-				final TripListTimeRange ttr = tData.elementAt(getValue_RangeIndex);
-				final Vector<String[]> tText = ttr.tText;
-				if (tText == null)
-				{
-					trFound = false;
-				} else {
-					trFound = true;
-					final int L = tText.size();   // TODO not 0
-					getValue_RangeRow0 = r;
-					getValue_RangeRowN = r + L;
-					getValue_RangeText = tText;
-					tr = 0;  // == r - getValue_RangeRow0
-				}
-			}
-			if (! trFound)
-			{
-				getValue_RangeRow0 = -1;
-				getValue_RangeRowN = -1;
-				return "";				
-			}
+		} else {
+			// Not in the most recently used range: find r's range by binary search
+			final int i = findRangeForRow(r);
+			if (i == -1)
+				return "";
 
-		} else if (r == (getValue_RangeRow0 - 1))
-		{
-			// just before start of previous range
-			boolean trFound;
-			tr = -1;  // satisfy javac
-			if (getValue_RangeIndex == 0)
+			final TripListTimeRange ttr = tData.elementAt(i);
+			if (lazyRanges != null)
 			{
-				trFound = false;
-			} else {
-				--getValue_RangeIndex;
-				final TripListTimeRange ttr = tData.elementAt(getValue_RangeIndex);
-				final Vector<String[]> tText = ttr.tText;
-				if (tText == null)
+				if (ttr.tText == null)
 				{
-					trFound = false;
-				} else {
-					trFound = true;
-					final int L = tText.size();   // TODO not 0
-					getValue_RangeRow0 -= L;
-					getValue_RangeRowN = r + 1;
-					getValue_RangeText = tText;
-					tr = L - 1;  // == r - getValue_RangeRow0
+					// Lazy Mode: not rendered yet; caller will call renderLazyPending
+					lazyPending.set(i);
+					lazyPendingLatest = i;
+					return "";
 				}
-			}
-			if (! trFound)
-			{
-				getValue_RangeRow0 = -1;
-				getValue_RangeRowN = -1;
-				return "";				
+				lazyRendered.get(lazyRanges.elementAt(i));  // mark as recently shown
 			}
 
-		} else {
-			int totalr = 0;        // Total text rows before this range
-			tr = r;                // invariant: tr == r - totalr
-			boolean trFound = false;
-			final int tdSize = tData.size();
-			for (int i = 0; i < tdSize; ++i)
-			{
-				final TripListTimeRange ttr = tData.elementAt(i);
-				final Vector<String[]> tText = ttr.tText;
-				if (tText == null)
-					break;
-				final int L = tText.size();
-				if (tr < L)
-				{
-					trFound = true;
-					getValue_RangeText = tText;
-					getValue_RangeIndex = i;
-					getValue_RangeRow0 = totalr;
-					getValue_RangeRowN = totalr + L;
-					break;
-				}
-				totalr += L;
-				tr -= L;  // invariant: tr == r - totalr
-			}
-			if (! trFound)
-				return "";
+			getValue_RangeText = ttr.tText;
+			getValue_RangeIndex = i;
+			getValue_RangeRow0 = tDataRowStart[i];
+			getValue_RangeRowN = tDataRowStart[i + 1];
+			tr = r - getValue_RangeRow0;
 		}
 		if (tr < getValue_RangeText.size())
 			return getValue_RangeText.elementAt(tr)[c];
@@ -1750,6 +2211,78 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 			return "";
 	}
 
+	/**
+	 * Build {@link #tDataRowStart} from the row counts of {@link #tData}'s ranges,
+	 * or in Lazy Mode from {@link #lazyRanges}' row counts, in time proportional to the number of ranges.
+	 * @since 0.9.93
+	 */
+	private void buildRangeRowStart()
+	{
+		final int n = tData.size();
+		final int[] rs = new int[n + 1];
+		int total = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			rs[i] = total;
+			if (lazyRanges != null)
+			{
+				total += lazyRanges.elementAt(i).rowCount;
+			} else {
+				final Vector<String[]> tText = tData.elementAt(i).tText;
+				if (tText != null)
+					total += tText.size();
+			}
+		}
+		rs[n] = total;
+		tDataRowStart = rs;
+	}
+
+	/**
+	 * Get the row number of a range's first text row.
+	 * @param i  Index of range within {@link #tData}
+	 * @return  Row number of range {@code i}'s first row; if the range has no rows, the next range's first row
+	 * @since 0.9.93
+	 */
+	private int getRangeStartRow(final int i)
+	{
+		if (tDataRowStart == null)
+			buildRangeRowStart();
+
+		return tDataRowStart[i];
+	}
+
+	/**
+	 * Find the range in {@link #tData} which contains this text row, by binary search of {@link #tDataRowStart}.
+	 * If ranges have changed since the last call, first rebuilds {@code tDataRowStart}
+	 * in time proportional to the number of ranges.
+	 * @param r  Row number
+	 * @return  Index within {@link #tData} of the range containing row {@code r},
+	 *     or -1 if {@code r} &lt; 0 or &gt;= {@link #tDataTextRowCount}
+	 * @since 0.9.93
+	 */
+	private int findRangeForRow(final int r)
+	{
+		final int n = tData.size();
+		if (tDataRowStart == null)
+			buildRangeRowStart();
+
+		if ((r < 0) || (r >= tDataRowStart[n]))
+			return -1;
+
+		// Find the last range starting at or before r; that skips any empty ranges starting at r
+		int lo = 0, hi = n - 1;
+		while (lo < hi)
+		{
+			final int mid = (lo + hi + 1) >>> 1;
+			if (tDataRowStart[mid] <= r)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+
+		return lo;
+	}
+
 	/**
 	 * All added cells (not those loaded from the
 	 * database) are editable, except the first 2 columns.
@@ -1804,4 +2337,129 @@ public class LogbookTableModel // extends javax.swing.table.AbstractTableModel
 		listener = tcl;
 	}
 
+	/**
+	 * Receives the cells of trip rows, one at a time, from {@link LogbookTableModel#writeTripsSimple(List, CellWriter, RDBAdapter)}.
+	 * For example, a CSV writer can write them to a file without a {@code String[]} per row.
+	 * @since 0.9.93
+	 */
+	public interface CellWriter
+	{
+		/**
+		 * Write the next cell of the current row.
+		 * @param cell  The cell's contents, or null if empty. If it's a StringBuilder,
+		 *     the caller may reuse it after this method returns.
+		 */
+		public void writeCell(CharSequence cell);
+
+		/**
+		 * Write the next cell of the current row, a number.
+		 * @param cell  The cell's contents
+		 */
+		public void writeCell(int cell);
+
+		/** End the current row; the next cell will begin a new row. */
+		public void endLine();
+	}
+
+	/**
+	 * {@link CellWriter} which adds each row as a {@code String[]} to a Vector,
+	 * for {@link LogbookTableModel#addRowsFromTrips_formatTripsSimple(List, Vector, TripListTimeRange, RDBAdapter)}.
+	 * @since 0.9.93
+	 */
+	private static final class RowsCellWriter implements CellWriter
+	{
+		private final Vector<String[]> tText;
+
+		/** Current row being filled, or null before its first cell */
+		private String[] row;
+
+		/** Index of the next cell in {@link #row} */
+		private int col;
+
+		public RowsCellWriter(final Vector<String[]> tText)
+		{
+			this.tText = tText;
+		}
+
+		public void writeCell(final CharSequence cell)
+		{
+			if (row == null)
+				row = new String[COL_HEADINGS_SIMPLE.length];
+			row[col++] = (cell != null) ? cell.toString() : null;
+		}
+
+		public void writeCell(final int cell)
+		{
+			writeCell(Integer.toString(cell));
+		}
+
+		public void endLine()
+		{
+			tText.addElement((row != null) ? row : new String[COL_HEADINGS_SIMPLE.length]);
+			row = null;
+			col = 0;
+		}
+	}
+
+	/**
+	 * In Lazy Mode, a range of trips in {@link LogbookTableModel#tData}: Its trip IDs, and how many rows it has
+	 * or is estimated to have. See {@link LogbookTableModel#lazyRanges}.
+	 * Trips are ordered by start time, not ID, since merged older trips can have higher IDs;
+	 * so a range is a slice of the IDs from {@link Trip#tripIDsAndTimesForVehicle(RDBAdapter, Vehicle)},
+	 * not an interval of IDs.
+	 * @since 0.9.93
+	 */
+	private static final class LazyRange
+	{
+		/** Db to read the range's trips from: The current db or an archive */
+		public final RDBAdapter conn;
+
+		/**
+		 * All of the vehicle's trip IDs in {@link #conn}, in start-time order, shared by its ranges;
+		 * this range's are the {@link #tripCount} IDs starting at index {@link #tripIDsFrom}
+		 */
+		public final int[] tripIDs;
+
+		/** Index within {@link #tripIDs} of this range's first trip */
+		public final int tripIDsFrom;
+
+		/** Number of trips in the range */
+		public final int tripCount;
+
+		/**
+		 * Placeholder in {@link LogbookTableModel#tData} while the range isn't rendered,
+		 * with the range's start times but no trips or text.
+		 */
+		public final TripListTimeRange placeholder;
+
+		/** Number of text rows, or estimate if not {@link #rowCountExact} */
+		public int rowCount;
+
+		/** Has the range been rendered to measure {@link #rowCount}? */
+		public boolean rowCountExact;
+
+		public LazyRange
+			(RDBAdapter conn, final int[] tripIDs, final int tripIDsFrom, final int tripCount,
+			 final int timeStart, final int timeEnd)
+		{
+			this.conn = conn;
+			this.tripIDs = tripIDs;
+			this.tripIDsFrom = tripIDsFrom;
+			this.tripCount = tripCount;
+			placeholder = TripListTimeRange.build(timeStart, timeEnd, null);
+		}
+
+		/**
+		 * Copy constructor, with a new placeholder and an inexact {@link #rowCount}.
+		 * @param lr  Range to copy
+		 */
+		public LazyRange(final LazyRange lr)
+		{
+			this(lr.conn, lr.tripIDs, lr.tripIDsFrom, lr.tripCount, lr.placeholder.timeStart, lr.placeholder.timeEnd);
+			placeholder.noneEarlier = lr.placeholder.noneEarlier;
+			placeholder.noneLater = lr.placeholder.noneLater;
+			rowCount = lr.rowCount;
+		}
+	}
+
 }  // public class LogbookTableModel
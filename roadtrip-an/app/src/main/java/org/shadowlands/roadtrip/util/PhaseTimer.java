@@ -0,0 +1,87 @@
+/*
+ *  This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+ *
+ *  This file Copyright (C) 2022 Jeremy D Monin <jdmonin@nand.net>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shadowlands.roadtrip.util;
+
+/**
+ * Simple elapsed-time trace of a task's phases, such as app startup, to be logged when done.
+ * Create it when the task begins, call {@link #mark(String)} at the end of each phase,
+ * then log {@link #toString()}: {@code "startup: open=40ms checkSettings=22ms total=62ms"}.
+ *<P>
+ * Not thread-safe; meant for use within one thread.
+ *
+ * @author jdmonin
+ * @since 0.9.93
+ */
+public class PhaseTimer
+{
+	/** Time at construction, from {@link System#nanoTime()} */
+	private final long startNanos;
+
+	/** Time at most recent {@link #mark(String)} or construction */
+	private long prevNanos;
+
+	/** Task name and phases marked so far */
+	private final StringBuilder sb;
+
+	/**
+	 * Start timing a task.
+	 * @param taskName  Name of the task, to begin {@link #toString()}; not null
+	 */
+	public PhaseTimer(final String taskName)
+	{
+		sb = new StringBuilder(taskName).append(':');
+		startNanos = System.nanoTime();
+		prevNanos = startNanos;
+	}
+
+	/**
+	 * Mark the end of a phase, which started at the previous mark or when this timer was created.
+	 * @param phase  Name of the phase just completed; not null
+	 * @return  Milliseconds taken by the phase
+	 */
+	public long mark(final String phase)
+	{
+		final long now = System.nanoTime();
+		final long ms = (now - prevNanos) / 1000000L;
+		prevNanos = now;
+		sb.append(' ').append(phase).append('=').append(ms).append("ms");
+
+		return ms;
+	}
+
+	/**
+	 * Get the time since this timer was created.
+	 * @return  Elapsed milliseconds
+	 */
+	public long getElapsedMillis()
+	{
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+
+	/**
+	 * Get the task name, each marked phase's time, and the total time since this timer was created.
+	 * @return  Phases and times, such as {@code "startup: open=40ms checkSettings=22ms total=62ms"}
+	 */
+	public String toString()
+	{
+		return sb.toString() + " total=" + getElapsedMillis() + "ms";
+	}
+
+}
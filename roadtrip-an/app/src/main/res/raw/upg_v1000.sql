@@ -0,0 +1,39 @@
+-- Upgrade from v0990 to v1000: (2022-12-22)
+
+-- This file is part of Shadowlands RoadTrip - A vehicle logbook for Android.
+--
+--  This file Copyright (C) 2022 Jeremy D Monin (jdmonin@nand.net)
+--
+--  This program is free software: you can redistribute it and/or modify
+--  it under the terms of the GNU General Public License as published by
+--  the Free Software Foundation, either version 3 of the License, or
+--  (at your option) any later version.
+--
+--  This program is distributed in the hope that it will be useful,
+--  but WITHOUT ANY WARRANTY; without even the implied warranty of
+--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+--  GNU General Public License for more details.
+--
+--  You should have received a copy of the GNU General Public License
+--  along with this program.  If not, see http://www.gnu.org/licenses/ .
+
+-- Indexes for Location Mode (Trip.tripsForLocation), ViaRoute.getAll(db, from, to), Location.getAll(db, areaID).
+-- Statements can span lines; RDBSchema.upgradeToCurrent runs this script in one transaction.
+
+create index "tstop~l" ON tstop(locid, tripid);
+create index "trip~l" ON trip(locid_start);
+drop index "via_route~l";
+create index "via_route~lt" ON via_route(locid_from, locid_to);
+create index "location~a" ON location(a_id, loc_descr COLLATE NOCASE);
+
+-- Full-text index of trip and tstop comments, for CommentIndex.searchComments.
+-- docid is the tstop._id, or the negative trip._id for a trip's comment.
+create virtual table comment_fts using fts4(comment);
+insert into comment_fts (docid, comment) select _id, comment from tstop where comment is not null and comment <> '';
+insert into comment_fts (docid, comment) select -_id, comment from trip where comment is not null and comment <> '';
+
+-- Change journal for incremental backup, export and sync; see ChangeJournal.
+create table change_journal ( seq integer PRIMARY KEY AUTOINCREMENT not null, tabname varchar(32) not null, row_id int not null, op varchar(1) not null, fields varchar(255), vals varchar(255), time_chg int not null );
+
+-- Gather statistics so the query planner can choose among the new and old indexes.
+ANALYZE;